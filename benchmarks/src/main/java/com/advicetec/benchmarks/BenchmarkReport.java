@@ -0,0 +1,313 @@
+package com.advicetec.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and compares their results with a baseline.
+ * <p>
+ * The results and the baseline are files in the JMH JSON format. A benchmark is a regression when
+ * its score is worse than the baseline by more than the threshold percentage and the difference is
+ * larger than the sum of both errors. The threshold is given by the <code>threshold</code> system
+ * property, by default 10. The modes are:
+ * <ul>
+ * <li><code>run &lt;baseline&gt; [JMH options]</code> runs the benchmarks and compares the results.</li>
+ * <li><code>compare &lt;baseline&gt; &lt;results&gt;</code> compares the results of a previous run.</li>
+ * <li><code>save &lt;baseline&gt; [JMH options]</code> runs the benchmarks and saves the results as the baseline.</li>
+ * </ul>
+ * The <code>run</code> and <code>compare</code> modes exit with status 1 if there are regressions, and with
+ * status 2 before running anything if the baseline does not exist or has no results.
+ * <p>
+ * The module does not include a baseline, the scores are only comparable with runs on the same machine,
+ * so the baseline is saved first on the reference machine, and saved again when that machine changes.
+ * The benchmarks are run from the iotmanufacturing folder, where the facades find their configuration:
+ * <pre>
+ * java -cp ../benchmarks/target/benchmarks.jar com.advicetec.benchmarks.BenchmarkReport save ../benchmarks/baseline.json
+ * java -cp ../benchmarks/target/benchmarks.jar com.advicetec.benchmarks.BenchmarkReport run ../benchmarks/baseline.json
+ * </pre>
+ *
+ * @author advicetec
+ */
+public class BenchmarkReport
+{
+	/**
+	 * File where the results of the run are written.
+	 */
+	private static final String RESULTS = "jmh-result.json";
+
+	private static final double DEFAULT_THRESHOLD = 10.0;
+
+	public static final String REGRESSION = "REGRESSION";
+
+	public static final String IMPROVEMENT = "improvement";
+
+	public static final String UNCHANGED = "ok";
+
+	public static final String NEW = "new";
+
+	public static final String MISSING = "missing";
+
+	/**
+	 * Score of a benchmark for a combination of parameters.
+	 */
+	static class Score
+	{
+		final String mode;
+
+		final double score;
+
+		final double error;
+
+		final String unit;
+
+		Score(String mode, double score, double error, String unit) {
+			this.mode = mode;
+			this.score = score;
+			this.error = error;
+			this.unit = unit;
+		}
+
+		/**
+		 * Returns true if higher scores are better, as in the throughput mode.
+		 */
+		boolean higherIsBetter() {
+			return "thrpt".equals(mode);
+		}
+	}
+
+	/**
+	 * Comparison of the score of a benchmark with its baseline.
+	 */
+	static class Comparison
+	{
+		final String benchmark;
+
+		final Score baseline;
+
+		final Score current;
+
+		final String status;
+
+		Comparison(String benchmark, Score baseline, Score current, String status) {
+			this.benchmark = benchmark;
+			this.baseline = baseline;
+			this.current = current;
+			this.status = status;
+		}
+
+		/**
+		 * Returns the change of the score in percentage of the baseline.
+		 */
+		double change() {
+			return (current.score - baseline.score) * 100.0 / baseline.score;
+		}
+	}
+
+	public static void main(String[] args) throws IOException, RunnerException, CommandLineOptionException {
+		if (args.length < 2) {
+			System.err.println("Usage: BenchmarkReport run <baseline> [JMH options]");
+			System.err.println("       BenchmarkReport compare <baseline> <results>");
+			System.err.println("       BenchmarkReport save <baseline> [JMH options]");
+			System.exit(2);
+		}
+		String mode = args[0];
+		Path baseline = Paths.get(args[1]);
+		double threshold = Double.parseDouble(System.getProperty("threshold", String.valueOf(DEFAULT_THRESHOLD)));
+
+		Map<String, Score> scores = null;
+		if ("run".equals(mode) || "compare".equals(mode)) {
+			// without results every benchmark would be new and the comparison would always pass.
+			scores = Files.exists(baseline) ? read(baseline) : new TreeMap<String, Score>();
+			if (scores.isEmpty()) {
+				System.err.println("The baseline " + baseline + " does not exist or has no results, save it on the reference machine with:");
+				System.err.println("       BenchmarkReport save " + baseline + " [JMH options]");
+				System.exit(2);
+			}
+		}
+
+		Path results;
+		if ("compare".equals(mode)) {
+			if (args.length < 3) {
+				System.err.println("The results file is required");
+				System.exit(2);
+			}
+			results = Paths.get(args[2]);
+		} else if ("run".equals(mode) || "save".equals(mode)) {
+			results = Paths.get(RESULTS);
+			run(Arrays.copyOfRange(args, 2, args.length), results);
+		} else {
+			System.err.println("Unknown mode " + mode);
+			System.exit(2);
+			return;
+		}
+
+		if ("save".equals(mode)) {
+			Files.copy(results, baseline, StandardCopyOption.REPLACE_EXISTING);
+			System.out.println("Baseline saved in " + baseline);
+			return;
+		}
+
+		List<Comparison> comparisons = compare(scores, read(results), threshold);
+		System.out.print(format(comparisons, threshold));
+		for (Comparison comparison : comparisons) {
+			if (REGRESSION.equals(comparison.status)) {
+				System.exit(1);
+			}
+		}
+	}
+
+	/**
+	 * Runs the benchmarks and writes their results in JSON format.
+	 * @param jmhArgs	JMH command line options, as the benchmarks to include.
+	 * @param results	file where the results are written.
+	 */
+	static void run(String[] jmhArgs, Path results) throws CommandLineOptionException, RunnerException {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(jmhArgs))
+				.resultFormat(ResultFormatType.JSON)
+				.result(results.toString())
+				.build();
+		new Runner(options).run();
+	}
+
+	/**
+	 * Reads the scores of a JMH JSON results file.
+	 * @param file	results file.
+	 * @return the scores by benchmark and parameters, sorted by name.
+	 */
+	static Map<String, Score> read(Path file) throws IOException {
+		return parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Parses the scores of JMH results in JSON format.
+	 * @param json	results in JSON format.
+	 * @return the scores by benchmark and parameters, sorted by name.
+	 */
+	static Map<String, Score> parse(String json) {
+		Map<String, Score> scores = new TreeMap<String, Score>();
+		JSONArray runs = new JSONArray(json);
+		for (int i = 0; i < runs.length(); i++) {
+			JSONObject run = runs.getJSONObject(i);
+			JSONObject metric = run.getJSONObject("primaryMetric");
+			double error = metric.optDouble("scoreError", 0.0);
+			Score score = new Score(run.getString("mode"), metric.getDouble("score"),
+					Double.isNaN(error) ? 0.0 : error, metric.optString("scoreUnit"));
+			scores.put(key(run), score);
+		}
+		return scores;
+	}
+
+	/**
+	 * Returns the name of the benchmark of a run followed by its parameters, sorted by name.
+	 */
+	private static String key(JSONObject run) {
+		String benchmark = run.getString("benchmark");
+		JSONObject params = run.optJSONObject("params");
+		if (params == null || params.length() == 0) {
+			return benchmark;
+		}
+		Map<String, Object> sorted = new TreeMap<String, Object>();
+		Iterator<String> names = params.keys();
+		while (names.hasNext()) {
+			String name = names.next();
+			sorted.put(name, params.get(name));
+		}
+		StringBuilder key = new StringBuilder(benchmark);
+		char separator = '(';
+		for (Map.Entry<String, Object> param : sorted.entrySet()) {
+			key.append(separator).append(param.getKey()).append('=').append(param.getValue());
+			separator = ',';
+		}
+		return key.append(')').toString();
+	}
+
+	/**
+	 * Compares the scores with the baseline.
+	 * @param baseline	scores of the baseline.
+	 * @param current	scores of the run.
+	 * @param threshold	percentage of change from which a difference is reported.
+	 * @return a comparison for every benchmark in the baseline or in the run.
+	 */
+	static List<Comparison> compare(Map<String, Score> baseline, Map<String, Score> current, double threshold) {
+		List<Comparison> comparisons = new ArrayList<Comparison>();
+		for (Map.Entry<String, Score> entry : current.entrySet()) {
+			Score base = baseline.get(entry.getKey());
+			Score score = entry.getValue();
+			String status;
+			if (base == null || !base.mode.equals(score.mode) || base.score == 0.0) {
+				status = NEW;
+			} else {
+				double change = (score.score - base.score) * 100.0 / base.score;
+				double better = score.higherIsBetter() ? change : -change;
+				boolean significant = Math.abs(score.score - base.score) > (score.error + base.error);
+				if (significant && better < -threshold) {
+					status = REGRESSION;
+				} else if (significant && better > threshold) {
+					status = IMPROVEMENT;
+				} else {
+					status = UNCHANGED;
+				}
+			}
+			comparisons.add(new Comparison(entry.getKey(), NEW.equals(status) ? null : base, score, status));
+		}
+		for (Map.Entry<String, Score> entry : baseline.entrySet()) {
+			if (!current.containsKey(entry.getKey())) {
+				comparisons.add(new Comparison(entry.getKey(), entry.getValue(), null, MISSING));
+			}
+		}
+		return comparisons;
+	}
+
+	/**
+	 * Writes the comparisons as a text table followed by a summary.
+	 * @param comparisons	comparisons of the scores.
+	 * @param threshold		percentage of change from which a difference is reported.
+	 * @return the text of the report.
+	 */
+	static String format(List<Comparison> comparisons, double threshold) {
+		int width = "Benchmark".length();
+		for (Comparison comparison : comparisons) {
+			width = Math.max(width, comparison.benchmark.length());
+		}
+		String row = "%-" + width + "s  %5s  %14s  %14s  %9s  %-10s  %s%n";
+		StringBuilder out = new StringBuilder();
+		out.append(String.format(row, "Benchmark", "Mode", "Baseline", "Current", "Change", "Units", "Status"));
+		Map<String, Integer> counts = new TreeMap<String, Integer>();
+		for (Comparison comparison : comparisons) {
+			Score score = (comparison.current != null) ? comparison.current : comparison.baseline;
+			out.append(String.format(row, comparison.benchmark, score.mode,
+					(comparison.baseline != null) ? String.format("%.3f", comparison.baseline.score) : "-",
+					(comparison.current != null) ? String.format("%.3f", comparison.current.score) : "-",
+					(comparison.baseline != null && comparison.current != null) ? String.format("%+.1f%%", comparison.change()) : "-",
+					score.unit, comparison.status));
+			Integer count = counts.get(comparison.status);
+			counts.put(comparison.status, (count == null) ? 1 : count + 1);
+		}
+		out.append(String.format("%nThreshold %.1f%%:", threshold));
+		for (Map.Entry<String, Integer> count : counts.entrySet()) {
+			out.append(' ').append(count.getValue()).append(' ').append(count.getKey());
+		}
+		return out.append(String.format("%n")).toString();
+	}
+}
@@ -0,0 +1,79 @@
+package com.advicetec.core;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.advicetec.measuredentitity.Machine;
+import com.advicetec.measuredentitity.MeasuredEntityFacade;
+import com.advicetec.persistence.MeasureAttributeValueCache;
+
+/**
+ * JMH benchmark of the facade operations used for every sample and every trend request: the
+ * store of an attribute value and the read of the values of an attribute in an interval.
+ * <p>
+ * The facade is loaded with <code>values</code> values of the attribute before the measure. The
+ * oldest time of the attribute value cache is set before the values, so the reads are served by
+ * the cache and the benchmark does not need a database. Run it from the iotmanufacturing folder,
+ * the facade reads the event manager configuration from the resources folder.
+ *
+ * @author advicetec
+ * @see EntityFacade
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityFacadeBenchmark
+{
+	@Param({"1000", "10000"})
+	public int values;
+
+	private EntityFacade facade;
+
+	private Attribute speed;
+
+	private Attribute temperature;
+
+	private LocalDateTime from;
+
+	private double counter = 0;
+
+	@Setup
+	public void setup() {
+		MeasureAttributeValueCache.UpdateLastDateTimeStore(LocalDateTime.now().minusDays(1));
+		facade = new MeasuredEntityFacade(new Machine(1), "tasa_vel_esperada", "factor_conversion_kg_ciclo",
+								"factor_conversion_mil_ciclo", "ProductionPulseTotal", 3600);
+		speed = new Attribute("speed", AttributeType.DOUBLE);
+		temperature = new Attribute("temperature", AttributeType.DOUBLE);
+		from = LocalDateTime.now().minusHours(1);
+		for (int i = 0; i < values; i++) {
+			facade.setAttributeValue(speed, new Double(i));
+		}
+	}
+
+	@Benchmark
+	public void setAttributeValue() {
+		counter++;
+		facade.setAttributeValue(temperature, new Double(counter));
+	}
+
+	@Benchmark
+	public List<AttributeValue> getByIntervalByAttributeName() {
+		return facade.getByIntervalByAttributeName("speed", from, LocalDateTime.now());
+	}
+}
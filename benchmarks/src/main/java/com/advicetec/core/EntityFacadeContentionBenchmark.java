@@ -0,0 +1,152 @@
+package com.advicetec.core;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.advicetec.measuredentitity.DowntimeReason;
+import com.advicetec.measuredentitity.Machine;
+import com.advicetec.measuredentitity.StateInterval;
+import com.advicetec.persistence.MeasureAttributeValueCache;
+
+/**
+ * JMH benchmark of an entity facade used at the same time by the ingestion and by the REST resources.
+ * <p>
+ * Two threads store attribute values while six threads read the trend of the last minute, the status
+ * and the newest value. The <code>readwrite</code> mode uses the locking of <code>EntityFacade</code>,
+ * the <code>synchronized</code> mode reproduces the previous facade, where every method was synchronized.
+ * <p>
+ * The oldest time of the attribute value cache is set before the values, so the reads are served by
+ * the cache and the benchmark does not need a database. Run it from the iotmanufacturing folder, the facade
+ * reads the event manager configuration from the resources folder.
+ *
+ * @author advicetec
+ * @see EntityFacade
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EntityFacadeContentionBenchmark
+{
+	@Param({"readwrite", "synchronized"})
+	public String locking;
+
+	private EntityFacade facade;
+
+	private Attribute speed;
+
+	private final AtomicLong counter = new AtomicLong();
+
+	@Setup
+	public void setup() {
+		MeasureAttributeValueCache.UpdateLastDateTimeStore(LocalDateTime.now().minusDays(1));
+		Machine machine = new Machine(1);
+		if ("readwrite".equals(locking)) {
+			facade = new BenchmarkFacade(machine);
+		} else {
+			facade = new SynchronizedFacade(machine);
+		}
+		speed = new Attribute("speed", AttributeType.DOUBLE);
+		facade.setAttributeValue(speed, new Double(0));
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(2)
+	public void ingest() {
+		facade.setAttributeValue(speed, new Double(counter.incrementAndGet()));
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(4)
+	public List<AttributeValue> trend() {
+		LocalDateTime to = LocalDateTime.now();
+		return facade.getByIntervalByAttributeName("speed", to.minusMinutes(1), to);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public Collection<AttributeValue> status() {
+		return facade.getStatusValues();
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public AttributeValue newest() {
+		return facade.getNewestByAttributeName("speed");
+	}
+
+	/**
+	 * Facade without downtime reasons, the benchmark only stores and reads attribute values.
+	 */
+	static class BenchmarkFacade extends EntityFacade
+	{
+		BenchmarkFacade(Entity entity) {
+			super(entity, 3600);
+		}
+
+		@Override
+		public JSONArray getJsonDowntimeReasons(LocalDateTime from, LocalDateTime to) {
+			return new JSONArray();
+		}
+
+		@Override
+		protected Map<Integer, DowntimeReason> sumarizeDowntimeReason(List<StateInterval> list) {
+			return null;
+		}
+	}
+
+	/**
+	 * Facade where the methods used by the benchmark are synchronized, as they were before the read-write lock.
+	 */
+	static class SynchronizedFacade extends BenchmarkFacade
+	{
+		SynchronizedFacade(Entity entity) {
+			super(entity);
+		}
+
+		@Override
+		public synchronized void setAttributeValue(Attribute att, Object value) {
+			super.setAttributeValue(att, value);
+		}
+
+		@Override
+		public synchronized List<AttributeValue> getByIntervalByAttributeName(String attrName, LocalDateTime from, LocalDateTime to) {
+			return super.getByIntervalByAttributeName(attrName, from, to);
+		}
+
+		@Override
+		public synchronized Collection<AttributeValue> getStatusValues() {
+			return super.getStatusValues();
+		}
+
+		@Override
+		public synchronized AttributeValue getNewestByAttributeName(String attName) {
+			return super.getNewestByAttributeName(attName);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.advicetec.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.advicetec.core.EntityFacadeContentionBenchmark.BenchmarkFacade;
+import com.advicetec.iot.rest.JsonStreamRepresentation;
+import com.advicetec.measuredentitity.Machine;
+import com.advicetec.persistence.MeasureAttributeValueCache;
+
+/**
+ * JMH benchmark of the trend response for one million points.
+ * <p>
+ * The <code>jsonArray</code> mode builds the json array of the facade and its text, as the trend resource did
+ * before the streaming responses. The <code>stream</code> and <code>streamRows</code> modes write the points
+ * with a json generator in the default and in the row format. The response is written to a stream that
+ * discards it. Run it with the GC profiler (<code>-prof gc</code>), which reports the memory allocated
+ * by every response.
+ * <p>
+ * Run it from the iotmanufacturing folder, the facade reads the event manager configuration from the resources folder.
+ *
+ * @author advicetec
+ * @see EntityFacade#writeJsonTrend
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class TrendSerializationBenchmark
+{
+	private static final int POINTS = 1000000;
+
+	private EntityFacade facade;
+
+	private LocalDateTime from;
+
+	private LocalDateTime to;
+
+	private final OutputStream discard = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	@Setup
+	public void setup() {
+		from = LocalDateTime.now().minusHours(2);
+		to = from.plusHours(1);
+		MeasureAttributeValueCache.UpdateLastDateTimeStore(from.minusDays(1));
+		facade = new BenchmarkFacade(new Machine(1));
+
+		// a point every 3.6 milliseconds fills the hour of the trend.
+		AttributeSeries series = new AttributeSeries(new Attribute("speed", AttributeType.DOUBLE));
+		for (int i = 0; i < POINTS; i++) {
+			series.add(from.plusNanos(i * 3600000L), new Double(i % 1000));
+		}
+		facade.attSeries.put("speed", series);
+	}
+
+	@Benchmark
+	public void jsonArray() throws IOException {
+		String text = facade.getJsonTrend("speed", from, to).toString();
+		discard.write(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Benchmark
+	public void stream() throws IOException {
+		new JsonStreamRepresentation(generator ->
+			facade.writeJsonTrend(generator, "speed", from, to, false)).write(discard);
+	}
+
+	@Benchmark
+	public void streamRows() throws IOException {
+		new JsonStreamRepresentation(generator ->
+			facade.writeJsonTrend(generator, "speed", from, to, true)).write(discard);
+	}
+}
@@ -0,0 +1,112 @@
+package com.advicetec.language.behavior;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.advicetec.core.Attribute;
+import com.advicetec.core.AttributeType;
+import com.advicetec.measuredentitity.Machine;
+import com.advicetec.measuredentitity.MeasuredEntityFacade;
+import com.advicetec.monitorAdapter.protocolconverter.InterpretedSignal;
+import com.advicetec.persistence.MeasureAttributeValueCache;
+
+/**
+ * JMH benchmark of the execution of a behavior, as the measured entity event processor does.
+ * <p>
+ * The behaviors are given as text, so the measure includes the look up of the compiled behavior
+ * in the BehaviorProgramCache, the definition phase, the interpretation and the reads of the
+ * status of the facade. The facade is created without
+ * the measured entity manager, so the benchmark does not need the configuration database. Run it
+ * from the iotmanufacturing folder, the facade reads the event manager configuration from the
+ * resources folder.
+ *
+ * @author advicetec
+ * @see BehaviorInterpreterSw
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BehaviorInterpreterSwBenchmark
+{
+	/**
+	 * Speed of a machine from the cycles of the last minute, given as parameter.
+	 */
+	private static final String SPEED =
+			"program main(int cycles) { \n"
+			+ "  unit CPM \"Cycles per minute\"; \n"
+			+ "  unit CPH \"Cycles per hour\"; \n"
+			+ "  attr float speed_min unit CPM; \n"
+			+ "  attr float speed_hour unit CPH; \n"
+			+ "  var int minutes_per_hour = 60; \n"
+			+ "  speed_min = cycles * 1.0; \n"
+			+ "  speed_hour = speed_min * minutes_per_hour; \n"
+			+ "} \n";
+
+	/**
+	 * Production condition of an injection machine, it reads the status of the machine.
+	 */
+	private static final String PRODUCTION =
+			"program main(int cycles) { \n"
+			+ "  unit COT \"Cycles over time\"; \n"
+			+ "  attr float producing_cot = STATUS.producing_cot unit COT; \n"
+			+ "  attr float conversion_factor = STATUS.conversion_factor; \n"
+			+ "  attr int testing_inv = STATUS.testing_inv; \n"
+			+ "  attr boolean idle_condition = false; \n"
+			+ "  attr boolean production_condition = false; \n"
+			+ "  attr float pulses_millares = 0.0; \n"
+			+ "  var float producing_limit = 8; \n"
+			+ "  if (producing_cot > producing_limit) { \n"
+			+ "    pulses_millares = testing_inv * cycles * conversion_factor; \n"
+			+ "    production_condition = testing_inv == 1; \n"
+			+ "  } else { \n"
+			+ "    idle_condition = true; \n"
+			+ "  } \n"
+			+ "} \n";
+
+	@Param({"speed", "production"})
+	public String program;
+
+	private String text;
+
+	private MeasuredEntityFacade facade;
+
+	private List<InterpretedSignal> parameters;
+
+	@Setup
+	public void setup() {
+		MeasureAttributeValueCache.UpdateLastDateTimeStore(LocalDateTime.now().minusDays(1));
+		facade = new MeasuredEntityFacade(new Machine(1), "tasa_vel_esperada", "factor_conversion_kg_ciclo",
+								"factor_conversion_mil_ciclo", "ProductionPulseTotal", 3600);
+		facade.setAttributeValue(new Attribute("conversion_factor", AttributeType.DOUBLE), new Double(0.25));
+		facade.setAttributeValue(new Attribute("producing_cot", AttributeType.DOUBLE), new Double(12));
+		facade.setAttributeValue(new Attribute("testing_inv", AttributeType.INT), new Integer(1));
+
+		text = "speed".equals(program) ? SPEED : PRODUCTION;
+		parameters = new ArrayList<InterpretedSignal>();
+		parameters.add(new InterpretedSignal(AttributeType.INT, new Integer(42)));
+	}
+
+	@Benchmark
+	public BehaviorInterpreterSw process() throws Exception {
+		BehaviorInterpreterSw interpreter = new BehaviorInterpreterSw();
+		interpreter.process(text, facade, 1, parameters);
+		return interpreter;
+	}
+}
@@ -0,0 +1,101 @@
+package com.advicetec.language.compiler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.advicetec.language.ast.ASTNode;
+import com.advicetec.language.ast.MemorySpace;
+import com.advicetec.language.transformation.CompiledProgram;
+import com.advicetec.language.transformation.DefPhase;
+import com.advicetec.language.transformation.Interpreter;
+import com.advicetec.language.transformation.TransformationExpressionCompiler;
+
+/**
+ * JMH benchmark comparing the execution of transformation programs with the visitor and 
+ * with the compiled expressions. 
+ * <p>
+ * The programs are parsed and compiled once in the setup, as the transformation cache does, 
+ * so the measure includes the definition phase and the interpretation of one sample.
+ * 
+ * @author Andres Marentes
+ * @see CompiledExpressions
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionBenchmark 
+{
+
+	/**
+	 * Conversion of a counter signal, typical of the transformations installed in the plants.
+	 */
+	private static final String COUNTER = 
+			"transform main(int digital) { \n"
+			+ "  var int previous = 120; \n"
+			+ "  var float factor = 0.5; \n"
+			+ "  attr int cycles = digital - previous; \n"
+			+ "  attr float velocity = (digital - previous) * factor / 60.0; \n"
+			+ "  attr boolean running = velocity > 0.1 AND cycles >= 1; \n"
+			+ "  if (running == false) { \n"
+			+ "    velocity = 0.0; \n"
+			+ "  } \n"
+			+ "} \n";
+
+	/**
+	 * Program dominated by arithmetic and relational expressions.
+	 */
+	private static final String ARITHMETIC = 
+			"transform main(int digital) { \n"
+			+ "  var int x = 17; \n"
+			+ "  var float y = 3.25; \n"
+			+ "  attr float a1 = (x * 3 + digital) / 2.0 + y ^ 2 - x % 4; \n"
+			+ "  attr float a2 = (a1 * y - x) * (a1 + y * 2) / (x + 1); \n"
+			+ "  attr int a3 = x * x - digital * 2 + (x - 3) * (x + 3); \n"
+			+ "  attr boolean a4 = a1 > a2 OR a3 <= 100 AND !(x == digital); \n"
+			+ "  attr float a5 = -a1 + -a2 * 2 - (a3 + 1) / 3; \n"
+			+ "} \n";
+
+	@Param({"counter", "arithmetic"})
+	public String program;
+
+	@Param({"visitor", "compiled"})
+	public String mode;
+
+	private CompiledProgram compiled;
+
+	private CompiledExpressions expressions;
+
+	@Setup
+	public void setup() {
+		compiled = CompiledProgram.parse("counter".equals(program) ? COUNTER : ARITHMETIC);
+		expressions = TransformationExpressionCompiler.compile(compiled.getTree());
+	}
+
+	@Benchmark
+	public MemorySpace execute() {
+		DefPhase def = compiled.define();
+		MemorySpace globals = new MemorySpace("globals");
+		globals.put("digital", new ASTNode(new Integer(250)));
+
+		Interpreter interpreter = new Interpreter(def.getGlobalScope(), globals, def.getScopes(), null);
+		if ("compiled".equals(mode)) {
+			interpreter.setCompiledExpressions(expressions);
+		}
+		interpreter.visit(compiled.getTree());
+		return globals;
+	}
+}
@@ -0,0 +1,112 @@
+package com.advicetec.language.transformation;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.advicetec.core.Attribute;
+import com.advicetec.core.AttributeType;
+import com.advicetec.measuredentitity.Machine;
+import com.advicetec.measuredentitity.MeasuredEntityFacade;
+import com.advicetec.monitorAdapter.protocolconverter.InterpretedSignal;
+import com.advicetec.persistence.MeasureAttributeValueCache;
+
+/**
+ * JMH benchmark of the execution of a transformation over a sample, as the sample processor does.
+ * <p>
+ * The programs are compiled once in the setup, as the transformation cache does, so the measure
+ * includes the definition phase, the interpretation and the reads of the status of the facade.
+ * The facade is created without the measured entity manager, so the benchmark does not need the
+ * configuration database. Run it from the iotmanufacturing folder, the facade reads the event
+ * manager configuration from the resources folder.
+ *
+ * @author advicetec
+ * @see InterpreterSw
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterSwBenchmark
+{
+	/**
+	 * Conversion of a counter signal.
+	 */
+	private static final String COUNTER =
+			"transform main(int digital) { \n"
+			+ "  var int previous = 120; \n"
+			+ "  var float factor = 0.5; \n"
+			+ "  attr int cycles = digital - previous; \n"
+			+ "  attr float velocity = (digital - previous) * factor / 60.0; \n"
+			+ "  attr boolean running = velocity > 0.1 AND cycles >= 1; \n"
+			+ "  if (running == false) { \n"
+			+ "    velocity = 0.0; \n"
+			+ "  } \n"
+			+ "} \n";
+
+	/**
+	 * Production pulse of an injection machine, it reads the status of the machine.
+	 */
+	private static final String MACHINE =
+			"transform main(int digital) { \n"
+			+ "  unit CYC \"Cycle\"; \n"
+			+ "  unit COT \"Cycles over time\"; \n"
+			+ "  var float producing_limit = 8; \n"
+			+ "  attr float conversion_factor = STATUS.conversion_factor; \n"
+			+ "  attr float producing_cot = STATUS.producing_cot unit COT; \n"
+			+ "  attr int testing_inv = STATUS.testing_inv; \n"
+			+ "  attr int production_pulse = digital; \n"
+			+ "  attr int part_pulse_masked = production_pulse; \n"
+			+ "  attr int part_pulse_total; \n"
+			+ "  attr float pulses_millares; \n"
+			+ "  if (producing_cot > producing_limit) { \n"
+			+ "    part_pulse_total = testing_inv * digital; \n"
+			+ "    pulses_millares = part_pulse_total * conversion_factor; \n"
+			+ "  } \n"
+			+ "} \n";
+
+	@Param({"counter", "machine"})
+	public String program;
+
+	private CompiledProgram compiled;
+
+	private MeasuredEntityFacade facade;
+
+	private List<InterpretedSignal> parameters;
+
+	@Setup
+	public void setup() {
+		MeasureAttributeValueCache.UpdateLastDateTimeStore(LocalDateTime.now().minusDays(1));
+		facade = new MeasuredEntityFacade(new Machine(1), "tasa_vel_esperada", "factor_conversion_kg_ciclo",
+								"factor_conversion_mil_ciclo", "ProductionPulseTotal", 3600);
+		facade.setAttributeValue(new Attribute("conversion_factor", AttributeType.DOUBLE), new Double(0.25));
+		facade.setAttributeValue(new Attribute("producing_cot", AttributeType.DOUBLE), new Double(12));
+		facade.setAttributeValue(new Attribute("testing_inv", AttributeType.INT), new Integer(1));
+
+		compiled = CompiledProgram.parse("counter".equals(program) ? COUNTER : MACHINE);
+		parameters = new ArrayList<InterpretedSignal>();
+		parameters.add(new InterpretedSignal(AttributeType.INT, new Integer(250)));
+	}
+
+	@Benchmark
+	public InterpreterSw process() throws Exception {
+		InterpreterSw interpreter = new InterpreterSw();
+		interpreter.process(compiled, facade, parameters);
+		return interpreter;
+	}
+}
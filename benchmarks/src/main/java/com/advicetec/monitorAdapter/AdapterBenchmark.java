@@ -0,0 +1,100 @@
+package com.advicetec.monitorAdapter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.advicetec.eventprocessor.ModBusTcpEventType;
+import com.advicetec.monitorAdapter.protocolconverter.InterpretedSignal;
+import com.advicetec.monitorAdapter.protocolconverter.PrimitiveTranslator;
+import com.advicetec.monitorAdapter.protocolconverter.Translator;
+import com.advicetec.monitorAdapter.protocolconverter.Translators;
+
+/**
+ * JMH benchmark of the adapter stage for a read of modbus registers.
+ * <p>
+ * The <code>dictionary</code> mode queues the read as a dictionary with a copy of the bytes, and creates
+ * the translator by reflection for every read, that returns a boxed interpreted signal for every register,
+ * as the adapter handler did before the typed readings. The <code>reading</code> mode takes a reading from
+ * the pool, decodes the registers with the cached translator into an array of primitive values and gives
+ * back the reading. Run it with the GC profiler (<code>-prof gc</code>), which reports the memory
+ * allocated by every read.
+ *
+ * @author advicetec
+ * @see ModbusReading
+ * @see Translators
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdapterBenchmark
+{
+	private static final String TRANSLATOR = "ModBusRegister";
+
+	@Param({"4", "64"})
+	public int registers;
+
+	/**
+	 * Modbus response: the byte count followed by two bytes per register.
+	 */
+	private byte[] response;
+
+	@Setup
+	public void setup() {
+		response = new byte[registers * 2 + 1];
+		response[0] = (byte) (registers * 2);
+		for (int i = 1; i < response.length; i++) {
+			response[i] = (byte) i;
+		}
+	}
+
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public List<InterpretedSignal> dictionary() throws Exception {
+		Map<String, Object> dictionary = new HashMap<String, Object>();
+		dictionary.put("IPAddress", "127.0.0.1");
+		dictionary.put("Port", 502);
+		dictionary.put("UID", 1);
+		dictionary.put("Offset", 0);
+		dictionary.put("Count", registers);
+		dictionary.put("Type", ModBusTcpEventType.READ_REGISTER);
+		dictionary.put("Concentrator", false);
+		dictionary.put("Read", response.clone());
+
+		byte[] data = (byte[]) dictionary.get("Read");
+		String classToLoad = Translator.class.getPackage().getName() + "." + TRANSLATOR;
+		Translator translator = (Translator) Class.forName(classToLoad).newInstance();
+		return translator.translate(data);
+	}
+
+	@Benchmark
+	public int[] reading() throws Exception {
+		ModbusReading reading = ModbusReading.obtain().set("127.0.0.1", 502, 1, 0, registers,
+				ModBusTcpEventType.READ_REGISTER, false, null);
+		System.arraycopy(response, 0, reading.allocate(response.length), 0, response.length);
+		try {
+			PrimitiveTranslator translator = (PrimitiveTranslator) Translators.get(TRANSLATOR);
+			int[] values = new int[translator.capacity(reading.getLength())];
+			translator.translate(reading.getBuffer(), 0, reading.getLength(), values);
+			return values;
+		} finally {
+			reading.recycle();
+		}
+	}
+}
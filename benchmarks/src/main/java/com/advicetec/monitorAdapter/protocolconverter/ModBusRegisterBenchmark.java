@@ -0,0 +1,66 @@
+package com.advicetec.monitorAdapter.protocolconverter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of the translation of a modbus read of holding registers.
+ * <p>
+ * The <code>signals</code> benchmark gives a list of interpreted signals, as the translation of the
+ * unified messages does. The <code>primitive</code> benchmark decodes the registers in a reused
+ * array, as the typed modbus readings do.
+ *
+ * @author advicetec
+ * @see ModBusRegister
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModBusRegisterBenchmark
+{
+	@Param({"4", "64"})
+	public int registers;
+
+	private ModBusRegister translator;
+
+	private byte[] payload;
+
+	private int[] values;
+
+	@Setup
+	public void setup() {
+		translator = new ModBusRegister();
+		// the first byte is the number of bytes read, two per register.
+		payload = new byte[1 + (registers * 2)];
+		payload[0] = (byte) (registers * 2);
+		for (int i = 1; i < payload.length; i++) {
+			payload[i] = (byte) (i * 31);
+		}
+		values = new int[translator.capacity(payload.length)];
+	}
+
+	@Benchmark
+	public List<InterpretedSignal> signals() {
+		return translator.translate(payload);
+	}
+
+	@Benchmark
+	public int primitive() {
+		return translator.translate(payload, 0, payload.length, values);
+	}
+}
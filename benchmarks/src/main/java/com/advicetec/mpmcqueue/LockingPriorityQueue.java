@@ -0,0 +1,101 @@
+package com.advicetec.mpmcqueue;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Previous implementation of the priority queue based on a global 
+ * <code>ReentrantLock</code> and a circular buffer guarded by a second lock 
+ * per priority. It is kept only as baseline for the queue benchmark.
+ * 
+ * @author advicetec
+ * @see PriorityQueueBenchmark
+ */
+public class LockingPriorityQueue<T> 
+{
+	private static final int MAX_PRIORITIES = 7;
+
+	private static final int MAX_QUEUE_LEN = 8192;
+
+	private final Object[][] vectors = new Object[MAX_PRIORITIES][MAX_QUEUE_LEN];
+	private final int[] heads = new int[MAX_PRIORITIES];
+	private final int[] tails = new int[MAX_PRIORITIES];
+	private final int[] counts = new int[MAX_PRIORITIES];
+	private final Lock[] locks = new Lock[MAX_PRIORITIES];
+	private final Condition[] notFull = new Condition[MAX_PRIORITIES];
+
+	private int count;
+	final Lock lock = new ReentrantLock();
+	final Condition notEmpty = lock.newCondition();
+
+	public LockingPriorityQueue() 
+	{
+		for (int i = 0; i < MAX_PRIORITIES; i++) {
+			locks[i] = new ReentrantLock();
+			notFull[i] = locks[i].newCondition();
+		}
+		count = 0;
+	}
+
+	public void enqueue(int priority, T obj) throws InterruptedException {
+		lock.lock();
+		try {
+			push(priority, obj);
+			count++;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public T pop() throws InterruptedException {
+		lock.lock();
+		try {
+			T obj = null;
+			while (count == 0)
+				notEmpty.await();
+			for (int i = 0; i < MAX_PRIORITIES; i++) {
+				obj = (T) nonwaitPop(i);
+				if (obj != null) {
+					break;
+				}
+			}
+			count--;
+			return obj;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void push(int priority, T obj) throws InterruptedException {
+		locks[priority].lock();
+		try {
+			while (counts[priority] == MAX_QUEUE_LEN) {
+				notFull[priority].await();
+			}
+			vectors[priority][heads[priority]] = obj;
+			if (++heads[priority] == MAX_QUEUE_LEN) heads[priority] = 0;
+			++counts[priority];
+		} finally {
+			locks[priority].unlock();
+		}
+	}
+
+	private Object nonwaitPop(int priority) {
+		locks[priority].lock();
+		try {
+			if (counts[priority] > 0) {
+				Object obj = vectors[priority][tails[priority]];
+				if (++tails[priority] == MAX_QUEUE_LEN) tails[priority] = 0;
+				counts[priority]--;
+				notFull[priority].signal();
+				return obj;
+			}
+			return null;
+		} finally {
+			locks[priority].unlock();
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.advicetec.mpmcqueue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of the priority queue shared by the adapter, message and event managers.
+ * <p>
+ * Every thread enqueues in its own priority and pops from the highest priority with elements,
+ * so the threads contend on the same queues as the producers and the consumers of a manager.
+ * The <code>single</code> benchmarks move one element per operation with 1, 2, 4, 8, 16 and 32
+ * threads, and the <code>batch</code> benchmark moves <code>batchSize</code> elements with
+ * <code>enqueueAll</code>, as the MQTT forwarder does. A thread never pops more elements than it
+ * enqueued, so the queue does not block at the end of the iterations.
+ * <p>
+ * The <code>impl</code> parameter selects the lock-free queue or the previous lock based queue,
+ * which does not enqueue in batches and ignores the wait strategy. The <code>instrumented</code>
+ * lock-free queue records its metrics, to measure the cost of the instrumentation. The redundant
+ * combinations of the lock based queue can be skipped with <code>-p impl=lockfree</code>.
+ *
+ * @author advicetec
+ * @see PriorityQueue
+ * @see LockingPriorityQueue
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class PriorityQueueBenchmark
+{
+	/**
+	 * Number of priorities of both queues.
+	 */
+	private static final int PRIORITIES = 7;
+
+	@Param({"lockfree", "locking"})
+	public String impl;
+
+	@Param({"park", "spin"})
+	public String waitStrategy;
+
+	@Param({"16"})
+	public int batchSize;
+
+	@Param({"false", "true"})
+	public boolean instrumented;
+
+	private PriorityQueue<Queueable> queue;
+
+	private LockingPriorityQueue<Queueable> lockingQueue;
+
+	private final AtomicInteger threads = new AtomicInteger();
+
+	@Setup
+	public void setup() {
+		if ("locking".equals(impl)) {
+			lockingQueue = new LockingPriorityQueue<Queueable>();
+		} else {
+			queue = new PriorityQueue<Queueable>(Queueable.class, WaitStrategy.fromName(waitStrategy));
+			if (instrumented) {
+				queue.instrument("PriorityQueueBenchmark");
+			}
+		}
+	}
+
+	/**
+	 * Priority and elements of a benchmark thread.
+	 */
+	@State(Scope.Thread)
+	public static class Producer
+	{
+		int priority;
+
+		Queueable[] batch;
+
+		@Setup
+		public void setup(PriorityQueueBenchmark benchmark) {
+			priority = benchmark.threads.getAndIncrement() % PRIORITIES;
+			batch = new Queueable[benchmark.batchSize];
+			for (int i = 0; i < batch.length; i++) {
+				batch[i] = new Queueable(QueueType.GENERIC, new Integer(i));
+			}
+		}
+	}
+
+	private Queueable single(Producer producer) throws InterruptedException {
+		if (lockingQueue != null) {
+			lockingQueue.enqueue(producer.priority, producer.batch[0]);
+			return lockingQueue.pop();
+		}
+		queue.enqueue(producer.priority, producer.batch[0]);
+		return queue.pop();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public Queueable single01(Producer producer) throws InterruptedException {
+		return single(producer);
+	}
+
+	@Benchmark
+	@Threads(2)
+	public Queueable single02(Producer producer) throws InterruptedException {
+		return single(producer);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Queueable single04(Producer producer) throws InterruptedException {
+		return single(producer);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public Queueable single08(Producer producer) throws InterruptedException {
+		return single(producer);
+	}
+
+	@Benchmark
+	@Threads(16)
+	public Queueable single16(Producer producer) throws InterruptedException {
+		return single(producer);
+	}
+
+	@Benchmark
+	@Threads(32)
+	public Queueable single32(Producer producer) throws InterruptedException {
+		return single(producer);
+	}
+
+	@Benchmark
+	public Queueable batch(Producer producer) throws InterruptedException {
+		Queueable last = null;
+		if (lockingQueue != null) {
+			for (int i = 0; i < batchSize; i++) {
+				lockingQueue.enqueue(producer.priority, producer.batch[i]);
+			}
+			for (int i = 0; i < batchSize; i++) {
+				last = lockingQueue.pop();
+			}
+			return last;
+		}
+		queue.enqueueAll(producer.priority, producer.batch, batchSize);
+		for (int i = 0; i < batchSize; i++) {
+			last = queue.pop();
+		}
+		return last;
+	}
+}
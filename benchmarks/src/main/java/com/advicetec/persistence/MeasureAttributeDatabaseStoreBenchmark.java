@@ -0,0 +1,111 @@
+package com.advicetec.persistence;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.advicetec.core.Attribute;
+import com.advicetec.core.AttributeType;
+import com.advicetec.core.AttributeValue;
+import com.advicetec.measuredentitity.MeasuredAttributeValue;
+import com.advicetec.measuredentitity.MeasuredEntityType;
+
+/**
+ * JMH benchmark of a flush of the measured attribute value cache into an embedded H2 database.
+ * <p>
+ * Every invocation splits the values in batches of <code>batchRows</code> rows and inserts them
+ * with the JDBC batch writer, as <code>MeasureAttributeDatabaseStore</code> does, so the measure
+ * includes the duplicate control, the batches and the commits. The table is emptied before every
+ * invocation.
+ *
+ * @author advicetec
+ * @see MeasureAttributeDatabaseStore
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MeasureAttributeDatabaseStoreBenchmark
+{
+	private static final String URL = "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1";
+
+	private static final String SQL_Create = "CREATE TABLE measuredattributevalue(id_owner INT, timestamp TIMESTAMP, "
+			+ "owner_type INT, attribute_name VARCHAR(50), value_decimal DOUBLE, value_datetime TIMESTAMP, "
+			+ "value_string VARCHAR(1000), value_int INT, value_boolean BOOLEAN, value_date DATE, value_time TIME, "
+			+ "PRIMARY KEY (id_owner, timestamp, owner_type, attribute_name))";
+
+	@Param({"500", "4000"})
+	public int batchRows;
+
+	@Param({"100000"})
+	public int rows;
+
+	private Map<String, AttributeValue> entries;
+
+	private Connection conn;
+
+	@Setup
+	public void setup() throws SQLException {
+		String[] attributes = {"speed", "temperature", "pressure", "counter", "state"};
+		LocalDateTime start = LocalDateTime.of(2017, 8, 12, 18, 0, 0);
+		entries = new LinkedHashMap<String, AttributeValue>();
+		for (int i = 0; i < rows; i++) {
+			MeasuredAttributeValue value = new MeasuredAttributeValue(new Attribute(attributes[i % attributes.length], AttributeType.DOUBLE),
+												new Double(i), 1 + (i % 50), MeasuredEntityType.MACHINE, start.plusSeconds(i / 250));
+			entries.put(value.getKey(), value);
+		}
+		conn = DriverManager.getConnection(URL);
+		Statement statement = conn.createStatement();
+		statement.execute("DROP TABLE IF EXISTS measuredattributevalue");
+		statement.execute(SQL_Create);
+		statement.close();
+	}
+
+	@Setup(Level.Invocation)
+	public void clear() throws SQLException {
+		conn.setAutoCommit(true);
+		Statement statement = conn.createStatement();
+		statement.execute("TRUNCATE TABLE measuredattributevalue");
+		statement.close();
+	}
+
+	@TearDown
+	public void close() throws SQLException {
+		conn.close();
+	}
+
+	@Benchmark
+	public int flush() throws SQLException {
+		MeasureAttributeDatabaseStore store = new MeasureAttributeDatabaseStore(entries, batchRows, org.apache.logging.log4j.Level.DEBUG);
+		Set<MeasuredAttributeValueKey> controlSet = new HashSet<MeasuredAttributeValueKey>((entries.size() * 4 / 3) + 1);
+		int inserted = 0;
+		for (List<AttributeValue> entry : MeasureAttributeDatabaseStore.split(entries, batchRows)) {
+			inserted += store.insert(conn, entry, controlSet);
+		}
+		return inserted;
+	}
+}
@@ -0,0 +1,58 @@
+package com.advicetec.utils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of the split of an interval in predefined periods, done for every OEE and trend
+ * request. The interval starts and ends in the middle of a minute, so the first and the last
+ * periods are partial, as in the requests.
+ *
+ * @author advicetec
+ * @see PeriodUtils#getPredefinedPeriods(LocalDateTime, LocalDateTime, String)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PeriodUtilsBenchmark
+{
+	/**
+	 * Interval of the periods: minutes, hours, days or months.
+	 */
+	@Param({"MN", "H", "D", "M"})
+	public String interval;
+
+	@Param({"1", "31"})
+	public int days;
+
+	private LocalDateTime from;
+
+	private LocalDateTime to;
+
+	@Setup
+	public void setup() {
+		from = LocalDateTime.of(2017, 8, 12, 18, 10, 25);
+		to = from.plusDays(days).plusMinutes(17).plusSeconds(12);
+	}
+
+	@Benchmark
+	public List<PredefinedPeriod> getPredefinedPeriods() {
+		return PeriodUtils.getPredefinedPeriods(from, to, interval);
+	}
+}
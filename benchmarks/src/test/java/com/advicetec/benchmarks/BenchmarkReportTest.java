@@ -0,0 +1,115 @@
+package com.advicetec.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.advicetec.benchmarks.BenchmarkReport.Comparison;
+import com.advicetec.benchmarks.BenchmarkReport.Score;
+
+public class BenchmarkReportTest
+{
+	private static Map<String, String> statuses(List<Comparison> comparisons) {
+		Map<String, String> ret = new HashMap<String, String>();
+		for (Comparison comparison : comparisons) {
+			ret.put(comparison.benchmark, comparison.status);
+		}
+		return ret;
+	}
+
+	@Test
+	public void ThresholdTest() {
+		Map<String, Score> baseline = new TreeMap<String, Score>();
+		Map<String, Score> current = new TreeMap<String, Score>();
+
+		// throughput, higher is better.
+		baseline.put("slower", new BenchmarkReport.Score("thrpt", 100, 2, "ops/ms"));
+		current.put("slower", new BenchmarkReport.Score("thrpt", 80, 2, "ops/ms"));
+		baseline.put("faster", new BenchmarkReport.Score("thrpt", 100, 2, "ops/ms"));
+		current.put("faster", new BenchmarkReport.Score("thrpt", 120, 2, "ops/ms"));
+		baseline.put("underThreshold", new BenchmarkReport.Score("thrpt", 100, 1, "ops/ms"));
+		current.put("underThreshold", new BenchmarkReport.Score("thrpt", 95, 1, "ops/ms"));
+
+		// average time, lower is better.
+		baseline.put("longer", new BenchmarkReport.Score("avgt", 10, 0.1, "ms/op"));
+		current.put("longer", new BenchmarkReport.Score("avgt", 12, 0.1, "ms/op"));
+		baseline.put("shorter", new BenchmarkReport.Score("avgt", 10, 0.1, "ms/op"));
+		current.put("shorter", new BenchmarkReport.Score("avgt", 8, 0.1, "ms/op"));
+
+		Map<String, String> statuses = statuses(BenchmarkReport.compare(baseline, current, 10));
+		assertEquals(BenchmarkReport.REGRESSION, statuses.get("slower"));
+		assertEquals(BenchmarkReport.IMPROVEMENT, statuses.get("faster"));
+		assertEquals(BenchmarkReport.UNCHANGED, statuses.get("underThreshold"));
+		assertEquals(BenchmarkReport.REGRESSION, statuses.get("longer"));
+		assertEquals(BenchmarkReport.IMPROVEMENT, statuses.get("shorter"));
+
+		// a larger threshold does not report the same changes.
+		statuses = statuses(BenchmarkReport.compare(baseline, current, 25));
+		assertEquals(BenchmarkReport.UNCHANGED, statuses.get("slower"));
+		assertEquals(BenchmarkReport.UNCHANGED, statuses.get("longer"));
+	}
+
+	@Test
+	public void ErrorTest() {
+		Map<String, Score> baseline = new TreeMap<String, Score>();
+		Map<String, Score> current = new TreeMap<String, Score>();
+
+		// 15% worse, but the difference is within the sum of both errors.
+		baseline.put("noisy", new BenchmarkReport.Score("thrpt", 100, 10, "ops/ms"));
+		current.put("noisy", new BenchmarkReport.Score("thrpt", 85, 6, "ops/ms"));
+		// the same change with a difference larger than both errors.
+		baseline.put("stable", new BenchmarkReport.Score("thrpt", 100, 10, "ops/ms"));
+		current.put("stable", new BenchmarkReport.Score("thrpt", 85, 4, "ops/ms"));
+
+		Map<String, String> statuses = statuses(BenchmarkReport.compare(baseline, current, 10));
+		assertEquals(BenchmarkReport.UNCHANGED, statuses.get("noisy"));
+		assertEquals(BenchmarkReport.REGRESSION, statuses.get("stable"));
+	}
+
+	@Test
+	public void MissingTest() {
+		Map<String, Score> baseline = new TreeMap<String, Score>();
+		Map<String, Score> current = new TreeMap<String, Score>();
+
+		baseline.put("removed", new BenchmarkReport.Score("thrpt", 100, 1, "ops/ms"));
+		current.put("added", new BenchmarkReport.Score("thrpt", 100, 1, "ops/ms"));
+		// a benchmark whose mode changed can not be compared.
+		baseline.put("mode", new BenchmarkReport.Score("thrpt", 100, 1, "ops/ms"));
+		current.put("mode", new BenchmarkReport.Score("avgt", 10, 1, "ms/op"));
+
+		List<Comparison> comparisons = BenchmarkReport.compare(baseline, current, 10);
+		assertEquals(3, comparisons.size());
+		for (Comparison comparison : comparisons) {
+			if ("removed".equals(comparison.benchmark)) {
+				assertEquals(BenchmarkReport.MISSING, comparison.status);
+				assertNull(comparison.current);
+			} else {
+				assertEquals(BenchmarkReport.NEW, comparison.status);
+				assertNull(comparison.baseline);
+			}
+		}
+	}
+
+	@Test
+	public void ParseTest() {
+		String json = "[{\"benchmark\":\"com.advicetec.A.run\",\"mode\":\"thrpt\",\"params\":{\"size\":\"10\",\"mode\":\"park\"},"
+				+ "\"primaryMetric\":{\"score\":12.5,\"scoreError\":\"NaN\",\"scoreUnit\":\"ops/ms\"}},"
+				+ "{\"benchmark\":\"com.advicetec.B.run\",\"mode\":\"avgt\","
+				+ "\"primaryMetric\":{\"score\":3.0,\"scoreError\":0.5,\"scoreUnit\":\"ms/op\"}}]";
+		Map<String, Score> scores = BenchmarkReport.parse(json);
+
+		// the parameters are sorted by name, an error not available counts as zero.
+		Score a = scores.get("com.advicetec.A.run(mode=park,size=10)");
+		assertEquals(12.5, a.score, 0.0);
+		assertEquals(0.0, a.error, 0.0);
+		Score b = scores.get("com.advicetec.B.run");
+		assertEquals("avgt", b.mode);
+		assertEquals(0.5, b.error, 0.0);
+	}
+}
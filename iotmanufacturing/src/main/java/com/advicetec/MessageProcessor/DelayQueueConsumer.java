@@ -1,5 +1,7 @@
 package com.advicetec.MessageProcessor;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 
 import org.apache.logging.log4j.LogManager;
@@ -19,6 +21,8 @@ import com.advicetec.mpmcqueue.Queueable;
  * This class implements the Runnable interface to be threaded.
  * The <code>run</code> method takes events out from the Delayed Queue,
  * then re-processes them by sending their references to the EventManager.
+ * After waiting for an event, it also drains the rest of the events already expired, 
+ * so the events expiring in the same tick are handed off together.
  * 
  * @author advicetec
  * @see EventManager
@@ -30,6 +34,11 @@ public class DelayQueueConsumer implements Runnable
 	
 	private final static int DEFAULT_PRIORITY = 6;
 	
+	/**
+	 * Maximum number of expired events handed off at once.
+	 */
+	private final static int MAX_BATCH = 1000;
+	
 	private String name;
 	/**
 	 * Queue with Delayed Events.
@@ -49,17 +58,24 @@ public class DelayQueueConsumer implements Runnable
 	public void run() 
 	{
 		boolean interruptedException = false;
+		List<DelayEvent> batch = new ArrayList<DelayEvent>();
 		while (true && !interruptedException) {
 			try {
-				// Take elements out from the DelayQueue object.
-				DelayEvent object = (DelayEvent) queue.take();
-				logger.debug("passing event:" + object.getId() + 
-						" startdttm:" + object.getStartTime() +  
-						" event type:" + object.getEvent().getEvntType().getName() + 
-						" event info:" + object.getEvent().toString() + "  queue size: " + queue.size());
-				// gets the event and queues it to be reprocessed by the EventManager
-				Queueable obj = new Queueable(QueueType.EVENT, object.getEvent());
-				eventManager.getQueue().enqueue(DEFAULT_PRIORITY,obj);
+				// Take elements out from the DelayQueue object, with the rest of the elements already expired.
+				batch.clear();
+				batch.add((DelayEvent) queue.take());
+				queue.drainTo(batch, MAX_BATCH - 1);
+				for (DelayEvent object : batch) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("passing event:" + object.getId() + 
+								" startdttm:" + object.getStartTime() +  
+								" event type:" + object.getEvent().getEvntType().getName() + 
+								" event info:" + object.getEvent().toString() + "  queue size: " + queue.size());
+					}
+					// gets the event and queues it to be reprocessed by the EventManager
+					Queueable obj = new Queueable(QueueType.EVENT, object.getEvent());
+					eventManager.getQueue().enqueue(DEFAULT_PRIORITY,obj);
+				}
 				// gets the number of elements on each queue.
 				int[] size = eventManager.getQueue().size();
 				String sizeStr = "";
@@ -7,7 +7,6 @@ import java.util.concurrent.BlockingQueue;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.advicetec.mpmcqueue.PriorityQueue;
 import com.advicetec.mpmcqueue.QueueType;
 import com.advicetec.mpmcqueue.Queueable;
 
@@ -20,12 +19,16 @@ import com.advicetec.mpmcqueue.Queueable;
  * Message format; then the message queued to be attended by a specialized 
  * processor, e.g. a <code>SampleProcessor</code>.
  * Also, it creates a future event if the processor requires it.
+ * <p>
+ * Every handler is the only consumer of a lane, so the messages of a 
+ * measured entity are processed in order by the same handler.
  * 
  * @author advicetec
  * @see UnifiedMessage
  * @see SampleMessage
  * @see SampleProcessor
  * @see DelayEvent
+ * @see MessageLanes
  * 
  */
 public class MessageHandler implements Runnable
@@ -33,9 +36,14 @@ public class MessageHandler implements Runnable
 
 	static final Logger logger = LogManager.getLogger(MessageHandler.class.getName()); 
 	/**
-	 * Origin queue in Unified Message format.
+	 * Origin lanes in Unified Message format.
 	 */
-	private PriorityQueue fromQueue;
+	private MessageLanes fromLanes;
+
+	/**
+	 * Lane consumed by this handler.
+	 */
+	private int lane;
 
 	/**
 	 * queue that holds events.
@@ -43,25 +51,29 @@ public class MessageHandler implements Runnable
 	private BlockingQueue toQueue;
 
 
-	public MessageHandler(PriorityQueue fromQueue, BlockingQueue toQueue) {
+	public MessageHandler(MessageLanes fromLanes, int lane, BlockingQueue toQueue) {
 		super();
-		this.fromQueue = fromQueue;
+		this.fromLanes = fromLanes;
+		this.lane = lane;
 		this.toQueue = toQueue;
 	}
 
 	public void run() {
 		boolean interruptedException = false;
 		while (true && !interruptedException){
+			MessageLanes.Entry entry = null;
 			try {
 				
-				
-				Queueable obj = (Queueable) fromQueue.pop();
+				entry = fromLanes.take(lane);
+				Queueable obj = entry.getContent();
 
 				// interprets the unified message
 				if (obj.getType() == QueueType.UNIFIED_MESSAGE)
 				{
 					UnifiedMessage um = (UnifiedMessage) obj.getContent();
-					logger.debug("Elements in the message adapter: " + fromQueue.size()[6]+"   um.getType() "+um.getType());
+					if (logger.isDebugEnabled()) {
+						logger.debug("Elements in the message lane " + lane + ": " + fromLanes.depths()[lane] + "   um.getType() "+um.getType());
+					}
 					switch (um.getType())
 					{
 					// process a message of SAMPLE type
@@ -137,6 +149,10 @@ public class MessageHandler implements Runnable
 			} catch (SQLException e){
 				logger.error("SQLException: " + e.getMessage());
 				e.printStackTrace();
+			} finally {
+				if (entry != null) {
+					fromLanes.done(entry);
+				}
 			}
 		}
 
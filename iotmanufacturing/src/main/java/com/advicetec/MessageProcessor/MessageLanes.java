@@ -0,0 +1,431 @@
+package com.advicetec.MessageProcessor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.advicetec.mpmcqueue.Queue;
+import com.advicetec.mpmcqueue.Queueable;
+import com.advicetec.mpmcqueue.WaitStrategy;
+
+/**
+ * This class distributes the unified messages among a fixed number of lanes, every lane is a
+ * queue with a single consumer (a <code>MessageHandler</code>).
+ * <p>
+ * The messages of a measured entity always go to the same lane, so they are processed in the
+ * order they arrived and the handlers do not contend for the same entity facade.
+ * The lane of an entity is given by a consistent hash ring with several virtual nodes per lane.
+ * <p>
+ * The lanes can be rebalanced when the depth of a lane stays high. The entities of that lane
+ * are moved to the lane with the lowest depth, starting with the entities that received more
+ * messages since the last check. An entity with messages pending moves in two steps: its new
+ * messages are held on its route until the previous lane processed the pending ones, and then
+ * they are queued in the new lane. So the messages of an entity are never processed out of
+ * order nor by two lanes at the same time. A route holds at most the overload depth of a lane,
+ * beyond that the producer waits as if the lane were full.
+ *
+ * @author advicetec
+ * @see MessageHandler
+ * @see MessageManager
+ */
+public class MessageLanes
+{
+
+	static Logger logger = LogManager.getLogger(MessageLanes.class.getName());
+
+	/**
+	 * Number of points of every lane in the hash ring.
+	 */
+	private static final int VIRTUAL_NODES = 64;
+
+	/**
+	 * Assignment of a measured entity to a lane.
+	 */
+	private static final class Route
+	{
+		/**
+		 * Lane that processes the messages of the entity.
+		 */
+		volatile int lane;
+
+		/**
+		 * Number of messages of the entity queued or being processed.
+		 */
+		final AtomicInteger pending = new AtomicInteger();
+
+		/**
+		 * Number of messages of the entity received since the last check of the lanes.
+		 */
+		final AtomicInteger received = new AtomicInteger();
+
+		/**
+		 * Messages held while the entity moves to another lane, null if it is not moving.
+		 * It is guarded by the monitor of the route, and bounded by the maximum depth.
+		 */
+		List<Entry> held;
+
+		Route(int lane) {
+			this.lane = lane;
+		}
+	}
+
+	/**
+	 * Message queued in a lane with the route of its entity.
+	 */
+	public static final class Entry
+	{
+		private final Route route;
+		private final Queueable content;
+
+		Entry(Route route, Queueable content) {
+			this.route = route;
+			this.content = content;
+		}
+
+		/**
+		 * Returns the queued message.
+		 * @return the queued message.
+		 */
+		public Queueable getContent() {
+			return content;
+		}
+	}
+
+	/**
+	 * Queue of every lane.
+	 */
+	private final Queue<Entry>[] lanes;
+
+	/**
+	 * Strategy used while a lane is full or a route holds the maximum of messages.
+	 */
+	private final WaitStrategy waitStrategy;
+
+	/**
+	 * Hash ring, it maps every point to a lane.
+	 */
+	private final TreeMap<Integer, Integer> ring = new TreeMap<Integer, Integer>();
+
+	/**
+	 * Routes of the measured entities.
+	 */
+	private final Map<Integer, Route> routes = new ConcurrentHashMap<Integer, Route>();
+
+	/**
+	 * Depth from which a lane is considered overloaded, and maximum of messages held by a route.
+	 */
+	private final int maxDepth;
+
+	/**
+	 * Number of consecutive checks with a lane overloaded before rebalancing it.
+	 */
+	private final int checks;
+
+	/**
+	 * Number of consecutive checks that every lane has been overloaded.
+	 */
+	private final int[] overloaded;
+
+	/**
+	 * Constructor for the class.
+	 *
+	 * @param number		number of lanes.
+	 * @param waitStrategy	strategy used when a lane is empty or full.
+	 * @param maxDepth		depth from which a lane is considered overloaded, and maximum of messages
+	 * 						held by an entity that moves to another lane.
+	 * @param checks		number of consecutive checks with a lane overloaded before rebalancing it.
+	 */
+	@SuppressWarnings("unchecked")
+	public MessageLanes(int number, WaitStrategy waitStrategy, int maxDepth, int checks)
+	{
+		this.lanes = new Queue[number];
+		for (int i = 0; i < number; i++) {
+			this.lanes[i] = new Queue<Entry>(Entry.class, waitStrategy);
+			for (int j = 0; j < VIRTUAL_NODES; j++) {
+				this.ring.put(hash((i * 0x632BE5AB) + (j * 0x7FEB352D) + 0x68E31DA4), i);
+			}
+		}
+		this.waitStrategy = waitStrategy;
+		this.maxDepth = Math.max(1, maxDepth);
+		this.checks = Math.max(1, checks);
+		this.overloaded = new int[number];
+	}
+
+	private static int hash(int value)
+	{
+		// spreads consecutive values over the ring (murmur3 finalizer).
+		int h = value;
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * Gets the number of lanes.
+	 *
+	 * @return number of lanes.
+	 */
+	public int size()
+	{
+		return lanes.length;
+	}
+
+	/**
+	 * Gets the lane given by the hash ring for a measured entity.
+	 *
+	 * @param entity	measured entity identifier.
+	 * @return lane index.
+	 */
+	int getRingLane(Integer entity)
+	{
+		Map.Entry<Integer, Integer> point = ring.ceilingEntry(hash(entity));
+		if (point == null) {
+			point = ring.firstEntry();
+		}
+		return point.getValue();
+	}
+
+	/**
+	 * Gets the lane currently assigned to a measured entity.
+	 *
+	 * @param entity	measured entity identifier.
+	 * @return lane index.
+	 */
+	public int getLane(Integer entity)
+	{
+		Route route = routes.get(entity);
+		return (route == null) ? getRingLane(entity) : route.lane;
+	}
+
+	/**
+	 * Queues a message in the lane of its measured entity. The messages that do not
+	 * belong to a measured entity are queued in the first lane. It waits while the lane
+	 * is full, or while the entity is moving and its route holds the maximum of messages.
+	 *
+	 * @param obj	message to queue.
+	 * @throws InterruptedException if the thread is interrupted while the lane or the route is full.
+	 */
+	public void enqueue(Queueable obj) throws InterruptedException
+	{
+		Integer entity = null;
+		if (obj.getContent() instanceof MeasuringMessage) {
+			entity = ((MeasuringMessage) obj.getContent()).getmEntity();
+		}
+
+		if (entity == null) {
+			lanes[0].push(new Entry(null, obj));
+			return;
+		}
+
+		Route route = routes.computeIfAbsent(entity, key -> new Route(getRingLane(key)));
+		Entry entry = new Entry(route, obj);
+		route.received.incrementAndGet();
+		int lane;
+		int counter = 0;
+		// the message is counted as pending before the lane is read, so the route does not
+		// move to another lane until it is processed. The lane can be full, so it is pushed
+		// outside the monitor.
+		while (true) {
+			synchronized (route) {
+				if (route.held == null) {
+					route.pending.incrementAndGet();
+					lane = route.lane;
+					break;
+				}
+				if (route.held.size() < maxDepth) {
+					route.held.add(entry);
+					lane = -1;
+					break;
+				}
+			}
+			// the held messages are bounded as the lanes, the producer waits until they are released.
+			release(route);
+			waitStrategy.idle(counter);
+			if (counter < Integer.MAX_VALUE) {
+				counter++;
+			}
+		}
+
+		if (lane < 0) {
+			release(route);
+		} else {
+			lanes[lane].push(entry);
+		}
+	}
+
+	/**
+	 * Queues in the new lane the messages held by a route that is moving, once the previous lane
+	 * processed all the messages of the entity. The messages are offered in order without waiting,
+	 * if the new lane is full the rest stay held until the next message of the entity, the next
+	 * message processed or the next check of the lanes.
+	 *
+	 * @param route	route of the entity.
+	 */
+	private void release(Route route)
+	{
+		synchronized (route) {
+			if ((route.held == null) || (route.pending.get() > 0)) {
+				return;
+			}
+			Queue<Entry> lane = lanes[route.lane];
+			int count = 0;
+			while (count < route.held.size()) {
+				route.pending.incrementAndGet();
+				if (!lane.offer(route.held.get(count))) {
+					route.pending.decrementAndGet();
+					break;
+				}
+				count++;
+			}
+			if (count == route.held.size()) {
+				route.held = null;
+			} else {
+				route.held.subList(0, count).clear();
+			}
+		}
+	}
+
+	/**
+	 * Takes the next message of a lane, it waits while the lane is empty.
+	 * The consumer must call <code>done</code> once the message is processed.
+	 *
+	 * @param lane	lane index.
+	 * @return the next entry of the lane.
+	 * @throws InterruptedException if the thread is interrupted.
+	 */
+	public Entry take(int lane) throws InterruptedException
+	{
+		return lanes[lane].pop();
+	}
+
+	/**
+	 * Registers that a message taken from a lane was processed.
+	 *
+	 * @param entry	entry processed.
+	 */
+	public void done(Entry entry)
+	{
+		if ((entry.route != null) && (entry.route.pending.decrementAndGet() == 0)) {
+			release(entry.route);
+		}
+	}
+
+	/**
+	 * Records the metrics of every lane in the <code>MetricsRegistry</code>.
+	 * It has to be called before the lanes are shared with the handlers.
+	 *
+	 * @param stage	stage that consumes the lanes.
+	 */
+	public void instrument(String stage)
+	{
+		for (int i = 0; i < lanes.length; i++) {
+			lanes[i].instrument(stage, String.valueOf(i));
+		}
+	}
+
+	/**
+	 * Returns the number of messages queued in every lane.
+	 *
+	 * @return array with the depth of every lane.
+	 */
+	public int[] depths()
+	{
+		int[] ret = new int[lanes.length];
+		for (int i = 0; i < lanes.length; i++) {
+			ret[i] = lanes[i].size();
+		}
+		return ret;
+	}
+
+	/**
+	 * Checks the depth of the lanes, and moves entities out of the lanes that have been
+	 * overloaded during the configured number of consecutive checks. The entities with messages
+	 * pending hold their new messages until the previous lane processed the pending ones.
+	 * It is called periodically by a single thread.
+	 *
+	 * @return number of entities moved.
+	 */
+	public int rebalance()
+	{
+		// the entities whose messages could not be queued in their new lane.
+		for (Route route : routes.values()) {
+			release(route);
+		}
+
+		int[] depths = depths();
+		int moved = 0;
+		for (int i = 0; i < lanes.length; i++) {
+			overloaded[i] = (depths[i] > maxDepth) ? overloaded[i] + 1 : 0;
+		}
+
+		for (int i = 0; i < lanes.length; i++) {
+			if (overloaded[i] < checks) {
+				continue;
+			}
+			overloaded[i] = 0;
+
+			int target = 0;
+			for (int j = 1; j < lanes.length; j++) {
+				if (depths[j] < depths[target]) {
+					target = j;
+				}
+			}
+			if ((depths[target] * 2) >= depths[i]) {
+				continue;
+			}
+
+			// moves up to half of the messages received by the lane since the last check.
+			List<Route> candidates = new ArrayList<Route>();
+			long received = 0;
+			for (Route route : routes.values()) {
+				if ((route.lane == i) && !isMoving(route)) {
+					candidates.add(route);
+					received += route.received.get();
+				}
+			}
+			Collections.sort(candidates, (a, b) -> Integer.compare(b.received.get(), a.received.get()));
+
+			long movedReceived = 0;
+			int movedLane = 0;
+			for (Route route : candidates) {
+				int routeReceived = route.received.get();
+				if ((movedReceived + routeReceived) > (received / 2)) {
+					continue;
+				}
+				synchronized (route) {
+					if (route.pending.get() > 0) {
+						// the messages received from now on wait for the pending ones.
+						route.held = new ArrayList<Entry>();
+					}
+					route.lane = target;
+				}
+				movedReceived += routeReceived;
+				movedLane++;
+			}
+			moved += movedLane;
+			logger.info("Lane " + i + " depth:" + depths[i] + " overloaded, moved " + movedLane + " entities to lane " + target);
+		}
+
+		for (Route route : routes.values()) {
+			route.received.set(0);
+		}
+		return moved;
+	}
+
+	private static boolean isMoving(Route route)
+	{
+		synchronized (route) {
+			return route.held != null;
+		}
+	}
+}
@@ -4,13 +4,17 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.advicetec.configuration.ConfigurationManager;
 import com.advicetec.core.Manager;
+import com.advicetec.mpmcqueue.WaitStrategy;
 
 /**
  * This class implements a singleton instance to manage a pool of Message 
@@ -28,12 +32,17 @@ import com.advicetec.core.Manager;
  * The <code>run</code> method creates the pool of threads assigned to 
  * <code>MessageHandler</code>, and instantiates a thread for managing delayed 
  * events.
+ * <p>
+ * The unified messages are distributed in lanes by measured entity, every
+ * <code>MessageHandler</code> consumes a single lane. A daemon thread 
+ * rebalances the lanes that stay overloaded.
  * 
- * Later the <code>AdapterHandler</code> uses this object's queue as origin 
- * queue and <code>MessageManager</code> as destination queue.
+ * Later the <code>AdapterHandler</code> uses this object's lanes as 
+ * destination queue.
  * 
  * @see AdapterManager
  * @see MessageHandler
+ * @see MessageLanes
  */
 public class MessageManager extends Manager 
 {
@@ -50,6 +59,18 @@ public class MessageManager extends Manager
 	 * Inventory of delayed events.
 	 */
 	private ConcurrentHashMap<String, Boolean> delayedTypeEvents = null;
+	/**
+	 * Lanes of unified messages, one per message handler.
+	 */
+	private MessageLanes lanes = null;
+	/**
+	 * Milliseconds between two checks of the lanes depth.
+	 */
+	private long rebalanceInterval = 1000;
+	/**
+	 * Thread that rebalances the lanes.
+	 */
+	private ScheduledExecutorService rebalancer = null;
 	/**
 	 * Returns the singleton instance of this manager.
 	 * @return the singleton instance of this manager.
@@ -64,30 +85,82 @@ public class MessageManager extends Manager
 	 * Sets the configuration from the .properties file.
 	 * Creates a singleton instance of AdapterManager and also sets the 
 	 * instance of MessageManager.
+	 * 
+	 * The properties used are:
+	 *      NumProcessHandlers: number of message handlers, and of lanes.
+	 *      LaneMaxDepth: depth from which a lane is considered overloaded, and maximum of messages held by a moving entity.
+	 *      LaneRebalanceChecks: consecutive checks with a lane overloaded before moving entities out of it.
+	 *      LaneRebalanceInterval: milliseconds between two checks of the lanes depth.
 	 */
 	private MessageManager() 
 	{
 		super("MessageManager");	
 		this.confManager = ConfigurationManager.getInstance();
-		this.delayedQueue = new DelayQueue<DelayEvent>();
+		this.delayedQueue = new TimingWheel();
 		this.delayedTypeEvents = new ConcurrentHashMap<String, Boolean>();
+
+		int number = Integer.valueOf(getProperty("NumProcessHandlers"));
+
+		int maxDepth = 1000;
+		if (getProperty("LaneMaxDepth") != null) {
+			maxDepth = Integer.valueOf(getProperty("LaneMaxDepth").trim());
+		}
+
+		int checks = 3;
+		if (getProperty("LaneRebalanceChecks") != null) {
+			checks = Integer.valueOf(getProperty("LaneRebalanceChecks").trim());
+		}
+
+		if (getProperty("LaneRebalanceInterval") != null) {
+			this.rebalanceInterval = Long.valueOf(getProperty("LaneRebalanceInterval").trim());
+		}
+
+		WaitStrategy waitStrategy = WaitStrategy.fromName(getProperty(WaitStrategy.PROPERTY_NAME));
+		this.lanes = new MessageLanes(number, waitStrategy, maxDepth, checks);
+		this.lanes.instrument("MessageManager");
 	}	
 	
+	/**
+	 * Returns the lanes where the unified messages are queued.
+	 * @return the lanes of unified messages.
+	 */
+	public MessageLanes getLanes() {
+		return this.lanes;
+	}
+	
 	/**
 	 * 
 	 */
 	public void run() 
 	{
-		int number = Integer.valueOf(getProperty("NumProcessHandlers"));
+		int number = this.lanes.size();
 		logger.debug("Start Message Manager run: " + number);
 		List<Thread> listThread =  new ArrayList<Thread>();
-		// creates threads for each message handler
+		// creates threads for each message handler, one per lane
 		for (int i = 0; i < number; i++) 
 		{
-			Thread t = new Thread( new MessageHandler(instance.getQueue(), this.delayedQueue) );
+			Thread t = new Thread( new MessageHandler(this.lanes, i, this.delayedQueue) );
 			t.start();
 			listThread.add(t);
 		}
+
+		// Thread to rebalance the lanes
+		this.rebalancer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "MessageLaneRebalancer");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.rebalancer.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					lanes.rebalance();
+				} catch (Exception e) {
+					logger.error("Error rebalancing the message lanes - Message:" + e.getMessage());
+				}
+			}
+		}, this.rebalanceInterval, this.rebalanceInterval, TimeUnit.MILLISECONDS);
 		// Thread to manage delayed events
 		Thread delayConsumer = new Thread(new DelayQueueConsumer("ProcessConsumer", this.delayedQueue));
 		delayConsumer.start();
@@ -1,8 +1,10 @@
 package com.advicetec.MessageProcessor;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.advicetec.configuration.InputOutputPort;
+import com.advicetec.core.AttributeType;
 import com.advicetec.configuration.MonitoringDevice;
 import com.advicetec.monitorAdapter.protocolconverter.InterpretedSignal;
 
@@ -10,6 +12,10 @@ import com.advicetec.monitorAdapter.protocolconverter.InterpretedSignal;
  * This class models a Message that as result of Measuring a Sample.
  * It comprises a list of values, represented by Interpreted Signals, and a 
  * Transformation that gives a meaning to this <i>sample</i>.
+ * <p>
+ * The values can also be given as an array of primitive values of the same
+ * type, in that case the interpreted signals are created the first time they
+ * are requested.
  * 
  * @author advicetec
  * @see InterpretedSignal
@@ -21,6 +27,14 @@ public class SampleMessage extends MeasuringMessage
 	 * List of values that come from signals.
 	 */
 	List<InterpretedSignal> values;
+	/**
+	 * Primitive values, when the sample was decoded without interpreted signals.
+	 */
+	private int[] primitiveValues;
+	/**
+	 * Type of the primitive values, BOOLEAN (1 or 0) or INT.
+	 */
+	private AttributeType valueType;
 	/**
 	 * Transformation that gives meaning to those values.
 	 */
@@ -42,9 +56,28 @@ public class SampleMessage extends MeasuringMessage
 		this.values = values;
 		this.meaningTransformation = meaningTransformation;
 	}
+
+	/**
+	 * Constructor from primitive values.
+	 * @param device to be monitored.
+	 * @param port number that sends singnals.
+	 * @param entityId identifier of the measured entity
+	 * @param valueType type of the values, BOOLEAN (1 or 0) or INT.
+	 * @param primitiveValues values that compose this sample.
+	 * @param meaningTransformation name of the transformation.
+	 */
+	public SampleMessage(MonitoringDevice device, InputOutputPort port, 
+			Integer entityId, AttributeType valueType, int[] primitiveValues, 
+			String meaningTransformation) 
+	{
+		super(UnifiedMessageType.SAMPLE, device, port, entityId);
+		this.valueType = valueType;
+		this.primitiveValues = primitiveValues;
+		this.meaningTransformation = meaningTransformation;
+	}
 	
 	public String toString(){
-		return "Sample Message: Type = "+getType().getName()+" value = "+ values.toString();
+		return "Sample Message: Type = "+getType().getName()+" value = "+ getValues().toString();
 	}
 	
 	/**
@@ -61,6 +94,35 @@ public class SampleMessage extends MeasuringMessage
 	 * @return the list of values associated to this sample.
 	 */
 	public List<InterpretedSignal> getValues() {
+		if ((values == null) && (primitiveValues != null)) {
+			List<InterpretedSignal> list = new ArrayList<InterpretedSignal>(primitiveValues.length);
+			for (int value : primitiveValues) {
+				if (valueType == AttributeType.BOOLEAN) {
+					list.add(new InterpretedSignal(valueType, Boolean.valueOf(value == 1)));
+				} else {
+					list.add(new InterpretedSignal(valueType, Integer.valueOf(value)));
+				}
+			}
+			values = list;
+		}
 		return values;
 	}
+
+	/**
+	 * Returns the primitive values of this sample.
+	 * @return the primitive values, or null if the sample was created with 
+	 * interpreted signals.
+	 */
+	public int[] getPrimitiveValues() {
+		return primitiveValues;
+	}
+
+	/**
+	 * Returns the type of the primitive values of this sample.
+	 * @return the type of the primitive values, or null if the sample was 
+	 * created with interpreted signals.
+	 */
+	public AttributeType getValueType() {
+		return valueType;
+	}
 }
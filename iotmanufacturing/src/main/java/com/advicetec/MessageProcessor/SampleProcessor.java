@@ -27,11 +27,17 @@ import com.advicetec.language.ast.TimerSymbol;
 import com.advicetec.language.ast.AggregateSymbol;
 import com.advicetec.language.ast.TransformationSymbol;
 import com.advicetec.language.ast.UnitMeasureSymbol;
+import com.advicetec.language.transformation.CompiledProgram;
 import com.advicetec.language.transformation.InterpreterSw;
 import com.advicetec.language.transformation.SyntaxChecking;
+import com.advicetec.language.transformation.TransformationProgramCache;
 import com.advicetec.measuredentitity.MeasuredEntityFacade;
 import com.advicetec.measuredentitity.MeasuredEntityManager;
 import com.advicetec.measuredentitity.MeasuredEntityType;
+import com.advicetec.metrics.Counter;
+import com.advicetec.metrics.Histogram;
+import com.advicetec.metrics.MetricFamily;
+import com.advicetec.metrics.MetricsRegistry;
 import com.advicetec.monitorAdapter.protocolconverter.InterpretedSignal;
 
 /**
@@ -46,6 +52,21 @@ import com.advicetec.monitorAdapter.protocolconverter.InterpretedSignal;
 public class SampleProcessor implements Processor 
 {
 	static final Logger logger = LogManager.getLogger(SampleProcessor.class.getName());
+	/**
+	 * Processing time of the samples by measured entity.
+	 */
+	private static final MetricFamily<Histogram> processingTime = MetricsRegistry.getInstance().latency(
+			"iot_sample_processing_seconds", "Processing time of the samples, by measured entity.", "entity");
+	/**
+	 * Time from the read of the sample in the adapter until its values are stored in the facade.
+	 */
+	private static final Histogram ingestToFacade = MetricsRegistry.getInstance().latency(
+			"iot_ingest_to_facade_seconds", "Time from the read of the samples until they are stored in the facade.").labels();
+	/**
+	 * Samples whose values were stored in the facade.
+	 */
+	private static final Counter samplesStored = MetricsRegistry.getInstance().counter(
+			"iot_samples_stored_total", "Samples whose values were stored in the facade.").labels();
 	/**
 	 * Sample Message to be processed.
 	 */
@@ -78,9 +99,11 @@ public class SampleProcessor implements Processor
 	 * 
 	 * @return list of delayed events related to this object.
 	 * @see SyntaxChecking
+	 * @see TransformationProgramCache
 	 */
 	public List<DelayEvent> process() throws SQLException 
 	{
+		long start = System.nanoTime();
 		// Finds the measuring Entity involved. The string value is always not null
 		Integer measuringEntity = sample.getmEntity();
 		Integer measuringDevice = sample.getmDevice().getId();
@@ -97,23 +120,31 @@ public class SampleProcessor implements Processor
 			logger.error("Measured Entity not found - id:"+ measuringEntity );
 		} else {
 
-			SyntaxChecking sintaxChecking = new SyntaxChecking();
 			try 
 			{
-				// First, we verify the transformation.
-				List<SyntaxError> errorList = sintaxChecking.process(program, measuringEntity);
+				// First, we verify the transformation. The compiled program is reused between samples.
+				CompiledProgram compiled = TransformationProgramCache.getInstance().getCompiledProgram(program, measuringEntity);
+				List<SyntaxError> errorList = compiled.getErrors();
 				
 				// If no errors, then process.
 				if (errorList.size() == 0){ 
 					// Then, we read parameters from message and pass them to 
-					// the interpreter as global variables.
-					List<InterpretedSignal> list = sample.getValues();
+					// the interpreter as global variables. The primitive values 
+					// are given as they are, without interpreted signals.
 					InterpreterSw interpreter = new InterpreterSw();
-					interpreter.process(program,measuringEntity,list);
+					if (sample.getPrimitiveValues() != null) {
+						interpreter.process(compiled,measuringEntity,sample.getPrimitiveValues(),sample.getValueType());
+					} else {
+						interpreter.process(compiled,measuringEntity,sample.getValues());
+					}
 					// stores the status of attributes
 					entityFacade.importSymbols(interpreter.getGlobalScope().getSymbolMap(), AttributeOrigin.TRANSFORMATION);
 					entityFacade.importAttributeValues(interpreter.getGlobalAttributes());
 					((MeasuredEntityFacade) entityFacade).setCurrentState(interpreter.getState());
+					samplesStored.inc();
+					if (sample.getIngestedNanos() != 0) {
+						ingestToFacade.observeSince(sample.getIngestedNanos());
+					}
 
 					Map<String, Symbol> symbols =  interpreter.getGlobalScope().getSymbolMap();
 
@@ -214,6 +245,7 @@ public class SampleProcessor implements Processor
 				e1.printStackTrace();
 			}		
 		}
+		processingTime.labels(String.valueOf(measuringEntity)).observeSince(start);
 		return ret;
 	}
 
@@ -0,0 +1,791 @@
+package com.advicetec.MessageProcessor;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.advicetec.eventprocessor.Event;
+import com.advicetec.measuredentitity.MeasuredEntityType;
+
+/**
+ * Hashed hierarchical timing wheel that keeps the delayed events until their time expires.
+ * <p>
+ * The time is divided in ticks, and the wheel has six levels of 64 slots each. The first level holds the
+ * events of the next 64 ticks, the second level those of the next 64 x 64 ticks, and so on. When the ticks
+ * of a level complete a turn, the next slot of the upper level is moved to the lower levels. Scheduling and
+ * cancelling an event are constant time operations, the events are linked in the slots and indexed by their
+ * event key. The keys are indexed by the measured entity of their events, so the events of an entity are
+ * cancelled without going through the whole wheel.
+ * <p>
+ * The class is a <code>BlockingQueue</code> like <code>DelayQueue</code>: only the expired events are
+ * taken, polled or drained, so <code>drainTo</code> hands off all the events expired in the same tick at once.
+ * The events are never taken before their time, the delay is rounded up to the tick.
+ * <p>
+ * When the phase spreading is enabled, the events repeated with the same period do not expire on the same
+ * tick. The first time a key is scheduled its event is delayed to a phase within its period given by the hash
+ * of the key, so the polls of thousands of ports are spread over the whole period. The following events of
+ * the key are scheduled at their time, the handler repeats them a period after the previous expiration so
+ * every port keeps its period and its place in the spread. The events are only delayed, never advanced.
+ *
+ * @author advicetec
+ * @see DelayEvent
+ * @see DelayQueueConsumer
+ */
+public class TimingWheel extends AbstractQueue<DelayEvent> implements BlockingQueue<DelayEvent>
+{
+
+	static Logger logger = LogManager.getLogger(TimingWheel.class.getName());
+
+	/**
+	 * Default duration of a tick in milliseconds.
+	 */
+	public static final long DEFAULT_TICK = 10;
+
+	private static final int SLOT_BITS = 6;
+
+	private static final int WHEEL_SIZE = 1 << SLOT_BITS;
+
+	private static final int MASK = WHEEL_SIZE - 1;
+
+	private static final int LEVELS = 6;
+
+	/**
+	 * Events linked in a slot of the wheel and in the list of its key.
+	 */
+	private static final class Node
+	{
+		final DelayEvent event;
+		final long expiration;
+		Slot slot;
+		Node prev;
+		Node next;
+		Node keyPrev;
+		Node keyNext;
+
+		Node(DelayEvent event, long expiration) {
+			this.event = event;
+			this.expiration = expiration;
+		}
+	}
+
+	/**
+	 * Doubly linked list of the events of a slot.
+	 */
+	private static final class Slot
+	{
+		final int level;
+		Node head;
+		Node tail;
+
+		Slot(int level) {
+			this.level = level;
+		}
+
+		void add(Node node) {
+			node.slot = this;
+			node.next = null;
+			node.prev = tail;
+			if (tail == null) {
+				head = node;
+			} else {
+				tail.next = node;
+			}
+			tail = node;
+		}
+
+		void unlink(Node node) {
+			if (node.prev == null) {
+				head = node.next;
+			} else {
+				node.prev.next = node.next;
+			}
+			if (node.next == null) {
+				tail = node.prev;
+			} else {
+				node.next.prev = node.prev;
+			}
+			node.prev = null;
+			node.next = null;
+			node.slot = null;
+		}
+
+		Node detach() {
+			Node first = head;
+			head = null;
+			tail = null;
+			return first;
+		}
+
+		boolean isEmpty() {
+			return head == null;
+		}
+	}
+
+	/**
+	 * Duration of a tick in milliseconds.
+	 */
+	private final long tick;
+
+	/**
+	 * Aligns the repeated events to a phase of their period.
+	 */
+	private final boolean phaseSpreading;
+
+	private final Slot[][] wheels;
+
+	/**
+	 * Expired events, in the order they expired.
+	 */
+	private final Slot ready = new Slot(-1);
+
+	/**
+	 * Last event scheduled for every event key.
+	 */
+	private final Map<String, Node> byKey = new HashMap<String, Node>();
+
+	/**
+	 * Keys of the repeated events already aligned to their phase, cancelling the key forgets it.
+	 */
+	private final Set<String> phasedKeys = new HashSet<String>();
+
+	/**
+	 * Keys scheduled or aligned to their phase by owner, and the owner of every key.
+	 */
+	private final Map<String, Set<String>> keysByOwner = new HashMap<String, Set<String>>();
+
+	private final Map<String, String> ownerByKey = new HashMap<String, String>();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition available = lock.newCondition();
+
+	/**
+	 * Tick up to which the wheel has advanced.
+	 */
+	private long currentTick;
+
+	/**
+	 * Tick at which the consumer waiting wakes up, a new event expiring before it wakes it up earlier.
+	 */
+	private long wakeUpTick = Long.MAX_VALUE;
+
+	/**
+	 * Number of events in the wheel that have not expired.
+	 */
+	private int pending;
+
+	/**
+	 * Number of events in every level of the wheel.
+	 */
+	private final int[] levelCount = new int[LEVELS];
+
+	/**
+	 * Number of events, expired or not.
+	 */
+	private int size;
+
+	/**
+	 * Creates a timing wheel with the default tick and without phase spreading.
+	 */
+	public TimingWheel() {
+		this(DEFAULT_TICK, false);
+	}
+
+	/**
+	 * Constructor for the class.
+	 *
+	 * @param tick				duration of a tick in milliseconds.
+	 * @param phaseSpreading	true to align the repeated events to a phase of their period given by their key.
+	 */
+	public TimingWheel(long tick, boolean phaseSpreading) {
+		super();
+		if (tick <= 0) {
+			throw new IllegalArgumentException("The tick must be positive:" + tick);
+		}
+		this.tick = tick;
+		this.phaseSpreading = phaseSpreading;
+		this.wheels = new Slot[LEVELS][WHEEL_SIZE];
+		for (int level = 0; level < LEVELS; level++) {
+			for (int i = 0; i < WHEEL_SIZE; i++) {
+				this.wheels[level][i] = new Slot(level);
+			}
+		}
+		this.currentTick = now() / tick;
+	}
+
+	/**
+	 * Gets the current time in milliseconds, the same clock used by <code>DelayEvent</code>.
+	 *
+	 * @return current time in milliseconds.
+	 */
+	protected long now() {
+		return System.currentTimeMillis();
+	}
+
+	private static long ceilDiv(long value, long divisor) {
+		return -Math.floorDiv(-value, divisor);
+	}
+
+	/**
+	 * Gets the time in which a repeated event expires once aligned to the phase of its key. The time is the
+	 * first of the phase not earlier than the requested time nor than now. The events of a key already aligned
+	 * expire at the requested time.
+	 */
+	private long align(DelayEvent delayEvent, long now) {
+		Event event = delayEvent.getEvent();
+		long period = event.getMilliseconds();
+		if (!phaseSpreading || !event.isRepeated() || (period <= tick) || (event.getKey() == null)) {
+			return delayEvent.getStartTime();
+		}
+		if (!phasedKeys.add(event.getKey())) {
+			return delayEvent.getStartTime();
+		}
+		long phase = Math.floorMod(event.getKey().hashCode() * 0x9E3779B97F4A7C15L, period);
+		long earliest = Math.max(delayEvent.getStartTime(), now);
+		return (ceilDiv(earliest - phase, period) * period) + phase;
+	}
+
+	/**
+	 * Puts a node in the ready list or in the slot of the wheel corresponding to its expiration.
+	 */
+	private void place(Node node) {
+		long delta = node.expiration - currentTick;
+		if (delta <= 0) {
+			ready.add(node);
+			return;
+		}
+		int level = 0;
+		while ((level < LEVELS - 1) && (delta >= (1L << (SLOT_BITS * (level + 1))))) {
+			level++;
+		}
+		long expiration = node.expiration;
+		if (delta >= (1L << (SLOT_BITS * LEVELS))) {
+			// farther than the wheel, it is placed again when the top slot is moved down.
+			expiration = currentTick + (1L << (SLOT_BITS * LEVELS)) - 1;
+		}
+		wheels[level][(int) ((expiration >>> (SLOT_BITS * level)) & MASK)].add(node);
+		levelCount[level]++;
+		pending++;
+	}
+
+	/**
+	 * Gets the first level that has events, the lower levels are empty.
+	 */
+	private int firstLevel() {
+		int level = 0;
+		while ((level < LEVELS - 1) && (levelCount[level] == 0)) {
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * Advances the wheel up to the given tick, the expired events are moved to the ready list.
+	 */
+	private void advance(long toTick) {
+		while (currentTick < toTick) {
+			if (pending == 0) {
+				currentTick = toTick;
+				return;
+			}
+			// nothing changes until the next turn of the empty lower levels.
+			long turn = 1L << (SLOT_BITS * firstLevel());
+			if (turn > 1) {
+				currentTick = Math.min(currentTick | (turn - 1), toTick);
+				if (currentTick == toTick) {
+					return;
+				}
+			}
+			currentTick++;
+
+			// moves down the slots of the upper levels that complete a turn.
+			for (int level = 1; level < LEVELS; level++) {
+				if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+					break;
+				}
+				Node node = wheels[level][(int) ((currentTick >>> (SLOT_BITS * level)) & MASK)].detach();
+				while (node != null) {
+					Node next = node.next;
+					levelCount[level]--;
+					pending--;
+					place(node);
+					node = next;
+				}
+			}
+
+			Node node = wheels[0][(int) (currentTick & MASK)].detach();
+			while (node != null) {
+				Node next = node.next;
+				levelCount[0]--;
+				pending--;
+				ready.add(node);
+				node = next;
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of ticks until an event of the first level expires or the upper levels have to be
+	 * moved down.
+	 *
+	 * @return number of ticks, or -1 if there are not events pending.
+	 */
+	private long ticksToNextWork() {
+		if (pending == 0) {
+			return -1;
+		}
+		if (levelCount[0] == 0) {
+			long turn = 1L << (SLOT_BITS * firstLevel());
+			return turn - (currentTick & (turn - 1));
+		}
+		for (int i = 1; i <= WHEEL_SIZE; i++) {
+			long nextTick = currentTick + i;
+			if (!wheels[0][(int) (nextTick & MASK)].isEmpty() || ((nextTick & MASK) == 0)) {
+				return i;
+			}
+		}
+		return WHEEL_SIZE;
+	}
+
+	private static String owner(Integer entity, MeasuredEntityType ownerType) {
+		return ownerType + "-" + entity;
+	}
+
+	private void linkKey(Node node) {
+		String key = node.event.getKey();
+		Node last = byKey.put(key, node);
+		if (last != null) {
+			last.keyNext = node;
+			node.keyPrev = last;
+		} else if (!ownerByKey.containsKey(key)) {
+			Event event = node.event.getEvent();
+			String owner = owner(event.getEntity(), event.getOwnerType());
+			ownerByKey.put(key, owner);
+			keysByOwner.computeIfAbsent(owner, k -> new HashSet<String>()).add(key);
+		}
+	}
+
+	/**
+	 * Removes a key from the index of its owner, once it has no events nor phase.
+	 */
+	private void unindexKey(String key) {
+		String owner = ownerByKey.remove(key);
+		if (owner != null) {
+			Set<String> keys = keysByOwner.get(owner);
+			keys.remove(key);
+			if (keys.isEmpty()) {
+				keysByOwner.remove(owner);
+			}
+		}
+	}
+
+	private void unlinkKey(Node node) {
+		if (node.keyNext != null) {
+			node.keyNext.keyPrev = node.keyPrev;
+		} else if (node.keyPrev != null) {
+			byKey.put(node.event.getKey(), node.keyPrev);
+		} else {
+			byKey.remove(node.event.getKey());
+			// the phase of a repeated key is kept while its event is being handled.
+			if (!phasedKeys.contains(node.event.getKey())) {
+				unindexKey(node.event.getKey());
+			}
+		}
+		if (node.keyPrev != null) {
+			node.keyPrev.keyNext = node.keyNext;
+		}
+		node.keyPrev = null;
+		node.keyNext = null;
+	}
+
+	/**
+	 * Removes a node that is in the wheel or in the ready list.
+	 */
+	private void removeNode(Node node) {
+		if (node.slot != ready) {
+			levelCount[node.slot.level]--;
+			pending--;
+		}
+		node.slot.unlink(node);
+		unlinkKey(node);
+		size--;
+	}
+
+	/**
+	 * Takes the first expired event.
+	 */
+	private DelayEvent pollReady() {
+		Node node = ready.head;
+		if (node == null) {
+			return null;
+		}
+		ready.unlink(node);
+		unlinkKey(node);
+		size--;
+		return node.event;
+	}
+
+	@Override
+	public boolean offer(DelayEvent event) {
+		if (event == null) {
+			throw new NullPointerException();
+		}
+		lock.lock();
+		try {
+			long now = now();
+			advance(now / tick);
+			event.startTime = align(event, now);
+			Node node = new Node(event, ceilDiv(event.getStartTime(), tick));
+			place(node);
+			linkKey(node);
+			size++;
+			if (node.expiration < wakeUpTick) {
+				available.signal();
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(DelayEvent event) {
+		offer(event);
+	}
+
+	@Override
+	public boolean offer(DelayEvent event, long timeout, TimeUnit unit) {
+		return offer(event);
+	}
+
+	@Override
+	public DelayEvent poll() {
+		lock.lock();
+		try {
+			advance(now() / tick);
+			return pollReady();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public DelayEvent take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (true) {
+				advance(now() / tick);
+				DelayEvent event = pollReady();
+				if (event != null) {
+					return event;
+				}
+				long ticks = ticksToNextWork();
+				if (ticks < 0) {
+					wakeUpTick = Long.MAX_VALUE;
+					available.await();
+				} else {
+					wakeUpTick = currentTick + ticks;
+					long wait = (wakeUpTick * tick) - now();
+					if (wait > 0) {
+						available.await(wait, TimeUnit.MILLISECONDS);
+					}
+				}
+				wakeUpTick = Long.MAX_VALUE;
+			}
+		} finally {
+			wakeUpTick = Long.MAX_VALUE;
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public DelayEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = now() + unit.toMillis(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (true) {
+				advance(now() / tick);
+				DelayEvent event = pollReady();
+				if (event != null) {
+					return event;
+				}
+				long remaining = deadline - now();
+				if (remaining <= 0) {
+					return null;
+				}
+				long ticks = ticksToNextWork();
+				if (ticks >= 0) {
+					wakeUpTick = currentTick + ticks;
+					remaining = Math.min(remaining, (wakeUpTick * tick) - now());
+				}
+				if (remaining > 0) {
+					available.await(remaining, TimeUnit.MILLISECONDS);
+				}
+				wakeUpTick = Long.MAX_VALUE;
+			}
+		} finally {
+			wakeUpTick = Long.MAX_VALUE;
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the first expired event without removing it, or the next event to expire if none has expired.
+	 */
+	@Override
+	public DelayEvent peek() {
+		lock.lock();
+		try {
+			advance(now() / tick);
+			if (ready.head != null) {
+				return ready.head.event;
+			}
+			DelayEvent first = null;
+			for (Node node : byKey.values()) {
+				for (Node same = node; same != null; same = same.keyPrev) {
+					if ((first == null) || (same.event.getStartTime() < first.getStartTime())) {
+						first = same.event;
+					}
+				}
+			}
+			return first;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes all the events expired, all of them are handed off under a single acquisition of the lock.
+	 */
+	@Override
+	public int drainTo(Collection<? super DelayEvent> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super DelayEvent> c, int maxElements) {
+		if (c == this) {
+			throw new IllegalArgumentException();
+		}
+		lock.lock();
+		try {
+			advance(now() / tick);
+			int count = 0;
+			while (count < maxElements) {
+				DelayEvent event = pollReady();
+				if (event == null) {
+					break;
+				}
+				c.add(event);
+				count++;
+			}
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Cancels all the events with the key given.
+	 *
+	 * @param key	event key.
+	 * @return true if an event was cancelled.
+	 * @see Event#getKey()
+	 */
+	public boolean cancel(String key) {
+		lock.lock();
+		try {
+			phasedKeys.remove(key);
+			Node node = byKey.get(key);
+			if (node == null) {
+				unindexKey(key);
+				return false;
+			}
+			while (node != null) {
+				Node prev = node.keyPrev;
+				removeNode(node);
+				node = prev;
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Cancels all the events of a measured entity, the phases of their keys are forgotten as well.
+	 *
+	 * @param entity	measured entity identifier.
+	 * @param ownerType	type of the measured entity.
+	 * @return number of keys cancelled.
+	 * @see #cancel(String)
+	 */
+	public int cancelEntity(Integer entity, MeasuredEntityType ownerType) {
+		lock.lock();
+		try {
+			Set<String> keys = keysByOwner.get(owner(entity, ownerType));
+			if (keys == null) {
+				return 0;
+			}
+			List<String> cancelled = new ArrayList<String>(keys);
+			for (String key : cancelled) {
+				cancel(key);
+			}
+			return cancelled.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the last event scheduled with the key of the event given, the events are equal by key.
+	 */
+	@Override
+	public boolean remove(Object o) {
+		if (!(o instanceof DelayEvent)) {
+			return false;
+		}
+		lock.lock();
+		try {
+			Node node = byKey.get(((DelayEvent) o).getKey());
+			if (node == null) {
+				return false;
+			}
+			removeNode(node);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof DelayEvent)) {
+			return false;
+		}
+		lock.lock();
+		try {
+			return byKey.containsKey(((DelayEvent) o).getKey());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super DelayEvent> filter) {
+		lock.lock();
+		try {
+			List<Node> remove = new ArrayList<Node>();
+			for (Node node : byKey.values()) {
+				for (Node same = node; same != null; same = same.keyPrev) {
+					if (filter.test(same.event)) {
+						remove.add(same);
+					}
+				}
+			}
+			for (Node node : remove) {
+				removeNode(node);
+			}
+			return !remove.isEmpty();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void clear() {
+		lock.lock();
+		try {
+			removeIf(event -> true);
+			phasedKeys.clear();
+			keysByOwner.clear();
+			ownerByKey.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Returns an iterator over a snapshot of the events, expired or not, in no particular order.
+	 */
+	@Override
+	public Iterator<DelayEvent> iterator() {
+		final List<Node> snapshot = new ArrayList<Node>();
+		lock.lock();
+		try {
+			for (Node node : byKey.values()) {
+				for (Node same = node; same != null; same = same.keyPrev) {
+					snapshot.add(same);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		return new Iterator<DelayEvent>() {
+			private int cursor = 0;
+			private Node last = null;
+
+			@Override
+			public boolean hasNext() {
+				return cursor < snapshot.size();
+			}
+
+			@Override
+			public DelayEvent next() {
+				if (cursor >= snapshot.size()) {
+					throw new NoSuchElementException();
+				}
+				last = snapshot.get(cursor++);
+				return last.event;
+			}
+
+			@Override
+			public void remove() {
+				if (last == null) {
+					throw new IllegalStateException();
+				}
+				lock.lock();
+				try {
+					// it could be taken or removed after the snapshot.
+					if (last.slot != null) {
+						removeNode(last);
+					}
+				} finally {
+					lock.unlock();
+				}
+				last = null;
+			}
+		};
+	}
+}
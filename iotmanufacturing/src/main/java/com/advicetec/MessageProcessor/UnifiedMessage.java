@@ -24,6 +24,10 @@ public abstract class UnifiedMessage
 	 * Type of message.
 	 */
 	private UnifiedMessageType type;
+	/**
+	 * Time the data of the message was read from the device, given by <code>System.nanoTime</code>.
+	 */
+	private long ingestedNanos;
 	
 	public UnifiedMessage(UnifiedMessageType type) {
 		super();
@@ -66,4 +70,20 @@ public abstract class UnifiedMessage
 		return type;
 	}
 
+	/**
+	 * Returns the time the data of the message was read from the device.
+	 * @return time given by <code>System.nanoTime</code>, 0 if it is unknown.
+	 */
+	public long getIngestedNanos() {
+		return ingestedNanos;
+	}
+
+	/**
+	 * Sets the time the data of the message was read from the device.
+	 * @param ingestedNanos time given by <code>System.nanoTime</code>.
+	 */
+	public void setIngestedNanos(long ingestedNanos) {
+		this.ingestedNanos = ingestedNanos;
+	}
+
 }
@@ -12,7 +12,9 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -25,6 +27,8 @@ import com.advicetec.configuration.ReasonCode;
 import com.advicetec.configuration.ReasonCodeContainer;
 import com.advicetec.measuredentitity.MeasuredEntityType;
 import com.advicetec.measuredentitity.MeasuringState;
+import com.advicetec.persistence.BulkWriter;
+import com.advicetec.persistence.BulkWriters;
 import com.advicetec.utils.PredefinedPeriod;
 import com.advicetec.utils.PredefinedPeriodType;
 import com.mchange.v2.c3p0.ComboPooledDataSource;
@@ -44,6 +48,21 @@ public class OEEAggregationContainer extends Container
 	 */
 	private ComboPooledDataSource cpds = null;
 	
+	/**
+	 * Writer used to load the OEE aggregations replaced in bulk.
+	 */
+	private BulkWriter bulkWriter = null;
+	
+	/**
+	 * Maximum number of aggregations replaced in a transaction.
+	 */
+	private int batchRows = 1000;
+	
+	/**
+	 * OEE aggregations of closed periods read from the database.
+	 */
+	private OEEPeriodCache periodCache = new OEEPeriodCache(50000);
+	
 	
 	/**
 	 * Class's constructor 
@@ -54,6 +73,7 @@ public class OEEAggregationContainer extends Container
 	 */
 	public OEEAggregationContainer(String driverStr, String server, String user, String password, int minDbThreadPool, int maxDbThreadPool) {
 		super(driverStr, server, user, password);
+		bulkWriter = BulkWriters.create(null, driverStr);
 
 		try{
 			// Establishes the pool of connection to the database
@@ -93,6 +113,93 @@ public class OEEAggregationContainer extends Container
 		return cpds.getConnection();
 	}
 	
+	/**
+	 * Sets the cache of the OEE aggregations of closed periods.
+	 * @param periodCache	cache of closed periods.
+	 */
+	public void setPeriodCache(OEEPeriodCache periodCache)
+	{
+		this.periodCache = periodCache;
+	}
+	
+	/**
+	 * Sets the writer used by dbReplace.
+	 * @param bulkWriter	bulk writer for the OEE aggregations.
+	 * @param batchRows		maximum number of aggregations replaced in a transaction.
+	 */
+	public void setBulkWriter(BulkWriter bulkWriter, int batchRows)
+	{
+		this.bulkWriter = bulkWriter;
+		this.batchRows = batchRows;
+	}
+	
+	/**
+	 * Replaces a list of OEEs in the database. Every chunk of the list is replaced in a transaction
+	 * with a batched delete followed by a bulk insert.
+	 * 
+	 * @param list  List OEE to replace in the database.
+	 * @return number of OEE inserted.
+	 */
+	public int dbReplace(List<OverallEquipmentEffectiveness> list)
+	{
+		if (list.isEmpty()) {
+			return 0;
+		}
+		
+		Connection connDB  = null; 
+		PreparedStatement pstDB = null;
+		int count = 0;
+		
+		try{
+
+		    connDB = getConnection();
+		    connDB.setAutoCommit(false);
+		    pstDB = connDB.prepareStatement(OverallEquipmentEffectiveness.SQL_Delete);
+		    
+		    for (int from = 0; from < list.size(); from += batchRows) {
+		    	List<OverallEquipmentEffectiveness> chunk = list.subList(from, Math.min(from + batchRows, list.size()));
+		    	try {
+			    	for (OverallEquipmentEffectiveness oee : chunk){
+						oee.dbDelete(pstDB);
+					}
+			    	pstDB.executeBatch();
+			    	count = count + bulkWriter.write(connDB, chunk);
+			    	connDB.commit();
+		    	} catch (SQLException e) {
+		    		connDB.rollback();
+		    		pstDB.clearBatch();
+		    		logger.error("OEE aggregations could not be replaced - Message:" + e.getMessage());
+		    	}
+		    }
+	    	logger.debug("Number of OEE replaced: " + count);
+
+		} catch (SQLException e) {
+			logger.error(e.getMessage());
+			e.printStackTrace();
+		} finally {
+			// after the commit, so a concurrent read can not register the rows replaced again.
+			periodCache.invalidate(list);
+			if(pstDB!=null){
+				try{
+					pstDB.close();
+				} catch (SQLException e) {
+					logger.error(e.getMessage());
+					e.printStackTrace();
+				}
+			}
+
+			if(connDB!=null){
+				try	{
+					connDB.close();
+				} catch (SQLException e) {
+					logger.error(e.getMessage());
+					e.printStackTrace();
+				}
+			}
+		}
+		return count;
+	}
+	
 	/**
 	 * Inserts into database the list of OEE values.
 	 * @param list  List OEE to insert in the database.
@@ -121,6 +228,7 @@ public class OEEAggregationContainer extends Container
 			logger.error(e.getMessage());
 			e.printStackTrace();
 		} finally {
+			periodCache.invalidate(list);
 			if(pstDB!=null){
 				try{
 					pstDB.close();
@@ -168,6 +276,7 @@ public class OEEAggregationContainer extends Container
 			logger.error(e.getMessage());
 			e.printStackTrace();
 		} finally {
+			periodCache.invalidate(list);
 			if(pstDB!=null){
 				try{
 					pstDB.close();
@@ -795,7 +904,10 @@ public class OEEAggregationContainer extends Container
 	 */
 	public OverallEquipmentEffectiveness getPeriodOEE(Integer owner, 
 			MeasuredEntityType ownerType, PredefinedPeriod predefinedPeriod) {
-		OverallEquipmentEffectiveness eff = null;
+		OverallEquipmentEffectiveness eff = periodCache.get(owner, ownerType, predefinedPeriod);
+		if (eff != null) {
+			return eff;
+		}
 
 		Connection connDB  = null; 
 		PreparedStatement pstDB = null;
@@ -825,6 +937,7 @@ public class OEEAggregationContainer extends Container
 				eff.setQtySchedToProduce(qtySchedToProduce);
 				eff.setQtyProduced(qtyProduced);
 				eff.setQtyDefective(qtyDefective);
+				periodCache.put(eff);
 				break;
 			}
 			
@@ -854,6 +967,110 @@ public class OEEAggregationContainer extends Container
 		return eff;
 	}
 	
+	/**
+	 * Get the OEE aggregations of several predefined periods. The periods that are not in the cache are read 
+	 * with one query by period type, between the first and the last key of the type.
+	 * 
+	 * @param owner : measure entity for which the intervals were calculated.
+	 * @param ownerType: type of measuring entity for which the intervals were calculated.
+	 * @param periods: predefined periods to find, the periods of less than an hour are ignored.
+	 * @return The OEE objects found by period key, the periods that are not in the database are not included. 
+	 */
+	public Map<String, OverallEquipmentEffectiveness> getPeriodOEEs(Integer owner, 
+			MeasuredEntityType ownerType, List<PredefinedPeriod> periods) {
+		Map<String, OverallEquipmentEffectiveness> ret = new HashMap<String, OverallEquipmentEffectiveness>();
+		
+		// the periods that are not in the cache, by period type.
+		Map<PredefinedPeriodType, Map<String, PredefinedPeriod>> missing = new HashMap<PredefinedPeriodType, Map<String, PredefinedPeriod>>();
+		for (PredefinedPeriod period : periods) {
+			if (period.getType() == PredefinedPeriodType.INT_LT_HOUR) {
+				continue;
+			}
+			OverallEquipmentEffectiveness eff = periodCache.get(owner, ownerType, period);
+			if (eff != null) {
+				ret.put(period.getKey(), eff);
+			} else {
+				missing.computeIfAbsent(period.getType(), type -> new HashMap<String, PredefinedPeriod>()).put(period.getKey(), period);
+			}
+		}
+		
+		if (missing.isEmpty()) {
+			return ret;
+		}
+		
+		Connection connDB  = null; 
+		PreparedStatement pstDB = null;
+
+		try 
+		{
+		    connDB = getConnection();
+		    connDB.setAutoCommit(false);
+		    
+		    pstDB = connDB.prepareStatement(OverallEquipmentEffectiveness.SQL_Range_Select);
+		    
+		    for (Map<String, PredefinedPeriod> typePeriods : missing.values()) {
+		    	String first = null;
+		    	String last = null;
+		    	for (String key : typePeriods.keySet()) {
+		    		if ((first == null) || (key.compareTo(first) < 0)) {
+		    			first = key;
+		    		}
+		    		if ((last == null) || (key.compareTo(last) > 0)) {
+		    			last = key;
+		    		}
+		    	}
+		    	
+			    pstDB.setInt(1, owner);
+			    pstDB.setInt(2, ownerType.getValue());          		// owner_type
+			    pstDB.setString(3, first);   							// first period key
+			    pstDB.setString(4, last);   							// last period key
+			    pstDB.setString(5, first.replaceAll("[0-9]", "_"));   	// pattern of the period type keys
+	
+				ResultSet rs = pstDB.executeQuery();
+	
+				while (rs.next()) {
+					PredefinedPeriod period = typePeriods.get(rs.getString("period_key").trim());
+					if (period == null) {
+						continue;
+					}
+					
+					OverallEquipmentEffectiveness eff = new OverallEquipmentEffectiveness(period, owner, ownerType);
+					eff.setProductiveTime(rs.getInt("productive_time"));
+					eff.setQtySchedToProduce(rs.getDouble("qty_sched_to_produce"));
+					eff.setQtyProduced(rs.getDouble("qty_produced"));
+					eff.setQtyDefective(rs.getDouble("qty_defective"));
+					periodCache.put(eff);
+					ret.put(period.getKey(), eff);
+				}
+				rs.close();
+		    }
+			
+		} catch (SQLException e) {
+			logger.error(e.getMessage());
+			e.printStackTrace();
+		} finally {
+			if(pstDB!=null){
+				try{
+					pstDB.close();
+				} catch (SQLException e) {
+					logger.error(e.getMessage());
+					e.printStackTrace();
+				}
+			}
+
+			if(connDB!=null){
+				try	{
+					connDB.close();
+				} catch (SQLException e) {
+					logger.error(e.getMessage());
+					e.printStackTrace();
+				}
+			}
+		}
+		
+		return ret;
+	}
+	
 	/**
 	 * Call stored procedure to calculate or recalculate OEE's indicators in database.
 	 * 
@@ -2,11 +2,13 @@ package com.advicetec.aggregation.oee;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.advicetec.core.Configurable;
+import com.advicetec.persistence.BulkWriters;
 
 /**
  * Manager for the OEE aggregation object.
@@ -29,11 +31,66 @@ public class OEEAggregationManager  extends Configurable {
 	
 	private static int MAX_DB_THREAD_POOL = 30; 
 	
+	/**
+	 * Calculates the OEE aggregations in memory as the state intervals close.
+	 */
+	private static boolean INCREMENTAL_ENABLED = true;
+	
+	/**
+	 * Minutes the complete minute aggregations are kept in memory.
+	 */
+	private static long INCREMENTAL_MINUTE_RETENTION = 180;
+	
+	/**
+	 * Hours the complete hour aggregations are kept in memory.
+	 */
+	private static long INCREMENTAL_HOUR_RETENTION = 48;
+	
+	/**
+	 * Days the complete day aggregations are kept in memory.
+	 */
+	private static long INCREMENTAL_DAY_RETENTION = 7;
+	
+	/**
+	 * Seconds between the writes of the complete aggregations to the database.
+	 */
+	private static long INCREMENTAL_FLUSH_INTERVAL = 60;
+	
+	/**
+	 * Maximum number of aggregations written at once.
+	 */
+	private static int INCREMENTAL_FLUSH_BATCH = 500;
+	
+	/**
+	 * Threads used to recalculate the OEE aggregations.
+	 */
+	private static int RECALCULATION_THREADS = Runtime.getRuntime().availableProcessors();
+	
+	/**
+	 * Maximum number of aggregations replaced in a transaction by the recalculations.
+	 */
+	private static int RECALCULATION_BATCH_ROWS = 1000;
+	
+	/**
+	 * Maximum number of OEE aggregations of closed periods kept in memory.
+	 */
+	private static long PERIOD_CACHE_SIZE = 50000;
+	
 	/**
 	 * Reference to the OEE aggregation container. Through this object we can insert, update, and delete OEE aggregations.
 	 */
 	private OEEAggregationContainer oeeAggregations;
 	
+	/**
+	 * In-memory OEE aggregations, null when they are disabled.
+	 */
+	private OEEIncrementalAggregator incrementalAggregator;
+	
+	/**
+	 * Recalculates the OEE aggregations from the state intervals.
+	 */
+	private OEERecalculator recalculator;
+	
 	/**
 	 *  This class is configurable through a properties file called OEEAggregation.properties
 	 *  The required properties are those for connecting to the database: 
@@ -56,6 +113,70 @@ public class OEEAggregationManager  extends Configurable {
 			MAX_DB_THREAD_POOL = Integer.parseInt(properties.getProperty("max_db_thread_pool"));
 		
 		oeeAggregations = new OEEAggregationContainer(driver, server, user, password, MIN_DB_THREAD_POOL, MAX_DB_THREAD_POOL);
+		
+		if (properties.getProperty("recalculation_threads") != null)
+			RECALCULATION_THREADS = Integer.parseInt(properties.getProperty("recalculation_threads").trim());
+		
+		if (properties.getProperty("recalculation_batch_rows") != null)
+			RECALCULATION_BATCH_ROWS = Integer.parseInt(properties.getProperty("recalculation_batch_rows").trim());
+		
+		oeeAggregations.setBulkWriter(BulkWriters.create(properties.getProperty("bulk_writer"), driver), RECALCULATION_BATCH_ROWS);
+		recalculator = new OEERecalculator(oeeAggregations, RECALCULATION_THREADS);
+		
+		if (properties.getProperty("period_cache_size") != null)
+			PERIOD_CACHE_SIZE = Long.parseLong(properties.getProperty("period_cache_size").trim());
+		
+		oeeAggregations.setPeriodCache(new OEEPeriodCache(PERIOD_CACHE_SIZE));
+		
+		if (properties.getProperty("incremental_enabled") != null)
+			INCREMENTAL_ENABLED = Boolean.parseBoolean(properties.getProperty("incremental_enabled").trim());
+		
+		if (properties.getProperty("incremental_minute_retention") != null)
+			INCREMENTAL_MINUTE_RETENTION = Long.parseLong(properties.getProperty("incremental_minute_retention").trim());
+		
+		if (properties.getProperty("incremental_hour_retention") != null)
+			INCREMENTAL_HOUR_RETENTION = Long.parseLong(properties.getProperty("incremental_hour_retention").trim());
+		
+		if (properties.getProperty("incremental_day_retention") != null)
+			INCREMENTAL_DAY_RETENTION = Long.parseLong(properties.getProperty("incremental_day_retention").trim());
+		
+		if (properties.getProperty("incremental_flush_interval") != null)
+			INCREMENTAL_FLUSH_INTERVAL = Long.parseLong(properties.getProperty("incremental_flush_interval").trim());
+		
+		if (properties.getProperty("incremental_flush_batch") != null)
+			INCREMENTAL_FLUSH_BATCH = Integer.parseInt(properties.getProperty("incremental_flush_batch").trim());
+		
+		if (INCREMENTAL_ENABLED) {
+			incrementalAggregator = new OEEIncrementalAggregator(Duration.ofMinutes(INCREMENTAL_MINUTE_RETENTION), 
+					Duration.ofHours(INCREMENTAL_HOUR_RETENTION), Duration.ofDays(INCREMENTAL_DAY_RETENTION), 
+					INCREMENTAL_FLUSH_BATCH, oeeAggregations::dbReplace);
+			recalculator.setIncrementalAggregator(incrementalAggregator);
+			
+			Thread flusher = new Thread(this::flushLoop, "OEEAggregation-flusher");
+			flusher.setDaemon(true);
+			flusher.start();
+			
+			// writes the complete aggregations in case of shutdown.
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> incrementalAggregator.flush()));
+		}
+	}
+	
+	/**
+	 * Writes the complete in-memory aggregations to the database periodically.
+	 */
+	private void flushLoop() {
+		while (true) {
+			try {
+				Thread.sleep(INCREMENTAL_FLUSH_INTERVAL * 1000);
+				incrementalAggregator.flush();
+			} catch (InterruptedException e) {
+				logger.error("OEE aggregation flusher interrupted");
+				Thread.currentThread().interrupt();
+				return;
+			} catch (RuntimeException e) {
+				logger.error("Error writing the OEE aggregations:" + e.getMessage());
+			}
+		}
 	}
 	
 	/**
@@ -77,5 +198,21 @@ public class OEEAggregationManager  extends Configurable {
 		return this.oeeAggregations;
 	}
 	
+	/**
+	 * @return Returns the in-memory OEE aggregations, null when they are disabled.
+	 */
+	public OEEIncrementalAggregator getIncrementalAggregator()
+	{
+		return this.incrementalAggregator;
+	}
+	
+	/**
+	 * @return Returns the recalculator of the OEE aggregations.
+	 */
+	public OEERecalculator getRecalculator()
+	{
+		return this.recalculator;
+	}
+	
 	
 }
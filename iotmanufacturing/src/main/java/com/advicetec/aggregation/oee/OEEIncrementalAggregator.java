@@ -0,0 +1,465 @@
+package com.advicetec.aggregation.oee;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.advicetec.measuredentitity.MeasuredEntityType;
+import com.advicetec.measuredentitity.MeasuringState;
+import com.advicetec.measuredentitity.StateInterval;
+import com.advicetec.utils.PredefinedPeriod;
+import com.advicetec.utils.PredefinedPeriodType;
+
+/**
+ * Calculates the OEE aggregations of the measured entities in memory as their state intervals close.
+ *
+ * Every closed interval is split in the minutes, hours and days it covers, and its productive time, quantities
+ * scheduled, produced and defective are added to the buckets of those periods with the same rules used by
+ * <code>OEEAggregationContainer.intervalsByMinute</code>. The periods that start after the first interval registered
+ * for an entity are answered from the buckets without querying the state intervals; the periods before it are
+ * calculated from the database as before.
+ *
+ * A bucket is complete when the intervals registered for the entity reach its end. The complete buckets are written
+ * to the OEE aggregation table in batches by <code>flush</code>, and they are discarded after the retention of
+ * their period type. The periods rewritten in the database by a recalculation are invalidated, from then on they
+ * are answered by the database and the intervals registered for them are ignored.
+ *
+ * @author advicetec
+ *
+ */
+public class OEEIncrementalAggregator
+{
+
+	static Logger logger = LogManager.getLogger(OEEIncrementalAggregator.class.getName());
+
+	/**
+	 * Period types calculated in memory.
+	 */
+	private static final PredefinedPeriodType[] LEVELS = { PredefinedPeriodType.MINUTE,
+															PredefinedPeriodType.HOUR,
+															PredefinedPeriodType.DAY };
+
+	/**
+	 * Buckets of every measured entity, the key is the owner and its type.
+	 */
+	private final Map<String, OwnerBuckets> owners = new ConcurrentHashMap<String, OwnerBuckets>();
+
+	/**
+	 * Time the complete buckets are kept after they are written, by period type.
+	 */
+	private final Duration[] retention;
+
+	/**
+	 * Maximum number of aggregations written at once.
+	 */
+	private final int batchSize;
+
+	/**
+	 * Writes a batch of complete aggregations to the database.
+	 */
+	private final Consumer<List<OverallEquipmentEffectiveness>> writer;
+
+	/**
+	 * Constructor for the class.
+	 *
+	 * @param minuteRetention	time the minute buckets are kept after they are complete.
+	 * @param hourRetention		time the hour buckets are kept after they are complete.
+	 * @param dayRetention		time the day buckets are kept after they are complete.
+	 * @param batchSize			maximum number of aggregations written at once.
+	 * @param writer			writes a batch of complete aggregations to the database.
+	 */
+	public OEEIncrementalAggregator(Duration minuteRetention, Duration hourRetention, Duration dayRetention,
+			int batchSize, Consumer<List<OverallEquipmentEffectiveness>> writer) {
+		super();
+		this.retention = new Duration[] { minuteRetention, hourRetention, dayRetention };
+		this.batchSize = batchSize;
+		this.writer = writer;
+	}
+
+	/**
+	 * Adds a closed state interval to the buckets of its owner.
+	 *
+	 * @param stateInterval	state interval registered by a measured entity.
+	 */
+	public void register(StateInterval stateInterval) {
+		LocalDateTime from = stateInterval.getInterval().getStart();
+		LocalDateTime to = stateInterval.getInterval().getEnd();
+		if ((from == null) || (to == null) || !to.isAfter(from)) {
+			return;
+		}
+		String key = getKey(stateInterval.getParent(), stateInterval.getParentType());
+		OwnerBuckets buckets = owners.computeIfAbsent(key,
+				k -> new OwnerBuckets(stateInterval.getParent(), stateInterval.getParentType()));
+		buckets.register(stateInterval, from, to);
+	}
+
+	/**
+	 * Gets the OEE aggregation of a period from the buckets.
+	 *
+	 * @param owner			measured entity.
+	 * @param ownerType		type of the measured entity.
+	 * @param period		minute, hour, day or less than an hour period.
+	 * @return the aggregation, or null if the period is not calculated in memory.
+	 */
+	public OverallEquipmentEffectiveness getPeriodOEE(Integer owner, MeasuredEntityType ownerType, PredefinedPeriod period) {
+		OwnerBuckets buckets = owners.get(getKey(owner, ownerType));
+		if (buckets == null) {
+			return null;
+		}
+		return buckets.getPeriodOEE(period);
+	}
+
+	/**
+	 * Invalidates the periods of an owner completely inside a range, after their aggregations are rewritten
+	 * in the database.
+	 *
+	 * @param owner			measured entity.
+	 * @param ownerType		type of the measured entity.
+	 * @param from			start of the range rewritten.
+	 * @param to			end of the range rewritten.
+	 */
+	public void invalidate(Integer owner, MeasuredEntityType ownerType, LocalDateTime from, LocalDateTime to) {
+		OwnerBuckets buckets = owners.get(getKey(owner, ownerType));
+		if (buckets != null) {
+			buckets.invalidate(from, to);
+		}
+	}
+
+	/**
+	 * Writes the complete buckets that were not written yet, in batches.
+	 *
+	 * @return number of aggregations written.
+	 */
+	public int flush() {
+		int count = 0;
+		List<OverallEquipmentEffectiveness> batch = new ArrayList<OverallEquipmentEffectiveness>();
+		for (OwnerBuckets buckets : owners.values()) {
+			buckets.takeComplete(batch);
+			while (batch.size() >= batchSize) {
+				List<OverallEquipmentEffectiveness> part = new ArrayList<OverallEquipmentEffectiveness>(batch.subList(0, batchSize));
+				batch.subList(0, batchSize).clear();
+				writer.accept(part);
+				count = count + part.size();
+			}
+			buckets.evict();
+		}
+		if (!batch.isEmpty()) {
+			writer.accept(batch);
+			count = count + batch.size();
+		}
+		if (count > 0) {
+			logger.debug("Number of OEE aggregations written:" + count);
+		}
+		return count;
+	}
+
+	private static String getKey(Integer owner, MeasuredEntityType ownerType) {
+		return owner + ":" + ownerType.getValue();
+	}
+
+	/**
+	 * Truncates a datetime to the start of its period.
+	 */
+	private static LocalDateTime truncate(LocalDateTime dateTime, int level) {
+		switch (LEVELS[level]) {
+			case MINUTE:
+				return dateTime.truncatedTo(ChronoUnit.MINUTES);
+			case HOUR:
+				return dateTime.truncatedTo(ChronoUnit.HOURS);
+			default:
+				return dateTime.truncatedTo(ChronoUnit.DAYS);
+		}
+	}
+
+	/**
+	 * Gets the start of the next period.
+	 */
+	private static LocalDateTime next(LocalDateTime start, int level) {
+		switch (LEVELS[level]) {
+			case MINUTE:
+				return start.plusMinutes(1);
+			case HOUR:
+				return start.plusHours(1);
+			default:
+				return start.plusDays(1);
+		}
+	}
+
+	/**
+	 * Gets the start of the first period that starts at or after a datetime.
+	 */
+	private static LocalDateTime ceiling(LocalDateTime dateTime, int level) {
+		LocalDateTime start = truncate(dateTime, level);
+		return start.equals(dateTime) ? start : next(start, level);
+	}
+
+	private static PredefinedPeriod getPeriod(LocalDateTime start, int level) {
+		switch (LEVELS[level]) {
+			case MINUTE:
+				return new PredefinedPeriod(start.getYear(), start.getMonthValue(), start.getDayOfMonth(),
+						start.getHour(), start.getMinute());
+			case HOUR:
+				return new PredefinedPeriod(start.getYear(), start.getMonthValue(), start.getDayOfMonth(), start.getHour());
+			default:
+				return new PredefinedPeriod(start.getYear(), start.getMonthValue(), start.getDayOfMonth());
+		}
+	}
+
+	private static int getLevel(PredefinedPeriodType type) {
+		for (int i = 0; i < LEVELS.length; i++) {
+			if (LEVELS[i] == type) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Indicates whether the time of an interval counts as productive time.
+	 */
+	private static boolean isProductive(StateInterval stateInterval) {
+		MeasuringState state = stateInterval.getState();
+		if (state == MeasuringState.OPERATING) {
+			return true;
+		} else if ((state == MeasuringState.SCHEDULEDOWN) || (state == MeasuringState.UNSCHEDULEDOWN)) {
+			return (stateInterval.getReason() != null) && stateInterval.getReason().includeProductiveTime();
+		}
+		return false;
+	}
+
+	private static double valueOf(Double value) {
+		return (value == null) ? 0 : value;
+	}
+
+	/**
+	 * Sums of a period.
+	 */
+	private static final class Bucket
+	{
+		double productiveTime;
+		double qtySchedToProduce;
+		double qtyProduced;
+		double qtyDefective;
+		boolean written;
+
+		/**
+		 * The period was rewritten in the database, it is answered by the database.
+		 */
+		boolean invalid;
+	}
+
+	/**
+	 * Buckets of a measured entity.
+	 */
+	private final class OwnerBuckets
+	{
+		private final Integer owner;
+		private final MeasuredEntityType ownerType;
+
+		/**
+		 * Buckets of every period type by the start of the period.
+		 */
+		@SuppressWarnings("unchecked")
+		private final TreeMap<LocalDateTime, Bucket>[] levels = new TreeMap[LEVELS.length];
+
+		/**
+		 * Start of the first period of every type answered from the buckets.
+		 */
+		private final LocalDateTime[] validFrom = new LocalDateTime[LEVELS.length];
+
+		/**
+		 * End of the last interval registered.
+		 */
+		private LocalDateTime watermark;
+
+		OwnerBuckets(Integer owner, MeasuredEntityType ownerType) {
+			this.owner = owner;
+			this.ownerType = ownerType;
+			for (int i = 0; i < LEVELS.length; i++) {
+				levels[i] = new TreeMap<LocalDateTime, Bucket>();
+			}
+		}
+
+		synchronized void register(StateInterval stateInterval, LocalDateTime from, LocalDateTime to) {
+			if (watermark == null) {
+				// the periods that started before the first interval are not complete in memory.
+				for (int i = 0; i < LEVELS.length; i++) {
+					validFrom[i] = ceiling(from, i);
+				}
+			}
+			if ((watermark == null) || to.isAfter(watermark)) {
+				watermark = to;
+			}
+
+			boolean productive = isProductive(stateInterval);
+			double duration = from.until(to, ChronoUnit.MILLIS) / 1000.0;
+			double conversion1 = valueOf(stateInterval.getConversion1());
+			double productionRate = valueOf(stateInterval.getProductionRate());
+			double actualProductionRate = valueOf(stateInterval.getActualProductionRate());
+			double qtyDefective = valueOf(stateInterval.getQtyDefective());
+
+			for (int i = 0; i < LEVELS.length; i++) {
+				for (LocalDateTime start = truncate(from, i); start.isBefore(to); start = next(start, i)) {
+					LocalDateTime end = next(start, i);
+					if (start.isBefore(validFrom[i])) {
+						continue;
+					}
+					Bucket bucket = levels[i].get(start);
+					if (bucket == null) {
+						bucket = new Bucket();
+						levels[i].put(start, bucket);
+					} else if (bucket.invalid) {
+						continue;
+					}
+					LocalDateTime overlapFrom = from.isAfter(start) ? from : start;
+					LocalDateTime overlapTo = to.isBefore(end) ? to : end;
+					double overlap = overlapFrom.until(overlapTo, ChronoUnit.MILLIS) / 1000.0;
+					double productiveTime = productive ? overlap : 0;
+					bucket.productiveTime += productiveTime;
+					bucket.qtySchedToProduce += conversion1 * productionRate * (productiveTime / 60);
+					bucket.qtyProduced += conversion1 * actualProductionRate * (productiveTime / 60);
+					bucket.qtyDefective += qtyDefective * (overlap / duration);
+				}
+			}
+		}
+
+		synchronized OverallEquipmentEffectiveness getPeriodOEE(PredefinedPeriod period) {
+			if (watermark == null) {
+				return null;
+			}
+			if (period.getType() == PredefinedPeriodType.INT_LT_HOUR) {
+				// the minutes of the interval.
+				LocalDateTime from = LocalDateTime.ofInstant(period.getCalendarFrom().toInstant(), ZoneId.systemDefault());
+				LocalDateTime to = LocalDateTime.ofInstant(period.getCalendarTo().toInstant(), ZoneId.systemDefault());
+				if (from.isBefore(validFrom[0])) {
+					return null;
+				}
+				Collection<Bucket> minutes = levels[0].subMap(from, to).values();
+				for (Bucket bucket : minutes) {
+					if (bucket.invalid) {
+						return null;
+					}
+				}
+				return toOEE(period, minutes);
+			}
+
+			int level = getLevel(period.getType());
+			if (level < 0) {
+				return null;
+			}
+			LocalDateTime start = period.getLocalDateTime();
+			if (start.isBefore(validFrom[level])) {
+				return null;
+			}
+			Bucket bucket = levels[level].get(start);
+			if ((bucket != null) && bucket.invalid) {
+				return null;
+			}
+			List<Bucket> list = new ArrayList<Bucket>(1);
+			if (bucket != null) {
+				list.add(bucket);
+			}
+			return toOEE(period, list);
+		}
+
+		/**
+		 * Adds the complete buckets that were not written to the batch and marks them as written.
+		 */
+		synchronized void takeComplete(List<OverallEquipmentEffectiveness> batch) {
+			if (watermark == null) {
+				return;
+			}
+			for (int i = 0; i < LEVELS.length; i++) {
+				for (Map.Entry<LocalDateTime, Bucket> entry : levels[i].entrySet()) {
+					if (next(entry.getKey(), i).isAfter(watermark)) {
+						break;
+					}
+					Bucket bucket = entry.getValue();
+					if (!bucket.written) {
+						List<Bucket> list = new ArrayList<Bucket>(1);
+						list.add(bucket);
+						batch.add(toOEE(getPeriod(entry.getKey(), i), list));
+						bucket.written = true;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Replaces the buckets of the periods completely inside a range with invalid buckets. They are marked as
+		 * written, so they are not written again and they are discarded after the retention as the others.
+		 */
+		synchronized void invalidate(LocalDateTime from, LocalDateTime to) {
+			if (watermark == null) {
+				return;
+			}
+			for (int i = 0; i < LEVELS.length; i++) {
+				LocalDateTime start = ceiling(from, i);
+				if (start.isBefore(validFrom[i])) {
+					start = validFrom[i];
+				}
+				for (; !next(start, i).isAfter(to); start = next(start, i)) {
+					Bucket bucket = new Bucket();
+					bucket.written = true;
+					bucket.invalid = true;
+					levels[i].put(start, bucket);
+				}
+			}
+		}
+
+		/**
+		 * Discards the written buckets older than the retention, their periods are answered by the database.
+		 */
+		synchronized void evict() {
+			if (watermark == null) {
+				return;
+			}
+			for (int i = 0; i < LEVELS.length; i++) {
+				LocalDateTime limit = watermark.minus(retention[i]);
+				Iterator<Map.Entry<LocalDateTime, Bucket>> iterator = levels[i].entrySet().iterator();
+				while (iterator.hasNext()) {
+					Map.Entry<LocalDateTime, Bucket> entry = iterator.next();
+					LocalDateTime end = next(entry.getKey(), i);
+					if (end.isAfter(limit) || !entry.getValue().written) {
+						break;
+					}
+					iterator.remove();
+					if (end.isAfter(validFrom[i])) {
+						validFrom[i] = end;
+					}
+				}
+			}
+		}
+
+		private OverallEquipmentEffectiveness toOEE(PredefinedPeriod period, Iterable<Bucket> buckets) {
+			OverallEquipmentEffectiveness oee = new OverallEquipmentEffectiveness(period, owner, ownerType);
+			double productiveTime = 0;
+			double qtySchedToProduce = 0;
+			double qtyProduced = 0;
+			double qtyDefective = 0;
+			for (Bucket bucket : buckets) {
+				productiveTime += bucket.productiveTime;
+				qtySchedToProduce += bucket.qtySchedToProduce;
+				qtyProduced += bucket.qtyProduced;
+				qtyDefective += bucket.qtyDefective;
+			}
+			oee.setProductiveTime(productiveTime);
+			oee.setQtySchedToProduce(qtySchedToProduce);
+			oee.setQtyProduced(qtyProduced);
+			oee.setQtyDefective(qtyDefective);
+			return oee;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package com.advicetec.aggregation.oee;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.advicetec.measuredentitity.MeasuredEntityType;
+import com.advicetec.utils.PredefinedPeriod;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * This class maintains the OEE aggregations of closed periods read from the database, so the charts
+ * that request the same periods again do not query them.
+ *
+ * Only the periods that already finished are kept. Their aggregations change only when they are
+ * recalculated, so the container invalidates the entries of the aggregations that it deletes or replaces.
+ * The aggregations are copied when they are registered and when they are returned, callers can modify them.
+ *
+ * @author advicetec
+ *
+ */
+public class OEEPeriodCache
+{
+
+	static Logger logger = LogManager.getLogger(OEEPeriodCache.class.getName());
+
+	/**
+	 * Aggregations by owner, owner type and period key.
+	 */
+	private final Cache<String, OverallEquipmentEffectiveness> cache;
+
+	/**
+	 * Constructor for the class
+	 *
+	 * @param maxSize	maximum number of aggregations to maintain.
+	 */
+	public OEEPeriodCache(long maxSize)
+	{
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.build();
+	}
+
+	private static String getKey(Integer owner, MeasuredEntityType ownerType, String periodKey)
+	{
+		return owner + ":" + ownerType.getValue() + ":" + periodKey;
+	}
+
+	private static OverallEquipmentEffectiveness copy(OverallEquipmentEffectiveness oee)
+	{
+		OverallEquipmentEffectiveness ret = new OverallEquipmentEffectiveness(oee.getPredefinedPeriod(), oee.getParent(), oee.getParentType());
+		ret.setProductiveTime(oee.getProductiveTime());
+		ret.setQtySchedToProduce(oee.getQtySchedToProduce());
+		ret.setQtyProduced(oee.getQtyProduced());
+		ret.setQtyDefective(oee.getQtyDefective());
+		return ret;
+	}
+
+	/**
+	 * Gets the aggregation of a period.
+	 *
+	 * @param owner		measured entity.
+	 * @param ownerType	type of the measured entity.
+	 * @param period	predefined period.
+	 * @return the aggregation, or null if it is not in the cache.
+	 */
+	public OverallEquipmentEffectiveness get(Integer owner, MeasuredEntityType ownerType, PredefinedPeriod period)
+	{
+		OverallEquipmentEffectiveness oee = cache.getIfPresent(getKey(owner, ownerType, period.getKey()));
+		return (oee == null) ? null : copy(oee);
+	}
+
+	/**
+	 * Registers the aggregation of a period read from the database, it is ignored if the period has not finished.
+	 *
+	 * @param oee	aggregation to register.
+	 */
+	public void put(OverallEquipmentEffectiveness oee)
+	{
+		PredefinedPeriod period = oee.getPredefinedPeriod();
+		LocalDateTime end = OEERecalculator.getEnd(period.getType(), period.getLocalDateTime());
+		if ((end != null) && !end.isAfter(LocalDateTime.now())) {
+			cache.put(getKey(oee.getParent(), oee.getParentType(), period.getKey()), copy(oee));
+		}
+	}
+
+	/**
+	 * Removes the aggregations of the periods given, once they are written in the database. A read that
+	 * started before the commit could register the previous values again if they were removed earlier.
+	 *
+	 * @param list	aggregations written.
+	 */
+	public void invalidate(List<OverallEquipmentEffectiveness> list)
+	{
+		for (OverallEquipmentEffectiveness oee : list) {
+			cache.invalidate(getKey(oee.getParent(), oee.getParentType(), oee.getPredefinedPeriod().getKey()));
+		}
+	}
+
+	/**
+	 * Gets the approximate number of aggregations in the cache.
+	 *
+	 * @return number of aggregations.
+	 */
+	public long size()
+	{
+		return cache.estimatedSize();
+	}
+}
@@ -0,0 +1,575 @@
+package com.advicetec.aggregation.oee;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.advicetec.configuration.ConfigurationManager;
+import com.advicetec.configuration.ReasonCode;
+import com.advicetec.configuration.ReasonCodeContainer;
+import com.advicetec.measuredentitity.MeasuredEntityType;
+import com.advicetec.measuredentitity.MeasuringState;
+import com.advicetec.utils.PeriodUtils;
+import com.advicetec.utils.PredefinedPeriod;
+import com.advicetec.utils.PredefinedPeriodType;
+
+/**
+ * Recalculates the OEE aggregations of a time range from the state intervals stored in the database.
+ *
+ * The intervals of the range are read with one query. The minutes, hours and days are calculated bottom-up,
+ * every day in a task of a fork-join pool, and the months and years are the sums of their days. The aggregations
+ * of every period type are replaced with a batched delete and a bulk insert. The recalculations of several
+ * measured entities run concurrently in the same pool. The reads and writes of the database run as managed
+ * blocks, so the pool adds threads to keep calculating while the tasks wait for the database.
+ *
+ * If the intervals of a measured entity can not be read, none of its aggregations is replaced. The periods
+ * rewritten are invalidated in the in-memory aggregations, so the responses read them from the database.
+ *
+ * Only the periods completely inside the range that already finished are written. The productive time and
+ * quantities follow the rules of <code>OEEAggregationContainer.intervalsByMinute</code>.
+ *
+ * @author advicetec
+ *
+ */
+public class OEERecalculator
+{
+
+	static Logger logger = LogManager.getLogger(OEERecalculator.class.getName());
+
+	/**
+	 * Selects the state intervals of an owner that overlap a time range.
+	 */
+	public static final String SQL_RANGE = "SELECT datetime_from, datetime_to, status, reason_code, production_rate, "
+			+ "conversion1, actual_production_rate, qty_defective FROM measuringentitystatusinterval "
+			+ "WHERE id_owner = ? AND owner_type = ? AND datetime_to > ? AND datetime_from < ? ORDER BY datetime_from";
+
+	/**
+	 * Number of rows fetched at once from the database.
+	 */
+	private static final int FETCH_ROWS = 1000;
+
+	private static final int MINUTES_DAY = 1440;
+
+	/**
+	 * Container used to read the intervals and write the aggregations.
+	 */
+	private final OEEAggregationContainer container;
+
+	/**
+	 * Pool where the recalculations run.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * In-memory OEE aggregations, null when they are disabled.
+	 */
+	private volatile OEEIncrementalAggregator incrementalAggregator;
+
+	/**
+	 * Constructor for the class.
+	 *
+	 * @param container		container of the OEE aggregations.
+	 * @param parallelism	number of threads of the pool.
+	 */
+	public OEERecalculator(OEEAggregationContainer container, int parallelism) {
+		super();
+		this.container = container;
+		this.pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Sets the in-memory OEE aggregations invalidated when their periods are rewritten.
+	 *
+	 * @param incrementalAggregator	in-memory aggregations, null when they are disabled.
+	 */
+	public void setIncrementalAggregator(OEEIncrementalAggregator incrementalAggregator) {
+		this.incrementalAggregator = incrementalAggregator;
+	}
+
+	/**
+	 * Recalculates the OEE aggregations of a measured entity.
+	 *
+	 * @param owner			measured entity.
+	 * @param ownerType		type of the measured entity.
+	 * @param from			start of the range.
+	 * @param to			end of the range.
+	 * @param reqInterval	granularity requested, the range is extended to the predefined periods of this granularity.
+	 * @return number of aggregations written.
+	 */
+	public int recalculate(Integer owner, MeasuredEntityType ownerType, LocalDateTime from, LocalDateTime to, String reqInterval) {
+		LocalDateTime[] span = getSpan(from, to, reqInterval);
+		if (span == null) {
+			return 0;
+		}
+		return pool.invoke(new EntityRecalculation(owner, ownerType, span[0], span[1]));
+	}
+
+	/**
+	 * Recalculates the OEE aggregations of several measured entities concurrently.
+	 *
+	 * @param owners		measured entities and their types.
+	 * @param from			start of the range.
+	 * @param to			end of the range.
+	 * @param reqInterval	granularity requested, the range is extended to the predefined periods of this granularity.
+	 * @return number of aggregations written.
+	 */
+	public int recalculate(Map<Integer, MeasuredEntityType> owners, LocalDateTime from, LocalDateTime to, String reqInterval) {
+		LocalDateTime[] span = getSpan(from, to, reqInterval);
+		if ((span == null) || owners.isEmpty()) {
+			return 0;
+		}
+		List<EntityRecalculation> tasks = new ArrayList<EntityRecalculation>();
+		for (Map.Entry<Integer, MeasuredEntityType> owner : owners.entrySet()) {
+			tasks.add(new EntityRecalculation(owner.getKey(), owner.getValue(), span[0], span[1]));
+		}
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+		int count = 0;
+		for (EntityRecalculation task : tasks) {
+			count = count + task.join();
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the range covered by the predefined periods requested, truncated to minutes.
+	 *
+	 * @return start and end of the range, or null if there are no periods.
+	 */
+	static LocalDateTime[] getSpan(LocalDateTime from, LocalDateTime to, String reqInterval) {
+		List<PredefinedPeriod> periods = PeriodUtils.getPredefinedPeriods(from, to, reqInterval);
+		LocalDateTime start = null;
+		LocalDateTime end = null;
+		for (PredefinedPeriod period : periods) {
+			LocalDateTime periodStart = period.getLocalDateTime();
+			LocalDateTime periodEnd = getEnd(period.getType(), periodStart);
+			if ((period.getType() == PredefinedPeriodType.INT_LT_HOUR) && (period.getCalendarTo() != null)) {
+				Calendar cal = period.getCalendarTo();
+				periodEnd = LocalDateTime.of(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH),
+						cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE));
+			}
+			if ((periodStart == null) || (periodEnd == null)) {
+				continue;
+			}
+			if ((start == null) || periodStart.isBefore(start)) {
+				start = periodStart;
+			}
+			if ((end == null) || periodEnd.isAfter(end)) {
+				end = periodEnd;
+			}
+		}
+		if ((start == null) || !end.isAfter(start)) {
+			return null;
+		}
+		return new LocalDateTime[] { start, end };
+	}
+
+	/**
+	 * Gets the end of a predefined period.
+	 */
+	static LocalDateTime getEnd(PredefinedPeriodType type, LocalDateTime start) {
+		if (start == null) {
+			return null;
+		}
+		switch (type) {
+			case MINUTE:
+				return start.plusMinutes(1);
+			case HOUR:
+				return start.plusHours(1);
+			case DAY:
+				return start.plusDays(1);
+			case MONTH:
+				return start.plusMonths(1);
+			case YEAR:
+				return start.plusYears(1);
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * State interval read from the database, with the rates multiplied by the conversion.
+	 */
+	static final class SourceInterval
+	{
+		final LocalDateTime from;
+		final LocalDateTime to;
+		final boolean productive;
+		final double schedRate;
+		final double actualRate;
+		final double qtyDefective;
+		final double duration;
+
+		SourceInterval(LocalDateTime from, LocalDateTime to, boolean productive, double schedRate,
+				double actualRate, double qtyDefective) {
+			this.from = from;
+			this.to = to;
+			this.productive = productive;
+			this.schedRate = schedRate;
+			this.actualRate = actualRate;
+			this.qtyDefective = qtyDefective;
+			this.duration = from.until(to, ChronoUnit.MILLIS) / 1000.0;
+		}
+	}
+
+	/**
+	 * Sums of the minutes and hours of a day.
+	 */
+	static final class DaySums
+	{
+		final LocalDateTime day;
+		final double[][] minutes = new double[4][MINUTES_DAY];
+		final double[][] hours = new double[4][24];
+		final double[] total = new double[4];
+
+		DaySums(LocalDateTime day) {
+			this.day = day;
+		}
+	}
+
+	/**
+	 * Database operation executed by a task of the pool.
+	 */
+	interface DatabaseOperation<T>
+	{
+		T run() throws SQLException;
+	}
+
+	/**
+	 * Blocker that executes a database operation, the pool compensates the thread blocked meanwhile.
+	 */
+	static final class DatabaseBlocker<T> implements ForkJoinPool.ManagedBlocker
+	{
+		private final DatabaseOperation<T> operation;
+		private T result;
+		private SQLException error;
+		private boolean done = false;
+
+		DatabaseBlocker(DatabaseOperation<T> operation) {
+			this.operation = operation;
+		}
+
+		@Override
+		public boolean block() {
+			if (!done) {
+				try {
+					result = operation.run();
+				} catch (SQLException e) {
+					error = e;
+				}
+				done = true;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			return done;
+		}
+	}
+
+	/**
+	 * Executes a database operation as a managed block of the pool.
+	 *
+	 * @param operation	operation to execute.
+	 * @return result of the operation.
+	 * @throws SQLException if the operation fails or the thread is interrupted while it waits.
+	 */
+	static <T> T block(DatabaseOperation<T> operation) throws SQLException {
+		DatabaseBlocker<T> blocker = new DatabaseBlocker<T>(operation);
+		try {
+			ForkJoinPool.managedBlock(blocker);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("interrupted while waiting for the database", e);
+		}
+		if (blocker.error != null) {
+			throw blocker.error;
+		}
+		return blocker.result;
+	}
+
+	/**
+	 * Reads the state intervals of an owner that overlap a range, in one query.
+	 *
+	 * @throws SQLException if the intervals can not be read, a partial list is never returned.
+	 */
+	List<SourceInterval> readIntervals(Integer owner, MeasuredEntityType ownerType, LocalDateTime from, LocalDateTime to) throws SQLException {
+		List<SourceInterval> list = new ArrayList<SourceInterval>();
+		Calendar cal = Calendar.getInstance();
+		cal.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+		Connection connDB = null;
+		PreparedStatement pstDB = null;
+		ResultSet rs = null;
+		try {
+			connDB = container.getConnection();
+			connDB.setAutoCommit(false);
+			ReasonCodeContainer reasonCont = ConfigurationManager.getInstance().getReasonCodeContainer();
+			pstDB = connDB.prepareStatement(SQL_RANGE);
+			pstDB.setInt(1, owner);
+			pstDB.setInt(2, ownerType.getValue());
+			pstDB.setTimestamp(3, Timestamp.valueOf(from));
+			pstDB.setTimestamp(4, Timestamp.valueOf(to));
+			pstDB.setFetchSize(FETCH_ROWS);
+			rs = pstDB.executeQuery();
+
+			while (rs.next()) {
+				LocalDateTime intervalFrom = toLocalDateTime(rs.getTimestamp("datetime_from", cal), cal);
+				LocalDateTime intervalTo = toLocalDateTime(rs.getTimestamp("datetime_to", cal), cal);
+				if (!intervalTo.isAfter(intervalFrom)) {
+					continue;
+				}
+
+				MeasuringState state = MeasuringState.getByName(rs.getString("status"));
+				String rowReasonCode = rs.getString("reason_code");
+				boolean productive = false;
+				if (state == MeasuringState.OPERATING) {
+					productive = true;
+				} else if (((state == MeasuringState.SCHEDULEDOWN) || (state == MeasuringState.UNSCHEDULEDOWN))
+						&& (rowReasonCode != null)) {
+					ReasonCode rCode = (ReasonCode) reasonCont.getObject(Integer.valueOf(rowReasonCode.trim()));
+					productive = (rCode != null) && rCode.includeProductiveTime();
+				}
+
+				double conversion1 = rs.getDouble("conversion1");
+				list.add(new SourceInterval(intervalFrom, intervalTo, productive,
+						conversion1 * rs.getDouble("production_rate"),
+						conversion1 * rs.getDouble("actual_production_rate"),
+						rs.getDouble("qty_defective")));
+			}
+		} finally {
+			if (rs != null) {
+				try {
+					rs.close();
+				} catch (SQLException e) { }
+			}
+			if (pstDB != null) {
+				try {
+					pstDB.close();
+				} catch (SQLException e) { }
+			}
+			if (connDB != null) {
+				try {
+					connDB.close();
+				} catch (SQLException e) { }
+			}
+		}
+		return list;
+	}
+
+	private static LocalDateTime toLocalDateTime(Timestamp timestamp, Calendar cal) {
+		cal.setTimeInMillis(timestamp.getTime());
+		return LocalDateTime.of(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1,
+				cal.get(Calendar.DAY_OF_MONTH), cal.get(Calendar.HOUR_OF_DAY),
+				cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND),
+				cal.get(Calendar.MILLISECOND) * 1000000);
+	}
+
+	/**
+	 * Adds the intervals that overlap a day to the sums of its minutes, and sums the hours and the day.
+	 *
+	 * @param day		start of the day.
+	 * @param intervals	intervals that overlap the day.
+	 * @return sums of the day.
+	 */
+	static DaySums sumDay(LocalDateTime day, List<SourceInterval> intervals) {
+		DaySums sums = new DaySums(day);
+		LocalDateTime dayEnd = day.plusDays(1);
+		for (SourceInterval interval : intervals) {
+			LocalDateTime from = interval.from.isAfter(day) ? interval.from : day;
+			LocalDateTime to = interval.to.isBefore(dayEnd) ? interval.to : dayEnd;
+			int minute = (int) day.until(from, ChronoUnit.MINUTES);
+			for (LocalDateTime start = day.plusMinutes(minute); start.isBefore(to); start = start.plusMinutes(1), minute++) {
+				LocalDateTime end = start.plusMinutes(1);
+				LocalDateTime overlapFrom = from.isAfter(start) ? from : start;
+				LocalDateTime overlapTo = to.isBefore(end) ? to : end;
+				double overlap = overlapFrom.until(overlapTo, ChronoUnit.MILLIS) / 1000.0;
+				double productiveTime = interval.productive ? overlap : 0;
+				sums.minutes[0][minute] += productiveTime;
+				sums.minutes[1][minute] += interval.schedRate * (productiveTime / 60);
+				sums.minutes[2][minute] += interval.actualRate * (productiveTime / 60);
+				sums.minutes[3][minute] += interval.qtyDefective * (overlap / interval.duration);
+			}
+		}
+		for (int i = 0; i < 4; i++) {
+			for (int minute = 0; minute < MINUTES_DAY; minute++) {
+				sums.hours[i][minute / 60] += sums.minutes[i][minute];
+			}
+			for (int hour = 0; hour < 24; hour++) {
+				sums.total[i] += sums.hours[i][hour];
+			}
+		}
+		return sums;
+	}
+
+	private static OverallEquipmentEffectiveness toOEE(PredefinedPeriod period, Integer owner, MeasuredEntityType ownerType,
+			double productiveTime, double qtySchedToProduce, double qtyProduced, double qtyDefective) {
+		OverallEquipmentEffectiveness oee = new OverallEquipmentEffectiveness(period, owner, ownerType);
+		oee.setProductiveTime(productiveTime);
+		oee.setQtySchedToProduce(qtySchedToProduce);
+		oee.setQtyProduced(qtyProduced);
+		oee.setQtyDefective(qtyDefective);
+		return oee;
+	}
+
+	/**
+	 * Recalculation of a measured entity, its days are calculated in parallel.
+	 */
+	private final class EntityRecalculation extends RecursiveTask<Integer>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Integer owner;
+		private final MeasuredEntityType ownerType;
+		private final LocalDateTime from;
+		private final LocalDateTime to;
+
+		EntityRecalculation(Integer owner, MeasuredEntityType ownerType, LocalDateTime from, LocalDateTime to) {
+			this.owner = owner;
+			this.ownerType = ownerType;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Integer compute() {
+			logger.debug("recalculating OEE owner:" + owner + " from:" + from + " to:" + to);
+			List<SourceInterval> intervals;
+			try {
+				intervals = block(() -> readIntervals(owner, ownerType, from, to));
+			} catch (SQLException e) {
+				logger.error("OEE of owner:" + owner + " not recalculated, the intervals could not be read: " + e.getMessage());
+				return 0;
+			}
+
+			// the intervals of every day.
+			LocalDateTime firstDay = from.truncatedTo(ChronoUnit.DAYS);
+			int days = (int) firstDay.until(to, ChronoUnit.DAYS) + 1;
+			List<List<SourceInterval>> byDay = new ArrayList<List<SourceInterval>>(days);
+			for (int i = 0; i < days; i++) {
+				byDay.add(new ArrayList<SourceInterval>());
+			}
+			for (SourceInterval interval : intervals) {
+				LocalDateTime start = interval.from.isAfter(from) ? interval.from : from;
+				LocalDateTime end = interval.to.isBefore(to) ? interval.to : to;
+				for (LocalDateTime day = start.truncatedTo(ChronoUnit.DAYS); day.isBefore(end); day = day.plusDays(1)) {
+					byDay.get((int) firstDay.until(day, ChronoUnit.DAYS)).add(interval);
+				}
+			}
+
+			List<ForkJoinTask<DaySums>> tasks = new ArrayList<ForkJoinTask<DaySums>>(days);
+			for (int i = 0; i < days; i++) {
+				LocalDateTime day = firstDay.plusDays(i);
+				List<SourceInterval> dayIntervals = byDay.get(i);
+				tasks.add(ForkJoinTask.adapt(() -> sumDay(day, dayIntervals)));
+			}
+			invokeAll(tasks);
+
+			List<DaySums> sums = new ArrayList<DaySums>(days);
+			for (ForkJoinTask<DaySums> task : tasks) {
+				sums.add(task.join());
+			}
+			try {
+				return write(sums);
+			} catch (SQLException e) {
+				logger.error("OEE of owner:" + owner + " not written: " + e.getMessage());
+				return 0;
+			}
+		}
+
+		/**
+		 * Writes the periods inside the range that already finished, a batch by period type.
+		 */
+		private int write(List<DaySums> sums) throws SQLException {
+			LocalDateTime now = LocalDateTime.now();
+			List<OverallEquipmentEffectiveness> minutes = new ArrayList<OverallEquipmentEffectiveness>();
+			List<OverallEquipmentEffectiveness> hours = new ArrayList<OverallEquipmentEffectiveness>();
+			List<OverallEquipmentEffectiveness> days = new ArrayList<OverallEquipmentEffectiveness>();
+			List<OverallEquipmentEffectiveness> months = new ArrayList<OverallEquipmentEffectiveness>();
+			List<OverallEquipmentEffectiveness> years = new ArrayList<OverallEquipmentEffectiveness>();
+
+			double[] month = new double[4];
+			double[] year = new double[4];
+			for (DaySums day : sums) {
+				LocalDateTime d = day.day;
+				for (int minute = 0; minute < MINUTES_DAY; minute++) {
+					LocalDateTime start = d.plusMinutes(minute);
+					if (inRange(start, start.plusMinutes(1), now)) {
+						minutes.add(toOEE(new PredefinedPeriod(d.getYear(), d.getMonthValue(), d.getDayOfMonth(), minute / 60, minute % 60),
+								owner, ownerType, day.minutes[0][minute], day.minutes[1][minute], day.minutes[2][minute], day.minutes[3][minute]));
+					}
+				}
+				for (int hour = 0; hour < 24; hour++) {
+					LocalDateTime start = d.plusHours(hour);
+					if (inRange(start, start.plusHours(1), now)) {
+						hours.add(toOEE(new PredefinedPeriod(d.getYear(), d.getMonthValue(), d.getDayOfMonth(), hour),
+								owner, ownerType, day.hours[0][hour], day.hours[1][hour], day.hours[2][hour], day.hours[3][hour]));
+					}
+				}
+				if (inRange(d, d.plusDays(1), now)) {
+					days.add(toOEE(new PredefinedPeriod(d.getYear(), d.getMonthValue(), d.getDayOfMonth()),
+							owner, ownerType, day.total[0], day.total[1], day.total[2], day.total[3]));
+				}
+
+				// the months and years are the sums of their days.
+				for (int i = 0; i < 4; i++) {
+					month[i] += day.total[i];
+					year[i] += day.total[i];
+				}
+				LocalDateTime next = d.plusDays(1);
+				if (next.getDayOfMonth() == 1) {
+					LocalDateTime start = LocalDateTime.of(d.getYear(), d.getMonthValue(), 1, 0, 0);
+					if (inRange(start, next, now)) {
+						months.add(toOEE(new PredefinedPeriod(d.getYear(), d.getMonthValue()),
+								owner, ownerType, month[0], month[1], month[2], month[3]));
+					}
+					month = new double[4];
+				}
+				if (next.getDayOfYear() == 1) {
+					LocalDateTime start = LocalDateTime.of(d.getYear(), 1, 1, 0, 0);
+					if (inRange(start, next, now)) {
+						years.add(toOEE(new PredefinedPeriod(d.getYear()),
+								owner, ownerType, year[0], year[1], year[2], year[3]));
+					}
+					year = new double[4];
+				}
+			}
+
+			int count = block(() -> container.dbReplace(minutes) + container.dbReplace(hours)
+					+ container.dbReplace(days) + container.dbReplace(months) + container.dbReplace(years));
+			OEEIncrementalAggregator aggregator = incrementalAggregator;
+			if (aggregator != null) {
+				aggregator.invalidate(owner, ownerType, from, to.isBefore(now) ? to : now);
+			}
+			logger.debug("recalculated OEE owner:" + owner + " aggregations written:" + count);
+			return count;
+		}
+
+		private boolean inRange(LocalDateTime start, LocalDateTime end, LocalDateTime now) {
+			return !start.isBefore(from) && !end.isAfter(to) && !end.isAfter(now);
+		}
+	}
+}
@@ -2,6 +2,7 @@ package com.advicetec.aggregation.oee;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.time.ZoneId;
@@ -11,15 +12,17 @@ import java.util.Date;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.codehaus.jackson.annotate.JsonIgnore;
 import org.codehaus.jackson.annotate.JsonProperty;
 
 import com.advicetec.measuredentitity.MeasuredEntityType;
 import com.advicetec.measuredentitity.StateInterval;
-import com.advicetec.persistence.Storable;
+import com.advicetec.persistence.BulkStorable;
+import com.advicetec.persistence.BulkTable;
 import com.advicetec.utils.PredefinedPeriod;
 import com.advicetec.utils.PredefinedPeriodType;
 
-public class OverallEquipmentEffectiveness implements Storable
+public class OverallEquipmentEffectiveness implements BulkStorable
 {
 
 	static Logger logger = LogManager.getLogger(OverallEquipmentEffectiveness.class.getName());
@@ -66,6 +69,13 @@ public class OverallEquipmentEffectiveness implements Storable
 	 */
 	public static final String SQL_Insert = "insert into measuringentityoee (id_owner, owner_type, period_key, productive_time, qty_sched_to_produce, qty_produced, qty_defective) values (?, ?, ?, ?, ?, ?, ? )";
 	
+	/**
+	 * Table and columns used to load OEE aggregations with a bulk writer, in the order of the insert statement.
+	 */
+	public static final BulkTable BULK_TABLE = new BulkTable("measuringentityoee", 
+			new String[] {"id_owner", "owner_type", "period_key", "productive_time", "qty_sched_to_produce", "qty_produced", "qty_defective"}, 
+			new int[] {Types.INTEGER, Types.INTEGER, Types.VARCHAR, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE});
+	
 	/**
 	 * Sql sentence used to delete an OEE aggregation
 	 */
@@ -76,6 +86,11 @@ public class OverallEquipmentEffectiveness implements Storable
 	 */
 	public static final String SQL_Select = "select productive_time, qty_sched_to_produce, qty_produced, qty_defective from measuringentityoee where id_owner = ? and owner_type = ? and period_key = ?";
 	
+	/**
+	 * Sql sentence used to select the OEE aggregations of a period type between two period keys, the type is given by the pattern of its key.
+	 */
+	public static final String SQL_Range_Select = "select period_key, productive_time, qty_sched_to_produce, qty_produced, qty_defective from measuringentityoee where id_owner = ? and owner_type = ? and period_key >= ? and period_key <= ? and RTRIM(period_key) like ?";
+	
 	/**
 	 * SQL statement used to verify if an OEE aggregation exists in the database.
 	 */
@@ -309,6 +324,31 @@ public class OverallEquipmentEffectiveness implements Storable
 		return SQL_Delete;
 	}
 
+	/**
+	 * Gets the table and columns used to load OEE aggregations with a bulk writer
+	 */
+	@JsonIgnore
+	public BulkTable getBulkTable() {
+		return BULK_TABLE;
+	}
+
+	/**
+	 * Gets the values of the aggregation in the order of the bulk table columns, they are the same 
+	 * values inserted by dbInsert.
+	 */
+	@JsonIgnore
+	public Object[] getBulkValues() {
+		return new Object[] {
+				getParent(),
+				getParentType().getValue(),
+				this.predefinedPeriod.getKey(),
+				this.getProductiveTime(),
+				this.getQtySchedToProduce(),
+				this.getQtyProduced(),
+				this.getQtyDefective()
+		};
+	}
+
 	/** 
 	 * Inserts this object in the database by filling the parameters of a prepared statement. 
 	 */
@@ -18,6 +18,7 @@ import com.advicetec.core.serialization.ModbusAccessDeserializer;
 import com.advicetec.core.serialization.ModbusAccessSerializer;
 import com.advicetec.core.serialization.ModbusObjectTypeDeserializer;
 import com.advicetec.core.serialization.ModbusObjectTypeSerializer;
+import com.advicetec.eventprocessor.EventManager;
 import com.advicetec.eventprocessor.ModBusTcpEvent;
 import com.advicetec.eventprocessor.ModBusTcpEventType;
 
@@ -338,7 +339,8 @@ public class ModbusMonitoringDevice extends MonitoringDevice {
 			}
 		}
 		
-		return events;
+		// Ports with the same refresh time can be read in a single poll cycle.
+		return EventManager.getInstance().groupModbusEvents(events);
 		
 	}
 	
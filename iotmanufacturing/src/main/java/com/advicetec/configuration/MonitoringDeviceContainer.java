@@ -18,6 +18,7 @@ import org.codehaus.jackson.map.JsonMappingException;
 import org.codehaus.jackson.map.ObjectMapper;
 
 import com.advicetec.eventprocessor.ModBusTcpEvent;
+import com.advicetec.language.transformation.TransformationProgramCache;
 import com.advicetec.measuredentitity.Machine;
 import com.advicetec.measuredentitity.MeasuredEntity;
 import com.advicetec.measuredentitity.MeasuredEntityType;
@@ -273,6 +274,9 @@ public class MonitoringDeviceContainer extends Container
 			rs2.close();
 			super.disconnect();
 			
+			// Transformations compiled with the previous configuration are not longer valid.
+			TransformationProgramCache.getInstance().invalidateAll();
+			
 		} catch (ClassNotFoundException e){
         	String error = "Could not find the driver class - Error" + e.getMessage(); 
         	logger.error(error);
@@ -296,6 +300,10 @@ public class MonitoringDeviceContainer extends Container
 	 */
 	public synchronized void addMonitoringDevice(MonitoringDevice mDevice) {
 		
+		// Invalidates the transformations compiled for the previous and the new ports.
+		invalidateCompiledPrograms((MonitoringDevice) super.configuationObjects.get(mDevice.getId()));
+		invalidateCompiledPrograms(mDevice);
+		
 		// Adds the monitoring device monitoring device container
 		super.configuationObjects.put(mDevice.getId(), mDevice);
 
@@ -324,9 +332,36 @@ public class MonitoringDeviceContainer extends Container
 	 */
 	public synchronized void deleteMonitoringDevice(int uniqueID)
 	{
+		invalidateCompiledPrograms((MonitoringDevice) super.configuationObjects.get(uniqueID));
 		super.configuationObjects.remove(uniqueID);
 	}
 	
+	/**
+	 * Removes from the transformation cache the programs compiled for the measured entities
+	 * referenced by the ports of the monitoring device given as parameter.
+	 * 
+	 * @param mDevice  Monitoring device whose configuration changes, it can be null.
+	 */
+	private void invalidateCompiledPrograms(MonitoringDevice mDevice)
+	{
+		if (mDevice == null)
+			return;
+		
+		List<? extends InputOutputPort> ports = null;
+		if (mDevice instanceof ModbusMonitoringDevice) {
+			ports = ((ModbusMonitoringDevice) mDevice).inputOutputPorts;
+		} else if (mDevice instanceof MqttMonitoringDevice) {
+			ports = ((MqttMonitoringDevice) mDevice).inputOutputPorts;
+		}
+		
+		if (ports != null) {
+			for (InputOutputPort port : ports) {
+				if (port.getMeasuringEntity() != null)
+					TransformationProgramCache.getInstance().invalidateEntity(port.getMeasuringEntity());
+			}
+		}
+	}
+	
 	
 	/**
 	 * Obtains a measuring device configured with the parameter mac address.  
@@ -0,0 +1,513 @@
+package com.advicetec.core;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * In-memory time series with the values of an attribute, ordered by their datetime.
+ *
+ * The values are kept in columns of primitive arrays split in chunks: the datetime as epoch milliseconds
+ * (the local datetime taken as UTC), and the value as a double for double attributes, as a long for integer
+ * and boolean attributes, and as a code of a dictionary for string attributes. Datetime, date and time attributes,
+ * and the values whose class does not correspond to the attribute type, are kept as objects.
+ *
+ * The writes are synchronized. The reads do not take any lock: a chunk publishes its size after the values
+ * are written, and the array of chunks is replaced when a chunk is added or removed, so a read works on the
+ * chunks that existed when it started.
+ *
+ * @author advicetec
+ *
+ */
+public final class AttributeSeries
+{
+
+	static Logger logger = LogManager.getLogger(AttributeSeries.class.getName());
+
+	/**
+	 * Capacity of the first chunk, the next chunks double it until the maximum chunk size.
+	 */
+	private static final int MIN_CHUNK_SIZE = 16;
+
+	/**
+	 * Default maximum number of values in a chunk.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+	/**
+	 * Maximum number of distinct strings encoded in the dictionary, the next ones are kept as objects.
+	 */
+	private static final int MAX_DICTIONARY_SIZE = 4096;
+
+	/**
+	 * Marks a null value in the object column.
+	 */
+	private static final Object NULL_VALUE = new Object();
+
+	/**
+	 * How the values are stored.
+	 */
+	private enum Column { DOUBLE, LONG, BOOLEAN, DICTIONARY, OBJECT }
+
+	/**
+	 * Chunk of the series. Only the last chunk receives new values.
+	 */
+	private static final class Chunk
+	{
+		final long[] times;
+		final double[] doubles;
+		final long[] longs;
+		Object[] objects;
+		volatile int size;
+
+		Chunk(Column column, int capacity) {
+			times = new long[capacity];
+			doubles = (column == Column.DOUBLE) ? new double[capacity] : null;
+			longs = ((column == Column.LONG) || (column == Column.BOOLEAN) || (column == Column.DICTIONARY)) ? new long[capacity] : null;
+			objects = (column == Column.OBJECT) ? new Object[capacity] : null;
+		}
+
+		int capacity() {
+			return times.length;
+		}
+
+		long first() {
+			return times[0];
+		}
+
+		long last() {
+			return times[size - 1];
+		}
+	}
+
+	/**
+	 * Attribute of the values.
+	 */
+	private final Attribute attribute;
+
+	/**
+	 * Column used for the values of the attribute type.
+	 */
+	private final Column column;
+
+	/**
+	 * Maximum number of values in a chunk.
+	 */
+	private final int chunkSize;
+
+	/**
+	 * Chunks ordered by datetime, the array is replaced whenever a chunk is added or removed.
+	 */
+	private volatile Chunk[] chunks = new Chunk[0];
+
+	/**
+	 * String dictionary, the array is replaced when it grows.
+	 */
+	private volatile String[] dictionary;
+
+	/**
+	 * Codes of the strings in the dictionary, only used by the writer.
+	 */
+	private Map<String, Integer> codes;
+
+	/**
+	 * Constructor for the class.
+	 *
+	 * @param attribute	attribute of the values in the series.
+	 */
+	public AttributeSeries(Attribute attribute) {
+		this(attribute, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructor for the class.
+	 *
+	 * @param attribute		attribute of the values in the series.
+	 * @param chunkSize		maximum number of values in a chunk.
+	 */
+	public AttributeSeries(Attribute attribute, int chunkSize) {
+		this.attribute = attribute;
+		this.chunkSize = Math.max(MIN_CHUNK_SIZE, chunkSize);
+		switch (attribute.getType()) {
+		case DOUBLE:
+			column = Column.DOUBLE;
+			break;
+		case INT:
+			column = Column.LONG;
+			break;
+		case BOOLEAN:
+			column = Column.BOOLEAN;
+			break;
+		case STRING:
+			column = Column.DICTIONARY;
+			dictionary = new String[MIN_CHUNK_SIZE];
+			codes = new HashMap<String, Integer>();
+			break;
+		default:
+			column = Column.OBJECT;
+			break;
+		}
+	}
+
+	/**
+	 * Gets the attribute of the values.
+	 *
+	 * @return attribute of the series.
+	 */
+	public Attribute getAttribute() {
+		return attribute;
+	}
+
+	/**
+	 * Converts a datetime into the epoch milliseconds used by the series.
+	 */
+	static long toMillis(LocalDateTime dateTime) {
+		return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+	}
+
+	/**
+	 * Converts the epoch milliseconds used by the series into a datetime.
+	 */
+	static LocalDateTime toDateTime(long millis) {
+		return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+	}
+
+	/**
+	 * Adds a value to the series. A value with the datetime of a previous value replaces it.
+	 *
+	 * @param dateTime	datetime of the value, the precision is milliseconds.
+	 * @param value		value to add.
+	 */
+	public synchronized void add(LocalDateTime dateTime, Object value) {
+		long time = toMillis(dateTime);
+		Chunk[] current = chunks;
+		Chunk last = (current.length > 0) ? current[current.length - 1] : null;
+
+		if ((last != null) && (last.size > 0) && (time <= last.last())) {
+			if (time == last.last()) {
+				set(last, last.size - 1, value);
+			} else {
+				// The clock went back, the chunk with the datetime is copied with the value in its place.
+				logger.debug("value out of order for attribute:" + attribute.getName() + " datetime:" + dateTime);
+				insert(current, time, value);
+			}
+			return;
+		}
+
+		if ((last == null) || (last.size == last.capacity())) {
+			last = new Chunk(column, nextCapacity(current));
+			Chunk[] added = Arrays.copyOf(current, current.length + 1);
+			added[current.length] = last;
+			// the chunk is published empty, the size makes the value visible.
+			chunks = added;
+		}
+		int index = last.size;
+		last.times[index] = time;
+		set(last, index, value);
+		last.size = index + 1;
+	}
+
+	/**
+	 * Returns the capacity of a new chunk: the number of values in the series bounded by the minimum and maximum chunk size.
+	 */
+	private int nextCapacity(Chunk[] current) {
+		int count = 0;
+		for (Chunk chunk : current) {
+			count += chunk.size;
+		}
+		return Math.min(chunkSize, Math.max(MIN_CHUNK_SIZE, Integer.highestOneBit(Math.max(1, count)) * 2));
+	}
+
+	/**
+	 * Stores the value in a position of the chunk, in its column or as object when it does not correspond to the attribute type.
+	 */
+	private void set(Chunk chunk, int index, Object value) {
+		boolean stored = true;
+		switch (column) {
+		case DOUBLE:
+			if (value instanceof Double) {
+				chunk.doubles[index] = (Double) value;
+			} else {
+				stored = false;
+			}
+			break;
+		case LONG:
+			if (value instanceof Integer) {
+				chunk.longs[index] = (Integer) value;
+			} else {
+				stored = false;
+			}
+			break;
+		case BOOLEAN:
+			if (value instanceof Boolean) {
+				chunk.longs[index] = ((Boolean) value) ? 1L : 0L;
+			} else {
+				stored = false;
+			}
+			break;
+		case DICTIONARY:
+			int code = (value instanceof String) ? encode((String) value) : -1;
+			if (code >= 0) {
+				chunk.longs[index] = code;
+			} else {
+				stored = false;
+			}
+			break;
+		default:
+			stored = false;
+			break;
+		}
+
+		if (!stored) {
+			if (chunk.objects == null) {
+				chunk.objects = new Object[chunk.capacity()];
+			}
+			chunk.objects[index] = (value == null) ? NULL_VALUE : value;
+		} else if (chunk.objects != null) {
+			chunk.objects[index] = null;
+		}
+	}
+
+	/**
+	 * Returns the dictionary code of a string, or -1 if the dictionary is full.
+	 */
+	private int encode(String value) {
+		Integer code = codes.get(value);
+		if (code != null) {
+			return code;
+		}
+		int next = codes.size();
+		if (next >= MAX_DICTIONARY_SIZE) {
+			return -1;
+		}
+		String[] current = dictionary;
+		if (next == current.length) {
+			current = Arrays.copyOf(current, current.length * 2);
+		}
+		current[next] = value;
+		dictionary = current;
+		codes.put(value, next);
+		return next;
+	}
+
+	/**
+	 * Returns the value in a position of the chunk.
+	 */
+	private Object get(Chunk chunk, int index) {
+		Object[] objects = chunk.objects;
+		if ((objects != null) && (objects[index] != null)) {
+			return (objects[index] == NULL_VALUE) ? null : objects[index];
+		}
+		switch (column) {
+		case DOUBLE:
+			return chunk.doubles[index];
+		case LONG:
+			return (int) chunk.longs[index];
+		case BOOLEAN:
+			return chunk.longs[index] != 0;
+		case DICTIONARY:
+			return dictionary[(int) chunk.longs[index]];
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Inserts a value older than the last value. The chunk where the value goes is copied with the value in its place,
+	 * and replaced in a new array of chunks, so the reads in progress keep the previous chunk.
+	 */
+	private void insert(Chunk[] current, long time, Object value) {
+		int position = findChunk(current, time);
+		if (position < 0) {
+			position = 0;
+		}
+		Chunk old = current[position];
+		int size = old.size;
+		int index = search(old, size, time);
+		if ((index < size) && (old.times[index] == time)) {
+			// same datetime, the copy replaces the value.
+			Chunk copy = copy(old, size, size, -1);
+			set(copy, index, value);
+			copy.size = size;
+			replace(current, position, copy);
+			return;
+		}
+		boolean isLast = (position == current.length - 1);
+		Chunk copy = copy(old, isLast ? Math.max(old.capacity(), size + 1) : size + 1, size, index);
+		copy.times[index] = time;
+		set(copy, index, value);
+		copy.size = size + 1;
+		replace(current, position, copy);
+	}
+
+	/**
+	 * Copies the values of a chunk into a new chunk, leaving a free position in the gap index when it is not negative.
+	 */
+	private Chunk copy(Chunk old, int capacity, int size, int gap) {
+		Chunk copy = new Chunk(column, capacity);
+		for (int i = 0; i < size; i++) {
+			int target = ((gap >= 0) && (i >= gap)) ? i + 1 : i;
+			copy.times[target] = old.times[i];
+			set(copy, target, get(old, i));
+		}
+		return copy;
+	}
+
+	private void replace(Chunk[] current, int position, Chunk chunk) {
+		Chunk[] replaced = Arrays.copyOf(current, current.length);
+		replaced[position] = chunk;
+		chunks = replaced;
+	}
+
+	/**
+	 * Returns the position of the last chunk whose first datetime is less or equal than the given time,
+	 * or -1 if the time is before the first chunk.
+	 */
+	private static int findChunk(Chunk[] current, long time) {
+		int low = 0;
+		int high = current.length - 1;
+		int found = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if ((current[mid].size > 0) && (current[mid].first() <= time)) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Returns the first index in the chunk with a datetime greater or equal than the given time.
+	 */
+	private static int search(Chunk chunk, int size, long time) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (chunk.times[mid] < time) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Visits the values with a datetime in the interval [from, to), in datetime order.
+	 *
+	 * @param from		start of the interval, included.
+	 * @param to		end of the interval, excluded.
+	 * @param visitor	receives the datetime and the value.
+	 */
+	public void forEach(LocalDateTime from, LocalDateTime to, BiConsumer<LocalDateTime, Object> visitor) {
+		forEach(toMillis(from), toMillis(to), visitor);
+	}
+
+	/**
+	 * Visits the values with a datetime at or after the given one, in datetime order.
+	 *
+	 * @param from		start of the interval, included.
+	 * @param visitor	receives the datetime and the value.
+	 */
+	public void forEachSince(LocalDateTime from, BiConsumer<LocalDateTime, Object> visitor) {
+		forEach(toMillis(from), Long.MAX_VALUE, visitor);
+	}
+
+	/**
+	 * Visits all the values of the series, in datetime order.
+	 *
+	 * @param visitor	receives the datetime and the value.
+	 */
+	public void forEach(BiConsumer<LocalDateTime, Object> visitor) {
+		forEach(Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+	}
+
+	private void forEach(long from, long to, BiConsumer<LocalDateTime, Object> visitor) {
+		Chunk[] current = chunks;
+		int position = Math.max(0, findChunk(current, from));
+		for (int c = position; c < current.length; c++) {
+			Chunk chunk = current[c];
+			int size = chunk.size;
+			int index = (c == position) ? search(chunk, size, from) : 0;
+			for (int i = index; i < size; i++) {
+				long time = chunk.times[i];
+				if (time >= to) {
+					return;
+				}
+				visitor.accept(toDateTime(time), get(chunk, i));
+			}
+		}
+	}
+
+	/**
+	 * Visits the last n values of the series, in datetime order.
+	 *
+	 * @param n			number of values.
+	 * @param visitor	receives the datetime and the value.
+	 */
+	public void forEachLast(int n, BiConsumer<LocalDateTime, Object> visitor) {
+		Chunk[] current = chunks;
+		// the sizes are read once, the values added during the visit are not counted.
+		int[] sizes = new int[current.length];
+		int total = 0;
+		for (int i = 0; i < current.length; i++) {
+			sizes[i] = current[i].size;
+			total += sizes[i];
+		}
+		int skip = Math.max(0, total - Math.max(0, n));
+		for (int i = 0; i < current.length; i++) {
+			if (skip >= sizes[i]) {
+				skip -= sizes[i];
+				continue;
+			}
+			Chunk chunk = current[i];
+			for (int j = skip; j < sizes[i]; j++) {
+				visitor.accept(toDateTime(chunk.times[j]), get(chunk, j));
+			}
+			skip = 0;
+		}
+	}
+
+	/**
+	 * Removes the chunks whose values are all older than the given datetime. The values older than the datetime
+	 * in the first remaining chunk are kept until the whole chunk is old.
+	 *
+	 * @param oldest	datetime of the oldest value that has to be kept.
+	 */
+	public synchronized void removeBefore(LocalDateTime oldest) {
+		long time = toMillis(oldest);
+		Chunk[] current = chunks;
+		int remove = 0;
+		// the last chunk is kept to receive the new values.
+		while ((remove < current.length - 1) && (current[remove].size > 0) && (current[remove].last() < time)) {
+			remove++;
+		}
+		if (remove > 0) {
+			chunks = Arrays.copyOfRange(current, remove, current.length);
+		}
+	}
+
+	/**
+	 * Returns the number of values in the series.
+	 *
+	 * @return number of values.
+	 */
+	public int size() {
+		int count = 0;
+		for (Chunk chunk : chunks) {
+			count += chunk.size;
+		}
+		return count;
+	}
+}
@@ -3,9 +3,11 @@ package com.advicetec.core;
 
 import java.beans.PropertyVetoException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.SQLException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -13,6 +15,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
@@ -21,6 +24,9 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.parsers.ParserConfigurationException;
@@ -28,6 +34,7 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.codehaus.jackson.JsonGenerationException;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.JsonMappingException;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.json.JSONArray;
@@ -37,6 +44,7 @@ import org.w3c.dom.Document;
 import com.advicetec.MessageProcessor.DelayEvent;
 import com.advicetec.aggregation.oee.OEEAggregationCalculator;
 import com.advicetec.aggregation.oee.OEEAggregationManager;
+import com.advicetec.aggregation.oee.OEEIncrementalAggregator;
 import com.advicetec.aggregation.oee.OverallEquipmentEffectiveness;
 import com.advicetec.configuration.ReasonCode;
 import com.advicetec.core.Attribute;
@@ -68,6 +76,10 @@ import com.advicetec.utils.PredefinedPeriodType;
  * 
  * It allows the language processor to access the measured entity functionality
  * without exposing all its methods.
+ * 
+ * The updates coming from the ingestion (attribute values, symbols and state changes) are serialized 
+ * by the write lock. The queries do not lock the facade, they read the concurrent maps and the status, 
+ * so a REST request that goes to the database does not stop the ingestion of the entity.    
  *   
  * @author maldofer
  *
@@ -80,7 +92,7 @@ public abstract class EntityFacade  {
 	/**
 	 *  entity for which this facade is built.  
 	 */
-	protected Entity entity;
+	protected volatile Entity entity;
 	
 	/**
 	 * Keeps the in-memory entity status, the status corresponds to the current value of all attributes. 
@@ -88,10 +100,23 @@ public abstract class EntityFacade  {
 	protected StatusStore status;
 	
 	/**
-	 * References to measured attributes value stored in the cache. 
-	 * For each attribute, we store the keys being used in the cache ordered by the datetime when they were inserted.
+	 * Measured attribute values that have not been removed from the cache. 
+	 * For each attribute, we keep a columnar series with the values ordered by the datetime when they were inserted, 
+	 * so the queries over the cache do not need to look up the values in the cache.
+	 */
+	protected Map<String,AttributeSeries> attSeries;
+	
+	/**
+	 * Sliding window aggregates requested by the behaviors, by attribute name. 
+	 * They are updated when a value of the attribute is set.
+	 */
+	protected Map<String,List<WindowAggregate>> windowAggregates;
+	
+	/**
+	 * Production counters of the open state intervals, by the key of the interval owner. 
+	 * They are updated when a value of the counted attribute is set.
 	 */
-	protected Map<String,SortedMap<LocalDateTime,String>> attMap;
+	protected Map<String,IntervalCounter> intervalCounters;
 	
 	protected MeasureAttributeValueCache attValueCache;
 	
@@ -112,6 +137,12 @@ public abstract class EntityFacade  {
 	 */
 	protected Integer purgeFacadeCacheMapEntries;
 	
+	/**
+	 * Lock for the updates of the facade. The write lock serializes the updates, the read lock is taken 
+	 * by the queries that need several fields of the entity changed together, like the current state interval. 
+	 */
+	protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	
 	/**
 	 * Constructor for the class.
 	 *  
@@ -128,7 +159,9 @@ public abstract class EntityFacade  {
 		this.attValueCache= MeasureAttributeValueCache.getInstance();
 
 		
-		this.attMap = new ConcurrentHashMap<String,SortedMap<LocalDateTime,String>>();
+		this.attSeries = new ConcurrentHashMap<String,AttributeSeries>();
+		this.windowAggregates = new ConcurrentHashMap<String,List<WindowAggregate>>();
+		this.intervalCounters = new ConcurrentHashMap<String,IntervalCounter>();
 		this.statesMap = new ConcurrentSkipListMap<LocalDateTime,String>();
 		
 		this.stateCache = StateIntervalCache.getInstance();
@@ -158,7 +191,7 @@ public abstract class EntityFacade  {
 	 * 
 	 * @return  measured entity
 	 */
-	public synchronized Entity getEntity() {
+	public Entity getEntity() {
 		logger.debug("getEntity called");
 		return entity;
 	}
@@ -167,10 +200,15 @@ public abstract class EntityFacade  {
 	 * Sets the entity referenced by this facade.
 	 * @param entity	measured entity being referenced. 
 	 */
-	public synchronized void setEntity(Entity entity) {
-		logger.debug("setEntity Start " + String.valueOf(entity.getId()));
-		this.entity = entity;
-		logger.debug("setEntity End " + String.valueOf(entity.getId()));
+	public void setEntity(Entity entity) {
+		lock.writeLock().lock();
+		try {
+			logger.debug("setEntity Start " + String.valueOf(entity.getId()));
+			this.entity = entity;
+			logger.debug("setEntity End " + String.valueOf(entity.getId()));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -178,7 +216,7 @@ public abstract class EntityFacade  {
 	 * 
 	 * @return	measure entity type
 	 */
-	public synchronized MeasuredEntityType getType(){
+	public MeasuredEntityType getType(){
 		logger.debug("getType called");
 		return entity.getType();
 	}
@@ -190,11 +228,16 @@ public abstract class EntityFacade  {
 	 * @throws Exception If the new type of the attribute does not match the 
 	 * previous type.
 	 */
-	public synchronized void setAttribute(Attribute attribute) throws Exception{
-		// returns the previous value
-		logger.debug("setAttribute Start");
-		status.setAttribute(attribute);
-		logger.debug("setAttribute End");
+	public void setAttribute(Attribute attribute) throws Exception{
+		lock.writeLock().lock();
+		try {
+			// returns the previous value
+			logger.debug("setAttribute Start");
+			status.setAttribute(attribute);
+			logger.debug("setAttribute End");
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -202,27 +245,44 @@ public abstract class EntityFacade  {
 	 * 
 	 * @param attrValue attribute value to update.
 	 */
-	public synchronized void setAttributeValue(AttributeValue attrValue)
+	public void setAttributeValue(AttributeValue attrValue)
 	{
-		logger.debug("setAttributeValue Start");
-		MeasuredAttributeValue mav = new MeasuredAttributeValue(attrValue.getAttr(), attrValue.getValue(),
-				attrValue.getGenerator(), attrValue.getGeneratorType(), LocalDateTime.now());
-		// stores this attributeValue into cache
-		attValueCache.cacheStore(mav);
-		// stores this value into status
-		status.setAttributeValue(attrValue);
-
-
-		// The key for a measuredAttributeValue is the name of the attribute plus the timestamp
-		// The key for an attributeValue is the name of the attribute. 
-		String attName = mav.getAttr().getName();
-		SortedMap<LocalDateTime, String> internalMap = attMap.get(attName);
-		if(internalMap == null){
-			attMap.put(attName,new ConcurrentSkipListMap<LocalDateTime, String>());
-			internalMap = attMap.get(attName);
+		lock.writeLock().lock();
+		try {
+			logger.debug("setAttributeValue Start");
+			// the series keeps the datetime in milliseconds.
+			MeasuredAttributeValue mav = new MeasuredAttributeValue(attrValue.getAttr(), attrValue.getValue(),
+					attrValue.getGenerator(), attrValue.getGeneratorType(), LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+			// stores this attributeValue into cache
+			attValueCache.cacheStore(mav);
+			// stores this value into status
+			status.setAttributeValue(attrValue);
+
+
+			// The key for a measuredAttributeValue is the name of the attribute plus the timestamp
+			// The key for an attributeValue is the name of the attribute. 
+			String attName = mav.getAttr().getName();
+			AttributeSeries series = attSeries.computeIfAbsent(attName, k -> new AttributeSeries(mav.getAttr()));
+			series.add(mav.getTimeStamp(), mav.getValue());
+			
+			// updates the sliding window aggregates of the attribute.
+			List<WindowAggregate> aggregates = windowAggregates.get(attName);
+			if (aggregates != null) {
+				for (WindowAggregate aggregate : aggregates) {
+					aggregate.add(mav.getTimeStamp(), mav.getValue());
+				}
+			}
+			
+			// updates the production counters of the open intervals.
+			for (IntervalCounter counter : intervalCounters.values()) {
+				if (counter.getAttrName().equals(attName)) {
+					counter.add(mav.getTimeStamp(), mav.getValue());
+				}
+			}
+			logger.debug("setAttributeValue End");
+		} finally {
+			lock.writeLock().unlock();
 		}
-		internalMap.put(mav.getTimeStamp(), mav.getKey());
-		logger.debug("setAttributeValue End");
 	}
 
 	/**
@@ -232,7 +292,7 @@ public abstract class EntityFacade  {
 	 * 
 	 * @return Last measure attribute value created.
 	 */
-	public synchronized AttributeValue getNewestByAttributeName(String attName){
+	public AttributeValue getNewestByAttributeName(String attName){
 		logger.debug("getNewestByAttributeName called");
 		return status.getAttributeValueByName(attName);
 	}
@@ -244,66 +304,71 @@ public abstract class EntityFacade  {
 	 * 
 	 * @param valueMap 		Values to be imported
 	 */
-	public synchronized void importAttributeValues(Map<String, ASTNode> valueMap) {
+	public void importAttributeValues(Map<String, ASTNode> valueMap) {
+		lock.writeLock().lock();
+		try {
 		
-		logger.debug("importAttributeValues Start");
-		logger.debug("entering importAttributeValues" + valueMap.size() + " attribute status count:" + status.getAttributeSize()); 
+			logger.debug("importAttributeValues Start");
+			logger.debug("entering importAttributeValues" + valueMap.size() + " attribute status count:" + status.getAttributeSize()); 
 
-		for ( String attrName : valueMap.keySet()){
+			for ( String attrName : valueMap.keySet()){
 
-			logger.debug("importAttributeValue:" + attrName);
+				logger.debug("importAttributeValue:" + attrName);
 
-			Attribute att = status.getAttribute(attrName);
+				Attribute att = status.getAttribute(attrName);
 
-			if( att != null )
-			{
+				if( att != null )
+				{
 
-				ASTNode node = valueMap.get(att.getName());
+					ASTNode node = valueMap.get(att.getName());
 
-				if (node.isVOID()){
-					logger.warn("The attribute:" + att.getName() +" is declared but it is not initialized !!!");
-				} 
-				else 
-				{ 
-					switch(att.getType()){
-					case BOOLEAN:
-						setAttributeValue(att, node.asBoolean());
-						break;
-
-					case INT:
-						setAttributeValue(att, node.asInterger());
-						break;
-
-					case DOUBLE:
-						setAttributeValue(att, node.asDouble());
-						break;
-
-					case STRING:
-						setAttributeValue(att, node.asString());
-						break;
-
-					case DATETIME:
-						setAttributeValue(att, node.asDateTime());
-						break;
-
-					case DATE:
-						setAttributeValue(att, node.asDate());
-						break;
-
-					case TIME:
-						setAttributeValue(att, node.asTime());
-						break;
-
-					default:
-						logger.error("The type:" + att.getType().getName() + " of the attribute value:" + att.getName() + " is not supported");
-						break;
+					if (node.isVOID()){
+						logger.warn("The attribute:" + att.getName() +" is declared but it is not initialized !!!");
+					} 
+					else 
+					{ 
+						switch(att.getType()){
+						case BOOLEAN:
+							setAttributeValue(att, node.asBoolean());
+							break;
+
+						case INT:
+							setAttributeValue(att, node.asInterger());
+							break;
+
+						case DOUBLE:
+							setAttributeValue(att, node.asDouble());
+							break;
+
+						case STRING:
+							setAttributeValue(att, node.asString());
+							break;
+
+						case DATETIME:
+							setAttributeValue(att, node.asDateTime());
+							break;
+
+						case DATE:
+							setAttributeValue(att, node.asDate());
+							break;
+
+						case TIME:
+							setAttributeValue(att, node.asTime());
+							break;
+
+						default:
+							logger.error("The type:" + att.getType().getName() + " of the attribute value:" + att.getName() + " is not supported");
+							break;
+						}
 					}
+				} else {
+					logger.error("The attribute: " + attrName + " is not in the status");
 				}
-			} else {
-				logger.error("The attribute: " + attrName + " is not in the status");
 			}
+			logger.debug("importAttributeValues End");
+		} finally {
+			lock.writeLock().unlock();
 		}
-		logger.debug("importAttributeValues End");
 	}
 
 
@@ -315,11 +380,16 @@ public abstract class EntityFacade  {
 	 * @param parent 		Id of the measured entity
 	 * @param parentType 	Type of measured entity.
 	 */
-	public synchronized void setAttributeValue(Attribute att, Object value) {
-		logger.debug("setAttributeValue Start");
-		logger.debug("inserting attribute value -attr:" + att.getName() + " value:" + value.toString() );
-		setAttributeValue(new AttributeValue(att.getName(), att, value, getEntity().getId(), getEntity().getType()));
-		logger.debug("setAttributeValue End");
+	public void setAttributeValue(Attribute att, Object value) {
+		lock.writeLock().lock();
+		try {
+			logger.debug("setAttributeValue Start");
+			logger.debug("inserting attribute value -attr:" + att.getName() + " value:" + value.toString() );
+			setAttributeValue(new AttributeValue(att.getName(), att, value, getEntity().getId(), getEntity().getType()));
+			logger.debug("setAttributeValue End");
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}	
 
 	/**
@@ -330,27 +400,24 @@ public abstract class EntityFacade  {
 	 * @param to Time to.
 	 * @return
 	 */
-	public synchronized List<AttributeValue> getByIntervalByAttributeName(
+	public List<AttributeValue> getByIntervalByAttributeName(
 			String attrName, LocalDateTime from, LocalDateTime to){
 		logger.debug("getByIntervalByAttributeName Start");
 		LocalDateTime oldest = attValueCache.getOldestTime();
 
 		
 		logger.debug("getByIntervalByAttributeValue from:" + from + " to:" + to);
-		if(!attMap.containsKey(attrName)){
+		AttributeSeries series = attSeries.get(attrName);
+		if(series == null){
 			logger.debug("attribute:"+attrName+" is not in facade");
 			List<AttributeValue> newList = new ArrayList<AttributeValue>();
 			logger.debug("getByIntervalByAttributeName End");
 			return newList;
 		}
-		SortedMap<LocalDateTime,String> internalMap = attMap.get(attrName);
 
 		// all values are in the cache
 		if(oldest.isBefore(from)){
-			SortedMap<LocalDateTime,String> subMap = internalMap.subMap(from, to);
-			Collection<String> keys = subMap.values();
-			String[] keyArray = keys.toArray( new String[keys.size()]);
-			List<AttributeValue> newList = getFromCache(keyArray);
+			List<AttributeValue> newList = getFromSeries(series, from, to);
 			logger.debug("getByIntervalByAttributeName End");
 			return newList;
 			
@@ -361,26 +428,187 @@ public abstract class EntityFacade  {
 			logger.debug("getByIntervalByAttributeName End");
 			return newList;
 		} else {
-			SortedMap<LocalDateTime,String> subMap = 
-					internalMap.subMap(oldest, to);
-
-			Collection<String> keys = subMap.values();
-			String[] keyArray = keys.toArray( new String[keys.size()]);
-
 			ArrayList<AttributeValue> newList = attValueCache.getFromDatabase(entity.getId(),entity.getType(),
 							status.getAttribute(attrName),from, oldest);
-			newList.addAll(getFromCache(keyArray));
+			newList.addAll(getFromSeries(series, oldest, to));
 			logger.debug("getByIntervalByAttributeName End");
 			return newList;
 		}
 	}
+
+	/**
+	 * Visits the values of an attribute in the given interval as they are read from the series or the database, 
+	 * without building the list of attribute values. The values are the same returned by <code>getByIntervalByAttributeName</code>.
+	 * 
+	 * @param attrName	attribute name.
+	 * @param from		start datetime.
+	 * @param to		end datetime.
+	 * @param visitor	receives the datetime and the value.
+	 */
+	public void forEachByIntervalByAttributeName(String attrName, LocalDateTime from, LocalDateTime to, 
+			BiConsumer<LocalDateTime, Object> visitor){
+		LocalDateTime oldest = attValueCache.getOldestTime();
+		AttributeSeries series = attSeries.get(attrName);
+		if(series == null){
+			logger.debug("attribute:"+attrName+" is not in facade");
+			return;
+		}
+
+		if(oldest.isBefore(from)){
+			// all values are in the series
+			series.forEach(from, to, visitor);
+		} else if(oldest.isAfter(to)) {
+			attValueCache.forEachFromDatabase(entity.getId(),entity.getType(), status.getAttribute(attrName),from, oldest, 
+					value -> visitor.accept(value.getTimeStamp(), value.getValue()));
+		} else {
+			attValueCache.forEachFromDatabase(entity.getId(),entity.getType(), status.getAttribute(attrName),from, oldest, 
+					value -> visitor.accept(value.getTimeStamp(), value.getValue()));
+			series.forEach(oldest, to, visitor);
+		}
+	}
 	
+	/**
+	 * Gets the sliding window aggregate of an attribute, the aggregate is registered the first time it is requested.
+	 * 
+	 * A new aggregate starts with the values of the attribute during the last window, from then on it is updated 
+	 * every time a value of the attribute is set, so the behaviors do not query the values of the window.
+	 * The values of the last window can come from the database, so they are read without the lock of the facade,
+	 * and the values set meanwhile are replayed from the series when the aggregate is registered.
+	 * 
+	 * @param attrName	attribute name.
+	 * @param window	length of the window.
+	 * @return	the aggregate, or null if the attribute is not registered in the status.
+	 */
+	public WindowAggregate getWindowAggregate(String attrName, Duration window){
+		WindowAggregate aggregate = findWindowAggregate(attrName, window);
+		if (aggregate != null) {
+			return aggregate;
+		}
+
+		Attribute attribute = status.getAttribute(attrName);
+		if (attribute == null) {
+			return null;
+		}
+
+		// the values of the last window are read without the lock, the values keep being set meanwhile.
+		WindowAggregate seeded = new WindowAggregate(attribute, window);
+		LocalDateTime now = LocalDateTime.now();
+		List<AttributeValue> values = getByIntervalByAttributeName(attrName, now.minus(window), now);
+		List<MeasuredAttributeValue> measured = new ArrayList<MeasuredAttributeValue>(values.size());
+		for (AttributeValue value : values) {
+			if (value instanceof MeasuredAttributeValue) {
+				measured.add((MeasuredAttributeValue) value);
+			}
+		}
+		// the values from the database are not ordered.
+		measured.sort(Comparator.comparing(MeasuredAttributeValue::getTimeStamp));
+		LocalDateTime lastSeeded = null;
+		for (MeasuredAttributeValue value : measured) {
+			seeded.add(value.getTimeStamp(), value.getValue());
+			lastSeeded = value.getTimeStamp();
+		}
+
+		// the values are not set while the aggregate is registered.
+		lock.writeLock().lock();
+		try {
+			aggregate = findWindowAggregate(attrName, window);
+			if (aggregate == null) {
+				logger.debug("registering window aggregate attribute:" + attrName + " window:" + window);
+				// adds the values set after the last one seeded.
+				AttributeSeries series = attSeries.get(attrName);
+				if (series != null) {
+					LocalDateTime replayFrom = (lastSeeded == null) ? now.minus(window) : lastSeeded;
+					boolean inclusive = (lastSeeded == null);
+					series.forEachSince(replayFrom, (dateTime, value) -> {
+						if (inclusive || dateTime.isAfter(replayFrom)) {
+							seeded.add(dateTime, value);
+						}
+					});
+				}
+				windowAggregates.computeIfAbsent(attrName, k -> new CopyOnWriteArrayList<WindowAggregate>()).add(seeded);
+				aggregate = seeded;
+			}
+			return aggregate;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private WindowAggregate findWindowAggregate(String attrName, Duration window){
+		List<WindowAggregate> aggregates = windowAggregates.get(attrName);
+		if (aggregates != null) {
+			for (WindowAggregate aggregate : aggregates) {
+				if (aggregate.getWindow().equals(window)) {
+					return aggregate;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Opens a production counter for an interval starting at the given datetime, it replaces the previous counter of the owner.
+	 * 
+	 * The counter takes the values of the attribute already set since the start, so the owner can open it after 
+	 * starting the interval without holding the lock of this facade.
+	 * 
+	 * @param owner		key of the interval owner, the facade itself or an executed entity processed in it.
+	 * @param attrName	attribute counted.
+	 * @param start		start of the interval.
+	 */
+	public void openIntervalCounter(String owner, String attrName, LocalDateTime start){
+		if ((attrName == null) || attrName.isEmpty()) {
+			return;
+		}
+		IntervalCounter counter = new IntervalCounter(attrName, start);
+		intervalCounters.put(owner, counter);
+		AttributeSeries series = attSeries.get(attrName);
+		if (series != null) {
+			counter.seed(series);
+		}
+	}
+
+	/**
+	 * Removes the production counter of an owner.
+	 * 
+	 * @param owner		key of the interval owner.
+	 */
+	public void closeIntervalCounter(String owner){
+		intervalCounters.remove(owner);
+	}
+
+	/**
+	 * Gets the sum of the attribute values counted for an interval.
+	 * 
+	 * @param owner		key of the interval owner.
+	 * @param attrName	attribute counted.
+	 * @param start		start of the interval.
+	 * @return	the sum, or null if the counter of the owner was not opened at the start of the interval 
+	 * 			or it found a value that is not double or integer, then the values of the interval have to be queried.
+	 */
+	public Double getIntervalCount(String owner, String attrName, LocalDateTime start){
+		IntervalCounter counter = intervalCounters.get(owner);
+		if ((counter == null) || !counter.getAttrName().equals(attrName) || !counter.getStart().equals(start)) {
+			return null;
+		}
+		return counter.getSum();
+	}
+
+	/**
+	 * Gets the key of this facade as owner of the production counters.
+	 * 
+	 * @return key of the owner.
+	 */
+	public String getIntervalCounterOwner(){
+		return entity.getType() + ":" + entity.getId();
+	}
+
 	/**
 	 * Return the temporality of rates from a measured entity.
 	 *
 	 * @return a string with the temporality of rates.
 	 */
-	public synchronized String getTemporalityRate(){
+	public String getTemporalityRate(){
 		logger.debug("in getTemporalityRate");
 		String temporality = attValueCache.getTemporality(entity.getId());
 		return temporality;
@@ -391,7 +619,7 @@ public abstract class EntityFacade  {
 	 *
 	 * @return Variable name.
 	 */
-	public synchronized String getActualRateVariableName(){
+	public String getActualRateVariableName(){
 		logger.debug("in getActualRateVariableName");
 		String variableName = attValueCache.getVariableName(entity.getId());
 		return variableName;
@@ -403,14 +631,10 @@ public abstract class EntityFacade  {
 	 * 
 	 * @param oldest
 	 */
-	public synchronized void deleteOldValues(LocalDateTime oldest){
+	public void deleteOldValues(LocalDateTime oldest){
 		logger.debug("deleteOldValues Start");
-		for(SortedMap<LocalDateTime, String> internalMap : attMap.values()){
-			// replace the map with the last entries. 
-			Set<LocalDateTime> keysToDelete = internalMap.headMap(oldest).keySet();
-			for (LocalDateTime datetime : keysToDelete){
-				internalMap.remove(datetime);
-			}
+		for(AttributeSeries series : attSeries.values()){
+			series.removeBefore(oldest);
 		}
 		logger.debug("deleteOldValues End");
 	}
@@ -420,7 +644,7 @@ public abstract class EntityFacade  {
 	 * 
 	 * @param oldest this corresponds to the oldest state that must be maintained on the map. 
 	 */
-	public synchronized void deleteOldStates(LocalDateTime oldest){
+	public void deleteOldStates(LocalDateTime oldest){
 		logger.debug("deleteOldStates Start");
 		Set<LocalDateTime> keysToDelete = statesMap.headMap(oldest).keySet();
 		for (LocalDateTime datetime : keysToDelete){
@@ -437,7 +661,7 @@ public abstract class EntityFacade  {
 	 * @param to		end of the time interval
 	 * @return			values stored for the attribute during the time interval given as parameter. 
 	 */
-	public synchronized String getByIntervalByAttributeNameJSON(String attrName, LocalDateTime from, LocalDateTime to){
+	public String getByIntervalByAttributeNameJSON(String attrName, LocalDateTime from, LocalDateTime to){
 		logger.debug("getByIntervalByAttributeNameJSON Start");
 		List<AttributeValue> ret = getByIntervalByAttributeName(attrName, from, to);
 
@@ -471,54 +695,45 @@ public abstract class EntityFacade  {
 	 * values for the given attribute name.
 	 * 
 	 */
-	public synchronized List<AttributeValue> getLastNbyAttributeName(String attrName, int n){
+	public List<AttributeValue> getLastNbyAttributeName(String attrName, int n){
 		logger.debug("getLastNbyAttributeName Start");
 		ArrayList<AttributeValue> maValues = new ArrayList<AttributeValue>();
 
-		if(!attMap.containsKey(attrName)){
+		AttributeSeries series = attSeries.get(attrName);
+		if(series == null){
 			logger.debug("getLastNbyAttributeName End");
 			return null;
 		}
 
-		SortedMap<LocalDateTime,String> internalMap = attMap.get(attrName);
-		String[] keyArray = (String[]) internalMap.values().toArray();
-		if(n>= internalMap.size()){
-			maValues = getFromCache(keyArray);
-			logger.debug("getLastNbyAttributeName End");
-			return maValues;
-		} else{
-			for (int i = keyArray.length - n - 1; i < keyArray.length; i++) {
-				maValues.add(attValueCache.getFromCache(keyArray[i]));
-			}
-			logger.debug("getLastNbyAttributeName End");
-			return maValues;
-		}
+		series.forEachLast(n, (timeStamp, value) -> maValues.add(newMeasuredAttributeValue(series, timeStamp, value)));
+		logger.debug("getLastNbyAttributeName End");
+		return maValues;
 	}
 
 
 	/**
-	 * Returns a list of Measured Attribute Values, from the cache,
+	 * Returns a list of Measured Attribute Values, from the attribute series,
 	 * 
-	 * @param keyArray 	array with the keys to retrieve
-	 * @return			Measure attribute values from the cache.
+	 * @param series 	series of the attribute
+	 * @param from		start of the time interval, included
+	 * @param to		end of the time interval, excluded
+	 * @return			Measure attribute values in the interval.
 	 */
-	private ArrayList<AttributeValue> getFromCache(String[] keyArray){
-		logger.debug("getFromCache Start");
+	private ArrayList<AttributeValue> getFromSeries(AttributeSeries series, LocalDateTime from, LocalDateTime to){
+		logger.debug("getFromSeries Start");
 		ArrayList<AttributeValue> maValues = new ArrayList<AttributeValue>();
-		for (String key : keyArray) {
-			AttributeValue value = attValueCache.getFromCache(key);
-			if (value == null){
-				logger.error("measure attribute with key:" + key + " not found in cache");
-			} else {
-				maValues.add(value);
-			}
-				
-			
-		}
-		logger.debug("getFromCache End");
+		series.forEach(from, to, (timeStamp, value) -> maValues.add(newMeasuredAttributeValue(series, timeStamp, value)));
+		logger.debug("getFromSeries End");
 		return maValues;
 	}
 
+	/**
+	 * Creates the measured attribute value of a value in an attribute series. The key is the same of the value stored in the cache. 
+	 */
+	private MeasuredAttributeValue newMeasuredAttributeValue(AttributeSeries series, LocalDateTime timeStamp, Object value){
+		return new MeasuredAttributeValue(series.getAttribute(), value, entity.getId(), entity.getType(), timeStamp);
+	}
+
 	/**
 	 * Import all attribute definitions in symbolMap into the measure entity status.
 	 * 
@@ -526,10 +741,15 @@ public abstract class EntityFacade  {
 	 * @param origin		Identifies the origin of these symbols: behavior, transformation.
 	 * @throws Exception
 	 */
-	public synchronized void importSymbols(Map<String, Symbol> symbolMap, AttributeOrigin origin) throws Exception {
-		logger.debug("importSymbols Start");
-		status.importSymbols(symbolMap, origin);
-		logger.debug("importSymbols End");
+	public void importSymbols(Map<String, Symbol> symbolMap, AttributeOrigin origin) throws Exception {
+		lock.writeLock().lock();
+		try {
+			logger.debug("importSymbols Start");
+			status.importSymbols(symbolMap, origin);
+			logger.debug("importSymbols End");
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -537,7 +757,7 @@ public abstract class EntityFacade  {
 	 * 
 	 * @return set of attributes registered in the measured entity. 
 	 */
-	public synchronized Collection<Attribute> getStatus(){
+	public Collection<Attribute> getStatus(){
 		logger.debug("getStatus called");
 		return status.getStatus();
 	}
@@ -547,13 +767,13 @@ public abstract class EntityFacade  {
 	 *  
 	 * @return json array
 	 */
-	public synchronized JSONArray getStatusJSON(){
+	public JSONArray getStatusJSON(){
 		logger.debug("getStatusJSON called");
 		return new JSONArray(getStatusValues());
 	}
 
 
-	public synchronized Collection<AttributeValue> getStatusValues(){
+	public Collection<AttributeValue> getStatusValues(){
 		logger.debug("getStatusValues called");
 		return status.getAttributeValues();
 	}
@@ -565,7 +785,7 @@ public abstract class EntityFacade  {
 	 * @param attrName  attribute name to verify 
 	 * @return			true if the attribute name is registered, false otherwise.
 	 */
-	public synchronized boolean isAttribute(String attrName) {
+	public boolean isAttribute(String attrName) {
 		logger.debug("isAttribute Start");
 		Attribute att = status.getAttribute(attrName);
 
@@ -586,7 +806,7 @@ public abstract class EntityFacade  {
 	 * @param to 		End date.
 	 * @return 			String representation of the json information.
 	 */
-	public synchronized String getJsonStatesByInterval(LocalDateTime from, LocalDateTime to){
+	public String getJsonStatesByInterval(LocalDateTime from, LocalDateTime to){
 		logger.debug("getJsonStatesByInterval Start");
 		List<StateInterval> intervals = getStatesByInterval(from, to);
 
@@ -611,6 +831,24 @@ public abstract class EntityFacade  {
 
 	}
 
+	/**
+	 * Writes the state intervals of the given dates to a json generator as they are read, 
+	 * with the same format of <code>statesByInterval</code>.
+	 * 
+	 * @param generator 	json generator of the response.
+	 * @param from 			Start date.
+	 * @param to 			End date.
+	 * @throws IOException	if the response cannot be written.
+	 */
+	public void writeJsonStatesByInterval(JsonGenerator generator, LocalDateTime from, LocalDateTime to) throws IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		generator.writeStartArray();
+		for (StateInterval interval : getStatesByInterval(from, to)) {
+			mapper.writeValue(generator, interval);
+		}
+		generator.writeEndArray();
+	}
+
 	/**
 	 * Returns the json array with the format:<br>
 	 * [ ... {"machine":machine,"status":sts,"startDttm":start,"endDttm":end,"reason":reason}...]
@@ -620,7 +858,7 @@ public abstract class EntityFacade  {
 	 * @return Json Array of states.
 	 * @throws PropertyVetoException 
 	 */
-	public synchronized JSONArray getJsonStates(LocalDateTime from, LocalDateTime to) {
+	public JSONArray getJsonStates(LocalDateTime from, LocalDateTime to) {
 		logger.debug("getJsonStates Start");
 		logger.debug("getJsonStates" + " from: " + from.toString() + " to: " + to.toString());
 		JSONArray array = null;
@@ -675,9 +913,57 @@ public abstract class EntityFacade  {
 		return array;
 	}
 
+	/**
+	 * Writes the states of the given dates to a json generator, one interval at a time.
+	 * 
+	 * The default format is the array of <code>getJsonStates</code>. The row format writes the machine once, 
+	 * the names of the columns and an array with the values of every interval:<br>
+	 * {"machine":machine,"columns":["status","startDttm",...],"rows":[[sts,start,...]...]}
+	 * 
+	 * @param generator 	json generator of the response.
+	 * @param from 			Start date.
+	 * @param to 			End date.
+	 * @param rows			true to write the row format.
+	 * @throws IOException	if the response cannot be written.
+	 */
+	public void writeJsonStates(JsonGenerator generator, LocalDateTime from, LocalDateTime to, boolean rows) throws IOException {
+		logger.debug("writeJsonStates" + " from: " + from.toString() + " to: " + to.toString());
+		String cannonicalMachine = entity.getCanonicalKey();
+
+		writeJsonStart(generator, rows, new String[] {"status", "startDttm", "endDttm", "reason", "executedObject", 
+				"executedObjectType", "executedObjectCanonical", "withPacking", "wasteEnergy", "productionRate", 
+				"actualProductionRate"}, "machine", cannonicalMachine);
+		for (StateInterval interval : getStatesByInterval(from, to)) {
+			if (interval != null)
+			{
+				LocalDateTime start = interval.getInterval().getStart();
+				LocalDateTime end = interval.getInterval().getEnd();
+				writeRowStart(generator, rows);
+				if (!rows) {
+					writeJsonField(generator, rows, "machine", cannonicalMachine);
+				}
+				writeJsonField(generator, rows, "status", interval.getState().getName());
+				writeJsonField(generator, rows, "startDttm", start.toString());
+				writeJsonField(generator, rows, "endDttm", end.toString());
+				writeJsonField(generator, rows, "reason", (interval.getReason() != null) ? interval.getReason().getDescription() : null);
+				writeJsonField(generator, rows, "executedObject", interval.getRelatedObject().toString());
+				writeJsonField(generator, rows, "executedObjectType", interval.getRelatedObjectType().toString());
+				writeJsonField(generator, rows, "executedObjectCanonical", interval.getExecutedObjectCanonical());
+				writeJsonField(generator, rows, "withPacking", 
+						(getByIntervalByAttributeName("empacadora", start, end).size() == 0) ? "N" : "Y");
+				writeJsonField(generator, rows, "wasteEnergy", 
+						(getByIntervalByAttributeName("gasto_energia", start, end).size() == 0) ? "N" : "Y");
+				writeJsonField(generator, rows, "productionRate", interval.getProductionRate());
+				writeJsonField(generator, rows, "actualProductionRate", interval.getActualProductionRate());
+				writeRowEnd(generator, rows);
+			}
+		}
+		writeJsonEnd(generator, rows);
+	}
+
 	
 	
-	public synchronized double getEntityAvailability(LocalDateTime from){
+	public double getEntityAvailability(LocalDateTime from){
 		
 		PredefinedPeriod predefinedPeriod = new PredefinedPeriod(from.getYear(), from.getMonthValue(), from.getDayOfMonth(), from.getHour(), from.getMinute());
 		double availability = 0;
@@ -687,6 +973,20 @@ public abstract class EntityFacade  {
 		return availability;
 	}
 	
+	/**
+	 * Gets the OEE of a period from the aggregations calculated in memory as the state intervals close.
+	 * 
+	 * @param period	predefined period.
+	 * @return the OEE, or null if the period is not calculated in memory.
+	 */
+	private OverallEquipmentEffectiveness getIncrementalOEE(PredefinedPeriod period) {
+		OEEIncrementalAggregator aggregator = OEEAggregationManager.getInstance().getIncrementalAggregator();
+		if (aggregator == null) {
+			return null;
+		}
+		return aggregator.getPeriodOEE(this.getEntity().getId(), this.getEntity().getType(), period);
+	}
+	
 	/**
 	 * Recalculate the OEE for the measured entity within the interval given as parameter  
 	 * 
@@ -694,7 +994,7 @@ public abstract class EntityFacade  {
 	 * @param dttmTo		end date time
 	 * @param reqInterval	specifies the granularity required for the response.
 	 */
-	public synchronized void calculateOverallEquipmentEffectiveness(String company, String location, String plant, 
+	public void calculateOverallEquipmentEffectiveness(String company, String location, String plant, 
 			String machineGroup, String machineId, String year, String month, String day, String productionOrder) {
 		OEEAggregationManager oeeAggregation = OEEAggregationManager.getInstance();
 		
@@ -702,7 +1002,7 @@ public abstract class EntityFacade  {
 				year, month, day, productionOrder, "N");		
 	}
 	
-	public synchronized LocalDateTime getBeginDttmCurrentShift(){
+	public LocalDateTime getBeginDttmCurrentShift(){
 		logger.debug("getBeginDttmCurrentShift Start");
 		LocalDateTime beginpivot = LocalDate.now().atTime(7, 0);
 		LocalDateTime endpivot = LocalDate.now().atTime(19, 0);
@@ -736,32 +1036,292 @@ public abstract class EntityFacade  {
 	 * @return			Json array with the format specified. The array maintains measure attribute values.  
 	 * @throws PropertyVetoException 
 	 */
-	public synchronized JSONArray getJsonTrend(String trendVar,LocalDateTime from, LocalDateTime to){
+	public JSONArray getJsonTrend(String trendVar,LocalDateTime from, LocalDateTime to){
 		logger.debug("getJsonTrend Start");
-		JSONArray array = null;
-		String cannonicalMachine ="";
-			
-		cannonicalMachine = entity.getCanonicalKey();
-
-		List<AttributeValue> valList = getByIntervalByAttributeName(trendVar, from, to);
-		array = new JSONArray();
-		for (AttributeValue attValue : valList) {
-			if(attValue instanceof MeasuredAttributeValue){
-				MeasuredAttributeValue mAttValue = (MeasuredAttributeValue) attValue;
-				// create the json object
-				JSONObject jsob = new JSONObject();
-				jsob.append("machine",cannonicalMachine);
-				jsob.append("variable", trendVar);
-				jsob.append("dttmStamp", mAttValue.getTimeStamp().toString());
-				jsob.append("variableValue", mAttValue.getValue());
-				// adding jsonObject to JsonArray
-				array.put(jsob);
+		JSONArray array = new JSONArray();
+		String cannonicalMachine = entity.getCanonicalKey();
+
+		AttributeSeries series = attSeries.get(trendVar);
+		if ((series != null) && attValueCache.getOldestTime().isBefore(from)) {
+			// all values are in the attribute series, they are read without creating the measured attribute values.
+			series.forEach(from, to, (timeStamp, value) -> 
+				array.put(trendPoint(cannonicalMachine, trendVar, timeStamp, value)));
+		} else {
+			List<AttributeValue> valList = getByIntervalByAttributeName(trendVar, from, to);
+			for (AttributeValue attValue : valList) {
+				if(attValue instanceof MeasuredAttributeValue){
+					MeasuredAttributeValue mAttValue = (MeasuredAttributeValue) attValue;
+					// adding jsonObject to JsonArray
+					array.put(trendPoint(cannonicalMachine, trendVar, mAttValue.getTimeStamp(), mAttValue.getValue()));
+				}
 			}
 		}
 		logger.debug("getJsonTrend End");
 		return array;
 	}
 
+	/**
+	 * Creates the json object of a trend value.
+	 */
+	private JSONObject trendPoint(String cannonicalMachine, String trendVar, LocalDateTime timeStamp, Object value){
+		JSONObject jsob = new JSONObject();
+		jsob.append("machine",cannonicalMachine);
+		jsob.append("variable", trendVar);
+		jsob.append("dttmStamp", timeStamp.toString());
+		jsob.append("variableValue", value);
+		return jsob;
+	}
+
+	/**
+	 * Writes the values of a trend variable to a json generator as they are read from the attribute series 
+	 * or the database, without building the json array.
+	 * 
+	 * The default format is the array of <code>getJsonTrend</code>. The row format writes the machine and 
+	 * the variable once, the names of the columns and an array with the datetime and the value of every point:<br>
+	 * {"machine":machine,"variable":var,"columns":["dttmStamp","variableValue"],"rows":[[stamp,val]...]}
+	 * 
+	 * @param generator		json generator of the response.
+	 * @param trendVar		name of the attribute marked as trend 
+	 * @param from			start datetime 
+	 * @param to			end datetime
+	 * @param rows			true to write the row format.
+	 * @throws IOException	if the response cannot be written.
+	 */
+	public void writeJsonTrend(JsonGenerator generator, String trendVar, LocalDateTime from, LocalDateTime to, boolean rows) throws IOException {
+		logger.debug("writeJsonTrend Start");
+		String cannonicalMachine = entity.getCanonicalKey();
+
+		writeJsonStart(generator, rows, new String[] {"dttmStamp", "variableValue"}, 
+				"machine", cannonicalMachine, "variable", trendVar);
+		try {
+			forEachByIntervalByAttributeName(trendVar, from, to, (timeStamp, value) -> 
+				writeTrendPoint(generator, rows, cannonicalMachine, trendVar, timeStamp, value));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		writeJsonEnd(generator, rows);
+		logger.debug("writeJsonTrend End");
+	}
+
+	/**
+	 * Writes the points of a trend variable selected by the largest triangle three buckets algorithm, 
+	 * in the same format of <code>writeJsonTrend</code>. Only the numeric and boolean values are taken.
+	 * 
+	 * @param generator		json generator of the response.
+	 * @param trendVar		name of the attribute marked as trend 
+	 * @param from			start datetime 
+	 * @param to			end datetime
+	 * @param points		number of points to write.
+	 * @param rows			true to write the row format.
+	 * @throws IOException	if the response cannot be written.
+	 * @see LargestTriangleThreeBuckets
+	 */
+	public void writeJsonTrendLttb(JsonGenerator generator, String trendVar, LocalDateTime from, LocalDateTime to, 
+			int points, boolean rows) throws IOException {
+		logger.debug("writeJsonTrendLttb Start");
+		String cannonicalMachine = entity.getCanonicalKey();
+
+		LargestTriangleThreeBuckets lttb = new LargestTriangleThreeBuckets();
+		forEachByIntervalByAttributeName(trendVar, from, to, lttb::add);
+
+		writeJsonStart(generator, rows, new String[] {"dttmStamp", "variableValue"}, 
+				"machine", cannonicalMachine, "variable", trendVar);
+		try {
+			lttb.select(points, (timeStamp, value) -> 
+				writeTrendPoint(generator, rows, cannonicalMachine, trendVar, timeStamp, value));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		writeJsonEnd(generator, rows);
+		logger.debug("writeJsonTrendLttb End");
+	}
+
+	/**
+	 * Writes the count, minimum, maximum, average and last value of a trend variable in buckets of the same length. 
+	 * The buckets without values are not written. Only the numeric and boolean values are aggregated.
+	 * 
+	 * The default format writes an object by bucket with the machine, variable, datetime of the start of the bucket, 
+	 * count, min, max, last and the average as the variableValue. The row format writes the columns 
+	 * "dttmStamp", "count", "min", "max", "avg" and "last".
+	 * 
+	 * @param generator		json generator of the response.
+	 * @param trendVar		name of the attribute marked as trend 
+	 * @param from			start datetime 
+	 * @param to			end datetime
+	 * @param buckets		number of buckets.
+	 * @param rows			true to write the row format.
+	 * @throws IOException	if the response cannot be written.
+	 * @see TrendBuckets
+	 */
+	public void writeJsonTrendBuckets(JsonGenerator generator, String trendVar, LocalDateTime from, LocalDateTime to, 
+			int buckets, boolean rows) throws IOException {
+		logger.debug("writeJsonTrendBuckets Start");
+		String cannonicalMachine = entity.getCanonicalKey();
+
+		TrendBuckets trend = new TrendBuckets(from, to, buckets);
+		aggregateByIntervalByAttributeName(trendVar, from, to, trend);
+
+		writeJsonStart(generator, rows, new String[] {"dttmStamp", "count", "min", "max", "avg", "last"}, 
+				"machine", cannonicalMachine, "variable", trendVar);
+		for (int i = 0; i < trend.size(); i++) {
+			if (trend.getCount(i) == 0) {
+				continue;
+			}
+			writeRowStart(generator, rows);
+			if (!rows) {
+				writeJsonField(generator, rows, "machine", cannonicalMachine);
+				writeJsonField(generator, rows, "variable", trendVar);
+			}
+			writeJsonField(generator, rows, "dttmStamp", trend.getStart(i).toString());
+			writeJsonField(generator, rows, "count", trend.getCount(i));
+			writeJsonField(generator, rows, "min", trend.getMin(i));
+			writeJsonField(generator, rows, "max", trend.getMax(i));
+			writeJsonField(generator, rows, (rows) ? "avg" : "variableValue", trend.getAverage(i));
+			writeJsonField(generator, rows, "last", trend.getLast(i));
+			writeRowEnd(generator, rows);
+		}
+		writeJsonEnd(generator, rows);
+		logger.debug("writeJsonTrendBuckets End");
+	}
+
+	/**
+	 * Aggregates the values of an attribute in the given interval in the buckets of a trend. The values in the 
+	 * database are aggregated by the database when it is possible, otherwise they are read and aggregated here.
+	 * 
+	 * @param attrName	attribute name.
+	 * @param from		start datetime.
+	 * @param to		end datetime.
+	 * @param buckets	buckets of the trend.
+	 */
+	public void aggregateByIntervalByAttributeName(String attrName, LocalDateTime from, LocalDateTime to, 
+			TrendBuckets buckets){
+		LocalDateTime oldest = attValueCache.getOldestTime();
+		AttributeSeries series = attSeries.get(attrName);
+		if(series == null){
+			logger.debug("attribute:"+attrName+" is not in facade");
+			return;
+		}
+
+		if(oldest.isBefore(from)){
+			// all values are in the series
+			series.forEach(from, to, buckets::add);
+			return;
+		}
+
+		LocalDateTime dbTo = oldest.isAfter(to) ? to : oldest;
+		Attribute attribute = status.getAttribute(attrName);
+		if (!attValueCache.aggregateFromDatabase(entity.getId(), entity.getType(), attribute, from, dbTo, buckets)) {
+			attValueCache.forEachFromDatabase(entity.getId(),entity.getType(), attribute, from, dbTo, 
+					value -> buckets.add(value.getTimeStamp(), value.getValue()));
+		}
+		if (!oldest.isAfter(to)) {
+			series.forEach(oldest, to, buckets::add);
+		}
+	}
+
+	/**
+	 * Writes a point of a trend, the write errors are thrown as unchecked exceptions from the visitors.
+	 */
+	private static void writeTrendPoint(JsonGenerator generator, boolean rows, String cannonicalMachine, 
+			String trendVar, LocalDateTime timeStamp, Object value) {
+		try {
+			writeRowStart(generator, rows);
+			if (!rows) {
+				writeJsonField(generator, rows, "machine", cannonicalMachine);
+				writeJsonField(generator, rows, "variable", trendVar);
+			}
+			writeJsonField(generator, rows, "dttmStamp", timeStamp.toString());
+			writeJsonField(generator, rows, "variableValue", value);
+			writeRowEnd(generator, rows);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Starts a streamed json response. The row format starts an object with the header fields, 
+	 * the names of the columns and the array of rows; the default format starts the array of objects.
+	 * 
+	 * @param header	pairs of field name and value written only in the row format.
+	 */
+	protected static void writeJsonStart(JsonGenerator generator, boolean rows, String[] columns, String... header) throws IOException {
+		if (rows) {
+			generator.writeStartObject();
+			for (int i = 0; i + 1 < header.length; i = i + 2) {
+				generator.writeFieldName(header[i]);
+				writeJsonValue(generator, header[i + 1]);
+			}
+			generator.writeArrayFieldStart("columns");
+			for (String column : columns) {
+				generator.writeString(column);
+			}
+			generator.writeEndArray();
+			generator.writeArrayFieldStart("rows");
+		} else {
+			generator.writeStartArray();
+		}
+	}
+
+	/**
+	 * Ends a streamed json response.
+	 */
+	protected static void writeJsonEnd(JsonGenerator generator, boolean rows) throws IOException {
+		generator.writeEndArray();
+		if (rows) {
+			generator.writeEndObject();
+		}
+	}
+
+	protected static void writeRowStart(JsonGenerator generator, boolean rows) throws IOException {
+		if (rows) {
+			generator.writeStartArray();
+		} else {
+			generator.writeStartObject();
+		}
+	}
+
+	protected static void writeRowEnd(JsonGenerator generator, boolean rows) throws IOException {
+		if (rows) {
+			generator.writeEndArray();
+		} else {
+			generator.writeEndObject();
+		}
+	}
+
+	/**
+	 * Writes a field of a row. In the default format the value is written inside an array, 
+	 * the same as the json objects built with <code>JSONObject.append</code>.
+	 */
+	protected static void writeJsonField(JsonGenerator generator, boolean rows, String name, Object value) throws IOException {
+		if (rows) {
+			writeJsonValue(generator, value);
+		} else {
+			generator.writeFieldName(name);
+			generator.writeStartArray();
+			writeJsonValue(generator, value);
+			generator.writeEndArray();
+		}
+	}
+
+	/**
+	 * Writes a value, numbers and booleans as json literals and any other object as its string.
+	 */
+	protected static void writeJsonValue(JsonGenerator generator, Object value) throws IOException {
+		if (value == null) {
+			generator.writeNull();
+		} else if ((value instanceof Integer) || (value instanceof Long) || (value instanceof Short) || (value instanceof Byte)) {
+			generator.writeNumber(((Number) value).longValue());
+		} else if ((value instanceof Double) || (value instanceof Float)) {
+			generator.writeNumber(((Number) value).doubleValue());
+		} else if (value instanceof Number) {
+			generator.writeNumber(value.toString());
+		} else if (value instanceof Boolean) {
+			generator.writeBoolean((Boolean) value);
+		} else {
+			generator.writeString(value.toString());
+		}
+	}
+
 	/**
 	 * Returns the Json representation of a set of states that belong to the interval given as parameter.
 	 * 
@@ -769,7 +1329,7 @@ public abstract class EntityFacade  {
 	 * 
 	 * @return	json array in string.
 	 */
-	public synchronized String statesByInterval(TimeInterval interval){
+	public String statesByInterval(TimeInterval interval){
 		logger.debug("statesByInterval Start");
 		List<StateInterval> intervals = getStatesByInterval(interval.getStart(), interval.getEnd());
 
@@ -800,7 +1360,7 @@ public abstract class EntityFacade  {
 	 * 
 	 * @return List of intervals.
 	 */
-	public synchronized List<StateInterval> getStatesByInterval(LocalDateTime from, LocalDateTime to){
+	public List<StateInterval> getStatesByInterval(LocalDateTime from, LocalDateTime to){
 		logger.debug("getStatesByInterval Start");
 		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 		String formattedFrom = from.format(formatter);
@@ -842,7 +1402,7 @@ public abstract class EntityFacade  {
 	 * 
 	 * This method is used when the measured facade must be removed because the measured entity is deleted.
 	 */
-	public synchronized void storeAllStateIntervals(){
+	public void storeAllStateIntervals(){
 		logger.debug("storeAllStateIntervals Start");
 		//logger.debug("storeAllStateIntervals purge map facade");
 		LocalDateTime oldest = stateCache.getOldestTime();
@@ -858,7 +1418,7 @@ public abstract class EntityFacade  {
 	 * Method to remove internal references for both caches that are out of date.
 	 */
 	
-	public synchronized void removeOldCacheReferences()
+	public void removeOldCacheReferences()
 	{
 		logger.debug("removeOldCacheReferences Start");
 		// Remove References from the attribute cache.
@@ -876,7 +1436,7 @@ public abstract class EntityFacade  {
 	 * Command to order the cache to store all measured attribute values associated to the measured 
 	 * entity into the database and cleans itself. 
 	 */
-	public synchronized void storeAllMeasuredAttributeValues(){
+	public void storeAllMeasuredAttributeValues(){
 		logger.debug("storeAllMeasuredAttributeValues Start");
 		
 		//logger.debug("in storeAllMeasuredAttributeValues");
@@ -887,9 +1447,9 @@ public abstract class EntityFacade  {
 
 		ArrayList<String> keys = new ArrayList<String>();
 		
-		for(SortedMap<LocalDateTime, String> internalMap : attMap.values()){
-			// replace the map with the last entries. 
-			keys.addAll(internalMap.values());
+		for(AttributeSeries series : attSeries.values()){
+			// the keys of the values in the cache. 
+			series.forEach((timeStamp, value) -> keys.add(newMeasuredAttributeValue(series, timeStamp, value).getKey()));
 		}
 		
 		attValueCache.bulkCommit(keys);
@@ -1000,6 +1560,18 @@ public abstract class EntityFacade  {
 		List<PredefinedPeriod> periods = PeriodUtils.getPredefinedPeriods( dttmFrom, dttmTo, reqInterval );
 		//logger.debug("Number of elements to calculate in the final list:" + periods.size());
 		
+		// the recent periods are calculated in memory, the rest are read at once from the database.
+		OverallEquipmentEffectiveness[] incrementals = new OverallEquipmentEffectiveness[periods.size()];
+		List<PredefinedPeriod> storedPeriods = new ArrayList<PredefinedPeriod>();
+		for (int i = 0; i < periods.size(); i++) {
+			incrementals[i] = getIncrementalOEE(periods.get(i));
+			if (incrementals[i] == null) {
+				storedPeriods.add(periods.get(i));
+			}
+		}
+		Map<String, OverallEquipmentEffectiveness> stored = oeeAggregation.getOeeAggregationContainer().
+				getPeriodOEEs(this.getEntity().getId(), this.getEntity().getType(), storedPeriods);
+		
 		// loop through the different intervals and calculate total schedule downtime, availability loss, etc..
 		for (int i = 0; i < periods.size(); i++)
 		{
@@ -1008,6 +1580,12 @@ public abstract class EntityFacade  {
 			
 			//logger.debug("Period Key: " + period.getKey().toString());
 			
+			OverallEquipmentEffectiveness incremental = incrementals[i];
+			if (incremental != null) {
+				oees.add(incremental);
+				continue;
+			}
+			
 			if (period.getType() == PredefinedPeriodType.INT_LT_HOUR)
 			{
 				
@@ -1032,8 +1610,7 @@ public abstract class EntityFacade  {
 				
 			} else if ( period.getType() == PredefinedPeriodType.HOUR ){
 				//logger.debug(period.getKey());
-				OverallEquipmentEffectiveness oee2 = oeeAggregation.getOeeAggregationContainer().
-						getPeriodOEE(this.getEntity().getId(), this.getEntity().getType(), period);
+				OverallEquipmentEffectiveness oee2 = stored.get(period.getKey());
 				if (oee2 !=null) {
 					//logger.debug("Exist Period");
 					oees.add(oee2);
@@ -1043,8 +1620,7 @@ public abstract class EntityFacade  {
 					oees.addAll(oeeCalculator.calculateHour(this.getEntity().getId(), this.getEntity().getType(), period.getLocalDateTime(), true, false));
 				}
 			} else if ( period.getType() == PredefinedPeriodType.MINUTE ){
-				OverallEquipmentEffectiveness oee2 = oeeAggregation.getOeeAggregationContainer().
-						getPeriodOEE(this.getEntity().getId(), this.getEntity().getType(), period);
+				OverallEquipmentEffectiveness oee2 = stored.get(period.getKey());
 				if (oee2 !=null) {
 					oees.add(oee2);
 				} else {
@@ -1052,8 +1628,7 @@ public abstract class EntityFacade  {
 					oees.addAll(oeeCalculator.calculateMinute(this.getEntity().getId(), this.getEntity().getType(), period.getLocalDateTime(), true, false));
 				}
 			} else if ( period.getType() == PredefinedPeriodType.DAY ) {
-				OverallEquipmentEffectiveness oee2 = oeeAggregation.getOeeAggregationContainer().
-						getPeriodOEE(this.getEntity().getId(), this.getEntity().getType(), period);
+				OverallEquipmentEffectiveness oee2 = stored.get(period.getKey());
 				if (oee2 !=null) {
 					oees.add(oee2);
 				} else {
@@ -1062,8 +1637,7 @@ public abstract class EntityFacade  {
 				}
 				
 			} else if ( period.getType() == PredefinedPeriodType.MONTH ) {
-				OverallEquipmentEffectiveness oee2 = oeeAggregation.getOeeAggregationContainer().
-						getPeriodOEE(this.getEntity().getId(), this.getEntity().getType(), period);
+				OverallEquipmentEffectiveness oee2 = stored.get(period.getKey());
 				if (oee2 !=null) {
 					oees.add(oee2);
 				} else {
@@ -1073,8 +1647,7 @@ public abstract class EntityFacade  {
 				
 			} else if ( period.getType() == PredefinedPeriodType.YEAR )  {
 				
-				OverallEquipmentEffectiveness oee2 = oeeAggregation.getOeeAggregationContainer().
-						getPeriodOEE(this.getEntity().getId(), this.getEntity().getType(), period);
+				OverallEquipmentEffectiveness oee2 = stored.get(period.getKey());
 				if (oee2 !=null) {
 					oees.add(oee2);
 				} else {
@@ -1093,66 +1666,18 @@ public abstract class EntityFacade  {
 	}
 	
 	/**
-	 * Recalculate the OEE for the measured entity within the interval given as parameter  
+	 * Recalculate the OEE for the measured entity within the interval given as parameter. The minutes, hours, 
+	 * days, months and years inside the predefined periods requested are recalculated together from the state intervals.
 	 * 
 	 * @param dttmFrom		start date time 
 	 * @param dttmTo		end date time
 	 * @param reqInterval	specifies the granularity required for the response.
 	 */
-	public synchronized void recalculateOverallEquipmentEffectiveness(LocalDateTime dttmFrom, LocalDateTime dttmTo, String reqInterval) {
+	public void recalculateOverallEquipmentEffectiveness(LocalDateTime dttmFrom, LocalDateTime dttmTo, String reqInterval) {
 		logger.debug("recalculateOverallEquipmentEffectiveness Start");
-        // Bring different predefined periods required
-		List<PredefinedPeriod> periods = PeriodUtils.getPredefinedPeriods( dttmFrom, dttmTo, reqInterval ); 
 		OEEAggregationManager oeeAggregation = OEEAggregationManager.getInstance();
-		List<OverallEquipmentEffectiveness> oees = new ArrayList<OverallEquipmentEffectiveness>();
-		//logger.debug("Number of elements to calculate in the final list:" + periods.size());
-		// loop through the different intervals and calculate total schedule down time, availability loss, etc..
-		for (int i = 0; i < periods.size(); i++)
-		{
-			PredefinedPeriod period = periods.get(i);
-			//logger.debug("Period Type:" + period.getType().getName());
-			if (period.getType() == PredefinedPeriodType.INT_LT_HOUR)
-			{
-				//logger.debug(period.getKey());
-				// Search for intervals in the requested hour.
-				DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd-HH:mm:ss");
-				String parQueryFrom = formatter.format(period.getCalendarFrom().getTime());
-				String parQueryTo = formatter.format(period.getCalendarTo().getTime());
-				PredefinedPeriod periodTmp = new PredefinedPeriod(period.getCalendarFrom().get(Calendar.YEAR), 
-						period.getCalendarFrom().get(Calendar.MONTH) +1,
-						period.getCalendarFrom().get(Calendar.DAY_OF_MONTH),
-						period.getCalendarFrom().get(Calendar.HOUR_OF_DAY)); 
-				List<OverallEquipmentEffectiveness> oeesHour = oeeAggregation.getOeeAggregationContainer().intervalsByMinute(this.getEntity().getId(), this.getEntity().getType(), periodTmp.getKey(), parQueryFrom, parQueryTo);				
-				if (oeesHour.size() == 0) {
-					logger.error("The aggregation interval could not be calculated predefined Period:" + parQueryFrom );
-				} else {
-					oees.addAll(oeesHour);
-				}
-			} else if ( period.getType() == PredefinedPeriodType.HOUR ){
-				//logger.debug(period.getKey());
-				OEEAggregationCalculator oeeCalculator = new OEEAggregationCalculator();
-				oees.addAll(oeeCalculator.calculateHour(this.getEntity().getId(), this.getEntity().getType(), period.getLocalDateTime(), true, true));
-			} else if ( period.getType() == PredefinedPeriodType.MINUTE ){
-				//logger.debug(period.getKey());
-				OEEAggregationCalculator oeeCalculator = new OEEAggregationCalculator();
-				oees.addAll(oeeCalculator.calculateMinute(this.getEntity().getId(), this.getEntity().getType(), period.getLocalDateTime(), true, true));
-			} else if ( period.getType() == PredefinedPeriodType.DAY ) {
-				//logger.debug(period.getKey());
-				OEEAggregationCalculator oeeCalculator = new OEEAggregationCalculator();
-				oees.addAll(oeeCalculator.calculateDay(this.getEntity().getId(), this.getEntity().getType(), period.getLocalDateTime(), true, true));				
-			} else if ( period.getType() == PredefinedPeriodType.MONTH ) {
-				//logger.debug(period.getKey());
-				OEEAggregationCalculator oeeCalculator = new OEEAggregationCalculator();
-				oees.addAll(oeeCalculator.calculateMonth(this.getEntity().getId(), this.getEntity().getType(), period.getLocalDateTime(), true, true));				
-			} else if ( period.getType() == PredefinedPeriodType.YEAR )  {
-				//logger.debug(period.getKey());
-				OEEAggregationCalculator oeeCalculator = new OEEAggregationCalculator();
-				oees.addAll(oeeCalculator.calculateYear(this.getEntity().getId(), this.getEntity().getType(), period.getLocalDateTime(), true, true));
-			} else {
-				logger.error("Invalid Predefined Period type:" + period.getType().getName());			
-			}
-		}
-		logger.debug("Number of elements in the final recalculated list:" + oees.size());
+		int count = oeeAggregation.getRecalculator().recalculate(this.getEntity().getId(), this.getEntity().getType(), dttmFrom, dttmTo, reqInterval);
+		logger.debug("Number of elements in the final recalculated list:" + count);
 		logger.debug("recalculateOverallEquipmentEffectiveness End");
 	}
 	
@@ -1165,104 +1690,9 @@ public abstract class EntityFacade  {
 	 * 
 	 * @return	Array of OEEs calculated with the granurality defined by reqInterval.  
 	 */
-	public synchronized JSONArray getOverallEquipmentEffectiveness(LocalDateTime dttmFrom, LocalDateTime dttmTo, String reqInterval) {
+	public JSONArray getOverallEquipmentEffectiveness(LocalDateTime dttmFrom, LocalDateTime dttmTo, String reqInterval) {
 		logger.debug("getOverallEquipmentEffectiveness Start");
-        // Bring different predefined periods required
-		List<PredefinedPeriod> periods = PeriodUtils.getPredefinedPeriods( dttmFrom, dttmTo, reqInterval ); 
-		
-		OEEAggregationManager oeeAggregation = OEEAggregationManager.getInstance();
-		List<OverallEquipmentEffectiveness> oees = new ArrayList<OverallEquipmentEffectiveness>();
-		
-		//logger.debug("Number of elements to calculate in the final list:" + periods.size());
-		
-		// loop through the different intervals and calculate total schedule downtime, availability loss, etc..
-		for (int i = 0; i < periods.size(); i++)
-		{
-					
-			PredefinedPeriod period = periods.get(i);
-			
-			//logger.debug("Period Type:" + period.getType().getName());
-			
-			if (period.getType() == PredefinedPeriodType.INT_LT_HOUR)
-			{
-				
-				// Search for intervals in the requested hour.
-				DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd-HH:mm:ss");
-				String parQueryFrom = formatter.format(period.getCalendarFrom().getTime());
-				String parQueryTo = formatter.format(period.getCalendarTo().getTime());
-				
-				PredefinedPeriod periodTmp = new PredefinedPeriod(period.getCalendarFrom().get(Calendar.YEAR), 
-						period.getCalendarFrom().get(Calendar.MONTH) +1,
-						period.getCalendarFrom().get(Calendar.DAY_OF_MONTH),
-						period.getCalendarFrom().get(Calendar.HOUR_OF_DAY)); 
-				
-				List<OverallEquipmentEffectiveness> oeesHour = oeeAggregation.getOeeAggregationContainer().intervalsByMinute(
-															this.getEntity().getId(), this.getEntity().getType(), periodTmp.getKey(), parQueryFrom, parQueryTo);
-				
-				if (oeesHour.size() == 0) {
-					logger.error("The aggregation interval could not be calculated predefined Period:" + parQueryFrom );
-				} else {
-					oees.addAll(oeesHour);
-				}
-				
-			} else if ( period.getType() == PredefinedPeriodType.HOUR ){
-				//logger.debug(period.getKey());
-				OverallEquipmentEffectiveness oee2 = oeeAggregation.getOeeAggregationContainer().
-						getPeriodOEE(this.getEntity().getId(), this.getEntity().getType(), period);
-				if (oee2 !=null) {
-					//logger.debug("Exist Period: " + period.getKey().toString());
-					oees.add(oee2);
-				} else {
-					//logger.debug("Don't Exist Period: " + period.getKey().toString());
-					OEEAggregationCalculator oeeCalculator = new OEEAggregationCalculator();
-					oees.addAll(oeeCalculator.calculateHour(this.getEntity().getId(), this.getEntity().getType(), period.getLocalDateTime(), true, false));
-				}
-			} else if ( period.getType() == PredefinedPeriodType.MINUTE ){
-				OverallEquipmentEffectiveness oee2 = oeeAggregation.getOeeAggregationContainer().
-						getPeriodOEE(this.getEntity().getId(), this.getEntity().getType(), period);
-				if (oee2 !=null) {
-					oees.add(oee2);
-				} else {
-					OEEAggregationCalculator oeeCalculator = new OEEAggregationCalculator();
-					oees.addAll(oeeCalculator.calculateMinute(this.getEntity().getId(), this.getEntity().getType(), period.getLocalDateTime(), true, false));
-				}
-			} else if ( period.getType() == PredefinedPeriodType.DAY ) {
-				OverallEquipmentEffectiveness oee2 = oeeAggregation.getOeeAggregationContainer().
-						getPeriodOEE(this.getEntity().getId(), this.getEntity().getType(), period);
-				if (oee2 !=null) {
-					oees.add(oee2);
-				} else {
-					OEEAggregationCalculator oeeCalculator = new OEEAggregationCalculator();
-					oees.addAll(oeeCalculator.calculateDay(this.getEntity().getId(), this.getEntity().getType(), period.getLocalDateTime(), true, false));
-				}
-				
-			} else if ( period.getType() == PredefinedPeriodType.MONTH ) {
-				OverallEquipmentEffectiveness oee2 = oeeAggregation.getOeeAggregationContainer().
-						getPeriodOEE(this.getEntity().getId(), this.getEntity().getType(), period);
-				if (oee2 !=null) {
-					oees.add(oee2);
-				} else {
-					OEEAggregationCalculator oeeCalculator = new OEEAggregationCalculator();
-					oees.addAll(oeeCalculator.calculateMonth(this.getEntity().getId(), this.getEntity().getType(), period.getLocalDateTime(), true, false));
-				}
-				
-			} else if ( period.getType() == PredefinedPeriodType.YEAR )  {
-				
-				OverallEquipmentEffectiveness oee2 = oeeAggregation.getOeeAggregationContainer().
-						getPeriodOEE(this.getEntity().getId(), this.getEntity().getType(), period);
-				if (oee2 !=null) {
-					oees.add(oee2);
-				} else {
-					OEEAggregationCalculator oeeCalculator = new OEEAggregationCalculator();
-					oees.addAll(oeeCalculator.calculateYear(this.getEntity().getId(), this.getEntity().getType(), period.getLocalDateTime(), true, false));
-				}
-									
-			} else {
-				logger.error("Invalid Predefined Period type:" + period.getType().getName());			
-			}			
-		}
-			
-		logger.debug("Number of elements in the final list:" + oees.size());
+		List<OverallEquipmentEffectiveness> oees = getOEESSegments(dttmFrom, dttmTo, reqInterval);
 
 		JSONArray array = null;
 		array = new JSONArray();
@@ -1276,35 +1706,7 @@ public abstract class EntityFacade  {
 			jsob.append("qty_sched_to_produce",oee.getQtySchedToProduce());
 			jsob.append("qty_produced",oee.getQtyProduced());
 			jsob.append("qty_defective",oee.getQtyDefective());
-			
-			double part1 = 0;
-			double part2 = 0;
-			double part3 = 0;
-			
-			if (oee.getAvailableTime() != 0) {
-				part1 = (oee.getProductiveTime() / oee.getAvailableTime());
-			} else {
-				part1 = 1;
-			}
-			
-			if (oee.getQtySchedToProduce() != 0) {
-				part2 = (oee.getQtyProduced() / oee.getQtySchedToProduce() );
-			} else {
-				part2 = 1;
-			}
-			
-			if (oee.getQtyProduced() != 0) {
-				part3 = ((oee.getQtyProduced() - oee.getQtyDefective()) / oee.getQtyProduced() );
-			} else {
-				part3 = 1;
-			}
-			
-			double oeeValue =  part1 * part2 * part3;   
-			oeeValue = oeeValue * 100; 
-			
-			logger.debug("oee" + Double.toString(oeeValue));
-			
-			jsob.append("oee", new Double(oeeValue));
+			jsob.append("oee", new Double(getOeePercentage(oee)));
 			
 			// adding jsonObject to JsonArray
 			array.put(jsob);
@@ -1313,10 +1715,78 @@ public abstract class EntityFacade  {
 		return array;
 	}
 
+	/**
+	 * Writes the OEE for the measured entity within the interval given as parameter to a json generator.
+	 * 
+	 * The default format is the array of <code>getOverallEquipmentEffectiveness</code>. The row format writes 
+	 * the names of the columns and an array with the values of every OEE:<br>
+	 * {"columns":["start_dttm","end_dttm",...,"oee"],"rows":[[start,end,...,oee]...]}
+	 * 
+	 * @param generator		json generator of the response.
+	 * @param dttmFrom		start datetime 
+	 * @param dttmTo		end datetime
+	 * @param reqInterval	specifies the granurality required for the response.
+	 * @param rows			true to write the row format.
+	 * @throws IOException	if the response cannot be written.
+	 */
+	public void writeOverallEquipmentEffectiveness(JsonGenerator generator, LocalDateTime dttmFrom, LocalDateTime dttmTo, 
+			String reqInterval, boolean rows) throws IOException {
+		List<OverallEquipmentEffectiveness> oees = getOEESSegments(dttmFrom, dttmTo, reqInterval);
+
+		writeJsonStart(generator, rows, new String[] {"start_dttm", "end_dttm", "available_time", "productive_time", 
+				"qty_sched_to_produce", "qty_produced", "qty_defective", "oee"});
+		for (OverallEquipmentEffectiveness oee : oees) {
+			writeRowStart(generator, rows);
+			writeJsonField(generator, rows, "start_dttm", oee.getStartDttm());
+			writeJsonField(generator, rows, "end_dttm", oee.endDttm());
+			writeJsonField(generator, rows, "available_time",oee.getAvailableTime());
+			writeJsonField(generator, rows, "productive_time",oee.getProductiveTime());
+			writeJsonField(generator, rows, "qty_sched_to_produce",oee.getQtySchedToProduce());
+			writeJsonField(generator, rows, "qty_produced",oee.getQtyProduced());
+			writeJsonField(generator, rows, "qty_defective",oee.getQtyDefective());
+			writeJsonField(generator, rows, "oee", getOeePercentage(oee));
+			writeRowEnd(generator, rows);
+		}
+		writeJsonEnd(generator, rows);
+	}
+
+	/**
+	 * Calculates the OEE percentage as availability * performance * quality.
+	 */
+	private static double getOeePercentage(OverallEquipmentEffectiveness oee) {
+		double part1 = 0;
+		double part2 = 0;
+		double part3 = 0;
+		
+		if (oee.getAvailableTime() != 0) {
+			part1 = (oee.getProductiveTime() / oee.getAvailableTime());
+		} else {
+			part1 = 1;
+		}
+		
+		if (oee.getQtySchedToProduce() != 0) {
+			part2 = (oee.getQtyProduced() / oee.getQtySchedToProduce() );
+		} else {
+			part2 = 1;
+		}
+		
+		if (oee.getQtyProduced() != 0) {
+			part3 = ((oee.getQtyProduced() - oee.getQtyDefective()) / oee.getQtyProduced() );
+		} else {
+			part3 = 1;
+		}
+		
+		double oeeValue =  part1 * part2 * part3;   
+		oeeValue = oeeValue * 100; 
+		
+		logger.debug("oee" + Double.toString(oeeValue));
+		return oeeValue;
+	}
+
 	/**
 	 * This method returns a JSON Array with those attributes marked as trend in the language.
 	 */
-	public synchronized JSONArray getJsonAttributeTrend() {
+	public JSONArray getJsonAttributeTrend() {
 		logger.debug("getJsonAttributeTrend Start");
 		logger.debug("In getJsonAttributeTrend");
 		
@@ -0,0 +1,150 @@
+package com.advicetec.core;
+
+import java.time.LocalDateTime;
+
+/**
+ * Running sum of the values of a production count attribute since the start of a state interval.
+ *
+ * The counter is opened when the interval starts and it is updated every time a value of the attribute is set,
+ * so the actual rate of the interval is calculated without querying the values of the interval when it closes.
+ * The values are summed as in the state intervals: only double and integer values are counted, and the sum stops
+ * at the first value of another type.
+ *
+ * @author advicetec
+ *
+ */
+public final class IntervalCounter
+{
+
+	/**
+	 * Name of the attribute counted.
+	 */
+	private final String attrName;
+
+	/**
+	 * Start of the interval.
+	 */
+	private final LocalDateTime start;
+
+	/**
+	 * Sum of the values since the start.
+	 */
+	private double sum;
+
+	/**
+	 * Number of values summed.
+	 */
+	private int count;
+
+	/**
+	 * Whether all the values have been double or integer.
+	 */
+	private boolean numeric = true;
+
+	/**
+	 * Datetime of the first value received from the facade, null if no value has been received yet.
+	 */
+	private LocalDateTime firstAdded;
+
+	/**
+	 * Datetime of the last value taken from the series when the counter was opened.
+	 */
+	private LocalDateTime lastSeeded;
+
+	/**
+	 * Constructor for the class.
+	 *
+	 * @param attrName	name of the attribute counted.
+	 * @param start		start of the interval.
+	 */
+	public IntervalCounter(String attrName, LocalDateTime start) {
+		this.attrName = attrName;
+		this.start = start;
+	}
+
+	/**
+	 * Gets the name of the attribute counted.
+	 *
+	 * @return attribute name.
+	 */
+	public String getAttrName() {
+		return attrName;
+	}
+
+	/**
+	 * Gets the start of the interval.
+	 *
+	 * @return start of the interval.
+	 */
+	public LocalDateTime getStart() {
+		return start;
+	}
+
+	/**
+	 * Adds a value set in the facade.
+	 *
+	 * @param dateTime	datetime of the value.
+	 * @param value		value set.
+	 */
+	public synchronized void add(LocalDateTime dateTime, Object value) {
+		if (dateTime.isBefore(start)) {
+			return;
+		}
+		// the value was already taken from the series.
+		if ((lastSeeded != null) && !dateTime.isAfter(lastSeeded)) {
+			return;
+		}
+		if (firstAdded == null) {
+			firstAdded = dateTime;
+		}
+		count(value);
+	}
+
+	/**
+	 * Adds the values already in the series of the attribute since the start of the interval. The values set in the
+	 * facade while the counter was registered are only counted once.
+	 *
+	 * @param series	series of the attribute.
+	 */
+	public synchronized void seed(AttributeSeries series) {
+		series.forEachSince(start, (dateTime, value) -> {
+			if ((firstAdded == null) || dateTime.isBefore(firstAdded)) {
+				lastSeeded = dateTime;
+				count(value);
+			}
+		});
+	}
+
+	private void count(Object value) {
+		if (!numeric) {
+			return;
+		}
+		if (value instanceof Double) {
+			sum = sum + (Double) value;
+			count++;
+		} else if (value instanceof Integer) {
+			sum = sum + (Integer) value;
+			count++;
+		} else {
+			numeric = false;
+		}
+	}
+
+	/**
+	 * Gets the sum of the values since the start of the interval.
+	 *
+	 * @return sum of the values, or null if there was a value that is not double or integer.
+	 */
+	public synchronized Double getSum() {
+		return numeric ? new Double(sum) : null;
+	}
+
+	/**
+	 * Gets the number of values summed.
+	 *
+	 * @return number of values.
+	 */
+	public synchronized int getCount() {
+		return count;
+	}
+}
@@ -9,6 +9,7 @@ import org.apache.logging.log4j.LogManager;
 import com.advicetec.MessageProcessor.MessageManager;
 import com.advicetec.configuration.ConfigurationManager;
 import com.advicetec.eventprocessor.EventManager;
+import com.advicetec.language.compiler.CompiledExpressions;
 import com.advicetec.measuredentitity.MeasuredEntityFacade;
 import com.advicetec.measuredentitity.MeasuredEntityManager;
 import com.advicetec.monitorAdapter.AdapterManager;
@@ -126,6 +127,11 @@ public class IotInit extends Configurable
 		try {
 
 			IotInit iotInit = IotInit.getInstance();
+
+			// Establishes if the transformation and behavior expressions are compiled.
+			String compileExpressions = iotInit.properties.getProperty(CompiledExpressions.PROPERTY_NAME);
+			CompiledExpressions.setEnabled(Boolean.parseBoolean(compileExpressions));
+
 			iotInit.adapterManager.run();
 			logger.info("after running adapter Manager");
 			iotInit.messageManager.run();
@@ -0,0 +1,142 @@
+package com.advicetec.core;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Downsamples the values of a trend with the largest triangle three buckets algorithm, which keeps the points
+ * that preserve the shape of the line.
+ *
+ * The first and last points are kept; the other points are divided in buckets and the point selected in every
+ * bucket is the one that forms the largest triangle with the point selected in the previous bucket and the average
+ * of the next bucket. The points can be added in any order, they are sorted before the selection.
+ * Only the numeric and boolean values are taken, a boolean counts as one or zero.
+ *
+ * @author advicetec
+ *
+ */
+public final class LargestTriangleThreeBuckets
+{
+	private long[] times = new long[1024];
+	private double[] values = new double[1024];
+	private int size;
+
+	/**
+	 * Adds a point of the trend, the values that are not numbers or booleans are ignored.
+	 *
+	 * @param dateTime	datetime of the value.
+	 * @param value		value to add.
+	 */
+	public void add(LocalDateTime dateTime, Object value) {
+		double number;
+		if (value instanceof Number) {
+			number = ((Number) value).doubleValue();
+		} else if (value instanceof Boolean) {
+			number = ((Boolean) value) ? 1 : 0;
+		} else {
+			return;
+		}
+		if (size == times.length) {
+			times = Arrays.copyOf(times, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		times[size] = AttributeSeries.toMillis(dateTime);
+		values[size] = number;
+		size++;
+	}
+
+	/**
+	 * Gets the number of points added.
+	 *
+	 * @return number of points.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Selects the points and visits them in datetime order.
+	 *
+	 * @param threshold	number of points to select, all the points are visited when there are less points or the threshold is less than three.
+	 * @param visitor	receives the datetime and the value of every point selected.
+	 */
+	public void select(int threshold, BiConsumer<LocalDateTime, Double> visitor) {
+		sort();
+		if ((threshold >= size) || (threshold < 3)) {
+			for (int i = 0; i < size; i++) {
+				visitor.accept(AttributeSeries.toDateTime(times[i]), values[i]);
+			}
+			return;
+		}
+
+		// the first and last points are not in the buckets.
+		double every = (double) (size - 2) / (threshold - 2);
+		int selected = 0;
+		visitor.accept(AttributeSeries.toDateTime(times[0]), values[0]);
+		for (int bucket = 0; bucket < threshold - 2; bucket++) {
+			// average of the next bucket, the last point for the last bucket.
+			int nextStart = (int) Math.floor((bucket + 1) * every) + 1;
+			int nextEnd = Math.min((int) Math.floor((bucket + 2) * every) + 1, size);
+			double avgTime = 0;
+			double avgValue = 0;
+			for (int i = nextStart; i < nextEnd; i++) {
+				avgTime += times[i];
+				avgValue += values[i];
+			}
+			int nextCount = nextEnd - nextStart;
+			if (nextCount > 0) {
+				avgTime = avgTime / nextCount;
+				avgValue = avgValue / nextCount;
+			} else {
+				avgTime = times[size - 1];
+				avgValue = values[size - 1];
+			}
+
+			// point of the bucket with the largest triangle.
+			int start = (int) Math.floor(bucket * every) + 1;
+			int end = Math.min((int) Math.floor((bucket + 1) * every) + 1, size - 1);
+			double pointTime = times[selected];
+			double pointValue = values[selected];
+			double maxArea = -1;
+			int maxIndex = start;
+			for (int i = start; i < end; i++) {
+				double area = Math.abs((pointTime - avgTime) * (values[i] - pointValue)
+						- (pointTime - times[i]) * (avgValue - pointValue));
+				if (area > maxArea) {
+					maxArea = area;
+					maxIndex = i;
+				}
+			}
+			visitor.accept(AttributeSeries.toDateTime(times[maxIndex]), values[maxIndex]);
+			selected = maxIndex;
+		}
+		visitor.accept(AttributeSeries.toDateTime(times[size - 1]), values[size - 1]);
+	}
+
+	/**
+	 * Sorts the points by datetime, they are usually sorted already.
+	 */
+	private void sort() {
+		boolean sorted = true;
+		for (int i = 1; (i < size) && sorted; i++) {
+			sorted = times[i - 1] <= times[i];
+		}
+		if (sorted) {
+			return;
+		}
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (i, j) -> Long.compare(times[i], times[j]));
+		long[] sortedTimes = new long[size];
+		double[] sortedValues = new double[size];
+		for (int i = 0; i < size; i++) {
+			sortedTimes[i] = times[order[i]];
+			sortedValues[i] = values[order[i]];
+		}
+		times = sortedTimes;
+		values = sortedValues;
+	}
+}
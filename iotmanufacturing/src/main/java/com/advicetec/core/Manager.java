@@ -2,6 +2,7 @@ package com.advicetec.core;
 
 import com.advicetec.mpmcqueue.PriorityQueue;
 import com.advicetec.mpmcqueue.Queueable;
+import com.advicetec.mpmcqueue.WaitStrategy;
 
 /**
  * This class implements a priority queue and it is configurable for processing properties files.
@@ -19,11 +20,13 @@ public abstract class Manager extends Configurable
 	
 	/**
 	 * Constructor for the class, it requires the file name of the properties file to read. 
+	 * The optional property QueueWaitStrategy (spin or park) establishes how the handlers wait on an empty queue.
 	 * @param filename  file name of the properties file to read.
 	 */
 	public Manager(String filename) {
 		super(filename);
-		this.queue = new PriorityQueue<Queueable>(Queueable.class);
+		WaitStrategy waitStrategy = WaitStrategy.fromName(getProperty(WaitStrategy.PROPERTY_NAME));
+		this.queue = new PriorityQueue<Queueable>(Queueable.class, waitStrategy);
 	}
 	
 	/**
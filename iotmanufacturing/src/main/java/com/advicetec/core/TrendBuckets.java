@@ -0,0 +1,238 @@
+package com.advicetec.core;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Downsamples the values of a trend in buckets of the same length: count, minimum, maximum, average and last value
+ * of every bucket.
+ *
+ * The buckets are kept in arrays, so the values can be added in any order, as they come from the attribute series
+ * or from the database, and the buckets calculated by the database can be merged with the ones calculated in memory.
+ * Only the numeric and boolean values are aggregated, a boolean counts as one or zero.
+ *
+ * @author advicetec
+ *
+ */
+public final class TrendBuckets
+{
+	/**
+	 * Maximum number of buckets of a trend.
+	 */
+	public static final int MAX_BUCKETS = 100000;
+
+	/**
+	 * Start of the first bucket.
+	 */
+	private final LocalDateTime from;
+
+	/**
+	 * Length of the buckets in milliseconds.
+	 */
+	private final long width;
+
+	private final long[] count;
+	private final double[] min;
+	private final double[] max;
+	private final double[] sum;
+	private final double[] last;
+	private final LocalDateTime[] lastTime;
+
+	/**
+	 * Constructor for the class.
+	 *
+	 * @param from		start of the trend.
+	 * @param to		end of the trend, excluded.
+	 * @param buckets	number of buckets, at most <code>MAX_BUCKETS</code>.
+	 */
+	public TrendBuckets(LocalDateTime from, LocalDateTime to, int buckets) {
+		long range = Math.max(1, from.until(to, ChronoUnit.MILLIS));
+		int size = Math.max(1, Math.min(buckets, MAX_BUCKETS));
+		this.from = from;
+		// the buckets cover the whole range.
+		this.width = (range + size - 1) / size;
+		int used = (int) ((range + width - 1) / width);
+		this.count = new long[used];
+		this.min = new double[used];
+		this.max = new double[used];
+		this.sum = new double[used];
+		this.last = new double[used];
+		this.lastTime = new LocalDateTime[used];
+	}
+
+	/**
+	 * Constructor for empty buckets with the same start, length and number of buckets.
+	 */
+	private TrendBuckets(LocalDateTime from, long width, int used) {
+		this.from = from;
+		this.width = width;
+		this.count = new long[used];
+		this.min = new double[used];
+		this.max = new double[used];
+		this.sum = new double[used];
+		this.last = new double[used];
+		this.lastTime = new LocalDateTime[used];
+	}
+
+	/**
+	 * Creates empty buckets with the same start, length and number of buckets as these ones, so values can be
+	 * aggregated apart and merged later with <code>mergeAll</code>.
+	 *
+	 * @return empty buckets.
+	 */
+	public TrendBuckets emptyCopy() {
+		return new TrendBuckets(from, width, count.length);
+	}
+
+	/**
+	 * Gets the number of buckets needed to cover a trend with buckets of the given length.
+	 *
+	 * @param from			start of the trend.
+	 * @param to			end of the trend.
+	 * @param resolution	length of the buckets in seconds.
+	 * @return number of buckets.
+	 */
+	public static int bucketsForResolution(LocalDateTime from, LocalDateTime to, long resolution) {
+		long range = Math.max(1, from.until(to, ChronoUnit.SECONDS));
+		long buckets = (range + Math.max(1, resolution) - 1) / Math.max(1, resolution);
+		return (int) Math.min(buckets, MAX_BUCKETS);
+	}
+
+	/**
+	 * Gets the start of the first bucket.
+	 *
+	 * @return start of the trend.
+	 */
+	public LocalDateTime getFrom() {
+		return from;
+	}
+
+	/**
+	 * Gets the length of the buckets.
+	 *
+	 * @return length of the buckets in milliseconds.
+	 */
+	public long getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the number of buckets.
+	 *
+	 * @return number of buckets.
+	 */
+	public int size() {
+		return count.length;
+	}
+
+	/**
+	 * Gets the bucket of a datetime.
+	 *
+	 * @param dateTime	datetime of a value.
+	 * @return index of the bucket, or -1 if the datetime is out of the trend.
+	 */
+	public int bucketOf(LocalDateTime dateTime) {
+		long offset = from.until(dateTime, ChronoUnit.MILLIS);
+		if (offset < 0) {
+			return -1;
+		}
+		long bucket = offset / width;
+		return (bucket < count.length) ? (int) bucket : -1;
+	}
+
+	/**
+	 * Gets the start of a bucket.
+	 *
+	 * @param bucket	index of the bucket.
+	 * @return start of the bucket.
+	 */
+	public LocalDateTime getStart(int bucket) {
+		return from.plus(bucket * width, ChronoUnit.MILLIS);
+	}
+
+	/**
+	 * Adds a value to its bucket, the values that are not numbers or booleans are ignored.
+	 *
+	 * @param dateTime	datetime of the value.
+	 * @param value		value to add.
+	 */
+	public void add(LocalDateTime dateTime, Object value) {
+		double number;
+		if (value instanceof Number) {
+			number = ((Number) value).doubleValue();
+		} else if (value instanceof Boolean) {
+			number = ((Boolean) value) ? 1 : 0;
+		} else {
+			return;
+		}
+		int bucket = bucketOf(dateTime);
+		if (bucket >= 0) {
+			merge(bucket, 1, number, number, number, number, dateTime);
+		}
+	}
+
+	/**
+	 * Merges the aggregates of a set of values in a bucket, as they are calculated by the database.
+	 *
+	 * @param bucket		index of the bucket.
+	 * @param valueCount	number of values.
+	 * @param valueMin		minimum of the values.
+	 * @param valueMax		maximum of the values.
+	 * @param valueSum		sum of the values.
+	 * @param valueLast		last value.
+	 * @param valueLastTime	datetime of the last value.
+	 */
+	public void merge(int bucket, long valueCount, double valueMin, double valueMax, double valueSum,
+			double valueLast, LocalDateTime valueLastTime) {
+		if ((bucket < 0) || (bucket >= count.length) || (valueCount <= 0)) {
+			return;
+		}
+		if (count[bucket] == 0) {
+			min[bucket] = valueMin;
+			max[bucket] = valueMax;
+		} else {
+			min[bucket] = Math.min(min[bucket], valueMin);
+			max[bucket] = Math.max(max[bucket], valueMax);
+		}
+		count[bucket] = count[bucket] + valueCount;
+		sum[bucket] = sum[bucket] + valueSum;
+		if ((lastTime[bucket] == null) || !valueLastTime.isBefore(lastTime[bucket])) {
+			last[bucket] = valueLast;
+			lastTime[bucket] = valueLastTime;
+		}
+	}
+
+	/**
+	 * Merges the aggregates of other buckets with the same start, length and number of buckets.
+	 *
+	 * @param other	buckets created with <code>emptyCopy</code>.
+	 */
+	public void mergeAll(TrendBuckets other) {
+		for (int bucket = 0; bucket < other.count.length; bucket++) {
+			if (other.count[bucket] > 0) {
+				merge(bucket, other.count[bucket], other.min[bucket], other.max[bucket], other.sum[bucket],
+						other.last[bucket], other.lastTime[bucket]);
+			}
+		}
+	}
+
+	public long getCount(int bucket) {
+		return count[bucket];
+	}
+
+	public double getMin(int bucket) {
+		return min[bucket];
+	}
+
+	public double getMax(int bucket) {
+		return max[bucket];
+	}
+
+	public double getAverage(int bucket) {
+		return (count[bucket] == 0) ? Double.NaN : sum[bucket] / count[bucket];
+	}
+
+	public double getLast(int bucket) {
+		return last[bucket];
+	}
+}
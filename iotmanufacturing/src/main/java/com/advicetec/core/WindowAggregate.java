@@ -0,0 +1,292 @@
+package com.advicetec.core;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Aggregates of the values of an attribute in a sliding time window: count, sum, minimum, maximum, average and last value.
+ *
+ * The aggregates are updated when a value is added and when the window slides, in constant amortized time:
+ * the sum is a running total, and the minimum and maximum are kept in monotonic queues, so a query does not
+ * scan the values of the window. The window of a query at a given time is [time - window, time), the same interval
+ * queried by the behavior language over the attribute values.
+ *
+ * The sum follows the count over time of the behavior language: the value for double and integer attributes,
+ * one for a true boolean, and one for any other value.
+ *
+ * @author advicetec
+ *
+ */
+public final class WindowAggregate
+{
+
+	/**
+	 * Value in the window.
+	 */
+	private static final class Sample
+	{
+		final long time;
+		final double number;
+		final Object value;
+
+		Sample(long time, double number, Object value) {
+			this.time = time;
+			this.number = number;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Attribute of the values.
+	 */
+	private final Attribute attribute;
+
+	/**
+	 * Length of the window.
+	 */
+	private final Duration window;
+
+	/**
+	 * Length of the window in milliseconds.
+	 */
+	private final long windowMillis;
+
+	/**
+	 * Values in the window ordered by datetime.
+	 */
+	private final Deque<Sample> samples = new ArrayDeque<Sample>();
+
+	/**
+	 * Values that can be the maximum of the window, the first one is the maximum.
+	 */
+	private final Deque<Sample> maximums = new ArrayDeque<Sample>();
+
+	/**
+	 * Values that can be the minimum of the window, the first one is the minimum.
+	 */
+	private final Deque<Sample> minimums = new ArrayDeque<Sample>();
+
+	/**
+	 * Sum of the values in the window.
+	 */
+	private double sum;
+
+	/**
+	 * Constructor for the class.
+	 *
+	 * @param attribute	attribute of the values.
+	 * @param window	length of the window.
+	 */
+	public WindowAggregate(Attribute attribute, Duration window) {
+		this.attribute = attribute;
+		this.window = window;
+		this.windowMillis = window.toMillis();
+	}
+
+	/**
+	 * Gets the attribute of the values.
+	 *
+	 * @return attribute aggregated.
+	 */
+	public Attribute getAttribute() {
+		return attribute;
+	}
+
+	/**
+	 * Gets the length of the window.
+	 *
+	 * @return length of the window.
+	 */
+	public Duration getWindow() {
+		return window;
+	}
+
+	/**
+	 * Adds a value to the window. The values must be added in datetime order, a value older than the last one is ignored.
+	 *
+	 * @param dateTime	datetime of the value.
+	 * @param value		value to add.
+	 */
+	public synchronized void add(LocalDateTime dateTime, Object value) {
+		long time = AttributeSeries.toMillis(dateTime);
+		if (!samples.isEmpty() && (time < samples.peekLast().time)) {
+			return;
+		}
+
+		Sample sample = new Sample(time, toNumber(value), value);
+		samples.addLast(sample);
+		sum += sample.number;
+
+		if (value instanceof Comparable) {
+			while (!maximums.isEmpty() && (compare(maximums.peekLast().value, value) <= 0)) {
+				maximums.removeLast();
+			}
+			maximums.addLast(sample);
+			while (!minimums.isEmpty() && (compare(minimums.peekLast().value, value) >= 0)) {
+				minimums.removeLast();
+			}
+			minimums.addLast(sample);
+		}
+		slide(time + 1);
+	}
+
+	/**
+	 * Removes the values that are out of the window ending at the given time.
+	 */
+	private void slide(long end) {
+		long start = end - windowMillis;
+		while (!samples.isEmpty() && (samples.peekFirst().time < start)) {
+			Sample old = samples.removeFirst();
+			sum -= old.number;
+			if (!maximums.isEmpty() && (maximums.peekFirst() == old)) {
+				maximums.removeFirst();
+			}
+			if (!minimums.isEmpty() && (minimums.peekFirst() == old)) {
+				minimums.removeFirst();
+			}
+		}
+		if (samples.isEmpty()) {
+			// avoids the rounding errors of the running sum.
+			sum = 0;
+		}
+	}
+
+	/**
+	 * Returns the number used in the sum for a value.
+	 */
+	private static double toNumber(Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		} else if (value instanceof Boolean) {
+			return ((Boolean) value) ? 1 : 0;
+		} else {
+			return 1;
+		}
+	}
+
+	/**
+	 * Compares two values, the numbers by their double value.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compare(Object value1, Object value2) {
+		if ((value1 instanceof Number) && (value2 instanceof Number)) {
+			return Double.compare(((Number) value1).doubleValue(), ((Number) value2).doubleValue());
+		}
+		return ((Comparable) value1).compareTo(value2);
+	}
+
+	/**
+	 * Returns the number of values in the window ending at the given time.
+	 *
+	 * @param now	end of the window, excluded.
+	 * @return number of values.
+	 */
+	public synchronized int getCount(LocalDateTime now) {
+		slide(AttributeSeries.toMillis(now));
+		return countBefore(AttributeSeries.toMillis(now));
+	}
+
+	/**
+	 * Returns the sum of the values in the window ending at the given time.
+	 *
+	 * @param now	end of the window, excluded.
+	 * @return sum of the values, zero if there are not values.
+	 */
+	public synchronized double getSum(LocalDateTime now) {
+		long end = AttributeSeries.toMillis(now);
+		slide(end);
+		double ret = sum;
+		// the values at or after the end of the window are not counted.
+		for (Iterator<Sample> it = samples.descendingIterator(); it.hasNext(); ) {
+			Sample sample = it.next();
+			if (sample.time < end) {
+				break;
+			}
+			ret -= sample.number;
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the average of the values in the window ending at the given time.
+	 *
+	 * @param now	end of the window, excluded.
+	 * @return average of the values, or NaN if there are not values.
+	 */
+	public synchronized double getAverage(LocalDateTime now) {
+		int count = getCount(now);
+		return (count == 0) ? Double.NaN : getSum(now) / count;
+	}
+
+	/**
+	 * Returns the maximum of the values in the window ending at the given time.
+	 *
+	 * @param now	end of the window, excluded.
+	 * @return maximum value, or null if there are not values.
+	 */
+	public synchronized Object getMax(LocalDateTime now) {
+		return extreme(maximums, now);
+	}
+
+	/**
+	 * Returns the minimum of the values in the window ending at the given time.
+	 *
+	 * @param now	end of the window, excluded.
+	 * @return minimum value, or null if there are not values.
+	 */
+	public synchronized Object getMin(LocalDateTime now) {
+		return extreme(minimums, now);
+	}
+
+	/**
+	 * Returns the last value in the window ending at the given time.
+	 *
+	 * @param now	end of the window, excluded.
+	 * @return last value, or null if there are not values.
+	 */
+	public synchronized Object getLast(LocalDateTime now) {
+		long end = AttributeSeries.toMillis(now);
+		slide(end);
+		for (Iterator<Sample> it = samples.descendingIterator(); it.hasNext(); ) {
+			Sample sample = it.next();
+			if (sample.time < end) {
+				return sample.value;
+			}
+		}
+		return null;
+	}
+
+	private Object extreme(Deque<Sample> queue, LocalDateTime now) {
+		long end = AttributeSeries.toMillis(now);
+		slide(end);
+		if (queue.isEmpty() || (queue.peekLast().time < end)) {
+			return queue.isEmpty() ? null : queue.peekFirst().value;
+		}
+		// a value added after the end of the window is in the queue, the extreme is searched without it.
+		Object ret = null;
+		for (Sample sample : samples) {
+			if (sample.time >= end) {
+				break;
+			}
+			if ((sample.value instanceof Comparable) && ((ret == null)
+					|| ((queue == maximums) ? (compare(ret, sample.value) < 0) : (compare(ret, sample.value) > 0)))) {
+				ret = sample.value;
+			}
+		}
+		return ret;
+	}
+
+	private int countBefore(long end) {
+		int count = samples.size();
+		for (Iterator<Sample> it = samples.descendingIterator(); it.hasNext(); ) {
+			if (it.next().time < end) {
+				break;
+			}
+			count--;
+		}
+		return count;
+	}
+}
@@ -10,9 +10,9 @@ import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
-import org.eclipse.paho.client.mqttv3.internal.wire.MqttPublish;
 
 import com.advicetec.monitorAdapter.AdapterManager;
+import com.advicetec.monitorAdapter.MqttReading;
 import com.advicetec.mpmcqueue.QueueType;
 import com.advicetec.mpmcqueue.Queueable;
 
@@ -22,6 +22,7 @@ import com.advicetec.mpmcqueue.Queueable;
  * This class subscribes to the MQTT broker to receive messages.
  * 
  * @author advicetec
+ * @see PlantLoadGenerator
  */
 public class FakeController implements MqttCallback{
 	
@@ -116,10 +117,9 @@ public class FakeController implements MqttCallback{
 				"  Topic:\t" + topic + 
 				"  Message:\t" + new String(message.getPayload()) +
 				"  QoS:\t" + message.getQos());
-		MqttPublish publish = new MqttPublish(topic, message);
+		MqttReading reading = MqttReading.obtain(topic, message.getPayload());
  
-		publish.getTopicName();
-		adapterManager.getQueue().enqueue(7, new Queueable(QueueType.MQTT_DEV_MESSAGE,publish));
+		adapterManager.getQueue().enqueue(6, new Queueable(QueueType.MQTT_DEV_MESSAGE,reading));
 	}
  
 }
@@ -0,0 +1,196 @@
+package com.advicetec.emulators;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Values of the metrics exposed by the server in the Prometheus text format, read at a given time.
+ * <p>
+ * The load generator reads the metrics at the start and at the end of every step, and computes the
+ * rates and the latency quantiles from the difference between both readings, as the Prometheus
+ * <code>rate</code> and <code>histogram_quantile</code> functions do.
+ *
+ * @author advicetec
+ * @see com.advicetec.iot.rest.MetricsResource
+ */
+public class MetricsSnapshot
+{
+	private static final int TIMEOUT = 5000;
+
+	/**
+	 * Value of every sample, by its name followed by its labels.
+	 */
+	private final Map<String, Double> samples;
+
+	private final long nanos;
+
+	MetricsSnapshot(Map<String, Double> samples, long nanos) {
+		this.samples = samples;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * Reads the metrics from the server.
+	 * @param url	address of the metrics resource.
+	 * @return the values of the metrics.
+	 * @throws IOException if the metrics cannot be read.
+	 */
+	public static MetricsSnapshot scrape(String url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		connection.setConnectTimeout(TIMEOUT);
+		connection.setReadTimeout(TIMEOUT);
+		try (InputStream in = connection.getInputStream()) {
+			ByteArrayOutputStream text = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				text.write(buffer, 0, read);
+			}
+			return parse(new String(text.toByteArray(), StandardCharsets.UTF_8));
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Parses metrics in the Prometheus text format.
+	 * @param text	metrics in text format.
+	 * @return the values of the metrics.
+	 */
+	public static MetricsSnapshot parse(String text) {
+		Map<String, Double> samples = new HashMap<String, Double>();
+		for (String line : text.split("\n")) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			int separator = line.lastIndexOf(' ');
+			if (separator > 0) {
+				samples.put(line.substring(0, separator).trim(), toDouble(line.substring(separator + 1)));
+			}
+		}
+		return new MetricsSnapshot(samples, System.nanoTime());
+	}
+
+	private static double toDouble(String value) {
+		if ("+Inf".equals(value)) {
+			return Double.POSITIVE_INFINITY;
+		} else if ("-Inf".equals(value)) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		return Double.parseDouble(value);
+	}
+
+	/**
+	 * Returns the name of a sample, without its labels.
+	 */
+	private static String name(String key) {
+		int braces = key.indexOf('{');
+		return (braces < 0) ? key : key.substring(0, braces);
+	}
+
+	/**
+	 * Returns the value of a label of a sample, or null if the sample does not have the label.
+	 */
+	private static String label(String key, String label) {
+		int start = key.indexOf(label + "=\"");
+		if (start < 0) {
+			return null;
+		}
+		start += label.length() + 2;
+		return key.substring(start, key.indexOf('"', start));
+	}
+
+	/**
+	 * Returns the sum of the values of a metric over all its labels.
+	 * @param metric	name of the metric.
+	 * @return the sum of the samples of the metric, 0 if it has no samples.
+	 */
+	public double sum(String metric) {
+		double sum = 0;
+		for (Map.Entry<String, Double> sample : samples.entrySet()) {
+			if (name(sample.getKey()).equals(metric)) {
+				sum += sample.getValue();
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the rate per second of a counter between a previous reading and this one.
+	 * @param previous	previous reading of the metrics.
+	 * @param counter	name of the counter.
+	 * @return increase of the counter per second.
+	 */
+	public double rate(MetricsSnapshot previous, String counter) {
+		double seconds = (nanos - previous.nanos) / 1e9;
+		return (seconds > 0) ? (sum(counter) - previous.sum(counter)) / seconds : 0.0;
+	}
+
+	/**
+	 * Returns the cumulative count of every bucket of a histogram, summed over its other labels.
+	 */
+	private TreeMap<Double, Double> buckets(String histogram) {
+		TreeMap<Double, Double> buckets = new TreeMap<Double, Double>();
+		String bucket = histogram + "_bucket";
+		for (Map.Entry<String, Double> sample : samples.entrySet()) {
+			if (name(sample.getKey()).equals(bucket)) {
+				Double bound = toDouble(label(sample.getKey(), "le"));
+				Double count = buckets.get(bound);
+				buckets.put(bound, ((count == null) ? 0.0 : count) + sample.getValue());
+			}
+		}
+		return buckets;
+	}
+
+	/**
+	 * Returns a quantile of the values observed by a histogram between a previous reading and this one.
+	 * The value is interpolated in its bucket; when it falls in the last bucket, the upper bound of
+	 * the previous bucket is returned.
+	 * @param previous	previous reading of the metrics.
+	 * @param histogram	name of the histogram.
+	 * @param quantile	quantile between 0 and 1.
+	 * @return the quantile, NaN if no values were observed.
+	 */
+	public double quantile(MetricsSnapshot previous, String histogram, double quantile) {
+		TreeMap<Double, Double> buckets = buckets(histogram);
+		TreeMap<Double, Double> before = previous.buckets(histogram);
+		if (buckets.isEmpty()) {
+			return Double.NaN;
+		}
+		double total = buckets.lastEntry().getValue() - count(before, buckets.lastKey());
+		if (total <= 0) {
+			return Double.NaN;
+		}
+		double rank = quantile * total;
+		double lowerBound = 0;
+		double lowerCount = 0;
+		for (Map.Entry<Double, Double> bucket : buckets.entrySet()) {
+			double count = bucket.getValue() - count(before, bucket.getKey());
+			if (count >= rank) {
+				if (bucket.getKey().isInfinite()) {
+					return lowerBound;
+				}
+				if (count == lowerCount) {
+					return bucket.getKey();
+				}
+				return lowerBound + (bucket.getKey() - lowerBound) * (rank - lowerCount) / (count - lowerCount);
+			}
+			lowerBound = bucket.getKey();
+			lowerCount = count;
+		}
+		return lowerBound;
+	}
+
+	private static double count(TreeMap<Double, Double> buckets, Double bound) {
+		Double count = buckets.get(bound);
+		return (count == null) ? 0.0 : count;
+	}
+}
@@ -0,0 +1,228 @@
+package com.advicetec.emulators;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Modbus TCP slave that answers the reads of the monitoring adapter with the signals of the
+ * simulated machines, as the concentrator of a plant does.
+ * <p>
+ * The unit identifier selects the machine: unit 1 is the first machine and the address is the
+ * index of the signal. With the unit 0 or 255 the machines are in consecutive addresses, the
+ * address of a signal is <code>machine * signals + signal</code>. The read coils (0x01) and read
+ * discrete inputs (0x02) functions give the current pulse of the signals, the read holding
+ * registers (0x03) and read input registers (0x04) functions give the cycles counted by them.
+ * Other functions are answered with the illegal function exception.
+ *
+ * @author advicetec
+ * @see SimulatedMachine
+ * @see PlantLoadGenerator
+ */
+public class ModbusSlaveEmulator implements Runnable
+{
+	static Logger logger = LogManager.getLogger(ModbusSlaveEmulator.class.getName());
+
+	private static final int ILLEGAL_FUNCTION = 0x01;
+	private static final int ILLEGAL_DATA_ADDRESS = 0x02;
+	private static final int ILLEGAL_DATA_VALUE = 0x03;
+	private static final int TARGET_FAILED = 0x0B;
+
+	/**
+	 * Maximum number of bits and registers of a read, given by the protocol.
+	 */
+	private static final int MAX_BITS = 2000;
+	private static final int MAX_REGISTERS = 125;
+
+	private final SimulatedMachine[] machines;
+
+	private final int signals;
+
+	private final ServerSocket server;
+
+	private final List<Socket> clients = new CopyOnWriteArrayList<Socket>();
+
+	private final AtomicLong requests = new AtomicLong();
+
+	private volatile boolean running = true;
+
+	/**
+	 * Creates the slave and starts listening.
+	 * @param machines	simulated machines, all with the same number of signals.
+	 * @param address	address where the slave listens, null for all the interfaces.
+	 * @param port		port where the slave listens, 0 for any free port.
+	 * @throws IOException if the port cannot be opened.
+	 */
+	public ModbusSlaveEmulator(SimulatedMachine[] machines, InetAddress address, int port) throws IOException {
+		this.machines = machines;
+		this.signals = (machines.length > 0) ? machines[0].getSignals() : 0;
+		this.server = new ServerSocket(port, 200, address);
+		Thread t = new Thread(this, "ModbusSlaveEmulator");
+		t.setDaemon(true);
+		t.start();
+		logger.info("Modbus slave emulator listening in port " + server.getLocalPort());
+	}
+
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * Returns the number of requests answered.
+	 */
+	public long getRequests() {
+		return requests.get();
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				final Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				clients.add(socket);
+				Thread t = new Thread(new Runnable() {
+					public void run() {
+						serve(socket);
+					}
+				}, "ModbusSlaveEmulatorClient");
+				t.setDaemon(true);
+				t.start();
+			} catch (IOException e) {
+				if (running) {
+					logger.error("Error accepting a modbus connection: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		try {
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			while (running) {
+				// MBAP header
+				int transactionId = in.readUnsignedShort();
+				int protocolId = in.readUnsignedShort();
+				int length = in.readUnsignedShort();
+				int unitId = in.readUnsignedByte();
+				byte[] pdu = new byte[Math.max(0, length - 1)];
+				in.readFully(pdu);
+
+				byte[] response = answer(unitId, pdu);
+				out.writeShort(transactionId);
+				out.writeShort(protocolId);
+				out.writeShort(response.length + 1);
+				out.writeByte(unitId);
+				out.write(response);
+				out.flush();
+				requests.incrementAndGet();
+			}
+		} catch (EOFException e) {
+			// the master closed the connection.
+		} catch (IOException e) {
+			if (running) {
+				logger.debug("Modbus connection closed: " + e.getMessage());
+			}
+		} finally {
+			clients.remove(socket);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// nothing to do.
+			}
+		}
+	}
+
+	/**
+	 * Builds the response PDU of a request.
+	 * @param unitId	unit identifier of the request.
+	 * @param pdu		request PDU: function, address and count.
+	 * @return the response PDU.
+	 */
+	byte[] answer(int unitId, byte[] pdu) {
+		if (pdu.length < 5) {
+			return exception((pdu.length > 0) ? pdu[0] & 0xFF : 0, ILLEGAL_DATA_VALUE);
+		}
+		int function = pdu[0] & 0xFF;
+		int address = ((pdu[1] & 0xFF) << 8) | (pdu[2] & 0xFF);
+		int count = ((pdu[3] & 0xFF) << 8) | (pdu[4] & 0xFF);
+
+		boolean bits = (function == 0x01) || (function == 0x02);
+		boolean registers = (function == 0x03) || (function == 0x04);
+		if (!bits && !registers) {
+			return exception(function, ILLEGAL_FUNCTION);
+		}
+		if (count < 1 || count > (bits ? MAX_BITS : MAX_REGISTERS)) {
+			return exception(function, ILLEGAL_DATA_VALUE);
+		}
+
+		int first;
+		int last;
+		if (unitId == 0 || unitId == 255) {
+			first = 0;
+			last = machines.length * signals;
+		} else if (unitId <= machines.length) {
+			first = (unitId - 1) * signals;
+			last = first + signals;
+		} else {
+			return exception(function, TARGET_FAILED);
+		}
+		if (first + address + count > last) {
+			return exception(function, ILLEGAL_DATA_ADDRESS);
+		}
+
+		if (bits) {
+			byte[] response = new byte[2 + ((count + 7) / 8)];
+			response[0] = (byte) function;
+			response[1] = (byte) (response.length - 2);
+			for (int i = 0; i < count; i++) {
+				int index = first + address + i;
+				if (machines[index / signals].getPulse(index % signals)) {
+					response[2 + (i / 8)] |= (byte) (1 << (i % 8));
+				}
+			}
+			return response;
+		} else {
+			byte[] response = new byte[2 + (2 * count)];
+			response[0] = (byte) function;
+			response[1] = (byte) (2 * count);
+			for (int i = 0; i < count; i++) {
+				int index = first + address + i;
+				int value = machines[index / signals].getRegister(index % signals);
+				response[2 + (2 * i)] = (byte) (value >> 8);
+				response[3 + (2 * i)] = (byte) value;
+			}
+			return response;
+		}
+	}
+
+	private static byte[] exception(int function, int code) {
+		return new byte[] {(byte) (function | 0x80), (byte) code};
+	}
+
+	/**
+	 * Stops listening and closes the connections of the masters.
+	 */
+	public void close() {
+		running = false;
+		try {
+			server.close();
+			for (Socket socket : clients) {
+				socket.close();
+			}
+		} catch (IOException e) {
+			logger.error("Error closing the modbus slave emulator: " + e.getMessage());
+		}
+	}
+}
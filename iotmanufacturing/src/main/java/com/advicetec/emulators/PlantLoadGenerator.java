@@ -0,0 +1,516 @@
+package com.advicetec.emulators;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import com.advicetec.configuration.SystemConstants;
+import com.advicetec.core.Configurable;
+
+/**
+ * Synthetic plant used to measure the capacity of the server before it is installed in a new plant.
+ * This generator is configurable from the properties file "PlantLoadGenerator.properties", and every
+ * property can be replaced in the command line as <code>name=value</code>.
+ * <p>
+ * It simulates <code>Machines</code> machines with <code>Signals</code> signals each. Every signal
+ * publishes <code>Rate</code> samples per second in the topic <code>TopicPrefix/device/port</code>,
+ * with the payload <code>topic|datetime|value</code> read by <code>Mqtt2UnifiedMessage</code> and the
+ * <code>MqttDigital</code> translator. The device identifier and the port label are given by the
+ * <code>DeviceIdFormat</code> and <code>PortLabelFormat</code> formats, applied to the number of the
+ * machine and of the signal starting in 1, so they have to match the devices configured in the server.
+ * Every time a machine is sampled it changes its state with probability <code>StateChangeProbability</code>,
+ * and with probability <code>BurstProbability</code> it publishes <code>BurstSize</code> extra samples,
+ * as a device sending its backlog after a disconnection. When <code>ModbusPort</code> is not 0 the
+ * generator is also a modbus TCP slave that answers the reads of the server with the signals of the
+ * machines.
+ * <p>
+ * The latency and the throughput are read from the metrics of the server in <code>MetricsUrl</code>:
+ * the <code>iot_ingest_to_facade_seconds</code> histogram measures the time from the read of a sample
+ * in the adapter until its values are stored in the facade, and <code>iot_samples_stored_total</code>
+ * counts the samples stored. In the <code>constant</code> mode the generator publishes for
+ * <code>Duration</code> seconds and reports the latency. In the <code>ramp</code> mode it multiplies
+ * the rate by <code>RampFactor</code> every <code>StepDuration</code> seconds, while the step is
+ * sustained: the server stores at least <code>MinStoredRatio</code> of the samples published and the
+ * 99th percentile of the latency is below <code>LatencyTarget</code> milliseconds. The highest rate
+ * sustained is the capacity of the server. The samples of the modbus reads are also counted by the
+ * server, so the modbus slave should not be polled during a ramp.
+ * <p>
+ * The generator does not extend <code>FakeController</code>. The controller is the other end of the
+ * traffic: it subscribes to the broker inside the server and queues the messages straight in the
+ * <code>AdapterManager</code>, so it needs the managers of the server and it ends the process when
+ * its connection is lost. The generator runs in its own process and publishes to the broker, so the
+ * latency measured covers the whole ingest path of the plant, including the broker and the
+ * <code>MqttSubscriber</code>. The controller has no publishing logic to reuse.
+ *
+ * @author advicetec
+ * @see FakeController
+ * @see SimulatedMachine
+ * @see ModbusSlaveEmulator
+ * @see MetricsSnapshot
+ */
+public class PlantLoadGenerator extends Configurable
+{
+	static Logger logger = LogManager.getLogger(PlantLoadGenerator.class.getName());
+
+	public static final String LATENCY = "iot_ingest_to_facade_seconds";
+
+	public static final String STORED = "iot_samples_stored_total";
+
+	/**
+	 * Time between two rounds of samples of a publisher.
+	 */
+	private static final long TICK_MILLIS = 100;
+
+	private String brokerUrl;
+	private String userName;
+	private String password;
+	private String clientId = "PlantLoadGenerator";
+	private int qos = 0;
+	private String topicPrefix = "plant";
+	private String deviceIdFormat = "SIM%04d";
+	private String portLabelFormat = "P%02d";
+	private int machines = 10;
+	private int signals = 4;
+	/**
+	 * Samples per second of every signal.
+	 */
+	private double rate = 1.0;
+	private double stateChangeProbability = 0.01;
+	private double burstProbability = 0.0;
+	private int burstSize = 10;
+	/**
+	 * Number of connections to the broker, the machines are divided among them.
+	 */
+	private int publishers = 1;
+	private int modbusPort = 0;
+	private String metricsUrl = "";
+	private String mode = "constant";
+	/**
+	 * Duration of the constant mode in seconds.
+	 */
+	private int duration = 60;
+	/**
+	 * Duration of every step of the ramp mode in seconds.
+	 */
+	private int stepDuration = 30;
+	private double rampFactor = 1.5;
+	private int maxSteps = 10;
+	/**
+	 * Maximum 99th percentile of the latency of a sustained step in milliseconds.
+	 */
+	private long latencyTarget = 1000;
+	private double minStoredRatio = 0.95;
+
+	private final SimulatedMachine[] plant;
+
+	private final List<Thread> threads = new ArrayList<Thread>();
+
+	private ModbusSlaveEmulator modbusSlave;
+
+	/**
+	 * Samples per second of every signal, changed by the ramp.
+	 */
+	private volatile double currentRate;
+
+	private volatile boolean stopped = false;
+
+	private final AtomicLong published = new AtomicLong();
+
+	private final AtomicLong failures = new AtomicLong();
+
+	private final AtomicLong stateChanges = new AtomicLong();
+
+	/**
+	 * Result of a period of load at a given rate.
+	 */
+	public static class Step
+	{
+		/**
+		 * Samples per second planned for the plant.
+		 */
+		public double planned;
+		/**
+		 * Samples per second published.
+		 */
+		public double published;
+		/**
+		 * Samples per second stored by the server, NaN without metrics.
+		 */
+		public double stored = Double.NaN;
+		/**
+		 * Median and 99th percentile of the latency in milliseconds, NaN without metrics.
+		 */
+		public double p50 = Double.NaN;
+		public double p99 = Double.NaN;
+
+		@Override
+		public String toString() {
+			return String.format("planned %.1f/s published %.1f/s stored %.1f/s latency p50 %.1f ms p99 %.1f ms",
+					planned, published, stored, p50, p99);
+		}
+	}
+
+	/**
+	 * Creates a generator with the parameters read from the properties file.
+	 */
+	public PlantLoadGenerator() {
+		this(new Properties());
+	}
+
+	/**
+	 * Creates a generator with the parameters read from the properties file, replaced by the ones given.
+	 * @param overrides	properties that replace the ones of the file.
+	 */
+	public PlantLoadGenerator(Properties overrides) {
+		super("PlantLoadGenerator");
+		this.properties.putAll(overrides);
+
+		brokerUrl = getProperty("BrokeUrl");
+		userName = getProperty("UserName");
+		password = getProperty("Password");
+		if (getProperty("ClientId") != null)
+			clientId = getProperty("ClientId").trim();
+		if (getProperty("QoS") != null)
+			qos = Integer.valueOf(getProperty("QoS").trim());
+		if (getProperty("TopicPrefix") != null)
+			topicPrefix = getProperty("TopicPrefix").trim();
+		if (getProperty("DeviceIdFormat") != null)
+			deviceIdFormat = getProperty("DeviceIdFormat").trim();
+		if (getProperty("PortLabelFormat") != null)
+			portLabelFormat = getProperty("PortLabelFormat").trim();
+		if (getProperty("Machines") != null)
+			machines = Integer.valueOf(getProperty("Machines").trim());
+		if (getProperty("Signals") != null)
+			signals = Integer.valueOf(getProperty("Signals").trim());
+		if (getProperty("Rate") != null)
+			rate = Double.valueOf(getProperty("Rate").trim());
+		if (getProperty("StateChangeProbability") != null)
+			stateChangeProbability = Double.valueOf(getProperty("StateChangeProbability").trim());
+		if (getProperty("BurstProbability") != null)
+			burstProbability = Double.valueOf(getProperty("BurstProbability").trim());
+		if (getProperty("BurstSize") != null)
+			burstSize = Integer.valueOf(getProperty("BurstSize").trim());
+		if (getProperty("Publishers") != null)
+			publishers = Integer.valueOf(getProperty("Publishers").trim());
+		if (getProperty("ModbusPort") != null)
+			modbusPort = Integer.valueOf(getProperty("ModbusPort").trim());
+		if (getProperty("MetricsUrl") != null)
+			metricsUrl = getProperty("MetricsUrl").trim();
+		if (getProperty("Mode") != null)
+			mode = getProperty("Mode").trim();
+		if (getProperty("Duration") != null)
+			duration = Integer.valueOf(getProperty("Duration").trim());
+		if (getProperty("StepDuration") != null)
+			stepDuration = Integer.valueOf(getProperty("StepDuration").trim());
+		if (getProperty("RampFactor") != null)
+			rampFactor = Double.valueOf(getProperty("RampFactor").trim());
+		if (getProperty("MaxSteps") != null)
+			maxSteps = Integer.valueOf(getProperty("MaxSteps").trim());
+		if (getProperty("LatencyTarget") != null)
+			latencyTarget = Long.valueOf(getProperty("LatencyTarget").trim());
+		if (getProperty("MinStoredRatio") != null)
+			minStoredRatio = Double.valueOf(getProperty("MinStoredRatio").trim());
+
+		plant = createPlant(machines, signals, deviceIdFormat, portLabelFormat);
+		currentRate = rate;
+	}
+
+	/**
+	 * Creates the machines of the plant.
+	 * @param machines			number of machines.
+	 * @param signals			number of signals of every machine.
+	 * @param deviceIdFormat	format of the device identifier, applied to the number of the machine.
+	 * @param portLabelFormat	format of the port label, applied to the number of the signal.
+	 * @return the machines, all running.
+	 */
+	static SimulatedMachine[] createPlant(int machines, int signals, String deviceIdFormat, String portLabelFormat) {
+		SimulatedMachine[] plant = new SimulatedMachine[machines];
+		for (int m = 0; m < machines; m++) {
+			String[] portLabels = new String[signals];
+			for (int s = 0; s < signals; s++) {
+				portLabels[s] = String.format(portLabelFormat, s + 1);
+			}
+			plant[m] = new SimulatedMachine(String.format(deviceIdFormat, m + 1), portLabels);
+		}
+		return plant;
+	}
+
+	/**
+	 * Returns the topic of a signal, in the layout parsed by <code>Mqtt2UnifiedMessage</code>.
+	 * @param machine	simulated machine.
+	 * @param signal	index of the signal.
+	 * @return the topic prefix, the device identifier and the port label.
+	 */
+	String getTopic(SimulatedMachine machine, int signal) {
+		return topicPrefix + SystemConstants.TOPIC_SEP + machine.getDeviceId()
+				+ SystemConstants.TOPIC_SEP + machine.getPortLabel(signal);
+	}
+
+	/**
+	 * Returns the payload of a sample, in the layout read by the <code>MqttDigital</code> translator.
+	 * @param topic		topic of the signal.
+	 * @param datetime	time of the sample.
+	 * @param value		value of the sample.
+	 * @return the topic, the datetime and the value separated by |.
+	 */
+	static String getPayload(String topic, String datetime, double value) {
+		return topic + "|" + datetime + "|" + value;
+	}
+
+	/**
+	 * Starts the modbus slave and the publishers, and applies the load of the configured mode.
+	 * @return the results of the steps.
+	 * @throws IOException if the modbus slave cannot be started.
+	 * @throws InterruptedException if the thread is interrupted.
+	 */
+	public List<Step> run() throws IOException, InterruptedException {
+		if (modbusPort > 0) {
+			modbusSlave = new ModbusSlaveEmulator(plant, (InetAddress) null, modbusPort);
+		}
+
+		int connections = Math.max(1, Math.min(publishers, plant.length));
+		for (int i = 0; i < connections; i++) {
+			List<SimulatedMachine> slice = new ArrayList<SimulatedMachine>();
+			for (int m = i; m < plant.length; m += connections) {
+				slice.add(plant[m]);
+			}
+			final String id = (connections > 1) ? clientId + "-" + i : clientId;
+			final SimulatedMachine[] assigned = slice.toArray(new SimulatedMachine[slice.size()]);
+			Thread t = new Thread(new Runnable() {
+				public void run() {
+					publish(id, assigned);
+				}
+			}, "PlantPublisher-" + i);
+			t.setDaemon(true);
+			threads.add(t);
+		}
+		for (Thread t : threads) {
+			t.start();
+		}
+
+		List<Step> steps = new ArrayList<Step>();
+		try {
+			if ("ramp".equals(mode)) {
+				double stepRate = rate;
+				for (int i = 0; i < maxSteps; i++) {
+					Step step = measure(stepRate, stepDuration);
+					steps.add(step);
+					logger.info("Step " + (i + 1) + ": " + step);
+					if (!isSustained(step)) {
+						break;
+					}
+					stepRate = stepRate * rampFactor;
+				}
+			} else {
+				Step step = measure(rate, duration);
+				steps.add(step);
+				logger.info("Constant load: " + step);
+			}
+		} finally {
+			close();
+		}
+		return steps;
+	}
+
+	/**
+	 * Publishes the samples of the given machines at the current rate.
+	 * @param id		client identifier of the connection.
+	 * @param assigned	machines published by this connection.
+	 */
+	private void publish(String id, SimulatedMachine[] assigned) {
+		MqttClient client;
+		try {
+			client = new MqttClient(brokerUrl, id, new MemoryPersistence());
+			MqttConnectOptions conOpt = new MqttConnectOptions();
+			conOpt.setCleanSession(true);
+			if (userName != null && !userName.trim().isEmpty()) {
+				conOpt.setUserName(userName.trim());
+				conOpt.setPassword((password == null) ? new char[0] : password.trim().toCharArray());
+			}
+			client.connect(conOpt);
+		} catch (MqttException e) {
+			logger.error("The publisher " + id + " cannot connect to " + brokerUrl + ": " + e.getMessage());
+			return;
+		}
+
+		Random random = ThreadLocalRandom.current();
+		DateTimeFormatter format = DateTimeFormatter.ofPattern(SystemConstants.DATETIME_FORMAT);
+		double[] budget = new double[assigned.length];
+		int[] nextSignal = new int[assigned.length];
+		long next = System.nanoTime();
+		while (!stopped) {
+			String datetime = LocalDateTime.now().format(format);
+			double due = currentRate * signals * TICK_MILLIS / 1000.0;
+			for (int m = 0; m < assigned.length; m++) {
+				SimulatedMachine machine = assigned[m];
+				if (machine.changeState(random, stateChangeProbability)) {
+					stateChanges.incrementAndGet();
+				}
+				budget[m] += due;
+				int samples = (int) budget[m];
+				budget[m] -= samples;
+				if (burstProbability > 0 && random.nextDouble() < burstProbability) {
+					samples += burstSize;
+				}
+				for (int i = 0; i < samples; i++) {
+					int signal = nextSignal[m];
+					nextSignal[m] = (signal + 1) % machine.getSignals();
+					String topic = getTopic(machine, signal);
+					try {
+						client.publish(topic, getPayload(topic, datetime, machine.sample(signal)).getBytes(), qos, false);
+						published.incrementAndGet();
+					} catch (MqttException e) {
+						failures.incrementAndGet();
+						logger.debug("Error publishing in " + topic + ": " + e.getMessage());
+					}
+				}
+			}
+			next += TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+			long wait = next - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			} else {
+				// the publisher is behind, the lost ticks are not recovered.
+				next = System.nanoTime();
+			}
+		}
+
+		try {
+			client.disconnect();
+			client.close();
+		} catch (MqttException e) {
+			logger.error("Error closing the publisher " + id + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Applies the load at the given rate and measures it.
+	 * @param stepRate	samples per second of every signal.
+	 * @param seconds	duration of the load.
+	 * @return the rates and latency measured.
+	 * @throws InterruptedException if the thread is interrupted.
+	 */
+	Step measure(double stepRate, int seconds) throws InterruptedException {
+		currentRate = stepRate;
+		Step step = new Step();
+		step.planned = stepRate * signals * plant.length;
+
+		MetricsSnapshot before = scrape();
+		long publishedBefore = published.get();
+		long start = System.nanoTime();
+		Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+		MetricsSnapshot after = scrape();
+		double elapsed = (System.nanoTime() - start) / 1e9;
+
+		step.published = (published.get() - publishedBefore) / elapsed;
+		if (before != null && after != null) {
+			step.stored = after.rate(before, STORED);
+			step.p50 = after.quantile(before, LATENCY, 0.50) * 1000;
+			step.p99 = after.quantile(before, LATENCY, 0.99) * 1000;
+		}
+		return step;
+	}
+
+	/**
+	 * Returns true if the server sustained the load of a step: it stored the samples published and
+	 * the latency is below the target.
+	 * @param step	result of the step.
+	 */
+	boolean isSustained(Step step) {
+		if (Double.isNaN(step.stored) || Double.isNaN(step.p99)) {
+			return false;
+		}
+		return (step.stored >= minStoredRatio * step.published) && (step.p99 <= latencyTarget);
+	}
+
+	private MetricsSnapshot scrape() {
+		if (metricsUrl.isEmpty()) {
+			return null;
+		}
+		try {
+			return MetricsSnapshot.scrape(metricsUrl);
+		} catch (IOException e) {
+			logger.error("The metrics cannot be read from " + metricsUrl + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Stops the publishers and the modbus slave.
+	 */
+	public void close() throws InterruptedException {
+		stopped = true;
+		for (Thread t : threads) {
+			t.join(TimeUnit.SECONDS.toMillis(5));
+		}
+		if (modbusSlave != null) {
+			modbusSlave.close();
+		}
+	}
+
+	public long getPublished() {
+		return published.get();
+	}
+
+	public long getFailures() {
+		return failures.get();
+	}
+
+	public long getStateChanges() {
+		return stateChanges.get();
+	}
+
+	/**
+	 * Returns the highest rate of the sustained steps, or 0 if no step was sustained.
+	 * @param steps	results of the steps.
+	 * @return samples per second published in the highest sustained step.
+	 */
+	public double getMaximumSustained(List<Step> steps) {
+		double maximum = 0;
+		for (Step step : steps) {
+			if (isSustained(step)) {
+				maximum = Math.max(maximum, step.published);
+			}
+		}
+		return maximum;
+	}
+
+	/**
+	 * Runs the generator, the arguments are properties in the form <code>name=value</code> that replace
+	 * the ones of the file.
+	 */
+	public static void main(String[] args) throws Exception {
+		Properties overrides = new Properties();
+		for (String arg : args) {
+			int equals = arg.indexOf('=');
+			if (equals > 0) {
+				overrides.setProperty(arg.substring(0, equals), arg.substring(equals + 1));
+			}
+		}
+		PlantLoadGenerator generator = new PlantLoadGenerator(overrides);
+		List<Step> steps = generator.run();
+		for (int i = 0; i < steps.size(); i++) {
+			System.out.println("Step " + (i + 1) + ": " + steps.get(i)
+					+ (generator.isSustained(steps.get(i)) ? " sustained" : " not sustained"));
+		}
+		System.out.println("Samples published: " + generator.getPublished() + " failed: " + generator.getFailures()
+				+ " state changes: " + generator.getStateChanges());
+		System.out.println(String.format("Maximum sustainable samples per second: %.1f", generator.getMaximumSustained(steps)));
+	}
+}
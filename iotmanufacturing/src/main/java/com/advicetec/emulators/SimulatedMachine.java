@@ -0,0 +1,122 @@
+package com.advicetec.emulators;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Machine of the synthetic plant, with a number of signals.
+ * <p>
+ * The machine is running or stopped, and changes its state with a given probability every time it
+ * is sampled. While it runs, every signal gives a production pulse every other sample and counts
+ * the cycles in its register; while it is stopped the signals are off and the registers keep their
+ * values. The registers and the pulses are also read by the modbus slave emulator, so they are kept
+ * in atomic arrays.
+ *
+ * @author advicetec
+ * @see PlantLoadGenerator
+ * @see ModbusSlaveEmulator
+ */
+public class SimulatedMachine
+{
+	/**
+	 * Value published for a pulse, above the threshold of the <code>MqttDigital</code> translator.
+	 */
+	public static final double PULSE_ON = 10.0;
+
+	public static final double PULSE_OFF = 0.0;
+
+	private final String deviceId;
+
+	private final String[] portLabels;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Cycles counted by every signal, 16 bits as a modbus register.
+	 */
+	private final AtomicIntegerArray registers;
+
+	/**
+	 * Current pulse of every signal, 1 for on.
+	 */
+	private final AtomicIntegerArray pulses;
+
+	/**
+	 * Creates a running machine.
+	 * @param deviceId		identifier of the monitoring device of the machine.
+	 * @param portLabels	label of the port of every signal.
+	 */
+	public SimulatedMachine(String deviceId, String[] portLabels) {
+		this.deviceId = deviceId;
+		this.portLabels = portLabels;
+		this.registers = new AtomicIntegerArray(portLabels.length);
+		this.pulses = new AtomicIntegerArray(portLabels.length);
+	}
+
+	public String getDeviceId() {
+		return deviceId;
+	}
+
+	public int getSignals() {
+		return portLabels.length;
+	}
+
+	public String getPortLabel(int signal) {
+		return portLabels[signal];
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Changes the state of the machine with the given probability.
+	 * @param random				source of random numbers of the caller thread.
+	 * @param changeProbability		probability of a change of state.
+	 * @return true if the state changed.
+	 */
+	public boolean changeState(Random random, double changeProbability) {
+		if (random.nextDouble() < changeProbability) {
+			running = !running;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Takes the next sample of a signal.
+	 * @param signal	index of the signal.
+	 * @return the value of the signal, <code>PULSE_ON</code> or <code>PULSE_OFF</code>.
+	 */
+	public double sample(int signal) {
+		if (!running) {
+			pulses.set(signal, 0);
+			return PULSE_OFF;
+		}
+		int pulse = 1 - pulses.get(signal);
+		pulses.set(signal, pulse);
+		if (pulse == 1) {
+			registers.set(signal, (registers.get(signal) + 1) & 0xFFFF);
+			return PULSE_ON;
+		}
+		return PULSE_OFF;
+	}
+
+	/**
+	 * Returns the cycles counted by a signal.
+	 * @param signal	index of the signal.
+	 * @return the value of the register of the signal.
+	 */
+	public int getRegister(int signal) {
+		return registers.get(signal);
+	}
+
+	/**
+	 * Returns the current pulse of a signal.
+	 * @param signal	index of the signal.
+	 * @return true if the pulse is on.
+	 */
+	public boolean getPulse(int signal) {
+		return pulses.get(signal) == 1;
+	}
+}
@@ -11,6 +11,7 @@ import org.apache.logging.log4j.Logger;
 
 import com.advicetec.MessageProcessor.DelayEvent;
 import com.advicetec.MessageProcessor.MessageManager;
+import com.advicetec.core.Processor;
 import com.advicetec.mpmcqueue.PriorityQueue;
 import com.advicetec.mpmcqueue.QueueType;
 import com.advicetec.mpmcqueue.Queueable;
@@ -128,7 +129,12 @@ public class EventHandler implements Runnable
 	
 	public void runModbusReadEvent(ModBusTcpEvent modbusEvt) throws SQLException, InterruptedException {
 		
-		ModBusTcpProcessor processor = new ModBusTcpProcessor(modbusEvt);
+		Processor processor = null;
+		if (modbusEvt.getType() == ModBusTcpEventType.READ_BATCH) {
+			processor = new ModBusTcpBatchProcessor((ModBusTcpBatchReadEvent) modbusEvt);
+		} else {
+			processor = new ModBusTcpProcessor(modbusEvt);
+		}
 		logger.debug("processing modbus event");
 		logger.debug("Initial Num delayed enqueued elements is:" + this.delayQueue.size());
 		List<DelayEvent> eventsToCreate = processor.process();
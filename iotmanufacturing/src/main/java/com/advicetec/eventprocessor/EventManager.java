@@ -1,22 +1,17 @@
 package com.advicetec.eventprocessor;
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.time.LocalDateTime;
-import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Stack;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.DelayQueue;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.advicetec.MessageProcessor.DelayEvent;
 import com.advicetec.MessageProcessor.DelayQueueConsumer;
+import com.advicetec.MessageProcessor.TimingWheel;
 import com.advicetec.configuration.ConfigurationManager;
 import com.advicetec.core.Manager;
 import com.advicetec.measuredentitity.MeasuredEntityType;
@@ -48,7 +43,7 @@ public class EventManager extends Manager
 	/**
 	 * This is the reference to the queue of events to be processed.
 	 */
-	private BlockingQueue<DelayEvent> delayedQueue = null;
+	private TimingWheel delayedQueue = null;
 	
 	
 	/**
@@ -58,21 +53,34 @@ public class EventManager extends Manager
 	
 	
 	/**
-	 * This the is the time in seconds that is used to renew modbus connections. If the connection is open for more than timeOut seconds
-	 * then the connection is closed and open again.
+	 * This the is the time in milliseconds that the modbus connections wait for the slave response.
 	 */
 	private int timeOut = 0; 
 	
-	
 	/**
-	 * This hashmap contains the available connections for the duple (ipadress,key) in the key of the hashmap. 
+	 * Time in seconds that an open modbus connection can be unused before being closed.
 	 */
-	private Map<String, Stack<Map.Entry<LocalDateTime,TCPMasterConnection>> > availableConnections = null;
-	
+	private int maxIdleTime = 60;
+
+	/**
+	 * Time in seconds after which a modbus connection is closed and open again.
+	 */
+	private int maxAge = 600;
+
+	/**
+	 * Pool of the modbus connections open with the slaves.
+	 */
+	private ModbusConnectionPool modbusConnections = null;
+
+	/**
+	 * Establishes whether the ports of a modbus slave with the same refresh time are read in a single poll cycle.
+	 */
+	private boolean modbusBatchReads = false;
+
 	/**
-	 * This hashmap contains the used connections for the duple (ipadress, key) in the key of the hashmap.
+	 * Maximum number of registers not requested by any port that can be read to merge two port ranges in a request.
 	 */
-	private Map<String, Stack<Map.Entry<LocalDateTime,TCPMasterConnection>>> usedConnections = null;
+	private int modbusBatchMaxGap = 0;
 	
 	/**
 	 * This map maintains the number of current handlers being executed by type of Event
@@ -107,16 +115,35 @@ public class EventManager extends Manager
 	 * 		MaxModbusConnections : Maximum number of connections that can be open at the same time. 
 	 * 							   If all the modbus slaves are in a different (ip_address, port) then put the number of ports as the value.
 	 * 
-	 *      timeOut: timeout to refresh a modbus connection. 
+	 *      timeOut: timeout in milliseconds to wait for the modbus slave response. 
+	 *      ModbusConnectionMaxIdle: seconds that a modbus connection can be unused before being closed.
+	 *      ModbusConnectionMaxAge: seconds after which a modbus connection is renewed.
+	 *      ModbusBatchReads: true to read the ports of a modbus slave with the same refresh time in a single poll cycle.
+	 *      ModbusBatchMaxGap: number of registers not requested that can be read to merge two port ranges.
+	 *      TimerTick: milliseconds of a tick of the timing wheel that keeps the delayed events.
+	 *      TimerPhaseSpreading: true to spread the repeated events with the same period over the period.
 	 */
 	private EventManager() 
 	{
 		
 		super("EventManager");	
+		getQueue().instrument("EventManager");
 
 		logger.debug("Constructor Event Manager");
 
-		this.delayedQueue = new DelayQueue<DelayEvent>();
+		long timerTick = TimingWheel.DEFAULT_TICK;
+		String strTimerTick = getProperty("TimerTick");
+		if (strTimerTick != null){
+			timerTick = Long.parseLong(strTimerTick.replaceAll("\\s",""));
+		}
+
+		boolean phaseSpreading = true;
+		String strPhaseSpreading = getProperty("TimerPhaseSpreading");
+		if (strPhaseSpreading != null){
+			phaseSpreading = Boolean.parseBoolean(strPhaseSpreading.replaceAll("\\s",""));
+		}
+
+		this.delayedQueue = new TimingWheel(timerTick, phaseSpreading);
 
 		
 		String numProcessHandlers = getProperty("NumProcessHandlers");
@@ -131,12 +158,6 @@ public class EventManager extends Manager
 			}
 		}
 		
-		// This list contains the connections available to be used by any handler.
-		this.availableConnections = new HashMap<String, Stack<Map.Entry<LocalDateTime,TCPMasterConnection>>>();
-		
-		// This list contains the connections being used by some handler
-		this.usedConnections = new HashMap<String, Stack<Map.Entry<LocalDateTime,TCPMasterConnection>>>();
-		
 		// Maximum number of modbus connections.
 		String strMaxModbusConnections = getProperty("MaxModbusConnections");
 		if (strMaxModbusConnections != null){
@@ -158,6 +179,29 @@ public class EventManager extends Manager
 
 		logger.debug("timeout given:" + String.valueOf(timeOut));
 
+		String strMaxIdle = getProperty("ModbusConnectionMaxIdle");
+		if (strMaxIdle != null){
+			maxIdleTime = Integer.valueOf(strMaxIdle.replaceAll("\\s",""));
+		}
+
+		String strMaxAge = getProperty("ModbusConnectionMaxAge");
+		if (strMaxAge != null){
+			maxAge = Integer.valueOf(strMaxAge.replaceAll("\\s",""));
+		}
+
+		String strBatchReads = getProperty("ModbusBatchReads");
+		if (strBatchReads != null){
+			modbusBatchReads = Boolean.parseBoolean(strBatchReads.replaceAll("\\s",""));
+		}
+
+		String strBatchMaxGap = getProperty("ModbusBatchMaxGap");
+		if (strBatchMaxGap != null){
+			modbusBatchMaxGap = Integer.valueOf(strBatchMaxGap.replaceAll("\\s",""));
+		}
+
+		this.modbusConnections = new ModbusConnectionPool(maxModbusConnections, timeOut, 
+											maxIdleTime * 1000L, maxAge * 1000L);
+
 		// Reads the maximum handlers by type of event.
 		this.maximimActiveHandlers = new HashMap<EventType, Integer>();		
 		for (Entry<Integer, EventType> eventType : EventType.getList()) { 
@@ -194,133 +238,29 @@ public class EventManager extends Manager
 		Thread delayConsumer = new Thread(new DelayQueueConsumer("EventConsumer", this.delayedQueue));
 		delayConsumer.start();
 
+		// Closes the modbus connections that are not used anymore.
+		this.modbusConnections.startEviction();
+
 		logger.debug("Ending Event Manager run");
 	}	
 
-	/**
-	 * This method verifies that connections are not too old, in case of timeout then it refreshes the connection. 
-	 * @param con. Connection to verify 
-	 * @return an updated connection. 
-	 * @throws Exception This exception is triggered when the connection can not be establised.
-	 */
-	private LocalDateTime getActiveModbusConnection(Map.Entry<LocalDateTime,TCPMasterConnection> con) throws Exception
-	{
-		
-		logger.debug("in getActiveModbusConnection");
-		
-		LocalDateTime start = con.getKey();
-		if (start.plusNanos(con.getValue().getTimeout()* 1000000).isBefore(LocalDateTime.now())){
-			logger.debug("Reconnecting to modbus slave");
-			con.getValue().close();
-			con.getValue().connect();
-			return LocalDateTime.now();
-		} else {
-			return con.getKey();
-		}
-	}
-	
 	/**
 	 * Get a connection from the pool of active modbus connections. 
-	 * In case that maxmodbus connection has been reached, it returns null.  
+	 * In case that maxmodbus connection has been reached or the slave can not be reached, it returns null.  
 	 * Works for ipv4
 	 * 
 	 * @param ipAddress Ipv4 address of the modbus slave
 	 * @param port : port where the slave is listening to.
 	 * @return  a modbus TCP connection 
-	 * @throws UnknownHostException. The slave can not be reached through the network.
 	 */
-	public synchronized TCPMasterConnection getModbusConnection(String ipAddress, int port) throws UnknownHostException
+	public TCPMasterConnection getModbusConnection(String ipAddress, int port)
 	{
 		logger.debug("in getModbusConnection  address: " + ipAddress + " port: " + port  );
 		
-		String key = ipAddress + ":" + Integer.toString(port);
-		
-		int usedCon = 0;
-		int avilCon = 0;
-		if (this.availableConnections.get(key) != null)
-			avilCon = this.availableConnections.get(key).size();
-			
-		
-		if (this.usedConnections.get(key) != null)
-			usedCon = this.usedConnections.get(key).size();
-		
-		if (usedCon + avilCon <= maxModbusConnections){
-			if (avilCon > 0)
-			{
-				
-				logger.debug("There are avail connections - availCon: " + avilCon + " usedConnection: " + String.valueOf((usedCon)));
-				
-				// Remove the connection from available connections
-				Map.Entry<LocalDateTime,TCPMasterConnection> ret = availableConnections.get(key).pop();
-				
-				try{
-					// Update the connection (reconnect or maintain the connection).
-					LocalDateTime start = getActiveModbusConnection(ret);
-					
-					logger.debug("The available connection stated at:" + start.toString() );
-					
-					// Create the entry.
-					Map.Entry<LocalDateTime,TCPMasterConnection> newEntry = new AbstractMap.SimpleEntry<LocalDateTime,TCPMasterConnection>(start, ret.getValue()); 
-					
-					// Verifies that there exists a node for the ip_address, port
-					if (!(this.usedConnections.containsKey(key))){
-						Stack<Map.Entry<LocalDateTime,TCPMasterConnection>> list = new Stack<Map.Entry<LocalDateTime,TCPMasterConnection>>();
-						this.usedConnections.put(key, list);
-					}
-	
-					// Insert the connection into the used connections.
-					this.usedConnections.get(key).push(newEntry);
-										
-					// return the connection.
-					return newEntry.getValue();
-
-				} catch (Exception e) {
-					logger.error("could not connect with the modbus slave with ipaddress" + ipAddress + " port:" + Integer.toString(port), " Message:" + e.getMessage());
-					return null;
-				}
-				
-			} else {
-				
-				logger.debug("There are not avail connections - availCon: " + avilCon);
-				
-				// Create a new connection and return it.
-	    		TCPMasterConnection con = null; //the connection
-	    		
-	    		// Create the address object from the string.
-	    		InetAddress addr =  InetAddress.getByName(ipAddress); //the slave's address
-	    		try {
-	    			
-	    			logger.debug("Ipaddress: " + addr.toString());
-	    			
-	    			// Creates the connection to modbus slave.
-		    		con = new TCPMasterConnection(addr);
-		    		con.setPort(port);
-		    		con.setTimeout(this.timeOut);
-					con.connect();
-					
-					Map.Entry<LocalDateTime,TCPMasterConnection> newEntry = new AbstractMap.SimpleEntry<LocalDateTime,TCPMasterConnection>(LocalDateTime.now(), con);
-					
-					if (!(this.usedConnections.containsKey(key))){
-						Stack<Map.Entry<LocalDateTime,TCPMasterConnection>> list = new Stack<Map.Entry<LocalDateTime,TCPMasterConnection>>();
-						this.usedConnections.put(key, list);
-					}
-
-					// Insert the connection into the used connections.
-					this.usedConnections.get(key).push(newEntry);
-					
-					logger.debug("connection established");
-					
-					return newEntry.getValue();
-					
-				} catch (Exception e) {
-					logger.error("could not to connect with the modbus slave with ipaddress" + ipAddress + " port:" + Integer.toString(port));
-					// e.printStackTrace();
-					return null;
-				}
-				
-			}
-		} else {
-			logger.debug("max modbusconnections: " + maxModbusConnections);
+		try {
+			return this.modbusConnections.getConnection(ipAddress, port);
+		} catch (Exception e) {
+			logger.error("could not connect with the modbus slave with ipaddress" + ipAddress + " port:" + Integer.toString(port) + " Message:" + e.getMessage());
 			return null;
 		}
 	}
@@ -342,30 +282,9 @@ public class EventManager extends Manager
 	 */
 	public synchronized boolean removeEntityEvents(Integer measuredId, MeasuredEntityType type) {
 		
-		// List with the list of current events.
-		List<DelayEvent> currentEvents = new ArrayList<DelayEvent>();
-		
-		// This will be the list of elements to delete from current events.
-		List<DelayEvent> removeEvents = new ArrayList<DelayEvent>();
-		
-		this.delayedQueue.drainTo(currentEvents);
-		
-		Iterator<DelayEvent> itr= currentEvents.iterator();
-		while(itr.hasNext()){
-			DelayEvent dt= (DelayEvent) itr.next();
-			if ((dt.getEvent().getEntity().equals(measuredId)) 
-					&& (dt.getEvent().getOwnerType().equals(type))){
-				
-				removeEvents.add(dt);
-			}
-		}
-		
-		for (DelayEvent event : removeEvents){
-			currentEvents.remove(event);
-		}
-		
-		// The list of events after being eliminated are added again to the list of delayed events.
-		this.delayedQueue.addAll(currentEvents);
+		// The keys of the entity are cancelled in place, the rest of the events keep their schedule.
+		int keys = this.delayedQueue.cancelEntity(measuredId, type);
+		logger.debug("Cancelled " + keys + " event keys of the entity:" + measuredId);
 		
 		return true;
 	}
@@ -375,44 +294,40 @@ public class EventManager extends Manager
      * @param ipAddress ip address modbus slave
      * @param port      slave's port
      * @param con       connection being released.
-     * @throws Exception
+     * @throws Exception The connection was not taken from the pool.
      */
-    public synchronized void releaseModbusConnection(String ipAddress, int port, TCPMasterConnection con) throws Exception
+    public void releaseModbusConnection(String ipAddress, int port, TCPMasterConnection con) throws Exception
     {
-    	
-    	String key = ipAddress + ":" + Integer.toString(port);
-    	
-    	if (this.usedConnections.containsKey(key))
-    	{
-    		boolean found= false;
-    		Stack<Map.Entry<LocalDateTime,TCPMasterConnection>> list = this.usedConnections.get(key);
-    		for (int index=0; index < list.size(); index++){
-    			if (con.equals(list.get(index).getValue())){
-    				Map.Entry<LocalDateTime,TCPMasterConnection> entryCon = list.get(index);
-    				list.remove(index);
-
-					if (!(this.availableConnections.containsKey(key))){
-						Stack<Map.Entry<LocalDateTime,TCPMasterConnection>> listInsert = new Stack<Map.Entry<LocalDateTime,TCPMasterConnection>>();
-						this.availableConnections.put(key, listInsert);
-					}
-					
-					// Insert the connection into the available connections.
-					this.availableConnections.get(key).push(entryCon);
-					
-					// The connection was found
-					found= true;
-					break;
-    			}
-    		}
-    		
-    		if (found == false){
-    			logger.error("The connection for Ip Address was not found in Connection Container" + key);
-    			throw new Exception("The connection for Ip Address was not found in Connection Container" + key);
-    		}
-    	} else {
-    		logger.error("Ip Address Not found In Connection Container:" + key);
-    		throw new Exception("Ip Address Not found In Connection Container:" + key);
+    	this.modbusConnections.releaseConnection(con);
+    }
+
+    /**
+     * This method let a TCP modbus event process to inform that a connection failed, so it is closed 
+     * and not given to another handler.
+     * @param ipAddress ip address modbus slave
+     * @param port      slave's port
+     * @param con       connection that failed.
+     */
+    public void invalidateModbusConnection(String ipAddress, int port, TCPMasterConnection con)
+    {
+    	logger.debug("invalidating modbus connection address: " + ipAddress + " port: " + port);
+    	this.modbusConnections.invalidateConnection(con);
+    }
+
+    /**
+     * Groups the modbus read events of the input output ports according to the scheduling mode configured. 
+     * When batch reads are enabled, the ports of the same modbus slave with the same refresh time are 
+     * read by a single batch event, otherwise the events are returned without changes.
+     * 
+     * @param events  modbus events created for the input output ports.
+     * @return modbus events to schedule.
+     */
+    public List<ModBusTcpEvent> groupModbusEvents(List<ModBusTcpEvent> events)
+    {
+    	if (!this.modbusBatchReads) {
+    		return events;
     	}
+    	return ModBusTcpBatchReadEvent.group(events, this.modbusBatchMaxGap);
     }
 
     /**
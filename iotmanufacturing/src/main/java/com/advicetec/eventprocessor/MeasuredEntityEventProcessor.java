@@ -20,12 +20,16 @@ import com.advicetec.language.ast.SyntaxError;
 import com.advicetec.language.ast.TimerSymbol;
 import com.advicetec.language.behavior.BehaviorInterpreterSw;
 import com.advicetec.language.behavior.BehaviorSyntaxChecking;
+import com.advicetec.measuredentitity.BehaviorType;
 import com.advicetec.measuredentitity.ExecutedEntity;
 import com.advicetec.measuredentitity.ExecutedEntityFacade;
 import com.advicetec.measuredentitity.MeasuredEntity;
 import com.advicetec.measuredentitity.MeasuredEntityFacade;
 import com.advicetec.measuredentitity.MeasuredEntityManager;
 import com.advicetec.measuredentitity.MeasuredEntityType;
+import com.advicetec.metrics.Histogram;
+import com.advicetec.metrics.MetricFamily;
+import com.advicetec.metrics.MetricsRegistry;
 import com.advicetec.monitorAdapter.protocolconverter.InterpretedSignal;
 
 /**
@@ -44,6 +48,13 @@ public class MeasuredEntityEventProcessor implements Processor
 {
 
 	static Logger logger = LogManager.getLogger(MeasuredEntityEventProcessor.class.getName());
+
+	/**
+	 * Execution time of the behaviors by measured entity and behavior.
+	 */
+	private static final MetricFamily<Histogram> executionTime = MetricsRegistry.getInstance().latency(
+			"iot_behavior_execution_seconds", "Execution time of the behaviors, by measured entity and behavior.", 
+			"entity", "behavior");
 	
 	/**
 	 * Measured entity event 
@@ -190,9 +201,22 @@ public class MeasuredEntityEventProcessor implements Processor
 	
 	
 	/**
-	 * This method takes the event parameter and process the behavior.
+	 * This method takes the event parameter and process the behavior, its execution time is recorded in
+	 * the metrics registry.
 	 */
 	public List<DelayEvent> process() throws SQLException 
+	{
+		long start = System.nanoTime();
+		try {
+			return processBehavior();
+		} finally {
+			String behavior = (this.event.getBehaviorType() == BehaviorType.STATE_BEHAVIOR) 
+					? this.event.getStateBehaviorType() : this.event.getBehaviorName();
+			executionTime.labels(String.valueOf(this.event.getEntity()), String.valueOf(behavior)).observeSince(start);
+		}
+	}
+
+	private List<DelayEvent> processBehavior() throws SQLException 
 	{
 		
 		Integer measuringEntity = this.event.getEntity();
@@ -0,0 +1,257 @@
+package com.advicetec.eventprocessor;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.advicetec.MessageProcessor.DelayEvent;
+import com.advicetec.core.Processor;
+import com.advicetec.monitorAdapter.AdapterManager;
+import com.advicetec.monitorAdapter.ModbusReading;
+import com.advicetec.mpmcqueue.QueueType;
+import com.advicetec.mpmcqueue.Queueable;
+import com.ghgande.j2mod.modbus.ModbusSlaveException;
+import com.ghgande.j2mod.modbus.io.ModbusTCPTransaction;
+import com.ghgande.j2mod.modbus.msg.ReadInputDiscretesRequest;
+import com.ghgande.j2mod.modbus.msg.ReadInputDiscretesResponse;
+import com.ghgande.j2mod.modbus.msg.ReadInputRegistersRequest;
+import com.ghgande.j2mod.modbus.msg.ReadInputRegistersResponse;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersRequest;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersResponse;
+import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
+
+/**
+ * This class process Modbus Tcp batch read events. It takes a connection with the modbus slave and
+ * executes one request per block through it.
+ *
+ * The response of every block is split by port, and a modbus reading is queued for every port with the
+ * same content that the port read event would have produced, so the adapter handlers do not distinguish
+ * between both modes.
+ *
+ * If the slave answers a block with a modbus exception, the ports of the block are reported with error and
+ * the rest of blocks are read. Any other error leaves the connection in an unknown state, so the remaining
+ * blocks are reported with error and the connection is closed.
+ *
+ * @author Andres Marentes
+ * @see ModBusTcpBatchReadEvent
+ */
+public class ModBusTcpBatchProcessor implements Processor {
+
+	static Logger logger = LogManager.getLogger(ModBusTcpBatchProcessor.class.getName());
+
+	/**
+	 * Modbus batch event to execute.
+	 */
+	ModBusTcpBatchReadEvent event;
+
+	/**
+	 * Constructor for the class. It takes a modbus batch event.
+	 * @param event Modbus batch event to process
+	 */
+	public ModBusTcpBatchProcessor(ModBusTcpBatchReadEvent event) {
+		super();
+		this.event = event;
+	}
+
+	/**
+	 * Method to process the event. To process these events we perform:
+	 *
+	 *  	1. Takes a connection with the modbus slave from the event manager pool
+	 *  	2. For every block creates a request to the modbus slave and builds the messages for its ports
+	 *  	3. gives back the connection to the pool, or closes it if a request failed.
+	 */
+	@Override
+	public List<DelayEvent> process() throws SQLException {
+
+		EventManager eventManager = EventManager.getInstance();
+		List<ModbusReadBlock> blocks = event.getBlocks();
+		TCPMasterConnection con = eventManager.getModbusConnection(event.getIpAddress(), event.getPort());
+
+		if (con == null) {
+			logger.error("No modbus connection available for ipaddress:" + event.getIpAddress() + " port:" + event.getPort());
+			for (ModbusReadBlock block : blocks) {
+				enqueueError(block);
+			}
+			return new ArrayList<DelayEvent>();
+		}
+
+		boolean failed = false;
+		try {
+			for (int i = 0; i < blocks.size(); i++) {
+				ModbusReadBlock block = blocks.get(i);
+				try {
+
+					for (ModbusReading reading : readBlock(con, event.getIpAddress(), event.getPort(), block)) {
+						Queueable obj = new Queueable(QueueType.MODBUS_DEV_MESSAGE, reading);
+						AdapterManager.getInstance().getQueue().enqueue(6, obj);
+					}
+
+				} catch (ModbusSlaveException e) {
+					logger.error("The modbus slave rejected the block UID:" + block.getUid() + " Offset:" + block.getOffset()
+									+ " Count:" + block.getCount() + " Message:" + e.getMessage());
+					enqueueError(block);
+
+				} catch (InterruptedException e) {
+					throw e;
+
+				} catch (Exception e) {
+					logger.error("Error in modbus message - ipaddress:" + event.getIpAddress() + " port:" + event.getPort()
+									+ " Message:" + e.getMessage());
+					failed = true;
+					for (int j = i; j < blocks.size(); j++) {
+						enqueueError(blocks.get(j));
+					}
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.error("An interrupted exceptions was generated");
+			e.printStackTrace();
+
+		} finally {
+			if (failed) {
+				// The state of the socket is unknown, so it is not used again.
+				eventManager.invalidateModbusConnection(event.getIpAddress(), event.getPort(), con);
+			} else {
+				try {
+					eventManager.releaseModbusConnection(event.getIpAddress(), event.getPort(), con);
+				} catch (Exception e) {
+					logger.error("Error releasing modbus connection - Message:" + e.getMessage());
+					con.close();
+				}
+			}
+		}
+
+		return new ArrayList<DelayEvent>();
+	}
+
+	/**
+	 * Reads a block from the modbus slave and splits the response by port.
+	 *
+	 * @param con		connection with the modbus slave.
+	 * @param ipAddress	Ip address of the modbus slave.
+	 * @param port		port of the modbus slave.
+	 * @param block		block to read.
+	 * @return a reading for every port of the block with the same content that the port read event would produce.
+	 * @throws Exception The request could not be executed.
+	 */
+	static List<ModbusReading> readBlock(TCPMasterConnection con, String ipAddress, int port, ModbusReadBlock block) throws Exception {
+
+		List<ModbusReading> ret = new ArrayList<ModbusReading>();
+		ModbusTCPTransaction trans = new ModbusTCPTransaction(con);
+
+		switch (block.getType()) {
+		case READ_DISCRETE:
+			ReadInputDiscretesRequest req = new ReadInputDiscretesRequest(block.getOffset(), block.getCount());
+			req.setUnitID(block.getUid());
+			trans.setRequest(req);
+			ModBusTcpProcessor.execute(trans, ipAddress, port);
+			ReadInputDiscretesResponse res = (ReadInputDiscretesResponse) trans.getResponse();
+
+			for (ModBusTcpEvent evt : block.getEvents()) {
+				int start = ModBusTcpBatchReadEvent.getOffset(evt) - block.getOffset();
+				int count = ModBusTcpBatchReadEvent.getCount(evt);
+				ModbusReading reading = getReading(ipAddress, port, evt);
+				byte byteRes[] = reading.allocate(count);
+				for (int i = 0; i < count; i++){
+					boolean bool = res.getDiscretes().getBit(start + i);
+					byteRes[i] = (byte)(bool?1:0);
+				}
+				ret.add(reading);
+			}
+			break;
+
+		case READ_REGISTER:
+			ReadInputRegistersRequest req2 = new ReadInputRegistersRequest(block.getOffset(), block.getCount());
+			req2.setUnitID(block.getUid());
+			trans.setRequest(req2);
+			ModBusTcpProcessor.execute(trans, ipAddress, port);
+			ReadInputRegistersResponse res2 = (ReadInputRegistersResponse) trans.getResponse();
+			splitRegisters(ipAddress, port, block, res2.getMessage(), ret);
+			break;
+
+		case READ_HOLDING_REGISTER:
+			ReadMultipleRegistersRequest req3 = new ReadMultipleRegistersRequest(block.getOffset(), block.getCount());
+			req3.setUnitID(block.getUid());
+			trans.setRequest(req3);
+			ModBusTcpProcessor.execute(trans, ipAddress, port);
+			ReadMultipleRegistersResponse res3 = (ReadMultipleRegistersResponse) trans.getResponse();
+			splitRegisters(ipAddress, port, block, res3.getMessage(), ret);
+			break;
+
+		default:
+			logger.error("The type of modbus event cannot be read in a block:" + block.getType().getName());
+			break;
+		}
+
+		logger.debug("Block read UID:" + block.getUid() + " Offset:" + block.getOffset() + " Count:" + block.getCount()
+						+ " Ports:" + ret.size());
+		return ret;
+	}
+
+	/**
+	 * Splits a register response by port. The response message has the byte count followed by two bytes per
+	 * register, every port receives the same layout for its registers.
+	 */
+	private static void splitRegisters(String ipAddress, int port, ModbusReadBlock block, byte[] message,
+										List<ModbusReading> ret) {
+
+		for (ModBusTcpEvent evt : block.getEvents()) {
+			int start = ModBusTcpBatchReadEvent.getOffset(evt) - block.getOffset();
+			int nbrBytes = ModBusTcpBatchReadEvent.getCount(evt) * 2;
+			ModbusReading reading = getReading(ipAddress, port, evt);
+			byte [] dataMeasured = reading.allocate(nbrBytes + 1);
+			dataMeasured[0] = (byte) nbrBytes;
+			System.arraycopy(message, 1 + (start * 2), dataMeasured, 1, nbrBytes);
+			ret.add(reading);
+		}
+	}
+
+	/**
+	 * Takes a reading for a port read, the caller writes the bytes read.
+	 */
+	private static ModbusReading getReading(String ipAddress, int port, ModBusTcpEvent evt) {
+
+		return ModbusReading.obtain().set(ipAddress, port, evt.getUid(), ModBusTcpBatchReadEvent.getOffset(evt),
+				ModBusTcpBatchReadEvent.getCount(evt), evt.getType(), evt.getIsConcentrator(), evt.getInputOutputPort());
+	}
+
+	/**
+	 * Queues an error message for every port of the block.
+	 */
+	private void enqueueError(ModbusReadBlock block) {
+
+		ModBusTcpEventType modbusType;
+		switch (block.getType()) {
+			case READ_DISCRETE:
+				modbusType = ModBusTcpEventType.ERROR_READ_DISCRETE;
+				break;
+			case READ_REGISTER:
+				modbusType = ModBusTcpEventType.ERROR_READ_REGISTER;
+				break;
+			case READ_HOLDING_REGISTER:
+				modbusType = ModBusTcpEventType.ERROR_READ_HOLDING;
+				break;
+			default:
+				modbusType = ModBusTcpEventType.INVALID;
+				break;
+		}
+
+		for (ModBusTcpEvent evt : block.getEvents()) {
+			ModbusReading error = ModbusReading.obtain().set(event.getIpAddress(), event.getPort(), evt.getUid(),
+					ModBusTcpBatchReadEvent.getOffset(evt), ModBusTcpBatchReadEvent.getCount(evt), modbusType,
+					evt.getIsConcentrator(), evt.getInputOutputPort());
+
+			Queueable obj = new Queueable(QueueType.MODBUS_ERR_MESSAGE, error);
+			try {
+				AdapterManager.getInstance().getQueue().enqueue(6, obj);
+			} catch (InterruptedException e) {
+				logger.error("An interrupted exceptions was generated");
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package com.advicetec.eventprocessor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the event that reads in one poll cycle all the ports of a modbus monitoring device
+ * having the same refresh time.
+ *
+ * The ports are grouped in blocks of consecutive objects by unit and type of read, so a block is read
+ * with a single request through the same connection, and the response is given to every port as if
+ * it had been read by its own event.
+ *
+ * The event key is built from the ip address, port and refresh time, so the event can be removed from
+ * the delayed queue when the monitoring device changes.
+ *
+ * @author Andres Marentes
+ * @see ModbusReadBlock
+ * @see ModBusTcpBatchProcessor
+ */
+public class ModBusTcpBatchReadEvent extends ModBusTcpEvent
+{
+
+	/**
+	 * Blocks to read in every poll cycle.
+	 */
+	private List<ModbusReadBlock> blocks;
+
+	/**
+	 * Constructor for the class
+	 *
+	 * @param ipAddress		Listening IP address of the modbus slave
+	 * @param port			Listening Port of the modbus slave
+	 * @param blocks		Blocks to read in every poll cycle.
+	 * @param milliseconds	It says the time in milliseconds between event recurrences.
+	 */
+	public ModBusTcpBatchReadEvent(String ipAddress, int port, List<ModbusReadBlock> blocks, long milliseconds) {
+
+		super(EventType.MODBUS_READ_EVENT.getName() + "-batch-" + ipAddress + "-" + Integer.toString(port)
+				+ "-" + Long.toString(milliseconds), ipAddress, port, ModBusTcpEventType.READ_BATCH);
+
+		super.setRepeated(true);
+		super.setMilliseconds(milliseconds);
+
+		this.blocks = blocks;
+	}
+
+	/**
+	 * Gets the blocks to read in every poll cycle.
+	 *
+	 * @return unmodifiable list of blocks.
+	 */
+	public List<ModbusReadBlock> getBlocks() {
+		return Collections.unmodifiableList(blocks);
+	}
+
+	/**
+	 * Groups the port read events given, so the ports of the same modbus slave with the same refresh time
+	 * are read by a single batch event.
+	 *
+	 * Events for concentrators, write events and slaves with only one port read event are returned
+	 * without changes.
+	 *
+	 * @param events  modbus events created for the input output ports.
+	 * @param maxGap  maximum number of objects not requested by any port that can be read between two port ranges.
+	 * @return list of modbus events to schedule.
+	 */
+	public static List<ModBusTcpEvent> group(List<ModBusTcpEvent> events, int maxGap)
+	{
+		List<ModBusTcpEvent> ret = new ArrayList<ModBusTcpEvent>();
+		Map<String, List<ModBusTcpEvent>> candidates = new LinkedHashMap<String, List<ModBusTcpEvent>>();
+
+		for (ModBusTcpEvent evt : events) {
+			if (evt.getIsConcentrator() || (getOffset(evt) < 0)) {
+				ret.add(evt);
+			} else {
+				String key = evt.getIpAddress() + "-" + Integer.toString(evt.getPort()) + "-" + Long.toString(evt.getMilliseconds());
+				List<ModBusTcpEvent> slaveEvents = candidates.get(key);
+				if (slaveEvents == null) {
+					slaveEvents = new ArrayList<ModBusTcpEvent>();
+					candidates.put(key, slaveEvents);
+				}
+				slaveEvents.add(evt);
+			}
+		}
+
+		for (List<ModBusTcpEvent> slaveEvents : candidates.values()) {
+			ModBusTcpEvent first = slaveEvents.get(0);
+			if (slaveEvents.size() == 1) {
+				ret.add(first);
+			} else {
+				logger.debug("Grouping " + slaveEvents.size() + " modbus events for ipaddress:" + first.getIpAddress()
+								+ " port:" + first.getPort());
+				ret.add(new ModBusTcpBatchReadEvent(first.getIpAddress(), first.getPort(),
+													getBlocks(slaveEvents, maxGap), first.getMilliseconds()));
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Builds the blocks to read the port events given. Events are sorted by unit, type and offset, and then
+	 * consecutive ranges are merged while the block does not exceed the protocol limit.
+	 *
+	 * @param events  port read events of the same modbus slave.
+	 * @param maxGap  maximum number of objects not requested by any port that can be read between two port ranges.
+	 * @return list of blocks.
+	 */
+	public static List<ModbusReadBlock> getBlocks(List<ModBusTcpEvent> events, int maxGap)
+	{
+		List<ModBusTcpEvent> sorted = new ArrayList<ModBusTcpEvent>(events);
+		Collections.sort(sorted, new Comparator<ModBusTcpEvent>() {
+			public int compare(ModBusTcpEvent o1, ModBusTcpEvent o2) {
+				int ret = o1.getUid().compareTo(o2.getUid());
+				if (ret == 0) {
+					ret = Integer.compare(o1.getType().getValue(), o2.getType().getValue());
+				}
+				if (ret == 0) {
+					ret = Integer.compare(getOffset(o1), getOffset(o2));
+				}
+				return ret;
+			}
+		});
+
+		List<ModbusReadBlock> blocks = new ArrayList<ModbusReadBlock>();
+		ModbusReadBlock current = null;
+		for (ModBusTcpEvent evt : sorted) {
+			int offset = getOffset(evt);
+			int count = getCount(evt);
+			if ((current != null) && current.canMerge(evt, offset, count, maxGap)) {
+				current.merge(evt, offset, count);
+			} else {
+				current = new ModbusReadBlock(evt, offset, count);
+				blocks.add(current);
+			}
+		}
+
+		return blocks;
+	}
+
+	/**
+	 * Gets the offset of a port read event.
+	 *
+	 * @param evt  modbus event
+	 * @return offset or -1 if the event is not a read of discretes or registers.
+	 */
+	static int getOffset(ModBusTcpEvent evt)
+	{
+		switch (evt.getType()) {
+			case READ_DISCRETE:
+				return ((ModBusTcpDiscreteDataInputEvent) evt).getOffset();
+			case READ_REGISTER:
+				return ((ModBusTcpInputRegisterEvent) evt).getOffset();
+			case READ_HOLDING_REGISTER:
+				return ((ModBusTcpReadHoldingRegisterEvent) evt).getOffset();
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * Gets the number of objects read by a port read event.
+	 *
+	 * @param evt  modbus event
+	 * @return number of objects or -1 if the event is not a read of discretes or registers.
+	 */
+	static int getCount(ModBusTcpEvent evt)
+	{
+		switch (evt.getType()) {
+			case READ_DISCRETE:
+				return ((ModBusTcpDiscreteDataInputEvent) evt).getCount();
+			case READ_REGISTER:
+				return ((ModBusTcpInputRegisterEvent) evt).getCount();
+			case READ_HOLDING_REGISTER:
+				return ((ModBusTcpReadHoldingRegisterEvent) evt).getCount();
+			default:
+				return -1;
+		}
+	}
+}
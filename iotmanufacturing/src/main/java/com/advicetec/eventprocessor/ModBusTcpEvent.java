@@ -72,6 +72,27 @@ public abstract class ModBusTcpEvent extends Event {
 		this.inputOutputPort = inputOutputPort;
 	}
 
+	/**
+	 * Constructor for the events that read several units of the modbus slave, they are identified by
+	 * the key given instead of a unit id.
+	 * 
+	 * @param key          		Key of the event, it must be unique for the modbus slave.
+	 * @param ipAddress    		Listening IP address of the modbus unit
+	 * @param port         		Listening Port of the modbus unit
+	 * @param type         		Type of read to execute.
+	 */
+	protected ModBusTcpEvent(String key, String ipAddress, int port, ModBusTcpEventType type) {
+		
+		super(EventType.MODBUS_READ_EVENT, key);
+
+		this.ipAddress = ipAddress;
+		this.port = port;
+		this.Uid = null;
+		this.type = type;
+		this.concentrator = false;
+		this.inputOutputPort = null;
+	}
+
 	/**
 	 * Gets the listening IP Address of the modbus Slave
 	 * 
@@ -59,7 +59,12 @@ public enum ModBusTcpEventType
 	/**
 	 * Not a valid modbus event.
 	 */
-	INVALID(9, "Invalid");
+	INVALID(9, "Invalid"),
+
+	/**
+	 * Read the ports of a monitoring device with the same refresh time in a poll cycle. 
+	 */
+	READ_BATCH(10, "Read batch");
 
 	/**
 	 * Unique code defining the modbus event type 
@@ -1,19 +1,20 @@
 package com.advicetec.eventprocessor;
 
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.advicetec.MessageProcessor.DelayEvent;
 import com.advicetec.core.Processor;
+import com.advicetec.metrics.Counter;
+import com.advicetec.metrics.Histogram;
+import com.advicetec.metrics.MetricFamily;
+import com.advicetec.metrics.MetricsRegistry;
 import com.advicetec.monitorAdapter.AdapterManager;
+import com.advicetec.monitorAdapter.ModbusReading;
 import com.advicetec.mpmcqueue.QueueType;
 import com.advicetec.mpmcqueue.Queueable;
 import com.advicetec.utils.UdpUtils;
@@ -61,31 +62,63 @@ public class ModBusTcpProcessor implements Processor {
 		super();
 		this.event = event;
 	}
+
+	/**
+	 * Round trip time of the modbus transactions by endpoint.
+	 */
+	private static final MetricFamily<Histogram> roundTrip = MetricsRegistry.getInstance().latency(
+			"iot_modbus_round_trip_seconds", "Round trip time of the modbus transactions, by endpoint.", "endpoint");
+
+	/**
+	 * Failed modbus transactions by endpoint.
+	 */
+	private static final MetricFamily<Counter> failures = MetricsRegistry.getInstance().counter(
+			"iot_modbus_failures_total", "Modbus transactions failed, by endpoint.", "endpoint");
+
+	/**
+	 * Executes a transaction and records its round trip time.
+	 * 
+	 * @param trans		transaction to execute.
+	 * @param ipAddress	Ip address of the modbus slave.
+	 * @param port		port of the modbus slave.
+	 * @throws ModbusException if the transaction fails.
+	 */
+	static void execute(ModbusTCPTransaction trans, String ipAddress, int port) throws ModbusException {
+		String endpoint = ipAddress + ":" + port;
+		long start = System.nanoTime();
+		try {
+			trans.execute();
+		} catch (ModbusException e) {
+			failures.labels(endpoint).inc();
+			throw e;
+		} finally {
+			roundTrip.labels(endpoint).observeSince(start);
+		}
+	}
 	
 	
 	/**
 	 * Method to process the event. To process these events we perform:
 	 * 
-	 *  	1. Establish a new connection with the modbus slave
+	 *  	1. Takes a connection with the modbus slave from the event manager pool
 	 *  	2. Depending on the type of event it creates a request to the modbus slave
 	 *  	3. makes the request and receive the information and build a new sample message
-	 *  	4. closes the connection.  
+	 *  	4. gives back the connection to the pool, or closes it if the request failed.  
 	 */
 	@Override
 	public List<DelayEvent> process() throws SQLException {
 
 		eventManager = EventManager.getInstance();
 		ArrayList<DelayEvent> retEvts = new ArrayList<DelayEvent>();
-		Map<String, Object> dictionary = new HashMap<String, Object>();
 		TCPMasterConnection con = null;
+		boolean failed = false;
 		
 		try {
 			// Obtains the connection 
-			// TCPMasterConnection con = eventManager.getModbusConnection(event.getIpAddress(), event.getPort());
-			InetAddress addr =  InetAddress.getByName(event.getIpAddress()); //the slave's address
-			con = new TCPMasterConnection(addr);
-			con.setPort(event.getPort());
-			con.connect();			
+			con = eventManager.getModbusConnection(event.getIpAddress(), event.getPort());
+			if (con == null) {
+				throw new Exception("No modbus connection available for ipaddress:" + event.getIpAddress() + " port:" + event.getPort());
+			}
 			
 			ModbusTCPTransaction trans = null; //the transaction
 			logger.debug("event type to process : " + event.getType().getName());
@@ -106,25 +139,17 @@ public class ModBusTcpProcessor implements Processor {
 				trans.setRequest(req);
 
 				// Execute the transaction repeat times
-				trans.execute();
+				execute(trans, event.getIpAddress(), event.getPort());
 				res = (ReadInputDiscretesResponse) trans.getResponse();
-				byte byteRes[] = new byte[evt.getCount()];  
+				ModbusReading reading = ModbusReading.obtain().set(event.getIpAddress(), event.getPort(), event.getUid(), 
+						evt.getOffset(), evt.getCount(), event.getType(), evt.getIsConcentrator(), evt.getInputOutputPort());
+				byte byteRes[] = reading.allocate(evt.getCount());  
 				for (int i = 0; i < evt.getCount(); i++){
 					boolean bool = res.getDiscretes().getBit(i);
 					byteRes[i] = (byte)(bool?1:0);
 				}
 
-				dictionary.put("IPAddress", event.getIpAddress());
-				dictionary.put("Port", event.getPort());
-				dictionary.put("UID", event.getUid());
-				dictionary.put("Offset", evt.getOffset());
-				dictionary.put("Count", evt.getCount());
-				dictionary.put("Type", (Integer) event.getType().getValue());
-				dictionary.put("IsConcentrator", evt.getIsConcentrator());
-				dictionary.put("InputOutputPort", evt.getInputOutputPort());
-				dictionary.put("Read", byteRes);
-
-				Queueable obj = new Queueable(QueueType.MODBUS_DEV_MESSAGE, dictionary);
+				Queueable obj = new Queueable(QueueType.MODBUS_DEV_MESSAGE, reading);
 				adapterManager.getQueue().enqueue(6, obj);
 				break;
 
@@ -142,22 +167,18 @@ public class ModBusTcpProcessor implements Processor {
 				trans = new ModbusTCPTransaction(con);
 				trans.setRequest(req2);
 
-				trans.execute();
+				execute(trans, event.getIpAddress(), event.getPort());
 				res2 = (ReadInputRegistersResponse) trans.getResponse();
 
-				dictionary.put("IPAddress", event.getIpAddress());
-				dictionary.put("Port", event.getPort());
-				dictionary.put("UID", event.getUid());
-				dictionary.put("Offset", evt2.getOffset());
-				dictionary.put("Count", evt2.getCount());
-				dictionary.put("Type", (Integer) event.getType().getValue());
-				dictionary.put("IsConcentrator", evt2.getIsConcentrator());
-				dictionary.put("InputOutputPort", evt2.getInputOutputPort());
-				dictionary.put("Read", res2.getMessage());
+				ModbusReading reading2 = ModbusReading.obtain().set(event.getIpAddress(), event.getPort(), event.getUid(), 
+						evt2.getOffset(), evt2.getCount(), event.getType(), evt2.getIsConcentrator(), evt2.getInputOutputPort());
+				reading2.setData(res2.getMessage());
 
-				logger.debug("UID:" + event.getUid() + " Offset:" + evt2.getOffset() + " Count:" + evt2.getCount() + " Ret: " + UdpUtils.byteArray2Ascii(res2.getMessage()));
+				if (logger.isDebugEnabled()) {
+					logger.debug("UID:" + event.getUid() + " Offset:" + evt2.getOffset() + " Count:" + evt2.getCount() + " Ret: " + UdpUtils.byteArray2Ascii(res2.getMessage()));
+				}
 
-				Queueable obj2 = new Queueable(QueueType.MODBUS_DEV_MESSAGE, dictionary);
+				Queueable obj2 = new Queueable(QueueType.MODBUS_DEV_MESSAGE, reading2);
 				adapterManager.getQueue().enqueue(6, obj2);
 				break;
 
@@ -176,22 +197,18 @@ public class ModBusTcpProcessor implements Processor {
 				trans = new ModbusTCPTransaction(con);
 				trans.setRequest(req3);
 
-				trans.execute();				
+				execute(trans, event.getIpAddress(), event.getPort());				
 				res3 = (ReadMultipleRegistersResponse) trans.getResponse();
 
-				dictionary.put("IPAddress", event.getIpAddress());
-				dictionary.put("Port", event.getPort());
-				dictionary.put("UID", event.getUid());
-				dictionary.put("Offset", evt3.getOffset());
-				dictionary.put("Count", evt3.getCount());
-				dictionary.put("Type", (Integer) event.getType().getValue());
-				dictionary.put("IsConcentrator", evt3.getIsConcentrator());
-				dictionary.put("InputOutputPort", evt3.getInputOutputPort());
-				dictionary.put("Read", res3.getMessage());
+				ModbusReading reading3 = ModbusReading.obtain().set(event.getIpAddress(), event.getPort(), event.getUid(), 
+						evt3.getOffset(), evt3.getCount(), event.getType(), evt3.getIsConcentrator(), evt3.getInputOutputPort());
+				reading3.setData(res3.getMessage());
 
-				logger.info("Connection  IpAddress:" + event.getIpAddress() + "Port" + event.getPort() + "UID:" + event.getUid() + " Offset:" + evt3.getOffset() + " Count:" + evt3.getCount() + " Ret: " + UdpUtils.byteArray2Ascii(res3.getMessage()));
+				if (logger.isDebugEnabled()) {
+					logger.debug("Connection  IpAddress:" + event.getIpAddress() + "Port" + event.getPort() + "UID:" + event.getUid() + " Offset:" + evt3.getOffset() + " Count:" + evt3.getCount() + " Ret: " + UdpUtils.byteArray2Ascii(res3.getMessage()));
+				}
 
-				Queueable obj3 = new Queueable(QueueType.MODBUS_DEV_MESSAGE, dictionary);
+				Queueable obj3 = new Queueable(QueueType.MODBUS_DEV_MESSAGE, reading3);
 				adapterManager.getQueue().enqueue(6, obj3);						
 				break;
 
@@ -205,16 +222,10 @@ public class ModBusTcpProcessor implements Processor {
 				break;
 
 			}
-			// eventManager.releaseModbusConnection(event.getIpAddress(), event.getPort(), con);
-			
 		} catch (Exception e) {
 			
 			logger.error("Error in modbus message");
-			
-			dictionary.put("IPAddress", event.getIpAddress());
-			dictionary.put("Port", event.getPort());
-			dictionary.put("UID", event.getUid());
-			dictionary.put("IsConcentrator", event.getIsConcentrator());
+			failed = true;
 			
 			int offset = 0;
 			int count = 0;
@@ -247,11 +258,10 @@ public class ModBusTcpProcessor implements Processor {
 					break;
 			}
 			
-			dictionary.put("Offset", offset);
-			dictionary.put("Count", count);
-			dictionary.put("Type", modbusType.getName());
+			ModbusReading error = ModbusReading.obtain().set(event.getIpAddress(), event.getPort(), event.getUid(), 
+					offset, count, modbusType, event.getIsConcentrator(), event.getInputOutputPort());
 
-			Queueable obj3 = new Queueable(QueueType.MODBUS_ERR_MESSAGE, dictionary);
+			Queueable obj3 = new Queueable(QueueType.MODBUS_ERR_MESSAGE, error);
 			
 			try {
 				
@@ -266,8 +276,17 @@ public class ModBusTcpProcessor implements Processor {
 		} finally {
 			
 			if (con != null){
-				logger.debug("modbus connection closed");
-				con.close();
+				if (failed) {
+					// The state of the socket is unknown, so it is not used again.
+					eventManager.invalidateModbusConnection(event.getIpAddress(), event.getPort(), con);
+				} else {
+					try {
+						eventManager.releaseModbusConnection(event.getIpAddress(), event.getPort(), con);
+					} catch (Exception e) {
+						logger.error("Error releasing modbus connection - Message:" + e.getMessage());
+						con.close();
+					}
+				}
 			}
 		}
 		
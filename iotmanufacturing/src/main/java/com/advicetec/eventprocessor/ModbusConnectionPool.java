@@ -0,0 +1,401 @@
+package com.advicetec.eventprocessor;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
+
+/**
+ * This class maintains the modbus TCP connections open with the modbus slaves, so the polling
+ * events reuse the sockets instead of connecting and closing them every time.
+ *
+ * Connections are grouped by the duple (ipaddress, port). A handler leases a connection with
+ * getConnection and gives it back with releaseConnection once the transaction finishes. If the
+ * transaction fails, the handler must call invalidateConnection, so the socket is closed and
+ * the next lease opens a new one.
+ *
+ * Available connections are kept in a stack, so the most recently used connection is leased first
+ * and the rest of connections become idle. Idle connections are closed after maxIdleTime, and any
+ * connection is renewed after maxAge, so the slaves do not keep sockets forever.
+ *
+ * @author Andres Marentes
+ * @see EventManager
+ */
+public class ModbusConnectionPool
+{
+
+	static Logger logger = LogManager.getLogger(ModbusConnectionPool.class.getName());
+
+	/**
+	 * Maximum number of connections open at the same time for the same duple (ipaddress, port).
+	 */
+	private int maxConnections;
+
+	/**
+	 * Timeout in milliseconds used by the connections to read from the slave.
+	 */
+	private int timeOut;
+
+	/**
+	 * Time in milliseconds that a connection can be available without being used before it is closed.
+	 */
+	private long maxIdleTime;
+
+	/**
+	 * Time in milliseconds after which a connection is closed and open again.
+	 */
+	private long maxAge;
+
+	/**
+	 * This hashmap contains the available connections for the duple (ipaddress, port) in the key of the hashmap.
+	 */
+	private Map<String, Stack<PooledConnection>> availableConnections;
+
+	/**
+	 * This hashmap contains the leased connections.
+	 */
+	private Map<TCPMasterConnection, PooledConnection> usedConnections;
+
+	/**
+	 * Number of connections open, leased or available, for the duple (ipaddress, port) in the key of the hashmap.
+	 */
+	private Map<String, Integer> openConnections;
+
+	/**
+	 * Executor that periodically closes the idle connections.
+	 */
+	private ScheduledExecutorService evictor;
+
+	/**
+	 * Constructor for the class
+	 *
+	 * @param maxConnections  maximum number of connections for the same duple (ipaddress, port).
+	 * @param timeOut		  timeout in milliseconds to read from the slave.
+	 * @param maxIdleTime     time in milliseconds that a connection can be available without being used.
+	 * @param maxAge          time in milliseconds after which a connection is renewed.
+	 */
+	public ModbusConnectionPool(int maxConnections, int timeOut, long maxIdleTime, long maxAge)
+	{
+		this.maxConnections = maxConnections;
+		this.timeOut = timeOut;
+		this.maxIdleTime = maxIdleTime;
+		this.maxAge = maxAge;
+		this.availableConnections = new HashMap<String, Stack<PooledConnection>>();
+		this.usedConnections = new IdentityHashMap<TCPMasterConnection, PooledConnection>();
+		this.openConnections = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * Starts a daemon thread that closes the idle connections every half of the maximum idle time.
+	 */
+	public synchronized void startEviction()
+	{
+		if (evictor != null) {
+			return;
+		}
+
+		evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ModbusConnectionEvictor");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		long period = Math.max(1, maxIdleTime / 2);
+		evictor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					evictIdleConnections();
+				} catch (Exception e) {
+					logger.error("Error closing idle modbus connections - Message:" + e.getMessage());
+				}
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Gets a connection to the modbus slave. An available connection is reused if it is still
+	 * connected and not too old, otherwise a new connection is open.
+	 *
+	 * @param ipAddress  Ipv4 address of the modbus slave
+	 * @param port       port where the slave is listening to.
+	 * @return a modbus TCP connection or null if the maximum number of connections for the slave has been reached.
+	 * @throws Exception The connection could not be established.
+	 */
+	public TCPMasterConnection getConnection(String ipAddress, int port) throws Exception
+	{
+		String key = getKey(ipAddress, port);
+		List<PooledConnection> expired = new ArrayList<PooledConnection>();
+		PooledConnection pooled = null;
+		long now = System.currentTimeMillis();
+
+		synchronized (this) {
+			Stack<PooledConnection> available = availableConnections.get(key);
+			while ((available != null) && (!available.isEmpty())) {
+				PooledConnection candidate = available.pop();
+				if (isReusable(candidate, now)) {
+					pooled = candidate;
+					break;
+				}
+				expired.add(candidate);
+				decrementOpen(key);
+			}
+
+			if (pooled == null) {
+				if (getOpen(key) >= maxConnections) {
+					logger.debug("max modbus connections reached for: " + key);
+					close(expired);
+					return null;
+				}
+				// Reserves the connection before connecting, so other handlers see the limit.
+				openConnections.put(key, getOpen(key) + 1);
+			} else {
+				pooled.lastUsed = now;
+				usedConnections.put(pooled.connection, pooled);
+			}
+		}
+
+		close(expired);
+
+		if (pooled != null) {
+			return pooled.connection;
+		}
+
+		TCPMasterConnection con = null;
+		try {
+			logger.debug("Opening modbus connection to:" + key);
+			con = new TCPMasterConnection(InetAddress.getByName(ipAddress));
+			con.setPort(port);
+			con.setTimeout(timeOut);
+			con.connect();
+		} catch (Exception e) {
+			synchronized (this) {
+				decrementOpen(key);
+			}
+			throw e;
+		}
+
+		synchronized (this) {
+			usedConnections.put(con, new PooledConnection(key, con, now));
+		}
+		return con;
+	}
+
+	/**
+	 * Gives back a leased connection, so it can be used by another handler.
+	 *
+	 * @param con  connection being released.
+	 * @throws Exception The connection was not leased from this pool.
+	 */
+	public void releaseConnection(TCPMasterConnection con) throws Exception
+	{
+		PooledConnection pooled = null;
+		boolean reusable = false;
+
+		synchronized (this) {
+			pooled = usedConnections.remove(con);
+			if (pooled == null) {
+				logger.error("The connection was not found in the connection container");
+				throw new Exception("The connection was not found in the connection container");
+			}
+
+			long now = System.currentTimeMillis();
+			reusable = isReusable(pooled, now);
+			if (reusable) {
+				pooled.lastUsed = now;
+				Stack<PooledConnection> available = availableConnections.get(pooled.key);
+				if (available == null) {
+					available = new Stack<PooledConnection>();
+					availableConnections.put(pooled.key, available);
+				}
+				available.push(pooled);
+			} else {
+				decrementOpen(pooled.key);
+			}
+		}
+
+		if (!reusable) {
+			pooled.connection.close();
+		}
+	}
+
+	/**
+	 * Closes a leased connection that failed, it is not given to any other handler.
+	 *
+	 * @param con  connection that failed.
+	 */
+	public void invalidateConnection(TCPMasterConnection con)
+	{
+		synchronized (this) {
+			PooledConnection pooled = usedConnections.remove(con);
+			if (pooled != null) {
+				decrementOpen(pooled.key);
+			}
+		}
+		con.close();
+	}
+
+	/**
+	 * Closes the available connections that have not been used during the maximum idle time.
+	 *
+	 * @return number of connections closed.
+	 */
+	public int evictIdleConnections()
+	{
+		List<PooledConnection> expired = new ArrayList<PooledConnection>();
+		long now = System.currentTimeMillis();
+
+		synchronized (this) {
+			for (Stack<PooledConnection> available : availableConnections.values()) {
+				// The oldest used connections are at the bottom of the stack.
+				Iterator<PooledConnection> iter = available.iterator();
+				while (iter.hasNext()) {
+					PooledConnection pooled = iter.next();
+					if (!isReusable(pooled, now)) {
+						iter.remove();
+						expired.add(pooled);
+						decrementOpen(pooled.key);
+					}
+				}
+			}
+		}
+
+		close(expired);
+		if (expired.size() > 0) {
+			logger.debug("idle modbus connections closed:" + expired.size());
+		}
+		return expired.size();
+	}
+
+	/**
+	 * Closes all the available connections and stops the eviction thread. Leased connections are
+	 * closed when they are released.
+	 */
+	public void close()
+	{
+		List<PooledConnection> expired = new ArrayList<PooledConnection>();
+
+		synchronized (this) {
+			if (evictor != null) {
+				evictor.shutdownNow();
+				evictor = null;
+			}
+			for (Stack<PooledConnection> available : availableConnections.values()) {
+				for (PooledConnection pooled : available) {
+					expired.add(pooled);
+					decrementOpen(pooled.key);
+				}
+				available.clear();
+			}
+		}
+
+		close(expired);
+	}
+
+	/**
+	 * Gets the number of connections open, leased or available, for a modbus slave.
+	 *
+	 * @param ipAddress  Ipv4 address of the modbus slave
+	 * @param port       port where the slave is listening to.
+	 * @return number of connections open.
+	 */
+	public synchronized int getOpenConnections(String ipAddress, int port)
+	{
+		return getOpen(getKey(ipAddress, port));
+	}
+
+	/**
+	 * Gets the number of connections available for a modbus slave.
+	 *
+	 * @param ipAddress  Ipv4 address of the modbus slave
+	 * @param port       port where the slave is listening to.
+	 * @return number of connections available.
+	 */
+	public synchronized int getAvailableConnections(String ipAddress, int port)
+	{
+		Stack<PooledConnection> available = availableConnections.get(getKey(ipAddress, port));
+		return (available == null) ? 0 : available.size();
+	}
+
+	/**
+	 * Establishes if a connection can be used again, it must be connected, not idle for too long
+	 * and younger than the maximum age.
+	 */
+	private boolean isReusable(PooledConnection pooled, long now)
+	{
+		if (!pooled.connection.isConnected()) {
+			return false;
+		}
+
+		if ((now - pooled.created) >= maxAge) {
+			logger.debug("Renewing modbus connection to:" + pooled.key);
+			return false;
+		}
+
+		return (now - pooled.lastUsed) < maxIdleTime;
+	}
+
+	/**
+	 * Closes the connections given, it is called without holding the pool lock.
+	 */
+	private void close(List<PooledConnection> connections)
+	{
+		for (PooledConnection pooled : connections) {
+			pooled.connection.close();
+		}
+	}
+
+	private int getOpen(String key)
+	{
+		Integer open = openConnections.get(key);
+		return (open == null) ? 0 : open.intValue();
+	}
+
+	private void decrementOpen(String key)
+	{
+		int open = getOpen(key) - 1;
+		if (open <= 0) {
+			openConnections.remove(key);
+		} else {
+			openConnections.put(key, open);
+		}
+	}
+
+	private String getKey(String ipAddress, int port)
+	{
+		return ipAddress + ":" + Integer.toString(port);
+	}
+
+	/**
+	 * Connection maintained by the pool with its creation and last use time in milliseconds.
+	 */
+	private static class PooledConnection
+	{
+		private final String key;
+		private final TCPMasterConnection connection;
+		private final long created;
+		private long lastUsed;
+
+		PooledConnection(String key, TCPMasterConnection connection, long created)
+		{
+			this.key = key;
+			this.connection = connection;
+			this.created = created;
+			this.lastUsed = created;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package com.advicetec.eventprocessor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class represents a range of consecutive modbus objects read with a single request.
+ *
+ * The range covers the ranges of one or more port read events of the same unit and type, the response
+ * is split afterwards so every port receives the same data as if it had been read alone.
+ *
+ * The maximum number of objects that can be read in a request is limited by the modbus protocol:
+ * 2000 discrete inputs (FC02) and 125 registers (FC03, FC04).
+ *
+ * @author Andres Marentes
+ * @see ModBusTcpBatchReadEvent
+ */
+public class ModbusReadBlock
+{
+
+	/**
+	 * Maximum number of discrete inputs in a read request.
+	 */
+	public static final int MAX_DISCRETES = 2000;
+
+	/**
+	 * Maximum number of registers in a read request.
+	 */
+	public static final int MAX_REGISTERS = 125;
+
+	/**
+	 * Unit id within the modbus slave.
+	 */
+	private Integer uid;
+
+	/**
+	 * Type of read, it can be READ_DISCRETE, READ_REGISTER or READ_HOLDING_REGISTER
+	 */
+	private ModBusTcpEventType type;
+
+	/**
+	 * First object to read.
+	 */
+	private int offset;
+
+	/**
+	 * Number of objects to read from the offset.
+	 */
+	private int count;
+
+	/**
+	 * Port read events covered by this block.
+	 */
+	private List<ModBusTcpEvent> events;
+
+	/**
+	 * Constructor for the class, it creates the block with the range of the event given.
+	 *
+	 * @param event   first port read event of the block.
+	 * @param offset  offset of the event.
+	 * @param count   number of objects read by the event.
+	 */
+	public ModbusReadBlock(ModBusTcpEvent event, int offset, int count)
+	{
+		this.uid = event.getUid();
+		this.type = event.getType();
+		this.offset = offset;
+		this.count = count;
+		this.events = new ArrayList<ModBusTcpEvent>();
+		this.events.add(event);
+	}
+
+	/**
+	 * Establishes if the range of the event can be included in this block. The event must belong to the
+	 * same unit and type, begin at most maxGap objects after the end of the block, and the resulting
+	 * block must not exceed the protocol limit.
+	 *
+	 * @param event   port read event to include.
+	 * @param offset  offset of the event.
+	 * @param count   number of objects read by the event.
+	 * @param maxGap  maximum number of objects not requested by any port that can be read between two ranges.
+	 * @return true if the event can be merged, false otherwise.
+	 */
+	public boolean canMerge(ModBusTcpEvent event, int offset, int count, int maxGap)
+	{
+		if (!this.uid.equals(event.getUid()) || (this.type != event.getType())) {
+			return false;
+		}
+
+		if ((offset < this.offset) || (offset > this.offset + this.count + maxGap)) {
+			return false;
+		}
+
+		int end = Math.max(this.offset + this.count, offset + count);
+		return (end - this.offset) <= getMaxCount(this.type);
+	}
+
+	/**
+	 * Includes the range of the event in this block. The caller must verify it with canMerge first.
+	 *
+	 * @param event   port read event to include.
+	 * @param offset  offset of the event.
+	 * @param count   number of objects read by the event.
+	 */
+	public void merge(ModBusTcpEvent event, int offset, int count)
+	{
+		int end = Math.max(this.offset + this.count, offset + count);
+		this.count = end - this.offset;
+		this.events.add(event);
+	}
+
+	/**
+	 * Gets the maximum number of objects that can be read with a request of the type given.
+	 *
+	 * @param type  type of read.
+	 * @return maximum number of discretes or registers.
+	 */
+	public static int getMaxCount(ModBusTcpEventType type)
+	{
+		if (type == ModBusTcpEventType.READ_DISCRETE) {
+			return MAX_DISCRETES;
+		}
+		return MAX_REGISTERS;
+	}
+
+	/**
+	 * Gets the unit id within the modbus slave
+	 *
+	 * @return Unit id.
+	 */
+	public Integer getUid() {
+		return uid;
+	}
+
+	/**
+	 * Gets the type of read
+	 *
+	 * @return read modbus type
+	 */
+	public ModBusTcpEventType getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the first object to read
+	 *
+	 * @return offset of the block.
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Gets the number of objects to read from the offset.
+	 *
+	 * @return number of objects in the block.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the port read events covered by this block
+	 *
+	 * @return unmodifiable list of events.
+	 */
+	public List<ModBusTcpEvent> getEvents() {
+		return Collections.unmodifiableList(events);
+	}
+
+}
@@ -61,18 +61,10 @@ public class IntervalResource extends ServerResource
 			DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MMM-dd H:m:s.n");
 			LocalDateTime dttmFrom = LocalDateTime.parse(o.get("DttmFrom"),format); 
 			LocalDateTime dttmTo = LocalDateTime.parse(o.get("DttmTo"),format);		
-			String jsonTextRet = facade.getJsonStatesByInterval(dttmFrom, dttmTo);
-	
-			if (jsonTextRet.length() == 0) {
-				// The requested contact was not found, so set the Status to indicate this.
-				getResponse().setStatus(Status.CLIENT_ERROR_NOT_ACCEPTABLE);
-				result = new JsonRepresentation("");
-			} 
-			else {
-				// The requested contact was found, so add the Contact's XML representation to the response.
-				result = new JsonRepresentation(jsonTextRet);
-				// Status code defaults to 200 if we don't set it.
-			}
+			// The intervals are written to the response as they are serialized.
+			result = new JsonStreamRepresentation(generator -> 
+				facade.writeJsonStatesByInterval(generator, dttmFrom, dttmTo));
+			// Status code defaults to 200 if we don't set it.
 			// Return the representation.  The Status code tells the client if the representation is valid.
 		}
 		
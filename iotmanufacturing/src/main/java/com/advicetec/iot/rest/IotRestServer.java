@@ -155,6 +155,9 @@ public class IotRestServer extends Application {
       // POST request to get the definition of the measured entity attribute. 
       router.attach("/MeasuredEntityAtttributes", MeasuredEntityAttributesResource.class);
       
+      // GET request to get the metrics of the pipeline in the Prometheus text format. 
+      router.attach("/Metrics", MetricsResource.class);
+      
       // Return the root router
       return router;
   }
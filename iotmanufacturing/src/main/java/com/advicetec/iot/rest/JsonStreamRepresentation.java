@@ -0,0 +1,83 @@
+package com.advicetec.iot.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.restlet.data.MediaType;
+import org.restlet.representation.OutputRepresentation;
+
+/**
+ * JSON representation written to the response while it is generated.
+ *
+ * The content is written by a JSON generator over the response stream, so the resources do not build
+ * the complete JSON array in memory. The size is unknown, so the response is sent with chunked transfer encoding.
+ *
+ * @author advicetec
+ */
+public class JsonStreamRepresentation extends OutputRepresentation
+{
+	static final Logger logger = LogManager.getLogger(JsonStreamRepresentation.class.getName());
+
+	/**
+	 * Writes the content of the representation.
+	 */
+	public interface Writer
+	{
+		/**
+		 * Writes the content in the generator given.
+		 *
+		 * @param generator		JSON generator over the response stream.
+		 * @throws IOException	if the response cannot be written.
+		 */
+		void write(JsonGenerator generator) throws IOException;
+	}
+
+	/**
+	 * Factory of the generators, the response stream is closed by the server.
+	 */
+	private static final JsonFactory factory = new JsonFactory()
+			.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+	/**
+	 * Writer of the content.
+	 */
+	private final Writer writer;
+
+	/**
+	 * Constructor for the class.
+	 *
+	 * @param writer	writer of the content.
+	 */
+	public JsonStreamRepresentation(Writer writer) {
+		super(MediaType.APPLICATION_JSON);
+		this.writer = writer;
+	}
+
+	/**
+	 * Returns whether the row format was requested with the query parameter <code>format=rows</code>.
+	 *
+	 * @param format	value of the query parameter.
+	 * @return true if the rows format was requested.
+	 */
+	public static boolean isRowFormat(String format) {
+		return "rows".equalsIgnoreCase(format);
+	}
+
+	@Override
+	public void write(OutputStream outputStream) throws IOException {
+		JsonGenerator generator = factory.createJsonGenerator(outputStream, JsonEncoding.UTF8);
+		try {
+			writer.write(generator);
+		} catch (IOException e) {
+			logger.error("The JSON response could not be written:" + e.getMessage());
+			throw e;
+		} finally {
+			generator.close();
+		}
+	}
+}
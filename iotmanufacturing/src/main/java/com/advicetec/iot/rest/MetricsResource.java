@@ -0,0 +1,39 @@
+package com.advicetec.iot.rest;
+
+import org.restlet.data.CharacterSet;
+import org.restlet.data.MediaType;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+
+import com.advicetec.metrics.MetricsRegistry;
+
+/**
+ * This class exposes the metrics of the pipeline in the Prometheus text format: the elements
+ * queued and taken, depth and time in queue of every stage and priority, the processing time of
+ * the samples and behaviors, the modbus round trips and the write-behind flushes.
+ * <p>
+ * The enqueue and dequeue rates are obtained with the <code>rate</code> function over the counters.
+ *
+ * @author advicetec
+ * @see MetricsRegistry
+ */
+public class MetricsResource extends ServerResource
+{
+	/**
+	 * Media type of the Prometheus text format.
+	 */
+	private static final MediaType PROMETHEUS_TEXT = MediaType.valueOf("text/plain; version=0.0.4");
+
+	/**
+	 * Returns the current value of all the metrics.
+	 *
+	 * @return the text representation of the metrics.
+	 */
+	@Get("txt")
+	public Representation getMetrics() {
+		return new StringRepresentation(MetricsRegistry.getInstance().write(), PROMETHEUS_TEXT, null,
+				CharacterSet.UTF_8);
+	}
+}
@@ -8,7 +8,6 @@ import java.time.temporal.ChronoUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.restlet.data.Status;
@@ -73,6 +72,11 @@ public class OverallEquipmentEffectivenessResource extends ServerResource {
 	 * 
 	 */
 	private String reqInterval;
+	
+	/**
+	 * Format of the response, rows for the compact row format.
+	 */
+	private String reqFormat;
 
 	/**
 	 * Obtains and verifies the parameters from a JSON representation.
@@ -98,6 +102,7 @@ public class OverallEquipmentEffectivenessResource extends ServerResource {
 			this.reqStartDateTime = jsonobject.getString("startDttm");
 			this.reqEndDateTime = jsonobject.getString("endDttm");
 			this.reqInterval = jsonobject.getString("reqInterval");
+			this.reqFormat = jsonobject.optString("format", null);
 
 		} catch (JSONException e) {
 			logger.error("Error:" + e.getMessage() );
@@ -131,6 +136,7 @@ public class OverallEquipmentEffectivenessResource extends ServerResource {
 		this.reqStartDateTime = getQueryValue("startDttm");
 		this.reqEndDateTime = getQueryValue("endDttm");
 		this.reqInterval = getQueryValue("reqInterval");
+		this.reqFormat = getQueryValue("format");
 		
 		// JSON request
 		if (canMachineId == null) {
@@ -171,10 +177,10 @@ public class OverallEquipmentEffectivenessResource extends ServerResource {
 					DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd H:m:s.n");
 					LocalDateTime dttmFrom = LocalDateTime.parse(this.reqStartDateTime,format); 
 					LocalDateTime dttmTo = LocalDateTime.parse(this.reqEndDateTime,format);
-					// get the array from the facade.
-					JSONArray jsonArray = facade.getOverallEquipmentEffectiveness(dttmFrom, dttmTo, this.reqInterval);
-					// from jsonarray to Representation
-					result = new JsonRepresentation(jsonArray);
+					// writes the OEEs from the facade to the response.
+					boolean rows = JsonStreamRepresentation.isRowFormat(this.reqFormat);
+					result = new JsonStreamRepresentation(generator -> 
+						facade.writeOverallEquipmentEffectiveness(generator, dttmFrom, dttmTo, this.reqInterval, rows));
 				}
 	
 			} catch (JSONException e) {
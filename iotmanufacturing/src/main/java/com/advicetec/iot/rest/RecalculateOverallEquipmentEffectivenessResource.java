@@ -6,6 +6,8 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoField;
 import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -18,15 +20,18 @@ import org.restlet.resource.Post;
 import org.restlet.resource.ResourceException;
 import org.restlet.resource.ServerResource;
 
+import com.advicetec.aggregation.oee.OEEAggregationManager;
 import com.advicetec.measuredentitity.MeasuredEntityFacade;
 import com.advicetec.measuredentitity.MeasuredEntityManager;
+import com.advicetec.measuredentitity.MeasuredEntityType;
 import com.advicetec.utils.PeriodUtils;
 
 /**
  * This class exposes Overall Equipment Effectiveness 
  *  instances that are previously calculated for a measured entity to recalculate.
  * 
- * The user of this interface can recalculate the OEE for a measured entity in a specific day.
+ * The user of this interface can recalculate the OEE for a measured entity in a specific day. When the machine 
+ * is not given, the OEE of all the machines of the plant are recalculated concurrently.
  *   
  * @author Fernando Chitiva
  */
@@ -91,11 +96,11 @@ public class RecalculateOverallEquipmentEffectivenessResource extends ServerReso
 			JsonRepresentation jsonRepresentation = new JsonRepresentation(representation);
 			// Converts the Json representation to the Java representation.
 			JSONObject jsonobject = jsonRepresentation.getJsonObject();
-			this.canMachineId = jsonobject.getString("machineId");
+			this.canMachineId = jsonobject.optString("machineId", null);
 			this.canCompany = jsonobject.getString("company");
 			this.canLocation = jsonobject.getString("location");
 			this.canPlant = jsonobject.getString("plant");
-			this.canMachineGroup = jsonobject.getString("machineGroup");			
+			this.canMachineGroup = jsonobject.optString("machineGroup", null);			
 			this.reqDate = jsonobject.getString("date");
 			this.reqStartDateTime = this.reqDate + " 00:00:00.000";
 			this.reqEndDateTime = this.reqDate + " 23:59:59.999";
@@ -130,12 +135,14 @@ public class RecalculateOverallEquipmentEffectivenessResource extends ServerReso
 		this.reqEndDateTime = this.reqDate + " 23:59:59.999";
 		this.reqInterval = "D";
 		// JSON request
-		if (canMachineId == null) {
+		if ((canMachineId == null) && (canPlant == null)) {
 			getParamsFromJson(representation);
 		}	
 		// Verifies that the reqInterval given is valid.
 		if (!validReqInterval()){
 			logger.error("Invalid request interval - valid values (H Hours ,D Days, M months, Y Years, MN Minutes)");
+		} else if (canMachineId == null) {
+			recalculatePlant();
 		} else {
 			try {
 				// Get the contact's uniqueID from the URL.
@@ -172,6 +179,32 @@ public class RecalculateOverallEquipmentEffectivenessResource extends ServerReso
 		}
 	}
 
+	/**
+	 * Recalculates the OEE of all the machines of the requested plant, the machines are recalculated concurrently.
+	 * 
+	 * @throws SQLException if the measured entities could not be loaded.
+	 */
+	private void recalculatePlant() throws SQLException {
+		Map<Integer, MeasuredEntityType> owners = new HashMap<Integer, MeasuredEntityType>();
+		for (Integer uniqueID : MeasuredEntityManager.getInstance().getMeasuredEntityIds(this.canCompany, this.canLocation, this.canPlant)) {
+			MeasuredEntityFacade facade = MeasuredEntityManager.getInstance().getFacadeOfEntityById(uniqueID);
+			if (facade != null) {
+				owners.put(uniqueID, facade.getEntity().getType());
+			}
+		}
+		if (owners.isEmpty()) {
+			getResponse().setStatus(Status.CLIENT_ERROR_NOT_ACCEPTABLE);
+			logger.error("Plant for company:" + this.canCompany + " location:" + this.canLocation + 
+					" Plant:" + this.canPlant + " does not have machines");
+			return;
+		}
+		DateTimeFormatter format = DateTimeFormatter.ofPattern("yyyy-MM-dd H:m:s.n");
+		LocalDateTime dttmFrom = LocalDateTime.parse(this.reqStartDateTime,format); 
+		LocalDateTime dttmTo = LocalDateTime.parse(this.reqEndDateTime,format);
+		int count = OEEAggregationManager.getInstance().getRecalculator().recalculate(owners, dttmFrom, dttmTo, this.reqInterval);
+		logger.debug("Machines recalculated:" + owners.size() + " OEE aggregations written:" + count);
+	}
+
 	/**
 	 * Verifies if the requested OEE interval is valid. Valid values are: 
 	 * 	H --> Hours
@@ -8,7 +8,6 @@ import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.restlet.data.Status;
@@ -68,6 +67,11 @@ public class StateResource extends ServerResource {
 	 * requested end date time
 	 */
 	private String reqEndDateTime;
+	
+	/**
+	 * Format of the response, rows for the compact row format.
+	 */
+	private String reqFormat;
 
 	/**
 	 * Obtains and verifies the parameters from a JSON representation.
@@ -93,6 +97,7 @@ public class StateResource extends ServerResource {
 			this.canMachineGroup = jsonobject.getString("machineGroup");
 			this.reqStartDateTime = jsonobject.getString("startDttm");
 			this.reqEndDateTime = jsonobject.getString("endDttm");
+			this.reqFormat = jsonobject.optString("format", null);
 
 		} catch (JSONException e) {
 			logger.error("Error:" + e.getMessage() );
@@ -126,6 +131,7 @@ public class StateResource extends ServerResource {
 		this.canMachineGroup = getQueryValue("machineGroup");
 		this.reqStartDateTime = getQueryValue("startDttm");
 		this.reqEndDateTime = getQueryValue("endDttm");
+		this.reqFormat = getQueryValue("format");
 
 		if (canMachineId == null) {
 			getParamsFromJson(representation);
@@ -160,11 +166,10 @@ public class StateResource extends ServerResource {
 				LocalDateTime dttmFrom = LocalDateTime.parse(reqStartDateTime,format); 
 				LocalDateTime dttmTo = LocalDateTime.parse(reqEndDateTime,format);
 
-				// get the array from the facade.
-				JSONArray jsonArray = facade.getJsonStates(dttmFrom, dttmTo);
-
-				// from jsonarray to Representation
-				result = new JsonRepresentation(jsonArray);
+				// writes the states from the facade to the response.
+				boolean rows = JsonStreamRepresentation.isRowFormat(this.reqFormat);
+				result = new JsonStreamRepresentation(generator -> 
+					facade.writeJsonStates(generator, dttmFrom, dttmTo, rows));
 			}
 		} catch (SQLException e) {
 			logger.error("SQL failure:"+e.getMessage());
@@ -7,7 +7,6 @@ import java.time.format.DateTimeFormatter;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.restlet.data.Status;
@@ -17,6 +16,7 @@ import org.restlet.resource.Get;
 import org.restlet.resource.ResourceException;
 import org.restlet.resource.ServerResource;
 
+import com.advicetec.core.TrendBuckets;
 import com.advicetec.measuredentitity.MeasuredEntityFacade;
 import com.advicetec.measuredentitity.MeasuredEntityManager;
 
@@ -72,6 +72,26 @@ public class TrendResource extends ServerResource
 	 */
 	private String trendVar;
 	
+	/**
+	 * Format of the response, rows for the compact row format.
+	 */
+	private String reqFormat;
+	
+	/**
+	 * Number of buckets or points of the downsampled trend.
+	 */
+	private String reqBuckets;
+	
+	/**
+	 * Length in seconds of the buckets of the downsampled trend, it is used when the number of buckets is not given.
+	 */
+	private String reqResolution;
+	
+	/**
+	 * Downsampling method, lttb for the largest triangle three buckets, otherwise the aggregates by bucket.
+	 */
+	private String reqMethod;
+	
 	/**
 	 * Obtains and verifies the parameters from a JSON representation.
 	 * 
@@ -97,6 +117,10 @@ public class TrendResource extends ServerResource
 			this.reqStartDateTime = jsonobject.getString("startDttm");
 			this.reqEndDateTime = jsonobject.getString("endDttm");
 			this.trendVar = jsonobject.getString("variable");
+			this.reqFormat = jsonobject.optString("format", null);
+			this.reqBuckets = jsonobject.optString("buckets", null);
+			this.reqResolution = jsonobject.optString("resolution", null);
+			this.reqMethod = jsonobject.optString("method", null);
 
 		} catch (JSONException e) {
 			logger.error("Error:" + e.getMessage() );
@@ -133,6 +157,10 @@ public class TrendResource extends ServerResource
 		this.reqStartDateTime = getQueryValue("startDttm");
 		this.reqEndDateTime = getQueryValue("endDttm");
 		this.trendVar = getQueryValue("variable");
+		this.reqFormat = getQueryValue("format");
+		this.reqBuckets = getQueryValue("buckets");
+		this.reqResolution = getQueryValue("resolution");
+		this.reqMethod = getQueryValue("method");
 
 		if (canMachineId == null) {
 			getParamsFromJson(rep);
@@ -165,14 +193,46 @@ public class TrendResource extends ServerResource
 				LocalDateTime dttmFrom = LocalDateTime.parse(reqStartDateTime,format); 
 				LocalDateTime dttmTo = LocalDateTime.parse(reqEndDateTime,format);
 								
-				// gets the array from the facade.
-				JSONArray jsonArray = facade.getJsonTrend(trendVar,dttmFrom, dttmTo);
-				result = new JsonRepresentation(jsonArray);
+				// writes the values from the facade to the response, downsampled when it is requested.
+				boolean rows = JsonStreamRepresentation.isRowFormat(this.reqFormat);
+				int buckets = getBuckets(dttmFrom, dttmTo);
+				if (buckets <= 0) {
+					result = new JsonStreamRepresentation(generator -> 
+						facade.writeJsonTrend(generator, trendVar, dttmFrom, dttmTo, rows));
+				} else if ("lttb".equalsIgnoreCase(this.reqMethod)) {
+					result = new JsonStreamRepresentation(generator -> 
+						facade.writeJsonTrendLttb(generator, trendVar, dttmFrom, dttmTo, buckets, rows));
+				} else {
+					result = new JsonStreamRepresentation(generator -> 
+						facade.writeJsonTrendBuckets(generator, trendVar, dttmFrom, dttmTo, buckets, rows));
+				}
 			}
 		} catch (SQLException e) {
 			logger.error("SQL failure.");
 			e.printStackTrace();
+		} catch (NumberFormatException e) {
+			logger.error("Invalid buckets:" + this.reqBuckets + " or resolution:" + this.reqResolution);
+			getResponse().setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
+			result = new JsonRepresentation("");
 		}
 		return result;
 	}
+	
+	/**
+	 * Gets the number of buckets requested, given directly or by the length of the buckets.
+	 * 
+	 * @param from	start of the trend.
+	 * @param to	end of the trend.
+	 * @return number of buckets, zero if the trend is not downsampled.
+	 * @throws NumberFormatException if the parameters are not numbers.
+	 */
+	private int getBuckets(LocalDateTime from, LocalDateTime to) {
+		if ((this.reqBuckets != null) && !this.reqBuckets.isEmpty()) {
+			return Math.min(Integer.parseInt(this.reqBuckets.trim()), TrendBuckets.MAX_BUCKETS);
+		}
+		if ((this.reqResolution != null) && !this.reqResolution.isEmpty()) {
+			return TrendBuckets.bucketsForResolution(from, to, Long.parseLong(this.reqResolution.trim()));
+		}
+		return 0;
+	}
 }
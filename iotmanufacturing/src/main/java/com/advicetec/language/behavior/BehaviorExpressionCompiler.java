@@ -0,0 +1,220 @@
+package com.advicetec.language.behavior;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import com.advicetec.language.BehaviorGrammarBaseVisitor;
+import com.advicetec.language.BehaviorGrammarParser;
+import com.advicetec.language.compiler.BinaryOperator;
+import com.advicetec.language.compiler.CompiledExpressions;
+import com.advicetec.language.compiler.ExprNode;
+import com.advicetec.language.compiler.ExpressionCompiler;
+import com.advicetec.language.compiler.UnaryOperator;
+
+/**
+ * This class compiles the expressions of a behavior program. 
+ * 
+ * The visitor maps the expression contexts and operator tokens of the behavior grammar to the 
+ * ExpressionCompiler, which builds the compiled nodes. The visitor returns the compiled node 
+ * of every expression, or null if the expression can not be compiled. Every compiled expression 
+ * is registered in the CompiledExpressions, so the interpreter can use it instead of visiting 
+ * the parse tree. 
+ * 
+ * @author Andres Marentes
+ * @see BehaviorInterpreter
+ * @see ExpressionCompiler
+ */
+public class BehaviorExpressionCompiler extends BehaviorGrammarBaseVisitor<ExprNode> 
+{
+
+	/**
+	 * Builds the compiled expressions.
+	 */
+	private ExpressionCompiler compiler;
+
+	/**
+	 * Constructor for the class
+	 */
+	private BehaviorExpressionCompiler() {
+		this.compiler = new ExpressionCompiler(this);
+	}
+
+	/**
+	 * Compiles the expressions in the parse tree given.
+	 * 
+	 * @param tree  parse tree of the behavior program.
+	 * @return compiled expressions. 
+	 */
+	public static CompiledExpressions compile(ParseTree tree) {
+		BehaviorExpressionCompiler visitor = new BehaviorExpressionCompiler();
+		visitor.visit(tree);
+		return visitor.compiler.getExpressions();
+	}
+
+	/**
+	 * Statements are not compiled, so the result of their children is discarded.
+	 */
+	@Override
+	protected ExprNode aggregateResult(ExprNode aggregate, ExprNode nextResult) {
+		return null;
+	}
+
+	@Override
+	public ExprNode visitRef_atom(BehaviorGrammarParser.Ref_atomContext ctx) {
+		return compiler.same(ctx, ctx.atom());
+	}
+
+	@Override
+	public ExprNode visitParens(BehaviorGrammarParser.ParensContext ctx) {
+		return compiler.same(ctx, ctx.expression());
+	}
+
+	@Override
+	public ExprNode visitRef_status(BehaviorGrammarParser.Ref_statusContext ctx) {
+		return compiler.delegate(ctx);
+	}
+
+	@Override
+	public ExprNode visitRef_state(BehaviorGrammarParser.Ref_stateContext ctx) {
+		return compiler.delegate(ctx);
+	}
+
+	@Override
+	public ExprNode visitVar(BehaviorGrammarParser.VarContext ctx) {
+		return compiler.variable(ctx);
+	}
+
+	@Override
+	public ExprNode visitInteger(BehaviorGrammarParser.IntegerContext ctx) {
+		return compiler.integer(ctx);
+	}
+
+	@Override
+	public ExprNode visitYear(BehaviorGrammarParser.YearContext ctx) {
+		return compiler.integer(ctx);
+	}
+
+	@Override
+	public ExprNode visitDigit(BehaviorGrammarParser.DigitContext ctx) {
+		return compiler.integer(ctx);
+	}
+
+	@Override
+	public ExprNode visitFloat(BehaviorGrammarParser.FloatContext ctx) {
+		return compiler.floating(ctx);
+	}
+
+	@Override
+	public ExprNode visitBoolean(BehaviorGrammarParser.BooleanContext ctx) {
+		return compiler.bool(ctx);
+	}
+
+	@Override
+	public ExprNode visitStr(BehaviorGrammarParser.StrContext ctx) {
+		return compiler.string(ctx);
+	}
+
+	@Override
+	public ExprNode visitDate(BehaviorGrammarParser.DateContext ctx) {
+		return compiler.delegate(ctx);
+	}
+
+	@Override
+	public ExprNode visitTime(BehaviorGrammarParser.TimeContext ctx) {
+		return compiler.delegate(ctx);
+	}
+
+	@Override
+	public ExprNode visitDatetime(BehaviorGrammarParser.DatetimeContext ctx) {
+		return compiler.delegate(ctx);
+	}
+
+	@Override
+	public ExprNode visitUnaryMinusExpr(BehaviorGrammarParser.UnaryMinusExprContext ctx) {
+		return compiler.unary(ctx, UnaryOperator.MINUS, ctx.expression());
+	}
+
+	@Override
+	public ExprNode visitNotExpr(BehaviorGrammarParser.NotExprContext ctx) {
+		return compiler.unary(ctx, UnaryOperator.NOT, ctx.expression());
+	}
+
+	@Override
+	public ExprNode visitExpon(BehaviorGrammarParser.ExponContext ctx) {
+		return compiler.binary(ctx, BinaryOperator.EXPO, ctx.expression(0), ctx.expression(1));
+	}
+
+	@Override
+	public ExprNode visitMult(BehaviorGrammarParser.MultContext ctx) {
+		BinaryOperator operator = null;
+		switch (ctx.op.getType()) {
+		case BehaviorGrammarParser.MULT:
+			operator = BinaryOperator.MULT;
+			break;
+		case BehaviorGrammarParser.DIVI:
+			operator = BinaryOperator.DIVI;
+			break;
+		case BehaviorGrammarParser.MOD:
+			operator = BinaryOperator.MOD;
+			break;
+		}
+		return compiler.binary(ctx, operator, ctx.expression(0), ctx.expression(1));
+	}
+
+	@Override
+	public ExprNode visitAddSub(BehaviorGrammarParser.AddSubContext ctx) {
+		BinaryOperator operator = null;
+		switch (ctx.op.getType()) {
+		case BehaviorGrammarParser.PLUS:
+			operator = BinaryOperator.PLUS;
+			break;
+		case BehaviorGrammarParser.MINUS:
+			operator = BinaryOperator.MINUS;
+			break;
+		}
+		return compiler.binary(ctx, operator, ctx.expression(0), ctx.expression(1));
+	}
+
+	@Override
+	public ExprNode visitRelationalExpr(BehaviorGrammarParser.RelationalExprContext ctx) {
+		BinaryOperator operator = null;
+		switch (ctx.op.getType()) {
+		case BehaviorGrammarParser.LT:
+			operator = BinaryOperator.LT;
+			break;
+		case BehaviorGrammarParser.LTEQ:
+			operator = BinaryOperator.LTEQ;
+			break;
+		case BehaviorGrammarParser.GT:
+			operator = BinaryOperator.GT;
+			break;
+		case BehaviorGrammarParser.GTEQ:
+			operator = BinaryOperator.GTEQ;
+			break;
+		}
+		return compiler.binary(ctx, operator, ctx.expression(0), ctx.expression(1));
+	}
+
+	@Override
+	public ExprNode visitEqualityExpr(BehaviorGrammarParser.EqualityExprContext ctx) {
+		BinaryOperator operator = null;
+		switch (ctx.op.getType()) {
+		case BehaviorGrammarParser.EQ:
+			operator = BinaryOperator.EQ;
+			break;
+		case BehaviorGrammarParser.NEQ:
+			operator = BinaryOperator.NEQ;
+			break;
+		}
+		return compiler.binary(ctx, operator, ctx.expression(0), ctx.expression(1));
+	}
+
+	@Override
+	public ExprNode visitAndExpr(BehaviorGrammarParser.AndExprContext ctx) {
+		return compiler.binary(ctx, BinaryOperator.AND, ctx.expression(0), ctx.expression(1));
+	}
+
+	@Override
+	public ExprNode visitOrExpr(BehaviorGrammarParser.OrExprContext ctx) {
+		return compiler.binary(ctx, BinaryOperator.OR, ctx.expression(0), ctx.expression(1));
+	}
+}
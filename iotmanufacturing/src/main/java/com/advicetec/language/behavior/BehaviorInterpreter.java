@@ -1,5 +1,6 @@
 package com.advicetec.language.behavior;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -11,6 +12,7 @@ import java.util.List;
 import java.util.Stack;
 import java.util.StringTokenizer;
 
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeProperty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,6 +21,7 @@ import com.advicetec.configuration.SystemConstants;
 import com.advicetec.core.AttributeType;
 import com.advicetec.core.AttributeValue;
 import com.advicetec.core.EntityFacade;
+import com.advicetec.core.WindowAggregate;
 import com.advicetec.language.BehaviorGrammarBaseVisitor;
 import com.advicetec.language.BehaviorGrammarParser;
 import com.advicetec.language.TransformationGrammarParser;
@@ -39,6 +42,9 @@ import com.advicetec.language.ast.StateSymbol;
 import com.advicetec.language.ast.Symbol;
 import com.advicetec.language.ast.TimerSymbol;
 import com.advicetec.language.ast.VariableSymbol;
+import com.advicetec.language.compiler.CompiledExpressions;
+import com.advicetec.language.compiler.ExprNode;
+import com.advicetec.language.compiler.ExpressionEvaluator;
 import com.advicetec.measuredentitity.MeasuredEntityFacade;
 import com.advicetec.measuredentitity.MeasuringState;
 import com.advicetec.measuredentitity.ExecutedEntityFacade;
@@ -52,7 +58,7 @@ import com.advicetec.measuredentitity.ExecutedEntityFacade;
  * @author Andres Marentes
  *
  */
-public class BehaviorInterpreter extends BehaviorGrammarBaseVisitor<ASTNode>
+public class BehaviorInterpreter extends BehaviorGrammarBaseVisitor<ASTNode> implements ExpressionEvaluator
 {
 
 	static Logger logger = LogManager.getLogger(BehaviorInterpreter.class.getName());
@@ -103,6 +109,11 @@ public class BehaviorInterpreter extends BehaviorGrammarBaseVisitor<ASTNode>
 	 */
 	public static final double SMALL_VALUE = 0.00000000001;
 
+	/**
+	 * Compiled expressions of the program, null if all expressions are evaluated by the visitor.
+	 */
+	CompiledExpressions compiledExpressions;
+
 	/**
 	 * Constructor for the behavior interpreter
 	 * 
@@ -976,6 +987,17 @@ public class BehaviorInterpreter extends BehaviorGrammarBaseVisitor<ASTNode>
 
 		String id = ctx.getText();
 
+		return getVariable(id);
+	}
+
+	/**
+	 * Gets the value of a variable registered in the current memory space
+	 * 
+	 * @param id variable name
+	 * @return value of the variable
+	 */
+	public ASTNode getVariable(String id)
+	{
 		MemorySpace space = getSpaceWithSymbol(id); 
 		ASTNode value = space.get(id);
 		if(value == null) {
@@ -2159,6 +2181,25 @@ public class BehaviorInterpreter extends BehaviorGrammarBaseVisitor<ASTNode>
 			from = now.minusHours(range);
 		}
 		
+		// The aggregate registered in the facade is used instead of the values of the interval.
+		WindowAggregate aggregate = getWindowAggregate(attributeId, timeUnit, range);
+		if (aggregate != null) {
+			int count = aggregate.getCount(now);
+			Object objRet;
+			AttributeType type = aggregate.getAttribute().getType();
+			if (count == 0) {
+				objRet = new Integer(0);
+			} else if (type == AttributeType.VOID) {
+				throw new RuntimeException("The Void type is not comparable with the operator maximum");
+			} else if (type == AttributeType.DOUBLE) {
+				objRet = new Double(aggregate.getSum(now));
+			} else {
+				objRet = new Integer(new Double(aggregate.getSum(now)).intValue());
+			}
+			logger.debug("Output" + objRet + "total samples" + count);
+			return new ASTNode(objRet);
+		}
+
 		List<AttributeValue> values;
 		if (facade instanceof MeasuredEntityFacade) {
 
@@ -2341,6 +2382,17 @@ public class BehaviorInterpreter extends BehaviorGrammarBaseVisitor<ASTNode>
 			from = now.minusHours(range);
 		}
 
+		// The aggregate registered in the facade is used instead of the values of the interval.
+		WindowAggregate aggregate = getWindowAggregate(attributeId, timeUnit, range);
+		if (aggregate != null) {
+			AttributeType type = aggregate.getAttribute().getType();
+			if (((type == AttributeType.VOID) || (type == AttributeType.BOOLEAN)) && (aggregate.getCount(now) > 0)) {
+				throw new RuntimeException("The " + ((type == AttributeType.VOID) ? "Void" : "Boolean") 
+											+ " type is not comparable with the operator maximum");
+			}
+			return new ASTNode(aggregate.getMax(now));
+		}
+
 		List<AttributeValue> values;
 		if (facade instanceof MeasuredEntityFacade) {
 
@@ -2452,6 +2504,45 @@ public class BehaviorInterpreter extends BehaviorGrammarBaseVisitor<ASTNode>
 		return new ASTNode(maxValue);
 	}
 
+	/**
+	 * Gets the sliding window aggregate of an attribute from the facade holding the attribute values, 
+	 * the same facade used to query the values of the interval.
+	 * 
+	 * @param attributeId	attribute name.
+	 * @param timeUnit		time unit of the window: SECOND, MINUTE or HOUR.
+	 * @param range			number of time units of the window.
+	 * @return the aggregate, or null when the values of the interval have to be queried.
+	 */
+	private WindowAggregate getWindowAggregate(String attributeId, String timeUnit, int range)
+	{
+		Duration window;
+		if (timeUnit.compareTo("SECOND") == 0){
+			window = Duration.ofSeconds(range);
+		} else if (timeUnit.compareTo("MINUTE") == 0){
+			window = Duration.ofMinutes(range);
+		} else if (timeUnit.compareTo("HOUR") == 0){
+			window = Duration.ofHours(range);
+		} else {
+			return null;
+		}
+
+		EntityFacade source = null;
+		if (facade instanceof MeasuredEntityFacade) {
+			source = facade;
+		} else if (facade instanceof ExecutedEntityFacade) {
+			if (facade.isAttribute(attributeId)) {
+				source = facade;
+			} else {
+				source = ((ExecutedEntityFacade) facade).getMeasuredEntity(measuredEntityId);
+			}
+		}
+		
+		if (source == null) {
+			return null;
+		}
+		return source.getWindowAggregate(attributeId, window);
+	}
+
 	/** 
 	 * Return scope holding id's value; current func space or global. 
 	 */
@@ -2464,6 +2555,39 @@ public class BehaviorInterpreter extends BehaviorGrammarBaseVisitor<ASTNode>
 		return null;                                        // nowhere
 	}
 
+	/**
+	 * Establishes the compiled expressions used instead of visiting the parse tree.
+	 * 
+	 * @param compiledExpressions  compiled expressions of the program, null to use only the visitor.
+	 */
+	public void setCompiledExpressions(CompiledExpressions compiledExpressions) {
+		this.compiledExpressions = compiledExpressions;
+	}
+
+	/**
+	 * Visits a node of the parse tree. If the node is an expression already compiled, 
+	 * the compiled expression is evaluated instead.
+	 */
+	@Override
+	public ASTNode visit(ParseTree tree) {
+		if (compiledExpressions != null) {
+			ExprNode node = compiledExpressions.get(tree);
+			if (node != null) {
+				return node.evaluate(this);
+			}
+		}
+		return tree.accept(this);
+	}
+
+	/**
+	 * Evaluates the expression given with the visitor, it is used by the compiled expressions 
+	 * for those operands that they do not support.
+	 */
+	@Override
+	public ASTNode interpret(ParseTree tree) {
+		return tree.accept(this);
+	}
+
 	/**
 	 * Gets the reference to the global space
 	 * 
@@ -3,16 +3,12 @@ package com.advicetec.language.behavior;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.tree.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.advicetec.core.EntityFacade;
-import com.advicetec.language.BehaviorGrammarLexer;
 import com.advicetec.language.BehaviorGrammarParser;
 import com.advicetec.language.ast.ASTNode;
 import com.advicetec.language.ast.ArrayAttributeSymbol;
@@ -26,6 +22,7 @@ import com.advicetec.language.ast.Symbol;
 import com.advicetec.language.ast.TimerSymbol;
 import com.advicetec.language.ast.UnitMeasureSymbol;
 import com.advicetec.language.ast.VariableSymbol;
+import com.advicetec.language.compiler.CompiledExpressions;
 import com.advicetec.measuredentitity.MeasuredEntityFacade;
 import com.advicetec.measuredentitity.MeasuredEntityManager;
 import com.advicetec.monitorAdapter.protocolconverter.InterpretedSignal;
@@ -90,7 +87,6 @@ public class BehaviorInterpreterSw
      * @param parameters		List of parameters required for the behavior execution.
      * @throws Exception		Run time exceptions generated during the behavior execution.
      */
-    @SuppressWarnings("deprecation")
 	public void process(String program, EntityFacade entityFacade, Integer measuredEntityId, List<InterpretedSignal> parameters) throws Exception 
     {
         if ((program == null) || program.isEmpty()){
@@ -98,36 +94,22 @@ public class BehaviorInterpreterSw
         	return;
         }
         
-    	CharStream  stream = (CharStream) new ANTLRInputStream(program);
-    	BehaviorGrammarLexer lexer = new BehaviorGrammarLexer(stream);
+        // The behavior text is lexed, parsed and its expressions compiled only once.
+        CompiledBehavior compiled = BehaviorProgramCache.getInstance().getCompiledBehavior(program);
+        ParseTree tree = compiled.getTree();
 
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-
-        BehaviorGrammarParser parser = new BehaviorGrammarParser(tokens);
-
-        parser.setBuildParseTree(true);
-
-        ParseTree tree = parser.program();
-
-	    String mainProgramStr = (parser.getTokenNames())[BehaviorGrammarLexer.PROGRAM];
+	    String mainProgramStr = compiled.getMainProgramName();
 
 	    logger.debug("mainProgramStr:" + mainProgramStr);
-	    
-	    // Token names come with a ' at the begin and end. We remove them. 
-	    mainProgramStr = mainProgramStr.replace("'","");
 
-        ParseTreeWalker walker = new ParseTreeWalker();
-
-        defPhase = new BehaviorDefPhase(parser);
-
-        walker.walk(defPhase, tree);
+        defPhase = compiled.define();
        
         logger.debug("Defphase finished globals: " + defPhase.getGlobalScope().toString());
         
         // create next phase and feed symbol table info from def to ref phase
         MemorySpace globals = new MemorySpace("globals");  
         
-        String programStr = lexer.getRuleNames()[BehaviorGrammarLexer.PROGRAM];
+        String programStr = compiled.getProgramRuleName();
                                 
         Symbol symbol = defPhase.getGlobalScope().resolve(mainProgramStr);
                 
@@ -182,6 +164,9 @@ public class BehaviorInterpreterSw
         }
         
         interpreter = new BehaviorInterpreter(defPhase.getGlobalScope(), globals, defPhase.getScopes(), entityFacade, measuredEntityId);
+        if (CompiledExpressions.isEnabled()){
+        	interpreter.setCompiledExpressions(compiled.getExpressions());
+        }
         interpreter.visit(tree);
         
         
@@ -0,0 +1,85 @@
+package com.advicetec.language.behavior;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * This class maintains the behavior programs already compiled, so every execution of a behavior
+ * does not lex, parse and compile its expressions again.
+ *
+ * Unlike the transformations, the compilation of a behavior does not verify references against
+ * the measured entity, so the programs are indexed only by their text and a new version of a
+ * behavior text is simply a different entry.
+ *
+ * @author Andres Marentes
+ * @see CompiledBehavior
+ */
+public class BehaviorProgramCache
+{
+
+	static Logger logger = LogManager.getLogger(BehaviorProgramCache.class.getName());
+
+	/**
+	 * Maximum number of compiled behaviors to maintain.
+	 */
+	private static final int MAX_SIZE = 1000;
+
+	/**
+	 * Singleton instance
+	 */
+	private static BehaviorProgramCache instance = null;
+
+	/**
+	 * Compiled behaviors by behavior text.
+	 */
+	private Cache<String, CompiledBehavior> cache;
+
+	/**
+	 * Returns the singleton instance for the class, if not created then creates the instance.
+	 *
+	 * @return behavior cache singleton.
+	 */
+	public synchronized static BehaviorProgramCache getInstance()
+	{
+		if (instance == null)
+			instance = new BehaviorProgramCache();
+		return instance;
+	}
+
+	/**
+	 * Constructor for the class
+	 */
+	private BehaviorProgramCache()
+	{
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(MAX_SIZE)
+				.build();
+	}
+
+	/**
+	 * Gets the compiled behavior for the behavior text given.
+	 *
+	 * If the behavior was not compiled before, it is compiled and registered in the cache.
+	 *
+	 * @param program   behavior text, it can not be empty.
+	 * @return compiled behavior
+	 */
+	public CompiledBehavior getCompiledBehavior(String program)
+	{
+		return cache.get(program, text -> {
+			logger.debug("Compiling behavior");
+			return CompiledBehavior.compile(text);
+		});
+	}
+
+	/**
+	 * Removes all the compiled behaviors.
+	 */
+	public void invalidateAll()
+	{
+		cache.invalidateAll();
+	}
+}
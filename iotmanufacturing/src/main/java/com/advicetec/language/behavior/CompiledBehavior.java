@@ -0,0 +1,157 @@
+package com.advicetec.language.behavior;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import com.advicetec.language.BehaviorGrammarLexer;
+import com.advicetec.language.BehaviorGrammarParser;
+import com.advicetec.language.compiler.CompiledExpressions;
+
+/**
+ * This class maintains a behavior program already lexed, parsed and with its expressions compiled.
+ *
+ * As in the transformation programs, the parse tree is not modified by the definition phase or
+ * by the interpreter, so it is shared by every execution of the same behavior text. Every
+ * execution builds its own scopes by walking the definition phase over the cached tree.
+ *
+ * @author Andres Marentes
+ * @see BehaviorProgramCache
+ */
+public class CompiledBehavior
+{
+
+	/**
+	 * Behavior text compiled.
+	 */
+	private String program;
+
+	/**
+	 * Parser used to build the tree, it is required by the definition phase to report errors.
+	 */
+	private BehaviorGrammarParser parser;
+
+	/**
+	 * Parse tree of the behavior text.
+	 */
+	private ParseTree tree;
+
+	/**
+	 * Name of the main program symbol.
+	 */
+	private String mainProgramName;
+
+	/**
+	 * Name of the program rule, used in the error messages.
+	 */
+	private String programRuleName;
+
+	/**
+	 * Compiled expressions of the program.
+	 */
+	private CompiledExpressions expressions;
+
+	/**
+	 * Constructor for the class, it is created by the compile method.
+	 *
+	 * @param program behavior text.
+	 */
+	private CompiledBehavior(String program)
+	{
+		this.program = program;
+	}
+
+	/**
+	 * Lexes and parses the behavior text given as parameter, and compiles its expressions.
+	 *
+	 * @param program behavior text to compile, it can not be empty.
+	 * @return compiled behavior.
+	 */
+	@SuppressWarnings("deprecation")
+	public static CompiledBehavior compile(String program)
+	{
+		CompiledBehavior compiled = new CompiledBehavior(program);
+
+		CharStream  stream = (CharStream) new ANTLRInputStream(program);
+		BehaviorGrammarLexer lexer = new BehaviorGrammarLexer(stream);
+
+		CommonTokenStream tokens = new CommonTokenStream(lexer);
+
+		BehaviorGrammarParser parser = new BehaviorGrammarParser(tokens);
+		parser.setBuildParseTree(true);
+
+		compiled.parser = parser;
+		compiled.tree = parser.program();
+
+		// Token names come with a ' at the begin and end. We remove them.
+		String mainProgramStr = (parser.getTokenNames())[BehaviorGrammarLexer.PROGRAM];
+		compiled.mainProgramName = mainProgramStr.replace("'","");
+		compiled.programRuleName = lexer.getRuleNames()[BehaviorGrammarLexer.PROGRAM];
+
+		compiled.expressions = BehaviorExpressionCompiler.compile(compiled.tree);
+
+		return compiled;
+	}
+
+	/**
+	 * Executes the definition phase over the parse tree.
+	 *
+	 * Every call returns new scopes, so the caller can modify them.
+	 *
+	 * @return definition phase with the global scope and the rest of scopes.
+	 */
+	public BehaviorDefPhase define()
+	{
+		BehaviorDefPhase defPhase = new BehaviorDefPhase(parser);
+		ParseTreeWalker walker = new ParseTreeWalker();
+		walker.walk(defPhase, tree);
+		return defPhase;
+	}
+
+	/**
+	 * Gets the behavior text
+	 *
+	 * @return behavior text.
+	 */
+	public String getProgram() {
+		return program;
+	}
+
+	/**
+	 * Gets the parse tree
+	 *
+	 * @return parse tree.
+	 */
+	public ParseTree getTree() {
+		return tree;
+	}
+
+	/**
+	 * Gets the name of the main program symbol.
+	 *
+	 * @return main program name
+	 */
+	public String getMainProgramName() {
+		return mainProgramName;
+	}
+
+	/**
+	 * Gets the name of the program rule.
+	 *
+	 * @return program rule name
+	 */
+	public String getProgramRuleName() {
+		return programRuleName;
+	}
+
+	/**
+	 * Gets the compiled expressions of the program.
+	 *
+	 * @return compiled expressions.
+	 */
+	public CompiledExpressions getExpressions() {
+		return expressions;
+	}
+}
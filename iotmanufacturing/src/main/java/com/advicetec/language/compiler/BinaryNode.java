@@ -0,0 +1,86 @@
+package com.advicetec.language.compiler;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import com.advicetec.language.ast.ASTNode;
+
+/**
+ * Compiled binary operation.
+ * 
+ * Both operands are always evaluated, as the interpreters do. If one of them is null or their 
+ * types are not supported by the operator, the expression is evaluated again by the visitor. 
+ * This is possible because the operands of a compiled expression do not have side effects.
+ * 
+ * @author Andres Marentes
+ */
+public class BinaryNode extends ExprNode 
+{
+	/**
+	 * Expression in the parse tree.
+	 */
+	private final ParseTree tree;
+
+	/**
+	 * Operator to apply.
+	 */
+	private final BinaryOperator operator;
+
+	/**
+	 * Left operand.
+	 */
+	private final ExprNode left;
+
+	/**
+	 * Right operand.
+	 */
+	private final ExprNode right;
+
+	/**
+	 * Constructor for the class
+	 * 
+	 * @param tree      expression in the parse tree.
+	 * @param operator  operator to apply.
+	 * @param left      left operand.
+	 * @param right     right operand.
+	 */
+	public BinaryNode(ParseTree tree, BinaryOperator operator, ExprNode left, ExprNode right) {
+		this.tree = tree;
+		this.operator = operator;
+		this.left = left;
+		this.right = right;
+	}
+
+	/**
+	 * Creates the node for the operation. If both operands are constants the operation is 
+	 * calculated and a constant is returned.
+	 * 
+	 * @param tree      expression in the parse tree.
+	 * @param operator  operator to apply.
+	 * @param left      left operand.
+	 * @param right     right operand.
+	 * @return node for the operation.
+	 */
+	public static ExprNode create(ParseTree tree, BinaryOperator operator, ExprNode left, ExprNode right) {
+		if (left.isConstant() && right.isConstant()) {
+			ASTNode value = operator.apply(left.evaluate(null), right.evaluate(null));
+			if (value != null) {
+				return new ConstantNode(value);
+			}
+		}
+		return new BinaryNode(tree, operator, left, right);
+	}
+
+	@Override
+	public ASTNode evaluate(ExpressionEvaluator evaluator) {
+		ASTNode leftValue = left.evaluate(evaluator);
+		ASTNode rightValue = right.evaluate(evaluator);
+
+		if ((leftValue != null) && (rightValue != null)) {
+			ASTNode value = operator.apply(leftValue, rightValue);
+			if (value != null) {
+				return value;
+			}
+		}
+		return evaluator.interpret(tree);
+	}
+}
@@ -0,0 +1,182 @@
+package com.advicetec.language.compiler;
+
+import com.advicetec.language.ast.ASTNode;
+
+/**
+ * Binary operators supported by the compiled expressions.
+ * 
+ * Every operator computes the numeric and boolean cases with primitive values. The result 
+ * types and values are the same given by the interpreters: integer operands give an integer 
+ * for multiplication, addition and subtraction, while divisions, modules and exponents always 
+ * give a double. 
+ * 
+ * When the operands are of other types, the operator returns null and the expression is 
+ * evaluated by the visitor, which concatenates strings, compares dates or reports the error.
+ * 
+ * @author Andres Marentes
+ */
+public enum BinaryOperator 
+{
+	MULT {
+		ASTNode apply(ASTNode left, ASTNode right) {
+			if (left.isInteger() && right.isInteger()) {
+				return new ASTNode(Integer.valueOf(left.asInterger().intValue() * right.asInterger().intValue()));
+			} else if (isNumber(left) && isNumber(right)) {
+				return new ASTNode(Double.valueOf(toDouble(left) * toDouble(right)));
+			}
+			return null;
+		}
+	},
+	DIVI {
+		ASTNode apply(ASTNode left, ASTNode right) {
+			if (isNumber(left) && isNumber(right)) {
+				return new ASTNode(Double.valueOf(toDouble(left) / toDouble(right)));
+			}
+			return null;
+		}
+	},
+	MOD {
+		ASTNode apply(ASTNode left, ASTNode right) {
+			if (isNumber(left) && isNumber(right)) {
+				return new ASTNode(Double.valueOf(toDouble(left) % toDouble(right)));
+			}
+			return null;
+		}
+	},
+	PLUS {
+		ASTNode apply(ASTNode left, ASTNode right) {
+			if (left.isInteger() && right.isInteger()) {
+				return new ASTNode(Integer.valueOf(left.asInterger().intValue() + right.asInterger().intValue()));
+			} else if (isNumber(left) && isNumber(right)) {
+				return new ASTNode(Double.valueOf(toDouble(left) + toDouble(right)));
+			}
+			return null;
+		}
+	},
+	MINUS {
+		ASTNode apply(ASTNode left, ASTNode right) {
+			if (left.isInteger() && right.isInteger()) {
+				return new ASTNode(Integer.valueOf(left.asInterger().intValue() - right.asInterger().intValue()));
+			} else if (isNumber(left) && isNumber(right)) {
+				return new ASTNode(Double.valueOf(toDouble(left) - toDouble(right)));
+			}
+			return null;
+		}
+	},
+	EXPO {
+		ASTNode apply(ASTNode left, ASTNode right) {
+			if (isNumber(left) && isNumber(right)) {
+				return new ASTNode(Double.valueOf(Math.pow(toDouble(left), toDouble(right))));
+			}
+			return null;
+		}
+	},
+	LT {
+		ASTNode apply(ASTNode left, ASTNode right) {
+			if (isNumber(left) && isNumber(right)) {
+				return new ASTNode(Boolean.valueOf(toDouble(left) < toDouble(right)));
+			}
+			return null;
+		}
+	},
+	LTEQ {
+		ASTNode apply(ASTNode left, ASTNode right) {
+			if (isNumber(left) && isNumber(right)) {
+				return new ASTNode(Boolean.valueOf(toDouble(left) <= toDouble(right)));
+			}
+			return null;
+		}
+	},
+	GT {
+		ASTNode apply(ASTNode left, ASTNode right) {
+			if (isNumber(left) && isNumber(right)) {
+				return new ASTNode(Boolean.valueOf(toDouble(left) > toDouble(right)));
+			}
+			return null;
+		}
+	},
+	GTEQ {
+		ASTNode apply(ASTNode left, ASTNode right) {
+			if (isNumber(left) && isNumber(right)) {
+				return new ASTNode(Boolean.valueOf(toDouble(left) >= toDouble(right)));
+			}
+			return null;
+		}
+	},
+	EQ {
+		ASTNode apply(ASTNode left, ASTNode right) {
+			if (left.isInteger() && right.isInteger()) {
+				return new ASTNode(Boolean.valueOf(left.asInterger().intValue() == right.asInterger().intValue()));
+			} else if (isNumber(left) && isNumber(right)) {
+				return new ASTNode(Boolean.valueOf(Math.abs(toDouble(left) - toDouble(right)) < SMALL_VALUE));
+			} else if (left.isString() && right.isString()) {
+				return new ASTNode(Boolean.valueOf(left.asString().equals(right.asString())));
+			} else if (left.isBoolean() && right.isBoolean()) {
+				return new ASTNode(Boolean.valueOf(left.asBoolean().booleanValue() == right.asBoolean().booleanValue()));
+			}
+			return null;
+		}
+	},
+	NEQ {
+		ASTNode apply(ASTNode left, ASTNode right) {
+			if (left.isInteger() && right.isInteger()) {
+				// The interpreters compare the Integer objects, not their values.
+				return new ASTNode(Boolean.valueOf(left.asInterger() != right.asInterger()));
+			} else if (isNumber(left) && isNumber(right)) {
+				return new ASTNode(Boolean.valueOf(Math.abs(toDouble(left) - toDouble(right)) > SMALL_VALUE));
+			} else if (left.isString() && right.isString()) {
+				return new ASTNode(Boolean.valueOf(!left.asString().equals(right.asString())));
+			} else if (left.isBoolean() && right.isBoolean()) {
+				return new ASTNode(Boolean.valueOf(left.asBoolean().booleanValue() != right.asBoolean().booleanValue()));
+			}
+			return null;
+		}
+	},
+	AND {
+		ASTNode apply(ASTNode left, ASTNode right) {
+			if (left.isBoolean() && right.isBoolean()) {
+				return new ASTNode(Boolean.valueOf(left.asBoolean().booleanValue() && right.asBoolean().booleanValue()));
+			}
+			return null;
+		}
+	},
+	OR {
+		ASTNode apply(ASTNode left, ASTNode right) {
+			if (left.isBoolean() && right.isBoolean()) {
+				return new ASTNode(Boolean.valueOf(left.asBoolean().booleanValue() || right.asBoolean().booleanValue()));
+			}
+			return null;
+		}
+	};
+
+	/**
+	 * Used to compare floating point numbers, it is the same value used by the interpreters.
+	 */
+	public static final double SMALL_VALUE = 0.00000000001;
+
+	/**
+	 * Applies the operator over the values given.
+	 * 
+	 * @param left   left operand, it can not be null.
+	 * @param right  right operand, it can not be null.
+	 * @return result of the operation, or null if the operands types are not supported.
+	 */
+	abstract ASTNode apply(ASTNode left, ASTNode right);
+
+	/**
+	 * Establishes if the value is an integer or a double.
+	 */
+	static boolean isNumber(ASTNode value) {
+		return value.isInteger() || value.isDouble();
+	}
+
+	/**
+	 * Returns the numeric value as a primitive double. 
+	 */
+	static double toDouble(ASTNode value) {
+		if (value.isInteger()) {
+			return value.asInterger().intValue();
+		}
+		return value.asDouble().doubleValue();
+	}
+}
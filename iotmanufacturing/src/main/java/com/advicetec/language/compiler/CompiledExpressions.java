@@ -0,0 +1,99 @@
+package com.advicetec.language.compiler;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeProperty;
+
+/**
+ * This class maintains the compiled expressions of a program, indexed by their parse tree node.
+ * 
+ * Only expressions without side effects are compiled: literals, variables, attribute status, 
+ * the measured entity state, and arithmetic, relational and logical operations over them. 
+ * Function calls, vectors, string functions and the over time functions are still evaluated 
+ * by the visitor, but the compiled expressions inside them are used.
+ * 
+ * The compilation is optional, it is enabled with the property compile_expressions of 
+ * IotInit.properties. When disabled the interpreters evaluate every expression with the visitor.
+ * 
+ * @author Andres Marentes
+ * @see ExprNode
+ */
+public class CompiledExpressions 
+{
+	/**
+	 * Name of the property used to enable the compilation of expressions.
+	 */
+	public static final String PROPERTY_NAME = "compile_expressions";
+
+	/**
+	 * Establishes if the interpreters should use the compiled expressions.
+	 */
+	private static volatile boolean enabled = false;
+
+	/**
+	 * Compiled expression by parse tree node.
+	 */
+	private final ParseTreeProperty<ExprNode> nodes;
+
+	/**
+	 * Number of compiled expressions
+	 */
+	private int size;
+
+	/**
+	 * Constructor for the class
+	 */
+	public CompiledExpressions() {
+		this.nodes = new ParseTreeProperty<ExprNode>();
+		this.size = 0;
+	}
+
+	/**
+	 * Establishes if the interpreters should use the compiled expressions.
+	 * 
+	 * @return true if the compiled expressions are used, false otherwise.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enables or disables the use of compiled expressions.
+	 * 
+	 * @param value  true to use the compiled expressions.
+	 */
+	public static void setEnabled(boolean value) {
+		enabled = value;
+	}
+
+	/**
+	 * Registers the compiled expression for a parse tree node. 
+	 * 
+	 * @param tree  expression in the parse tree.
+	 * @param node  compiled expression.
+	 * @return the compiled expression.
+	 */
+	public ExprNode put(ParseTree tree, ExprNode node) {
+		nodes.put(tree, node);
+		size++;
+		return node;
+	}
+
+	/**
+	 * Gets the compiled expression for a parse tree node. 
+	 * 
+	 * @param tree  expression in the parse tree.
+	 * @return the compiled expression or null if the expression was not compiled.
+	 */
+	public ExprNode get(ParseTree tree) {
+		return nodes.get(tree);
+	}
+
+	/**
+	 * Gets the number of compiled expressions
+	 * 
+	 * @return number of compiled expressions.
+	 */
+	public int size() {
+		return size;
+	}
+}
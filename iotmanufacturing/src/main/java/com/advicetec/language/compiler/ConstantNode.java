@@ -0,0 +1,35 @@
+package com.advicetec.language.compiler;
+
+import com.advicetec.language.ast.ASTNode;
+
+/**
+ * Compiled literal, or an operation over literals calculated during the compilation.
+ * 
+ * @author Andres Marentes
+ */
+public class ConstantNode extends ExprNode 
+{
+	/**
+	 * Value of the literal.
+	 */
+	private final ASTNode value;
+
+	/**
+	 * Constructor for the class
+	 * 
+	 * @param value  value of the literal.
+	 */
+	public ConstantNode(ASTNode value) {
+		this.value = value;
+	}
+
+	@Override
+	public ASTNode evaluate(ExpressionEvaluator evaluator) {
+		return value;
+	}
+
+	@Override
+	public boolean isConstant() {
+		return true;
+	}
+}
@@ -0,0 +1,33 @@
+package com.advicetec.language.compiler;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import com.advicetec.language.ast.ASTNode;
+
+/**
+ * Expression without side effects that is evaluated by the visitor, for example the status of 
+ * an attribute or a date literal.
+ * 
+ * @author Andres Marentes
+ */
+public class DelegateNode extends ExprNode 
+{
+	/**
+	 * Expression to evaluate with the visitor.
+	 */
+	private final ParseTree tree;
+
+	/**
+	 * Constructor for the class
+	 * 
+	 * @param tree  expression to evaluate with the visitor.
+	 */
+	public DelegateNode(ParseTree tree) {
+		this.tree = tree;
+	}
+
+	@Override
+	public ASTNode evaluate(ExpressionEvaluator evaluator) {
+		return evaluator.interpret(tree);
+	}
+}
@@ -0,0 +1,36 @@
+package com.advicetec.language.compiler;
+
+import com.advicetec.language.ast.ASTNode;
+
+/**
+ * Node of a compiled expression.
+ * 
+ * A compiled expression is a tree of nodes created once from the parse tree. Literals are 
+ * already converted, variable names are already extracted and operators are already 
+ * selected, so the evaluation does not visit the parse tree.
+ * 
+ * Nodes do not keep state between evaluations, so a compiled expression can be evaluated by 
+ * several interpreters at the same time.
+ * 
+ * @author Andres Marentes
+ * @see CompiledExpressions
+ */
+public abstract class ExprNode 
+{
+	/**
+	 * Evaluates the expression.
+	 * 
+	 * @param evaluator  interpreter executing the program.
+	 * @return value of the expression.
+	 */
+	public abstract ASTNode evaluate(ExpressionEvaluator evaluator);
+
+	/**
+	 * Establishes if the value of the expression is known at compilation time.
+	 * 
+	 * @return true if the node is a constant, false otherwise.
+	 */
+	public boolean isConstant() {
+		return false;
+	}
+}
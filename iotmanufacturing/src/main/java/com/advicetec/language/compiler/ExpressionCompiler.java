@@ -0,0 +1,148 @@
+package com.advicetec.language.compiler;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeVisitor;
+
+import com.advicetec.language.ast.ASTNode;
+
+/**
+ * This class compiles the expressions shared by the transformation and behavior languages.
+ *
+ * Both grammars define the same expression rules, but ANTLR generates a different context
+ * class and a different base visitor for each of them. The visitors of both languages only map
+ * their contexts and token types to the methods of this class, which builds the compiled nodes
+ * and registers them in the CompiledExpressions.
+ *
+ * Every method returns the compiled node of the expression, or null if the expression can not
+ * be compiled.
+ *
+ * @author Andres Marentes
+ * @see com.advicetec.language.transformation.TransformationExpressionCompiler
+ * @see com.advicetec.language.behavior.BehaviorExpressionCompiler
+ */
+public class ExpressionCompiler
+{
+
+	/**
+	 * Visitor of the language, used to compile the operands.
+	 */
+	private final ParseTreeVisitor<ExprNode> visitor;
+
+	/**
+	 * Compiled expressions found so far.
+	 */
+	private final CompiledExpressions expressions;
+
+	/**
+	 * Constructor for the class
+	 *
+	 * @param visitor  visitor of the language that calls this compiler.
+	 */
+	public ExpressionCompiler(ParseTreeVisitor<ExprNode> visitor) {
+		this.visitor = visitor;
+		this.expressions = new CompiledExpressions();
+	}
+
+	/**
+	 * Gets the compiled expressions found so far.
+	 *
+	 * @return compiled expressions.
+	 */
+	public CompiledExpressions getExpressions() {
+		return expressions;
+	}
+
+	/**
+	 * Compiles an expression whose value is the value of another one, as an atom or parentheses.
+	 */
+	public ExprNode same(ParseTree ctx, ParseTree inner) {
+		return register(ctx, visitor.visit(inner));
+	}
+
+	/**
+	 * Compiles an expression that the interpreter has to evaluate.
+	 */
+	public ExprNode delegate(ParseTree ctx) {
+		return new DelegateNode(ctx);
+	}
+
+	/**
+	 * Compiles a reference to a variable.
+	 */
+	public ExprNode variable(ParseTree ctx) {
+		return register(ctx, new VariableNode(ctx.getText()));
+	}
+
+	/**
+	 * Compiles an integer literal. If the text does not fit in an integer, the literal is left
+	 * to the interpreter so it reports the error during the execution.
+	 */
+	public ExprNode integer(ParseTree ctx) {
+		try {
+			return register(ctx, new ConstantNode(new ASTNode(Integer.valueOf(ctx.getText()))));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Compiles a float literal.
+	 */
+	public ExprNode floating(ParseTree ctx) {
+		try {
+			return register(ctx, new ConstantNode(new ASTNode(Double.valueOf(ctx.getText()))));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Compiles a boolean literal.
+	 */
+	public ExprNode bool(ParseTree ctx) {
+		return register(ctx, new ConstantNode(new ASTNode(Boolean.valueOf(ctx.getText()))));
+	}
+
+	/**
+	 * Compiles a string literal, removing the quotes.
+	 */
+	public ExprNode string(ParseTree ctx) {
+		String str = ctx.getText();
+		str = str.substring(1, str.length() - 1).replace("\"\"", "\"");
+		return register(ctx, new ConstantNode(new ASTNode(str)));
+	}
+
+	/**
+	 * Compiles an unary operation, its operand is compiled even if the operation can not be.
+	 */
+	public ExprNode unary(ParseTree ctx, UnaryOperator operator, ParseTree operand) {
+		ExprNode operandNode = visitor.visit(operand);
+		if (operandNode == null) {
+			return null;
+		}
+		return register(ctx, UnaryNode.create(ctx, operator, operandNode));
+	}
+
+	/**
+	 * Compiles a binary operation, both operands are compiled even if the operation can not be.
+	 */
+	public ExprNode binary(ParseTree ctx, BinaryOperator operator, ParseTree left, ParseTree right) {
+		ExprNode leftNode = visitor.visit(left);
+		ExprNode rightNode = visitor.visit(right);
+		if ((operator == null) || (leftNode == null) || (rightNode == null)) {
+			return null;
+		}
+		return register(ctx, BinaryNode.create(ctx, operator, leftNode, rightNode));
+	}
+
+	/**
+	 * Registers the compiled expression for the parse tree node, delegated expressions are not
+	 * registered because the interpreter would evaluate them in the same way.
+	 */
+	private ExprNode register(ParseTree ctx, ExprNode node) {
+		if ((node == null) || (node instanceof DelegateNode)) {
+			return node;
+		}
+		return expressions.put(ctx, node);
+	}
+}
@@ -0,0 +1,33 @@
+package com.advicetec.language.compiler;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import com.advicetec.language.ast.ASTNode;
+
+/**
+ * Interface implemented by the interpreters to execute compiled expressions.
+ * 
+ * Compiled expressions read the variables from the memory spaces of the interpreter and 
+ * delegate to the visitor those expressions that can not be evaluated by the compiled code.
+ * 
+ * @author Andres Marentes
+ * @see ExprNode
+ */
+public interface ExpressionEvaluator 
+{
+	/**
+	 * Gets the value of the variable given from the current memory space.
+	 * 
+	 * @param id  variable name.
+	 * @return value of the variable.
+	 */
+	public ASTNode getVariable(String id);
+
+	/**
+	 * Evaluates the parse tree given with the visitor, without using its compiled expression.
+	 * 
+	 * @param tree  expression to evaluate.
+	 * @return value of the expression.
+	 */
+	public ASTNode interpret(ParseTree tree);
+}
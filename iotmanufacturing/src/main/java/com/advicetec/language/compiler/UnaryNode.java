@@ -0,0 +1,73 @@
+package com.advicetec.language.compiler;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import com.advicetec.language.ast.ASTNode;
+
+/**
+ * Compiled unary operation, it falls back to the visitor in the same cases as BinaryNode.
+ * 
+ * @author Andres Marentes
+ * @see BinaryNode
+ */
+public class UnaryNode extends ExprNode 
+{
+	/**
+	 * Expression in the parse tree.
+	 */
+	private final ParseTree tree;
+
+	/**
+	 * Operator to apply.
+	 */
+	private final UnaryOperator operator;
+
+	/**
+	 * Operand.
+	 */
+	private final ExprNode operand;
+
+	/**
+	 * Constructor for the class
+	 * 
+	 * @param tree      expression in the parse tree.
+	 * @param operator  operator to apply.
+	 * @param operand   operand.
+	 */
+	public UnaryNode(ParseTree tree, UnaryOperator operator, ExprNode operand) {
+		this.tree = tree;
+		this.operator = operator;
+		this.operand = operand;
+	}
+
+	/**
+	 * Creates the node for the operation, calculating it if the operand is a constant.
+	 * 
+	 * @param tree      expression in the parse tree.
+	 * @param operator  operator to apply.
+	 * @param operand   operand.
+	 * @return node for the operation.
+	 */
+	public static ExprNode create(ParseTree tree, UnaryOperator operator, ExprNode operand) {
+		if (operand.isConstant()) {
+			ASTNode value = operator.apply(operand.evaluate(null));
+			if (value != null) {
+				return new ConstantNode(value);
+			}
+		}
+		return new UnaryNode(tree, operator, operand);
+	}
+
+	@Override
+	public ASTNode evaluate(ExpressionEvaluator evaluator) {
+		ASTNode value = operand.evaluate(evaluator);
+
+		if (value != null) {
+			ASTNode result = operator.apply(value);
+			if (result != null) {
+				return result;
+			}
+		}
+		return evaluator.interpret(tree);
+	}
+}
@@ -0,0 +1,42 @@
+package com.advicetec.language.compiler;
+
+import com.advicetec.language.ast.ASTNode;
+
+/**
+ * Unary operators supported by the compiled expressions.
+ * 
+ * As with the binary operators, null is returned when the operand type is not supported, so 
+ * the expression is evaluated by the visitor.
+ * 
+ * @author Andres Marentes
+ * @see BinaryOperator
+ */
+public enum UnaryOperator 
+{
+	MINUS {
+		ASTNode apply(ASTNode value) {
+			if (value.isInteger()) {
+				return new ASTNode(Integer.valueOf(value.asInterger().intValue() * -1));
+			} else if (value.isDouble()) {
+				return new ASTNode(Double.valueOf(value.asDouble().doubleValue() * -1));
+			}
+			return null;
+		}
+	},
+	NOT {
+		ASTNode apply(ASTNode value) {
+			if (value.isBoolean()) {
+				return new ASTNode(Boolean.valueOf(!value.asBoolean().booleanValue()));
+			}
+			return null;
+		}
+	};
+
+	/**
+	 * Applies the operator over the value given.
+	 * 
+	 * @param value  operand, it can not be null.
+	 * @return result of the operation, or null if the operand type is not supported.
+	 */
+	abstract ASTNode apply(ASTNode value);
+}
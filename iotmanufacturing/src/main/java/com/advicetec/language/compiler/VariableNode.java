@@ -0,0 +1,30 @@
+package com.advicetec.language.compiler;
+
+import com.advicetec.language.ast.ASTNode;
+
+/**
+ * Compiled reference to a variable, the value is read from the interpreter memory spaces.
+ * 
+ * @author Andres Marentes
+ */
+public class VariableNode extends ExprNode 
+{
+	/**
+	 * Name of the variable.
+	 */
+	private final String id;
+
+	/**
+	 * Constructor for the class
+	 * 
+	 * @param id  name of the variable.
+	 */
+	public VariableNode(String id) {
+		this.id = id;
+	}
+
+	@Override
+	public ASTNode evaluate(ExpressionEvaluator evaluator) {
+		return evaluator.getVariable(id);
+	}
+}
@@ -0,0 +1,214 @@
+package com.advicetec.language.transformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.advicetec.language.TransformationGrammarLexer;
+import com.advicetec.language.TransformationGrammarParser;
+import com.advicetec.language.ast.CollectionErrorListener;
+import com.advicetec.language.ast.SyntaxError;
+import com.advicetec.language.compiler.CompiledExpressions;
+import com.advicetec.measuredentitity.MeasuredEntityFacade;
+
+/**
+ * This class maintains a transformation program already lexed, parsed and checked.
+ *
+ * The parse tree is never modified by the definition phase or by the interpreter, so it can be
+ * shared between threads and reused for every sample that uses the same transformation text.
+ *
+ * The symbol table is not shared, because the interpreter defines timers, aggregates and displays
+ * in the global scope during the execution. Every execution builds its own scopes by walking the
+ * definition phase over the cached tree, which does not require to lex and parse the text again.
+ *
+ * The expressions of the program are also compiled once, they are evaluated by the interpreter
+ * when the compilation of expressions is enabled.
+ *
+ * @author Andres Marentes
+ * @see TransformationProgramCache
+ */
+public class CompiledProgram
+{
+
+	static Logger logger = LogManager.getLogger(CompiledProgram.class.getName());
+
+	/**
+	 * Transformation text compiled.
+	 */
+	private String program;
+
+	/**
+	 * Parser used to build the tree, it is required by the definition phase to report errors.
+	 */
+	private TransformationGrammarParser parser;
+
+	/**
+	 * Parse tree of the transformation text, null if the program is empty.
+	 */
+	private ParseTree tree;
+
+	/**
+	 * Name of the main program symbol.
+	 */
+	private String mainProgramName;
+
+	/**
+	 * Errors found during the syntax checking.
+	 */
+	private List<SyntaxError> errors;
+
+	/**
+	 * Compiled expressions of the program, null if the program is empty.
+	 */
+	private CompiledExpressions expressions;
+
+	/**
+	 * Constructor for the class, it is created by the parse method.
+	 *
+	 * @param program transformation text.
+	 */
+	private CompiledProgram(String program)
+	{
+		this.program = program;
+		this.errors = new ArrayList<SyntaxError>();
+	}
+
+	/**
+	 * Lexes and parses the transformation text given as parameter.
+	 *
+	 * Syntax errors are collected, they can be read with the method getErrors.
+	 *
+	 * @param program transformation text to parse
+	 * @return compiled program, its tree is null if the program is empty.
+	 */
+	public static CompiledProgram parse(String program)
+	{
+		CompiledProgram compiled = new CompiledProgram(program);
+
+		if ((program == null) || program.isEmpty()){
+			return compiled;
+		}
+
+		CharStream  stream = (CharStream) new ANTLRInputStream(program);
+		TransformationGrammarLexer lexer = new TransformationGrammarLexer(stream);
+
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+
+        TransformationGrammarParser parser = new TransformationGrammarParser(tokens);
+        parser.setBuildParseTree(true);
+        parser.removeErrorListeners();
+        CollectionErrorListener collector = new CollectionErrorListener();
+        parser.addErrorListener(collector);
+
+        compiled.parser = parser;
+        compiled.tree = parser.program();
+        compiled.errors.addAll(collector.getErrors());
+
+	    // Token names come with a ' at the begin and end. We remove them.
+        String mainProgramStr = (parser.getTokenNames())[TransformationGrammarLexer.PROGRAM];
+	    compiled.mainProgramName = mainProgramStr.replace("'","");
+
+        return compiled;
+	}
+
+	/**
+	 * Lexes, parses and verifies the references of the transformation text given as parameter.
+	 *
+	 * @param program transformation text to compile
+	 * @param facade  measured entity facade used to verify the references.
+	 * @return compiled program with the syntax errors found.
+	 */
+	public static CompiledProgram compile(String program, MeasuredEntityFacade facade)
+	{
+		CompiledProgram compiled = parse(program);
+
+		if (compiled.tree == null){
+			return compiled;
+		}
+
+        ParseTreeWalker walker = new ParseTreeWalker();
+        DefPhase def = compiled.define();
+
+        RefPhase ref = new RefPhase(compiled.parser, def.getGlobalScope(), def.getScopes(), facade);
+        walker.walk(ref, compiled.tree);
+
+        // Add the custom errors created during the Ref phase.
+        for (SyntaxError e : ref.getErrors())  {
+        	compiled.errors.add(e);
+        }
+
+        compiled.expressions = TransformationExpressionCompiler.compile(compiled.tree);
+
+        logger.debug("Program compiled - num errors:" + compiled.errors.size() + " compiled expressions:" + compiled.expressions.size());
+
+        return compiled;
+	}
+
+	/**
+	 * Executes the definition phase over the parse tree.
+	 *
+	 * Every call returns new scopes, so the caller can modify them.
+	 *
+	 * @return definition phase with the global scope and the rest of scopes.
+	 */
+	public DefPhase define()
+	{
+		DefPhase defPhase = new DefPhase(parser);
+		ParseTreeWalker walker = new ParseTreeWalker();
+		walker.walk(defPhase, tree);
+		return defPhase;
+	}
+
+	/**
+	 * Gets the transformation text
+	 *
+	 * @return transformation text.
+	 */
+	public String getProgram() {
+		return program;
+	}
+
+	/**
+	 * Gets the parse tree
+	 *
+	 * @return parse tree or null if the program is empty.
+	 */
+	public ParseTree getTree() {
+		return tree;
+	}
+
+	/**
+	 * Gets the name of the main program symbol.
+	 *
+	 * @return main program name
+	 */
+	public String getMainProgramName() {
+		return mainProgramName;
+	}
+
+	/**
+	 * Gets the compiled expressions of the program.
+	 *
+	 * @return compiled expressions or null if the program is empty or was only parsed.
+	 */
+	public CompiledExpressions getExpressions() {
+		return expressions;
+	}
+
+	/**
+	 * Gets the errors found during the compilation.
+	 *
+	 * @return unmodifiable list of syntax errors.
+	 */
+	public List<SyntaxError> getErrors() {
+		return Collections.unmodifiableList(errors);
+	}
+}
@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Stack;
 import java.util.StringTokenizer;
 
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeProperty;
 import org.antlr.v4.runtime.Token;
 import org.apache.logging.log4j.LogManager;
@@ -36,6 +37,9 @@ import com.advicetec.language.ast.TimerSymbol;
 import com.advicetec.language.ast.TransformationSpace;
 import com.advicetec.language.ast.TransformationSymbol;
 import com.advicetec.language.ast.VariableSymbol;
+import com.advicetec.language.compiler.CompiledExpressions;
+import com.advicetec.language.compiler.ExprNode;
+import com.advicetec.language.compiler.ExpressionEvaluator;
 import com.advicetec.measuredentitity.MeasuredEntityFacade;
 import com.advicetec.measuredentitity.MeasuringState;
 
@@ -48,7 +52,7 @@ import com.advicetec.measuredentitity.MeasuringState;
  * @author Andres Marentes
  *
  */
-public class Interpreter extends TransformationGrammarBaseVisitor<ASTNode>
+public class Interpreter extends TransformationGrammarBaseVisitor<ASTNode> implements ExpressionEvaluator
 {
  	
 	static Logger logger = LogManager.getLogger(Interpreter.class.getName()); 
@@ -107,6 +111,11 @@ public class Interpreter extends TransformationGrammarBaseVisitor<ASTNode>
 	 */
     public static final double SMALL_VALUE = 0.00000000001;
 
+	/**
+	 * Compiled expressions of the program, null if all expressions are evaluated by the visitor.
+	 */
+	CompiledExpressions compiledExpressions;
+
 	/**
 	 * Constructor for the transformation interpreter
 	 * 
@@ -753,6 +762,17 @@ public class Interpreter extends TransformationGrammarBaseVisitor<ASTNode>
 		String id = ctx.getText();
 		logger.debug("visitVar:" + id);
 				
+		return getVariable(id);
+	}
+
+	/**
+	 * Gets the value of a variable registered in the current memory space
+	 * 
+	 * @param id variable name
+	 * @return value of the variable
+	 */
+	public ASTNode getVariable(String id)
+	{
 		MemorySpace space = getSpaceWithSymbol(id); 
         ASTNode value = space.get(id);
         if(value == null) {
@@ -1903,6 +1923,39 @@ public class Interpreter extends TransformationGrammarBaseVisitor<ASTNode>
         return null;                                        // nowhere
     }
 
+	/**
+	 * Establishes the compiled expressions used instead of visiting the parse tree.
+	 * 
+	 * @param compiledExpressions  compiled expressions of the program, null to use only the visitor.
+	 */
+	public void setCompiledExpressions(CompiledExpressions compiledExpressions) {
+		this.compiledExpressions = compiledExpressions;
+	}
+
+	/**
+	 * Visits a node of the parse tree. If the node is an expression already compiled, 
+	 * the compiled expression is evaluated instead.
+	 */
+	@Override
+	public ASTNode visit(ParseTree tree) {
+		if (compiledExpressions != null) {
+			ExprNode node = compiledExpressions.get(tree);
+			if (node != null) {
+				return node.evaluate(this);
+			}
+		}
+		return tree.accept(this);
+	}
+
+	/**
+	 * Evaluates the expression given with the visitor, it is used by the compiled expressions 
+	 * for those operands that they do not support.
+	 */
+	@Override
+	public ASTNode interpret(ParseTree tree) {
+		return tree.accept(this);
+	}
+
 	/**
 	 * Gets the reference to the global space
 	 * 
@@ -3,6 +3,7 @@ package com.advicetec.language.transformation;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntFunction;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CharStream;
@@ -27,6 +28,8 @@ import com.advicetec.language.ast.TimerSymbol;
 import com.advicetec.language.ast.TransformationSymbol;
 import com.advicetec.language.ast.UnitMeasureSymbol;
 import com.advicetec.language.ast.VariableSymbol;
+import com.advicetec.core.AttributeType;
+import com.advicetec.language.compiler.CompiledExpressions;
 import com.advicetec.measuredentitity.MeasuredEntityFacade;
 import com.advicetec.measuredentitity.MeasuredEntityManager;
 import com.advicetec.monitorAdapter.protocolconverter.InterpretedSignal;
@@ -91,40 +94,87 @@ public class InterpreterSw
      */
     public void process(String program, Integer entityId, List<InterpretedSignal> parameters) throws Exception 
     {
+    	process(CompiledProgram.parse(program), entityId, parameters);
+    }
+
+    /**
+     * Interprets the transformation already compiled given as parameter 
+     *  
+     *   The parse tree is reused, only the definition phase and the interpretation are executed.  
+     *   
+     * @param compiled		compiled transformation to interpret
+     * @param entityId		measure entity id for which the behavior is going to be run. 				
+     * @param parameters	List of parameters required for the behavior execution.
+     * 
+     * @throws Exception	Run time exceptions generated during the behavior execution.
+     * @see TransformationProgramCache
+     */
+    public void process(CompiledProgram compiled, Integer entityId, List<InterpretedSignal> parameters) throws Exception 
+    {
+        MeasuredEntityManager manager = MeasuredEntityManager.getInstance();
+        process(compiled, manager.getFacadeOfEntityById(entityId), parameters);
+    }
+
+    /**
+     * Interprets the transformation already compiled over the given measured entity facade 
+     *  
+     * @param compiled		compiled transformation to interpret
+     * @param facade		measured entity facade for which the transformation is going to be run.
+     * @param parameters	List of parameters required for the behavior execution.
+     * 
+     * @throws Exception	Run time exceptions generated during the behavior execution.
+     */
+    public void process(CompiledProgram compiled, MeasuredEntityFacade facade, List<InterpretedSignal> parameters) throws Exception 
+    {
+    	process(compiled, facade, parameters.size(), i -> parameters.get(i).getValue());
+    }
 
-        if ((program == null) || program.isEmpty()){
+    /**
+     * Interprets the transformation already compiled with the primitive values of a sample 
+     *  
+     *   The values are given to the program without creating an interpreted signal for each of them.  
+     *   
+     * @param compiled		compiled transformation to interpret
+     * @param entityId		measure entity id for which the transformation is going to be run. 				
+     * @param values		values of the sample, a value of a boolean type is true when it is one.
+     * @param valueType		type of the values.
+     * 
+     * @throws Exception	Run time exceptions generated during the transformation execution.
+     * @see com.advicetec.MessageProcessor.SampleMessage#getPrimitiveValues()
+     */
+    public void process(CompiledProgram compiled, Integer entityId, int[] values, AttributeType valueType) throws Exception 
+    {
+        MeasuredEntityManager manager = MeasuredEntityManager.getInstance();
+        if (valueType == AttributeType.BOOLEAN) {
+        	process(compiled, manager.getFacadeOfEntityById(entityId), values.length, i -> Boolean.valueOf(values[i] == 1));
+        } else {
+        	process(compiled, manager.getFacadeOfEntityById(entityId), values.length, i -> Integer.valueOf(values[i]));
+        }
+    }
+
+    /**
+     * Interprets the transformation, the value of every parameter is given by its position.
+     */
+    private void process(CompiledProgram compiled, MeasuredEntityFacade facade, int argCount, IntFunction<Object> arguments) throws Exception 
+    {
+
+        if (compiled.getTree() == null){
         	logger.error("The program given is empty");
         	return;
         }
     	
-    	CharStream  stream = (CharStream) new ANTLRInputStream(program);
-		TransformationGrammarLexer lexer = new TransformationGrammarLexer(stream);
-		
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        ParseTree tree = compiled.getTree();
 
-        TransformationGrammarParser parser = new TransformationGrammarParser(tokens);
-
-        parser.setBuildParseTree(true);
+	    String mainProgramStr = compiled.getMainProgramName();
         
-        ParseTree tree = parser.program();
-
-	    String mainProgramStr = (parser.getTokenNames())[TransformationGrammarLexer.PROGRAM];
-	    
-	    // Token names come with a ' at the begin and end. We remove them. 
-	    mainProgramStr = mainProgramStr.replace("'","");
-        
-        ParseTreeWalker walker = new ParseTreeWalker();
-
-        defPhase = new DefPhase(parser);
-
-        walker.walk(defPhase, tree);
+        defPhase = compiled.define();
         
         logger.debug("Defphase finished globals: " + defPhase.getGlobalScope().toString());
         
         // create next phase and feed symbol table info from def to ref phase
         MemorySpace globals = new MemorySpace("globals");  
         
-        String programStr = lexer.getRuleNames()[TransformationGrammarLexer.PROGRAM];
+        String programStr = TransformationGrammarLexer.ruleNames[TransformationGrammarLexer.PROGRAM];
                                 
         Symbol symbol = defPhase.getGlobalScope().resolve(mainProgramStr);
                 
@@ -152,7 +202,6 @@ public class InterpreterSw
         Map<String, Symbol> parametersDef =  ts.getMembers();
 
         // The following code verifies the number of parameters given.
-        int argCount = parameters.size();
         if ( argCount==0 )
         {
         	if (
@@ -180,16 +229,16 @@ public class InterpreterSw
         int i = 0;
         for (Symbol argS : ((TransformationSymbol)ts).getMembers().values()) {
             VariableSymbol arg = (VariableSymbol)argS;
-            ASTNode argValue = new ASTNode(parameters.get(i).getValue()); 
+            ASTNode argValue = new ASTNode(arguments.apply(i)); 
             globals.put(arg.getName(), argValue);
             i++;
         }
 
-        MeasuredEntityManager manager = MeasuredEntityManager.getInstance();
-        MeasuredEntityFacade facade = manager.getFacadeOfEntityById(entityId);
-
         logger.debug("before creating a new instance of interpreter");
         interpreter = new Interpreter(defPhase.getGlobalScope(), globals, defPhase.getScopes(), facade);
+        if (CompiledExpressions.isEnabled()){
+        	interpreter.setCompiledExpressions(compiled.getExpressions());
+        }
                 
         if (tree instanceof TransformationGrammarParser.ProgramContext){
         	logger.debug("ok it is the correct programa context");
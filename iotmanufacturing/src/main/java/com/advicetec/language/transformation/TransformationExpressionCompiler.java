@@ -0,0 +1,220 @@
+package com.advicetec.language.transformation;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import com.advicetec.language.TransformationGrammarBaseVisitor;
+import com.advicetec.language.TransformationGrammarParser;
+import com.advicetec.language.compiler.BinaryOperator;
+import com.advicetec.language.compiler.CompiledExpressions;
+import com.advicetec.language.compiler.ExprNode;
+import com.advicetec.language.compiler.ExpressionCompiler;
+import com.advicetec.language.compiler.UnaryOperator;
+
+/**
+ * This class compiles the expressions of a transformation program. 
+ * 
+ * The visitor maps the expression contexts and operator tokens of the transformation grammar to the 
+ * ExpressionCompiler, which builds the compiled nodes. The visitor returns the compiled node 
+ * of every expression, or null if the expression can not be compiled. Every compiled expression 
+ * is registered in the CompiledExpressions, so the interpreter can use it instead of visiting 
+ * the parse tree. 
+ * 
+ * @author Andres Marentes
+ * @see Interpreter
+ * @see ExpressionCompiler
+ */
+public class TransformationExpressionCompiler extends TransformationGrammarBaseVisitor<ExprNode> 
+{
+
+	/**
+	 * Builds the compiled expressions.
+	 */
+	private ExpressionCompiler compiler;
+
+	/**
+	 * Constructor for the class
+	 */
+	private TransformationExpressionCompiler() {
+		this.compiler = new ExpressionCompiler(this);
+	}
+
+	/**
+	 * Compiles the expressions in the parse tree given.
+	 * 
+	 * @param tree  parse tree of the transformation program.
+	 * @return compiled expressions. 
+	 */
+	public static CompiledExpressions compile(ParseTree tree) {
+		TransformationExpressionCompiler visitor = new TransformationExpressionCompiler();
+		visitor.visit(tree);
+		return visitor.compiler.getExpressions();
+	}
+
+	/**
+	 * Statements are not compiled, so the result of their children is discarded.
+	 */
+	@Override
+	protected ExprNode aggregateResult(ExprNode aggregate, ExprNode nextResult) {
+		return null;
+	}
+
+	@Override
+	public ExprNode visitRef_atom(TransformationGrammarParser.Ref_atomContext ctx) {
+		return compiler.same(ctx, ctx.atom());
+	}
+
+	@Override
+	public ExprNode visitParens(TransformationGrammarParser.ParensContext ctx) {
+		return compiler.same(ctx, ctx.expression());
+	}
+
+	@Override
+	public ExprNode visitRef_status(TransformationGrammarParser.Ref_statusContext ctx) {
+		return compiler.delegate(ctx);
+	}
+
+	@Override
+	public ExprNode visitRef_state(TransformationGrammarParser.Ref_stateContext ctx) {
+		return compiler.delegate(ctx);
+	}
+
+	@Override
+	public ExprNode visitVar(TransformationGrammarParser.VarContext ctx) {
+		return compiler.variable(ctx);
+	}
+
+	@Override
+	public ExprNode visitInteger(TransformationGrammarParser.IntegerContext ctx) {
+		return compiler.integer(ctx);
+	}
+
+	@Override
+	public ExprNode visitYear(TransformationGrammarParser.YearContext ctx) {
+		return compiler.integer(ctx);
+	}
+
+	@Override
+	public ExprNode visitDigit(TransformationGrammarParser.DigitContext ctx) {
+		return compiler.integer(ctx);
+	}
+
+	@Override
+	public ExprNode visitFloat(TransformationGrammarParser.FloatContext ctx) {
+		return compiler.floating(ctx);
+	}
+
+	@Override
+	public ExprNode visitBoolean(TransformationGrammarParser.BooleanContext ctx) {
+		return compiler.bool(ctx);
+	}
+
+	@Override
+	public ExprNode visitStr(TransformationGrammarParser.StrContext ctx) {
+		return compiler.string(ctx);
+	}
+
+	@Override
+	public ExprNode visitDate(TransformationGrammarParser.DateContext ctx) {
+		return compiler.delegate(ctx);
+	}
+
+	@Override
+	public ExprNode visitTime(TransformationGrammarParser.TimeContext ctx) {
+		return compiler.delegate(ctx);
+	}
+
+	@Override
+	public ExprNode visitDatetime(TransformationGrammarParser.DatetimeContext ctx) {
+		return compiler.delegate(ctx);
+	}
+
+	@Override
+	public ExprNode visitUnaryMinusExpr(TransformationGrammarParser.UnaryMinusExprContext ctx) {
+		return compiler.unary(ctx, UnaryOperator.MINUS, ctx.expression());
+	}
+
+	@Override
+	public ExprNode visitNotExpr(TransformationGrammarParser.NotExprContext ctx) {
+		return compiler.unary(ctx, UnaryOperator.NOT, ctx.expression());
+	}
+
+	@Override
+	public ExprNode visitExpon(TransformationGrammarParser.ExponContext ctx) {
+		return compiler.binary(ctx, BinaryOperator.EXPO, ctx.expression(0), ctx.expression(1));
+	}
+
+	@Override
+	public ExprNode visitMult(TransformationGrammarParser.MultContext ctx) {
+		BinaryOperator operator = null;
+		switch (ctx.op.getType()) {
+		case TransformationGrammarParser.MULT:
+			operator = BinaryOperator.MULT;
+			break;
+		case TransformationGrammarParser.DIVI:
+			operator = BinaryOperator.DIVI;
+			break;
+		case TransformationGrammarParser.MOD:
+			operator = BinaryOperator.MOD;
+			break;
+		}
+		return compiler.binary(ctx, operator, ctx.expression(0), ctx.expression(1));
+	}
+
+	@Override
+	public ExprNode visitAddSub(TransformationGrammarParser.AddSubContext ctx) {
+		BinaryOperator operator = null;
+		switch (ctx.op.getType()) {
+		case TransformationGrammarParser.PLUS:
+			operator = BinaryOperator.PLUS;
+			break;
+		case TransformationGrammarParser.MINUS:
+			operator = BinaryOperator.MINUS;
+			break;
+		}
+		return compiler.binary(ctx, operator, ctx.expression(0), ctx.expression(1));
+	}
+
+	@Override
+	public ExprNode visitRelationalExpr(TransformationGrammarParser.RelationalExprContext ctx) {
+		BinaryOperator operator = null;
+		switch (ctx.op.getType()) {
+		case TransformationGrammarParser.LT:
+			operator = BinaryOperator.LT;
+			break;
+		case TransformationGrammarParser.LTEQ:
+			operator = BinaryOperator.LTEQ;
+			break;
+		case TransformationGrammarParser.GT:
+			operator = BinaryOperator.GT;
+			break;
+		case TransformationGrammarParser.GTEQ:
+			operator = BinaryOperator.GTEQ;
+			break;
+		}
+		return compiler.binary(ctx, operator, ctx.expression(0), ctx.expression(1));
+	}
+
+	@Override
+	public ExprNode visitEqualityExpr(TransformationGrammarParser.EqualityExprContext ctx) {
+		BinaryOperator operator = null;
+		switch (ctx.op.getType()) {
+		case TransformationGrammarParser.EQ:
+			operator = BinaryOperator.EQ;
+			break;
+		case TransformationGrammarParser.NEQ:
+			operator = BinaryOperator.NEQ;
+			break;
+		}
+		return compiler.binary(ctx, operator, ctx.expression(0), ctx.expression(1));
+	}
+
+	@Override
+	public ExprNode visitAndExpr(TransformationGrammarParser.AndExprContext ctx) {
+		return compiler.binary(ctx, BinaryOperator.AND, ctx.expression(0), ctx.expression(1));
+	}
+
+	@Override
+	public ExprNode visitOrExpr(TransformationGrammarParser.OrExprContext ctx) {
+		return compiler.binary(ctx, BinaryOperator.OR, ctx.expression(0), ctx.expression(1));
+	}
+}
@@ -0,0 +1,163 @@
+package com.advicetec.language.transformation;
+
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.advicetec.measuredentitity.MeasuredEntityFacade;
+import com.advicetec.measuredentitity.MeasuredEntityManager;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * This class maintains the transformation programs already compiled, so samples coming from
+ * the same input output port do not lex, parse and check the transformation text again.
+ *
+ * Programs are indexed by the measured entity and the hash of the transformation text. Because
+ * the reference checking depends on the measured entity, entries for an entity must be
+ * invalidated when the configuration of its input output ports changes, and when its behaviors
+ * change, since the imports of a program are verified against the behavior texts.
+ *
+ * @author Andres Marentes
+ * @see CompiledProgram
+ */
+public class TransformationProgramCache
+{
+
+	static Logger logger = LogManager.getLogger(TransformationProgramCache.class.getName());
+
+	/**
+	 * Maximum number of compiled programs to maintain.
+	 */
+	private static final int MAX_SIZE = 2000;
+
+	/**
+	 * Singleton instance
+	 */
+	private static TransformationProgramCache instance = null;
+
+	/**
+	 * Compiled programs by measured entity and transformation text hash.
+	 */
+	private Cache<ProgramKey, CompiledProgram> cache;
+
+	/**
+	 * Returns the singleton instance for the class, if not created then creates the instance.
+	 *
+	 * @return program cache singleton.
+	 */
+	public synchronized static TransformationProgramCache getInstance()
+	{
+		if (instance == null)
+			instance = new TransformationProgramCache();
+		return instance;
+	}
+
+	/**
+	 * Constructor for the class
+	 */
+	private TransformationProgramCache()
+	{
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(MAX_SIZE)
+				.build();
+	}
+
+	/**
+	 * Gets the compiled program for the transformation text and measured entity given.
+	 *
+	 * If the program was not compiled before, it is compiled and registered in the cache.
+	 *
+	 * @param program   transformation text
+	 * @param entityId  measured entity for which the transformation is executed.
+	 * @return compiled program
+	 */
+	public CompiledProgram getCompiledProgram(String program, Integer entityId)
+	{
+		return getCompiledProgram(program, entityId,
+				() -> MeasuredEntityManager.getInstance().getFacadeOfEntityById(entityId));
+	}
+
+	/**
+	 * Gets the compiled program for the transformation text and measured entity given.
+	 *
+	 * @param program   transformation text
+	 * @param entityId  measured entity for which the transformation is executed.
+	 * @param facade    gives the facade used to verify the references, it is only called
+	 *                  when the program has to be compiled.
+	 * @return compiled program
+	 */
+	CompiledProgram getCompiledProgram(String program, Integer entityId, Supplier<MeasuredEntityFacade> facade)
+	{
+		if ((program == null) || program.isEmpty()){
+			return CompiledProgram.parse(program);
+		}
+
+		ProgramKey key = new ProgramKey(entityId, program.hashCode());
+		CompiledProgram compiled = cache.getIfPresent(key);
+
+		// Two different texts can have the same hash, in such case the program is replaced.
+		if ((compiled == null) || (!compiled.getProgram().equals(program))){
+			logger.debug("Compiling transformation for entity:" + entityId);
+			compiled = CompiledProgram.compile(program, facade.get());
+			cache.put(key, compiled);
+		}
+
+		return compiled;
+	}
+
+	/**
+	 * Removes the compiled programs of the measured entity given.
+	 *
+	 * @param entityId measured entity identifier.
+	 */
+	public void invalidateEntity(Integer entityId)
+	{
+		for (ProgramKey key : cache.asMap().keySet()){
+			if (key.entityId.equals(entityId)){
+				cache.invalidate(key);
+			}
+		}
+	}
+
+	/**
+	 * Removes all the compiled programs.
+	 */
+	public void invalidateAll()
+	{
+		cache.invalidateAll();
+	}
+
+	/**
+	 * Key of the cache, it is composed by the measured entity and the hash of the program.
+	 */
+	private static final class ProgramKey
+	{
+		private final Integer entityId;
+		private final int programHash;
+
+		ProgramKey(Integer entityId, int programHash)
+		{
+			this.entityId = entityId;
+			this.programHash = programHash;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * entityId.hashCode() + programHash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof ProgramKey))
+				return false;
+			ProgramKey other = (ProgramKey) obj;
+			return (programHash == other.programHash) && entityId.equals(other.entityId);
+		}
+	}
+}
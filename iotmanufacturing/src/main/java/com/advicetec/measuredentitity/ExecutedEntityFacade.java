@@ -276,26 +276,33 @@ public final class ExecutedEntityFacade extends EntityFacade {
 					actualRate = new Double(0.0);
 				} else {
 				
-					List<AttributeValue> list = measuringEntityFacade.getByIntervalByAttributeName(actualProductionCountId, interval.getStart(), interval.getEnd());
+					double sum = 0;
 					
-					//logger.debug("Registering interval - number of rows:" + list.size() );
+					// The counter opened in the measured entity at the start of the interval has the sum.
+					Double counted = measuringEntityFacade.getIntervalCount(getIntervalCounterOwner(), actualProductionCountId, interval.getStart());
+					if (counted != null) {
+						sum = counted;
+					} else {
+						List<AttributeValue> list = measuringEntityFacade.getByIntervalByAttributeName(actualProductionCountId, interval.getStart(), interval.getEnd());
 					
-					double sum = 0;
-					// Calculates the actual rate as the sum(count) / Interval.duration (minutes)
-					for (AttributeValue attributeValue : list) 
-					{
+						//logger.debug("Registering interval - number of rows:" + list.size() );
+					
+						// Calculates the actual rate as the sum(count) / Interval.duration (minutes)
+						for (AttributeValue attributeValue : list) 
+						{
 						
-						MeasuredAttributeValue measvalue = (MeasuredAttributeValue) attributeValue;
+							MeasuredAttributeValue measvalue = (MeasuredAttributeValue) attributeValue;
 						
-						if ((measvalue.getValue() instanceof Double) || (measvalue.getValue() instanceof Integer)){
-							if (measvalue.getValue() instanceof Double) {
-								sum = sum + (Double) measvalue.getValue();
+							if ((measvalue.getValue() instanceof Double) || (measvalue.getValue() instanceof Integer)){
+								if (measvalue.getValue() instanceof Double) {
+									sum = sum + (Double) measvalue.getValue();
+								} else {
+									sum = sum + (Integer) measvalue.getValue();
+								}
 							} else {
-								sum = sum + (Integer) measvalue.getValue();
+								logger.error("The production count attribute: " + actualProductionCountId + " parametrized is not of type Double or Integer");
+								break;
 							}
-						} else {
-							logger.error("The production count attribute: " + actualProductionCountId + " parametrized is not of type Double or Integer");
-							break;
 						}
 					}
 					
@@ -340,6 +347,21 @@ public final class ExecutedEntityFacade extends EntityFacade {
 		
 	}
 	
+	/**
+	 * Opens the production counter of the interval starting at the given datetime in the measured entity 
+	 * where the executed entity is processed.
+	 * 
+	 * @param measuringEntityId Measured entity identifier where the executed entity is being processed.
+	 * @param start				start of the interval.
+	 */
+	private void openIntervalCounter(Integer measuringEntityId, LocalDateTime start)
+	{
+		MeasuredEntityFacade measuringEntityFacade = this.processedOn.get(measuringEntityId);
+		if (measuringEntityFacade != null) {
+			measuringEntityFacade.openIntervalCounter(getIntervalCounterOwner(), actualProductionCountId, start);
+		}
+	}
+
 	/**
 	 * Register a new state interval in the executed entity.
 	 * 
@@ -348,18 +370,23 @@ public final class ExecutedEntityFacade extends EntityFacade {
 	 * @param interval : 		date from and to when the interval happens.
 	 * @param measuringEntityId Measured entity identifier where the executed entiti is being processed.
 	 */
-	public synchronized void registerInterval(MeasuringState status, ReasonCode reasonCode, TimeInterval interval, Integer measuringEntityId)
+	public void registerInterval(MeasuringState status, ReasonCode reasonCode, TimeInterval interval, Integer measuringEntityId)
 	{
-		logger.debug("registerInterval Start " + String.valueOf(measuringEntityId));
+		lock.writeLock().lock();
+		try {
+			logger.debug("registerInterval Start " + String.valueOf(measuringEntityId));
 		
-		StateInterval stateInterval = BuildStateInterval(status, reasonCode, interval, measuringEntityId);
+			StateInterval stateInterval = BuildStateInterval(status, reasonCode, interval, measuringEntityId);
 		
-		// key in the map and the cache must be consistent
-		statesMap.put(interval.getStart(),stateInterval.getKey());
-		StateIntervalCache.getInstance().storeToCache(stateInterval);
+			// key in the map and the cache must be consistent
+			statesMap.put(interval.getStart(),stateInterval.getKey());
+			StateIntervalCache.getInstance().storeToCache(stateInterval);
 		
-		logger.debug("registerInterval End " + String.valueOf(measuringEntityId));
+			logger.debug("registerInterval End " + String.valueOf(measuringEntityId));
 		
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -367,11 +394,16 @@ public final class ExecutedEntityFacade extends EntityFacade {
 	 *   
 	 * @param entityFacade  Facade to the measured entity where the executed entity is being produced. 
 	 */
-	public synchronized void addMeasuredEntity(MeasuredEntityFacade entityFacade)
+	public void addMeasuredEntity(MeasuredEntityFacade entityFacade)
 	{
-		logger.debug("addMeasuredEntity Start " + String.valueOf(entityFacade.getEntity().getId()));
-		this.processedOn.put(entityFacade.getEntity().getId(), entityFacade);
-		logger.debug("addMeasuredEntity End " + String.valueOf(entityFacade.getEntity().getId()));
+		lock.writeLock().lock();
+		try {
+			logger.debug("addMeasuredEntity Start " + String.valueOf(entityFacade.getEntity().getId()));
+			this.processedOn.put(entityFacade.getEntity().getId(), entityFacade);
+			logger.debug("addMeasuredEntity End " + String.valueOf(entityFacade.getEntity().getId()));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -379,21 +411,28 @@ public final class ExecutedEntityFacade extends EntityFacade {
 	 * 
 	 * @param measuredEntityId  Identifier to be removed.
 	 */
-	public synchronized boolean deleteMeasuredEntity(Integer measuredEntityId)
+	public boolean deleteMeasuredEntity(Integer measuredEntityId)
 	{
-		logger.debug("deleteMeasuredEntity Start " + String.valueOf(measuredEntityId));
-		if (this.processedOn.remove(measuredEntityId) != null) {
-			logger.debug("deleteMeasuredEntity End " + String.valueOf(measuredEntityId));
-			return true;
-		}
-		else {
-			logger.debug("deleteMeasuredEntity End " + String.valueOf(measuredEntityId));
-			return false;
+		lock.writeLock().lock();
+		try {
+			logger.debug("deleteMeasuredEntity Start " + String.valueOf(measuredEntityId));
+			MeasuredEntityFacade measuredEntityFacade = this.processedOn.remove(measuredEntityId);
+			if (measuredEntityFacade != null) {
+				measuredEntityFacade.closeIntervalCounter(getIntervalCounterOwner());
+				logger.debug("deleteMeasuredEntity End " + String.valueOf(measuredEntityId));
+				return true;
+			}
+			else {
+				logger.debug("deleteMeasuredEntity End " + String.valueOf(measuredEntityId));
+				return false;
+			}
+		} finally {
+			lock.writeLock().unlock();
 		}
 	}
 	
 	
-	public synchronized MeasuredEntityFacade getMeasuredEntity(Integer measuredEntityId)
+	public MeasuredEntityFacade getMeasuredEntity(Integer measuredEntityId)
 	{
 		logger.debug("getMeasuredEntity call");
 		return this.processedOn.get(measuredEntityId); 
@@ -408,7 +447,7 @@ public final class ExecutedEntityFacade extends EntityFacade {
 	 * 
 	 * @return  list of downtime reasons.
 	 */
- 	public synchronized JSONArray getJsonDowntimeReasons(LocalDateTime from,	LocalDateTime to) 
+ 	public JSONArray getJsonDowntimeReasons(LocalDateTime from,	LocalDateTime to) 
 	{
  		logger.debug("getJsonDowntimeReasons Start");
 		logger.debug("In getJsonDowntimeReasons + from:" + from.toString() + " to:" + to.toString());
@@ -476,24 +515,31 @@ public final class ExecutedEntityFacade extends EntityFacade {
 	 * 
 	 * The production order is said to be in operation when it is executed in any measured entity.
 	 */
-	public synchronized void start(Integer measuredEntityId)
+	public void start(Integer measuredEntityId)
 	{
-		logger.debug("start Start " + String.valueOf(measuredEntityId));
-		if (((ExecutedEntity)getEntity()).getCurrentState(measuredEntityId) != MeasuringState.UNDEFINED) {
+		lock.writeLock().lock();
+		try {
+			logger.debug("start Start " + String.valueOf(measuredEntityId));
+			if (((ExecutedEntity)getEntity()).getCurrentState(measuredEntityId) != MeasuringState.UNDEFINED) {
 			
-			// This case happens when the executed object has already been processing in the executed entity and it is going to be reprocessed.
+				// This case happens when the executed object has already been processing in the executed entity and it is going to be reprocessed.
 			
-			TimeInterval tInterval = new TimeInterval(((ExecutedEntity)getEntity()).getCurrentStatDateTime(measuredEntityId), 
-													LocalDateTime.now());
+				TimeInterval tInterval = new TimeInterval(((ExecutedEntity)getEntity()).getCurrentStatDateTime(measuredEntityId), 
+														LocalDateTime.now());
 		
-			registerInterval(((ExecutedEntity)getEntity()).getCurrentState(measuredEntityId), 
-						 ((ExecutedEntity)getEntity()).getCurrentReason(measuredEntityId), 
-						 tInterval, measuredEntityId);
-		} 
+				registerInterval(((ExecutedEntity)getEntity()).getCurrentState(measuredEntityId), 
+							 ((ExecutedEntity)getEntity()).getCurrentReason(measuredEntityId), 
+							 tInterval, measuredEntityId);
+			} 
 		
-		((ExecutedEntity) getEntity()).startInterval(measuredEntityId, LocalDateTime.now(), MeasuringState.OPERATING, null);
+			LocalDateTime start = LocalDateTime.now();
+			((ExecutedEntity) getEntity()).startInterval(measuredEntityId, start, MeasuringState.OPERATING, null);
+			openIntervalCounter(measuredEntityId, start);
 
-		logger.debug("start End " + String.valueOf(measuredEntityId));
+			logger.debug("start End " + String.valueOf(measuredEntityId));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 	
 	/**
@@ -503,29 +549,37 @@ public final class ExecutedEntityFacade extends EntityFacade {
 	 * 
 	 * This means that only the production order is stopped when is not in process in all measured entities.
 	 */
-	public synchronized void stop(Integer measuringEntityId)
+	public void stop(Integer measuringEntityId)
 	
 	{
-		logger.debug("stop Start " + String.valueOf(measuringEntityId));
-		logger.debug("Stopping the production order");
+		lock.writeLock().lock();
+		try {
+			logger.debug("stop Start " + String.valueOf(measuringEntityId));
+			logger.debug("Stopping the production order");
 
-		if ( this.processedOn.containsKey(measuringEntityId) ) {
+			if ( this.processedOn.containsKey(measuringEntityId) ) {
 			
-			//logger.debug("Registering the final interval for the production order");
+				//logger.debug("Registering the final interval for the production order");
 
-			TimeInterval tInterval= new TimeInterval( ((ExecutedEntity)getEntity()).getCurrentStatDateTime(measuringEntityId), 
-													  LocalDateTime.now());
+				TimeInterval tInterval= new TimeInterval( ((ExecutedEntity)getEntity()).getCurrentStatDateTime(measuringEntityId), 
+														  LocalDateTime.now());
 			
-			registerInterval(((ExecutedEntity) getEntity()).getCurrentState(measuringEntityId), 
-							 ((ExecutedEntity) getEntity()).getCurrentReason(measuringEntityId), 
-							 tInterval, measuringEntityId);
+				registerInterval(((ExecutedEntity) getEntity()).getCurrentState(measuringEntityId), 
+								 ((ExecutedEntity) getEntity()).getCurrentReason(measuringEntityId), 
+								 tInterval, measuringEntityId);
 			
-			((ExecutedEntity) getEntity()).startInterval(measuringEntityId, LocalDateTime.now(), MeasuringState.UNSCHEDULEDOWN, null);
+				((ExecutedEntity) getEntity()).startInterval(measuringEntityId, LocalDateTime.now(), MeasuringState.UNSCHEDULEDOWN, null);
+				
+				// the actual rate is only calculated while operating.
+				this.processedOn.get(measuringEntityId).closeIntervalCounter(getIntervalCounterOwner());
 		
-		}
+			}
 
-		logger.debug("Finish production order stop ");
-		logger.debug("stop End " + String.valueOf(measuringEntityId));
+			logger.debug("Finish production order stop ");
+			logger.debug("stop End " + String.valueOf(measuringEntityId));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -536,7 +590,7 @@ public final class ExecutedEntityFacade extends EntityFacade {
 	 * 
 	 * @return the current value or null
 	 */
-	public synchronized AttributeValue getProcessEntityAttribute(String attributeId, Integer measuredEntityId) {
+	public AttributeValue getProcessEntityAttribute(String attributeId, Integer measuredEntityId) {
 		logger.debug("getProcessEntityAttribute Start " + String.valueOf(measuredEntityId));
 		MeasuredEntityFacade measuredEntityFacade = this.processedOn.get(measuredEntityId);
 		
@@ -574,7 +628,7 @@ public final class ExecutedEntityFacade extends EntityFacade {
 	 *  
 	 * @return  If there is not entity assigned return undefined.
 	 */    
-	public synchronized MeasuringState getCurrentState(Integer measuredEntityId){
+	public MeasuringState getCurrentState(Integer measuredEntityId){
 		logger.debug("getCurrentState Start " + String.valueOf(measuredEntityId));
     	 if (this.entity == null){
     		 logger.debug("getCurrentState End " + String.valueOf(measuredEntityId));
@@ -603,6 +657,7 @@ public final class ExecutedEntityFacade extends EntityFacade {
 		} else {
 			((ExecutedEntity) this.getEntity()).startInterval(measuredEntityId, localDateTime, newState, null);
 		}
+		openIntervalCounter(measuredEntityId, localDateTime);
 		logger.debug("changeState End " + String.valueOf(measuredEntityId));
 		//logger.debug ("current state:" + (((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId)));
 	}
@@ -615,115 +670,125 @@ public final class ExecutedEntityFacade extends EntityFacade {
 	 * @param measuredEntityId 	This parameter corresponds to the measured entity where the behavior is begin run.
 	 * 								It is required only for executed entities needing to register intervals on particular machines.
 	 */
-	public synchronized void setCurrentState(Map<String, ASTNode> symbolMap, Integer measuredEntityId) {
-		logger.debug("setCurrentState Start " + String.valueOf(measuredEntityId));
-		logger.debug("In set current state");
-		
-		for (Map.Entry<String, ASTNode> entry : symbolMap.entrySet()) 
-		{
-			if(entry.getKey().compareTo("state") == 0 ){
-				ASTNode node = entry.getValue();
+	public void setCurrentState(Map<String, ASTNode> symbolMap, Integer measuredEntityId) {
+		lock.writeLock().lock();
+		try {
+			logger.debug("setCurrentState Start " + String.valueOf(measuredEntityId));
+			logger.debug("In set current state");
+		
+			for (Map.Entry<String, ASTNode> entry : symbolMap.entrySet()) 
+			{
+				if(entry.getKey().compareTo("state") == 0 ){
+					ASTNode node = entry.getValue();
 				
-				MeasuringState newState = node.asMeasuringState();
+					MeasuringState newState = node.asMeasuringState();
 				
-				logger.debug("In set current state - new state:" + newState.getName());
+					logger.debug("In set current state - new state:" + newState.getName());
 				 
-				if (newState == MeasuringState.OPERATING){
+					if (newState == MeasuringState.OPERATING){
 					
-					if ( (((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.OPERATING) || 
-							(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId)) ) {
+						if ( (((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.OPERATING) || 
+								(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId)) ) {
 						
-						changeState(measuredEntityId, MeasuringState.OPERATING, false);
+							changeState(measuredEntityId, MeasuringState.OPERATING, false);
 						
-					}
+						}
 					
-				} else if (newState == MeasuringState.SCHEDULEDOWN){
+					} else if (newState == MeasuringState.SCHEDULEDOWN){
 					
-					if ((((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.SCHEDULEDOWN) || 
-							(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId))) {
+						if ((((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.SCHEDULEDOWN) || 
+								(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId))) {
 						
-						changeState(measuredEntityId, MeasuringState.SCHEDULEDOWN, false);
+							changeState(measuredEntityId, MeasuringState.SCHEDULEDOWN, false);
 												
-					}
+						}
 					
-				} else if (newState == MeasuringState.UNSCHEDULEDOWN){
+					} else if (newState == MeasuringState.UNSCHEDULEDOWN){
 					
-					if ((((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.UNSCHEDULEDOWN) || 
-							(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId))) {
+						if ((((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.UNSCHEDULEDOWN) || 
+								(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId))) {
 						
-						changeState(measuredEntityId, MeasuringState.UNSCHEDULEDOWN, true);
+							changeState(measuredEntityId, MeasuringState.UNSCHEDULEDOWN, true);
 						
-					}
+						}
 					
-				} else if (newState == MeasuringState.INITIALIZING){
+					} else if (newState == MeasuringState.INITIALIZING){
 					
-					if ((((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.INITIALIZING) || 
-							(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId))) {
+						if ((((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.INITIALIZING) || 
+								(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId))) {
 						
-						changeState(measuredEntityId, MeasuringState.INITIALIZING, false);
+							changeState(measuredEntityId, MeasuringState.INITIALIZING, false);
 						
-					}
+						}
 					
-				} else {
-					logger.error("The new state is being set to undefined, which is incorrect");
-				}	
+					} else {
+						logger.error("The new state is being set to undefined, which is incorrect");
+					}	
+				}
 			}
+			logger.debug("setCurrentState End " + String.valueOf(measuredEntityId));
+		} finally {
+			lock.writeLock().unlock();
 		}
-		logger.debug("setCurrentState End " + String.valueOf(measuredEntityId));
 	}
 	
-	public synchronized void setCurrentState(MeasuringState newState, Integer measuredEntityId) {
-		logger.debug("setCurrentState Start " + String.valueOf(measuredEntityId));
-		if (newState == MeasuringState.OPERATING) {
-			if ( (((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.OPERATING) || 
-					(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId)) ) {
+	public void setCurrentState(MeasuringState newState, Integer measuredEntityId) {
+		lock.writeLock().lock();
+		try {
+			logger.debug("setCurrentState Start " + String.valueOf(measuredEntityId));
+			if (newState == MeasuringState.OPERATING) {
+				if ( (((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.OPERATING) || 
+						(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId)) ) {
 
-				changeState(measuredEntityId, MeasuringState.OPERATING, false);
+					changeState(measuredEntityId, MeasuringState.OPERATING, false);
 
-			}
+				}
 
-		} else if (newState == MeasuringState.SCHEDULEDOWN){
+			} else if (newState == MeasuringState.SCHEDULEDOWN){
 
-			if ((((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.SCHEDULEDOWN) || 
-					(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId))) {
+				if ((((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.SCHEDULEDOWN) || 
+						(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId))) {
 
-				changeState(measuredEntityId, MeasuringState.SCHEDULEDOWN, false);
+					changeState(measuredEntityId, MeasuringState.SCHEDULEDOWN, false);
 
-			}
+				}
 
-		} else if (newState == MeasuringState.UNSCHEDULEDOWN){
+			} else if (newState == MeasuringState.UNSCHEDULEDOWN){
 
-			if ((((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.UNSCHEDULEDOWN) || 
-					(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId))) {
+				if ((((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.UNSCHEDULEDOWN) || 
+						(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId))) {
 
-				changeState(measuredEntityId, MeasuringState.UNSCHEDULEDOWN, false);
+					changeState(measuredEntityId, MeasuringState.UNSCHEDULEDOWN, false);
 
-			}
+				}
 
-		} else if (newState == MeasuringState.SYSTEMDOWN) {
+			} else if (newState == MeasuringState.SYSTEMDOWN) {
 
-			if ((((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.SYSTEMDOWN) || 
-					(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId))) {
+				if ((((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.SYSTEMDOWN) || 
+						(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId))) {
 
-				changeState(measuredEntityId, MeasuringState.SYSTEMDOWN, false);
+					changeState(measuredEntityId, MeasuringState.SYSTEMDOWN, false);
 
-			}
+				}
 
-		} else if (newState == MeasuringState.INITIALIZING) {
+			} else if (newState == MeasuringState.INITIALIZING) {
 
-			if ((((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.INITIALIZING) || 
-					(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId))) {
+				if ((((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) != MeasuringState.INITIALIZING) || 
+						(((ExecutedEntity) this.getEntity()).startNewInterval(measuredEntityId))) {
 
-				changeState(measuredEntityId, MeasuringState.INITIALIZING, false);
+					changeState(measuredEntityId, MeasuringState.INITIALIZING, false);
 
-			}
+				}
 
-		} 
+			} 
 		
-		else {
-			logger.error("The new state is being set to undefined, which is incorrect");
-		}	
-		logger.debug("setCurrentState End " + String.valueOf(measuredEntityId));
+			else {
+				logger.error("The new state is being set to undefined, which is incorrect");
+			}	
+			logger.debug("setCurrentState End " + String.valueOf(measuredEntityId));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 	/**
 	 * Update a previously defined stat, assigning its reason code. 
@@ -733,51 +798,76 @@ public final class ExecutedEntityFacade extends EntityFacade {
 	 * 	
 	 * @return	true if the intervals was found and updated, false otherwise.
 	 */
-	public synchronized boolean updateStateInterval(Integer measuredEntityId, MeasuredEntityType measuredEntityType,  String startDttmStr, ReasonCode reasonCode) {
-		logger.debug("updateStateInterval Start " + String.valueOf(measuredEntityId));
-		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
-		LocalDateTime startDttm = LocalDateTime.parse(startDttmStr, formatter);
+	public boolean updateStateInterval(Integer measuredEntityId, MeasuredEntityType measuredEntityType,  String startDttmStr, ReasonCode reasonCode) {
+		lock.writeLock().lock();
+		try {
+			logger.debug("updateStateInterval Start " + String.valueOf(measuredEntityId));
+			DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+			LocalDateTime startDttm = LocalDateTime.parse(startDttmStr, formatter);
 		
-		logger.debug("reasoncode id:" + reasonCode.getId() + " descr:" + reasonCode.getDescription() + " startDttm:" + startDttm );
+			logger.debug("reasoncode id:" + reasonCode.getId() + " descr:" + reasonCode.getDescription() + " startDttm:" + startDttm );
 		
-		boolean ret = false;
+			boolean ret = false;
 		
-		if ( ((ExecutedEntity) this.getEntity()).getCurrentStatDateTime(measuredEntityId).withNano(0).equals(startDttm)){
+			if ( ((ExecutedEntity) this.getEntity()).getCurrentStatDateTime(measuredEntityId).withNano(0).equals(startDttm)){
 			
-			logger.debug("Updating the current state interval");
+				logger.debug("Updating the current state interval");
 			
-			((ExecutedEntity) this.getEntity()).setCurrentReasonCode(measuredEntityId, reasonCode);
-			ret = true;
+				((ExecutedEntity) this.getEntity()).setCurrentReasonCode(measuredEntityId, reasonCode);
+				ret = true;
 		
-		} else {
+			} else {
 
-			logger.debug("Updating the past state interval");
+				logger.debug("Updating the past state interval");
 			
-			LocalDateTime oldest = stateCache.getOldestTime();
+				LocalDateTime oldest = stateCache.getOldestTime();
 			
-			logger.debug("oldest" + oldest.format(formatter));
+				logger.debug("oldest" + oldest.format(formatter));
 			
 
-			LocalDateTime enddttm; 
-			boolean updateEntityReason;
-			if(oldest.isAfter(startDttm) )
-			{
-				logger.debug("the datetime given is after");
-				// some values are in the database and maybe we have to continue updating the intervals. 
-				enddttm = stateCache.updateExecutedEntityStateInterval(this.entity.getId(), this.entity.getType(), 
-													measuredEntityId, measuredEntityType, startDttm, reasonCode);
+				LocalDateTime enddttm; 
+				boolean updateEntityReason;
+				if(oldest.isAfter(startDttm) )
+				{
+					logger.debug("the datetime given is after");
+					// some values are in the database and maybe we have to continue updating the intervals. 
+					enddttm = stateCache.updateExecutedEntityStateInterval(this.entity.getId(), this.entity.getType(), 
+														measuredEntityId, measuredEntityType, startDttm, reasonCode);
 				
-				// We have to continue updating the intervals in the cache.
-				if (enddttm == null) {
+					// We have to continue updating the intervals in the cache.
+					if (enddttm == null) {
+						updateEntityReason = false;
+						SortedMap<LocalDateTime, String> tail = this.statesMap.tailMap(enddttm);
+						for (Map.Entry<LocalDateTime, String> entry : tail.entrySet()) {
+							StateInterval tmp = stateCache.getFromCache(entry.getValue());
+							if ( tmp.getState() == MeasuringState.OPERATING) {
+								updateEntityReason = true;
+								break;
+							}
+						
+							else {
+								if ((tmp.getRelatedObject() == measuredEntityId) && (tmp.getRelatedObjectType() == measuredEntityType.getValue())){   
+									stateCache.updateCacheStateInterval(entry.getValue(), reasonCode);
+								}
+							}
+						}
+						if (((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) == MeasuringState.UNSCHEDULEDOWN && !(updateEntityReason)) {
+							((ExecutedEntity) this.getEntity()).setCurrentReasonCode(measuredEntityId, reasonCode);
+						}
+					}
+					 				
+				} else if(oldest.isBefore(startDttm)){
+					// all values are in the state cache
+					logger.debug("the datetime given is before");
 					updateEntityReason = false;
-					SortedMap<LocalDateTime, String> tail = this.statesMap.tailMap(enddttm);
+					SortedMap<LocalDateTime, String> tail = this.statesMap.tailMap(startDttm);
 					for (Map.Entry<LocalDateTime, String> entry : tail.entrySet()) {
 						StateInterval tmp = stateCache.getFromCache(entry.getValue());
 						if ( tmp.getState() == MeasuringState.OPERATING) {
 							updateEntityReason = true;
 							break;
 						}
-						
+					
 						else {
 							if ((tmp.getRelatedObject() == measuredEntityId) && (tmp.getRelatedObjectType() == measuredEntityType.getValue())){   
 								stateCache.updateCacheStateInterval(entry.getValue(), reasonCode);
@@ -788,33 +878,13 @@ public final class ExecutedEntityFacade extends EntityFacade {
 						((ExecutedEntity) this.getEntity()).setCurrentReasonCode(measuredEntityId, reasonCode);
 					}
 				}
-					 				
-			} else if(oldest.isBefore(startDttm)){
-				// all values are in the state cache
-				logger.debug("the datetime given is before");
-				updateEntityReason = false;
-				SortedMap<LocalDateTime, String> tail = this.statesMap.tailMap(startDttm);
-				for (Map.Entry<LocalDateTime, String> entry : tail.entrySet()) {
-					StateInterval tmp = stateCache.getFromCache(entry.getValue());
-					if ( tmp.getState() == MeasuringState.OPERATING) {
-						updateEntityReason = true;
-						break;
-					}
-					
-					else {
-						if ((tmp.getRelatedObject() == measuredEntityId) && (tmp.getRelatedObjectType() == measuredEntityType.getValue())){   
-							stateCache.updateCacheStateInterval(entry.getValue(), reasonCode);
-						}
-					}
-				}
-				if (((ExecutedEntity) this.getEntity()).getCurrentState(measuredEntityId) == MeasuringState.UNSCHEDULEDOWN && !(updateEntityReason)) {
-					((ExecutedEntity) this.getEntity()).setCurrentReasonCode(measuredEntityId, reasonCode);
-				}
-			}
 		
+			}
+			logger.debug("updateStateInterval End " + String.valueOf(measuredEntityId));
+			return ret;
+		} finally {
+			lock.writeLock().unlock();
 		}
-		logger.debug("updateStateInterval End " + String.valueOf(measuredEntityId));
-		return ret;
 	}
 
 	/**
@@ -822,15 +892,25 @@ public final class ExecutedEntityFacade extends EntityFacade {
 	 * 
 	 * @return current State Interval in list.
 	 */
-	public synchronized List<StateInterval> getCurrentStateInterval(Integer measuredEntityId) {
+	public List<StateInterval> getCurrentStateInterval(Integer measuredEntityId) {
 		logger.debug("getCurrentStateInterval Start " + String.valueOf(measuredEntityId));
 		LocalDateTime localDateTime = LocalDateTime.now();
 
-		// Creates the time interval, from the last status change to now.
-		TimeInterval interval = new TimeInterval(((MeasuredEntity)this.getEntity()).getCurrentStatDateTime(), localDateTime);
+		// Takes the state, reason and start of the current interval while no state change is in progress.
+		TimeInterval interval;
+		MeasuringState state;
+		ReasonCode reason;
+		lock.readLock().lock();
+		try {
+			// Creates the time interval, from the last status change to now.
+			interval = new TimeInterval(((MeasuredEntity)this.getEntity()).getCurrentStatDateTime(), localDateTime);
+			state = ((MeasuredEntity)this.getEntity()).getCurrentState();
+			reason = ((MeasuredEntity)this.getEntity()).getCurrentReason();
+		} finally {
+			lock.readLock().unlock();
+		}
 
-		StateInterval current = BuildStateInterval(((MeasuredEntity)this.getEntity()).getCurrentState(), 
-													((MeasuredEntity)this.getEntity()).getCurrentReason(), interval, measuredEntityId);
+		StateInterval current = BuildStateInterval(state, reason, interval, measuredEntityId);
 		
 		List<StateInterval> list = new ArrayList<StateInterval>();
 		
@@ -846,7 +926,7 @@ public final class ExecutedEntityFacade extends EntityFacade {
 	 * @return Json Array of current states. Actually is only one entry.
 	 * @throws PropertyVetoException 
 	 */
-	public synchronized JSONArray getJsonCurrentState(Integer measuredEntityId) {
+	public JSONArray getJsonCurrentState(Integer measuredEntityId) {
 		logger.debug("getJsonCurrentState Start " + String.valueOf(measuredEntityId));
 		logger.debug("getJsonCurrentState");
 		JSONArray array = null;
@@ -7,6 +7,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -26,7 +27,8 @@ import com.advicetec.core.Attribute;
 import com.advicetec.core.AttributeValue;
 import com.advicetec.core.serialization.LocalDateTimeDeserializer;
 import com.advicetec.core.serialization.LocalDateTimeSerializer;
-import com.advicetec.persistence.Storable;
+import com.advicetec.persistence.BulkStorable;
+import com.advicetec.persistence.BulkTable;
 
 /**
  * This class represents an value taken by a measured entity attribute.
@@ -36,9 +38,9 @@ import com.advicetec.persistence.Storable;
  * @author Advicetec
  *
  */
-@JsonIgnoreProperties({"preparedInsertText","preparedDeleteText"})
+@JsonIgnoreProperties({"preparedInsertText","preparedDeleteText","bulkTable","bulkValues"})
 @JsonTypeName("MeasuredAttributeValue")
-public class MeasuredAttributeValue extends AttributeValue implements Storable
+public class MeasuredAttributeValue extends AttributeValue implements BulkStorable
 {
 
 	/**
@@ -61,6 +63,16 @@ public class MeasuredAttributeValue extends AttributeValue implements Storable
 	@JsonIgnore
 	public final static String SQL_Delete = "DELETE INTO measuredattributevalue(id_owner, timestamp, owner_type, attribute_name) " + " VALUES (?,?,?,?)";
 
+	/**
+	 * Table and columns used to load measured entity values with a bulk writer, in the order of the insert statement. 
+	 */
+	@JsonIgnore
+	public final static BulkTable BULK_TABLE = new BulkTable("measuredattributevalue", 
+			new String[] {"id_owner", "timestamp", "owner_type", "attribute_name", "value_decimal", "value_datetime", 
+						  "value_string", "value_int", "value_boolean", "value_date", "value_time"}, 
+			new int[] {Types.INTEGER, Types.TIMESTAMP, Types.INTEGER, Types.VARCHAR, Types.DOUBLE, Types.TIMESTAMP, 
+					   Types.VARCHAR, Types.INTEGER, Types.BOOLEAN, Types.DATE, Types.TIME});
+
 	/**
 	 * Constructor for the class, it takes in the parameters all values required to set the attributes in the object.
 	 * @param type			Attribute for which we are creating a new value
@@ -106,6 +118,56 @@ public class MeasuredAttributeValue extends AttributeValue implements Storable
 		return SQL_Delete;
 	}
 
+	/**
+	 * Gets the table used by the bulk writers
+	 */
+	@JsonIgnore
+	public BulkTable getBulkTable() {
+		return BULK_TABLE;
+	}
+
+	/**
+	 * Gets the values of the row in the order of the bulk table columns. As in dbInsert, the value 
+	 * is placed in the column of its attribute type and the other value columns are null.
+	 */
+	@JsonIgnore
+	public Object[] getBulkValues() {
+		Object[] row = new Object[BULK_TABLE.getColumnCount()];
+		row[0] = getGenerator();
+		row[1] = Timestamp.valueOf(getTimeStamp());
+		row[2] = getGeneratorType().getValue();
+		row[3] = getAttr().getName();
+		switch ( getAttr().getType() )
+		{
+		case DOUBLE:
+			row[4] = (Double) getValue();
+			break;
+		case DATETIME:
+			row[5] = Timestamp.valueOf((LocalDateTime) getValue());
+			break;
+		case STRING:
+			row[6] = (String) getValue();
+			break;
+		case INT:
+			row[7] = (Integer) getValue();
+			break;
+		case BOOLEAN:
+			row[8] = (Boolean) getValue();
+			break;
+		case DATE:
+			row[9] = Date.valueOf((LocalDate) getValue());
+			break;
+		case TIME:
+			row[10] = Time.valueOf((LocalTime) getValue());
+			break;
+		default:
+			Logger logger = LogManager.getLogger(MeasuredAttributeValue.class.getName());  
+			logger.error("invalid measured attribute value type " + getAttr().getType().getName() );
+			break;
+		}
+		return row;
+	}
+
 	/**
 	 * Inserts an instance of this class in the database through the prepare 
 	 * statement given as parameter.
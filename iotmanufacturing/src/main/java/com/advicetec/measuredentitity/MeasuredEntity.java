@@ -35,6 +35,7 @@ import com.advicetec.core.AttributeValue;
 import com.advicetec.core.Entity;
 import com.advicetec.core.serialization.LocalDateTimeDeserializer;
 import com.advicetec.core.serialization.LocalDateTimeSerializer;
+import com.advicetec.language.transformation.TransformationProgramCache;
 import com.advicetec.persistence.StateIntervalCache;
 
 /**
@@ -341,6 +342,9 @@ public abstract class MeasuredEntity extends Entity
 			// adding to the list
 			this.behaviors.add(measuredEntityBehavior2);
 		}
+		
+		// The imports of the compiled transformations were verified with the previous behaviors.
+		TransformationProgramCache.getInstance().invalidateEntity(getId());
 	}
 
 	/**
@@ -357,6 +361,7 @@ public abstract class MeasuredEntity extends Entity
 				break;
 			}
 		}		
+		TransformationProgramCache.getInstance().invalidateEntity(getId());
 	}
 
 	/**
@@ -672,6 +677,7 @@ public abstract class MeasuredEntity extends Entity
 	public synchronized void removeBehaviors()
 	{
 		this.behaviors.clear();
+		TransformationProgramCache.getInstance().invalidateEntity(getId());
 	}
 
 	/**
@@ -36,6 +36,7 @@ import com.advicetec.core.Attribute;
 import com.advicetec.core.AttributeOrigin;
 import com.advicetec.core.AttributeType;
 import com.advicetec.core.AttributeValue;
+import com.advicetec.eventprocessor.EventManager;
 import com.advicetec.eventprocessor.ModBusTcpEvent;
 import com.advicetec.persistence.StateIntervalCache;
 
@@ -865,7 +866,8 @@ public class MeasuredEntityContainer extends Container
 			e.printStackTrace();
 		}
 
-		return events;
+		// Ports with the same refresh time can be read in a single poll cycle.
+		return EventManager.getInstance().groupModbusEvents(events);
 	}
 
 	/**
@@ -884,6 +886,26 @@ public class MeasuredEntityContainer extends Container
 		return this.canonicalMapIndex.get(getCanonicalKey(company, location, plant, machineGroup, machineId));
 	}
 
+	/**
+	 * Returns the identifiers of the machines registered in a plant.
+	 * 
+	 * @param company Identifier of the company
+	 * @param location Identifier of the location
+	 * @param plant Identifier of the plant
+	 * @return the identifiers of the machines of the plant, empty if the plant does not have machines.
+	 */
+	public List<Integer> getCanonicalObjects(String company, String location, String plant) 
+	{
+		String prefix = getCanonicalKey(company, location, plant, null, null) + "-";
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Map.Entry<String, Integer> entry : this.canonicalMapIndex.entrySet()) {
+			if (entry.getKey().startsWith(prefix)) {
+				ids.add(entry.getValue());
+			}
+		}
+		return ids;
+	}
+
 	/**
 	 * This method counts the number of ports that uses MQTT protocol.
 	 * If the number of ports that uses MQTT is greater than zero returns TRUE.
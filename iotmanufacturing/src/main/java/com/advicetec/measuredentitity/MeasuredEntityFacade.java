@@ -18,6 +18,8 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import com.advicetec.MessageProcessor.DelayEvent;
+import com.advicetec.aggregation.oee.OEEAggregationManager;
+import com.advicetec.aggregation.oee.OEEIncrementalAggregator;
 import com.advicetec.applicationAdapter.ProductionOrderManager;
 import com.advicetec.configuration.ReasonCode;
 import com.advicetec.core.AttributeValue;
@@ -157,85 +159,7 @@ public final class MeasuredEntityFacade extends EntityFacade {
 			conversion2 = new Double(0.0); // No conversion defined
 		}
 		
-		Double actualRate = null; 
-		
-		if(this.actualRateVariable != null && !this.actualRateVariable.isEmpty()) {
-			// Verifies that the actual production count id field is an attribute in the measuring entity
-						if (!isAttribute(this.actualRateVariable)) {
-							logger.error("The given attribute: " + this.actualRateVariable + " does not exists as attribute in the measuring entity");
-							actualRate = new Double(0.0);
-						} else {
-							List<AttributeValue> list = getByIntervalByAttributeName(this.actualRateVariable, interval.getStart(), interval.getEnd());
-							double sum = 0;
-							// Calculates the actual rate as the sum(count) / Interval.duration (minutes)
-							for (AttributeValue attributeValue : list) 
-							{
-								
-								MeasuredAttributeValue measvalue = (MeasuredAttributeValue) attributeValue;
-								
-								if ((measvalue.getValue() instanceof Double) || (measvalue.getValue() instanceof Integer)){
-									if (measvalue.getValue() instanceof Double)
-										sum = sum + (Double) measvalue.getValue();
-									else
-										sum = sum + (Integer) measvalue.getValue();
-								} else {
-									logger.error("The production count attribute: " + this.actualRateVariable + " parametrized is not of type Double or Integer");
-									break;
-								}
-							}
-							
-							LocalDateTime tempDateTime = LocalDateTime.from( interval.getStart() );
-							long seconds = tempDateTime.until( interval.getEnd(), ChronoUnit.SECONDS);
-							double tmp = 0;
-							if (seconds > 0) {
-								if (this.ratesTemporality.equals("H")) {
-									tmp = (sum * 3600) / seconds;
-								} else {
-									tmp = (sum * 60) / seconds;
-								}
-							}
-								
-							actualRate = new Double(tmp);    // The actual rate is in cycle over minutes.
-						}
-		} else {
-			// Verifies that the actual production count id field is an attribute in the measuring entity
-			if (!isAttribute(actualProductionCountId)) {
-				logger.error("The given attribute: " + this.actualProductionCountId + " does not exists as attribute in the measuring entity");
-				actualRate = new Double(0.0);
-			} else {
-				List<AttributeValue> list = getByIntervalByAttributeName(actualProductionCountId, interval.getStart(), interval.getEnd());
-				double sum = 0;
-				// Calculates the actual rate as the sum(count) / Interval.duration (minutes)
-				for (AttributeValue attributeValue : list) 
-				{
-					
-					MeasuredAttributeValue measvalue = (MeasuredAttributeValue) attributeValue;
-					
-					if ((measvalue.getValue() instanceof Double) || (measvalue.getValue() instanceof Integer)){
-						if (measvalue.getValue() instanceof Double)
-							sum = sum + (Double) measvalue.getValue();
-						else
-							sum = sum + (Integer) measvalue.getValue();
-					} else {
-						logger.error("The production count attribute: " + actualProductionCountId + " parametrized is not of type Double or Integer");
-						break;
-					}
-				}
-				
-				LocalDateTime tempDateTime = LocalDateTime.from( interval.getStart() );
-				long seconds = tempDateTime.until( interval.getEnd(), ChronoUnit.SECONDS);
-				double tmp = 0;
-				if (seconds > 0) {
-					if (this.ratesTemporality.equals("H")) {
-						tmp = (sum * 3600) / seconds;
-					} else {
-						tmp = (sum * 60) / seconds;
-					}
-				}
-					
-				actualRate = new Double(tmp);    // The actual rate is in cycle over minutes.
-			}
-		}
+		Double actualRate = getActualRate(interval);
 			
 		StateInterval stateInterval = null;
 		if (executedEntity != null){
@@ -253,6 +177,84 @@ public final class MeasuredEntityFacade extends EntityFacade {
 	}
 	
 	
+	/**
+	 * Calculates the actual rate of an interval as the sum of the production count during the interval over its duration.
+	 * 
+	 * The production count is the attribute given as actual rate variable, or the actual production count when 
+	 * there is not such variable. The sum is taken from the counter opened at the start of the interval, 
+	 * the values of the interval are queried only when the counter was not opened.
+	 * 
+	 * @param interval	Time interval in which the measure entity remains in the status defined.
+	 * 
+	 * @return actual rate in cycles over minutes or hours, depending on the rates temporality.
+	 */
+	private Double getActualRate(TimeInterval interval)
+	{
+		String countAttribute;
+		if(this.actualRateVariable != null && !this.actualRateVariable.isEmpty()) {
+			countAttribute = this.actualRateVariable;
+		} else {
+			countAttribute = this.actualProductionCountId;
+		}
+
+		// Verifies that the actual production count id field is an attribute in the measuring entity
+		if (!isAttribute(countAttribute)) {
+			logger.error("The given attribute: " + countAttribute + " does not exists as attribute in the measuring entity");
+			return new Double(0.0);
+		}
+
+		double sum = 0;
+		Double counted = getIntervalCount(getIntervalCounterOwner(), countAttribute, interval.getStart());
+		if (counted != null) {
+			sum = counted;
+		} else {
+			List<AttributeValue> list = getByIntervalByAttributeName(countAttribute, interval.getStart(), interval.getEnd());
+			// Calculates the actual rate as the sum(count) / Interval.duration (minutes)
+			for (AttributeValue attributeValue : list) 
+			{
+				
+				MeasuredAttributeValue measvalue = (MeasuredAttributeValue) attributeValue;
+				
+				if ((measvalue.getValue() instanceof Double) || (measvalue.getValue() instanceof Integer)){
+					if (measvalue.getValue() instanceof Double)
+						sum = sum + (Double) measvalue.getValue();
+					else
+						sum = sum + (Integer) measvalue.getValue();
+				} else {
+					logger.error("The production count attribute: " + countAttribute + " parametrized is not of type Double or Integer");
+					break;
+				}
+			}
+		}
+		
+		LocalDateTime tempDateTime = LocalDateTime.from( interval.getStart() );
+		long seconds = tempDateTime.until( interval.getEnd(), ChronoUnit.SECONDS);
+		double tmp = 0;
+		if (seconds > 0) {
+			if (this.ratesTemporality.equals("H")) {
+				tmp = (sum * 3600) / seconds;
+			} else {
+				tmp = (sum * 60) / seconds;
+			}
+		}
+			
+		return new Double(tmp);    // The actual rate is in cycle over minutes.
+	}
+
+	/**
+	 * Opens the production counter of the interval starting at the given datetime.
+	 * 
+	 * @param start		start of the interval.
+	 */
+	private void openIntervalCounter(LocalDateTime start)
+	{
+		if(this.actualRateVariable != null && !this.actualRateVariable.isEmpty()) {
+			openIntervalCounter(getIntervalCounterOwner(), this.actualRateVariable, start);
+		} else {
+			openIntervalCounter(getIntervalCounterOwner(), this.actualProductionCountId, start);
+		}
+	}
+	
 	/**
 	 * Registers a new interval in the measured entity
 	 * 
@@ -260,15 +262,25 @@ public final class MeasuredEntityFacade extends EntityFacade {
 	 * @param reasonCode	reason code of the new status
 	 * @param interval		Time interval in which the measure entity remains in the status defined.
 	 */
-	public synchronized void registerInterval(MeasuringState status, ReasonCode reasonCode, TimeInterval interval)
+	public void registerInterval(MeasuringState status, ReasonCode reasonCode, TimeInterval interval)
 	{
-		logger.debug("registerInterval Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
-		//logger.debug("In registerInterval - status: " + status.getName().toString() + " interval: " + interval.getStart().toString());
-		StateInterval stateInterval = BuildStateInterval(status, reasonCode, interval);
-		// key in the map and the cache must be consistent
-		super.statesMap.put(interval.getStart(),stateInterval.getKey());
-		StateIntervalCache.getInstance().storeToCache(stateInterval);
-		logger.debug("registerInterval End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+		lock.writeLock().lock();
+		try {
+			logger.debug("registerInterval Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+			//logger.debug("In registerInterval - status: " + status.getName().toString() + " interval: " + interval.getStart().toString());
+			StateInterval stateInterval = BuildStateInterval(status, reasonCode, interval);
+			// key in the map and the cache must be consistent
+			super.statesMap.put(interval.getStart(),stateInterval.getKey());
+			StateIntervalCache.getInstance().storeToCache(stateInterval);
+			// the OEE of the periods covered by the interval is calculated in memory.
+			OEEIncrementalAggregator oeeAggregator = OEEAggregationManager.getInstance().getIncrementalAggregator();
+			if (oeeAggregator != null) {
+				oeeAggregator.register(stateInterval);
+			}
+			logger.debug("registerInterval End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 			
 	/**
@@ -280,7 +292,7 @@ public final class MeasuredEntityFacade extends EntityFacade {
 	 * 
 	 * @return  list of downtime reasons.
 	 */
-	public synchronized JSONArray getJsonDowntimeReasons(LocalDateTime from,	LocalDateTime to) 
+	public JSONArray getJsonDowntimeReasons(LocalDateTime from,	LocalDateTime to) 
 	{
 		logger.debug("getJsonDowntimeReasons Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
 		logger.debug("In getJsonDowntimeReasons + from:" + from.toString() + " to:" + to.toString());
@@ -304,7 +316,7 @@ public final class MeasuredEntityFacade extends EntityFacade {
 		return array;
 	}
 	
-	public synchronized double getDBActualProductionRate() {
+	public double getDBActualProductionRate() {
 		Double productionRate = 0.0;
 		if (this.getCurrentState().getName().equals("UnScheduleDown")) {
 			productionRate = 0.0;
@@ -365,21 +377,31 @@ public final class MeasuredEntityFacade extends EntityFacade {
 	 * 
 	 * @param executedEntity  executed object to add.
 	 */
-	public synchronized void addExecutedObject(ExecutedEntity executedEntity)
+	public void addExecutedObject(ExecutedEntity executedEntity)
 	{
-		logger.debug("addExecutedObject Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
-		((MeasuredEntity) this.getEntity()).addExecutedEntity(executedEntity);
-		logger.debug("addExecutedObject End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+		lock.writeLock().lock();
+		try {
+			logger.debug("addExecutedObject Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+			((MeasuredEntity) this.getEntity()).addExecutedEntity(executedEntity);
+			logger.debug("addExecutedObject End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 	
 	/**
 	 * Stops all executed object that were previously executed in this measured entity. 
 	 */
-	public synchronized void stopExecutedObjects()
+	public void stopExecutedObjects()
 	{
-		logger.debug("stopExecutedObjects Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
-		((MeasuredEntity) this.getEntity()).stopExecuteEntities();
-		logger.debug("stopExecutedObjects End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+		lock.writeLock().lock();
+		try {
+			logger.debug("stopExecutedObjects Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+			((MeasuredEntity) this.getEntity()).stopExecuteEntities();
+			logger.debug("stopExecutedObjects End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 	
 	/**
@@ -387,13 +409,18 @@ public final class MeasuredEntityFacade extends EntityFacade {
 	 * 
 	 * @param id identifier of the executed object to remove.
 	 */
-	public synchronized void removeExecutedObject(Integer id)
+	public void removeExecutedObject(Integer id)
 	{
-		logger.debug("removeExecutedObject Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
-		((MeasuredEntity) this.getEntity()).removeExecutedEntity(id);
+		lock.writeLock().lock();
+		try {
+			logger.debug("removeExecutedObject Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+			((MeasuredEntity) this.getEntity()).removeExecutedEntity(id);
 		
-		ExecutedEntityChange();
-		logger.debug("removeExecutedObject End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+			ExecutedEntityChange();
+			logger.debug("removeExecutedObject End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	/**
@@ -403,7 +430,7 @@ public final class MeasuredEntityFacade extends EntityFacade {
 	 * 
 	 * @return	attribute value registered.
 	 */
-	public synchronized AttributeValue getExecutedObjectAttribute(String attributeId)
+	public AttributeValue getExecutedObjectAttribute(String attributeId)
 	{
 		logger.debug("getExecutedObjectAttribute Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
 		AttributeValue attributeValue = ((MeasuredEntity) this.getEntity()).getAttributeFromExecutedObject(attributeId);
@@ -432,6 +459,7 @@ public final class MeasuredEntityFacade extends EntityFacade {
 		} else {
 			((MeasuredEntity)this.getEntity()).startInterval(localDateTime, newState, null);
 		}
+		openIntervalCounter(localDateTime);
 		
 		
 		// Verify whether or not there is an executed entity being processed.
@@ -468,24 +496,30 @@ public final class MeasuredEntityFacade extends EntityFacade {
 	 * 
 	 * Registers an interval representing the change. 
 	 */
-	public synchronized void ExecutedEntityChange(){
-		logger.debug("ExecutedEntityChange Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
-		LocalDateTime localDateTime = LocalDateTime.now();
-
-		// Creates the time interval, from the last status change to now.
-		TimeInterval interval = new TimeInterval(((MeasuredEntity)this.getEntity()).getCurrentStatDateTime(), localDateTime);
-		
-		// Registers the interval in the Measured Entity
-		this.registerInterval(((MeasuredEntity)this.getEntity()).getCurrentState(), 
-							  ((MeasuredEntity)this.getEntity()).getCurrentReason(), 
-							  interval);
-		
-		// Starts a new Interval.
-		((MeasuredEntity)this.getEntity()).startInterval(localDateTime, this.getCurrentState(), this.getCurrentReason());
-		logger.debug("ExecutedEntityChange End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+	public void ExecutedEntityChange(){
+		lock.writeLock().lock();
+		try {
+			logger.debug("ExecutedEntityChange Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+			LocalDateTime localDateTime = LocalDateTime.now();
+
+			// Creates the time interval, from the last status change to now.
+			TimeInterval interval = new TimeInterval(((MeasuredEntity)this.getEntity()).getCurrentStatDateTime(), localDateTime);
+		
+			// Registers the interval in the Measured Entity
+			this.registerInterval(((MeasuredEntity)this.getEntity()).getCurrentState(), 
+								  ((MeasuredEntity)this.getEntity()).getCurrentReason(), 
+								  interval);
+		
+			// Starts a new Interval.
+			((MeasuredEntity)this.getEntity()).startInterval(localDateTime, this.getCurrentState(), this.getCurrentReason());
+			openIntervalCounter(localDateTime);
+			logger.debug("ExecutedEntityChange End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 	
-	public synchronized ExecutedEntity getCurrentExecutedEntity() {
+	public ExecutedEntity getCurrentExecutedEntity() {
 		logger.debug("getCurrentExecutedEntity Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
 		ExecutedEntity executedEntity = ((MeasuredEntity) this.getEntity()).getCurrentExecutedEntity();
 		logger.debug("getCurrentExecutedEntity End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
@@ -497,7 +531,7 @@ public final class MeasuredEntityFacade extends EntityFacade {
 	 *  
 	 * @return  If there is not entity assigned return undefined.
 	 */    
-	public synchronized MeasuringState getCurrentState(){
+	public MeasuringState getCurrentState(){
 		 logger.debug("getCurrentState Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
     	 if (this.getEntity() == null){
     		 logger.debug("getCurrentState End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
@@ -515,7 +549,7 @@ public final class MeasuredEntityFacade extends EntityFacade {
 	 *  
 	 * @return  If there is not entity assigned return null.
 	 */    
-	public synchronized ReasonCode getCurrentReason(){
+	public ReasonCode getCurrentReason(){
 		logger.debug("getCurrentReason Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
     	 if (this.getEntity() == null){
     		 logger.debug("getCurrentReason End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
@@ -534,115 +568,125 @@ public final class MeasuredEntityFacade extends EntityFacade {
 	 * 
 	 * @param symbolMap				symbols generated by the transformation or behavior execution.
 	 */
-	public synchronized void setCurrentState(Map<String, ASTNode> symbolMap) {
-		logger.debug("setCurrentState Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
-		logger.debug ("Measured entity in setCurrentState" );
+	public void setCurrentState(Map<String, ASTNode> symbolMap) {
+		lock.writeLock().lock();
+		try {
+			logger.debug("setCurrentState Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+			logger.debug ("Measured entity in setCurrentState" );
 		
-		for (Map.Entry<String, ASTNode> entry : symbolMap.entrySet()) 
-		{
-			if ( entry.getKey().compareTo("state") == 0 )
+			for (Map.Entry<String, ASTNode> entry : symbolMap.entrySet()) 
 			{
+				if ( entry.getKey().compareTo("state") == 0 )
+				{
 				
-				ASTNode node = entry.getValue();
-				MeasuringState newState = node.asMeasuringState();
+					ASTNode node = entry.getValue();
+					MeasuringState newState = node.asMeasuringState();
 				
-				logger.debug ("Measured entity setCurrentState new state:" +  newState.getName());
+					logger.debug ("Measured entity setCurrentState new state:" +  newState.getName());
 				
-				MeasuringState currentState = ((MeasuredEntity)this.getEntity()).getCurrentState();
+					MeasuringState currentState = ((MeasuredEntity)this.getEntity()).getCurrentState();
 				
-				if ( newState == MeasuringState.OPERATING ){
-					if (( currentState != MeasuringState.OPERATING) || 
-							(((MeasuredEntity)this.getEntity()).startNewInterval())) {
+					if ( newState == MeasuringState.OPERATING ){
+						if (( currentState != MeasuringState.OPERATING) || 
+								(((MeasuredEntity)this.getEntity()).startNewInterval())) {
 						
-						changeState(MeasuringState.OPERATING, false);
+							changeState(MeasuringState.OPERATING, false);
 												
-					}
-				} else if ( newState == MeasuringState.SCHEDULEDOWN ){
+						}
+					} else if ( newState == MeasuringState.SCHEDULEDOWN ){
 					
-					if (( currentState != MeasuringState.SCHEDULEDOWN) || 
-							(((MeasuredEntity)this.getEntity()).startNewInterval())) {
+						if (( currentState != MeasuringState.SCHEDULEDOWN) || 
+								(((MeasuredEntity)this.getEntity()).startNewInterval())) {
 						
-						changeState(MeasuringState.SCHEDULEDOWN, false);						
-					}
+							changeState(MeasuringState.SCHEDULEDOWN, false);						
+						}
 					
-				} else if ( newState == MeasuringState.UNSCHEDULEDOWN ){
+					} else if ( newState == MeasuringState.UNSCHEDULEDOWN ){
 					
-					if (( currentState != MeasuringState.UNSCHEDULEDOWN) || 
-							(((MeasuredEntity)this.getEntity()).startNewInterval())) {
+						if (( currentState != MeasuringState.UNSCHEDULEDOWN) || 
+								(((MeasuredEntity)this.getEntity()).startNewInterval())) {
 						
-						changeState(MeasuringState.UNSCHEDULEDOWN, true);						
-					}
+							changeState(MeasuringState.UNSCHEDULEDOWN, true);						
+						}
 
-				}  else if ( newState == MeasuringState.INITIALIZING ){
+					}  else if ( newState == MeasuringState.INITIALIZING ){
 
-					if (( currentState != MeasuringState.INITIALIZING) || 
-							(((MeasuredEntity)this.getEntity()).startNewInterval())) {
+						if (( currentState != MeasuringState.INITIALIZING) || 
+								(((MeasuredEntity)this.getEntity()).startNewInterval())) {
 						
-						changeState(MeasuringState.INITIALIZING, false);						
-					}
+							changeState(MeasuringState.INITIALIZING, false);						
+						}
 
-				} else {
+					} else {
 					
-					logger.error("The new state is being set to undefined, which is incorrect");
+						logger.error("The new state is being set to undefined, which is incorrect");
 					
-				}	
+					}	
+				}
 			}
+			logger.debug("setCurrentState End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+		} finally {
+			lock.writeLock().unlock();
 		}
-		logger.debug("setCurrentState End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
 	}
 
-	public synchronized void setCurrentState(MeasuringState newState) {
-		logger.debug("setCurrentState Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+	public void setCurrentState(MeasuringState newState) {
+		lock.writeLock().lock();
+		try {
+			logger.debug("setCurrentState Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
 		
-		logger.debug("Change Current State - new State:" + newState.getName() );
+			logger.debug("Change Current State - new State:" + newState.getName() );
 		
-		MeasuringState currentState = ((MeasuredEntity)this.getEntity()).getCurrentState();
+			MeasuringState currentState = ((MeasuredEntity)this.getEntity()).getCurrentState();
 		
-		if (newState == MeasuringState.OPERATING ){
-			if (( currentState != MeasuringState.OPERATING) || 
-					(((MeasuredEntity)this.getEntity()).startNewInterval())) {
+			if (newState == MeasuringState.OPERATING ){
+				if (( currentState != MeasuringState.OPERATING) || 
+						(((MeasuredEntity)this.getEntity()).startNewInterval())) {
 				
-				changeState(MeasuringState.OPERATING, false);
+					changeState(MeasuringState.OPERATING, false);
 										
-			}
-		} else if (newState == MeasuringState.SCHEDULEDOWN){
+				}
+			} else if (newState == MeasuringState.SCHEDULEDOWN){
 			
-			if (( currentState != MeasuringState.SCHEDULEDOWN) || 
-					(((MeasuredEntity)this.getEntity()).startNewInterval())) {
+				if (( currentState != MeasuringState.SCHEDULEDOWN) || 
+						(((MeasuredEntity)this.getEntity()).startNewInterval())) {
 				
-				changeState(MeasuringState.SCHEDULEDOWN, false);						
-			}
+					changeState(MeasuringState.SCHEDULEDOWN, false);						
+				}
 			
-		} else if (newState == MeasuringState.UNSCHEDULEDOWN){
+			} else if (newState == MeasuringState.UNSCHEDULEDOWN){
 			
-			if (( currentState != MeasuringState.UNSCHEDULEDOWN) || 
-					(((MeasuredEntity)this.getEntity()).startNewInterval())) {
+				if (( currentState != MeasuringState.UNSCHEDULEDOWN) || 
+						(((MeasuredEntity)this.getEntity()).startNewInterval())) {
 				
-				changeState(MeasuringState.UNSCHEDULEDOWN, false);						
-			}
+					changeState(MeasuringState.UNSCHEDULEDOWN, false);						
+				}
 			
-		} else if (newState == MeasuringState.SYSTEMDOWN) {
+			} else if (newState == MeasuringState.SYSTEMDOWN) {
 
-			if (( currentState != MeasuringState.SYSTEMDOWN) || 
-					(((MeasuredEntity)this.getEntity()).startNewInterval())) {
+				if (( currentState != MeasuringState.SYSTEMDOWN) || 
+						(((MeasuredEntity)this.getEntity()).startNewInterval())) {
 				
-				changeState(MeasuringState.SYSTEMDOWN, false);						
-			}
+					changeState(MeasuringState.SYSTEMDOWN, false);						
+				}
 			
-		} else if (newState == MeasuringState.INITIALIZING){
+			} else if (newState == MeasuringState.INITIALIZING){
 			
-			if (( currentState != MeasuringState.INITIALIZING) || 
-					(((MeasuredEntity)this.getEntity()).startNewInterval())) {
+				if (( currentState != MeasuringState.INITIALIZING) || 
+						(((MeasuredEntity)this.getEntity()).startNewInterval())) {
 				
-				changeState(MeasuringState.INITIALIZING, false);						
-			}
+					changeState(MeasuringState.INITIALIZING, false);						
+				}
 			
-		} 
-		
-		else {
-			logger.error("The new state is being set to undefined, which is incorrect");
-		}	
-		logger.debug("setCurrentState End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+			} 
+		
+			else {
+				logger.error("The new state is being set to undefined, which is incorrect");
+			}	
+			logger.debug("setCurrentState End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 	
 	/**
@@ -653,41 +697,62 @@ public final class MeasuredEntityFacade extends EntityFacade {
 	 * 	
 	 * @return	true if the intervals was found and updated, false otherwise.
 	 */
-	public synchronized boolean updateStateInterval(String startDttmStr, ReasonCode reasonCode) {
-		logger.debug("updateStateInterval Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+	public boolean updateStateInterval(String startDttmStr, ReasonCode reasonCode) {
+		lock.writeLock().lock();
+		try {
+			logger.debug("updateStateInterval Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
 
-		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
-		LocalDateTime startDttm = LocalDateTime.parse(startDttmStr, formatter);
+			DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+			LocalDateTime startDttm = LocalDateTime.parse(startDttmStr, formatter);
 		
-		logger.debug("reasoncode id:" + reasonCode.getId() + " descr:" + reasonCode.getDescription() + " startDttm:" + startDttm );
+			logger.debug("reasoncode id:" + reasonCode.getId() + " descr:" + reasonCode.getDescription() + " startDttm:" + startDttm );
 		
-		boolean ret = false;
+			boolean ret = false;
 		
-		if ( ((MeasuredEntity) this.getEntity()).getCurrentStatDateTime().withNano(0).equals(startDttm)){
+			if ( ((MeasuredEntity) this.getEntity()).getCurrentStatDateTime().withNano(0).equals(startDttm)){
 			
-			logger.debug("Updating the current state interval");
+				logger.debug("Updating the current state interval");
 			
-			((MeasuredEntity) this.getEntity()).setCurrentReasonCode(reasonCode);
-			ret = true;
+				((MeasuredEntity) this.getEntity()).setCurrentReasonCode(reasonCode);
+				ret = true;
 			
-		} else {
+			} else {
 
-			logger.debug("Updating the past state interval");
+				logger.debug("Updating the past state interval");
 			
-			LocalDateTime oldest = stateCache.getOldestTime();
+				LocalDateTime oldest = stateCache.getOldestTime();
 			
-			logger.debug("oldest" + oldest.format(formatter));
+				logger.debug("oldest" + oldest.format(formatter));
 			
 			
-			LocalDateTime enddttm; 
-			boolean updateEntityReason;
-			if(oldest.isAfter(startDttm) )
-			{
-				// some values are in the database and maybe we have to continue updating the intervals. 
-				enddttm = stateCache.updateMeasuredEntityStateInterval(this.entity.getId(), this.entity.getType(), startDttm, reasonCode);
+				LocalDateTime enddttm; 
+				boolean updateEntityReason;
+				if(oldest.isAfter(startDttm) )
+				{
+					// some values are in the database and maybe we have to continue updating the intervals. 
+					enddttm = stateCache.updateMeasuredEntityStateInterval(this.entity.getId(), this.entity.getType(), startDttm, reasonCode);
 				
-				// We have to continue updating the intervals in the cache.
-				if (enddttm == null) {
+					// We have to continue updating the intervals in the cache.
+					if (enddttm == null) {
+						updateEntityReason = false;
+						SortedMap<LocalDateTime, String> tail = this.statesMap.tailMap(startDttm);
+						for (Map.Entry<LocalDateTime, String> entry : tail.entrySet()) {
+							if (stateCache.getFromCache(entry.getValue()).getState() == MeasuringState.OPERATING) {
+								updateEntityReason = true;
+								break;
+							}
+							else
+								stateCache.updateCacheStateInterval(entry.getValue(), reasonCode);
+						
+						}
+						if (((MeasuredEntity) this.getEntity()).getCurrentState() == MeasuringState.UNSCHEDULEDOWN && !(updateEntityReason)) {
+							((MeasuredEntity) this.getEntity()).setCurrentReasonCode(reasonCode);
+						}
+					}
+					 				
+				} else if(oldest.isBefore(startDttm)){
+					// all values are in the state cache
+					logger.debug("the datetime given is before");
 					updateEntityReason = false;
 					SortedMap<LocalDateTime, String> tail = this.statesMap.tailMap(startDttm);
 					for (Map.Entry<LocalDateTime, String> entry : tail.entrySet()) {
@@ -697,33 +762,17 @@ public final class MeasuredEntityFacade extends EntityFacade {
 						}
 						else
 							stateCache.updateCacheStateInterval(entry.getValue(), reasonCode);
-						
-					}
+					}			
 					if (((MeasuredEntity) this.getEntity()).getCurrentState() == MeasuringState.UNSCHEDULEDOWN && !(updateEntityReason)) {
 						((MeasuredEntity) this.getEntity()).setCurrentReasonCode(reasonCode);
 					}
 				}
-					 				
-			} else if(oldest.isBefore(startDttm)){
-				// all values are in the state cache
-				logger.debug("the datetime given is before");
-				updateEntityReason = false;
-				SortedMap<LocalDateTime, String> tail = this.statesMap.tailMap(startDttm);
-				for (Map.Entry<LocalDateTime, String> entry : tail.entrySet()) {
-					if (stateCache.getFromCache(entry.getValue()).getState() == MeasuringState.OPERATING) {
-						updateEntityReason = true;
-						break;
-					}
-					else
-						stateCache.updateCacheStateInterval(entry.getValue(), reasonCode);
-				}			
-				if (((MeasuredEntity) this.getEntity()).getCurrentState() == MeasuringState.UNSCHEDULEDOWN && !(updateEntityReason)) {
-					((MeasuredEntity) this.getEntity()).setCurrentReasonCode(reasonCode);
-				}
 			}
+			logger.debug("updateStateInterval End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
+			return ret;
+		} finally {
+			lock.writeLock().unlock();
 		}
-		logger.debug("updateStateInterval End " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
-		return ret;
 	}
 	
 	/**
@@ -731,15 +780,26 @@ public final class MeasuredEntityFacade extends EntityFacade {
 	 * 
 	 * @return current State Interval in list.
 	 */
-	public synchronized List<StateInterval> getCurrentStateInterval() {
+	public List<StateInterval> getCurrentStateInterval() {
 		logger.debug("getCurrentStateInterval Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
 		LocalDateTime localDateTime = LocalDateTime.now();
 
-		// Creates the time interval, from the last status change to now.
-		TimeInterval interval = new TimeInterval(((MeasuredEntity)this.getEntity()).getCurrentStatDateTime(), localDateTime);
+		// Takes the state, reason and start of the current interval while no state change is in progress.
+		TimeInterval interval;
+		MeasuringState state;
+		ReasonCode reason;
+		lock.readLock().lock();
+		try {
+			// Creates the time interval, from the last status change to now.
+			interval = new TimeInterval(((MeasuredEntity)this.getEntity()).getCurrentStatDateTime(), localDateTime);
+			state = ((MeasuredEntity)this.getEntity()).getCurrentState();
+			reason = ((MeasuredEntity)this.getEntity()).getCurrentReason();
+		} finally {
+			lock.readLock().unlock();
+		}
 
-		StateInterval current = BuildStateInterval(((MeasuredEntity)this.getEntity()).getCurrentState(), 
-													((MeasuredEntity)this.getEntity()).getCurrentReason(), interval);
+		// The actual rate is calculated out of the lock, it can query the database.
+		StateInterval current = BuildStateInterval(state, reason, interval);
 		
 		List<StateInterval> list = new ArrayList<StateInterval>();
 		
@@ -756,7 +816,7 @@ public final class MeasuredEntityFacade extends EntityFacade {
 	 * @return Json Array of current states. Actually is only one entry.
 	 * @throws PropertyVetoException 
 	 */
-	public synchronized JSONArray getJsonCurrentState() {
+	public JSONArray getJsonCurrentState() {
 		logger.debug("getJsonCurrentState Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
 		logger.debug("getJsonCurrentState");
 		JSONArray array = null;
@@ -794,7 +854,7 @@ public final class MeasuredEntityFacade extends EntityFacade {
 	}
 
 	
-	public synchronized double getCurrentStateDuration(){
+	public double getCurrentStateDuration(){
 		logger.debug("getCurrentStateDuration Start " + String.valueOf(((MeasuredEntity)this.getEntity()).getId()));
 		LocalDateTime to = LocalDateTime.now(); 
 		LocalDateTime from = LocalDateTime.now().minusDays(2);
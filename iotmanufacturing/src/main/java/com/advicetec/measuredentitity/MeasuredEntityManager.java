@@ -262,6 +262,20 @@ public class MeasuredEntityManager extends Configurable {
 		return this.measuredEntities.getCanonicalObject(company, location, plant, machineGroup, machineId);
 	}
 	
+	/**
+	 * Gets the internal identifiers of the machines of a plant 
+	 *  
+	 * @param company			Company canonical identifier
+	 * @param location			Location canonical identifier
+	 * @param plant				Plant canonical identifier
+	 * 
+	 * @return	measured entity internal identifiers 
+	 */
+	public synchronized List<Integer> getMeasuredEntityIds(String company, String location, String plant) {
+		
+		return this.measuredEntities.getCanonicalObjects(company, location, plant);
+	}
+	
 	/**
 	 * Gets the canonical identifier from a internal measured entity identifier
 	 * @param id	internal measured entity identifier
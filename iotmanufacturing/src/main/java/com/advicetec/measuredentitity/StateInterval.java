@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Calendar;
@@ -19,7 +20,8 @@ import org.codehaus.jackson.map.ObjectMapper;
 
 import com.advicetec.configuration.ReasonCode;
 import com.advicetec.core.TimeInterval;
-import com.advicetec.persistence.Storable;
+import com.advicetec.persistence.BulkStorable;
+import com.advicetec.persistence.BulkTable;
 
 /**
  * This class models a machine/device state on an interval.
@@ -27,8 +29,8 @@ import com.advicetec.persistence.Storable;
  * @author maldofer
  *
  */
-@JsonIgnoreProperties({"preparedInsertText","preparedDeleteText"})
-public final class StateInterval implements Storable
+@JsonIgnoreProperties({"preparedInsertText","preparedDeleteText","bulkTable","bulkValues"})
+public final class StateInterval implements BulkStorable
 {
 
 	/**
@@ -111,6 +113,16 @@ public final class StateInterval implements Storable
 	 */
 	public static final String SQL_Insert = "INSERT INTO measuringentitystatusinterval(id_owner, owner_type, datetime_from, datetime_to, status, reason_code, related_object, related_object_type, executed_object_canonical, production_rate, conversion1, conversion2, actual_production_rate, qty_defective)" + "VALUES(?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
 	
+	/**
+	 * Table and columns used to load state intervals with a bulk writer, in the order of the insert statement.
+	 */
+	public static final BulkTable BULK_TABLE = new BulkTable("measuringentitystatusinterval", 
+			new String[] {"id_owner", "owner_type", "datetime_from", "datetime_to", "status", "reason_code", "related_object", 
+						  "related_object_type", "executed_object_canonical", "production_rate", "conversion1", "conversion2", 
+						  "actual_production_rate", "qty_defective"}, 
+			new int[] {Types.INTEGER, Types.INTEGER, Types.TIMESTAMP, Types.TIMESTAMP, Types.VARCHAR, Types.VARCHAR, Types.INTEGER, 
+					   Types.INTEGER, Types.VARCHAR, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE});
+	
 	/**
 	 * SQl Statement to be used to delete a measured status interval
 	 */
@@ -371,6 +383,38 @@ public final class StateInterval implements Storable
 		return SQL_Delete;
 	}
 
+	/**
+	 * Gets the table and columns used to load state intervals with a bulk writer
+	 */
+	@JsonIgnore
+	public BulkTable getBulkTable() {
+		return BULK_TABLE;
+	}
+
+	/**
+	 * Gets the values of the state interval in the order of the bulk table columns, they are the same 
+	 * values inserted by dbInsert.
+	 */
+	@JsonIgnore
+	public Object[] getBulkValues() {
+		return new Object[] {
+				getParent(),
+				getParentType().getValue(),
+				Timestamp.valueOf(getInterval().getStart()),
+				Timestamp.valueOf(getInterval().getEnd()),
+				getState().getName(),
+				(getReason() != null) ? getReason().getId().toString() : null,
+				getRelatedObject(),
+				getRelatedObjectType(),
+				getExecutedObjectCanonical(),
+				(getProductionRate() != null) ? getProductionRate() : new Double(0.0),
+				(getConversion1() != null) ? getConversion1() : new Double(0.0),
+				(getConversion2() != null) ? getConversion2() : new Double(0.0),
+				(getActualProductionRate() != null) ? getActualProductionRate() : new Double(0.0),
+				(getQtyDefective() != null) ? getQtyDefective() : new Double(0.0)
+		};
+	}
+
 	/**
 	 * Inserts the state interval in the prepare statement given  
 	 */
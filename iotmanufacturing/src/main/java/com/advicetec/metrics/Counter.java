@@ -0,0 +1,31 @@
+package com.advicetec.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter that only increases. The count is striped among the threads that update it, so it
+ * does not become a point of contention.
+ *
+ * @author advicetec
+ */
+public class Counter implements Metric
+{
+	private final LongAdder count = new LongAdder();
+
+	public void inc() {
+		count.increment();
+	}
+
+	public void inc(long amount) {
+		count.add(amount);
+	}
+
+	public long get() {
+		return count.sum();
+	}
+
+	@Override
+	public void write(StringBuilder out, String name, String labels) {
+		MetricFamily.sample(out, name, labels, Long.toString(get()));
+	}
+}
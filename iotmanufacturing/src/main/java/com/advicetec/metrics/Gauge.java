@@ -0,0 +1,30 @@
+package com.advicetec.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Gauge whose value is read from a supplier when the metrics are written, as the depth of a queue.
+ *
+ * @author advicetec
+ */
+public class Gauge implements Metric
+{
+	private volatile LongSupplier supplier = () -> 0L;
+
+	/**
+	 * Sets the supplier of the value.
+	 * @param supplier function that returns the current value.
+	 */
+	public void set(LongSupplier supplier) {
+		this.supplier = supplier;
+	}
+
+	public long get() {
+		return supplier.getAsLong();
+	}
+
+	@Override
+	public void write(StringBuilder out, String name, String labels) {
+		MetricFamily.sample(out, name, labels, Long.toString(get()));
+	}
+}
@@ -0,0 +1,125 @@
+package com.advicetec.metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram with fixed buckets. Every observation increments one striped counter and adds the value
+ * to a striped sum, so recording does not allocate and does not contend between threads.
+ * <p>
+ * The values are recorded as longs in the unit of the bounds, nanoseconds for the latencies, and
+ * they are multiplied by the scale when they are written, so the latencies are exposed in seconds.
+ *
+ * @author advicetec
+ */
+public class Histogram implements Metric
+{
+	/**
+	 * Upper bounds of the latency buckets in nanoseconds, from 10 microseconds to 10 seconds.
+	 */
+	public static final long[] LATENCY_BOUNDS = {
+			10000L, 50000L, 100000L, 500000L,
+			1000000L, 5000000L, 10000000L, 50000000L,
+			100000000L, 500000000L, 1000000000L, 5000000000L, 10000000000L };
+
+	/**
+	 * Scale of the latency buckets, from nanoseconds to seconds.
+	 */
+	public static final double NANOS_TO_SECONDS = 1e-9;
+
+	/**
+	 * Upper bounds of the size buckets, from 1 to 100000 elements.
+	 */
+	public static final long[] SIZE_BOUNDS = { 1L, 10L, 50L, 100L, 500L, 1000L, 5000L, 10000L, 100000L };
+
+	private final long[] bounds;
+
+	private final double scale;
+
+	/**
+	 * Upper bounds of the buckets as they are written, after the scale is applied.
+	 */
+	private final String[] boundLabels;
+
+	/**
+	 * Number of observations of every bucket, the last one has the values over the largest bound.
+	 */
+	private final LongAdder[] buckets;
+
+	private final LongAdder sum = new LongAdder();
+
+	/**
+	 * Creates a histogram.
+	 * @param bounds	upper bounds of the buckets, in increasing order.
+	 * @param scale		factor applied to the values when they are written.
+	 */
+	public Histogram(long[] bounds, double scale) {
+		this.bounds = bounds;
+		this.scale = scale;
+		this.boundLabels = new String[bounds.length];
+		for (int i = 0; i < bounds.length; i++) {
+			boundLabels[i] = BigDecimal.valueOf(bounds[i]).multiply(BigDecimal.valueOf(scale))
+					.stripTrailingZeros().toPlainString();
+		}
+		this.buckets = new LongAdder[bounds.length + 1];
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records a value.
+	 * @param value value in the unit of the bounds.
+	 */
+	public void observe(long value) {
+		int i = 0;
+		while ((i < bounds.length) && (value > bounds[i])) {
+			i++;
+		}
+		buckets[i].increment();
+		sum.add(value);
+	}
+
+	/**
+	 * Records the time elapsed since the given start.
+	 * @param startNanos	start time given by <code>System.nanoTime</code>.
+	 */
+	public void observeSince(long startNanos) {
+		observe(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Returns the number of observations.
+	 * @return the number of values recorded.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the sum of the observations, in the unit of the bounds.
+	 * @return the sum of the values recorded.
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	@Override
+	public void write(StringBuilder out, String name, String labels) {
+		String separator = labels.isEmpty() ? "" : labels + ",";
+		long cumulative = 0;
+		for (int i = 0; i < bounds.length; i++) {
+			cumulative += buckets[i].sum();
+			MetricFamily.sample(out, name + "_bucket", separator + "le=\"" + boundLabels[i] + "\"",
+					Long.toString(cumulative));
+		}
+		cumulative += buckets[bounds.length].sum();
+		MetricFamily.sample(out, name + "_bucket", separator + "le=\"+Inf\"", Long.toString(cumulative));
+		MetricFamily.sample(out, name + "_sum", labels, Double.toString(getSum() * scale));
+		MetricFamily.sample(out, name + "_count", labels, Long.toString(cumulative));
+	}
+}
@@ -0,0 +1,19 @@
+package com.advicetec.metrics;
+
+/**
+ * A metric with a given set of label values, a child of a <code>MetricFamily</code>.
+ *
+ * @author advicetec
+ * @see MetricFamily
+ */
+public interface Metric
+{
+	/**
+	 * Writes the samples of the metric in the Prometheus text format.
+	 *
+	 * @param out		builder where the samples are written.
+	 * @param name		name of the metric family.
+	 * @param labels	label pairs of the metric, without braces, empty if the metric has no labels.
+	 */
+	public void write(StringBuilder out, String name, String labels);
+}
@@ -0,0 +1,126 @@
+package com.advicetec.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Set of metrics with the same name and label names, one metric for every combination of label
+ * values.
+ * <p>
+ * The metric of a combination is created the first time it is requested. The callers in the hot
+ * paths keep the metric returned by <code>labels</code> when the label values are fixed, so the map
+ * is only looked up once.
+ *
+ * @author advicetec
+ * @param <T> type of the metrics.
+ * @see MetricsRegistry
+ */
+public class MetricFamily<T extends Metric>
+{
+	private final String name;
+
+	private final String help;
+
+	/**
+	 * Prometheus type: counter, gauge or histogram.
+	 */
+	private final String type;
+
+	private final String[] labelNames;
+
+	private final Supplier<T> factory;
+
+	private final Map<List<String>, T> children = new ConcurrentHashMap<List<String>, T>();
+
+	MetricFamily(String name, String help, String type, String[] labelNames, Supplier<T> factory) {
+		this.name = name;
+		this.help = help;
+		this.type = type;
+		this.labelNames = labelNames;
+		this.factory = factory;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the metric of the given label values, it is created if it does not exist.
+	 * @param values	value of every label, in the order of the label names.
+	 * @return the metric of the label values.
+	 */
+	public T labels(String... values) {
+		if (values.length != labelNames.length) {
+			throw new IllegalArgumentException("Metric " + name + " requires " + labelNames.length + " labels");
+		}
+		List<String> key = Arrays.asList(values);
+		T child = children.get(key);
+		if (child == null) {
+			child = children.computeIfAbsent(Arrays.asList(values.clone()), k -> factory.get());
+		}
+		return child;
+	}
+
+	/**
+	 * Removes the metric of the given label values.
+	 * @param values	value of every label, in the order of the label names.
+	 */
+	public void remove(String... values) {
+		children.remove(Arrays.asList(values));
+	}
+
+	/**
+	 * Writes the family in the Prometheus text format, the metrics are sorted by their labels.
+	 * @param out	builder where the family is written.
+	 */
+	void write(StringBuilder out) {
+		if (children.isEmpty()) {
+			return;
+		}
+		Map<String, T> sorted = new TreeMap<String, T>();
+		for (Map.Entry<List<String>, T> entry : children.entrySet()) {
+			StringBuilder labels = new StringBuilder();
+			for (int i = 0; i < labelNames.length; i++) {
+				if (i > 0) {
+					labels.append(',');
+				}
+				labels.append(labelNames[i]).append("=\"").append(escape(entry.getKey().get(i))).append('"');
+			}
+			sorted.put(labels.toString(), entry.getValue());
+		}
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		for (Map.Entry<String, T> entry : sorted.entrySet()) {
+			entry.getValue().write(out, name, entry.getKey());
+		}
+	}
+
+	/**
+	 * Writes a sample line.
+	 * @param out		builder where the line is written.
+	 * @param name		name of the sample.
+	 * @param labels	label pairs, without braces.
+	 * @param value		value of the sample.
+	 */
+	static void sample(StringBuilder out, String name, String labels, String value) {
+		out.append(name);
+		if (!labels.isEmpty()) {
+			out.append('{').append(labels).append('}');
+		}
+		out.append(' ').append(value).append('\n');
+	}
+
+	/**
+	 * Escapes the backslashes, quotes and line feeds of a label value.
+	 */
+	static String escape(String value) {
+		if (value == null) {
+			return "";
+		}
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
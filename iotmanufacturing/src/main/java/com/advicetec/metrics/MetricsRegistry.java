@@ -0,0 +1,105 @@
+package com.advicetec.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * This class implements a singleton registry of the metrics of the pipeline: the adapter, message
+ * and event queues, the processors, the modbus round trips and the write-behind flushes.
+ * <p>
+ * The metrics are counters, gauges and histograms with striped counters, so they can be recorded
+ * in production. They are exposed in the Prometheus text format by the <code>/Metrics</code>
+ * resource.
+ *
+ * @author advicetec
+ * @see com.advicetec.iot.rest.MetricsResource
+ */
+public class MetricsRegistry
+{
+	private static MetricsRegistry instance = null;
+
+	/**
+	 * Families of metrics by name.
+	 */
+	private final Map<String, MetricFamily<?>> families = new ConcurrentSkipListMap<String, MetricFamily<?>>();
+
+	/**
+	 * Returns the singleton instance of this registry.
+	 * @return the singleton instance of this registry.
+	 */
+	public synchronized static MetricsRegistry getInstance()
+	{
+		if (instance == null)
+			instance = new MetricsRegistry();
+
+		return instance;
+	}
+
+	MetricsRegistry() {
+	}
+
+	/**
+	 * Returns the family of counters with the given name, it is created if it does not exist.
+	 * @param name			name of the metric, it should end with _total.
+	 * @param help			description of the metric.
+	 * @param labelNames	names of the labels.
+	 * @return the family of counters.
+	 */
+	public MetricFamily<Counter> counter(String name, String help, String... labelNames) {
+		return register(new MetricFamily<Counter>(name, help, "counter", labelNames, Counter::new));
+	}
+
+	/**
+	 * Returns the family of gauges with the given name, it is created if it does not exist.
+	 * @param name			name of the metric.
+	 * @param help			description of the metric.
+	 * @param labelNames	names of the labels.
+	 * @return the family of gauges.
+	 */
+	public MetricFamily<Gauge> gauge(String name, String help, String... labelNames) {
+		return register(new MetricFamily<Gauge>(name, help, "gauge", labelNames, Gauge::new));
+	}
+
+	/**
+	 * Returns the family of latency histograms with the given name, it is created if it does not exist.
+	 * The values are recorded in nanoseconds and exposed in seconds.
+	 * @param name			name of the metric, it should end with _seconds.
+	 * @param help			description of the metric.
+	 * @param labelNames	names of the labels.
+	 * @return the family of histograms.
+	 */
+	public MetricFamily<Histogram> latency(String name, String help, String... labelNames) {
+		return histogram(name, help, Histogram.LATENCY_BOUNDS, Histogram.NANOS_TO_SECONDS, labelNames);
+	}
+
+	/**
+	 * Returns the family of histograms with the given name, it is created if it does not exist.
+	 * @param name			name of the metric.
+	 * @param help			description of the metric.
+	 * @param bounds		upper bounds of the buckets.
+	 * @param scale			factor applied to the values when they are written.
+	 * @param labelNames	names of the labels.
+	 * @return the family of histograms.
+	 */
+	public MetricFamily<Histogram> histogram(String name, String help, long[] bounds, double scale, String... labelNames) {
+		return register(new MetricFamily<Histogram>(name, help, "histogram", labelNames, () -> new Histogram(bounds, scale)));
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends Metric> MetricFamily<T> register(MetricFamily<T> created) {
+		MetricFamily<?> family = families.putIfAbsent(created.getName(), created);
+		return (family == null) ? created : (MetricFamily<T>) family;
+	}
+
+	/**
+	 * Writes all the metrics in the Prometheus text format, sorted by name.
+	 * @return the text with the metrics.
+	 */
+	public String write() {
+		StringBuilder out = new StringBuilder(4096);
+		for (MetricFamily<?> family : families.values()) {
+			family.write(out);
+		}
+		return out.toString();
+	}
+}
@@ -0,0 +1,54 @@
+package com.advicetec.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics of a queue of the pipeline: elements queued, elements taken, depth and time in queue.
+ * The queue is identified by the stage that consumes it and by its priority or lane.
+ *
+ * @author advicetec
+ * @see com.advicetec.mpmcqueue.Queue#instrument(String, String)
+ */
+public class QueueMetrics
+{
+	private final Counter enqueued;
+
+	private final Counter dequeued;
+
+	private final Histogram timeInQueue;
+
+	/**
+	 * Registers the metrics of a queue.
+	 * @param stage		stage that consumes the queue, as AdapterManager.
+	 * @param queue		priority or lane of the queue in the stage.
+	 * @param depth		function that returns the number of elements in the queue.
+	 */
+	public QueueMetrics(String stage, String queue, LongSupplier depth) {
+		MetricsRegistry registry = MetricsRegistry.getInstance();
+		enqueued = registry.counter("iot_queue_enqueued_total",
+				"Elements queued.", "stage", "queue").labels(stage, queue);
+		dequeued = registry.counter("iot_queue_dequeued_total",
+				"Elements taken from the queue.", "stage", "queue").labels(stage, queue);
+		timeInQueue = registry.latency("iot_queue_time_seconds",
+				"Time the elements wait in the queue.", "stage", "queue").labels(stage, queue);
+		registry.gauge("iot_queue_depth",
+				"Elements in the queue.", "stage", "queue").labels(stage, queue).set(depth);
+	}
+
+	/**
+	 * Records elements queued.
+	 * @param count number of elements.
+	 */
+	public void enqueued(int count) {
+		enqueued.inc(count);
+	}
+
+	/**
+	 * Records an element taken from the queue.
+	 * @param nanos time the element was in the queue.
+	 */
+	public void dequeued(long nanos) {
+		dequeued.inc();
+		timeInQueue.observe(nanos);
+	}
+}
@@ -2,12 +2,11 @@ package com.advicetec.monitorAdapter;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.eclipse.paho.client.mqttv3.internal.wire.MqttPublish;
 
+import com.advicetec.MessageProcessor.MessageLanes;
 import com.advicetec.MessageProcessor.UnifiedMessage;
 import com.advicetec.mpmcqueue.PriorityQueue;
 import com.advicetec.mpmcqueue.QueueType;
@@ -23,6 +22,7 @@ import com.advicetec.mpmcqueue.Queueable;
  * The <code>run</code> method pops elements from the origin queue, then identifies the
  * type of incoming input as MQTT or Modbus; then translate it to a Unified
  * Message and queue the message in the output queue.
+ * The readings are given back to their pool once they are translated.
  * 
  * @author advicetec
  * @see AdapterManager
@@ -32,19 +32,18 @@ import com.advicetec.mpmcqueue.Queueable;
  */
 public class AdapterHandler implements Runnable 
 {
-	private final static int DEFAULT_PRIORITY = 6;
 	static Logger logger = LogManager.getLogger(AdapterHandler.class.getName());
 
-	// origin and destination queues.
+	// origin queue and destination lanes.
 	private PriorityQueue<Queueable> fromQueue;
-	private PriorityQueue<Queueable> toQueue;
+	private MessageLanes toQueue;
 
 	/**
 	 * Constructor.
 	 * @param fromQueue origin queue. 
-	 * @param toQueue destination queue.
+	 * @param toQueue destination lanes, the messages are queued in the lane of their measured entity.
 	 */
-	public AdapterHandler(PriorityQueue<Queueable> fromQueue, PriorityQueue<Queueable> toQueue) {
+	public AdapterHandler(PriorityQueue<Queueable> fromQueue, MessageLanes toQueue) {
 		super();
 		this.fromQueue = fromQueue;
 		this.toQueue = toQueue;
@@ -64,7 +63,7 @@ public class AdapterHandler implements Runnable
 				if (queueable.getType() == QueueType.MQTT_DEV_MESSAGE)
 				{
 					// translate MQTT to Unified Message
-					MqttPublish message = (MqttPublish) queueable.getContent(); 
+					MqttReading message = (MqttReading) queueable.getContent(); 
 					Mqtt2UnifiedMessage mq2Um = new Mqtt2UnifiedMessage(message);
 					List<UnifiedMessage> ums;
 					try 
@@ -73,8 +72,9 @@ public class AdapterHandler implements Runnable
 
 						if (ums != null){
 							for(UnifiedMessage um : ums){
+								um.setIngestedNanos(message.getReadNanos());
 								Queueable obj = new Queueable(QueueType.UNIFIED_MESSAGE, um);
-								toQueue.enqueue(DEFAULT_PRIORITY, obj);
+								toQueue.enqueue(obj);
 							}
 						} 
 
@@ -84,7 +84,9 @@ public class AdapterHandler implements Runnable
 							| InvocationTargetException e) {
 
 						e.printStackTrace();
-						logger.error("cannot queue unified messages from :" + message.getTopicName() + "   " + e.getMessage());
+						logger.error("cannot queue unified messages from :" + message.getTopic() + "   " + e.getMessage());
+					} finally {
+						message.recycle();
 					}
 					// TODO: include priority parameter for the type of message. 
 				}
@@ -92,40 +94,42 @@ public class AdapterHandler implements Runnable
 				
 				// queueable object with type MODBUS Message
 				if(queueable.getType() == QueueType.MODBUS_DEV_MESSAGE ){
-					// creates a dictionary (map) from the origin queue. 
+					// takes the modbus reading from the origin queue. 
 
-					logger.info("in modbus dev message");
+					logger.debug("in modbus dev message");
 
-					@SuppressWarnings("unchecked")
-					Map<String, Object> dictionary = (Map<String, Object>) queueable.getContent();
-					Modbus2UnifiedMessage mod2Um = new	Modbus2UnifiedMessage(dictionary);
+					ModbusReading reading = (ModbusReading) queueable.getContent();
+					Modbus2UnifiedMessage mod2Um = new	Modbus2UnifiedMessage(reading);
 					List<UnifiedMessage> ums;
 					// tries to queue the Unified Message into destination queue
-					// sets the DEFAULT_PRITORY into destination queue
+					// into the lane of its measured entity
 					try {
 						ums = mod2Um.getUnifiedMessage();
 						if (ums != null){
 							for(UnifiedMessage um : ums){
+								um.setIngestedNanos(reading.getReadNanos());
 								Queueable obj = new Queueable(QueueType.UNIFIED_MESSAGE, um);
-								toQueue.enqueue(DEFAULT_PRIORITY, obj);
+								toQueue.enqueue(obj);
 							}
 						}
 					} catch ( Exception e) {
 						logger.error("cannot queue unified messages from: "
-								+ dictionary.get("IPAddress") + dictionary.get("UID") + "   " + e.getMessage());
+								+ reading.getIpAddress() + reading.getUid() + "   " + e.getMessage());
 						e.printStackTrace();
-					} 
+					} finally {
+						reading.recycle();
+					}
 				}
 				
 				if (queueable.getType() == QueueType.MODBUS_ERR_MESSAGE) {
 					
 					logger.debug("Processing Modbus Error Message");
 					
-					Map<String, Object> dictionary = (Map<String, Object>) queueable.getContent();
-					logger.error("Error reading modbus Message from " + dictionary.get("IPAddress") +":" + 
-								  dictionary.get("Port") + " Unit:" + dictionary.get("UID") + " Offset:" + dictionary.get("Offset") +
-								  " Count:" + dictionary.get("Count") + " Err Message:" + dictionary.get("Type"));
-					
+					ModbusReading reading = (ModbusReading) queueable.getContent();
+					logger.error("Error reading modbus Message from " + reading.getIpAddress() +":" + 
+								  reading.getPort() + " Unit:" + reading.getUid() + " Offset:" + reading.getOffset() +
+								  " Count:" + reading.getCount() + " Err Message:" + reading.getType().getName());
+					reading.recycle();
 
 				}
 			} catch (InterruptedException e) {
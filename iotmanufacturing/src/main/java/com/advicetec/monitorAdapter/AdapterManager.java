@@ -50,6 +50,7 @@ public class AdapterManager extends Manager implements Runnable
 	private AdapterManager() 
 	{
 		super("AdapterManager");	
+		getQueue().instrument("AdapterManager");
 		confManager = ConfigurationManager.getInstance();
 		messManager = MessageManager.getInstance();
 	}
@@ -60,7 +61,7 @@ public class AdapterManager extends Manager implements Runnable
 		int number = Integer.valueOf(getProperty("NumAdapterHandlers")); 
 		for (int i = 0; i < number; i++) 
 		{
-			Thread t = new Thread(new AdapterHandler(instance.getQueue(),messManager.getQueue()));
+			Thread t = new Thread(new AdapterHandler(instance.getQueue(),messManager.getLanes()));
 			t.start();
 		}
 		
@@ -0,0 +1,159 @@
+package com.advicetec.monitorAdapter;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * This class is the base of the typed records queued in the adapter manager with the raw bytes read
+ * from a device.
+ * <p>
+ * The bytes are kept in a buffer that grows when required and is reused: the records are taken from a
+ * pool by the readers, and the <code>AdapterHandler</code> gives them back once they are translated into
+ * unified messages. The translators read the buffer only during the translation, so no reference to it
+ * is kept after the record is recycled.
+ *
+ * @author advicetec
+ * @see ModbusReading
+ * @see MqttReading
+ * @see AdapterHandler
+ */
+public abstract class IngestionRecord
+{
+
+	/**
+	 * Initial capacity of the buffer.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Bytes read, only the first <code>length</code> bytes are valid.
+	 */
+	private byte[] buffer = new byte[INITIAL_CAPACITY];
+
+	/**
+	 * Number of valid bytes in the buffer.
+	 */
+	private int length;
+
+	/**
+	 * Time the bytes were read, given by <code>System.nanoTime</code>.
+	 */
+	private long readNanos;
+
+	/**
+	 * Pool of records that can be reused.
+	 *
+	 * @param <T> type of record.
+	 */
+	protected static final class Pool<T extends IngestionRecord>
+	{
+		/**
+		 * Maximum number of records kept in the pool.
+		 */
+		private static final int MAX_POOLED = 4096;
+
+		private final ConcurrentLinkedQueue<T> records = new ConcurrentLinkedQueue<T>();
+		private final AtomicInteger size = new AtomicInteger();
+		private final Supplier<T> factory;
+
+		public Pool(Supplier<T> factory) {
+			this.factory = factory;
+		}
+
+		/**
+		 * Takes a record from the pool, or creates one if the pool is empty.
+		 * @return an empty record.
+		 */
+		public T obtain() {
+			T record = records.poll();
+			if (record == null) {
+				return factory.get();
+			}
+			size.decrementAndGet();
+			return record;
+		}
+
+		/**
+		 * Gives back a record to the pool, it is discarded if the pool is full.
+		 * @param record record no longer used.
+		 */
+		public void release(T record) {
+			record.clear();
+			if (size.incrementAndGet() <= MAX_POOLED) {
+				records.offer(record);
+			} else {
+				size.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Clears the fields of the record before it is reused.
+	 */
+	protected void clear() {
+		this.length = 0;
+		this.readNanos = 0;
+	}
+
+	/**
+	 * Gives back the record to its pool. The record must not be used after this call.
+	 */
+	public abstract void recycle();
+
+	/**
+	 * Returns the buffer with the bytes read, only the first <code>getLength()</code> bytes are valid.
+	 * @return the buffer of the record.
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Returns the number of bytes read.
+	 * @return the number of valid bytes in the buffer.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the time the bytes were read, it is used to measure the latency of the ingestion.
+	 * @return time given by <code>System.nanoTime</code>, 0 if no bytes were read.
+	 */
+	public long getReadNanos() {
+		return readNanos;
+	}
+
+	/**
+	 * Sets the number of bytes to write, and returns the buffer where they have to be written. The
+	 * read time of the record is set to the current time.
+	 * @param length number of bytes.
+	 * @return the buffer of the record, with at least <code>length</code> bytes.
+	 */
+	public byte[] allocate(int length) {
+		if (buffer.length < length) {
+			buffer = new byte[Math.max(length, buffer.length * 2)];
+		}
+		this.length = length;
+		this.readNanos = System.nanoTime();
+		return buffer;
+	}
+
+	/**
+	 * Copies the bytes read into the buffer.
+	 * @param data bytes read.
+	 */
+	public void setData(byte[] data) {
+		System.arraycopy(data, 0, allocate(data.length), 0, data.length);
+	}
+
+	/**
+	 * Returns a copy of the bytes read, for the translators that require an array of the exact length.
+	 * @return a new array with the bytes read.
+	 */
+	public byte[] getData() {
+		return Arrays.copyOf(buffer, length);
+	}
+}
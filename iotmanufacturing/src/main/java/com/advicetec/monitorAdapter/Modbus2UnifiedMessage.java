@@ -1,8 +1,8 @@
 package com.advicetec.monitorAdapter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -16,7 +16,9 @@ import com.advicetec.configuration.ModbusMonitoringDevice;
 import com.advicetec.configuration.MonitoringDevice;
 import com.advicetec.eventprocessor.ModBusTcpEventType;
 import com.advicetec.monitorAdapter.protocolconverter.InterpretedSignal;
+import com.advicetec.monitorAdapter.protocolconverter.PrimitiveTranslator;
 import com.advicetec.monitorAdapter.protocolconverter.Translator;
+import com.advicetec.monitorAdapter.protocolconverter.Translators;
 
 /**
  * This class implements the protocol conversion from Modbus to 
@@ -24,7 +26,8 @@ import com.advicetec.monitorAdapter.protocolconverter.Translator;
  * This object is create from the <code>AdapterHandler</code> and implements
  * the <code>ProtocolConverter</code> interface, and its 
  * {@link #getUnifiedMessage()} method.
- * It also 
+ * The translators that decode into primitive values are used without 
+ * creating an interpreted signal per value.
  * 
  * @author advicetec
  * @see UnifiedMessage
@@ -34,6 +37,7 @@ public class Modbus2UnifiedMessage implements ProtocolConverter {
 
 	static Logger logger = LogManager.getLogger(Modbus2UnifiedMessage.class.getName());
 
+	private ModbusReading reading; // modbus read, or error of the read.
 	private String ipAddr; // Concentrator's ip address
 	private Integer port;  // Concentrator's port
 	private Integer uid;   // id of device measure
@@ -42,189 +46,178 @@ public class Modbus2UnifiedMessage implements ProtocolConverter {
 	private boolean isConcentrator; // the slave corresponds to a concentrator.
 	private ModBusTcpEventType type; // type of modbus event
 	private ModbusInputOutputPort inputOutputPort; // Modbus input output port when it is triggered by a single signal.
-	private byte[] dataMeasured;   // measures
-
-
-	public Modbus2UnifiedMessage(Map<String, Object> dictionary) {
-		ipAddr = (String) dictionary.get("IPAddress");
-		port = (Integer) dictionary.get("Port");
-		uid = (Integer) dictionary.get("UID");
-		offSet = (Integer) dictionary.get("Offset");
-		count = (Integer) dictionary.get("Count");
-		type = ModBusTcpEventType.from( ((int) dictionary.get("Type")) );
-		isConcentrator = (boolean) dictionary.get("IsConcentrator");
-		inputOutputPort = (ModbusInputOutputPort) dictionary.get("InputOutputPort");
-		dataMeasured = (byte[]) dictionary.get("Read");
+	private byte[] dataMeasured;   // measures, only the first dataLength bytes are valid.
+	private int dataLength;   // number of bytes measured.
+
+
+	public Modbus2UnifiedMessage(ModbusReading reading) {
+		this.reading = reading;
+		ipAddr = reading.getIpAddress();
+		port = reading.getPort();
+		uid = reading.getUid();
+		offSet = reading.getOffset();
+		count = reading.getCount();
+		type = reading.getType();
+		isConcentrator = reading.isConcentrator();
+		inputOutputPort = reading.getInputOutputPort();
+		dataMeasured = reading.getBuffer();
+		dataLength = reading.getLength();
+	}
+
+	/**
+	 * Decodes a range of the data measured with a translator that returns primitive values.
+	 */
+	private static int[] decode(PrimitiveTranslator translator, byte[] data, int offset, int length) {
+		int[] values = new int[translator.capacity(length)];
+		int nbrValues = translator.translate(data, offset, length, values);
+		return (nbrValues == values.length) ? values : Arrays.copyOf(values, nbrValues);
+	}
+
+	/**
+	 * Returns true if the type of event corresponds to a read.
+	 */
+	private boolean isRead() {
+		return (type == ModBusTcpEventType.READ_DISCRETE)
+				|| (type == ModBusTcpEventType.READ_REGISTER)
+				|| (type == ModBusTcpEventType.READ_HOLDING_REGISTER);
+	}
+
+	/**
+	 * Returns true if the type of event corresponds to the error of a read.
+	 */
+	private boolean isReadError() {
+		return (type == ModBusTcpEventType.ERROR_READ_DISCRETE)
+				|| (type == ModBusTcpEventType.ERROR_READ_REGISTER)
+				|| (type == ModBusTcpEventType.ERROR_READ_HOLDING);
 	}
 
-	public List<UnifiedMessage> getUnifiedMessageSingleSignal() throws InstantiationException, 
+	public List<UnifiedMessage> getUnifiedMessageSingleSignal() throws InstantiationException,
 	IllegalAccessException, ClassNotFoundException  {
 
 
 		logger.info("entering getUnifiedMessageSingleSignal" + "ipAddr" + ipAddr + "port:"
-				+ Integer.toString(port) + "type: " + this.type + 
-				" uid:" + this.uid + " offset: " + this.offSet + 
+				+ Integer.toString(port) + "type: " + this.type +
+				" uid:" + this.uid + " offset: " + this.offSet +
 				"count: " + this.count);
 
 		ArrayList<UnifiedMessage> theList = new ArrayList<UnifiedMessage>();
-						
+
 		ConfigurationManager confManager = ConfigurationManager.getInstance();
 		MonitoringDevice device = confManager.getMonitoringDevice(ipAddr);
-		
+
 		if (device == null)
 			logger.error("Device with ip address:" + ipAddr + "was not found" );
-		
+
 		String transformation = this.inputOutputPort.getTransformationText();
 		String className = this.inputOutputPort.getSignalType().getType().getClassName();
-	
+
 		logger.debug("ClassName param:" + className);
-		String packageStr = this.getClass().getPackage().getName() + ".protocolconverter";
-		String classToLoad = packageStr + "." + className;
-	
-		List<InterpretedSignal> values;
+
 		Integer measuringEntityId = this.inputOutputPort.getMeasuringEntity();
-			
-		// Depending on the Modbus Event, a different class is loaded.
-		if (type.equals(ModBusTcpEventType.READ_DISCRETE)) {
-			Translator object = (Translator) Class.forName(classToLoad).newInstance();
-			values = object.translate(dataMeasured);
-			theList.add(new SampleMessage(device, this.inputOutputPort, measuringEntityId, values, transformation));
-				
-		} else if (type.equals(ModBusTcpEventType.READ_REGISTER)) {
-			Translator object = (Translator) Class.forName(classToLoad).newInstance();
-			values = object.translate(dataMeasured);				
-			// Build the port label as: PREFIX + "-" + offset + "-" + count 
-			theList.add(new SampleMessage(device, this.inputOutputPort, measuringEntityId, values, transformation));
-				
-		} else if (type.equals(ModBusTcpEventType.READ_HOLDING_REGISTER)) {
-			Translator object = (Translator) Class.forName(classToLoad).newInstance();
-			values = object.translate(dataMeasured);				
-			// Build the port label as: PREFIX + "-" + offset + "-" + count 
-			theList.add(new SampleMessage(device, this.inputOutputPort, measuringEntityId, values, transformation));
-				
-		} else if (type == ModBusTcpEventType.ERROR_READ_DISCRETE) {	
-			theList.add(new MeasuringErrorMessage(device, this.inputOutputPort, measuringEntityId));
-				
-		} else if (type == ModBusTcpEventType.ERROR_READ_REGISTER) {
-				
-			theList.add(new MeasuringErrorMessage(device, this.inputOutputPort, measuringEntityId));
-				
-		} else if (type == ModBusTcpEventType.ERROR_READ_HOLDING) {
-				
+
+		// Depending on the Modbus Event, a different class is used.
+		if (isRead()) {
+			Translator object = Translators.get(className);
+			if (object instanceof PrimitiveTranslator) {
+				PrimitiveTranslator primitive = (PrimitiveTranslator) object;
+				theList.add(new SampleMessage(device, this.inputOutputPort, measuringEntityId,
+						primitive.getValueType(), decode(primitive, dataMeasured, 0, dataLength), transformation));
+			} else {
+				List<InterpretedSignal> values = object.translate(reading.getData());
+				theList.add(new SampleMessage(device, this.inputOutputPort, measuringEntityId, values, transformation));
+			}
+
+		} else if (isReadError()) {
 			theList.add(new MeasuringErrorMessage(device, this.inputOutputPort, measuringEntityId));
-				
+
 		} else {
-				
+
 			logger.error("The event type given:" + type.getName() +
 						"has not an associated unified message");
 		}
-			
+
 		logger.debug("Exit getUnifiedMessage - Number of Unified Messages:" + theList.size());
-	
+
 		return theList;
 	}
 
-	public List<UnifiedMessage> getUnifiedMessageConcentrator() throws InstantiationException, 
+	public List<UnifiedMessage> getUnifiedMessageConcentrator() throws InstantiationException,
 	IllegalAccessException, ClassNotFoundException  {
 
 
 		logger.debug("entering getUnifiedMessageConcentrator" + "port:"
-				+ Integer.toString(port) + "type: " + this.type + 
-				" uid:" + this.uid + " offset: " + this.offSet + 
+				+ Integer.toString(port) + "type: " + this.type +
+				" uid:" + this.uid + " offset: " + this.offSet +
 				"count: " + this.count);
-		
+
 
 		ArrayList<UnifiedMessage> theList = new ArrayList<UnifiedMessage>();
-		
+
 		ConfigurationManager confManager = ConfigurationManager.getInstance();
 		ModbusMonitoringDevice device = (ModbusMonitoringDevice) confManager.getMonitoringDevice(ipAddr);
-			
+
 		List<ModbusInputOutputPort> ports = device.getInputOutputPorts();
-		
+
 		// This variable has the current position being read on the byte array.
 		int startPosition = 1;
 
-		logger.info("len data returned" +  String.valueOf(dataMeasured.length));
-		for (byte b : dataMeasured) {
-			logger.info("Orig Response:" + String.format("0x%02X", b));
+		if (logger.isDebugEnabled()) {
+			logger.debug("len data returned" +  String.valueOf(dataLength));
+			for (int k = 0; k < dataLength; k++) {
+				logger.debug("Orig Response:" + String.format("0x%02X", dataMeasured[k]));
+			}
 		}
 
-		
-		for (int i = 0; i < ports.size(); i++) { 
+
+		for (int i = 0; i < ports.size(); i++) {
 			ModbusInputOutputPort port = ports.get(i);
-			
+
+			// the range of the port starts one byte before its registers, in the place of the byte count.
 			int nbrBytes = port.getNbr_read()*2;
-			byte [] dataMeasuredForPort = new byte[nbrBytes + 1];
-			
-			dataMeasuredForPort[0] = (byte) nbrBytes;
-			
-			for (int k=0; k < nbrBytes; k++) {
-				dataMeasuredForPort[k+1] = dataMeasured[k+startPosition];
-			}
-			
-			for (byte b : dataMeasuredForPort) {
-				logger.info("Response:" + String.format("0x%02X", b));
-			}
-			
+			int portOffset = startPosition - 1;
 			startPosition = startPosition + nbrBytes;
-			
+
 			String transformation = port.getTransformationText();
 			String className = port.getSignalType().getType().getClassName();
-	
+
 			logger.debug("ClassName param:" + className);
-			String packageStr = this.getClass().getPackage().getName() + ".protocolconverter";
-			String classToLoad = packageStr + "." + className;
-	
-			List<InterpretedSignal> values;
+
 			Integer measuringEntityId = port.getMeasuringEntity();
-			
-			// Depending on the Modbus Event, a different class is loaded.
-			if (type.equals(ModBusTcpEventType.READ_DISCRETE)) {
-				Translator object = (Translator) Class.forName(classToLoad).newInstance();
-				values = object.translate(dataMeasuredForPort);
-				theList.add(new SampleMessage(device, port,  
-						measuringEntityId, values, transformation));
-				
-			} else if (type.equals(ModBusTcpEventType.READ_REGISTER)) {
-				Translator object = (Translator) Class.forName(classToLoad).newInstance();
-				values = object.translate(dataMeasuredForPort);				
-				// Build the port label as: PREFIX + "-" + offset + "-" + count 
-				theList.add(new SampleMessage(device, port, 
-						measuringEntityId, values, transformation));
-				
-			} else if (type.equals(ModBusTcpEventType.READ_HOLDING_REGISTER)) {
-				Translator object = (Translator) Class.forName(classToLoad).newInstance();
-				values = object.translate(dataMeasuredForPort);				
-				// Build the port label as: PREFIX + "-" + offset + "-" + count 
-				theList.add(new SampleMessage(device, port, 
-						measuringEntityId, values, transformation));
-				
-			} else if (type == ModBusTcpEventType.ERROR_READ_DISCRETE) {
-				
-				theList.add(new MeasuringErrorMessage(device, port, measuringEntityId));
-				
-			} else if (type == ModBusTcpEventType.ERROR_READ_REGISTER) {
-				
-				theList.add(new MeasuringErrorMessage(device, port, measuringEntityId));
-				
-			} else if (type == ModBusTcpEventType.ERROR_READ_HOLDING) {
-				
+
+			// Depending on the Modbus Event, a different class is used.
+			if (isRead()) {
+				Translator object = Translators.get(className);
+				if (object instanceof PrimitiveTranslator) {
+					PrimitiveTranslator primitive = (PrimitiveTranslator) object;
+					theList.add(new SampleMessage(device, port, measuringEntityId, primitive.getValueType(),
+							decode(primitive, dataMeasured, portOffset, nbrBytes + 1), transformation));
+				} else {
+					byte [] dataMeasuredForPort = new byte[nbrBytes + 1];
+					dataMeasuredForPort[0] = (byte) nbrBytes;
+					System.arraycopy(dataMeasured, portOffset + 1, dataMeasuredForPort, 1, nbrBytes);
+					List<InterpretedSignal> values = object.translate(dataMeasuredForPort);
+					theList.add(new SampleMessage(device, port,
+							measuringEntityId, values, transformation));
+				}
+
+			} else if (isReadError()) {
+
 				theList.add(new MeasuringErrorMessage(device, port, measuringEntityId));
-				
+
 			} else {
-				
+
 				logger.error("The event type given:" + type.getName() +
 						"has not an associated unified message");
 			}
-			
+
 			logger.debug("Exit getUnifiedMessage - Number of Unified Messages:" + theList.size());
-	
+
 		}
 
 		return theList;
 	}
-	
-	
+
+
 
 	/**
 	 * Overrides <code>ProtocolConverter</code> interface.
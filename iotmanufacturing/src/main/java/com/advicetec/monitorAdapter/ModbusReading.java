@@ -0,0 +1,109 @@
+package com.advicetec.monitorAdapter;
+
+import com.advicetec.configuration.ModbusInputOutputPort;
+import com.advicetec.eventprocessor.ModBusTcpEventType;
+
+/**
+ * This class represents a read from a modbus slave, or the error of a read, to be translated into
+ * unified messages by the <code>AdapterHandler</code>.
+ * <p>
+ * For discrete inputs the buffer has one byte per input (1 or 0). For registers the buffer has the
+ * byte count followed by two bytes per register, as the modbus response.
+ *
+ * @author advicetec
+ * @see Modbus2UnifiedMessage
+ */
+public class ModbusReading extends IngestionRecord
+{
+
+	private static final Pool<ModbusReading> pool = new Pool<ModbusReading>(ModbusReading::new);
+
+	private String ipAddress; // Concentrator's ip address
+	private int port;  // Concentrator's port
+	private Integer uid;   // id of device measure
+	private int offset; // Number of the first register
+	private int count;   // Number of elements read.
+	private ModBusTcpEventType type; // type of modbus event, or type of error.
+	private boolean concentrator; // the slave corresponds to a concentrator.
+	private ModbusInputOutputPort inputOutputPort; // Modbus input output port when it is triggered by a single signal.
+
+	/**
+	 * Takes an empty reading from the pool.
+	 * @return an empty reading.
+	 */
+	public static ModbusReading obtain() {
+		return pool.obtain();
+	}
+
+	@Override
+	public void recycle() {
+		pool.release(this);
+	}
+
+	@Override
+	protected void clear() {
+		super.clear();
+		this.ipAddress = null;
+		this.uid = null;
+		this.type = null;
+		this.inputOutputPort = null;
+	}
+
+	/**
+	 * Sets the origin of the read.
+	 *
+	 * @param ipAddress		Ip address of the modbus slave.
+	 * @param port			port of the modbus slave.
+	 * @param uid			unit identifier.
+	 * @param offset		first register or input read.
+	 * @param count			number of registers or inputs read.
+	 * @param type			type of modbus event, or type of error.
+	 * @param concentrator	the slave corresponds to a concentrator.
+	 * @param inputOutputPort	input output port when the read is triggered by a single signal.
+	 * @return this reading.
+	 */
+	public ModbusReading set(String ipAddress, int port, Integer uid, int offset, int count,
+			ModBusTcpEventType type, boolean concentrator, ModbusInputOutputPort inputOutputPort) {
+		this.ipAddress = ipAddress;
+		this.port = port;
+		this.uid = uid;
+		this.offset = offset;
+		this.count = count;
+		this.type = type;
+		this.concentrator = concentrator;
+		this.inputOutputPort = inputOutputPort;
+		return this;
+	}
+
+	public String getIpAddress() {
+		return ipAddress;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public Integer getUid() {
+		return uid;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public ModBusTcpEventType getType() {
+		return type;
+	}
+
+	public boolean isConcentrator() {
+		return concentrator;
+	}
+
+	public ModbusInputOutputPort getInputOutputPort() {
+		return inputOutputPort;
+	}
+}
@@ -6,8 +6,6 @@ import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.eclipse.paho.client.mqttv3.MqttException;
-import org.eclipse.paho.client.mqttv3.internal.wire.MqttPublish;
 
 import com.advicetec.MessageProcessor.SampleMessage;
 import com.advicetec.MessageProcessor.UnifiedMessage;
@@ -18,6 +16,7 @@ import com.advicetec.configuration.SystemConstants;
 import com.advicetec.eventprocessor.ModBusTcpEventType;
 import com.advicetec.monitorAdapter.protocolconverter.InterpretedSignal;
 import com.advicetec.monitorAdapter.protocolconverter.Translator;
+import com.advicetec.monitorAdapter.protocolconverter.Translators;
 
 /**
  * This class implements the protocol conversion from MQTT message to 
@@ -34,7 +33,7 @@ public class Mqtt2UnifiedMessage implements ProtocolConverter
 {
 	static Logger logger = LogManager.getLogger(Mqtt2UnifiedMessage.class.getName());
 	
-	private MqttPublish mqttMessage;
+	private MqttReading mqttMessage;
 
 	/**
 	 * Default constructor
@@ -44,10 +43,10 @@ public class Mqtt2UnifiedMessage implements ProtocolConverter
 	}
 
 	/**
-	 * Constructor from <code>MqttPublish</code> object.
+	 * Constructor from <code>MqttReading</code> object.
 	 * @param mqttMsg MQTT message.
 	 */
-	public Mqtt2UnifiedMessage(MqttPublish mqttMsg){
+	public Mqtt2UnifiedMessage(MqttReading mqttMsg){
 		this.mqttMessage = mqttMsg;
 	}
 
@@ -75,12 +74,14 @@ public class Mqtt2UnifiedMessage implements ProtocolConverter
 	IllegalAccessException, IllegalArgumentException, InvocationTargetException
 	{
 		// facility/group/device/port
-		String topic = mqttMessage.getTopicName();
+		String topic = mqttMessage.getTopic();
 		String[] fields = topic.split(SystemConstants.TOPIC_SEP);
 
-		logger.debug("Complete topic:"+topic);
-		for (int i = 0; i < fields.length; i++) {
-			logger.debug("field: "+ i + "value:" + fields[i]);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Complete topic:"+topic);
+			for (int i = 0; i < fields.length; i++) {
+				logger.debug("field: "+ i + "value:" + fields[i]);
+			}
 		}
 
 		String deviceID = fields[1];  // Device Id - example Mac Address: 10:10:10:10:10:10 
@@ -93,17 +94,14 @@ public class Mqtt2UnifiedMessage implements ProtocolConverter
 		String className = confManager.getClassName(deviceID, portLabel);
 
 		logger.debug("className param:" + className);
-		// get the string for the right classname and package
-		String packageStr = this.getClass().getPackage().getName() + ".protocolconverter";
-		String classToLoad = packageStr + "." + className;
 
 		List<InterpretedSignal> values;
 
 		try {
-			// loads the translator object from the specified classname.
-			Translator object = (Translator) Class.forName(classToLoad).newInstance();
+			// gets the translator object of the specified classname.
+			Translator object = Translators.get(className);
 
-			values = object.translate(mqttMessage.getPayload());
+			values = object.translate(mqttMessage.getData());
 			// TODO: call the measuredEntititiesFacade by mac address.
 			Integer measuringEntityId = confManager.getMeasuredEntity(deviceID, portLabel);
 			// creates the SampleMessage object.
@@ -118,9 +116,6 @@ public class Mqtt2UnifiedMessage implements ProtocolConverter
 				return null;
 			}
 
-		} catch (MqttException e) {
-			logger.error("Error in mqtt message" + e.getMessage());
-			e.printStackTrace();
 		}  catch (ClassNotFoundException e){
 			logger.error("Error Class not found" + e.getMessage());
 		}
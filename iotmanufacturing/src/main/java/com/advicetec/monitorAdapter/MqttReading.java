@@ -0,0 +1,59 @@
+package com.advicetec.monitorAdapter;
+
+/**
+ * This class represents a message received from the MQTT broker, to be translated into unified
+ * messages by the <code>AdapterHandler</code>. The buffer has the payload of the message.
+ *
+ * @author advicetec
+ * @see Mqtt2UnifiedMessage
+ */
+public class MqttReading extends IngestionRecord
+{
+
+	private static final Pool<MqttReading> pool = new Pool<MqttReading>(MqttReading::new);
+
+	/**
+	 * Topic where the message was published: facility/device/port.
+	 */
+	private String topic;
+
+	/**
+	 * Takes an empty reading from the pool.
+	 * @return an empty reading.
+	 */
+	public static MqttReading obtain() {
+		return pool.obtain();
+	}
+
+	/**
+	 * Takes a reading from the pool with the message given.
+	 * @param topic		topic of the message.
+	 * @param payload	payload of the message, it is copied.
+	 * @return the reading.
+	 */
+	public static MqttReading obtain(String topic, byte[] payload) {
+		MqttReading reading = pool.obtain();
+		reading.topic = topic;
+		reading.setData(payload);
+		return reading;
+	}
+
+	@Override
+	public void recycle() {
+		pool.release(this);
+	}
+
+	@Override
+	protected void clear() {
+		super.clear();
+		this.topic = null;
+	}
+
+	public String getTopic() {
+		return topic;
+	}
+
+	public void setTopic(String topic) {
+		this.topic = topic;
+	}
+}
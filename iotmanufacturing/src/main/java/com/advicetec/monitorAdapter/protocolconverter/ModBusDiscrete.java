@@ -11,11 +11,12 @@ import com.advicetec.core.AttributeType;
 /**
  * Main functionality is to translate a discrete signal in Modbus protocol to a
  * collection of interpreted signals.
- * This class implement the <code>Translator</code> interface.
+ * This class implement the <code>PrimitiveTranslator</code> interface.
  * @author advicetec
  * @see Translator
+ * @see PrimitiveTranslator
  */
-public class ModBusDiscrete implements Translator {
+public class ModBusDiscrete implements PrimitiveTranslator {
 	
 	static Logger logger = LogManager.getLogger(ModBusDiscrete.class.getName());
 	/**
@@ -36,4 +37,22 @@ public class ModBusDiscrete implements Translator {
 		return listReturn;
 	}
 
+	@Override
+	public AttributeType getValueType() {
+		return AttributeType.BOOLEAN;
+	}
+
+	@Override
+	public int capacity(int length) {
+		return length;
+	}
+
+	@Override
+	public int translate(byte[] payload, int offset, int length, int[] values) {
+		for (int i = 0; i < length; i++){
+			values[i] = (payload[offset + i] == 1) ? 1 : 0;
+		}
+		return length;
+	}
+
 }
@@ -11,11 +11,12 @@ import com.advicetec.core.AttributeType;
 /**
  * Main functionality is to translate a register value in Modbus protocol to a
  * collection of interpreted signals.
- * This class implement the <code>Translator</code> interface.
+ * This class implement the <code>PrimitiveTranslator</code> interface.
  * @author advicetec
  * @see Translator
+ * @see PrimitiveTranslator
  */
-public class ModBusRegister implements Translator {
+public class ModBusRegister implements PrimitiveTranslator {
 
 	static Logger logger = LogManager.getLogger(ModBusDiscrete.class.getName());
 	
@@ -36,5 +37,27 @@ public class ModBusRegister implements Translator {
 		}
 		return listReturn;
 	}
+
+	@Override
+	public AttributeType getValueType() {
+		return AttributeType.INT;
+	}
+
+	@Override
+	public int capacity(int length) {
+		return Math.max(0, (length - 1) / 2);
+	}
+
+	@Override
+	public int translate(byte[] payload, int offset, int length, int[] values) {
+		int count = 0;
+		int i = offset + 1; // The first byte corresponds to array len.
+		int end = offset + length;
+		while  (i + 1 < end) {
+			values[count++] = ((payload[i] & 0xff) << 8) | (payload[i+1] & 0xff);
+			i = i + 2;
+		}
+		return count;
+	}
 	
 }
@@ -0,0 +1,44 @@
+package com.advicetec.monitorAdapter.protocolconverter;
+
+import com.advicetec.core.AttributeType;
+
+/**
+ * Optional variant of the <code>Translator</code> interface that decodes the
+ * payload straight into an array of primitive values, without creating an 
+ * interpreted signal and a boxed value for every signal.
+ * <p>
+ * Boolean values are returned as 1 (true) or 0 (false).
+ * 
+ * @author advicetec
+ * @see Translator
+ */
+public interface PrimitiveTranslator extends Translator 
+{
+	/**
+	 * Returns the type of the values decoded by this translator, 
+	 * <code>AttributeType.BOOLEAN</code> or <code>AttributeType.INT</code>.
+	 * 
+	 * @return the type of the decoded values.
+	 */
+	public AttributeType getValueType();
+
+	/**
+	 * Returns the maximum number of values that a payload can contain.
+	 * 
+	 * @param length number of bytes of the payload.
+	 * @return the size required for the array of values.
+	 */
+	public int capacity(int length);
+
+	/**
+	 * Translates a range of the payload into primitive values.
+	 * 
+	 * @param payload The bytes to be translated.
+	 * @param offset first byte of the range.
+	 * @param length number of bytes of the range.
+	 * @param values array where the values are written, its size has to be at
+	 * least <code>capacity(length)</code>.
+	 * @return the number of values written.
+	 */
+	public int translate(byte[] payload, int offset, int length, int[] values);
+}
@@ -6,7 +6,11 @@ import java.util.List;
  * General interface for signal translation.
  * This interface implements the tranlate signature that receives the payload
  * in bytes and builds a collection of Interpreted signals. 
+ * The translators that can decode the payload into primitive values also 
+ * implement the <code>PrimitiveTranslator</code> interface.
  * @author advicetec
+ * @see PrimitiveTranslator
+ * @see Translators
  *
  */
 public interface Translator 
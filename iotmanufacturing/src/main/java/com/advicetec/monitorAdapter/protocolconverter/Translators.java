@@ -0,0 +1,57 @@
+package com.advicetec.monitorAdapter.protocolconverter;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * This class maintains an instance of every translator class, so the class
+ * of a signal type is resolved and instantiated only once.
+ * <p>
+ * The translators do not keep state between translations, the same instance
+ * is shared by all the adapter handlers.
+ * 
+ * @author advicetec
+ * @see Translator
+ */
+public class Translators 
+{
+
+	static Logger logger = LogManager.getLogger(Translators.class.getName());
+
+	/**
+	 * Translators by class name.
+	 */
+	private static final ConcurrentHashMap<String, Translator> translators = new ConcurrentHashMap<String, Translator>();
+
+	private Translators() {
+	}
+
+	/**
+	 * Returns the translator of a class in this package.
+	 * 
+	 * @param className simple name of the translator class.
+	 * @return the translator instance.
+	 * @throws ClassNotFoundException if the class cannot be found.
+	 * @throws IllegalAccessException if the default constructor of the class
+	 * cannot be accessed. 
+	 * @throws InstantiationException if the translator class has not a default
+	 * constructor. 
+	 */
+	public static Translator get(String className) throws InstantiationException, 
+	IllegalAccessException, ClassNotFoundException 
+	{
+		Translator translator = translators.get(className);
+		if (translator == null) {
+			String classToLoad = Translators.class.getPackage().getName() + "." + className;
+			logger.debug("Loading translator:" + classToLoad);
+			Translator created = (Translator) Class.forName(classToLoad).newInstance();
+			translator = translators.putIfAbsent(className, created);
+			if (translator == null) {
+				translator = created;
+			}
+		}
+		return translator;
+	}
+}
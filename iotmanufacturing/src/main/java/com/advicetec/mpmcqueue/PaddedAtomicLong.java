@@ -0,0 +1,41 @@
+package com.advicetec.mpmcqueue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Atomic long counter surrounded by padding fields.
+ * <p>
+ * The head and tail counters of the ring buffer are written by different
+ * threads (producers and consumers). Placing them in the same cache line
+ * makes every update invalidate the other counter as well (false sharing).
+ * The padding keeps each counter in its own cache line.
+ * 
+ * @author advicetec
+ * @see Queue
+ */
+class PaddedAtomicLong extends AtomicLong 
+{
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Padding fields, they are never read.
+	 */
+	public volatile long p1, p2, p3, p4, p5, p6 = 7L;
+
+	/**
+	 * Creates a padded counter with the given initial value.
+	 * @param initialValue initial value of the counter.
+	 */
+	PaddedAtomicLong(long initialValue) {
+		super(initialValue);
+	}
+
+	/**
+	 * Prevents the JIT from removing the padding fields.
+	 * @return the sum of the padding fields.
+	 */
+	public long sumPaddingToPreventOptimisation() {
+		return p1 + p2 + p3 + p4 + p5 + p6;
+	}
+}
@@ -0,0 +1,84 @@
+package com.advicetec.mpmcqueue;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Wait strategy that spins for a few attempts, then yields and finally parks
+ * the thread for an increasing amount of time up to a maximum.
+ * <p>
+ * This is the default strategy. Idle handlers do not consume processor, while
+ * busy handlers never park because they find elements before reaching the 
+ * park phase.
+ * 
+ * @author advicetec
+ * @see WaitStrategy
+ */
+public class ParkWaitStrategy implements WaitStrategy 
+{
+
+	/**
+	 * Attempts executed by spinning.
+	 */
+	private static final int SPIN_TRIES = 100;
+
+	/**
+	 * Attempts executed by yielding, after the spin attempts.
+	 */
+	private static final int YIELD_TRIES = 200;
+
+	/**
+	 * Minimum time to park in nanoseconds.
+	 */
+	private static final long MIN_PARK_NANOS = 1000L;
+
+	/**
+	 * Default maximum time to park in nanoseconds (1 millisecond).
+	 */
+	private static final long DEFAULT_MAX_PARK_NANOS = 1000000L;
+
+	/**
+	 * Maximum time to park in nanoseconds. It bounds the latency to detect
+	 * a new element once the thread is parked.
+	 */
+	private final long maxParkNanos;
+
+	/**
+	 * Creates the strategy with the default maximum park time.
+	 */
+	public ParkWaitStrategy() {
+		this(DEFAULT_MAX_PARK_NANOS);
+	}
+
+	/**
+	 * Creates the strategy with the given maximum park time.
+	 * @param maxParkNanos maximum time to park in nanoseconds.
+	 */
+	public ParkWaitStrategy(long maxParkNanos) {
+		super();
+		this.maxParkNanos = Math.max(MIN_PARK_NANOS, maxParkNanos);
+	}
+
+	/**
+	 * Spins, yields or parks depending on the number of failed attempts. A negative
+	 * counter, as one that overflowed, parks for the maximum time.
+	 */
+	public void idle(int counter) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		if (counter < 0) {
+			LockSupport.parkNanos(this, maxParkNanos);
+		} else if (counter < SPIN_TRIES) {
+			// busy spin.
+			return;
+		} else if (counter < SPIN_TRIES + YIELD_TRIES) {
+			Thread.yield();
+		} else {
+			// doubles the park time on every attempt until the maximum.
+			int shift = Math.min(counter - SPIN_TRIES - YIELD_TRIES, 20);
+			long nanos = Math.min(MIN_PARK_NANOS << shift, maxParkNanos);
+			LockSupport.parkNanos(this, nanos);
+		}
+	}
+}
@@ -1,9 +1,6 @@
 package com.advicetec.mpmcqueue;
 
 import java.lang.reflect.Array;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import com.advicetec.eventprocessor.Event;
 import com.advicetec.eventprocessor.EventHandler;
@@ -15,11 +12,16 @@ import com.advicetec.eventprocessor.EventHandler;
  * This queue allows blocking to execute operation in thread safe mode.
  * It uses a set of queues, represented by the constant MAX_PRIORITIES. 
  * Each queue operates objects depending on the priority of the queued object.
+ * <p>
+ * The queues are lock-free, so this class does not use a global lock either.
+ * A consumer visits the queues from the highest priority and waits with the 
+ * configured <code>WaitStrategy</code> when all of them are empty.
  * 
  * @author advicetec
  *
  * @param <T> generic object to queue.
  * @see EventHandler
+ * @see WaitStrategy
  */
 public class PriorityQueue<T> 
 {
@@ -30,17 +32,9 @@ public class PriorityQueue<T>
 	 */
 	private Queue<T>[] queuePriorities;
 	/**
-	 * Queue length monitor counter.
+	 * Strategy to wait when all the queues are empty.
 	 */
-	//TODO this should be private?
-	 int count;
-	/**
-	 * Locks to permit atomic push and pop.
-	 */
-	final Lock lock = new ReentrantLock();
-	final Condition notFull = lock.newCondition();
-	final Condition notEmpty = lock.newCondition();
-	
+	private final WaitStrategy waitStrategy;
 	
 	/**
 	 * Defines the priority. The maximum priority is 0.
@@ -49,19 +43,42 @@ public class PriorityQueue<T>
 	private static final int MAX_PRIORITIES = 7;
 	
 	/**
-	 * Priority Queue constructor. Initializes the ammount of elements in 0. 
+	 * Priority Queue constructor. It uses the default wait strategy. 
 	 * @param type Type of object to be queued.
 	 */
-	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public PriorityQueue(Class<T> type) 
+	{
+		this(type, new ParkWaitStrategy());
+	}
+
+	/**
+	 * Priority Queue constructor with the given wait strategy. 
+	 * @param type Type of object to be queued.
+	 * @param waitStrategy strategy used when the queues are full or empty.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public PriorityQueue(Class<T> type, WaitStrategy waitStrategy) 
 	{
 		queuePriorities = (Queue<T>[]) Array.newInstance(Queue.class,MAX_PRIORITIES);
 		
 		for (int i = 0; i < MAX_PRIORITIES; i++) {
-			this.queuePriorities[i] =  new Queue(type);
+			this.queuePriorities[i] =  new Queue(type, waitStrategy);
 		}
 		
-		count = 0;
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * Records the metrics of the queue of every priority in the 
+	 * <code>MetricsRegistry</code>. It has to be called before the queue is 
+	 * shared with the producers and consumers.
+	 * @param stage stage that consumes the queue.
+	 */
+	public void instrument(String stage)
+	{
+		for (int i = 0; i < MAX_PRIORITIES; i++) {
+			this.queuePriorities[i].instrument(stage, String.valueOf(i));
+		}
 	}
 
 	/**
@@ -75,54 +92,50 @@ public class PriorityQueue<T>
 	 * from 0 to MAX_PRIORITIES constant.
 	 */
 	public void enqueue(int priority, T obj ) throws InterruptedException {
-		// locks the queue
-		lock.lock();
-		try {
-			// checks correct value for priority and throws an exception
-			if ((priority >= MAX_PRIORITIES) || (priority < 0)) {
-		        throw new ArrayIndexOutOfBoundsException("Prioities should be between 0 and " + MAX_PRIORITIES);
-		    }
-			queuePriorities[priority].push(obj);
-			// increments the number of elements in the queue.
-			// TODO a counter by queue.
-			// there is not a counter by queue, this is a general counter.
-			count++;
-			notEmpty.signal();
-		} finally {
-			lock.unlock();
-		}
-	
+		// checks correct value for priority and throws an exception
+		if ((priority >= MAX_PRIORITIES) || (priority < 0)) {
+	        throw new ArrayIndexOutOfBoundsException("Prioities should be between 0 and " + MAX_PRIORITIES);
+	    }
+		queuePriorities[priority].push(obj);
+	}
+
+	/**
+	 * Adds the first <code>count</code> objects of the array to the queue of
+	 * the given priority, in order. The free slots are claimed in groups, so 
+	 * it is cheaper than one <code>enqueue</code> per object.
+	 * @param priority number that defines the priority queue to be inserted in.
+	 * @param objs The objects to be queued with the respective priority.
+	 * @param count number of objects of the array to queue.
+	 * @throws InterruptedException if the thread is interrupted.
+	 */
+	public void enqueueAll(int priority, T[] objs, int count) throws InterruptedException {
+		if ((priority >= MAX_PRIORITIES) || (priority < 0)) {
+	        throw new ArrayIndexOutOfBoundsException("Prioities should be between 0 and " + MAX_PRIORITIES);
+	    }
+		queuePriorities[priority].pushAll(objs, count);
 	}
 
 	/**
-	 * Pops an element from the queue.
+	 * Pops an element from the queue. It waits while all the queues are empty.
 	 * @return The element in the output end.
 	 * @throws InterruptedException if the thread is interrupted.
 	 */
 	public T pop() throws InterruptedException{
-		// locks the queue
-		lock.lock();
-		try{
-			T obj = null;
-			// if there are not elements in the queue awaits.
-			// once the number of elements
-			while (count == 0)
-				notEmpty.await();
+		int counter = 0;
+		while (true) {
 			// visit each queue for elements.
 			for (int i = 0; i < queuePriorities.length; i++) {
-				obj = queuePriorities[i].nonwait_pop();
+				T obj = queuePriorities[i].nonwait_pop();
 				if ( obj != null ){
-					break;
+					return obj;
 				}
 			}
-			// after pops an element decreases the general counter of elements.
-			count--;
-			notFull.signal();
-			return obj;
-
-		} finally {
-			// release the lock
-			lock.unlock();
+			// there are not elements in the queues, awaits. The counter saturates,
+			// an idle consumer keeps parking instead of spinning after an overflow.
+			waitStrategy.idle(counter);
+			if (counter < Integer.MAX_VALUE) {
+				counter++;
+			}
 		}
 	}
 
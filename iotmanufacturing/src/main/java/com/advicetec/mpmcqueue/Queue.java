@@ -1,150 +1,295 @@
 package com.advicetec.mpmcqueue;
 
 import java.lang.reflect.Array;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.advicetec.metrics.QueueMetrics;
 
 /**
- * Template class that implements a circular queue.
- * This structure uses tail and head pointers represented as index numbers.
+ * Template class that implements a bounded lock-free circular queue for
+ * multiple producers and multiple consumers.
+ * <p>
+ * Every slot of the ring has a sequence number. A producer can write a slot
+ * only when its sequence is equal to the head position, and a consumer can
+ * read it only when its sequence is equal to the tail position plus one.
+ * Producers and consumers claim positions with a compare and set over the
+ * head and tail counters, so no lock is required.
+ * <p>
+ * When the queue is full (producers) or empty (consumers) the thread waits
+ * according to the configured <code>WaitStrategy</code>.
  * The length of the circular queue is fixed by the constant MAX_QUEUE_LEN
  * @author advicetec
  *
  * @param <T> the type of elements to queue.
+ * @see WaitStrategy
  */
-public class Queue<T> 
+public class Queue<T>
 {
 
 	// queue definition.
-	private T vector[];
+	private final T vector[];
 
-	// head of the queue
-	private int head;
+	// sequence number of every slot.
+	private final AtomicLongArray sequences;
 
-	// last element of the queue
-	private int tail;
+	// next position to write by the producers.
+	private final PaddedAtomicLong head;
 
-	// num elements in the queue.
-	private int count;
+	// next position to read by the consumers.
+	private final PaddedAtomicLong tail;
 
-	// locks
-	final Lock lock = new ReentrantLock();
-	final Condition notFull = lock.newCondition();
-	final Condition notEmpty = lock.newCondition();
+	// strategy to wait when the queue is full or empty.
+	private final WaitStrategy waitStrategy;
 
 	// it should be a power of two. In this case: 2^13.
 	private static final int MAX_QUEUE_LEN = 8192;
 
-	// the mask to be used to calculate the queue size.
+	// the mask to be used to calculate the slot index.
 	private static final int Q_MASK = MAX_QUEUE_LEN - 1;
 
+	// metrics of the queue, null if the queue is not instrumented.
+	private QueueMetrics metrics;
+
+	// time every element was queued, only when the queue is instrumented.
+	private long times[];
+
 	/**
-	 * queues the specified object.
+	 * Creates the queue with the default wait strategy.
 	 * @param type of the object to insert.
 	 */
-	@SuppressWarnings("unchecked")
 	public Queue(Class<T> type){
+		this(type, new ParkWaitStrategy());
+	}
+
+	/**
+	 * Creates the queue with the given wait strategy.
+	 * @param type of the object to insert.
+	 * @param waitStrategy strategy used when the queue is full or empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public Queue(Class<T> type, WaitStrategy waitStrategy){
 		vector = (T[]) Array.newInstance(type,MAX_QUEUE_LEN);
-		count = 0;
-		tail =0;
-		head = 0;
+		sequences = new AtomicLongArray(MAX_QUEUE_LEN);
+		for (int i = 0; i < MAX_QUEUE_LEN; i++) {
+			sequences.set(i, i);
+		}
+		head = new PaddedAtomicLong(0);
+		tail = new PaddedAtomicLong(0);
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * Records the elements queued and taken, the depth and the time in queue
+	 * of this queue in the <code>MetricsRegistry</code>. It has to be called
+	 * before the queue is shared with the producers and consumers.
+	 * @param stage stage that consumes the queue.
+	 * @param name priority or lane of the queue in the stage.
+	 */
+	public void instrument(String stage, String name){
+		times = new long[MAX_QUEUE_LEN];
+		metrics = new QueueMetrics(stage, name, this::size);
 	}
 
 	/**
-	 * Pushes the specified object into the queue
+	 * Pushes the specified object into the queue. If the queue is full, it
+	 * waits until a consumer releases a slot.
 	 * @param obj element to be pushed into the queue.
 	 * @throws InterruptedException If the process is interrupted.
 	 */
 	public void push(T obj) throws InterruptedException{
-		// locks and thread safe
-		lock.lock();
+		int counter = 0;
+		// awaits if the queue reaches the maximum occupation
+		while (!offer(obj)){
+			waitStrategy.idle(counter);
+			if (counter < Integer.MAX_VALUE) {
+				counter++;
+			}
+		}
+	}
+
+	/**
+	 * Inserts the specified object if there is space in the queue.
+	 * @param obj element to be inserted into the queue.
+	 * @return <code>TRUE</code> if the element was inserted,
+	 * <code>FALSE</code> if the queue is full.
+	 */
+	public boolean offer(T obj){
+		long pos = head.get();
+		while (true) {
+			int index = (int) (pos & Q_MASK);
+			long seq = sequences.get(index);
+			long dif = seq - pos;
+			if (dif == 0) {
+				// the slot is free, try to claim it.
+				if (head.compareAndSet(pos, pos + 1)) {
+					vector[index] = obj;
+					if (metrics != null) {
+						times[index] = System.nanoTime();
+						metrics.enqueued(1);
+					}
+					// publishes the element for the consumers.
+					sequences.lazySet(index, pos + 1);
+					return true;
+				}
+				pos = head.get();
+			} else if (dif < 0) {
+				// the slot has not been consumed, the queue is full.
+				return false;
+			} else {
+				// another producer took the position.
+				pos = head.get();
+			}
+		}
+	}
 
-		try{
-			// awaits if the queue reaches the maximum occupation
-			while (count == MAX_QUEUE_LEN){
-				notFull.await();
+	/**
+	 * Pushes the first <code>count</code> objects of the array into the queue,
+	 * in order. If the queue is full, it waits until a consumer releases a slot.
+	 * @param objs elements to be pushed into the queue.
+	 * @param count number of elements of the array to push.
+	 * @throws InterruptedException If the process is interrupted.
+	 */
+	public void pushAll(T[] objs, int count) throws InterruptedException{
+		int counter = 0;
+		int from = 0;
+		while (from < count) {
+			int inserted = offerAll(objs, from, count - from);
+			if (inserted == 0) {
+				waitStrategy.idle(counter);
+				if (counter < Integer.MAX_VALUE) {
+					counter++;
+				}
+			} else {
+				from += inserted;
+				counter = 0;
 			}
-			vector[head] = obj;
-			if (++head == MAX_QUEUE_LEN) head = 0;
-			++count;
-			notEmpty.signal();
-
-		} finally {
-			// release the lock
-			lock.unlock();
 		}
 	}
 
 	/**
-	 * Pops elements from the queue
+	 * Inserts as many objects of the range as there are free slots, claiming
+	 * all of them with a single compare and set over the head.
+	 * <p>
+	 * Only the producers take the free slots and they must move the head to
+	 * do it, so the slots seen free remain free while the head does not move.
+	 * @param objs elements to be inserted into the queue.
+	 * @param from first element of the range.
+	 * @param count number of elements of the range.
+	 * @return the number of elements inserted, zero if the queue is full.
+	 */
+	public int offerAll(T[] objs, int from, int count){
+		while (true) {
+			long pos = head.get();
+			int free = 0;
+			while ((free < count) && (sequences.get((int) ((pos + free) & Q_MASK)) == pos + free)) {
+				free++;
+			}
+			if (free == 0) {
+				if (sequences.get((int) (pos & Q_MASK)) < pos) {
+					// the slot has not been consumed, the queue is full.
+					return 0;
+				}
+				// another producer took the position.
+				continue;
+			}
+			if (head.compareAndSet(pos, pos + free)) {
+				long now = (metrics != null) ? System.nanoTime() : 0;
+				for (int i = 0; i < free; i++) {
+					int index = (int) ((pos + i) & Q_MASK);
+					vector[index] = objs[from + i];
+					if (metrics != null) {
+						times[index] = now;
+					}
+					// publishes the element for the consumers.
+					sequences.lazySet(index, pos + i + 1);
+				}
+				if (metrics != null) {
+					metrics.enqueued(free);
+				}
+				return free;
+			}
+		}
+	}
+
+	/**
+	 * Pops elements from the queue. If the queue is empty, it waits until a
+	 * producer inserts an element.
 	 * @return The element in the end of the queue.
 	 * @throws InterruptedException if the process is interrupted.
 	 */
 	public T pop() throws InterruptedException {
-		// locks the queue
-		lock.lock();
-		try{
-			// waits for more elements in the queue
-			while (count == 0) 
-				notEmpty.await();
-			T obj = vector[tail];
-			if (++tail == MAX_QUEUE_LEN) tail=0;
-			// decrease the monitor of elements in the queue.
-			count--;
-			notFull.signal();
-			return obj;
-		} finally {
-			// releases the lock
-			lock.unlock();
+		int counter = 0;
+		T obj;
+		// waits for more elements in the queue, the counter saturates while it is idle.
+		while ((obj = nonwait_pop()) == null) {
+			waitStrategy.idle(counter);
+			if (counter < Integer.MAX_VALUE) {
+				counter++;
+			}
 		}
+		return obj;
 	}
 
 	/**
-	 * It can be used when the caller does not wait for a new entry in the 
+	 * It can be used when the caller does not wait for a new entry in the
 	 * queue. In particular, it is used in the priority queue.
-	 * @return the object at tail.
-	 * @throws InterruptedException
+	 * @return the object at tail, or null if the queue is empty.
 	 */
-	public T nonwait_pop() throws InterruptedException {
-		lock.lock();
-		try{	  
-			if (count > 0) { 
-				T obj = vector[tail];
-				if (++tail == MAX_QUEUE_LEN) tail=0;
-				count--;
-				notFull.signal();
-				return obj;
-			}
-			else {
+	public T nonwait_pop() {
+		long pos = tail.get();
+		while (true) {
+			int index = (int) (pos & Q_MASK);
+			long seq = sequences.get(index);
+			long dif = seq - (pos + 1);
+			if (dif == 0) {
+				// the slot has an element, try to claim it.
+				if (tail.compareAndSet(pos, pos + 1)) {
+					T obj = vector[index];
+					vector[index] = null;
+					if (metrics != null) {
+						metrics.dequeued(System.nanoTime() - times[index]);
+					}
+					// releases the slot for the next round of producers.
+					sequences.lazySet(index, pos + MAX_QUEUE_LEN);
+					return obj;
+				}
+				pos = tail.get();
+			} else if (dif < 0) {
+				// the slot has not been produced, the queue is empty.
 				return null;
+			} else {
+				// another consumer took the position.
+				pos = tail.get();
 			}
-		} finally {
-			lock.unlock();
 		}
 	}
 
 	/**
-	 * Returns the element in the head position.
+	 * Returns the element in the head position without removing it.
 	 * @return the element from the head position.
 	 */
 	public T getHead(){
-		return vector[head++ & Q_MASK];
+		return vector[(int) ((head.get() - 1) & Q_MASK)];
 	}
 
 	/**
-	 * Return the element at the tail position.
+	 * Return the element at the tail position without removing it.
 	 * @return the element from the tail position.
 	 */
 	public T getTail(){
-		return vector[tail++ & Q_MASK];
+		return vector[(int) (tail.get() & Q_MASK)];
 	}
 
 	/**
-	 * Returns the amount of elements into the queue.
+	 * Returns the amount of elements into the queue. The value is an
+	 * approximation when there are concurrent producers or consumers.
 	 * @return the amount of elements into the queue.
 	 */
 	public int size(){
-		return count;
+		long size = head.get() - tail.get();
+		if (size < 0) {
+			return 0;
+		}
+		return (int) Math.min(size, MAX_QUEUE_LEN);
 	}
 }
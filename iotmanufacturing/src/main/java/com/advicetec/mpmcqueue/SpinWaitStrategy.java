@@ -0,0 +1,25 @@
+package com.advicetec.mpmcqueue;
+
+/**
+ * Wait strategy that busy spins, yielding the processor between attempts.
+ * <p>
+ * It gives the lowest latency, but each waiting thread keeps a core busy.
+ * It should be used only when the number of handlers is lower than the 
+ * number of available cores.
+ * 
+ * @author advicetec
+ * @see WaitStrategy
+ */
+public class SpinWaitStrategy implements WaitStrategy 
+{
+
+	/**
+	 * Yields the processor and checks the interruption flag.
+	 */
+	public void idle(int counter) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		Thread.yield();
+	}
+}
@@ -0,0 +1,44 @@
+package com.advicetec.mpmcqueue;
+
+/**
+ * Strategy used by the lock-free queues to wait while the queue is empty 
+ * (consumers) or full (producers).
+ * <p>
+ * The queues never block on a lock, instead they retry the operation and 
+ * call <code>idle</code> between attempts. The strategy decides whether the 
+ * thread spins, yields or parks.
+ * 
+ * @author advicetec
+ * @see Queue
+ * @see PriorityQueue
+ */
+public interface WaitStrategy 
+{
+	/**
+	 * Name of the property used by the managers to configure the strategy.
+	 */
+	public static final String PROPERTY_NAME = "QueueWaitStrategy";
+
+	/**
+	 * Called every time an operation over the queue could not be completed.
+	 * 
+	 * @param counter number of consecutive failed attempts, starting at zero.
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	public void idle(int counter) throws InterruptedException;
+
+	/**
+	 * Returns the strategy for the given name. Valid names are 
+	 * <code>spin</code> and <code>park</code>. Any other value, including 
+	 * <code>null</code>, returns the park strategy, which is the default.
+	 * 
+	 * @param name strategy name, usually read from a properties file. 
+	 * @return the wait strategy.
+	 */
+	public static WaitStrategy fromName(String name) {
+		if ((name != null) && (name.trim().equalsIgnoreCase("spin"))) {
+			return new SpinWaitStrategy();
+		}
+		return new ParkWaitStrategy();
+	}
+}
@@ -0,0 +1,27 @@
+package com.advicetec.persistence;
+
+/**
+ * This interface defines the signatures required to load an object with a bulk writer. 
+ * 
+ * The JDBC batch writer keeps using the insert prepared statement of <code>Storable</code>, 
+ * the native writers of the database take the values of the row instead.
+ * 
+ * @author advicetec
+ * @see BulkWriter
+ */
+public interface BulkStorable extends Storable 
+{
+
+	/**
+	 * Returns the table and columns where the object is loaded.
+	 * @return table description, it is the same for all the objects of a class.
+	 */
+	public BulkTable getBulkTable();
+	
+	/**
+	 * Returns the values of the row in the order of the table columns. 
+	 * @return row values, null values are stored as null.
+	 */
+	public Object[] getBulkValues();
+	
+}
@@ -0,0 +1,122 @@
+package com.advicetec.persistence;
+
+/**
+ * This class describes the table and columns where a bulk writer loads the rows of a storable class.
+ * 
+ * The values returned by the rows must follow the order of the columns, and their java classes must 
+ * correspond to the sql types: Integer, Double, Boolean, String, Timestamp, Date and Time.
+ * 
+ * @author advicetec
+ * @see BulkStorable
+ * @see BulkWriter
+ */
+public class BulkTable 
+{
+
+	/**
+	 * Name of the table
+	 */
+	private final String name;
+	
+	/**
+	 * Names of the columns
+	 */
+	private final String[] columns;
+	
+	/**
+	 * Sql types of the columns, as defined in java.sql.Types 
+	 */
+	private final int[] types;
+	
+	/**
+	 * Constructor for the class
+	 * 
+	 * @param name		table name
+	 * @param columns	column names in the order of the row values. 
+	 * @param types		sql type of every column.
+	 */
+	public BulkTable(String name, String[] columns, int[] types)
+	{
+		if (columns.length != types.length) {
+			throw new IllegalArgumentException("The number of columns and types must be equal for table:" + name);
+		}
+		this.name = name;
+		this.columns = columns;
+		this.types = types;
+	}
+
+	/**
+	 * Gets the table name
+	 * 
+	 * @return table name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the number of columns 
+	 * 
+	 * @return number of columns
+	 */
+	public int getColumnCount() {
+		return columns.length;
+	}
+	
+	/**
+	 * Gets the column name 
+	 * 
+	 * @param index column index starting at 0.
+	 * @return column name
+	 */
+	public String getColumn(int index) {
+		return columns[index];
+	}
+
+	/**
+	 * Gets the sql type of a column
+	 * 
+	 * @param index column index starting at 0.
+	 * @return sql type as defined in java.sql.Types
+	 */
+	public int getType(int index) {
+		return types[index];
+	}
+	
+	/**
+	 * Gets an insert statement with a parameter for every column, in the order of the columns.
+	 * 
+	 * @return insert statement
+	 */
+	public String getInsertStatement() {
+		StringBuilder sb = new StringBuilder("INSERT INTO ").append(name).append(" (");
+		StringBuilder params = new StringBuilder();
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+				params.append(",");
+			}
+			sb.append(columns[i]);
+			params.append("?");
+		}
+		sb.append(") VALUES (").append(params).append(")");
+		return sb.toString();
+	}
+	
+	/**
+	 * Gets the PostgreSQL statement to copy csv rows from the standard input into the table.
+	 * 
+	 * @return copy statement
+	 */
+	public String getCopyStatement() {
+		StringBuilder sb = new StringBuilder("COPY ").append(name).append(" (");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(columns[i]);
+		}
+		sb.append(") FROM STDIN WITH CSV");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,35 @@
+package com.advicetec.persistence;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * This interface defines how a list of rows is written in the database. 
+ * 
+ * Implementations do not commit nor close the connection, the caller establishes the transaction. 
+ * All the rows given in a call must belong to the same table.
+ * 
+ * @author advicetec
+ * @see BulkWriters
+ */
+public interface BulkWriter 
+{
+
+	/**
+	 * Writes the rows given through the connection.
+	 * 
+	 * @param conn	database connection.
+	 * @param rows	rows to write, all of them from the same table.
+	 * @return number of rows written.
+	 * @throws SQLException if the rows could not be written.
+	 */
+	public int write(Connection conn, List<? extends BulkStorable> rows) throws SQLException;
+	
+	/**
+	 * Returns the name of the writer, as it is configured in the properties file.
+	 * @return writer name.
+	 */
+	public String getName();
+	
+}
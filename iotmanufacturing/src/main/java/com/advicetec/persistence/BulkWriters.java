@@ -0,0 +1,108 @@
+package com.advicetec.persistence;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.mchange.v2.c3p0.C3P0ProxyConnection;
+
+/**
+ * This class creates the bulk writer configured in the properties file of the caches. The valid 
+ * values are:
+ * 
+ * 		jdbc	 : JDBC batch of single row inserts, it works with any database.
+ * 		copy	 : PostgreSQL COPY through the CopyManager of the driver.
+ * 		bulkcopy : SQL Server bulk copy through SQLServerBulkCopy.
+ * 		auto	 : the native writer of the configured driver, jdbc if the driver is not known.
+ * 
+ * Native writers fall back to the JDBC batch when they fail.
+ * 
+ * @author advicetec
+ * @see BulkWriter
+ */
+public class BulkWriters 
+{
+
+	static Logger logger = LogManager.getLogger(BulkWriters.class.getName());
+	
+	public static final String JDBC = "jdbc";
+	
+	public static final String COPY = "copy";
+	
+	public static final String BULK_COPY = "bulkcopy";
+	
+	public static final String AUTO = "auto";
+	
+	/**
+	 * Creates the bulk writer with the name given.
+	 * 
+	 * @param name		writer name, if null the JDBC batch writer is created.
+	 * @param driver	JDBC driver class configured, it is used to select the writer when the name is auto.
+	 * @return bulk writer.
+	 */
+	public static BulkWriter create(String name, String driver)
+	{
+		String writerName = (name == null) ? JDBC : name.trim().toLowerCase();
+		
+		if (writerName.equals(AUTO)) {
+			if ((driver != null) && driver.contains("postgresql")) {
+				writerName = COPY;
+			} else if ((driver != null) && driver.contains("sqlserver")) {
+				writerName = BULK_COPY;
+			} else {
+				writerName = JDBC;
+			}
+		}
+		
+		logger.info("Bulk writer:" + writerName);
+		
+		if (writerName.equals(COPY)) {
+			return new FallbackBulkWriter(new PostgresCopyWriter(), new JdbcBatchWriter());
+		} else if (writerName.equals(BULK_COPY)) {
+			return new FallbackBulkWriter(new SqlServerBulkCopyWriter(), new JdbcBatchWriter());
+		} else if (!writerName.equals(JDBC)) {
+			logger.error("The bulk writer:" + name + " is not valid, the JDBC batch writer is used");
+		}
+		
+		return new JdbcBatchWriter();
+	}
+	
+	/**
+	 * Gets the connection of the driver behind a connection of the c3p0 pool. The native writers 
+	 * require the classes of the driver, which are hidden by the pool. The connection returned must not 
+	 * be closed, it remains owned by the pool connection.
+	 * 
+	 * @param conn connection, it can be a pool connection or a driver connection.
+	 * @return driver connection.
+	 * @throws SQLException if the driver connection could not be obtained.
+	 */
+	public static Connection getRawConnection(Connection conn) throws SQLException
+	{
+		if (!(conn instanceof C3P0ProxyConnection)) {
+			return conn;
+		}
+		
+		try {
+			Method identity = BulkWriters.class.getMethod("identity", Connection.class);
+			return (Connection) ((C3P0ProxyConnection) conn).rawConnectionOperation(identity, null, 
+															new Object[] { C3P0ProxyConnection.RAW_CONNECTION });
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			throw new SQLException("The driver connection could not be obtained - Message:" + e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Returns the connection given, it is invoked by the pool with its driver connection.
+	 * 
+	 * @param conn driver connection.
+	 * @return the same connection.
+	 */
+	public static Connection identity(Connection conn)
+	{
+		return conn;
+	}
+}
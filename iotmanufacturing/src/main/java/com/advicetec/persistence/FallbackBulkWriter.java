@@ -0,0 +1,60 @@
+package com.advicetec.persistence;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * This class writes the rows with a native bulk writer, and if it fails, it rolls back the transaction 
+ * and writes the rows again with the fallback writer, usually the JDBC batch writer.
+ * 
+ * @author advicetec
+ */
+public class FallbackBulkWriter implements BulkWriter 
+{
+
+	static Logger logger = LogManager.getLogger(FallbackBulkWriter.class.getName());
+	
+	/**
+	 * Writer used in the first place.
+	 */
+	private final BulkWriter writer;
+	
+	/**
+	 * Writer used when the first one fails.
+	 */
+	private final BulkWriter fallback;
+
+	/**
+	 * Constructor for the class
+	 * 
+	 * @param writer	writer used in the first place.
+	 * @param fallback	writer used when the first one fails.
+	 */
+	public FallbackBulkWriter(BulkWriter writer, BulkWriter fallback)
+	{
+		this.writer = writer;
+		this.fallback = fallback;
+	}
+	
+	@Override
+	public int write(Connection conn, List<? extends BulkStorable> rows) throws SQLException {
+		try {
+			return writer.write(conn, rows);
+		} catch (SQLException | RuntimeException e) {
+			logger.error("The bulk writer " + writer.getName() + " failed, writing " + rows.size() 
+							+ " rows with " + fallback.getName() + " - Message:" + e.getMessage());
+			// Rows written before the error must not remain in the transaction.
+			conn.rollback();
+			return fallback.write(conn, rows);
+		}
+	}
+
+	@Override
+	public String getName() {
+		return writer.getName();
+	}
+}
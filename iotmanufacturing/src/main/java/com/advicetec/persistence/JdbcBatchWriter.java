@@ -0,0 +1,76 @@
+package com.advicetec.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * This class writes the rows through the insert prepared statement of the storable objects 
+ * executed as a JDBC batch. It works with any database, and it is used as fallback by the 
+ * native bulk writers.
+ * 
+ * @author advicetec
+ */
+public class JdbcBatchWriter implements BulkWriter 
+{
+
+	@Override
+	public int write(Connection conn, List<? extends BulkStorable> rows) throws SQLException {
+		
+		if (rows.isEmpty()) {
+			return 0;
+		}
+		
+		PreparedStatement pst = conn.prepareStatement(rows.get(0).getPreparedInsertText());
+		try {
+			for (BulkStorable row : rows) {
+				row.dbInsert(pst);
+			}
+			int ret[] = pst.executeBatch();
+			return ret.length;
+		} finally {
+			pst.close();
+		}
+	}
+
+	/**
+	 * Writes rows given as values with the insert statement of the table. Null values are set with 
+	 * the sql type of the column.
+	 * 
+	 * @param conn	database connection, the caller commits the transaction.
+	 * @param table	table where the rows are inserted.
+	 * @param rows	row values in the order of the table columns.
+	 * @return number of rows written.
+	 * @throws SQLException if the batch could not be executed.
+	 */
+	public static int writeRows(Connection conn, BulkTable table, List<Object[]> rows) throws SQLException {
+		
+		if (rows.isEmpty()) {
+			return 0;
+		}
+		
+		PreparedStatement pst = conn.prepareStatement(table.getInsertStatement());
+		try {
+			for (Object[] row : rows) {
+				for (int i = 0; i < table.getColumnCount(); i++) {
+					if (row[i] == null) {
+						pst.setNull(i + 1, table.getType(i));
+					} else {
+						pst.setObject(i + 1, row[i]);
+					}
+				}
+				pst.addBatch();
+			}
+			int ret[] = pst.executeBatch();
+			return ret.length;
+		} finally {
+			pst.close();
+		}
+	}
+
+	@Override
+	public String getName() {
+		return BulkWriters.JDBC;
+	}
+}
@@ -1,13 +1,15 @@
 package com.advicetec.persistence;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -22,18 +24,19 @@ public class MeasureAttributeDatabaseStore implements Runnable {
 	private Map<String, AttributeValue> entries = null;
 
 	/**
-	 * Database connection object
+	 * Default number of rows per batch  
 	 */
-	private Connection conn  = null;
+	private int batchRows = 4000;
+	
 	/**
-	 * Database prepared statement object
+	 * Level used to log every row written or discarded.
 	 */
-	private PreparedStatement pst = null;
-
+	private Level rowLogLevel = Level.DEBUG;
+	
 	/**
-	 * Default number of rows per batch  
+	 * Writer used to load every batch in the database.
 	 */
-	private int batchRows = 4000;
+	private BulkWriter writer;
 	
 	/**
 	 * last object's date-time written to the database
@@ -42,9 +45,36 @@ public class MeasureAttributeDatabaseStore implements Runnable {
 	
 	
 	public MeasureAttributeDatabaseStore(Map<String, AttributeValue> entries, int batchRows)
+	{
+		this(entries, batchRows, Level.DEBUG);
+	}
+
+	/**
+	 * Constructor for the class
+	 * 
+	 * @param entries		values to insert in the database.
+	 * @param batchRows		number of rows per batch.
+	 * @param rowLogLevel	level used to log every row written or discarded.
+	 */
+	public MeasureAttributeDatabaseStore(Map<String, AttributeValue> entries, int batchRows, Level rowLogLevel)
+	{
+		this(entries, batchRows, rowLogLevel, new JdbcBatchWriter());
+	}
+
+	/**
+	 * Constructor for the class
+	 * 
+	 * @param entries		values to insert in the database.
+	 * @param batchRows		number of rows per batch.
+	 * @param rowLogLevel	level used to log every row written or discarded.
+	 * @param writer		writer used to load every batch in the database.
+	 */
+	public MeasureAttributeDatabaseStore(Map<String, AttributeValue> entries, int batchRows, Level rowLogLevel, BulkWriter writer)
 	{
 		this.entries = entries;
 		this.batchRows = batchRows;
+		this.rowLogLevel = rowLogLevel;
+		this.writer = writer;
 	}
 	
 
@@ -69,8 +99,8 @@ public class MeasureAttributeDatabaseStore implements Runnable {
 	
 	@Override
 	public void run() {
-		// FC Instancia lista de atributos para controlar duplicidad de llave
-		List<String> controlList = new ArrayList<String>();
+		// Keys already inserted, the database rejects the whole batch if a key is repeated.
+		Set<MeasuredAttributeValueKey> controlSet = new HashSet<MeasuredAttributeValueKey>((entries.size() * 4 / 3) + 1);
 
 		logger.debug("Starting Executing database insert MeasuringAttributeValue" + " current Thread:" + Thread.currentThread().getName());
 		// Splits the entries in batches of batchRows  
@@ -79,53 +109,20 @@ public class MeasureAttributeDatabaseStore implements Runnable {
 		logger.info("Number of list:" + lists.size() + " current Thread:" + Thread.currentThread().getName());
 		// Loop through split lists and insert in the database 
 		for (List<AttributeValue> entry : lists) {
+			Connection conn = null;
 			try {
 
 				logger.info("number of rows to insert withlin list:" + entry.size() + " current Thread:" + Thread.currentThread().getName() );
 				// connect to database
 				conn = MeasureAttributeValueCache.getConnection();
-				conn.setAutoCommit(false);
-				pst = conn.prepareStatement(MeasuredAttributeValue.SQL_Insert);
-				// prepares the statement
-				entry.forEach((v)-> {
-					logger.debug( "db write key:" + ((MeasuredAttributeValue)v).getKey() );
-					logger.info("DB Write Key: " + ((MeasuredAttributeValue)v).getKey() + "_" + ((MeasuredAttributeValue)v).getTimeStamp().toString() + "_" + String.valueOf(((MeasuredAttributeValue)v).getGeneratorType().getValue()) + "_" + ((MeasuredAttributeValue)v).getAttr().getName().toString());
-					// FC Evalua si el atributo existe o no en la lista de control para determinar si se inserta en la descarga a la DB en batch.
-					if (controlList.indexOf(((MeasuredAttributeValue)v).getKey() + "_" + ((MeasuredAttributeValue)v).getTimeStamp().toString() + "_" + String.valueOf(((MeasuredAttributeValue)v).getGeneratorType().getValue()) + "_" + ((MeasuredAttributeValue)v).getAttr().getName().toString()) < 0) {
-						controlList.add(((MeasuredAttributeValue)v).getKey() + "_" + ((MeasuredAttributeValue)v).getTimeStamp().toString() + "_" + String.valueOf(((MeasuredAttributeValue)v).getGeneratorType().getValue()) + "_" + ((MeasuredAttributeValue)v).getAttr().getName().toString());
-						((MeasuredAttributeValue)v).dbInsert(pst);
-					} else {
-						logger.info("Duplicate key element:   " + ((MeasuredAttributeValue)v).getKey() + "   " + ((MeasuredAttributeValue)v).getTimeStamp().toString() + "   " + String.valueOf(((MeasuredAttributeValue)v).getGeneratorType().getValue()) + "   " + ((MeasuredAttributeValue)v).getAttr().getName().toString() + "   " + ((MeasuredAttributeValue)v).getValue().toString());
-					}
-					
-					if (lastStore == null){
-						lastStore = ((MeasuredAttributeValue)v).getTimeStamp(); 
-					} else {
-						if (lastStore.compareTo(((MeasuredAttributeValue)v).getTimeStamp()) <= 0){
-							lastStore = ((MeasuredAttributeValue)v).getTimeStamp();
-						}
-					}					
-
-				});
-				// execute the insertion
-				int ret[] = pst.executeBatch();
-				logger.debug("Number of Attribute Values inserted:" + ret.length);
-				conn.commit();
+				insert(conn, entry, controlSet);
+				// The values are committed, they can be released from the write-ahead log.
+				MeasureAttributeValueCache.getInstance().confirmStored(entry);
 
 			} catch (SQLException e) {
 				logger.error(e.getMessage());
 				e.printStackTrace();
 			} finally{
-				if(pst!=null){
-					try{
-						logger.debug("closing prepared statement");
-						pst.close();
-					} catch (SQLException e) {
-						logger.error(e.getMessage());
-						e.printStackTrace();
-					}
-				}
-				
 				if(conn!=null) {
 					try {
 						logger.debug("closing connection");
@@ -143,4 +140,44 @@ public class MeasureAttributeDatabaseStore implements Runnable {
 		
 		logger.debug("Ending Executing database insert MeasuringAttributeValue" + " current Thread:" + Thread.currentThread().getName());
 	}
+
+	/**
+	 * Inserts a list of values in a single batch with the bulk writer and commits it. Values whose key 
+	 * is already in the control set are discarded, the keys of the values inserted are added to the set. 
+	 * 
+	 * @param conn			database connection, it is not closed by this method.
+	 * @param entry			values to insert.
+	 * @param controlSet	keys already inserted.
+	 * @return number of rows inserted.
+	 * @throws SQLException if the batch could not be executed.
+	 */
+	int insert(Connection conn, List<AttributeValue> entry, Set<MeasuredAttributeValueKey> controlSet) throws SQLException {
+		
+		boolean logRows = logger.isEnabled(rowLogLevel);
+		conn.setAutoCommit(false);
+		
+		List<MeasuredAttributeValue> rows = new ArrayList<MeasuredAttributeValue>(entry.size());
+		for (AttributeValue value : entry) {
+			MeasuredAttributeValue v = (MeasuredAttributeValue) value;
+			
+			if (controlSet.add(new MeasuredAttributeValueKey(v))) {
+				if (logRows) {
+					logger.log(rowLogLevel, "DB Write Key: " + v.getKey());
+				}
+				rows.add(v);
+			} else if (logRows) {
+				logger.log(rowLogLevel, "Duplicate key element: " + v.getKey() + " value:" + v.getValue());
+			}
+			
+			if ((lastStore == null) || (lastStore.compareTo(v.getTimeStamp()) <= 0)){
+				lastStore = v.getTimeStamp();
+			}
+		}
+		
+		// execute the insertion
+		int ret = writer.write(conn, rows);
+		logger.debug("Number of Attribute Values inserted:" + ret + " writer:" + writer.getName());
+		conn.commit();
+		return ret;
+	}
 }
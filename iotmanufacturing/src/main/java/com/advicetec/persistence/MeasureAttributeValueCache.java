@@ -1,6 +1,8 @@
 package com.advicetec.persistence;
 
 import java.beans.PropertyVetoException;
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -16,14 +18,18 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
 
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.advicetec.configuration.SystemConstants;
 import com.advicetec.core.Attribute;
+import com.advicetec.core.AttributeType;
 import com.advicetec.core.AttributeValue;
 import com.advicetec.core.Configurable;
+import com.advicetec.core.TrendBuckets;
 import com.advicetec.measuredentitity.MeasuredAttributeValue;
 import com.advicetec.measuredentitity.MeasuredEntityType;
 import com.github.benmanes.caffeine.cache.Cache;
@@ -84,6 +90,61 @@ public class MeasureAttributeValueCache extends Configurable {
 	 */
 	private static int BATCH_ROWS = 4000;
 	
+	/**
+	 * Number of rows fetched at once when the values are read, so a long interval is not loaded in memory by the driver.
+	 */
+	private static final int FETCH_ROWS = 1000;
+	
+	/**
+	 * Level used to log every row written in the database.
+	 */
+	private static Level ROW_LOG_LEVEL = Level.DEBUG;
+	
+	/**
+	 * Writer used to load the values in the database.
+	 */
+	private static BulkWriter BULK_WRITER = null;
+	
+	/**
+	 * Number of buffered writes that triggers a database write before the write time.
+	 */
+	private static int WRITE_BATCH_SIZE = 20000;
+	
+	/**
+	 * Number of writes that can wait for the database, further writes block the producer.
+	 */
+	private static int WRITE_QUEUE_SIZE = 200000;
+	
+	/**
+	 * Number of database writes executed at the same time, by default the number of insert threads.
+	 */
+	private static int WRITE_IN_FLIGHT = 0;
+	
+	/**
+	 * Time in milliseconds a write waits for room in the buffer before it is discarded, zero waits indefinitely.
+	 */
+	private static long WRITE_BLOCK_TIMEOUT = 0L;
+	
+	/**
+	 * Establishes if the values waiting for the database are kept in the write-ahead log.
+	 */
+	private static boolean WAL_ENABLED = true;
+	
+	/**
+	 * Directory of the write-ahead log segments.
+	 */
+	private static String WAL_DIRECTORY = "wal/measuredattributevalue";
+	
+	/**
+	 * Size in bytes of every write-ahead log segment.
+	 */
+	private static int WAL_SEGMENT_SIZE = 64 * 1024 * 1024;
+	
+	/**
+	 * Milliseconds between the writes of the write-ahead log to disk.
+	 */
+	private static long WAL_SYNC_INTERVAL = 200L;
+	
 	/**
 	 * Singleton cache instance
 	 */
@@ -100,6 +161,14 @@ public class MeasureAttributeValueCache extends Configurable {
 	 * A cache is a map with a key and the attribute value. 
 	 */
 	private static Cache<String, AttributeValue> cache;
+	/**
+	 * Write-behind stage that takes the cache writes to the database.
+	 */
+	private static WriteBehindCacheWriter<String, AttributeValue> writeBehind;
+	/**
+	 * Write-ahead log of the values waiting for the database, null if it is disabled.
+	 */
+	private static WriteAheadLog wal;
 	/**
 	 * Thread pool to save data in the database.
 	 */
@@ -110,6 +179,14 @@ public class MeasureAttributeValueCache extends Configurable {
 	 */	
 	final private static String sqlMeasureAttributeValueRangeSelect = "select timestamp, value_decimal, value_datetime, value_string, value_int, value_boolean, value_date, value_time from measuredattributevalue where id_owner = ? and owner_type = ? and attribute_name = ? and timestamp >= ? and timestamp <= ?";
 	
+	/**
+	 * SQL to aggregate the numeric values of an attribute in buckets of the same length: the index of the bucket, 
+	 * the count, minimum, maximum and sum of the values, the last value and its datetime. The parameters are the 
+	 * start of the first bucket, the length of the buckets in milliseconds, owner id and type, attribute name and time range.
+	 * It is the query for PostgreSQL; other databases set it in the properties or read the values.
+	 */
+	private static String sqlMeasureAttributeValueBucketSelect = "select floor(extract(epoch from (timestamp - ?)) * 1000 / ?) as bucket, count(*) as value_count, min(coalesce(value_decimal, value_int)) as value_min, max(coalesce(value_decimal, value_int)) as value_max, sum(coalesce(value_decimal, value_int)) as value_sum, (array_agg(coalesce(value_decimal, value_int) order by timestamp desc))[1] as value_last, max(timestamp) as last_timestamp from measuredattributevalue where id_owner = ? and owner_type = ? and attribute_name = ? and timestamp >= ? and timestamp < ? and coalesce(value_decimal, value_int) is not null group by 1";
+	
 	final private static String sqlMeasuredEntityTemporalitySelect = "select temporality from setup_machinehostsystem where measuredentity_ptr_id = ?";
 	
 	final private static String sqlActualRateVariableNameSelect = "select variable_rate from setup_machinehostsystem where measuredentity_ptr_id = ?";
@@ -173,6 +250,40 @@ public class MeasureAttributeValueCache extends Configurable {
 		if (properties.getProperty("batch_rows") != null)
 			BATCH_ROWS = Integer.parseInt(properties.getProperty("batch_rows"));
 		
+		if (properties.getProperty("row_log_level") != null)
+			ROW_LOG_LEVEL = Level.toLevel(properties.getProperty("row_log_level").trim(), Level.DEBUG);
+		
+		BULK_WRITER = BulkWriters.create(properties.getProperty("bulk_writer"), DB_DRIVER);
+		
+		if (properties.getProperty("write_batch_size") != null)
+			WRITE_BATCH_SIZE = Integer.parseInt(properties.getProperty("write_batch_size").trim());
+		
+		if (properties.getProperty("write_queue_size") != null)
+			WRITE_QUEUE_SIZE = Integer.parseInt(properties.getProperty("write_queue_size").trim());
+		
+		if (properties.getProperty("write_in_flight") != null)
+			WRITE_IN_FLIGHT = Integer.parseInt(properties.getProperty("write_in_flight").trim());
+		
+		if (properties.getProperty("write_block_timeout") != null)
+			WRITE_BLOCK_TIMEOUT = Long.parseLong(properties.getProperty("write_block_timeout").trim());
+		
+		if (properties.getProperty("sql_bucket_select") != null)
+			sqlMeasureAttributeValueBucketSelect = properties.getProperty("sql_bucket_select").trim();
+		else if ((DB_DRIVER == null) || !DB_DRIVER.contains("postgresql"))
+			sqlMeasureAttributeValueBucketSelect = "";
+		
+		if (properties.getProperty("wal_enabled") != null)
+			WAL_ENABLED = Boolean.parseBoolean(properties.getProperty("wal_enabled").trim());
+		
+		if (properties.getProperty("wal_directory") != null)
+			WAL_DIRECTORY = properties.getProperty("wal_directory").trim();
+		
+		if (properties.getProperty("wal_segment_size") != null)
+			WAL_SEGMENT_SIZE = Integer.parseInt(properties.getProperty("wal_segment_size").trim());
+		
+		if (properties.getProperty("wal_sync_interval") != null)
+			WAL_SYNC_INTERVAL = Long.parseLong(properties.getProperty("wal_sync_interval").trim());
+		
 		logger.info("Write time:" + WRITE_TIME + "Delete Time:" + DELETE_TIME);
 		
 		threadPool = Executors.newFixedThreadPool(INSERT_THREADS);
@@ -195,6 +306,11 @@ public class MeasureAttributeValueCache extends Configurable {
 		cpds.setAcquireIncrement(5);
 		cpds.setMaxPoolSize(MAX_DB_THREAD_POOL);
 
+		// Values not stored by the previous execution are recovered before receiving new ones.
+		if (WAL_ENABLED) {
+			openWriteAheadLog();
+		}
+
 		// Starts the last date-time when the cache writes in the database as the current date-time. 
 		lastDateTimeStore = LocalDateTime.now();
 		
@@ -211,6 +327,16 @@ public class MeasureAttributeValueCache extends Configurable {
 				
 				
 				try {
+					logger.info("flushing the write-behind buffer");
+					if (writeBehind != null){
+						writeBehind.close(WRITE_TIME, TimeUnit.SECONDS);
+					}
+					
+					logger.info("closing the write-ahead log");
+					if (wal != null){
+						wal.close();
+					}
+					
 					System.out.println("closing the thread pool");
 					threadPool.awaitTermination(WRITE_TIME, TimeUnit.SECONDS);
 					
@@ -235,6 +361,36 @@ public class MeasureAttributeValueCache extends Configurable {
 
 	}
 
+	/**
+	 * Opens the write-ahead log and stores in the database the values left by the previous execution.
+	 * If the log cannot be opened, the values are kept only in memory.  
+	 */
+	private static void openWriteAheadLog(){
+		try {
+			wal = new WriteAheadLog(new File(WAL_DIRECTORY), MeasuredAttributeValue.BULK_TABLE, WAL_SEGMENT_SIZE, WAL_SYNC_INTERVAL);
+		} catch (IOException e) {
+			logger.error("The write-ahead log could not be opened, values are kept only in memory - Message:" + e.getMessage());
+			return;
+		}
+		
+		Connection connRecover = null;
+		try {
+			connRecover = getConnection();
+			wal.recover(connRecover, BATCH_ROWS);
+		} catch (SQLException | IOException e) {
+			logger.error("The write-ahead log could not be recovered, it is tried again in the next start - Message:" + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			if (connRecover != null) {
+				try {
+					connRecover.close();
+				} catch (SQLException e) {
+					logger.error(e.getMessage());
+				}
+			}
+		}
+	}
+
 	/**
 	 * Sets cache initial capacity and limit size.
 	 * @param initialCapacity minimum total entries of internal hash tables
@@ -242,6 +398,31 @@ public class MeasureAttributeValueCache extends Configurable {
 	 * @see Caffeine#build()
 	 */
 	public static void setCache(){
+		// bounded write-behind stage that stores the cache entries in the database
+		writeBehind = new WriteBehindCacheWriter.Builder<String, AttributeValue>()
+				.name("MeasureAttributeValueCache")
+				// time before execute WriteAction over database.
+				.bufferTime(WRITE_TIME, TimeUnit.SECONDS)
+				// number of entries that triggers the WriteAction before the buffer time
+				.maxBatchSize(WRITE_BATCH_SIZE)
+				// entries waiting for the database, producers block when it is reached
+				.maxPendingEntries(WRITE_QUEUE_SIZE)
+				// database writes at the same time
+				.maxInFlight((WRITE_IN_FLIGHT > 0) ? WRITE_IN_FLIGHT : INSERT_THREADS)
+				.blockTimeout(WRITE_BLOCK_TIMEOUT, TimeUnit.MILLISECONDS)
+				// action to decide which value get in multiple entries
+				.coalesce(BinaryOperator.maxBy(AttributeValue::compareTo))
+				// WriteAction, it is executed by the write-behind threads, so the number of 
+				// batches waiting for the database is bounded.
+				.writeAction(entries -> {
+					if (entries.size() > 0) {
+						logger.info("Builder Write Action: to storage num entries:" + entries.size());
+						MeasureAttributeDatabaseStore storedatabase;
+						storedatabase = new MeasureAttributeDatabaseStore(entries, BATCH_ROWS, ROW_LOG_LEVEL, BULK_WRITER);
+						storedatabase.run();
+					} // if
+				}).build(); // writeAction
+
 		// cache is implemented by Caffeine
 		cache = Caffeine.newBuilder()
 				// time to delete an entry from cache
@@ -250,21 +431,8 @@ public class MeasureAttributeValueCache extends Configurable {
 				.initialCapacity(10_000)
 				// max size
 				.maximumSize(100_000)
-				.writer(new WriteBehindCacheWriter.Builder<String, AttributeValue>()
-						// time before execute WriteAction over database.
-						.bufferTime(WRITE_TIME, TimeUnit.SECONDS)
-						// action to decide which value get in multiple entries
-						.coalesce(BinaryOperator.maxBy(AttributeValue::compareTo))
-						// WriteAction
-						.writeAction(entries -> {
-							if (entries.size() > 0) {
-								logger.info("Builder Write Action: to storage num entries:" + entries.size());
-								MeasureAttributeDatabaseStore storedatabase;
-								storedatabase = new MeasureAttributeDatabaseStore(entries, BATCH_ROWS);
-								threadPool.submit(storedatabase);
-							} // if
-						}).build()) // writeAction
-						.build(); // writeBehindCache
+				.writer(writeBehind)
+				.build(); // writeBehindCache
 	}
 
 	/**
@@ -300,15 +468,51 @@ public class MeasureAttributeValueCache extends Configurable {
 		return cache; 
 	}
 
+	/**
+	 * Returns the write-behind stage, it gives the queue depth and flush latency metrics.
+	 * @return the write-behind cache writer.
+	 */
+	public WriteBehindCacheWriter<String, AttributeValue> getWriteBehind(){
+		return writeBehind;
+	}
+
+	/**
+	 * Returns the write-ahead log of the values waiting for the database.
+	 * @return the write-ahead log, null if it is disabled.
+	 */
+	public WriteAheadLog getWriteAheadLog(){
+		return wal;
+	}
+
 	/**
 	 * Stores an attribute value into cache.
 	 * @param mav AttributeValue to store.
 	 */
 	public void cacheStore(AttributeValue mav){
 		logger.debug("Storing:" + mav.getKey());
+		// The value is logged before the write-behind stage can store it.
+		if ((wal != null) && (mav instanceof MeasuredAttributeValue)) {
+			try {
+				wal.append(mav.getKey(), (MeasuredAttributeValue) mav);
+			} catch (IOException e) {
+				logger.error("The value could not be written in the write-ahead log key:" + mav.getKey() + " - Message:" + e.getMessage());
+			}
+		}
 		cache.put(mav.getKey(), mav);
 	}
 
+	/**
+	 * Confirms that the values given are stored in the database, so they are released from the write-ahead log.
+	 * @param values values committed in the database.
+	 */
+	public void confirmStored(List<AttributeValue> values){
+		if (wal != null) {
+			for (AttributeValue value : values) {
+				wal.confirm(value.getKey(), value);
+			}
+		}
+	}
+
 	/**
 	 * Given a key, it returns an element from the cache if it is there.
 	 * If the value is not in the cache, this method returns NULL.
@@ -346,7 +550,7 @@ public class MeasureAttributeValueCache extends Configurable {
 		// Saves measured attribute values in the database.
 		MeasureAttributeDatabaseStore storedatabase;
 		
-		storedatabase = new MeasureAttributeDatabaseStore(subSet, BATCH_ROWS);
+		storedatabase = new MeasureAttributeDatabaseStore(subSet, BATCH_ROWS, ROW_LOG_LEVEL, BULK_WRITER);
 		logger.info("Bulk Commit Method: to storage num entries:" + subSet.size());
 		threadPool.submit(storedatabase);
 		
@@ -391,6 +595,11 @@ public class MeasureAttributeValueCache extends Configurable {
 		return sqlMeasureAttributeValueRangeSelect;
 	}
 	
+	public synchronized String getSqlMeasureAttributeValueBucketSelect()
+	{
+		return sqlMeasureAttributeValueBucketSelect;
+	}
+	
 	public synchronized String getTimeStampField()
 	{
 		return timestamp;
@@ -419,12 +628,32 @@ public class MeasureAttributeValueCache extends Configurable {
 			Integer entityId, MeasuredEntityType mType, Attribute attribute, 
 			LocalDateTime from, LocalDateTime to) {
 
+		ArrayList<AttributeValue> list = new ArrayList<AttributeValue>();
+		forEachFromDatabase(entityId, mType, attribute, from, to, list::add);
+		return list;
+	}
+
+	/**
+	 * Visits the attribute values in the database as they are read from the cursor, without keeping them in a list. 
+	 * The query is the same of <code>getFromDatabase</code>.
+	 * 
+	 * @param entityId measured entity id.
+	 * @param mType describes the type of device 
+	 * @param attribute attribute name.
+	 * @param from initial time to query.
+	 * @param to final time to query.
+	 * @param visitor receives every attribute value read.
+	 * 
+	 * @see #getFromDatabase(Integer, MeasuredEntityType, Attribute, LocalDateTime, LocalDateTime)
+	 */
+	public void forEachFromDatabase(
+			Integer entityId, MeasuredEntityType mType, Attribute attribute, 
+			LocalDateTime from, LocalDateTime to, Consumer<MeasuredAttributeValue> visitor) {
+
 		logger.debug("In getFromDatabase");
 		Connection connDB  = null; 
 		PreparedStatement pstDB = null;
 
-		ArrayList<AttributeValue> list = new ArrayList<AttributeValue>();
-		
 		ResultSet rs = null;
 
 		Calendar cal = Calendar.getInstance();
@@ -444,6 +673,7 @@ public class MeasureAttributeValueCache extends Configurable {
 			pstDB.setString(3, attribute.getName());
 			pstDB.setTimestamp(4, Timestamp.valueOf(from));
 			pstDB.setTimestamp(5, Timestamp.valueOf(to));
+			pstDB.setFetchSize(FETCH_ROWS);
 			rs =  pstDB.executeQuery();
 
 			// brings the attribute data
@@ -460,7 +690,7 @@ public class MeasureAttributeValueCache extends Configurable {
 						cal.get(Calendar.MILLISECOND));
 				MeasuredAttributeValue mav = new MeasuredAttributeValue(attribute,new Object(), entityId, mType, dTime); 
 				mav.setValueFromDatabase(rs);
-				list.add(mav);
+				visitor.accept(mav);
 			}
 			
 			logger.debug("Ending getFromDatabase");
@@ -490,8 +720,98 @@ public class MeasureAttributeValueCache extends Configurable {
 				} catch (SQLException e) { 	}
 			}
 		}
-		
-		return list;
+	}
+	
+	/**
+	 * Aggregates the attribute values in the database in the buckets of a trend, the database calculates 
+	 * the aggregates so only one row by bucket is read. Only the double and integer attributes are aggregated 
+	 * by the database.
+	 * 
+	 * @param entityId measured entity id.
+	 * @param mType describes the type of device 
+	 * @param attribute attribute name.
+	 * @param from initial time to query.
+	 * @param to final time to query, excluded.
+	 * @param buckets buckets of the trend where the aggregates are merged, they are only modified if all the rows are read.
+	 * @return true if the database aggregated the values, false if the values must be read with <code>forEachFromDatabase</code>.
+	 */
+	public boolean aggregateFromDatabase(
+			Integer entityId, MeasuredEntityType mType, Attribute attribute, 
+			LocalDateTime from, LocalDateTime to, TrendBuckets buckets) {
+
+		String sql = getSqlMeasureAttributeValueBucketSelect();
+		if (sql.isEmpty() || ((attribute.getType() != AttributeType.DOUBLE) && (attribute.getType() != AttributeType.INT))) {
+			return false;
+		}
+
+		logger.debug("In aggregateFromDatabase");
+		Connection connDB  = null; 
+		PreparedStatement pstDB = null;
+
+		ResultSet rs = null;
+
+		Calendar cal = Calendar.getInstance();
+		TimeZone utcTimeZone = TimeZone.getTimeZone(SystemConstants.TIMEZONE);
+		cal.setTimeZone(utcTimeZone);
+
+		try {
+			
+			// get the database connection from the pool
+			connDB = getConnection();
+			connDB.setAutoCommit(false);
+			// prepare the statement
+			pstDB = connDB.prepareStatement(sql);
+			pstDB.setTimestamp(1, Timestamp.valueOf(buckets.getFrom()));
+			pstDB.setLong(2, buckets.getWidth());
+			pstDB.setInt(3, entityId);
+			pstDB.setInt(4, mType.getValue());
+			pstDB.setString(5, attribute.getName());
+			pstDB.setTimestamp(6, Timestamp.valueOf(from));
+			pstDB.setTimestamp(7, Timestamp.valueOf(to));
+			rs =  pstDB.executeQuery();
+
+			// the rows are merged in other buckets, so a failure while reading them does not leave 
+			// the trend half aggregated before the values are read again.
+			TrendBuckets rows = buckets.emptyCopy();
+			while (rs.next())
+			{
+				Timestamp dtstime = rs.getTimestamp("last_timestamp", cal);
+				cal.setTimeInMillis(dtstime.getTime());
+				LocalDateTime dTime = LocalDateTime.of(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, 
+						cal.get(Calendar.DAY_OF_MONTH), cal.get(Calendar.HOUR_OF_DAY),
+						cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND), 
+						cal.get(Calendar.MILLISECOND));
+				rows.merge(rs.getInt("bucket"), rs.getLong("value_count"), rs.getDouble("value_min"), 
+						rs.getDouble("value_max"), rs.getDouble("value_sum"), rs.getDouble("value_last"), dTime);
+			}
+			buckets.mergeAll(rows);
+			
+			logger.debug("Ending aggregateFromDatabase");
+			return true;
+
+		} catch (SQLException e) {
+			logger.error(e.getMessage());
+			e.printStackTrace();
+			return false;
+		} finally{
+			if (rs!=null){
+				try{
+					rs.close();
+				} catch (SQLException e) {  }
+			}
+			
+			if(pstDB!=null){
+				try{
+					pstDB.close();
+				} catch (SQLException e) { 	}
+			}
+
+			if(connDB!=null){
+				try	{
+					connDB.close();
+				} catch (SQLException e) { 	}
+			}
+		}
 	}
 	
 	/**
@@ -0,0 +1,100 @@
+package com.advicetec.persistence;
+
+import java.time.LocalDateTime;
+
+import com.advicetec.measuredentitity.MeasuredAttributeValue;
+
+/**
+ * This class represents the primary key of a measured attribute value in the database: owner, owner type,
+ * attribute name and timestamp.
+ *
+ * It is used to discard duplicate rows before a batch insert. The hash code is calculated once, so
+ * the key can be used in hash sets without building strings for every row.
+ *
+ * @author advicetec
+ * @see MeasureAttributeDatabaseStore
+ */
+public final class MeasuredAttributeValueKey
+{
+
+	/**
+	 * Measured entity that owns the value.
+	 */
+	private final int owner;
+
+	/**
+	 * Type of the measured entity that owns the value.
+	 */
+	private final int ownerType;
+
+	/**
+	 * Name of the attribute.
+	 */
+	private final String attributeName;
+
+	/**
+	 * Date and time of the value.
+	 */
+	private final LocalDateTime timeStamp;
+
+	/**
+	 * Hash code of the key.
+	 */
+	private final int hash;
+
+	/**
+	 * Constructor for the class
+	 *
+	 * @param value measured attribute value from which the key is taken.
+	 */
+	public MeasuredAttributeValueKey(MeasuredAttributeValue value)
+	{
+		this(value.getGenerator(), value.getGeneratorType().getValue(), value.getAttr().getName(), value.getTimeStamp());
+	}
+
+	/**
+	 * Constructor for the class
+	 *
+	 * @param owner			measured entity that owns the value.
+	 * @param ownerType		type of the measured entity.
+	 * @param attributeName	attribute name.
+	 * @param timeStamp		date and time of the value.
+	 */
+	public MeasuredAttributeValueKey(int owner, int ownerType, String attributeName, LocalDateTime timeStamp)
+	{
+		this.owner = owner;
+		this.ownerType = ownerType;
+		this.attributeName = attributeName;
+		this.timeStamp = timeStamp;
+
+		int h = owner;
+		h = 31 * h + ownerType;
+		h = 31 * h + attributeName.hashCode();
+		h = 31 * h + timeStamp.hashCode();
+		this.hash = h;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (!(obj instanceof MeasuredAttributeValueKey))
+			return false;
+		MeasuredAttributeValueKey other = (MeasuredAttributeValueKey) obj;
+		return (hash == other.hash) && (owner == other.owner) && (ownerType == other.ownerType)
+				&& attributeName.equals(other.attributeName) && timeStamp.equals(other.timeStamp);
+	}
+
+	@Override
+	public String toString()
+	{
+		return owner + ":" + ownerType + ":" + attributeName + ":" + timeStamp;
+	}
+}
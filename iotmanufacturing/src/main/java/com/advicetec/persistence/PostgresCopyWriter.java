@@ -0,0 +1,106 @@
+package com.advicetec.persistence;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+
+/**
+ * This class writes the rows with the PostgreSQL COPY command. Rows are encoded as csv and streamed to 
+ * the server in chunks, so the whole list is loaded in a single statement without a round trip per row.
+ * 
+ * @author advicetec
+ */
+public class PostgresCopyWriter implements BulkWriter 
+{
+
+	/**
+	 * Number of characters sent to the server at once.
+	 */
+	private static final int CHUNK_SIZE = 64 * 1024;
+	
+	@Override
+	public int write(Connection conn, List<? extends BulkStorable> rows) throws SQLException {
+		
+		if (rows.isEmpty()) {
+			return 0;
+		}
+		
+		BulkTable table = rows.get(0).getBulkTable();
+		CopyManager copyManager = new CopyManager((BaseConnection) BulkWriters.getRawConnection(conn));
+		CopyIn copyIn = copyManager.copyIn(table.getCopyStatement());
+		
+		try {
+			StringBuilder sb = new StringBuilder(CHUNK_SIZE + 1024);
+			for (BulkStorable row : rows) {
+				appendCsv(sb, row.getBulkValues());
+				if (sb.length() >= CHUNK_SIZE) {
+					send(copyIn, sb);
+				}
+			}
+			send(copyIn, sb);
+			return (int) copyIn.endCopy();
+			
+		} finally {
+			if (copyIn.isActive()) {
+				copyIn.cancelCopy();
+			}
+		}
+	}
+
+	/**
+	 * Sends the characters in the buffer to the server, and clears the buffer.
+	 */
+	private void send(CopyIn copyIn, StringBuilder sb) throws SQLException {
+		if (sb.length() > 0) {
+			byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+			copyIn.writeToCopy(bytes, 0, bytes.length);
+			sb.setLength(0);
+		}
+	}
+	
+	/**
+	 * Appends a row in csv format. Null values are left empty, so COPY loads them as null, and strings 
+	 * are always quoted, so an empty string is not confused with null.
+	 * 
+	 * @param sb		buffer where the row is appended.
+	 * @param values	row values.
+	 */
+	static void appendCsv(StringBuilder sb, Object[] values) {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			
+			Object value = values[i];
+			if (value == null) {
+				continue;
+			}
+			
+			if (value instanceof String) {
+				String str = (String) value;
+				sb.append('"');
+				for (int k = 0; k < str.length(); k++) {
+					char c = str.charAt(k);
+					if (c == '"') {
+						sb.append('"');
+					}
+					sb.append(c);
+				}
+				sb.append('"');
+			} else {
+				sb.append(value.toString());
+			}
+		}
+		sb.append('\n');
+	}
+	
+	@Override
+	public String getName() {
+		return BulkWriters.COPY;
+	}
+}
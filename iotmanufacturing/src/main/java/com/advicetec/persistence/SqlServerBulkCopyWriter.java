@@ -0,0 +1,138 @@
+package com.advicetec.persistence;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkRecord;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+
+/**
+ * This class writes the rows with the SQL Server bulk copy of the driver. Rows are streamed to the 
+ * server through a bulk record, so the whole list is loaded in a single operation. 
+ * 
+ * The bulk copy runs in the transaction of the connection, so the caller commits it.
+ * 
+ * @author advicetec
+ */
+public class SqlServerBulkCopyWriter implements BulkWriter 
+{
+
+	@Override
+	public int write(Connection conn, List<? extends BulkStorable> rows) throws SQLException {
+		
+		if (rows.isEmpty()) {
+			return 0;
+		}
+		
+		BulkTable table = rows.get(0).getBulkTable();
+		SQLServerBulkCopy bulkCopy = new SQLServerBulkCopy(BulkWriters.getRawConnection(conn));
+		try {
+			bulkCopy.setDestinationTableName(table.getName());
+			for (int i = 0; i < table.getColumnCount(); i++) {
+				bulkCopy.addColumnMapping(i + 1, table.getColumn(i));
+			}
+			bulkCopy.writeToServer(new RowsRecord(table, rows));
+			return rows.size();
+		} finally {
+			bulkCopy.close();
+		}
+	}
+
+	@Override
+	public String getName() {
+		return BulkWriters.BULK_COPY;
+	}
+	
+	/**
+	 * Bulk record that iterates over the rows, columns are numbered from 1.
+	 */
+	private static class RowsRecord implements ISQLServerBulkRecord {
+		
+		private final BulkTable table;
+		
+		private final Iterator<? extends BulkStorable> iterator;
+		
+		private final Set<Integer> ordinals;
+		
+		private BulkStorable current;
+		
+		RowsRecord(BulkTable table, List<? extends BulkStorable> rows) {
+			this.table = table;
+			this.iterator = rows.iterator();
+			this.ordinals = new LinkedHashSet<Integer>();
+			for (int i = 1; i <= table.getColumnCount(); i++) {
+				this.ordinals.add(i);
+			}
+		}
+
+		@Override
+		public Set<Integer> getColumnOrdinals() {
+			return ordinals;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return table.getColumn(column - 1);
+		}
+
+		@Override
+		public int getColumnType(int column) {
+			return table.getType(column - 1);
+		}
+
+		@Override
+		public int getPrecision(int column) {
+			switch (table.getType(column - 1)) {
+			case Types.VARCHAR:
+				return 4000;
+			case Types.DOUBLE:
+				return 15;
+			case Types.INTEGER:
+				return 10;
+			case Types.DATE:
+				return 10;
+			case Types.TIME:
+				return 16;
+			case Types.TIMESTAMP:
+				return 27;
+			default:
+				return 1;
+			}
+		}
+
+		@Override
+		public int getScale(int column) {
+			switch (table.getType(column - 1)) {
+			case Types.TIME:
+			case Types.TIMESTAMP:
+				return 7;
+			default:
+				return 0;
+			}
+		}
+
+		@Override
+		public boolean isAutoIncrement(int column) {
+			return false;
+		}
+
+		@Override
+		public Object[] getRowData() {
+			return current.getBulkValues();
+		}
+
+		@Override
+		public boolean next() {
+			if (iterator.hasNext()) {
+				current = iterator.next();
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package com.advicetec.persistence;
 
 import java.beans.PropertyVetoException;
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -89,6 +91,42 @@ public class StateIntervalCache extends Configurable {
 	 * Number of rows inserted within each batch
 	 */
 	private static int BATCH_ROWS = 4000;
+	/**
+	 * Writer used to load the state intervals in the database.
+	 */
+	private static BulkWriter BULK_WRITER = null;
+	/**
+	 * Number of buffered writes that triggers a database write before the write time.
+	 */
+	private static int WRITE_BATCH_SIZE = 20000;
+	/**
+	 * Number of writes that can wait for the database, further writes block the producer.
+	 */
+	private static int WRITE_QUEUE_SIZE = 200000;
+	/**
+	 * Number of database writes executed at the same time, by default the number of insert threads.
+	 */
+	private static int WRITE_IN_FLIGHT = 0;
+	/**
+	 * Time in milliseconds a write waits for room in the buffer before it is discarded, zero waits indefinitely.
+	 */
+	private static long WRITE_BLOCK_TIMEOUT = 0L;
+	/**
+	 * Establishes if the intervals waiting for the database are kept in the write-ahead log.
+	 */
+	private static boolean WAL_ENABLED = true;
+	/**
+	 * Directory of the write-ahead log segments.
+	 */
+	private static String WAL_DIRECTORY = "wal/stateinterval";
+	/**
+	 * Size in bytes of every write-ahead log segment.
+	 */
+	private static int WAL_SEGMENT_SIZE = 16 * 1024 * 1024;
+	/**
+	 * Milliseconds between the writes of the write-ahead log to disk.
+	 */
+	private static long WAL_SYNC_INTERVAL = 200L;
 	/**
 	 * Singleton cache instance
 	 */
@@ -147,6 +185,14 @@ public class StateIntervalCache extends Configurable {
 	 * A cache is a map with a key and the stateInterval. 
 	 */		
 	private static Cache<String, StateInterval> cache;
+	/**
+	 * Write-behind stage that takes the cache writes to the database.
+	 */
+	private static WriteBehindCacheWriter<String, StateInterval> writeBehind;
+	/**
+	 * Write-ahead log of the intervals waiting for the database, null if it is disabled.
+	 */
+	private static WriteAheadLog wal;
 	/**
 	 * Thread pool to save data in the database.
 	 */
@@ -200,6 +246,32 @@ public class StateIntervalCache extends Configurable {
 		if (properties.getProperty("batch_rows") != null)
 			BATCH_ROWS = Integer.parseInt(properties.getProperty("batch_rows"));
 
+		BULK_WRITER = BulkWriters.create(properties.getProperty("bulk_writer"), DB_DRIVER);
+
+		if (properties.getProperty("write_batch_size") != null)
+			WRITE_BATCH_SIZE = Integer.parseInt(properties.getProperty("write_batch_size").trim());
+
+		if (properties.getProperty("write_queue_size") != null)
+			WRITE_QUEUE_SIZE = Integer.parseInt(properties.getProperty("write_queue_size").trim());
+
+		if (properties.getProperty("write_in_flight") != null)
+			WRITE_IN_FLIGHT = Integer.parseInt(properties.getProperty("write_in_flight").trim());
+
+		if (properties.getProperty("write_block_timeout") != null)
+			WRITE_BLOCK_TIMEOUT = Long.parseLong(properties.getProperty("write_block_timeout").trim());
+
+		if (properties.getProperty("wal_enabled") != null)
+			WAL_ENABLED = Boolean.parseBoolean(properties.getProperty("wal_enabled").trim());
+
+		if (properties.getProperty("wal_directory") != null)
+			WAL_DIRECTORY = properties.getProperty("wal_directory").trim();
+
+		if (properties.getProperty("wal_segment_size") != null)
+			WAL_SEGMENT_SIZE = Integer.parseInt(properties.getProperty("wal_segment_size").trim());
+
+		if (properties.getProperty("wal_sync_interval") != null)
+			WAL_SYNC_INTERVAL = Long.parseLong(properties.getProperty("wal_sync_interval").trim());
+
 		threadPool = Executors.newFixedThreadPool(INSERT_THREADS);
 
 		if (properties.getProperty("min_db_thread_pool") != null)
@@ -220,6 +292,10 @@ public class StateIntervalCache extends Configurable {
 		cpds.setAcquireIncrement(5);
 		cpds.setMaxPoolSize(MAX_DB_THREAD_POOL);
 
+		// Intervals not stored by the previous execution are recovered before receiving new ones.
+		if (WAL_ENABLED) {
+			openWriteAheadLog();
+		}
 		
 		// depends on database driver, assigns the needed query.
 		if (StateIntervalCache.DB_DRIVER.compareTo("org.postgresql.Driver") == 0){
@@ -236,6 +312,16 @@ public class StateIntervalCache extends Configurable {
 			{
 				try {
 					
+					logger.info("flushing the write-behind buffer");
+					if (writeBehind != null){
+						writeBehind.close(WRITE_TIME, TimeUnit.SECONDS);
+					}
+					
+					logger.info("closing the write-ahead log");
+					if (wal != null){
+						wal.close();
+					}
+					
 					System.out.println("closing the thread pool");
 					threadPool.awaitTermination(WRITE_TIME, TimeUnit.SECONDS);
 					
@@ -260,6 +346,61 @@ public class StateIntervalCache extends Configurable {
 
 	}
 
+	/**
+	 * Opens the write-ahead log and stores in the database the intervals left by the previous execution.
+	 * If the log cannot be opened, the intervals are kept only in memory.  
+	 */
+	private static void openWriteAheadLog(){
+		try {
+			wal = new WriteAheadLog(new File(WAL_DIRECTORY), StateInterval.BULK_TABLE, WAL_SEGMENT_SIZE, WAL_SYNC_INTERVAL);
+		} catch (IOException e) {
+			logger.error("The write-ahead log could not be opened, intervals are kept only in memory - Message:" + e.getMessage());
+			return;
+		}
+
+		Connection connRecover = null;
+		try {
+			connRecover = getConnection();
+			wal.recover(connRecover, BATCH_ROWS);
+		} catch (SQLException | IOException e) {
+			logger.error("The write-ahead log could not be recovered, it is tried again in the next start - Message:" + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			if (connRecover != null) {
+				try {
+					connRecover.close();
+				} catch (SQLException e) {
+					logger.error(e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the interval in the write-ahead log before the write-behind stage can store it.
+	 */
+	private static void appendToLog(StateInterval interval){
+		if (wal != null) {
+			try {
+				wal.append(interval.getKey(), interval);
+			} catch (IOException e) {
+				logger.error("The interval could not be written in the write-ahead log key:" + interval.getKey() + " - Message:" + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Confirms that the intervals given are stored in the database, so they are released from the write-ahead log.
+	 * @param intervals intervals committed in the database.
+	 */
+	public void confirmStored(List<StateInterval> intervals){
+		if (wal != null) {
+			for (StateInterval interval : intervals) {
+				wal.confirm(interval.getKey(), interval);
+			}
+		}
+	}
+
 	/**
 	 * Sets cache initial capacity and limit size.
 	 * @param initialCapacity minimum total entries of internal hash tables
@@ -267,6 +408,29 @@ public class StateIntervalCache extends Configurable {
 	 * @see Caffeine#build()
 	 */
 	public static void setCache(){
+		// bounded write-behind stage that stores the cache entries in the database
+		writeBehind = new WriteBehindCacheWriter.Builder<String, StateInterval>()
+				.name("StateIntervalCache")
+				// time before execute WriteAction over database.
+				.bufferTime(WRITE_TIME, TimeUnit.SECONDS)
+				// number of entries that triggers the WriteAction before the buffer time
+				.maxBatchSize(WRITE_BATCH_SIZE)
+				// entries waiting for the database, producers block when it is reached
+				.maxPendingEntries(WRITE_QUEUE_SIZE)
+				// database writes at the same time
+				.maxInFlight((WRITE_IN_FLIGHT > 0) ? WRITE_IN_FLIGHT : INSERT_THREADS)
+				.blockTimeout(WRITE_BLOCK_TIMEOUT, TimeUnit.MILLISECONDS)
+				// action to decide which value get in multiple entries
+				.coalesce(BinaryOperator.maxBy(StateInterval::compareTo))
+				// WriteAction, it is executed by the write-behind threads.
+				.writeAction(entries -> {
+					if (entries.size() > 0) {
+						logger.debug("to storage num entries:" + entries.size());
+						StateIntervalDatabaseStore storedatabase = new StateIntervalDatabaseStore(entries,BATCH_ROWS,BULK_WRITER);
+						storedatabase.run();
+					}
+				}).build();
+
 		// cache is implemented by Caffeine
 		cache = Caffeine.newBuilder()
 				// time to delete an entry from cache
@@ -275,20 +439,8 @@ public class StateIntervalCache extends Configurable {
 				.initialCapacity(INIT_CAPACITY)
 				// limit cache size
 				.maximumSize(MAX_SIZE)
-				.writer(new WriteBehindCacheWriter.Builder<String, StateInterval>()
-						// time before execute WriteAction over database.
-						.bufferTime(WRITE_TIME, TimeUnit.SECONDS)
-						// action to decide which value get in multiple entries
-						.coalesce(BinaryOperator.maxBy(StateInterval::compareTo))
-						// WriteAction
-						.writeAction(entries -> {
-							if (entries.size() > 0) {
-								logger.debug("to storage num entries:" + entries.size());
-								StateIntervalDatabaseStore storedatabase = new StateIntervalDatabaseStore(entries,BATCH_ROWS);
-								threadPool.submit(storedatabase);
-							}
-						}).build())
-						.build();
+				.writer(writeBehind)
+				.build();
 
 	}
 
@@ -312,12 +464,29 @@ public class StateIntervalCache extends Configurable {
 		return cache; 
 	}
 
+	/**
+	 * Returns the write-behind stage, it gives the queue depth and flush latency metrics.
+	 * @return the write-behind cache writer.
+	 */
+	public WriteBehindCacheWriter<String, StateInterval> getWriteBehind(){
+		return writeBehind;
+	}
+
+	/**
+	 * Returns the write-ahead log of the intervals waiting for the database.
+	 * @return the write-ahead log, null if it is disabled.
+	 */
+	public WriteAheadLog getWriteAheadLog(){
+		return wal;
+	}
+
 	/**
 	 * Stores an state interval and its measuring entity name. 
 	 * @param interval element to be stored into cache.
 	 */
 	public void storeToCache(StateInterval interval){
 		// the key is composed of entity name + start time + end time
+		appendToLog(interval);
 		cache.put(interval.getKey(), interval);
 	}
 
@@ -356,17 +525,15 @@ public class StateIntervalCache extends Configurable {
 					conn = getConnection();
 					logger.debug("Finish getConnection bulkCommit");
 					conn.setAutoCommit(false);
-					// prepare statement
-					pst = conn.prepareStatement(StateInterval.SQL_Insert);
 					
 					List<String> keysToInvalidate = new ArrayList<String>();
-					// Store the values in the database.
 					for (StateInterval interval :entry) {
-						interval.dbInsert(pst);
 						keysToInvalidate.add(interval.getKey());
 					}
-					pst.executeBatch();
+					// Store the values in the database.
+					BULK_WRITER.write(conn, entry);
 					conn.commit();
+					confirmStored(entry);
 
 					// Discard those values obtained as they would be inserted in the database.
 					cache.invalidateAll(keysToInvalidate);
@@ -376,17 +543,6 @@ public class StateIntervalCache extends Configurable {
 					e.printStackTrace();
 				}
 				finally{
-					if(pst!=null)
-					{
-						try
-						{
-							pst.close();
-						} catch (SQLException e) {
-							logger.error("Error: "+ e.getMessage());
-							e.printStackTrace();
-						}
-					}
-
 					if(conn!=null) 
 					{
 						try
@@ -466,6 +622,7 @@ public class StateIntervalCache extends Configurable {
 			return null;
 		} else {
 			stateInterval.setReason(reasonCode); 
+			appendToLog(stateInterval);
 			cache.put(stateKey, stateInterval);
 			return stateInterval;
 		}
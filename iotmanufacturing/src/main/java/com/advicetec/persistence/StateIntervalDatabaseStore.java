@@ -1,8 +1,6 @@
 package com.advicetec.persistence;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -24,20 +22,34 @@ public class StateIntervalDatabaseStore implements Runnable {
 	 * Database connection object
 	 */
 	private Connection conn  = null;
-	/**
-	 * Database prepared statement object
-	 */
-	private PreparedStatement pst = null;
 
 	/**
 	 * Default number of rows per batch  
 	 */
 	private int batchRows = 4000;
 	
+	/**
+	 * Writer used to load every batch in the database.
+	 */
+	private BulkWriter writer;
+	
 	public StateIntervalDatabaseStore(Map<String, StateInterval> entries, int batchRows)
+	{
+		this(entries, batchRows, new JdbcBatchWriter());
+	}
+	
+	/**
+	 * Constructor for the class
+	 * 
+	 * @param entries	state intervals to insert in the database.
+	 * @param batchRows	number of rows per batch.
+	 * @param writer	writer used to load every batch in the database.
+	 */
+	public StateIntervalDatabaseStore(Map<String, StateInterval> entries, int batchRows, BulkWriter writer)
 	{
 		this.entries = entries;
 		this.batchRows = batchRows;
+		this.writer = writer;
 	}
 	
 	public static List<List< StateInterval>> split(Map<String, StateInterval> map, int limit){
@@ -76,17 +88,15 @@ public class StateIntervalDatabaseStore implements Runnable {
 				conn = StateIntervalCache.getConnection();
 				logger.debug("Finish getConnection");
 				conn.setAutoCommit(false);
-				pst = conn.prepareStatement(StateInterval.SQL_Insert);
-				// prepares the statement
-				entry.forEach((v)-> {
-					logger.debug( "db write key:" + ((StateInterval)v).getKey() );
-					((StateInterval)v).dbInsert(pst);
-
-				});
+				if (logger.isDebugEnabled()) {
+					entry.forEach((v)-> logger.debug( "db write key:" + v.getKey() ));
+				}
 				// execute the insertion
-				int ret[] = pst.executeBatch();
-				logger.debug("Number of State Intervals inserted:" + ret.length);
+				int ret = writer.write(conn, entry);
+				logger.debug("Number of State Intervals inserted:" + ret + " writer:" + writer.getName());
 				conn.commit();
+				// The intervals are committed, they can be released from the write-ahead log.
+				StateIntervalCache.getInstance().confirmStored(entry);
 
 			} catch (SQLException e) {
 				logger.error(e.getMessage());
@@ -94,15 +104,6 @@ public class StateIntervalDatabaseStore implements Runnable {
 			}
 
 			finally{
-				if(pst!=null){
-					try{
-						pst.close();
-					} catch (SQLException e) {
-						logger.error(e.getMessage());
-						e.printStackTrace();
-					}
-				}
-
 				if(conn!=null) {
 					try {
 						conn.close();
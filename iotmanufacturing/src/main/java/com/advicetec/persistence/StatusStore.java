@@ -2,9 +2,9 @@ package com.advicetec.persistence;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -33,6 +33,7 @@ import com.advicetec.language.ast.UnitMeasureSymbol;
  * This class represents the measured entitiy <i>Status</i>.
  * The <i>Status</i> models the most recent values related to a measured entity.
  * It uses lists of attributes and the attribute values.
+ * The maps are concurrent, so the status can be read while the facade updates it.
  * 
  * @author advicetec
  *
@@ -43,18 +44,18 @@ public class StatusStore {
 	/**
 	 * List of attribute values
 	 */
-	private HashMap<String, AttributeValue> values;
+	private ConcurrentHashMap<String, AttributeValue> values;
 	/**
 	 * List of attributes
 	 */
-	private HashMap<String, Attribute> attributes; 
+	private ConcurrentHashMap<String, Attribute> attributes; 
 
 	/**
 	 * Constructor
 	 */
 	public StatusStore(){
-		attributes = new HashMap<String, Attribute>();
-		values = new HashMap<String, AttributeValue>();
+		attributes = new ConcurrentHashMap<String, Attribute>();
+		values = new ConcurrentHashMap<String, AttributeValue>();
 	}
 
 	/**
@@ -212,10 +213,8 @@ public class StatusStore {
 	 */
 	public void setAttributeValue(AttributeValue attributeValue) {
 		// check if the attribute is already in the attribute list.
-		if(!attributes.containsKey(attributeValue.getKey())){
-			// sets the attribute
-			attributes.put(attributeValue.getKey(), attributeValue.getAttr());
-		}
+		// sets the attribute if it is not in the list yet
+		attributes.putIfAbsent(attributeValue.getKey(), attributeValue.getAttr());
 		// sets the value
 		values.put(attributeValue.getKey(), attributeValue);
 	}
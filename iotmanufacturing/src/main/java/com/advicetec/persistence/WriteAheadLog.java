@@ -0,0 +1,627 @@
+package com.advicetec.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * This class implements a local write-ahead log for the rows waiting in a cache to be written in the
+ * database, so they are not lost if the process stops before the write-behind stage stores them.
+ *
+ * The log is a sequence of memory mapped segment files in a directory. Every cache store appends the
+ * row of the object, and the store confirms the rows once the database commits them. A segment file
+ * is deleted when it is full and all its rows were confirmed or appended again in a later segment.
+ *
+ * Rows are copied into the mapped segment, so they survive a crash of the process once appended. A
+ * background thread forces the segment to disk every sync interval, grouping the appends of that
+ * period in a single disk write; an operating system crash can lose at most one sync interval.
+ *
+ * When the log is opened, the segments left by the previous execution are kept apart. They are read
+ * by <code>recover</code>, which inserts their rows in the database and deletes them.
+ *
+ * Segment format: int magic, int version, and then the records: int payload length, int crc32 of
+ * the payload, payload. A length of zero marks the end of the records.
+ *
+ * @author advicetec
+ * @see MeasureAttributeValueCache
+ * @see StateIntervalCache
+ */
+public class WriteAheadLog
+{
+
+	static Logger logger = LogManager.getLogger(WriteAheadLog.class.getName());
+
+	private static final int MAGIC = 0x57414C31;
+
+	private static final int VERSION = 1;
+
+	private static final int SEGMENT_HEADER = 8;
+
+	private static final int RECORD_HEADER = 8;
+
+	private static final String SEGMENT_PREFIX = "segment-";
+
+	private static final String SEGMENT_SUFFIX = ".wal";
+
+	// Value tags in the record payload.
+	private static final byte NULL = 0;
+	private static final byte INTEGER = 1;
+	private static final byte DOUBLE = 2;
+	private static final byte STRING = 3;
+	private static final byte BOOLEAN = 4;
+	private static final byte TIMESTAMP = 5;
+	private static final byte DATE = 6;
+	private static final byte TIME = 7;
+
+	/**
+	 * Directory with the segment files.
+	 */
+	private final File directory;
+
+	/**
+	 * Table of the rows, it is used to insert the recovered rows.
+	 */
+	private final BulkTable table;
+
+	/**
+	 * Size in bytes of every segment file.
+	 */
+	private final int segmentSize;
+
+	/**
+	 * Segment files left by the previous execution.
+	 */
+	private final List<File> recovered = new ArrayList<File>();
+
+	/**
+	 * Segments of this execution that still have rows pending to confirm, including the active one.
+	 */
+	private final List<Segment> segments = new ArrayList<Segment>();
+
+	/**
+	 * Last row appended for every key not confirmed yet.
+	 */
+	private final Map<String, Pending> pending = new HashMap<String, Pending>();
+
+	/**
+	 * Segment where the rows are appended.
+	 */
+	private Segment active;
+
+	/**
+	 * Sequence of the last segment created.
+	 */
+	private long sequence = 0;
+
+	/**
+	 * Establishes if there are rows appended since the last sync.
+	 */
+	private boolean dirty = false;
+
+	private boolean closed = false;
+
+	private long appended = 0;
+
+	private final ScheduledExecutorService syncer;
+
+	/**
+	 * Constructor for the class, it opens the log in the directory given, creating it if needed.
+	 *
+	 * @param directory		directory of the segment files, only one log can use it.
+	 * @param table			table where the rows are inserted.
+	 * @param segmentSize	size in bytes of every segment file.
+	 * @param syncInterval	milliseconds between the writes of the active segment to disk.
+	 * @throws IOException if the directory or the first segment could not be created.
+	 */
+	public WriteAheadLog(File directory, BulkTable table, int segmentSize, long syncInterval) throws IOException
+	{
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("The write-ahead log directory could not be created:" + directory.getAbsolutePath());
+		}
+
+		this.directory = directory;
+		this.table = table;
+		this.segmentSize = segmentSize;
+
+		File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+		Arrays.sort(files);
+		for (File file : files) {
+			recovered.add(file);
+			sequence = Math.max(sequence, getSequence(file));
+		}
+
+		if (!recovered.isEmpty()) {
+			logger.info("Write-ahead log " + directory.getPath() + " has " + recovered.size() + " segments to recover");
+		}
+
+		active = newSegment();
+
+		syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "wal-sync-" + table.getName());
+			thread.setDaemon(true);
+			return thread;
+		});
+		syncer.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Appends the row of an object. If a row with the same key is pending, the new row replaces it.
+	 *
+	 * @param key	 key of the object in the cache.
+	 * @param value	 object to append.
+	 * @throws IOException if the log is closed, the row does not fit in a segment or a new segment
+	 * 			could not be created.
+	 */
+	public void append(String key, BulkStorable value) throws IOException
+	{
+		byte[] payload = encode(key, value.getBulkValues());
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		int size = RECORD_HEADER + payload.length;
+
+		if (size > segmentSize - SEGMENT_HEADER - RECORD_HEADER) {
+			throw new IOException("The row with key:" + key + " does not fit in a write-ahead log segment");
+		}
+
+		synchronized (this) {
+			if (closed) {
+				throw new IOException("The write-ahead log is closed");
+			}
+
+			// Leaves room for the end mark.
+			if (active.buffer.remaining() < size + RECORD_HEADER) {
+				roll();
+			}
+
+			active.buffer.putInt(payload.length);
+			active.buffer.putInt((int) crc.getValue());
+			active.buffer.put(payload);
+			dirty = true;
+			appended++;
+
+			active.pending++;
+			Pending previous = pending.put(key, new Pending(active, value));
+			if (previous != null) {
+				release(previous.segment);
+			}
+		}
+	}
+
+	/**
+	 * Confirms that the row of an object is stored in the database. The confirmation is ignored if
+	 * the object was appended again with another instance.
+	 *
+	 * @param key	key of the object in the cache.
+	 * @param value	object stored.
+	 */
+	public synchronized void confirm(String key, Object value)
+	{
+		Pending current = pending.get(key);
+		if ((current != null) && (current.value == value)) {
+			pending.remove(key);
+			release(current.segment);
+		}
+	}
+
+	/**
+	 * Reads the rows of the segments left by the previous execution. When a key has several rows,
+	 * the last one is returned.
+	 *
+	 * @return rows in the order of the table columns.
+	 * @throws IOException if a segment could not be read.
+	 */
+	public List<Object[]> readRecovered() throws IOException
+	{
+		Map<String, Object[]> rows = new LinkedHashMap<String, Object[]>();
+		for (File file : recovered) {
+			readSegment(file, rows);
+		}
+		return new ArrayList<Object[]>(rows.values());
+	}
+
+	/**
+	 * Inserts the rows of the segments left by the previous execution in the database, and deletes the
+	 * segments. Rows rejected by an integrity constraint were already stored before the crash and they
+	 * are skipped. If the database fails with any other error, the segments are kept for the next start.
+	 *
+	 * @param conn		database connection, it is not closed by this method.
+	 * @param batchRows	number of rows per batch.
+	 * @return number of rows inserted.
+	 * @throws SQLException if the rows could not be inserted.
+	 * @throws IOException if a segment could not be read.
+	 */
+	public int recover(Connection conn, int batchRows) throws SQLException, IOException
+	{
+		if (recovered.isEmpty()) {
+			return 0;
+		}
+
+		List<Object[]> rows = readRecovered();
+		logger.info("Recovering " + rows.size() + " rows of " + table.getName() + " from the write-ahead log");
+
+		int inserted = 0;
+		conn.setAutoCommit(false);
+		for (int from = 0; from < rows.size(); from += batchRows) {
+			List<Object[]> batch = rows.subList(from, Math.min(rows.size(), from + batchRows));
+			try {
+				inserted += JdbcBatchWriter.writeRows(conn, table, batch);
+				conn.commit();
+			} catch (SQLException e) {
+				conn.rollback();
+				// Some rows were stored before the crash, the rest are inserted one by one.
+				for (Object[] row : batch) {
+					try {
+						inserted += JdbcBatchWriter.writeRows(conn, table, Collections.singletonList(row));
+						conn.commit();
+					} catch (SQLException e1) {
+						conn.rollback();
+						if (!isIntegrityViolation(e1)) {
+							throw e1;
+						}
+						logger.debug("Recovered row already stored - Message:" + e1.getMessage());
+					}
+				}
+			}
+		}
+
+		discardRecovered();
+		logger.info("Rows recovered from the write-ahead log: " + inserted);
+		return inserted;
+	}
+
+	/**
+	 * Deletes the segments left by the previous execution.
+	 */
+	public synchronized void discardRecovered()
+	{
+		for (File file : recovered) {
+			if (!file.delete()) {
+				logger.error("The write-ahead log segment could not be deleted:" + file.getAbsolutePath());
+			}
+		}
+		recovered.clear();
+	}
+
+	/**
+	 * Writes the active segment to disk if rows were appended since the last sync.
+	 */
+	public void sync()
+	{
+		MappedByteBuffer buffer;
+		synchronized (this) {
+			if (!dirty || closed) {
+				return;
+			}
+			dirty = false;
+			buffer = active.buffer;
+		}
+		buffer.force();
+	}
+
+	/**
+	 * Writes the active segment to disk and closes the log. The segments with pending rows are kept
+	 * to be recovered in the next start.
+	 */
+	public void close()
+	{
+		syncer.shutdown();
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			active.buffer.force();
+			active.active = false;
+			if (active.pending == 0) {
+				delete(active);
+			}
+			closed = true;
+			logger.info("Write-ahead log closed - pending rows:" + pending.size() + " segments:" + segments.size());
+		}
+	}
+
+	/**
+	 * Gets the number of keys whose rows are not confirmed yet.
+	 */
+	public synchronized int getPendingRows() {
+		return pending.size();
+	}
+
+	/**
+	 * Gets the number of segment files of this execution.
+	 */
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * Gets the number of rows appended since the log was opened.
+	 */
+	public synchronized long getAppendedRows() {
+		return appended;
+	}
+
+	/**
+	 * Gets the number of segment files left by the previous execution and not recovered yet.
+	 */
+	public synchronized int getRecoveredSegmentCount() {
+		return recovered.size();
+	}
+
+	/**
+	 * Closes the active segment and creates a new one.
+	 */
+	private void roll() throws IOException
+	{
+		Segment old = active;
+		old.buffer.force();
+		old.active = false;
+		active = newSegment();
+		if (old.pending == 0) {
+			delete(old);
+		}
+	}
+
+	/**
+	 * Releases a row of the segment, deleting the segment when it is not active and has no rows pending.
+	 */
+	private void release(Segment segment)
+	{
+		segment.pending--;
+		if (!segment.active && (segment.pending == 0)) {
+			delete(segment);
+		}
+	}
+
+	private Segment newSegment() throws IOException
+	{
+		sequence++;
+		File file = new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			FileChannel channel = raf.getChannel();
+			// The mapping remains valid after the channel is closed.
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			Segment segment = new Segment(file, buffer);
+			segments.add(segment);
+			return segment;
+		}
+	}
+
+	private void delete(Segment segment)
+	{
+		segments.remove(segment);
+		segment.buffer = null;
+		if (!segment.file.delete()) {
+			// A mapped file cannot be deleted in some platforms until the buffer is collected.
+			logger.error("The write-ahead log segment could not be deleted:" + segment.file.getAbsolutePath());
+			segment.file.deleteOnExit();
+		}
+	}
+
+	private void readSegment(File file, Map<String, Object[]> rows) throws IOException
+	{
+		ByteBuffer buffer;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if ((buffer.remaining() < SEGMENT_HEADER) || (buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) {
+			logger.error("The file is not a write-ahead log segment:" + file.getAbsolutePath());
+			return;
+		}
+
+		int count = 0;
+		while (buffer.remaining() >= RECORD_HEADER) {
+			int length = buffer.getInt();
+			int crc = buffer.getInt();
+			if (length == 0) {
+				break;
+			}
+
+			if ((length < 0) || (length > buffer.remaining())) {
+				logger.error("Torn record in write-ahead log segment:" + file.getName() + " after records:" + count);
+				break;
+			}
+
+			byte[] payload = new byte[length];
+			buffer.get(payload);
+			CRC32 check = new CRC32();
+			check.update(payload);
+			if ((int) check.getValue() != crc) {
+				logger.error("Corrupted record in write-ahead log segment:" + file.getName() + " after records:" + count);
+				break;
+			}
+
+			decode(payload, rows);
+			count++;
+		}
+		logger.debug("Records read from write-ahead log segment:" + file.getName() + " records:" + count);
+	}
+
+	/**
+	 * Encodes the key and the values of a row.
+	 */
+	static byte[] encode(String key, Object[] values) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeUTF(key);
+		out.writeShort(values.length);
+		for (Object value : values) {
+			if (value == null) {
+				out.writeByte(NULL);
+			} else if (value instanceof Integer) {
+				out.writeByte(INTEGER);
+				out.writeInt((Integer) value);
+			} else if (value instanceof Double) {
+				out.writeByte(DOUBLE);
+				out.writeDouble((Double) value);
+			} else if (value instanceof String) {
+				out.writeByte(STRING);
+				out.writeUTF((String) value);
+			} else if (value instanceof Boolean) {
+				out.writeByte(BOOLEAN);
+				out.writeBoolean((Boolean) value);
+			} else if (value instanceof Timestamp) {
+				// The local date time is kept, so the row does not depend on the time zone.
+				LocalDateTime dateTime = ((Timestamp) value).toLocalDateTime();
+				out.writeByte(TIMESTAMP);
+				out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+				out.writeInt(dateTime.getNano());
+			} else if (value instanceof Date) {
+				out.writeByte(DATE);
+				out.writeLong(((Date) value).toLocalDate().toEpochDay());
+			} else if (value instanceof Time) {
+				out.writeByte(TIME);
+				out.writeLong(((Time) value).toLocalTime().toNanoOfDay());
+			} else {
+				throw new IOException("The value of class " + value.getClass().getName() + " cannot be written in the log");
+			}
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes a row and puts it in the map by key.
+	 */
+	static void decode(byte[] payload, Map<String, Object[]> rows) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		String key = in.readUTF();
+		Object[] values = new Object[in.readShort()];
+		for (int i = 0; i < values.length; i++) {
+			byte tag = in.readByte();
+			switch (tag) {
+			case NULL:
+				values[i] = null;
+				break;
+			case INTEGER:
+				values[i] = in.readInt();
+				break;
+			case DOUBLE:
+				values[i] = in.readDouble();
+				break;
+			case STRING:
+				values[i] = in.readUTF();
+				break;
+			case BOOLEAN:
+				values[i] = in.readBoolean();
+				break;
+			case TIMESTAMP:
+				long seconds = in.readLong();
+				int nanos = in.readInt();
+				values[i] = Timestamp.valueOf(LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC));
+				break;
+			case DATE:
+				values[i] = Date.valueOf(LocalDate.ofEpochDay(in.readLong()));
+				break;
+			case TIME:
+				values[i] = Time.valueOf(LocalTime.ofNanoOfDay(in.readLong()));
+				break;
+			default:
+				throw new IOException("Invalid value tag in the write-ahead log:" + tag);
+			}
+		}
+		// Removes the key first, so the row keeps the position of its last append.
+		rows.remove(key);
+		rows.put(key, values);
+	}
+
+	/**
+	 * Establishes if the error was raised by an integrity constraint, as a duplicate key.
+	 */
+	private static boolean isIntegrityViolation(SQLException e)
+	{
+		for (SQLException cause = e; cause != null; cause = cause.getNextException()) {
+			if ((cause.getSQLState() != null) && cause.getSQLState().startsWith("23")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static long getSequence(File file)
+	{
+		String name = file.getName();
+		try {
+			return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Segment file of this execution.
+	 */
+	private static final class Segment
+	{
+		final File file;
+
+		MappedByteBuffer buffer;
+
+		/**
+		 * Rows of the segment not confirmed nor appended again.
+		 */
+		int pending = 0;
+
+		/**
+		 * Establishes if the rows are appended to this segment.
+		 */
+		boolean active = true;
+
+		Segment(File file, MappedByteBuffer buffer)
+		{
+			this.file = file;
+			this.buffer = buffer;
+		}
+	}
+
+	/**
+	 * Last row appended for a key.
+	 */
+	private static final class Pending
+	{
+		final Segment segment;
+
+		final Object value;
+
+		Pending(Segment segment, Object value)
+		{
+			this.segment = segment;
+			this.value = value;
+		}
+	}
+}
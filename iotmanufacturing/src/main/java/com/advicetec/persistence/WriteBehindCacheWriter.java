@@ -16,86 +16,423 @@
 package com.advicetec.persistence;
 
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.toMap;
 
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.advicetec.metrics.Histogram;
+import com.advicetec.metrics.MetricsRegistry;
 import com.github.benmanes.caffeine.cache.CacheWriter;
 import com.github.benmanes.caffeine.cache.RemovalCause;
 
-import io.reactivex.subjects.PublishSubject;
-
 /**
  * This class implements the {@link CacheWriter} interface to allow a cache to have "write-behind"
- * semantics. The passed in writeAction will only be called every 'bufferTime' time with a Map
- * containing the keys and the values that have been updated in the cache each time.
+ * semantics. The passed in writeAction is called with a Map containing the keys and the values
+ * that have been updated in the cache, when 'bufferTime' has elapsed since the first buffered write
+ * or when 'maxBatchSize' writes are buffered, whatever happens first.
  * <p>
  * If a key is updated multiple times during that period then the 'binaryOperator' has to decide
  * which value should be taken.
  * <p>
- * An example usage of this class is keeping track of users and their activity on a web site. You
- * don't want to update the database each time any of your users does something. It is better to
- * batch the updates every x seconds and just write the most recent time in the database.
+ * The stage is bounded: at most 'maxPendingEntries' writes wait in the buffer, and at most
+ * 'maxInFlight' batches are being written at the same time. When the system of record is slower
+ * than the producers, the buffer fills up and the cache writes block (back-pressure) until there is
+ * room, or until 'blockTimeout' expires, in which case the write is discarded and counted as rejected.
+ * <p>
+ * The buffer depth, batches in flight and flush latencies are available through the getters, so
+ * they can be monitored. The buffer depth and the size and duration of every flush are also recorded
+ * in the metrics registry, labeled with the name of the writer.
  *
  * @param <K> the type of the key in the cache
  * @param <V> the type of the value in the cache
  * @author wim.deblauwe@gmail.com (Wim Deblauwe)
  */
-public final class WriteBehindCacheWriter<K, V> implements CacheWriter<K, V> 
+public final class WriteBehindCacheWriter<K, V> implements CacheWriter<K, V>
 {
 	static Logger logger = LogManager.getLogger(WriteBehindCacheWriter.class.getName());
 
-	private final PublishSubject<Entry<K, V>> subject;
+	/**
+	 * Maximum time the flusher waits for a write when the buffer is empty.
+	 */
+	private static final long IDLE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+	private final String name;
+
+	private final Consumer<Map<K, V>> writeAction;
+
+	private final BinaryOperator<V> coalescer;
+
+	private final long bufferTimeNanos;
+
+	private final int maxBatchSize;
+
+	private final long blockTimeoutNanos;
+
+	/**
+	 * Writes waiting to be flushed.
+	 */
+	private final BlockingQueue<Entry<K, V>> queue;
+
+	/**
+	 * Permits for the batches that can be written at the same time.
+	 */
+	private final Semaphore inFlightPermits;
+
+	private final ExecutorService executor;
+
+	private final Thread flusher;
+
+	private volatile boolean running = true;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final AtomicLong flushedBatches = new AtomicLong();
+
+	private final AtomicLong flushedEntries = new AtomicLong();
+
+	private final AtomicLong failedBatches = new AtomicLong();
+
+	private final AtomicLong blockedWrites = new AtomicLong();
+
+	private final AtomicLong rejectedWrites = new AtomicLong();
+
+	private final AtomicLong totalLatencyNanos = new AtomicLong();
+
+	private final AtomicLong lastLatencyNanos = new AtomicLong();
+
+	private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+	/**
+	 * Entries and duration of every flush, recorded in the metrics registry.
+	 */
+	private final Histogram flushSize;
+
+	private final Histogram flushTime;
 
 	private WriteBehindCacheWriter(Builder<K, V> builder) {
 
-		subject = PublishSubject.create();
-		subject.buffer(builder.bufferTimeNanos, TimeUnit.NANOSECONDS)
-		.map(entries -> entries.stream().collect(
-				toMap((Entry<K,V> e) -> { if (e==null){
-					logger.error("the entry is null");
-				}
-				return (K) e.getKey(); 
-				}, 
-				(Entry<K,V> e) -> {
-					if (e==null){
-						logger.error("the entry is null");
-					}
-					return (V) e.getValue();
-				}, builder.coalescer)))
-				.subscribe(builder.writeAction::accept);
+		this.name = builder.name;
+		this.writeAction = requireNonNull(builder.writeAction);
+		this.coalescer = requireNonNull(builder.coalescer);
+		this.bufferTimeNanos = builder.bufferTimeNanos;
+		this.maxBatchSize = builder.maxBatchSize;
+		this.blockTimeoutNanos = builder.blockTimeoutNanos;
+		this.queue = new LinkedBlockingQueue<Entry<K, V>>(builder.maxPendingEntries);
+		this.inFlightPermits = new Semaphore(builder.maxInFlight);
+
+		MetricsRegistry registry = MetricsRegistry.getInstance();
+		this.flushSize = registry.histogram("iot_write_behind_flush_size", "Entries written by every flush, by writer.",
+				Histogram.SIZE_BOUNDS, 1, "writer").labels(name);
+		this.flushTime = registry.latency("iot_write_behind_flush_seconds", "Duration of the flushes, by writer.",
+				"writer").labels(name);
+		registry.gauge("iot_write_behind_depth", "Writes waiting to be flushed, by writer.", "writer")
+				.labels(name).set(this::getQueueDepth);
+
+		final AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(builder.maxInFlight, r ->
+			new Thread(r, name + "-writer-" + threadNumber.incrementAndGet()));
+
+		this.flusher = new Thread(this::flushLoop, name + "-flusher");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
 	}
 
 	@Override
 	public void write(K key, V value) {
-		subject.onNext(new SimpleImmutableEntry<>(key, value));
+		Entry<K, V> entry = new SimpleImmutableEntry<>(key, value);
+
+		if (queue.offer(entry)) {
+			return;
+		}
+
+		// The buffer is full, the producer waits for the writers.
+		blockedWrites.incrementAndGet();
+		try {
+			if (blockTimeoutNanos <= 0) {
+				queue.put(entry);
+			} else if (!queue.offer(entry, blockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+				rejectedWrites.incrementAndGet();
+				logger.error(name + " - the write-behind buffer is full, the write for key:" + key + " is discarded");
+			}
+		} catch (InterruptedException e) {
+			rejectedWrites.incrementAndGet();
+			logger.error(name + " interrupted while waiting for the write-behind buffer, key:" + key);
+			Thread.currentThread().interrupt();
+		}
 	}
 
 	@Override
-	public void delete(K key, V value, RemovalCause removalCause) 
+	public void delete(K key, V value, RemovalCause removalCause)
 	{
 		logger.debug("delete:" + key);
 	}
 
+	/**
+	 * Collects the writes in batches and hands every batch to the writers. A batch is closed when
+	 * it reaches the maximum size or when the buffer time since its first write has elapsed.
+	 */
+	private void flushLoop() {
+		List<Entry<K, V>> batch = new ArrayList<Entry<K, V>>();
+		long deadline = 0;
+
+		try {
+			while (running || !queue.isEmpty()) {
+				if (batch.isEmpty()) {
+					Entry<K, V> entry = queue.poll(Math.min(bufferTimeNanos, IDLE_POLL_NANOS), TimeUnit.NANOSECONDS);
+					if (entry == null) {
+						continue;
+					}
+					batch.add(entry);
+					deadline = System.nanoTime() + bufferTimeNanos;
+				} else {
+					long remaining = deadline - System.nanoTime();
+					if (running && (remaining > 0)) {
+						Entry<K, V> entry = queue.poll(remaining, TimeUnit.NANOSECONDS);
+						if (entry != null) {
+							batch.add(entry);
+						}
+					}
+				}
+
+				queue.drainTo(batch, maxBatchSize - batch.size());
+
+				if ((batch.size() >= maxBatchSize) || (System.nanoTime() - deadline >= 0) || !running) {
+					flush(batch);
+					batch = new ArrayList<Entry<K, V>>();
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.error(name + " write-behind flusher interrupted");
+			Thread.currentThread().interrupt();
+		}
+
+		if (!batch.isEmpty()) {
+			flush(batch);
+		}
+	}
+
+	/**
+	 * Coalesces the writes of a batch by key and gives it to a writer. It waits while the maximum
+	 * number of batches is in flight.
+	 */
+	private void flush(List<Entry<K, V>> batch) {
+		Map<K, V> entries = new LinkedHashMap<K, V>((batch.size() * 4 / 3) + 1);
+		for (Entry<K, V> entry : batch) {
+			if (entry == null) {
+				logger.error("the entry is null");
+				continue;
+			}
+			entries.merge(entry.getKey(), entry.getValue(), coalescer);
+		}
+
+		inFlightPermits.acquireUninterruptibly();
+		inFlight.incrementAndGet();
+		try {
+			executor.execute(() -> write(entries));
+		} catch (RuntimeException e) {
+			inFlight.decrementAndGet();
+			inFlightPermits.release();
+			failedBatches.incrementAndGet();
+			logger.error(name + " the batch of " + entries.size() + " entries could not be submitted - Message:" + e.getMessage());
+		}
+	}
+
+	/**
+	 * Executes the write action for a batch and records its latency.
+	 */
+	private void write(Map<K, V> entries) {
+		long start = System.nanoTime();
+		try {
+			writeAction.accept(entries);
+			flushedEntries.addAndGet(entries.size());
+		} catch (RuntimeException e) {
+			failedBatches.incrementAndGet();
+			logger.error(name + " write action failed for " + entries.size() + " entries - Message:" + e.getMessage());
+			e.printStackTrace();
+		} finally {
+			long latency = System.nanoTime() - start;
+			flushedBatches.incrementAndGet();
+			totalLatencyNanos.addAndGet(latency);
+			lastLatencyNanos.set(latency);
+			maxLatencyNanos.accumulateAndGet(latency, Math::max);
+			flushTime.observe(latency);
+			flushSize.observe(entries.size());
+			inFlight.decrementAndGet();
+			inFlightPermits.release();
+
+			if (logger.isDebugEnabled()) {
+				logger.debug(name + " flushed entries:" + entries.size() + " latency(ms):" + TimeUnit.NANOSECONDS.toMillis(latency)
+								+ " queue depth:" + getQueueDepth() + " in flight:" + getInFlightBatches());
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting time triggers, flushes the writes in the buffer and waits for the writers.
+	 *
+	 * @param timeout	maximum time to wait.
+	 * @param unit		unit of the timeout.
+	 * @return true if all the batches were written, false if the timeout elapsed before.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		running = false;
+		flusher.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+		executor.shutdown();
+		return executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Gets the name used for the threads and logs of this writer.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the number of writes waiting in the buffer.
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Gets the number of batches being written.
+	 */
+	public int getInFlightBatches() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Gets the number of batches written, including the failed ones.
+	 */
+	public long getFlushedBatches() {
+		return flushedBatches.get();
+	}
+
+	/**
+	 * Gets the number of entries written after coalescing.
+	 */
+	public long getFlushedEntries() {
+		return flushedEntries.get();
+	}
+
+	/**
+	 * Gets the number of batches whose write action failed.
+	 */
+	public long getFailedBatches() {
+		return failedBatches.get();
+	}
+
+	/**
+	 * Gets the number of writes that had to wait because the buffer was full.
+	 */
+	public long getBlockedWrites() {
+		return blockedWrites.get();
+	}
+
+	/**
+	 * Gets the number of writes discarded because the buffer stayed full for the block timeout.
+	 */
+	public long getRejectedWrites() {
+		return rejectedWrites.get();
+	}
+
+	/**
+	 * Gets the duration of the last flush in milliseconds.
+	 */
+	public double getLastFlushLatency() {
+		return lastLatencyNanos.get() / 1_000_000.0;
+	}
+
+	/**
+	 * Gets the longest flush in milliseconds.
+	 */
+	public double getMaxFlushLatency() {
+		return maxLatencyNanos.get() / 1_000_000.0;
+	}
+
+	/**
+	 * Gets the average duration of the flushes in milliseconds.
+	 */
+	public double getAverageFlushLatency() {
+		long batches = flushedBatches.get();
+		return (batches == 0) ? 0.0 : (totalLatencyNanos.get() / 1_000_000.0) / batches;
+	}
+
 	public static final class Builder<K, V> {
+		private String name = "write-behind";
 		private Consumer<Map<K, V>> writeAction;
 		private BinaryOperator<V> coalescer;
-		private long bufferTimeNanos;
+		private long bufferTimeNanos = TimeUnit.SECONDS.toNanos(1);
+		private int maxBatchSize = 10_000;
+		private int maxPendingEntries = 100_000;
+		private int maxInFlight = 1;
+		private long blockTimeoutNanos = 0;
+
+		/** The name used for the threads and logs of the writer. */
+		public Builder<K, V> name(String name) {
+			this.name = requireNonNull(name);
+			return this;
+		}
 
 		/**
 		 * The duration that the calls to the cache should be buffered before calling the
 		 * <code>writeAction</code>.
 		 */
 		public Builder<K, V> bufferTime(long duration, TimeUnit unit) {
-			this.bufferTimeNanos = TimeUnit.NANOSECONDS.convert(duration, unit);
+			this.bufferTimeNanos = Math.max(1, TimeUnit.NANOSECONDS.convert(duration, unit));
+			return this;
+		}
+
+		/** The number of buffered calls that triggers the <code>writeAction</code> before the buffer time. */
+		public Builder<K, V> maxBatchSize(int maxBatchSize) {
+			if (maxBatchSize <= 0) {
+				throw new IllegalArgumentException("maxBatchSize must be positive");
+			}
+			this.maxBatchSize = maxBatchSize;
+			return this;
+		}
+
+		/** The number of calls that can wait in the buffer, further calls block. */
+		public Builder<K, V> maxPendingEntries(int maxPendingEntries) {
+			if (maxPendingEntries <= 0) {
+				throw new IllegalArgumentException("maxPendingEntries must be positive");
+			}
+			this.maxPendingEntries = maxPendingEntries;
+			return this;
+		}
+
+		/** The number of <code>writeAction</code> calls that can be executed at the same time. */
+		public Builder<K, V> maxInFlight(int maxInFlight) {
+			if (maxInFlight <= 0) {
+				throw new IllegalArgumentException("maxInFlight must be positive");
+			}
+			this.maxInFlight = maxInFlight;
+			return this;
+		}
+
+		/** The time a call waits when the buffer is full before it is discarded, zero or less waits indefinitely. */
+		public Builder<K, V> blockTimeout(long duration, TimeUnit unit) {
+			this.blockTimeoutNanos = TimeUnit.NANOSECONDS.convert(duration, unit);
 			return this;
 		}
 
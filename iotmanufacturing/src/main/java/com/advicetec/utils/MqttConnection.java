@@ -0,0 +1,172 @@
+package com.advicetec.utils;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+/**
+ * One client connection of the <code>MqttSubscriber</code>.
+ * <p>
+ * The connection is made by the executor of the subscriber. When it fails, or when the connection is
+ * lost, the next attempt is scheduled after the backoff delay of the subscriber, and the client
+ * subscribes again once it is connected. The messages received are given to the subscriber, when the
+ * subscriber refuses a message the callback fails, so the client closes the connection without
+ * acknowledging it, and it does not connect again until the subscriber can resume.
+ *
+ * @author advicetec
+ * @see MqttSubscriber
+ */
+class MqttConnection implements MqttCallback
+{
+
+	static Logger logger = LogManager.getLogger(MqttConnection.class.getName());
+
+	private final MqttSubscriber subscriber;
+	private final String clientId;
+	private final MqttClient client;
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * Number of failed attempts since the last connection.
+	 */
+	private int attempts = 0;
+	/**
+	 * The client was connected before, so the next connection is a reconnection.
+	 */
+	private boolean wasConnected = false;
+	private volatile boolean closed = false;
+
+	MqttConnection(MqttSubscriber subscriber, String clientId, ScheduledExecutorService scheduler) throws MqttException {
+		this.subscriber = subscriber;
+		this.clientId = clientId;
+		this.scheduler = scheduler;
+		this.client = new MqttClient(subscriber.getBrokerUrl(), clientId, new MemoryPersistence());
+		// Set this wrapper as the callback handler
+		this.client.setCallback(this);
+	}
+
+	/**
+	 * Starts the connection in background.
+	 */
+	void connect() {
+		schedule(0);
+	}
+
+	/**
+	 * Tries to connect and subscribe, and schedules a new attempt if it fails.
+	 */
+	private void tryConnect() {
+		if (closed) {
+			return;
+		}
+		if (!client.isConnected() && !subscriber.canResume()) {
+			// paused, the spill buffer has no room for the backlog yet.
+			schedule(subscriber.getReconnectDelay(0));
+			return;
+		}
+		try {
+			if (!client.isConnected()) {
+				client.connect(subscriber.getConnectOptions());
+			}
+			// The QoS specified is the maximum level that messages will be sent to the client at.
+			client.subscribe(subscriber.getSubscription(), subscriber.getQoS());
+			logger.info("Client " + clientId + " subscribed to " + subscriber.getSubscription()
+					+ " at " + subscriber.getBrokerUrl());
+			attempts = 0;
+			if (wasConnected) {
+				subscriber.reconnected();
+			}
+			wasConnected = true;
+		} catch (MqttException e) {
+			long delay = subscriber.getReconnectDelay(attempts++);
+			logger.warn("Cannot connect " + clientId + " to " + subscriber.getBrokerUrl()
+					+ ", retrying in " + delay + " ms. cause:" + e.getMessage());
+			schedule(delay);
+		}
+	}
+
+	private void schedule(long delay) {
+		try {
+			scheduler.schedule(new Runnable() {
+				public void run() {
+					tryConnect();
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// the subscriber was closed.
+		}
+	}
+
+	/**
+	 * Disconnects the client, it does not reconnect anymore.
+	 */
+	void close() {
+		closed = true;
+		try {
+			if (client.isConnected()) {
+				client.disconnect();
+			}
+			client.close();
+		} catch (MqttException e) {
+			logger.warn("Error closing the client " + clientId + ". cause:" + e.getMessage());
+		}
+	}
+
+	boolean isConnected() {
+		return client.isConnected();
+	}
+
+	/****************************************************************/
+	/* Methods to implement the MqttCallback interface              */
+	/****************************************************************/
+
+	/**
+	 * @see MqttCallback#connectionLost(Throwable)
+	 */
+	public void connectionLost(Throwable cause) {
+		if (closed) {
+			return;
+		}
+		long delay = subscriber.getReconnectDelay(attempts++);
+		logger.warn("Connection of " + clientId + " to " + subscriber.getBrokerUrl() + " lost, reconnecting in "
+				+ delay + " ms. cause:" + ((cause == null) ? "" : cause.getMessage()));
+		schedule(delay);
+	}
+
+	/**
+	 * @see MqttCallback#deliveryComplete(IMqttDeliveryToken)
+	 */
+	public void deliveryComplete(IMqttDeliveryToken token) {
+		// the clients do not publish.
+	}
+
+	/**
+	 * @see MqttCallback#messageArrived(String, MqttMessage)
+	 */
+	public void messageArrived(String topic, MqttMessage message) throws InterruptedException, MqttException {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Client:\t" + clientId +
+					"  Topic:\t" + topic +
+					"  Message:\t" + new String(message.getPayload()) +
+					"  QoS:\t" + message.getQos());
+		}
+		if (!subscriber.spill(topic, message.getPayload())) {
+			// the client shuts down the connection and the message is not acknowledged.
+			logger.warn("MQTT spill buffer is full, client " + clientId + " paused. Pauses:" + subscriber.getPauses());
+			throw new MqttException(MqttException.REASON_CODE_CLIENT_EXCEPTION);
+		}
+	}
+
+	/****************************************************************/
+	/* End of MqttCallback methods                                  */
+	/****************************************************************/
+}
@@ -1,33 +1,76 @@
 package com.advicetec.utils;
 
-import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
-import org.eclipse.paho.client.mqttv3.MqttMessage;
-import org.eclipse.paho.client.mqttv3.internal.wire.MqttPublish;
-import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
-import org.eclipse.paho.client.mqttv3.MqttCallback;
+
 import com.advicetec.core.Configurable;
 import com.advicetec.monitorAdapter.AdapterManager;
+import com.advicetec.monitorAdapter.MqttReading;
+import com.advicetec.mpmcqueue.PriorityQueue;
 import com.advicetec.mpmcqueue.QueueType;
 import com.advicetec.mpmcqueue.Queueable;
 
 /**
- * Application that uses the Paho MQTT v3.1 Client blocking API.
- * This applications is configurable from the properties file "MqttSubscriber.properties".
- * 
+ * MQTT ingestion subsystem, it uses the Paho MQTT v3.1 Client blocking API.
+ * This subsystem is configurable from the properties file "MqttSubscriber.properties".
+ * <p>
+ * It opens <code>Connections</code> clients to the broker. With more than one connection the clients
+ * join the MQTT shared subscription <code>$share/SharedGroup/TopicName</code>, so the broker spreads the
+ * messages among them and every message is received once. The messages of a device are in order only
+ * if the broker dispatches the shared subscription by topic.
+ * <p>
+ * The callback threads of the clients only copy the messages into the spill buffer, a bounded buffer
+ * in memory. A forwarder thread drains the buffer and queues the messages in the adapter manager in
+ * batches. The buffer absorbs the bursts, as the backlog that the broker sends after a reconnection,
+ * while the adapter queue is full.
+ * <p>
+ * When the buffer is full the callback thread waits up to <code>SpillTimeout</code> milliseconds. The
+ * callback thread cannot wait longer: the Paho client does not process the keep alive pings while it is in
+ * the callback, so the broker would close the connection. The message is acknowledged when the callback
+ * returns, so by default the message is refused instead: the callback fails, the client closes its
+ * connection without acknowledging it, and it does not reconnect until the buffer is half empty. With
+ * QoS 1 or 2 and a session kept by the broker, the messages not acknowledged are delivered again after the
+ * reconnection. The pauses are counted in <code>getPauses</code>.
+ * <p>
+ * With <code>SpillDrop</code> the message is dropped instead and counted in <code>getDropped</code>, so
+ * the connection is kept but the message is lost even with QoS 1 or 2. Every window of consecutive drops
+ * is logged when it starts and when it ends, with the number of messages dropped.
+ * <p>
+ * A client that loses its connection, or cannot connect, retries with an exponential backoff between
+ * <code>ReconnectMinDelay</code> and <code>ReconnectMaxDelay</code> milliseconds. By default the clients
+ * keep their session, so the broker keeps the messages with QoS 1 or 2 while they are disconnected.
+ *
+ * @author advicetec
+ * @see MqttConnection
+ * @see AdapterManager
  */
-public class MqttSubscriber extends Configurable implements MqttCallback  
+public class MqttSubscriber extends Configurable
 {
 
 	static Logger logger = LogManager.getLogger(MqttSubscriber.class.getName());
 
 	/**
-	 * Message broker address. 
+	 * Priority of the messages in the adapter queue.
+	 */
+	private static final int PRIORITY = 6;
+
+	/**
+	 * Message broker address.
 	 */
 	private String brokerUrl;
 	/**
@@ -39,11 +82,11 @@ public class MqttSubscriber extends Configurable implements MqttCallback
 	 */
 	private String password;
 	/**
-	 * Topic used to identify the group of messages. 
+	 * Topic used to identify the group of messages.
 	 */
 	private String topicName;
 	/**
-	 * Client id.
+	 * Client id, with more than one connection the number of the connection is appended.
 	 */
 	private String clientId;
 	/**
@@ -51,16 +94,93 @@ public class MqttSubscriber extends Configurable implements MqttCallback
 	 */
 	private int qos;
 	/**
-	 * Adapter manager reference.
+	 * Number of connections to the broker.
+	 */
+	private int connections = 1;
+	/**
+	 * Group of the shared subscription used with more than one connection.
+	 */
+	private String sharedGroup = "iotmanufacturing";
+	/**
+	 * The broker discards the session of the client when it disconnects.
+	 */
+	private boolean cleanSession = false;
+	/**
+	 * Delay before the first reconnection in milliseconds.
+	 */
+	private long reconnectMinDelay = 500;
+	/**
+	 * Maximum delay between reconnections in milliseconds.
+	 */
+	private long reconnectMaxDelay = 30000;
+	/**
+	 * Number of messages the spill buffer can keep.
+	 */
+	private int spillCapacity = 100000;
+	/**
+	 * Maximum number of messages queued at once in the adapter queue.
+	 */
+	private int batchSize = 256;
+	/**
+	 * Milliseconds that a callback thread waits while the spill buffer is full before refusing the message.
+	 */
+	private long spillTimeout = 100;
+	/**
+	 * The messages that do not fit in the spill buffer are dropped, instead of pausing the connection.
+	 */
+	private boolean spillDrop = false;
+
+	/**
+	 * Messages received and not yet queued in the adapter queue.
 	 */
-	AdapterManager adapterManager = null;
-	
+	private BlockingQueue<MqttReading> spill;
+	/**
+	 * Adapter queue where the messages are queued.
+	 */
+	private final PriorityQueue<Queueable> target;
+	/**
+	 * Clients connected to the broker.
+	 */
+	private final List<MqttConnection> clients = new ArrayList<MqttConnection>();
+	/**
+	 * Executor for the connections and reconnections of the clients.
+	 */
+	private ScheduledExecutorService scheduler;
+	/**
+	 * Thread that moves the messages from the spill buffer to the adapter queue.
+	 */
+	private Thread forwarder;
+
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong pauses = new AtomicLong();
+	private final AtomicLong reconnects = new AtomicLong();
+	private volatile boolean closed = false;
+
+	/**
+	 * The messages are being dropped, the window of drops is guarded by <code>dropLock</code>.
+	 */
+	private volatile boolean dropping = false;
+	private final Object dropLock = new Object();
+	private long windowStart;
+	private long windowDropped;
+
 	/**
 	 * Creates a subscriber with the parameter read from the properties file.
 	 */
 	public MqttSubscriber(){
-		
+		this(new Properties(), AdapterManager.getInstance().getQueue());
+	}
+
+	/**
+	 * Creates a subscriber with the parameters read from the properties file, replaced by the ones given.
+	 * @param overrides	properties that replace the ones of the file.
+	 * @param target	queue where the messages are queued.
+	 */
+	MqttSubscriber(Properties overrides, PriorityQueue<Queueable> target){
+
 		super("MqttSubscriber");
+		this.properties.putAll(overrides);
 		// read configuration properties
 		brokerUrl = getProperty("BrokeUrl");
 		userName = getProperty("UserName");
@@ -68,146 +188,278 @@ public class MqttSubscriber extends Configurable implements MqttCallback
 		topicName = getProperty("TopicName");
 		clientId = getProperty("ClientId");
 		qos = Integer.valueOf(getProperty("QoS"));
-		// gets the adapter manager instance.
-		adapterManager = AdapterManager.getInstance(); 
+		if (getProperty("Connections") != null)
+			connections = Integer.valueOf(getProperty("Connections"));
+		if (getProperty("SharedGroup") != null)
+			sharedGroup = getProperty("SharedGroup").trim();
+		if (getProperty("CleanSession") != null)
+			cleanSession = Boolean.valueOf(getProperty("CleanSession").trim());
+		if (getProperty("ReconnectMinDelay") != null)
+			reconnectMinDelay = Long.valueOf(getProperty("ReconnectMinDelay"));
+		if (getProperty("ReconnectMaxDelay") != null)
+			reconnectMaxDelay = Long.valueOf(getProperty("ReconnectMaxDelay"));
+		if (getProperty("SpillCapacity") != null)
+			spillCapacity = Integer.valueOf(getProperty("SpillCapacity"));
+		if (getProperty("BatchSize") != null)
+			batchSize = Integer.valueOf(getProperty("BatchSize"));
+		if (getProperty("SpillTimeout") != null)
+			spillTimeout = Long.valueOf(getProperty("SpillTimeout"));
+		if (getProperty("SpillDrop") != null)
+			spillDrop = Boolean.valueOf(getProperty("SpillDrop").trim());
+
+		this.target = target;
+		this.spill = new ArrayBlockingQueue<MqttReading>(spillCapacity);
 	}
-	
-	public void run(){
-		// set connection options
-		MqttConnectOptions conOpt = new MqttConnectOptions();
-		conOpt.setCleanSession(true);
-		conOpt.setUserName(this.userName);	   
-		conOpt.setPassword(this.password.toCharArray());
 
-		// Construct an MQTT blocking mode client
-		MqttClient client;
+	/**
+	 * Starts the forwarder and the connections to the broker. The connections are made in background,
+	 * so this method does not fail when the broker is not available.
+	 */
+	public synchronized void run(){
+		scheduler = Executors.newScheduledThreadPool(1, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "MqttReconnect");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		forwarder = new Thread(new Runnable() {
+			public void run() {
+				forward();
+			}
+		}, "MqttForwarder");
+		forwarder.start();
+
+		for (int i = 0; i < connections; i++) {
+			String id = (connections == 1) ? clientId : clientId + "-" + i;
+			try {
+				MqttConnection client = new MqttConnection(this, id, scheduler);
+				clients.add(client);
+				client.connect();
+			} catch (MqttException e) {
+				logger.error("Cannot create the client " + id + " for " + brokerUrl + ". cause:" + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Disconnects the clients and stops the forwarder. The messages in the spill buffer are discarded.
+	 */
+	public synchronized void close(){
+		closed = true;
+		for (MqttConnection client : clients) {
+			client.close();
+		}
+		clients.clear();
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+		if (forwarder != null) {
+			forwarder.interrupt();
+		}
+	}
+
+	/**
+	 * Moves the messages from the spill buffer to the adapter queue, in batches of up to
+	 * <code>batchSize</code> messages.
+	 */
+	private void forward() {
+		List<MqttReading> drained = new ArrayList<MqttReading>(batchSize);
+		Queueable[] batch = new Queueable[batchSize];
 		try {
-//			client = new MqttClient(this.brokerUrl, clientId, dataStore);
-			client = new MqttClient(this.brokerUrl, clientId);
-			// Set this wrapper as the callback handler
-			client.setCallback(this);
-
-			// Connect to the MQTT server
-			client.connect(conOpt);
-
-			// Create and configure a message
-			byte[] payload = "mensaje".getBytes();
-			MqttMessage message = new MqttMessage(payload);
-			message.setQos(qos);
-
-			client.publish(topicName, message); // Blocking publish
-
-			// Subscribe to the requested topic
-			// The QoS specified is the maximum level that messages will be sent to the client at. 
-			// For instance if QoS 1 is specified, any messages originally published at QoS 2 will 
-			// be downgraded to 1 when delivering to the client but messages published at 1 and 0 
-			// will be received at the same level they were published at. 
-//			log("Subscribing to topic \""+topicName+"\" qos "+qos);
-			client.subscribe(topicName, qos);
-			
-		} catch (MqttException e) {
-			logger.error("Cannot subscribe with "+brokerUrl +":"+clientId +
-					",topic:" + topicName+". cause:"+e.getMessage());
-			e.printStackTrace();
+			while (!closed) {
+				drained.add(spill.take());
+				spill.drainTo(drained, batchSize - 1);
+				int count = drained.size();
+				for (int i = 0; i < count; i++) {
+					batch[i] = new Queueable(QueueType.MQTT_DEV_MESSAGE, drained.get(i));
+				}
+				target.enqueueAll(PRIORITY, batch, count);
+				Arrays.fill(batch, 0, count, null);
+				drained.clear();
+			}
+		} catch (InterruptedException e) {
+			if (!closed) {
+				logger.error("MQTT forwarder interrupted: " + e.getMessage());
+			}
 		}
 	}
 
+	/**
+	 * Keeps a message received by a client in the spill buffer. While the buffer is full it waits up to
+	 * <code>spillTimeout</code> milliseconds, then the message is refused, or dropped with <code>spillDrop</code>.
+	 * @param topic		topic of the message.
+	 * @param payload	payload of the message, it is copied.
+	 * @return false if the message was refused, the client has to pause without acknowledging it.
+	 * @throws InterruptedException if the thread is interrupted while it waits.
+	 */
+	boolean spill(String topic, byte[] payload) throws InterruptedException {
+		received.incrementAndGet();
+		MqttReading reading = MqttReading.obtain(topic, payload);
+		if (spill.offer(reading) || spill.offer(reading, spillTimeout, TimeUnit.MILLISECONDS)) {
+			if (dropping) {
+				endDropWindow();
+			}
+			return true;
+		}
+		reading.recycle();
+		if (!spillDrop) {
+			pauses.incrementAndGet();
+			return false;
+		}
+		dropped.incrementAndGet();
+		synchronized (dropLock) {
+			if (!dropping) {
+				dropping = true;
+				windowStart = System.currentTimeMillis();
+				windowDropped = 0;
+				logger.warn("MQTT spill buffer is full, dropping messages from " + topic + ". Dropped:" + dropped.get());
+			}
+			windowDropped++;
+		}
+		return true;
+	}
 
-	/****************************************************************/
-	/* Methods to implement the MqttCallback interface              */
-	/****************************************************************/
+	/**
+	 * Logs the end of a window of drops, once a message fits again in the spill buffer.
+	 */
+	private void endDropWindow() {
+		synchronized (dropLock) {
+			if (dropping) {
+				dropping = false;
+				logger.warn("MQTT spill buffer dropped " + windowDropped + " messages in "
+						+ (System.currentTimeMillis() - windowStart) + " ms. Dropped:" + dropped.get());
+			}
+		}
+	}
 
 	/**
-	 * @see MqttCallback#connectionLost(Throwable)
+	 * Returns true if a paused client can connect again, the spill buffer is at most half full.
+	 * @return true if the spill buffer has room for the backlog of a reconnection.
 	 */
-	public void connectionLost(Throwable cause) {
-		// Called when the connection to the server has been lost.
-		// An application may choose to implement reconnection
-		// logic at this point. This sample simply exits.
-		logger.info("Connection to " + brokerUrl + " lost!" + cause.getMessage());
-		System.exit(1);
+	boolean canResume() {
+		return spill.size() <= (spillCapacity / 2);
 	}
 
 	/**
-	 * @see MqttCallback#deliveryComplete(IMqttDeliveryToken)
+	 * Called by a client when it reconnects to the broker.
 	 */
-	public void deliveryComplete(IMqttDeliveryToken token) {
-		// Called when a message has been delivered to the
-		// server. The token passed in here is the same one
-		// that was passed to or returned from the original call to publish.
-		// This allows applications to perform asynchronous 
-		// delivery without blocking until delivery completes.
-		//
-		// This sample demonstrates asynchronous deliver and 
-		// uses the token.waitForCompletion() call in the main thread which
-		// blocks until the delivery has completed. 
-		// Additionally the deliveryComplete method will be called if 
-		// the callback is set on the client
-		// 
-		// If the connection to the server breaks before delivery has completed
-		// delivery of a message will complete after the client has re-connected.
-		// The getPendingTokens method will provide tokens for any messages
-		// that are still to be delivered.
+	void reconnected() {
+		reconnects.incrementAndGet();
 	}
 
 	/**
-	 * @see MqttCallback#messageArrived(String, MqttMessage)
+	 * Returns the options to connect the clients.
+	 * @return the connection options.
 	 */
-	public void messageArrived(String topic, MqttMessage message) throws MqttException {
-		// Called when a message arrives from the server that matches any
-		// subscription made by the client		
-		String time = new Timestamp(System.currentTimeMillis()).toString();
-		logger.debug("Time:\t" +time +
-				"  Topic:\t" + topic + 
-				"  Message:\t" + new String(message.getPayload()) +
-				"  QoS:\t" + message.getQos());
-		MqttPublish mqttPublish = new MqttPublish(topic, message);
-		try {
-			
-			Queueable obj = new Queueable(QueueType.MQTT_DEV_MESSAGE, mqttPublish);
-			adapterManager.getQueue().enqueue(6, obj);
-			
-		} catch (InterruptedException e) {
-			logger.error(e.getMessage());
-			e.printStackTrace();
-		} 
-	}
-
-	/****************************************************************/
-	/* End of MqttCallback methods                                  */
-	/****************************************************************/
-
-	static void printHelp() {
-		System.out.println(
-				"Syntax:\n\n" +
-						"    Sample [-h] [-a publish|subscribe] [-t <topic>] [-m <message text>]\n" +
-						"            [-s 0|1|2] -b <hostname|IP address>] [-p <brokerport>] [-i <clientID>]\n\n" +
-						"    -h  Print this help text and quit\n" +
-						"    -q  Quiet mode (default is false)\n" +
-						"    -a  Perform the relevant action (default is publish)\n" +
-						"    -t  Publish/subscribe to <topic> instead of the default\n" +
-						"            (publish: \"Sample/Java/v3\", subscribe: \"Sample/#\")\n" +
-						"    -m  Use <message text> instead of the default\n" +
-						"            (\"Message from MQTTv3 Java client\")\n" +
-						"    -s  Use this QoS instead of the default (2)\n" +
-						"    -b  Use this name/IP address instead of the default (localhost)\n" +
-						"    -p  Use this port instead of the default (1883)\n\n" +
-						"    -i  Use this client ID instead of SampleJavaV3_<action>\n" +
-						"    -c  Connect to the server with a clean session (default is false)\n" +
-						"     \n\n Security Options \n" +
-						"     -u Username \n" +
-						"     -z Password \n" +
-						"     \n\n SSL Options \n" +
-						"    -v  SSL enabled; true - (default is false) " +
-						"    -k  Use this JKS format key store to verify the client\n" +
-						"    -w  Passpharse to verify certificates in the keys store\n" +
-						"    -r  Use this JKS format keystore to verify the server\n" +
-						" If javax.net.ssl properties have been set only the -v flag needs to be set\n" +
-						"Delimit strings containing spaces with \"\"\n\n" +
-						"Publishers transmit a single message then disconnect from the server.\n" +
-						"Subscribers remain connected to the server and receive appropriate\n" +
-						"messages until <enter> is pressed.\n\n"
-				);
+	MqttConnectOptions getConnectOptions() {
+		MqttConnectOptions conOpt = new MqttConnectOptions();
+		conOpt.setCleanSession(cleanSession);
+		if (userName != null) {
+			conOpt.setUserName(userName);
+		}
+		if (password != null) {
+			conOpt.setPassword(password.toCharArray());
+		}
+		return conOpt;
+	}
+
+	/**
+	 * Returns the topic filter subscribed by the clients: the shared subscription of the group with more
+	 * than one connection, otherwise the topic name.
+	 * @return the topic filter to subscribe.
+	 */
+	String getSubscription() {
+		if ((connections > 1) && (sharedGroup != null) && !sharedGroup.isEmpty()) {
+			return "$share/" + sharedGroup + "/" + topicName;
+		}
+		return topicName;
+	}
+
+	/**
+	 * Returns the delay before the next reconnection. The delay doubles with every attempt up to the
+	 * maximum, and a random part of up to its half is subtracted, so the clients do not reconnect at
+	 * the same time.
+	 * @param attempt	number of failed attempts since the last connection.
+	 * @return the delay in milliseconds.
+	 */
+	long getReconnectDelay(int attempt) {
+		return backoff(attempt, reconnectMinDelay, reconnectMaxDelay);
+	}
+
+	static long backoff(int attempt, long minDelay, long maxDelay) {
+		long delay = maxDelay;
+		if ((attempt < 62) && (minDelay <= (maxDelay >> attempt))) {
+			delay = minDelay << attempt;
+		}
+		long half = delay / 2;
+		return delay - ThreadLocalRandom.current().nextLong(half + 1);
+	}
+
+	public String getBrokerUrl() {
+		return brokerUrl;
+	}
+
+	public int getQoS() {
+		return qos;
+	}
+
+	public boolean isClosed() {
+		return closed;
 	}
 
+	/**
+	 * Returns the number of messages received from the broker.
+	 * @return the number of messages received.
+	 */
+	public long getReceived() {
+		return received.get();
+	}
+
+	/**
+	 * Returns the number of messages dropped because the spill buffer was full.
+	 * @return the number of messages dropped.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * Returns the number of messages refused because the spill buffer was full, every one pauses a client.
+	 * @return the number of pauses.
+	 */
+	public long getPauses() {
+		return pauses.get();
+	}
+
+	/**
+	 * Returns the number of reconnections of the clients, after a lost connection.
+	 * @return the number of reconnections.
+	 */
+	public long getReconnects() {
+		return reconnects.get();
+	}
+
+	/**
+	 * Returns the number of messages in the spill buffer.
+	 * @return the number of messages waiting to be queued.
+	 */
+	public int getSpilled() {
+		return spill.size();
+	}
+
+	/**
+	 * Returns the number of clients connected to the broker.
+	 * @return the number of clients connected.
+	 */
+	public synchronized int getConnected() {
+		int count = 0;
+		for (MqttConnection client : clients) {
+			if (client.isConnected()) {
+				count++;
+			}
+		}
+		return count;
+	}
 }
\ No newline at end of file
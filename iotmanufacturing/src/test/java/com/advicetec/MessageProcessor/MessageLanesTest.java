@@ -0,0 +1,213 @@
+package com.advicetec.MessageProcessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.advicetec.mpmcqueue.ParkWaitStrategy;
+import com.advicetec.mpmcqueue.QueueType;
+import com.advicetec.mpmcqueue.Queueable;
+
+public class MessageLanesTest
+{
+	private static Queueable message(int entity) {
+		return new Queueable(QueueType.UNIFIED_MESSAGE, new MeasuringErrorMessage(null, null, entity));
+	}
+
+	private static int entity(MessageLanes.Entry entry) {
+		return ((MeasuringMessage) entry.getContent().getContent()).getmEntity();
+	}
+
+	@Test
+	public void OrderTest() throws InterruptedException {
+		final MessageLanes lanes = new MessageLanes(4, new ParkWaitStrategy(), 1000, 3);
+		final int entities = 40;
+		final int perEntity = 500;
+
+		// sequence of every message, by identity.
+		final Map<Object, Integer> sequences = new ConcurrentHashMap<Object, Integer>();
+		final Map<Integer, Integer> laneOf = new ConcurrentHashMap<Integer, Integer>();
+		final AtomicBoolean ordered = new AtomicBoolean(true);
+
+		List<Thread> consumers = new ArrayList<Thread>();
+		for (int i = 0; i < lanes.size(); i++) {
+			final int lane = i;
+			Thread t = new Thread(new Runnable() {
+				public void run() {
+					Map<Integer, Integer> last = new HashMap<Integer, Integer>();
+					try {
+						while (true) {
+							MessageLanes.Entry entry = lanes.take(lane);
+							int entity = entity(entry);
+							if (entity < 0) {
+								return;
+							}
+							int sequence = sequences.get(entry.getContent().getContent());
+							Integer previous = last.put(entity, sequence);
+							Integer known = laneOf.putIfAbsent(entity, lane);
+							if (((previous != null) && (previous + 1 != sequence))
+									|| ((known != null) && (known != lane))) {
+								ordered.set(false);
+							}
+							lanes.done(entry);
+						}
+					} catch (InterruptedException e) {
+						ordered.set(false);
+					}
+				}
+			});
+			t.start();
+			consumers.add(t);
+		}
+
+		for (int i = 0; i < perEntity; i++) {
+			for (int entity = 0; entity < entities; entity++) {
+				Queueable obj = message(entity);
+				sequences.put(obj.getContent(), i);
+				lanes.enqueue(obj);
+			}
+		}
+		// one negative entity per lane stops its consumer.
+		for (int i = 0; i < lanes.size(); i++) {
+			int entity = -1;
+			while (lanes.getLane(entity) != i) {
+				entity--;
+			}
+			lanes.enqueue(message(entity));
+		}
+		for (Thread t : consumers) {
+			t.join(10000);
+		}
+
+		assertTrue(ordered.get());
+		assertEquals(entities, laneOf.size());
+		// the ring spreads the entities over every lane.
+		assertEquals(lanes.size(), new HashSet<Integer>(laneOf.values()).size());
+	}
+
+	@Test
+	public void RebalanceTest() throws InterruptedException {
+		MessageLanes lanes = new MessageLanes(2, new ParkWaitStrategy(), 10, 2);
+
+		// three busy entities of the first lane.
+		List<Integer> entities = new ArrayList<Integer>();
+		for (int entity = 0; entities.size() < 3; entity++) {
+			if (lanes.getLane(entity) == 0) {
+				entities.add(entity);
+			}
+		}
+		Map<Object, Integer> sequences = new HashMap<Object, Integer>();
+		for (int i = 0; i < 30; i++) {
+			for (int entity : entities) {
+				Queueable obj = message(entity);
+				sequences.put(obj.getContent(), i);
+				lanes.enqueue(obj);
+			}
+			if (i == 19) {
+				assertEquals(0, lanes.rebalance());
+			}
+		}
+
+		// up to half of the messages received since the last check move, one of the busy entities.
+		assertEquals(1, lanes.rebalance());
+		int moved = -1;
+		for (int entity : entities) {
+			if (lanes.getLane(entity) == 1) {
+				moved = entity;
+			}
+		}
+		assertTrue(moved >= 0);
+
+		// its new messages wait until the first lane processes the pending ones.
+		for (int i = 30; i < 35; i++) {
+			Queueable obj = message(moved);
+			sequences.put(obj.getContent(), i);
+			lanes.enqueue(obj);
+		}
+		assertEquals(0, lanes.depths()[1]);
+		for (int i = 0; i < 90; i++) {
+			MessageLanes.Entry entry = lanes.take(0);
+			if (entity(entry) == moved) {
+				assertEquals(0, lanes.depths()[1]);
+			}
+			lanes.done(entry);
+		}
+		assertEquals(0, lanes.depths()[0]);
+		assertEquals(5, lanes.depths()[1]);
+		for (int i = 30; i < 35; i++) {
+			MessageLanes.Entry entry = lanes.take(1);
+			assertEquals(moved, entity(entry));
+			assertEquals(i, (int) sequences.get(entry.getContent().getContent()));
+			lanes.done(entry);
+		}
+
+		// once moved, the messages go straight to the new lane.
+		lanes.enqueue(message(moved));
+		assertEquals(1, lanes.depths()[1]);
+		assertEquals(moved, entity(lanes.take(1)));
+	}
+
+	@Test
+	public void HeldLimitTest() throws InterruptedException {
+		final MessageLanes lanes = new MessageLanes(2, new ParkWaitStrategy(), 10, 1);
+
+		// three entities of the first lane, one of them moves with ten messages pending.
+		List<Integer> entities = new ArrayList<Integer>();
+		for (int entity = 0; entities.size() < 3; entity++) {
+			if (lanes.getLane(entity) == 0) {
+				entities.add(entity);
+			}
+		}
+		for (int i = 0; i < 10; i++) {
+			for (int entity : entities) {
+				lanes.enqueue(message(entity));
+			}
+		}
+		assertEquals(1, lanes.rebalance());
+		int moved = -1;
+		for (int entity : entities) {
+			if (lanes.getLane(entity) == 1) {
+				moved = entity;
+			}
+		}
+		assertTrue(moved >= 0);
+		final int busy = moved;
+
+		// the route holds up to the maximum depth, then the producer waits.
+		final AtomicBoolean finished = new AtomicBoolean(false);
+		Thread producer = new Thread(new Runnable() {
+			public void run() {
+				try {
+					for (int i = 0; i < 15; i++) {
+						lanes.enqueue(message(busy));
+					}
+					finished.set(true);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		producer.start();
+		producer.join(500);
+		assertTrue(producer.isAlive());
+		assertEquals(false, finished.get());
+		assertEquals(0, lanes.depths()[1]);
+
+		// once the first lane processes the pending messages, the held ones and the rest are queued.
+		for (int i = 0; i < 30; i++) {
+			lanes.done(lanes.take(0));
+		}
+		producer.join(10000);
+		assertTrue(finished.get());
+		assertEquals(15, lanes.depths()[1]);
+	}
+}
@@ -0,0 +1,226 @@
+package com.advicetec.MessageProcessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.advicetec.eventprocessor.Event;
+import com.advicetec.eventprocessor.EventType;
+import com.advicetec.eventprocessor.TestEvent;
+import com.advicetec.measuredentitity.MeasuredEntityType;
+
+public class TimingWheelTest
+{
+	private static final long START = 1502560800000L;
+
+	/**
+	 * Timing wheel with a clock moved by the test.
+	 */
+	private static class ManualWheel extends TimingWheel
+	{
+		long clock;
+
+		ManualWheel(long clock, long tick, boolean phaseSpreading) {
+			super(tick, phaseSpreading);
+			this.clock = clock;
+		}
+
+		@Override
+		protected long now() {
+			return clock;
+		}
+	}
+
+	private static ManualWheel wheel(boolean phaseSpreading) {
+		ManualWheel wheel = new ManualWheel(START, 10, phaseSpreading);
+		wheel.clock = START;
+		return wheel;
+	}
+
+	private static DelayEvent event(int id, long time, long period) {
+		TestEvent event = new TestEvent(id);
+		if (period > 0) {
+			event.setRepeated(true);
+			event.setMilliseconds(period);
+		}
+		DelayEvent delayEvent = new DelayEvent(event, 0);
+		delayEvent.startTime = time;
+		return delayEvent;
+	}
+
+	@Test
+	public void ExpiryTest() {
+		ManualWheel wheel = wheel(false);
+		long[] delays = { 5, 700, 70000, 5 * 3600000L, 200L * 24 * 3600000L, 5 };
+		for (int i = 0; i < delays.length; i++) {
+			wheel.put(event(i, START + delays[i], 0));
+		}
+		assertEquals(delays.length, wheel.size());
+		assertNull(wheel.poll());
+
+		// the events are never taken before their time.
+		for (int i = 0; i < delays.length - 1; i++) {
+			wheel.clock = START + delays[i] - 1;
+			assertNull(wheel.poll());
+			wheel.clock = START + delays[i] + 10;
+			List<DelayEvent> expired = new ArrayList<DelayEvent>();
+			wheel.drainTo(expired);
+			if (i == 0) {
+				assertEquals(2, expired.size());
+			} else {
+				assertEquals(1, expired.size());
+				assertEquals(START + delays[i], expired.get(0).getStartTime());
+			}
+		}
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void CancelTest() {
+		ManualWheel wheel = wheel(false);
+		for (int i = 0; i < 100; i++) {
+			wheel.put(event(i, START + 1000 + i, 0));
+		}
+		wheel.put(event(7, START + 5000, 0));
+
+		assertTrue(wheel.contains(event(7, 0, 0)));
+		assertTrue(wheel.cancel(new TestEvent(7).getKey()));
+		assertFalse(wheel.contains(event(7, 0, 0)));
+		assertEquals(99, wheel.size());
+
+		assertTrue(wheel.remove(event(8, 0, 0)));
+		assertFalse(wheel.remove(event(8, 0, 0)));
+		assertTrue(wheel.removeIf(evt -> ((TestEvent) evt.getEvent()).getTestId() >= 50));
+		assertEquals(48, wheel.size());
+
+		wheel.clock = START + 6000;
+		List<DelayEvent> expired = new ArrayList<DelayEvent>();
+		wheel.drainTo(expired);
+		assertEquals(48, expired.size());
+		for (DelayEvent delayEvent : expired) {
+			int id = ((TestEvent) delayEvent.getEvent()).getTestId();
+			assertTrue((id < 50) && (id != 7) && (id != 8));
+		}
+	}
+
+	private static DelayEvent entityEvent(final int entity, int id, long time, long period) {
+		Event event = new Event(EventType.TEST, "entity-" + entity + "-" + id) {
+			@Override
+			public Integer getEntity() {
+				return entity;
+			}
+
+			@Override
+			public MeasuredEntityType getOwnerType() {
+				return MeasuredEntityType.MACHINE;
+			}
+		};
+		event.setRepeated(true);
+		event.setMilliseconds(period);
+		DelayEvent delayEvent = new DelayEvent(event, 0);
+		delayEvent.startTime = time;
+		return delayEvent;
+	}
+
+	@Test
+	public void EntityCancelTest() {
+		ManualWheel wheel = wheel(true);
+		for (int id = 0; id < 5; id++) {
+			wheel.put(entityEvent(1, id, START, 1000));
+			wheel.put(entityEvent(2, id, START, 1000));
+		}
+
+		// an event of the entity is being handled, its key has no events but keeps its phase.
+		wheel.clock = START + 1000;
+		List<DelayEvent> expired = new ArrayList<DelayEvent>();
+		wheel.drainTo(expired);
+		assertEquals(10, expired.size());
+		for (DelayEvent delayEvent : expired) {
+			if (!delayEvent.getKey().equals("entity-1-0")) {
+				wheel.put(entityEvent(delayEvent.getEvent().getEntity(), Integer.parseInt(delayEvent.getKey().substring(9)),
+						delayEvent.getStartTime() + 1000, 1000));
+			}
+		}
+		assertEquals(9, wheel.size());
+
+		assertEquals(5, wheel.cancelEntity(1, MeasuredEntityType.MACHINE));
+		assertEquals(0, wheel.cancelEntity(1, MeasuredEntityType.MACHINE));
+		assertEquals(0, wheel.cancelEntity(2, MeasuredEntityType.JOB));
+		assertEquals(5, wheel.size());
+		for (DelayEvent delayEvent : wheel) {
+			assertEquals(2, delayEvent.getEvent().getEntity().intValue());
+		}
+
+		// the keys of the entity cancelled are aligned again, even the one that was being handled.
+		long time = START + 5000;
+		for (int id = 0; id < 2; id++) {
+			DelayEvent delayEvent = entityEvent(1, id, time, 1000);
+			wheel.put(delayEvent);
+			long phase = Math.floorMod(delayEvent.getKey().hashCode() * 0x9E3779B97F4A7C15L, 1000);
+			assertEquals(time + Math.floorMod(phase - time, 1000), delayEvent.getStartTime());
+		}
+	}
+
+	@Test
+	public void PhaseTest() {
+		ManualWheel wheel = wheel(true);
+		for (int i = 0; i < 200; i++) {
+			wheel.put(event(i, START, 1000));
+		}
+
+		// the polls requested at the same time are spread over their period.
+		Set<Long> ticks = new HashSet<Long>();
+		for (DelayEvent delayEvent : wheel) {
+			assertTrue(delayEvent.getStartTime() >= START);
+			assertTrue(delayEvent.getStartTime() < START + 1000);
+			ticks.add(delayEvent.getStartTime() / 10);
+		}
+		assertTrue(ticks.size() > 50);
+
+		// the repeated polls are not aligned again, they keep the place of their first expiration.
+		wheel.clock = START + 1000;
+		List<DelayEvent> expired = new ArrayList<DelayEvent>();
+		wheel.drainTo(expired);
+		assertEquals(200, expired.size());
+		Map<String, Long> requested = new HashMap<String, Long>();
+		for (DelayEvent delayEvent : expired) {
+			long next = delayEvent.getStartTime() + 150 + 1000;
+			requested.put(delayEvent.getKey(), next);
+			wheel.put(event(((TestEvent) delayEvent.getEvent()).getTestId(), next, 1000));
+		}
+		for (DelayEvent scheduled : wheel) {
+			assertEquals(requested.get(scheduled.getKey()).longValue(), scheduled.getStartTime());
+		}
+
+		// no poll fires before the time requested.
+		int fired = 0;
+		for (long clock = START + 1000; clock <= START + 2200; clock += 10) {
+			wheel.clock = clock;
+			expired.clear();
+			wheel.drainTo(expired);
+			for (DelayEvent delayEvent : expired) {
+				assertTrue(clock >= requested.get(delayEvent.getKey()));
+				fired++;
+			}
+		}
+		assertEquals(200, fired);
+
+		// a key cancelled is aligned again when it is scheduled.
+		wheel.put(event(3, START + 5000, 1000));
+		assertTrue(wheel.cancel(new TestEvent(3).getKey()));
+		wheel.put(event(3, START + 5000, 1000));
+		long aligned = wheel.peek().getStartTime();
+		assertTrue(aligned >= START + 5000);
+		assertTrue(aligned < START + 6000);
+	}
+}
@@ -0,0 +1,64 @@
+package com.advicetec.aggregation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.advicetec.aggregation.oee.OEEIncrementalAggregator;
+import com.advicetec.aggregation.oee.OverallEquipmentEffectiveness;
+import com.advicetec.core.TimeInterval;
+import com.advicetec.measuredentitity.MeasuredEntityType;
+import com.advicetec.measuredentitity.MeasuringState;
+import com.advicetec.measuredentitity.StateInterval;
+import com.advicetec.utils.PredefinedPeriod;
+
+public class OEEIncrementalAggregatorTest
+{
+	private static final LocalDateTime START = LocalDateTime.of(2017, 8, 12, 10, 0, 30);
+
+	private StateInterval interval(MeasuringState state, LocalDateTime from, LocalDateTime to, double qtyDefective) {
+		return new StateInterval(state, null, new TimeInterval(from, to), 1, MeasuredEntityType.MACHINE,
+				0, 0, "", 60.0, 1.0, 1.0, 30.0, qtyDefective);
+	}
+
+	@Test
+	public void PeriodTest() {
+		List<OverallEquipmentEffectiveness> written = new ArrayList<OverallEquipmentEffectiveness>();
+		OEEIncrementalAggregator aggregator = new OEEIncrementalAggregator(Duration.ofMinutes(180),
+				Duration.ofHours(48), Duration.ofDays(7), 50, written::addAll);
+
+		aggregator.register(interval(MeasuringState.OPERATING, START, START.plusSeconds(90), 0));
+		aggregator.register(interval(MeasuringState.OPERATING, START.plusSeconds(90), LocalDateTime.of(2017, 8, 12, 11, 30), 8.8));
+		aggregator.register(interval(MeasuringState.UNSCHEDULEDOWN, LocalDateTime.of(2017, 8, 12, 11, 30), LocalDateTime.of(2017, 8, 12, 11, 40), 0));
+
+		// the periods that started before the first interval are not in memory.
+		assertNull(aggregator.getPeriodOEE(1, MeasuredEntityType.MACHINE, new PredefinedPeriod(2017, 8, 12, 10, 0)));
+		assertNull(aggregator.getPeriodOEE(1, MeasuredEntityType.MACHINE, new PredefinedPeriod(2017, 8, 12, 10)));
+		assertNull(aggregator.getPeriodOEE(2, MeasuredEntityType.MACHINE, new PredefinedPeriod(2017, 8, 12, 11)));
+
+		OverallEquipmentEffectiveness minute = aggregator.getPeriodOEE(1, MeasuredEntityType.MACHINE, new PredefinedPeriod(2017, 8, 12, 10, 1));
+		assertEquals(60, minute.getProductiveTime(), 0.0001);
+		assertEquals(60, minute.getQtySchedToProduce(), 0.0001);
+		assertEquals(30, minute.getQtyProduced(), 0.0001);
+
+		OverallEquipmentEffectiveness hour = aggregator.getPeriodOEE(1, MeasuredEntityType.MACHINE, new PredefinedPeriod(2017, 8, 12, 11));
+		assertEquals(1800, hour.getProductiveTime(), 0.0001);
+		assertEquals(1800, hour.getQtySchedToProduce(), 0.0001);
+		assertEquals(8.8 * 30 / 88, hour.getQtyDefective(), 0.0001);
+
+		OverallEquipmentEffectiveness lessThanHour = aggregator.getPeriodOEE(1, MeasuredEntityType.MACHINE,
+				new PredefinedPeriod(LocalDateTime.of(2017, 8, 12, 10, 10), LocalDateTime.of(2017, 8, 12, 10, 20)));
+		assertEquals(600, lessThanHour.getProductiveTime(), 0.0001);
+
+		// the minutes up to the end of the last interval are complete, the hour is not.
+		assertEquals(99, aggregator.flush());
+		assertEquals(99, written.size());
+		assertEquals(0, aggregator.flush());
+	}
+}
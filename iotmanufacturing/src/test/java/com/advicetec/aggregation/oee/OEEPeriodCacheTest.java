@@ -0,0 +1,195 @@
+package com.advicetec.aggregation.oee;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import com.advicetec.aggregation.oee.OEERecalculator.SourceInterval;
+import com.advicetec.core.TimeInterval;
+import com.advicetec.measuredentitity.MeasuredEntityType;
+import com.advicetec.measuredentitity.MeasuringState;
+import com.advicetec.measuredentitity.StateInterval;
+import com.advicetec.persistence.JdbcStandIn;
+import com.advicetec.utils.PredefinedPeriod;
+
+public class OEEPeriodCacheTest
+{
+	private static final String[] COLUMNS = { "id_owner", "owner_type", "period_key", "productive_time",
+											"qty_sched_to_produce", "qty_produced", "qty_defective" };
+
+	/**
+	 * Container whose connections are given by the stand-in of the measuringentityoee table.
+	 */
+	private static class StandInContainer extends OEEAggregationContainer
+	{
+		final JdbcStandIn database = new JdbcStandIn(3);
+
+		StandInContainer() {
+			super("org.postgresql.Driver", "jdbc:postgresql://localhost/none", "none", "none", 1, 1);
+			// selects the rows of the owner between the keys given whose trimmed key matches the pattern.
+			database.setQuery(OverallEquipmentEffectiveness.SQL_Range_Select, COLUMNS, parameters -> {
+				List<Object[]> ret = new ArrayList<Object[]>();
+				for (int i = 0; i < database.getRows(); i++) {
+					Object[] row = database.getRow(i);
+					String key = (String) row[2];
+					if (row[0].equals(parameters[0]) && row[1].equals(parameters[1])
+							&& (key.compareTo((String) parameters[2]) >= 0) && (key.compareTo((String) parameters[3]) <= 0)
+							&& like(key.trim(), (String) parameters[4])) {
+						ret.add(row);
+					}
+				}
+				return ret;
+			});
+		}
+
+		@Override
+		public synchronized Connection getConnection() throws SQLException {
+			return database.getConnection();
+		}
+	}
+
+	private static boolean like(String value, String pattern) {
+		StringBuilder regex = new StringBuilder();
+		for (char c : pattern.toCharArray()) {
+			if (c == '_') {
+				regex.append('.');
+			} else if (c == '%') {
+				regex.append(".*");
+			} else {
+				regex.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+		return value.matches(regex.toString());
+	}
+
+	private static OverallEquipmentEffectiveness oee(PredefinedPeriod period, double productiveTime) {
+		OverallEquipmentEffectiveness oee = new OverallEquipmentEffectiveness(period, 1, MeasuredEntityType.MACHINE);
+		oee.setProductiveTime(productiveTime);
+		oee.setQtySchedToProduce(productiveTime);
+		oee.setQtyProduced(productiveTime / 2);
+		oee.setQtyDefective(0);
+		return oee;
+	}
+
+	private static StandInContainer container() {
+		StandInContainer container = new StandInContainer();
+		container.setPeriodCache(new OEEPeriodCache(100));
+		container.dbReplace(Arrays.asList(
+				oee(new PredefinedPeriod(2017, 8, 10), 100),
+				oee(new PredefinedPeriod(2017, 8, 11), 200),
+				oee(new PredefinedPeriod(2017, 8, 10, 23), 10),
+				oee(new PredefinedPeriod(2017, 8, 11, 5), 20),
+				oee(new PredefinedPeriod(2017, 8), 300)));
+		return container;
+	}
+
+	@Test
+	public void MixedPeriodsTest() {
+		StandInContainer container = container();
+
+		List<PredefinedPeriod> periods = Arrays.asList(new PredefinedPeriod(2017, 8, 10), new PredefinedPeriod(2017, 8, 11),
+				new PredefinedPeriod(2017, 8, 11, 5), new PredefinedPeriod(2017, 8, 11, 6));
+		Map<String, OverallEquipmentEffectiveness> oees = container.getPeriodOEEs(1, MeasuredEntityType.MACHINE, periods);
+
+		// one query by period type, the hour between the days is not taken as a day.
+		assertEquals(2, container.database.getQueries());
+		assertEquals(3, oees.size());
+		assertEquals(100, oees.get("2017-08-10").getProductiveTime(), 0.0001);
+		assertEquals(200, oees.get("2017-08-11").getProductiveTime(), 0.0001);
+		assertEquals(20, oees.get("2017-08-11-05").getProductiveTime(), 0.0001);
+		assertNull(oees.get("2017-08-11-06"));
+		assertNull(oees.get("2017-08-10-23"));
+	}
+
+	@Test
+	public void CacheHitTest() {
+		StandInContainer container = container();
+		List<PredefinedPeriod> periods = Arrays.asList(new PredefinedPeriod(2017, 8, 10), new PredefinedPeriod(2017, 8, 11, 5));
+
+		container.getPeriodOEEs(1, MeasuredEntityType.MACHINE, periods);
+		assertEquals(2, container.database.getQueries());
+
+		// the closed periods are answered by the cache.
+		Map<String, OverallEquipmentEffectiveness> oees = container.getPeriodOEEs(1, MeasuredEntityType.MACHINE, periods);
+		assertEquals(2, container.database.getQueries());
+		assertEquals(100, oees.get("2017-08-10").getProductiveTime(), 0.0001);
+		assertEquals(20, oees.get("2017-08-11-05").getProductiveTime(), 0.0001);
+
+		// the aggregations returned are copies.
+		oees.get("2017-08-10").setProductiveTime(0);
+		assertEquals(100, container.getPeriodOEEs(1, MeasuredEntityType.MACHINE, periods).get("2017-08-10").getProductiveTime(), 0.0001);
+	}
+
+	@Test
+	public void ReplaceTest() {
+		StandInContainer container = container();
+		List<PredefinedPeriod> periods = Arrays.asList(new PredefinedPeriod(2017, 8, 10), new PredefinedPeriod(2017, 8, 11));
+		container.getPeriodOEEs(1, MeasuredEntityType.MACHINE, periods);
+
+		container.dbReplace(Arrays.asList(oee(new PredefinedPeriod(2017, 8, 10), 150)));
+		assertEquals(5, container.database.getRows());
+
+		// the period replaced is read again, the other is still in the cache.
+		int queries = container.database.getQueries();
+		Map<String, OverallEquipmentEffectiveness> oees = container.getPeriodOEEs(1, MeasuredEntityType.MACHINE, periods);
+		assertEquals(queries + 1, container.database.getQueries());
+		assertEquals(150, oees.get("2017-08-10").getProductiveTime(), 0.0001);
+		assertEquals(200, oees.get("2017-08-11").getProductiveTime(), 0.0001);
+	}
+
+	private static StateInterval interval(LocalDateTime from, LocalDateTime to) {
+		return new StateInterval(MeasuringState.OPERATING, null, new TimeInterval(from, to), 1, MeasuredEntityType.MACHINE,
+				0, 0, "", 60.0, 1.0, 1.0, 30.0, 0.0);
+	}
+
+	@Test
+	public void RecalculationTest() {
+		StandInContainer container = new StandInContainer();
+		List<OverallEquipmentEffectiveness> written = new ArrayList<OverallEquipmentEffectiveness>();
+		OEEIncrementalAggregator aggregator = new OEEIncrementalAggregator(Duration.ofMinutes(180),
+				Duration.ofHours(48), Duration.ofDays(7), 50, written::addAll);
+		aggregator.register(interval(LocalDateTime.of(2017, 8, 12, 10, 0, 30), LocalDateTime.of(2017, 8, 12, 12, 0)));
+		PredefinedPeriod hour = new PredefinedPeriod(2017, 8, 12, 11);
+		assertEquals(3600, aggregator.getPeriodOEE(1, MeasuredEntityType.MACHINE, hour).getProductiveTime(), 0.0001);
+
+		// the hour is recalculated from a single interval of thirty minutes.
+		OEERecalculator recalculator = new OEERecalculator(container, 2) {
+			@Override
+			List<SourceInterval> readIntervals(Integer owner, MeasuredEntityType ownerType, LocalDateTime from, LocalDateTime to) {
+				return Arrays.asList(new SourceInterval(LocalDateTime.of(2017, 8, 12, 11, 0), LocalDateTime.of(2017, 8, 12, 11, 30),
+						true, 60, 30, 0));
+			}
+		};
+		recalculator.setIncrementalAggregator(aggregator);
+		assertEquals(61, recalculator.recalculate(1, MeasuredEntityType.MACHINE, LocalDateTime.of(2017, 8, 12, 11, 0),
+				LocalDateTime.of(2017, 8, 12, 11, 59, 59, 999000000), "H"));
+
+		// the hour and its minutes are answered by the database.
+		assertNull(aggregator.getPeriodOEE(1, MeasuredEntityType.MACHINE, hour));
+		assertNull(aggregator.getPeriodOEE(1, MeasuredEntityType.MACHINE, new PredefinedPeriod(2017, 8, 12, 11, 10)));
+		assertNull(aggregator.getPeriodOEE(1, MeasuredEntityType.MACHINE,
+				new PredefinedPeriod(LocalDateTime.of(2017, 8, 12, 10, 50), LocalDateTime.of(2017, 8, 12, 11, 10))));
+		assertEquals(60, aggregator.getPeriodOEE(1, MeasuredEntityType.MACHINE, new PredefinedPeriod(2017, 8, 12, 10, 59)).getProductiveTime(), 0.0001);
+		assertEquals(1800, container.getPeriodOEEs(1, MeasuredEntityType.MACHINE, Arrays.asList(hour)).get(hour.getKey()).getProductiveTime(), 0.0001);
+
+		// the intervals registered later are ignored, and the invalid buckets are not written.
+		aggregator.register(interval(LocalDateTime.of(2017, 8, 12, 12, 0), LocalDateTime.of(2017, 8, 12, 12, 30)));
+		assertNull(aggregator.getPeriodOEE(1, MeasuredEntityType.MACHINE, hour));
+		aggregator.flush();
+		for (OverallEquipmentEffectiveness oee : written) {
+			assertEquals(false, oee.getPredefinedPeriod().getKey().startsWith("2017-08-12-11"));
+		}
+		assertEquals(59 + 30, written.size());
+	}
+}
@@ -0,0 +1,93 @@
+package com.advicetec.aggregation.oee;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.advicetec.aggregation.oee.OEERecalculator.DaySums;
+import com.advicetec.aggregation.oee.OEERecalculator.SourceInterval;
+import com.advicetec.measuredentitity.MeasuredEntityType;
+
+public class OEERecalculatorTest
+{
+	private static final LocalDateTime DAY = LocalDateTime.of(2017, 8, 12, 0, 0);
+
+	@Test
+	public void SpanTest() {
+		LocalDateTime[] span = OEERecalculator.getSpan(DAY, LocalDateTime.of(2017, 8, 12, 23, 59, 59, 999000000), "D");
+		assertEquals(DAY, span[0]);
+		assertEquals(DAY.plusDays(1), span[1]);
+
+		// the last hour is not complete, it is not in the predefined periods.
+		span = OEERecalculator.getSpan(DAY.plusHours(10), DAY.plusHours(12).minusNanos(1000000), "H");
+		assertEquals(DAY.plusHours(10), span[0]);
+		assertEquals(DAY.plusHours(11), span[1]);
+
+		assertNull(OEERecalculator.getSpan(DAY, DAY.minusDays(1), "D"));
+	}
+
+	@Test
+	public void DayTest() {
+		List<SourceInterval> intervals = new ArrayList<SourceInterval>();
+		// starts the day before, it is productive for ninety seconds of the day.
+		intervals.add(new SourceInterval(DAY.minusMinutes(1), DAY.plusSeconds(90), true, 60, 30, 5));
+		intervals.add(new SourceInterval(DAY.plusSeconds(90), DAY.plusHours(2), false, 60, 30, 0));
+		intervals.add(new SourceInterval(DAY.plusHours(2), DAY.plusHours(3).plusMinutes(30), true, 60, 30, 0));
+
+		DaySums sums = OEERecalculator.sumDay(DAY, intervals);
+		assertEquals(60, sums.minutes[0][0], 0.0001);
+		assertEquals(30, sums.minutes[0][1], 0.0001);
+		assertEquals(0, sums.minutes[0][2], 0.0001);
+		assertEquals(15, sums.minutes[2][1], 0.0001);
+		// the defective quantity is prorated over the duration of the interval.
+		assertEquals(5.0 * 90 / 150, sums.hours[3][0], 0.0001);
+
+		assertEquals(90, sums.hours[0][0], 0.0001);
+		assertEquals(3600, sums.hours[0][2], 0.0001);
+		assertEquals(1800, sums.hours[0][3], 0.0001);
+		assertEquals(5490, sums.total[0], 0.0001);
+		assertEquals(5490, sums.total[1], 0.0001);
+		assertEquals(2745, sums.total[2], 0.0001);
+	}
+
+	/**
+	 * Container whose connections can not be obtained, it records the aggregations replaced.
+	 */
+	private static class FailingContainer extends OEEAggregationContainer
+	{
+		final List<OverallEquipmentEffectiveness> replaced = new ArrayList<OverallEquipmentEffectiveness>();
+
+		FailingContainer() {
+			super("org.postgresql.Driver", "jdbc:postgresql://localhost/none", "none", "none", 1, 1);
+		}
+
+		@Override
+		public synchronized Connection getConnection() throws SQLException {
+			throw new SQLException("database not available");
+		}
+
+		@Override
+		public int dbReplace(List<OverallEquipmentEffectiveness> list) {
+			replaced.addAll(list);
+			return list.size();
+		}
+	}
+
+	@Test
+	public void ReadFailureTest() {
+		FailingContainer container = new FailingContainer();
+		OEERecalculator recalculator = new OEERecalculator(container, 2);
+
+		// the stored aggregations are not replaced with the empty sums of the range.
+		assertEquals(0, recalculator.recalculate(1, MeasuredEntityType.MACHINE, DAY, DAY.plusDays(2).minusNanos(1000000), "D"));
+		assertTrue(container.replaced.isEmpty());
+	}
+}
@@ -0,0 +1,106 @@
+package com.advicetec.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class AttributeSeriesTest
+{
+	private static final LocalDateTime START = LocalDateTime.of(2017, 8, 12, 18, 0, 0, 125000000);
+
+	private List<Object> values(AttributeSeries series, LocalDateTime from, LocalDateTime to) {
+		List<Object> values = new ArrayList<Object>();
+		series.forEach(from, to, (timeStamp, value) -> values.add(value));
+		return values;
+	}
+
+	@Test
+	public void IntervalTest() {
+		AttributeSeries series = new AttributeSeries(new Attribute("speed", AttributeType.DOUBLE), 16);
+		for (int i = 0; i < 100; i++) {
+			series.add(START.plusSeconds(i), new Double(i));
+		}
+		assertEquals(100, series.size());
+
+		// the interval includes the start and excludes the end, across chunks.
+		List<Object> values = values(series, START.plusSeconds(10), START.plusSeconds(40));
+		assertEquals(30, values.size());
+		assertEquals(new Double(10), values.get(0));
+		assertEquals(new Double(39), values.get(29));
+
+		List<LocalDateTime> times = new ArrayList<LocalDateTime>();
+		series.forEach(START.minusDays(1), START.plusSeconds(1), (timeStamp, value) -> times.add(timeStamp));
+		assertEquals(1, times.size());
+		assertEquals(START, times.get(0));
+
+		List<Object> last = new ArrayList<Object>();
+		series.forEachLast(3, (timeStamp, value) -> last.add(value));
+		assertEquals(3, last.size());
+		assertEquals(new Double(97), last.get(0));
+		assertEquals(new Double(99), last.get(2));
+	}
+
+	@Test
+	public void RemoveBeforeTest() {
+		AttributeSeries series = new AttributeSeries(new Attribute("counter", AttributeType.INT), 16);
+		for (int i = 0; i < 64; i++) {
+			series.add(START.plusSeconds(i), new Integer(i));
+		}
+		// only whole chunks of 16 values are removed.
+		series.removeBefore(START.plusSeconds(40));
+		assertEquals(32, series.size());
+		assertEquals(new Integer(40), values(series, START.plusSeconds(40), START.plusSeconds(41)).get(0));
+	}
+
+	@Test
+	public void OutOfOrderTest() {
+		AttributeSeries series = new AttributeSeries(new Attribute("counter", AttributeType.INT), 16);
+		for (int i = 0; i < 40; i++) {
+			series.add(START.plusSeconds(2 * i), new Integer(i));
+		}
+		// the clock goes back, and a value repeats the datetime of the last one.
+		series.add(START.plusSeconds(3), new Integer(-1));
+		series.add(START.plusSeconds(78), new Integer(-2));
+		series.add(START.plusSeconds(80), new Integer(40));
+
+		assertEquals(42, series.size());
+		List<Object> values = values(series, START, START.plusSeconds(6));
+		assertEquals(4, values.size());
+		assertEquals(new Integer(-1), values.get(2));
+		assertEquals(new Integer(-2), values(series, START.plusSeconds(78), START.plusSeconds(79)).get(0));
+	}
+
+	@Test
+	public void ValueTypesTest() {
+		AttributeSeries strings = new AttributeSeries(new Attribute("order", AttributeType.STRING));
+		strings.add(START, "A-100");
+		strings.add(START.plusSeconds(1), "A-200");
+		strings.add(START.plusSeconds(2), "A-100");
+		strings.add(START.plusSeconds(3), null);
+		List<Object> values = values(strings, START, START.plusSeconds(4));
+		assertEquals("A-100", values.get(0));
+		assertEquals("A-200", values.get(1));
+		assertEquals("A-100", values.get(2));
+		assertNull(values.get(3));
+
+		// a value of other class is kept as it was given.
+		AttributeSeries doubles = new AttributeSeries(new Attribute("speed", AttributeType.DOUBLE));
+		doubles.add(START, new Integer(7));
+		doubles.add(START.plusSeconds(1), new Double(7.5));
+		values = values(doubles, START, START.plusSeconds(2));
+		assertEquals(new Integer(7), values.get(0));
+		assertEquals(new Double(7.5), values.get(1));
+
+		AttributeSeries booleans = new AttributeSeries(new Attribute("running", AttributeType.BOOLEAN));
+		booleans.add(START, Boolean.TRUE);
+		booleans.add(START.plusSeconds(1), Boolean.FALSE);
+		values = values(booleans, START, START.plusSeconds(2));
+		assertEquals(Boolean.TRUE, values.get(0));
+		assertEquals(Boolean.FALSE, values.get(1));
+	}
+}
@@ -0,0 +1,48 @@
+package com.advicetec.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+
+public class IntervalCounterTest
+{
+	private static final LocalDateTime START = LocalDateTime.of(2017, 8, 12, 18, 0, 0);
+
+	@Test
+	public void SumTest() {
+		IntervalCounter counter = new IntervalCounter("count", START);
+		counter.add(START.minusSeconds(1), new Integer(100));
+		counter.add(START, new Integer(2));
+		counter.add(START.plusSeconds(1), new Double(1.5));
+		assertEquals(2, counter.getCount());
+		assertEquals(3.5, counter.getSum(), 0.0001);
+
+		// the sum stops at the first value that is not a number.
+		counter.add(START.plusSeconds(2), "ten");
+		counter.add(START.plusSeconds(3), new Integer(10));
+		assertNull(counter.getSum());
+	}
+
+	@Test
+	public void SeedTest() {
+		AttributeSeries series = new AttributeSeries(new Attribute("count", AttributeType.INT));
+		for (int i = 0; i < 10; i++) {
+			series.add(START.plusSeconds(i), new Integer(1));
+		}
+
+		// the last value is set in the facade before the counter takes the values of the series.
+		IntervalCounter counter = new IntervalCounter("count", START.plusSeconds(3));
+		counter.add(START.plusSeconds(9), new Integer(1));
+		counter.seed(series);
+		assertEquals(7, counter.getSum(), 0.0001);
+
+		counter = new IntervalCounter("count", START.plusSeconds(3));
+		counter.seed(series);
+		counter.add(START.plusSeconds(9), new Integer(1));
+		counter.add(START.plusSeconds(10), new Integer(1));
+		assertEquals(8, counter.getSum(), 0.0001);
+	}
+}
@@ -0,0 +1,88 @@
+package com.advicetec.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TrendBucketsTest
+{
+	private static final LocalDateTime START = LocalDateTime.of(2017, 8, 12, 18, 0, 0);
+
+	@Test
+	public void BucketTest() {
+		TrendBuckets buckets = new TrendBuckets(START, START.plusMinutes(10), 5);
+		assertEquals(5, buckets.size());
+		assertEquals(120000, buckets.getWidth());
+
+		// the values arrive out of order, as they come from the database.
+		for (int i = 599; i >= 0; i--) {
+			buckets.add(START.plusSeconds(i), new Integer(i));
+		}
+		buckets.add(START.plusMinutes(10), new Integer(1000));
+		buckets.add(START.plusSeconds(5), "text");
+		assertEquals(120, buckets.getCount(0));
+		assertEquals(0, buckets.getMin(0), 0.0001);
+		assertEquals(119, buckets.getMax(0), 0.0001);
+		assertEquals(59.5, buckets.getAverage(0), 0.0001);
+		assertEquals(119, buckets.getLast(0), 0.0001);
+		assertEquals(START.plusMinutes(8), buckets.getStart(4));
+		assertEquals(599, buckets.getLast(4), 0.0001);
+
+		// the aggregates of the database are merged with the values of the series.
+		buckets.merge(4, 10, -1, 2, 5, 2, START.plusMinutes(9));
+		assertEquals(130, buckets.getCount(4));
+		assertEquals(-1, buckets.getMin(4), 0.0001);
+		assertEquals(599, buckets.getLast(4), 0.0001);
+	}
+
+	@Test
+	public void MergeAllTest() {
+		TrendBuckets buckets = new TrendBuckets(START, START.plusMinutes(10), 5);
+		buckets.add(START.plusSeconds(10), new Integer(4));
+
+		// the rows are aggregated apart and only merged when all of them are read.
+		TrendBuckets rows = buckets.emptyCopy();
+		assertEquals(5, rows.size());
+		assertEquals(buckets.getWidth(), rows.getWidth());
+		rows.merge(0, 2, 1, 3, 4, 3, START.plusSeconds(5));
+		rows.merge(3, 1, 7, 7, 7, 7, START.plusMinutes(7));
+		assertEquals(1, buckets.getCount(0));
+		assertEquals(0, buckets.getCount(3));
+
+		buckets.mergeAll(rows);
+		assertEquals(3, buckets.getCount(0));
+		assertEquals(1, buckets.getMin(0), 0.0001);
+		assertEquals(4, buckets.getMax(0), 0.0001);
+		assertEquals(4, buckets.getLast(0), 0.0001);
+		assertEquals(1, buckets.getCount(3));
+		assertEquals(7, buckets.getAverage(3), 0.0001);
+		assertEquals(0, buckets.getCount(1));
+	}
+
+	@Test
+	public void LargestTriangleTest() {
+		LargestTriangleThreeBuckets lttb = new LargestTriangleThreeBuckets();
+		for (int i = 99; i >= 0; i--) {
+			lttb.add(START.plusSeconds(i), new Double((i == 50) ? 100 : 0));
+		}
+		List<Double> values = new ArrayList<Double>();
+		List<LocalDateTime> times = new ArrayList<LocalDateTime>();
+		lttb.select(10, (time, value) -> {
+			times.add(time);
+			values.add(value);
+		});
+
+		// the first and last points and the peak are kept.
+		assertEquals(10, values.size());
+		assertEquals(START, times.get(0));
+		assertEquals(START.plusSeconds(99), times.get(9));
+		assertEquals(true, values.contains(100.0));
+		for (int i = 1; i < times.size(); i++) {
+			assertEquals(true, times.get(i - 1).isBefore(times.get(i)));
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.advicetec.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+
+public class WindowAggregateTest
+{
+	private static final LocalDateTime START = LocalDateTime.of(2017, 8, 12, 18, 0, 0);
+
+	@Test
+	public void SlidingTest() {
+		WindowAggregate aggregate = new WindowAggregate(new Attribute("speed", AttributeType.DOUBLE), Duration.ofSeconds(10));
+		double[] values = {5, 3, 8, 1, 4, 9, 2, 7, 6, 0, 3, 5};
+		for (int i = 0; i < values.length; i++) {
+			aggregate.add(START.plusSeconds(i), new Double(values[i]));
+		}
+
+		// the window [11, 21) only holds the last value.
+		LocalDateTime now = START.plusSeconds(21);
+		assertEquals(1, aggregate.getCount(now));
+		assertEquals(5, aggregate.getSum(now), 0.0001);
+		assertEquals(new Double(5), aggregate.getMax(now));
+
+		// the window is recalculated for every time, the same as the values of the interval.
+		aggregate = new WindowAggregate(new Attribute("speed", AttributeType.DOUBLE), Duration.ofSeconds(4));
+		for (int i = 0; i < values.length; i++) {
+			aggregate.add(START.plusSeconds(i), new Double(values[i]));
+			LocalDateTime end = START.plusSeconds(i + 1);
+			double sum = 0;
+			double max = Double.NEGATIVE_INFINITY;
+			double min = Double.POSITIVE_INFINITY;
+			int count = 0;
+			for (int j = Math.max(0, i - 3); j <= i; j++) {
+				sum += values[j];
+				max = Math.max(max, values[j]);
+				min = Math.min(min, values[j]);
+				count++;
+			}
+			assertEquals(count, aggregate.getCount(end));
+			assertEquals(sum, aggregate.getSum(end), 0.0001);
+			assertEquals(sum / count, aggregate.getAverage(end), 0.0001);
+			assertEquals(new Double(max), aggregate.getMax(end));
+			assertEquals(new Double(min), aggregate.getMin(end));
+			assertEquals(new Double(values[i]), aggregate.getLast(end));
+		}
+	}
+
+	@Test
+	public void EndOfWindowTest() {
+		WindowAggregate aggregate = new WindowAggregate(new Attribute("counter", AttributeType.INT), Duration.ofMinutes(1));
+		aggregate.add(START, new Integer(2));
+		aggregate.add(START.plusSeconds(30), new Integer(10));
+
+		// the value at the end of the window is excluded.
+		LocalDateTime now = START.plusSeconds(30);
+		assertEquals(1, aggregate.getCount(now));
+		assertEquals(2, aggregate.getSum(now), 0.0001);
+		assertEquals(new Integer(2), aggregate.getMax(now));
+		assertEquals(new Integer(2), aggregate.getLast(now));
+
+		// an older value is ignored.
+		aggregate.add(START.plusSeconds(10), new Integer(50));
+		assertEquals(2, aggregate.getCount(START.plusSeconds(31)));
+
+		assertEquals(0, aggregate.getCount(START.plusMinutes(5)));
+		assertEquals(0, aggregate.getSum(START.plusMinutes(5)), 0);
+		assertTrue(Double.isNaN(aggregate.getAverage(START.plusMinutes(5))));
+		assertNull(aggregate.getMax(START.plusMinutes(5)));
+		assertNull(aggregate.getLast(START.plusMinutes(5)));
+	}
+
+	@Test
+	public void CountTest() {
+		WindowAggregate booleans = new WindowAggregate(new Attribute("running", AttributeType.BOOLEAN), Duration.ofMinutes(1));
+		booleans.add(START, Boolean.TRUE);
+		booleans.add(START.plusSeconds(1), Boolean.FALSE);
+		booleans.add(START.plusSeconds(2), Boolean.TRUE);
+		assertEquals(3, booleans.getCount(START.plusSeconds(3)));
+		assertEquals(2, booleans.getSum(START.plusSeconds(3)), 0);
+
+		WindowAggregate strings = new WindowAggregate(new Attribute("order", AttributeType.STRING), Duration.ofMinutes(1));
+		strings.add(START, "A-200");
+		strings.add(START.plusSeconds(1), "A-100");
+		assertEquals(2, strings.getSum(START.plusSeconds(2)), 0);
+		assertEquals("A-200", strings.getMax(START.plusSeconds(2)));
+		assertEquals("A-100", strings.getMin(START.plusSeconds(2)));
+	}
+}
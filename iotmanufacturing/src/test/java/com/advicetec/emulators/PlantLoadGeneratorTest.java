@@ -0,0 +1,58 @@
+package com.advicetec.emulators;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+import org.junit.Test;
+
+public class PlantLoadGeneratorTest
+{
+	@Test
+	public void ModbusSlaveTest() throws IOException {
+		SimulatedMachine[] plant = PlantLoadGenerator.createPlant(2, 3, "SIM%04d", "P%02d");
+		assertEquals("SIM0002", plant[1].getDeviceId());
+		assertEquals("P03", plant[1].getPortLabel(2));
+		// two samples of the running machine: one cycle and the pulse off.
+		assertEquals(SimulatedMachine.PULSE_ON, plant[1].sample(1), 0.0);
+		assertEquals(SimulatedMachine.PULSE_OFF, plant[1].sample(1), 0.0);
+		assertEquals(SimulatedMachine.PULSE_ON, plant[1].sample(2), 0.0);
+
+		ModbusSlaveEmulator slave = new ModbusSlaveEmulator(plant, InetAddress.getLoopbackAddress(), 0);
+		try {
+			// holding registers of the second machine.
+			assertArrayEquals(new byte[] {0x03, 6, 0, 0, 0, 1, 0, 1}, slave.answer(2, new byte[] {0x03, 0, 0, 0, 3}));
+			// discrete inputs with flat addressing, the pulse of the signal 5.
+			assertArrayEquals(new byte[] {0x02, 1, 0x20}, slave.answer(0, new byte[] {0x02, 0, 0, 0, 6}));
+			assertArrayEquals(new byte[] {(byte) 0x83, 0x02}, slave.answer(1, new byte[] {0x03, 0, 2, 0, 2}));
+			assertArrayEquals(new byte[] {(byte) 0x83, 0x0B}, slave.answer(3, new byte[] {0x03, 0, 0, 0, 1}));
+			assertArrayEquals(new byte[] {(byte) 0x86, 0x01}, slave.answer(1, new byte[] {0x06, 0, 0, 0, 1}));
+		} finally {
+			slave.close();
+		}
+	}
+
+	@Test
+	public void MetricsQuantileTest() {
+		MetricsSnapshot before = MetricsSnapshot.parse(
+				"# TYPE iot_ingest_to_facade_seconds histogram\n"
+				+ "iot_ingest_to_facade_seconds_bucket{le=\"0.01\"} 0\n"
+				+ "iot_ingest_to_facade_seconds_bucket{le=\"0.1\"} 0\n"
+				+ "iot_ingest_to_facade_seconds_bucket{le=\"+Inf\"} 0\n"
+				+ "iot_samples_stored_total 100\n");
+		MetricsSnapshot after = MetricsSnapshot.parse(
+				"iot_ingest_to_facade_seconds_bucket{le=\"0.01\"} 50\n"
+				+ "iot_ingest_to_facade_seconds_bucket{le=\"0.1\"} 98\n"
+				+ "iot_ingest_to_facade_seconds_bucket{le=\"+Inf\"} 100\n"
+				+ "iot_samples_stored_total 200\n");
+		assertEquals(100.0, after.sum(PlantLoadGenerator.STORED) - before.sum(PlantLoadGenerator.STORED), 0.0);
+		assertEquals(0.01, after.quantile(before, PlantLoadGenerator.LATENCY, 0.5), 1e-9);
+		assertEquals(0.055, after.quantile(before, PlantLoadGenerator.LATENCY, 0.74), 1e-9);
+		// the rank falls in the +Inf bucket.
+		assertEquals(0.1, after.quantile(before, PlantLoadGenerator.LATENCY, 0.99), 1e-9);
+		assertTrue(Double.isNaN(before.quantile(before, PlantLoadGenerator.LATENCY, 0.99)));
+	}
+}
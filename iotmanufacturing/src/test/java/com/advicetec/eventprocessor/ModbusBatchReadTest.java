@@ -0,0 +1,148 @@
+package com.advicetec.eventprocessor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.advicetec.configuration.ModbusInputOutputPort;
+import com.advicetec.monitorAdapter.ModbusReading;
+import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
+
+public class ModbusBatchReadTest 
+{
+	private static final String IP_ADDRESS = "127.0.0.1";
+
+	private ModBusTcpEvent register(int id, int uid, int offset, int count, long milliseconds) {
+		return new ModBusTcpInputRegisterEvent(false, new ModbusInputOutputPort(id), IP_ADDRESS, 502, 
+												uid, offset, count, true, milliseconds);
+	}
+
+	@Test
+	public void GroupingTest() {
+		List<ModBusTcpEvent> events = new ArrayList<ModBusTcpEvent>();
+		events.add(register(1, 1, 2, 2, 1000));
+		events.add(register(2, 1, 0, 2, 1000));
+		events.add(register(3, 1, 4, 1, 1000));
+		events.add(register(4, 1, 10, 1, 1000));
+		events.add(register(5, 2, 0, 2, 1000));
+		ModBusTcpEvent other = register(6, 1, 5, 1, 2000);
+		events.add(other);
+		ModBusTcpEvent concentrator = new ModBusTcpInputRegisterEvent(true, null, IP_ADDRESS, 502, 1, 0, 40, true, 1000);
+		events.add(concentrator);
+
+		List<ModBusTcpEvent> grouped = ModBusTcpBatchReadEvent.group(events, 0);
+		assertEquals(3, grouped.size());
+		assertSame(concentrator, grouped.get(0));
+		assertSame(other, grouped.get(2));
+
+		ModBusTcpBatchReadEvent batch = (ModBusTcpBatchReadEvent) grouped.get(1);
+		assertEquals(ModBusTcpEventType.READ_BATCH, batch.getType());
+		assertEquals(1000, batch.getMilliseconds());
+		assertTrue(batch.isRepeated());
+
+		List<ModbusReadBlock> blocks = batch.getBlocks();
+		assertEquals(3, blocks.size());
+		assertEquals(0, blocks.get(0).getOffset());
+		assertEquals(5, blocks.get(0).getCount());
+		assertEquals(3, blocks.get(0).getEvents().size());
+		assertEquals(10, blocks.get(1).getOffset());
+		assertEquals(1, blocks.get(1).getCount());
+		assertEquals(Integer.valueOf(2), blocks.get(2).getUid());
+
+		// The key does not depend on the ports, so the event can be removed when the device changes.
+		assertEquals(batch.getKey(), ((ModBusTcpEvent) ModBusTcpBatchReadEvent.group(events, 0).get(1)).getKey());
+	}
+
+	@Test
+	public void MaxGapTest() {
+		List<ModBusTcpEvent> events = new ArrayList<ModBusTcpEvent>();
+		events.add(register(1, 1, 0, 4, 1000));
+		events.add(register(2, 1, 10, 2, 1000));
+		events.add(register(3, 1, 3, 2, 1000));
+
+		List<ModbusReadBlock> blocks = ModBusTcpBatchReadEvent.getBlocks(events, 0);
+		assertEquals(2, blocks.size());
+
+		blocks = ModBusTcpBatchReadEvent.getBlocks(events, 5);
+		assertEquals(1, blocks.size());
+		assertEquals(0, blocks.get(0).getOffset());
+		assertEquals(12, blocks.get(0).getCount());
+	}
+
+	@Test
+	public void ProtocolLimitTest() {
+		List<ModBusTcpEvent> events = new ArrayList<ModBusTcpEvent>();
+		events.add(register(1, 1, 0, 60, 1000));
+		events.add(register(2, 1, 60, 60, 1000));
+		events.add(register(3, 1, 120, 60, 1000));
+
+		List<ModbusReadBlock> blocks = ModBusTcpBatchReadEvent.getBlocks(events, 0);
+		assertEquals(2, blocks.size());
+		assertEquals(120, blocks.get(0).getCount());
+		assertEquals(120, blocks.get(1).getOffset());
+		assertEquals(60, blocks.get(1).getCount());
+	}
+
+	@Test
+	public void ReadRegisterBlockTest() throws Exception {
+		ModbusSlaveStandIn slave = new ModbusSlaveStandIn();
+		ModbusConnectionPool pool = new ModbusConnectionPool(4, 3000, 60000, 600000);
+		try {
+			List<ModBusTcpEvent> events = new ArrayList<ModBusTcpEvent>();
+			events.add(register(1, 1, 0, 2, 1000));
+			events.add(register(2, 1, 2, 2, 1000));
+			events.add(register(3, 1, 4, 1, 1000));
+			List<ModbusReadBlock> blocks = ModBusTcpBatchReadEvent.getBlocks(events, 0);
+			assertEquals(1, blocks.size());
+
+			TCPMasterConnection con = pool.getConnection(slave.getIpAddress(), slave.getPort());
+			List<ModbusReading> reads = ModBusTcpBatchProcessor.readBlock(con, slave.getIpAddress(), slave.getPort(), blocks.get(0));
+			pool.releaseConnection(con);
+
+			// The three ports were read with one request.
+			assertEquals(1, slave.getRequests());
+			assertEquals(3, reads.size());
+
+			assertEquals(2, reads.get(1).getOffset());
+			assertEquals(2, reads.get(1).getCount());
+			assertEquals(false, reads.get(1).isConcentrator());
+			assertSame(events.get(1).getInputOutputPort(), reads.get(1).getInputOutputPort());
+			assertEquals(ModBusTcpEventType.READ_REGISTER, reads.get(1).getType());
+			assertArrayEquals(new byte[] {4, 0, 102, 0, 103}, reads.get(1).getData());
+			assertArrayEquals(new byte[] {2, 0, 104}, reads.get(2).getData());
+		} finally {
+			pool.close();
+			slave.close();
+		}
+	}
+
+	@Test
+	public void ReadDiscreteBlockTest() throws Exception {
+		ModbusSlaveStandIn slave = new ModbusSlaveStandIn();
+		ModbusConnectionPool pool = new ModbusConnectionPool(4, 3000, 60000, 600000);
+		try {
+			List<ModBusTcpEvent> events = new ArrayList<ModBusTcpEvent>();
+			events.add(new ModBusTcpDiscreteDataInputEvent(false, new ModbusInputOutputPort(1), IP_ADDRESS, 502, 1, 0, 3, true, 1000));
+			events.add(new ModBusTcpDiscreteDataInputEvent(false, new ModbusInputOutputPort(2), IP_ADDRESS, 502, 1, 3, 2, true, 1000));
+			List<ModbusReadBlock> blocks = ModBusTcpBatchReadEvent.getBlocks(events, 0);
+			assertEquals(1, blocks.size());
+
+			TCPMasterConnection con = pool.getConnection(slave.getIpAddress(), slave.getPort());
+			List<ModbusReading> reads = ModBusTcpBatchProcessor.readBlock(con, slave.getIpAddress(), slave.getPort(), blocks.get(0));
+			pool.releaseConnection(con);
+
+			assertEquals(1, slave.getRequests());
+			assertArrayEquals(new byte[] {0, 1, 0}, reads.get(0).getData());
+			assertArrayEquals(new byte[] {1, 0}, reads.get(1).getData());
+		} finally {
+			pool.close();
+			slave.close();
+		}
+	}
+}
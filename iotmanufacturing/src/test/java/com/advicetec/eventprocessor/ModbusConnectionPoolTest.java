@@ -0,0 +1,167 @@
+package com.advicetec.eventprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.net.InetAddress;
+
+import org.junit.Test;
+
+import com.ghgande.j2mod.modbus.io.ModbusTCPTransaction;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersRequest;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersResponse;
+import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
+
+public class ModbusConnectionPoolTest 
+{
+	private static final int POLLS = 500;
+
+	private int readRegister(TCPMasterConnection con) throws Exception {
+		ReadMultipleRegistersRequest req = new ReadMultipleRegistersRequest(0, 4);
+		req.setUnitID(1);
+		ModbusTCPTransaction trans = new ModbusTCPTransaction(con);
+		trans.setRequest(req);
+		trans.execute();
+		return ((ReadMultipleRegistersResponse) trans.getResponse()).getRegisterValue(0);
+	}
+
+	@Test
+	public void ReuseConnectionTest() throws Exception {
+		ModbusSlaveStandIn slave = new ModbusSlaveStandIn();
+		ModbusConnectionPool pool = new ModbusConnectionPool(4, 3000, 60000, 600000);
+		try {
+			for (int i = 0; i < 100; i++) {
+				TCPMasterConnection con = pool.getConnection(slave.getIpAddress(), slave.getPort());
+				assertEquals(100, readRegister(con));
+				pool.releaseConnection(con);
+			}
+			assertEquals(1, slave.getAcceptedConnections());
+			assertEquals(1, pool.getOpenConnections(slave.getIpAddress(), slave.getPort()));
+			assertEquals(1, pool.getAvailableConnections(slave.getIpAddress(), slave.getPort()));
+		} finally {
+			pool.close();
+			slave.close();
+		}
+	}
+
+	@Test
+	public void MaxConnectionsTest() throws Exception {
+		ModbusSlaveStandIn slave = new ModbusSlaveStandIn();
+		ModbusConnectionPool pool = new ModbusConnectionPool(2, 3000, 60000, 600000);
+		try {
+			TCPMasterConnection con1 = pool.getConnection(slave.getIpAddress(), slave.getPort());
+			TCPMasterConnection con2 = pool.getConnection(slave.getIpAddress(), slave.getPort());
+			assertNotNull(con1);
+			assertNotNull(con2);
+			assertNull(pool.getConnection(slave.getIpAddress(), slave.getPort()));
+
+			pool.releaseConnection(con2);
+			assertSame(con2, pool.getConnection(slave.getIpAddress(), slave.getPort()));
+			assertEquals(2, slave.getAcceptedConnections());
+		} finally {
+			pool.close();
+			slave.close();
+		}
+	}
+
+	@Test
+	public void IdleEvictionTest() throws Exception {
+		ModbusSlaveStandIn slave = new ModbusSlaveStandIn();
+		ModbusConnectionPool pool = new ModbusConnectionPool(4, 3000, 50, 600000);
+		try {
+			TCPMasterConnection con = pool.getConnection(slave.getIpAddress(), slave.getPort());
+			pool.releaseConnection(con);
+			Thread.sleep(120);
+
+			assertEquals(1, pool.evictIdleConnections());
+			assertEquals(0, pool.getOpenConnections(slave.getIpAddress(), slave.getPort()));
+
+			con = pool.getConnection(slave.getIpAddress(), slave.getPort());
+			assertEquals(100, readRegister(con));
+			assertEquals(2, slave.getAcceptedConnections());
+		} finally {
+			pool.close();
+			slave.close();
+		}
+	}
+
+	@Test
+	public void MaxAgeTest() throws Exception {
+		ModbusSlaveStandIn slave = new ModbusSlaveStandIn();
+		ModbusConnectionPool pool = new ModbusConnectionPool(4, 3000, 60000, 50);
+		try {
+			TCPMasterConnection con = pool.getConnection(slave.getIpAddress(), slave.getPort());
+			pool.releaseConnection(con);
+			Thread.sleep(120);
+
+			TCPMasterConnection renewed = pool.getConnection(slave.getIpAddress(), slave.getPort());
+			assertEquals(100, readRegister(renewed));
+			assertEquals(2, slave.getAcceptedConnections());
+			assertEquals(1, pool.getOpenConnections(slave.getIpAddress(), slave.getPort()));
+		} finally {
+			pool.close();
+			slave.close();
+		}
+	}
+
+	@Test
+	public void InvalidateConnectionTest() throws Exception {
+		ModbusSlaveStandIn slave = new ModbusSlaveStandIn();
+		ModbusConnectionPool pool = new ModbusConnectionPool(4, 500, 60000, 600000);
+		try {
+			TCPMasterConnection con = pool.getConnection(slave.getIpAddress(), slave.getPort());
+			assertEquals(100, readRegister(con));
+
+			// The slave is restarted, the transaction fails and the connection is discarded.
+			slave.closeClients();
+			try {
+				readRegister(con);
+			} catch (Exception e) {
+				// expected 
+			}
+			pool.invalidateConnection(con);
+			assertEquals(0, pool.getOpenConnections(slave.getIpAddress(), slave.getPort()));
+
+			con = pool.getConnection(slave.getIpAddress(), slave.getPort());
+			assertEquals(100, readRegister(con));
+			assertEquals(2, slave.getAcceptedConnections());
+		} finally {
+			pool.close();
+			slave.close();
+		}
+	}
+
+	/**
+	 * Compares the connections opened by the polling with a new connection by request, as the 
+	 * processor did before, with the ones opened by the polling through the pool.
+	 */
+	@Test
+	public void PollingConnectionsTest() throws Exception {
+		ModbusSlaveStandIn slave = new ModbusSlaveStandIn();
+		ModbusConnectionPool pool = new ModbusConnectionPool(4, 3000, 60000, 600000);
+		try {
+			for (int i = 0; i < POLLS; i++) {
+				TCPMasterConnection con = new TCPMasterConnection(InetAddress.getByName(slave.getIpAddress()));
+				con.setPort(slave.getPort());
+				con.connect();
+				readRegister(con);
+				con.close();
+			}
+			assertEquals(POLLS, slave.getAcceptedConnections());
+
+			for (int i = 0; i < POLLS; i++) {
+				TCPMasterConnection con = pool.getConnection(slave.getIpAddress(), slave.getPort());
+				readRegister(con);
+				pool.releaseConnection(con);
+			}
+			// The pool opens a single connection for all the polls.
+			assertEquals(POLLS + 1, slave.getAcceptedConnections());
+			assertEquals(1, pool.getOpenConnections(slave.getIpAddress(), slave.getPort()));
+		} finally {
+			pool.close();
+			slave.close();
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.advicetec.eventprocessor;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal modbus TCP slave listening in the loopback interface, used by the tests instead of a 
+ * concentrator. 
+ * <p>
+ * It answers the read discrete inputs (0x02), read holding registers (0x03) and read input 
+ * registers (0x04) functions. Discrete input i is on when i is odd and register i has the 
+ * value 100 + i. It counts the connections accepted, so the tests can 
+ * verify how many sockets were open by the master.
+ */
+public class ModbusSlaveStandIn implements Runnable 
+{
+	private final ServerSocket server;
+
+	private final AtomicInteger acceptedConnections = new AtomicInteger(0);
+
+	private final AtomicInteger requests = new AtomicInteger(0);
+
+	private final List<Socket> clients = new CopyOnWriteArrayList<Socket>();
+
+	private volatile boolean running = true;
+
+	public ModbusSlaveStandIn() throws IOException {
+		server = new ServerSocket(0, 200, InetAddress.getLoopbackAddress());
+		Thread t = new Thread(this, "ModbusSlaveStandIn");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	public String getIpAddress() {
+		return server.getInetAddress().getHostAddress();
+	}
+
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	public int getAcceptedConnections() {
+		return acceptedConnections.get();
+	}
+
+	public int getRequests() {
+		return requests.get();
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				final Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				acceptedConnections.incrementAndGet();
+				clients.add(socket);
+				Thread t = new Thread(new Runnable() {
+					public void run() {
+						serve(socket);
+					}
+				}, "ModbusSlaveStandInClient");
+				t.setDaemon(true);
+				t.start();
+			} catch (IOException e) {
+				// the server was closed.
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		try {
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			while (running) {
+				// MBAP header
+				int transactionId = in.readUnsignedShort();
+				int protocolId = in.readUnsignedShort();
+				int length = in.readUnsignedShort();
+				int unitId = in.readUnsignedByte();
+				byte[] pdu = new byte[length - 1];
+				in.readFully(pdu);
+				requests.incrementAndGet();
+
+				int function = pdu[0] & 0xFF;
+				int offset = ((pdu[1] & 0xFF) << 8) | (pdu[2] & 0xFF);
+				int count = ((pdu[3] & 0xFF) << 8) | (pdu[4] & 0xFF);
+
+				out.writeShort(transactionId);
+				out.writeShort(protocolId);
+				if (function == 0x02) {
+					int nbrBytes = (count + 7) / 8;
+					out.writeShort(3 + nbrBytes);
+					out.writeByte(unitId);
+					out.writeByte(function);
+					out.writeByte(nbrBytes);
+					byte[] bits = new byte[nbrBytes];
+					for (int i = 0; i < count; i++) {
+						if (((offset + i) % 2) == 1) {
+							bits[i / 8] |= (byte) (1 << (i % 8));
+						}
+					}
+					out.write(bits);
+				} else if ((function == 0x03) || (function == 0x04)) {
+					out.writeShort(3 + 2 * count);
+					out.writeByte(unitId);
+					out.writeByte(function);
+					out.writeByte(2 * count);
+					for (int i = 0; i < count; i++) {
+						out.writeShort(100 + offset + i);
+					}
+				} else {
+					// illegal function exception.
+					out.writeShort(3);
+					out.writeByte(unitId);
+					out.writeByte(function | 0x80);
+					out.writeByte(0x01);
+				}
+				out.flush();
+			}
+		} catch (IOException e) {
+			// the master closed the connection.
+		} finally {
+			clients.remove(socket);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// nothing to do.
+			}
+		}
+	}
+
+	/**
+	 * Closes the sockets of the connected masters, as a concentrator being restarted.
+	 */
+	public void closeClients() throws IOException {
+		for (Socket socket : clients) {
+			socket.close();
+		}
+	}
+
+	public void close() throws IOException {
+		running = false;
+		server.close();
+		closeClients();
+	}
+}
@@ -0,0 +1,203 @@
+package com.advicetec.language.behavior;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.advicetec.language.BehaviorGrammarParser;
+import com.advicetec.language.ast.ASTNode;
+import com.advicetec.language.ast.MemorySpace;
+
+/**
+ * Differential tests, every behavior is executed with the visitor and with the compiled
+ * expressions, and both executions must give the same attribute values and errors.
+ */
+public class BehaviorCompiledExpressionsTest
+{
+
+	private static final String ARITHMETIC =
+			"program main() { \n"
+			+ "  var int x = 5; \n"
+			+ "  var float y = 2.5; \n"
+			+ "  attr int a1 = x * x - 7 + 1; \n"
+			+ "  attr float a2 = (x * 3 + 1) / 2.0; \n"
+			+ "  attr float a3 = x ^ 2 + y % 2; \n"
+			+ "  attr float a4 = x / 2; \n"
+			+ "  attr float a5 = -y * -2 + 10 % 3; \n"
+			+ "  attr int a6 = -x + 2 * 3 * 4 - 1; \n"
+			+ "  attr float a7 = 2 ^ 0.5 * y; \n"
+			+ "} \n";
+
+	private static final String LOGICAL =
+			"program main() { \n"
+			+ "  var int x = 5; \n"
+			+ "  var float y = 2.5; \n"
+			+ "  attr boolean b1 = x > 3 AND y <= 2.5 OR !(x == 1); \n"
+			+ "  attr boolean b2 = x != 5; \n"
+			+ "  attr boolean b3 = 1.0 == 1; \n"
+			+ "  attr boolean b4 = y >= x OR x < y; \n"
+			+ "  attr boolean b5 = 0.1 + 0.2 == 0.3; \n"
+			+ "  attr boolean b6 = \"abc\" == \"abc\" AND true != false; \n"
+			+ "  attr boolean b7 = x != 1000; \n"
+			+ "} \n";
+
+	private static final String STRINGS =
+			"program main() { \n"
+			+ "  var int x = 5; \n"
+			+ "  attr string s1 = \"count:\" + x; \n"
+			+ "  attr string s2 = x + 1 + \" units\"; \n"
+			+ "  attr float s3 = round(x * 3.14159, 2); \n"
+			+ "  attr string s4 = \"\"; \n"
+			+ "  if (x * 2 > 8) { \n"
+			+ "    s4 = \"greater\"; \n"
+			+ "  } else { \n"
+			+ "    s4 = \"lower\"; \n"
+			+ "  } \n"
+			+ "} \n";
+
+	/**
+	 * The status and the over time functions read the facade, they are not compiled.
+	 */
+	private static final String FACADE =
+			"program main() { \n"
+			+ "  var int x = 5; \n"
+			+ "  attr float f1 = STATUS.speed * 2 + x; \n"
+			+ "  attr boolean f2 = STATUS.speed > 10 AND x < 10; \n"
+			+ "  attr int f3 = count_over_time(counter, MINUTE, 10) * x - 1; \n"
+			+ "  attr float f4 = max_over_time(speed, HOUR, 1) / 2 + STATUS.speed; \n"
+			+ "  attr string f5 = STATUS.name + \"-\" + x; \n"
+			+ "} \n";
+
+	/**
+	 * Interpreter whose facade functions return fixed values and count their calls.
+	 */
+	private static class StandInInterpreter extends BehaviorInterpreter
+	{
+		private final Map<String, Object> status = new HashMap<String, Object>();
+
+		int facadeCalls = 0;
+
+		StandInInterpreter(BehaviorDefPhase def, MemorySpace globals) {
+			super(def.getGlobalScope(), globals, def.getScopes(), null, 1);
+			status.put("speed", new Double(12.5));
+			status.put("name", "press");
+		}
+
+		@Override
+		public ASTNode visitStatus(BehaviorGrammarParser.StatusContext ctx) {
+			facadeCalls++;
+			Object value = status.get(ctx.ID().getText());
+			return (value == null) ? null : new ASTNode(value);
+		}
+
+		@Override
+		public ASTNode visitCount_over_time(BehaviorGrammarParser.Count_over_timeContext ctx) {
+			facadeCalls++;
+			return new ASTNode(new Integer(4));
+		}
+
+		@Override
+		public ASTNode visitMax_over_time(BehaviorGrammarParser.Max_over_timeContext ctx) {
+			facadeCalls++;
+			return new ASTNode(new Double(30.0));
+		}
+	}
+
+	/**
+	 * Executes the behavior and returns the global values as text, and the number of facade calls.
+	 */
+	private Map<String, String> execute(String program, boolean compile)
+	{
+		CompiledBehavior compiled = CompiledBehavior.compile(program);
+		BehaviorDefPhase def = compiled.define();
+		MemorySpace globals = new MemorySpace("globals");
+
+		StandInInterpreter interpreter = new StandInInterpreter(def, globals);
+		if (compile) {
+			assertTrue("no expression was compiled", compiled.getExpressions().size() > 0);
+			interpreter.setCompiledExpressions(compiled.getExpressions());
+		}
+
+		interpreter.visit(compiled.getTree());
+
+		Map<String, String> values = new TreeMap<String, String>();
+		for (Map.Entry<String, ASTNode> entry : globals.getSymbolMap().entrySet()) {
+			ASTNode value = entry.getValue();
+			values.put(entry.getKey(), value.getObjectClassName() + ":" + value.toString());
+		}
+		values.put("facadeCalls", String.valueOf(interpreter.facadeCalls));
+		return values;
+	}
+
+	/**
+	 * Executes the behavior and returns the error message.
+	 */
+	private String executeWithError(String program, boolean compile)
+	{
+		try {
+			execute(program, compile);
+		} catch (RuntimeException e) {
+			return e.getMessage();
+		}
+		return null;
+	}
+
+	@Test
+	public void ArithmeticExpressionsTest()
+	{
+		Map<String, String> interpreted = execute(ARITHMETIC, false);
+		assertEquals(interpreted, execute(ARITHMETIC, true));
+		assertEquals("java.lang.Integer:19", interpreted.get("a1"));
+	}
+
+	@Test
+	public void LogicalExpressionsTest()
+	{
+		Map<String, String> interpreted = execute(LOGICAL, false);
+		assertEquals(interpreted, execute(LOGICAL, true));
+		assertEquals("java.lang.Boolean:true", interpreted.get("b1"));
+	}
+
+	@Test
+	public void StringExpressionsTest()
+	{
+		Map<String, String> interpreted = execute(STRINGS, false);
+		assertEquals(interpreted, execute(STRINGS, true));
+		assertEquals("java.lang.String:greater", interpreted.get("s4"));
+	}
+
+	@Test
+	public void FacadeFunctionsTest()
+	{
+		Map<String, String> interpreted = execute(FACADE, false);
+		// the facade functions are called once by reference in both executions.
+		assertEquals(interpreted, execute(FACADE, true));
+		assertEquals("6", interpreted.get("facadeCalls"));
+		assertEquals("java.lang.Integer:19", interpreted.get("f3"));
+		assertEquals("java.lang.String:press-5", interpreted.get("f5"));
+	}
+
+	@Test
+	public void ErrorsTest()
+	{
+		String[] programs = {
+			"program main() { attr int e1 = \"a\" - 1; }",
+			"program main() { attr boolean e2 = 1 AND true; }",
+			"program main() { attr boolean e3 = !5; }",
+			"program main() { attr boolean e4 = \"a\" == 1; }",
+			"program main() { attr float e5 = 1.0 ^ \"a\"; }",
+			"program main() { attr float e6 = STATUS.name * 2; }"
+		};
+
+		for (String program : programs) {
+			String interpreted = executeWithError(program, false);
+			assertTrue("the behavior should fail: " + program, interpreted != null);
+			assertEquals(interpreted, executeWithError(program, true));
+		}
+	}
+}
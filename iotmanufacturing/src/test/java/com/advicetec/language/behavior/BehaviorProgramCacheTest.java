@@ -0,0 +1,33 @@
+package com.advicetec.language.behavior;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BehaviorProgramCacheTest
+{
+	private static final String BEHAVIOR = 
+			"program main() { \n"
+			+ "  var int x = 5; \n"
+			+ "  var int y = x * 2 + 1; \n"
+			+ "} \n";
+
+	@Test
+	public void CacheHitTest() 
+	{
+		BehaviorProgramCache cache = BehaviorProgramCache.getInstance();
+		cache.invalidateAll();
+
+		CompiledBehavior compiled = cache.getCompiledBehavior(BEHAVIOR);
+		assertTrue(compiled.getExpressions().size() > 0);
+		assertSame(compiled, cache.getCompiledBehavior(BEHAVIOR));
+		assertSame(compiled, cache.getCompiledBehavior(new String(BEHAVIOR)));
+
+		// Every execution defines its own scopes over the shared tree.
+		assertNotSame(compiled.define().getGlobalScope(), compiled.define().getGlobalScope());
+
+		assertNotSame(compiled, cache.getCompiledBehavior(BEHAVIOR.replace("2", "3")));
+	}
+}
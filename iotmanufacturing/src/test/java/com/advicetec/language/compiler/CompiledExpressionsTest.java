@@ -0,0 +1,150 @@
+package com.advicetec.language.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.advicetec.language.ast.ASTNode;
+import com.advicetec.language.ast.MemorySpace;
+import com.advicetec.language.transformation.CompiledProgram;
+import com.advicetec.language.transformation.DefPhase;
+import com.advicetec.language.transformation.Interpreter;
+import com.advicetec.language.transformation.TransformationExpressionCompiler;
+
+/**
+ * Differential tests, every program is executed with the visitor and with the compiled 
+ * expressions, and both executions must give the same attribute values and errors.
+ */
+public class CompiledExpressionsTest 
+{
+
+	private static final String ARITHMETIC = 
+			"transform main(int digital) { \n"
+			+ "  var int x = 5; \n"
+			+ "  var float y = 2.5; \n"
+			+ "  attr int a1 = x * x - 7 + digital; \n"
+			+ "  attr float a2 = (x * 3 + digital) / 2.0; \n"
+			+ "  attr float a3 = x ^ 2 + y % 2; \n"
+			+ "  attr float a4 = x / 2; \n"
+			+ "  attr float a5 = -y * -2 + 10 % 3; \n"
+			+ "  attr int a6 = -x + 2 * 3 * 4 - 1; \n"
+			+ "  attr float a7 = y * x - digital / 3; \n"
+			+ "  attr float a8 = 2 ^ 0.5 * y; \n"
+			+ "} \n";
+
+	private static final String LOGICAL = 
+			"transform main(int digital) { \n"
+			+ "  var int x = 5; \n"
+			+ "  var float y = 2.5; \n"
+			+ "  attr boolean b1 = x > 3 AND y <= 2.5 OR !(digital == 1); \n"
+			+ "  attr boolean b2 = x != 5; \n"
+			+ "  attr boolean b3 = 1.0 == 1; \n"
+			+ "  attr boolean b4 = y >= x OR x < y; \n"
+			+ "  attr boolean b5 = 0.1 + 0.2 == 0.3; \n"
+			+ "  attr boolean b6 = \"abc\" == \"abc\" AND true != false; \n"
+			+ "  attr boolean b7 = date('2010-jul-13') == date('2010-jul-13'); \n"
+			+ "  attr boolean b8 = x != 1000; \n"
+			+ "} \n";
+
+	private static final String STRINGS = 
+			"transform main(int digital) { \n"
+			+ "  var int x = 5; \n"
+			+ "  attr string s1 = \"count:\" + x; \n"
+			+ "  attr string s2 = x + 1 + \" units\"; \n"
+			+ "  attr float s3 = round(x * 3.14159, 2); \n"
+			+ "  attr string s4 = \"\"; \n"
+			+ "  if (x * 2 > 8) { \n"
+			+ "    s4 = \"greater\"; \n"
+			+ "  } else { \n"
+			+ "    s4 = \"lower\"; \n"
+			+ "  } \n"
+			+ "} \n";
+
+	/**
+	 * Executes the transformation and returns the global values as text. 
+	 */
+	private Map<String, String> execute(String program, boolean compile)
+	{
+		CompiledProgram compiled = CompiledProgram.parse(program);
+		assertEquals("syntax errors in the program", 0, compiled.getErrors().size());
+
+		DefPhase def = compiled.define();
+		MemorySpace globals = new MemorySpace("globals");
+		globals.put("digital", new ASTNode(new Integer(1)));
+
+		Interpreter interpreter = new Interpreter(def.getGlobalScope(), globals, def.getScopes(), null);
+		if (compile) {
+			CompiledExpressions expressions = TransformationExpressionCompiler.compile(compiled.getTree());
+			assertTrue("no expression was compiled", expressions.size() > 0);
+			interpreter.setCompiledExpressions(expressions);
+		}
+
+		interpreter.visit(compiled.getTree());
+
+		Map<String, String> values = new TreeMap<String, String>();
+		for (Map.Entry<String, ASTNode> entry : globals.getSymbolMap().entrySet()) {
+			ASTNode value = entry.getValue();
+			values.put(entry.getKey(), value.getObjectClassName() + ":" + value.toString());
+		}
+		return values;
+	}
+
+	/**
+	 * Executes the transformation and returns the error message.
+	 */
+	private String executeWithError(String program, boolean compile)
+	{
+		try {
+			execute(program, compile);
+		} catch (RuntimeException e) {
+			return e.getMessage();
+		}
+		return null;
+	}
+
+	@Test
+	public void ArithmeticExpressionsTest()
+	{
+		Map<String, String> interpreted = execute(ARITHMETIC, false);
+		assertEquals(interpreted, execute(ARITHMETIC, true));
+		assertEquals("java.lang.Integer:19", interpreted.get("a1"));
+	}
+
+	@Test
+	public void LogicalExpressionsTest()
+	{
+		Map<String, String> interpreted = execute(LOGICAL, false);
+		assertEquals(interpreted, execute(LOGICAL, true));
+		assertEquals("java.lang.Boolean:true", interpreted.get("b1"));
+	}
+
+	@Test
+	public void StringExpressionsTest()
+	{
+		Map<String, String> interpreted = execute(STRINGS, false);
+		assertEquals(interpreted, execute(STRINGS, true));
+		assertEquals("java.lang.String:greater", interpreted.get("s4"));
+	}
+
+	@Test
+	public void ErrorsTest()
+	{
+		String[] programs = {
+			"transform main(int digital) { attr int e1 = \"a\" - digital; }",
+			"transform main(int digital) { attr boolean e2 = digital AND true; }",
+			"transform main(int digital) { attr boolean e3 = !digital; }",
+			"transform main(int digital) { attr boolean e4 = \"a\" == digital; }",
+			"transform main(int digital) { attr float e5 = 1.0 ^ \"a\"; }"
+		};
+
+		for (String program : programs) {
+			String interpreted = executeWithError(program, false);
+			assertTrue("the program should fail: " + program, interpreted != null);
+			assertEquals(interpreted, executeWithError(program, true));
+		}
+	}
+}
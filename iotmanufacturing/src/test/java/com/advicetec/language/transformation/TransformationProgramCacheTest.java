@@ -0,0 +1,87 @@
+package com.advicetec.language.transformation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.advicetec.configuration.MonitoringDeviceContainer;
+import com.advicetec.configuration.MqttInputOutputPort;
+import com.advicetec.configuration.MqttMonitoringDevice;
+import com.advicetec.measuredentitity.Machine;
+
+public class TransformationProgramCacheTest
+{
+	private static final String PROGRAM = 
+			"transform main(int digital) { \n"
+			+ "  attr int a1 = digital * 2; \n"
+			+ "} \n";
+
+	private static final String OTHER_PROGRAM = 
+			"transform main(int digital) { \n"
+			+ "  attr int a2 = digital + 1; \n"
+			+ "} \n";
+
+	private CompiledProgram compile(String program, Integer entityId)
+	{
+		return TransformationProgramCache.getInstance().getCompiledProgram(program, entityId, () -> null);
+	}
+
+	@Test
+	public void CacheHitTest() 
+	{
+		TransformationProgramCache.getInstance().invalidateAll();
+
+		CompiledProgram compiled = compile(PROGRAM, 1);
+		assertEquals(0, compiled.getErrors().size());
+		assertSame(compiled, compile(PROGRAM, 1));
+
+		// Programs are compiled for every measured entity and text.
+		assertNotSame(compiled, compile(PROGRAM, 2));
+		assertNotSame(compiled, compile(OTHER_PROGRAM, 1));
+		assertSame(compiled, compile(PROGRAM, 1));
+	}
+
+	@Test
+	public void BehaviorInvalidationTest() 
+	{
+		TransformationProgramCache.getInstance().invalidateAll();
+		Machine machine = new Machine(10);
+
+		CompiledProgram compiled = compile(PROGRAM, 10);
+		CompiledProgram otherEntity = compile(PROGRAM, 11);
+
+		machine.putBehavior(1, "behavior1", "behavior", "behavior main() { }");
+		CompiledProgram recompiled = compile(PROGRAM, 10);
+		assertNotSame(compiled, recompiled);
+		assertSame(otherEntity, compile(PROGRAM, 11));
+
+		machine.removeBehavior(1);
+		assertNotSame(recompiled, compile(PROGRAM, 10));
+	}
+
+	@Test
+	public void PortInvalidationTest() 
+	{
+		TransformationProgramCache.getInstance().invalidateAll();
+		MonitoringDeviceContainer container = new MonitoringDeviceContainer(null, null, null, null);
+
+		CompiledProgram compiled = compile(PROGRAM, 20);
+		CompiledProgram otherEntity = compile(PROGRAM, 21);
+
+		MqttMonitoringDevice device = new MqttMonitoringDevice(1);
+		MqttInputOutputPort port = new MqttInputOutputPort(1);
+		port.setTopicName("iot/device1/port1");
+		port.setMeasuringEntity(20);
+		device.putInputOutputPort(port);
+		container.addMonitoringDevice(device);
+
+		CompiledProgram recompiled = compile(PROGRAM, 20);
+		assertNotSame(compiled, recompiled);
+		assertSame(otherEntity, compile(PROGRAM, 21));
+
+		container.deleteMonitoringDevice(1);
+		assertNotSame(recompiled, compile(PROGRAM, 20));
+	}
+}
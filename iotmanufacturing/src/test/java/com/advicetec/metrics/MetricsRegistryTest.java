@@ -0,0 +1,56 @@
+package com.advicetec.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.advicetec.mpmcqueue.Queue;
+
+public class MetricsRegistryTest
+{
+	@Test
+	public void PrometheusFormatTest() {
+		MetricsRegistry registry = new MetricsRegistry();
+		MetricFamily<Counter> counter = registry.counter("test_total", "Test counter.", "stage");
+		assertSame(counter, registry.counter("test_total", "Test counter.", "stage"));
+		counter.labels("a\"b").inc(3);
+
+		Histogram histogram = registry.latency("test_seconds", "Test latency.").labels();
+		histogram.observe(20000L);
+		histogram.observe(2000000L);
+		histogram.observe(20000000000L);
+
+		String text = registry.write();
+		assertTrue(text.contains("# TYPE test_total counter\ntest_total{stage=\"a\\\"b\"} 3\n"));
+		assertTrue(text.contains("# TYPE test_seconds histogram\n"));
+		assertTrue(text.contains("test_seconds_bucket{le=\"0.00001\"} 0\n"));
+		assertTrue(text.contains("test_seconds_bucket{le=\"0.00005\"} 1\n"));
+		assertTrue(text.contains("test_seconds_bucket{le=\"0.005\"} 2\n"));
+		assertTrue(text.contains("test_seconds_bucket{le=\"10\"} 2\n"));
+		assertTrue(text.contains("test_seconds_bucket{le=\"+Inf\"} 3\n"));
+		assertTrue(text.contains("test_seconds_count 3\n"));
+		// the families are sorted by name.
+		assertTrue(text.indexOf("test_seconds") < text.indexOf("test_total"));
+	}
+
+	@Test
+	public void QueueMetricsTest() throws InterruptedException {
+		Queue<Integer> queue = new Queue<Integer>(Integer.class);
+		queue.instrument("QueueMetricsTest", "0");
+		queue.pushAll(new Integer[] {1, 2, 3}, 3);
+		queue.push(4);
+		queue.pop();
+
+		MetricsRegistry registry = MetricsRegistry.getInstance();
+		assertEquals(4, registry.counter("iot_queue_enqueued_total", "", "stage", "queue")
+				.labels("QueueMetricsTest", "0").get());
+		assertEquals(1, registry.counter("iot_queue_dequeued_total", "", "stage", "queue")
+				.labels("QueueMetricsTest", "0").get());
+		assertEquals(3, registry.gauge("iot_queue_depth", "", "stage", "queue")
+				.labels("QueueMetricsTest", "0").get());
+		assertEquals(1, registry.latency("iot_queue_time_seconds", "", "stage", "queue")
+				.labels("QueueMetricsTest", "0").getCount());
+	}
+}
@@ -0,0 +1,61 @@
+package com.advicetec.monitorAdapter.protocolconverter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.advicetec.core.AttributeType;
+
+public class TranslatorsTest
+{
+	private static int[] decode(PrimitiveTranslator translator, byte[] payload, int offset, int length) {
+		int[] values = new int[translator.capacity(length)];
+		int count = translator.translate(payload, offset, length, values);
+		return Arrays.copyOf(values, count);
+	}
+
+	private static int[] boxed(List<InterpretedSignal> signals) {
+		int[] values = new int[signals.size()];
+		for (int i = 0; i < values.length; i++) {
+			Object value = signals.get(i).getValue();
+			values[i] = (value instanceof Boolean) ? (((Boolean) value) ? 1 : 0) : (Integer) value;
+		}
+		return values;
+	}
+
+	@Test
+	public void CacheTest() throws Exception {
+		Translator register = Translators.get("ModBusRegister");
+		assertTrue(register instanceof ModBusRegister);
+		assertSame(register, Translators.get("ModBusRegister"));
+		assertTrue(Translators.get("MqttDigital") instanceof MqttDigital);
+	}
+
+	@Test
+	public void RegisterTest() throws Exception {
+		PrimitiveTranslator translator = (PrimitiveTranslator) Translators.get("ModBusRegister");
+		byte[] payload = {6, 0x01, 0x02, (byte) 0xFF, (byte) 0xFE, 0x00, 0x07};
+
+		assertEquals(AttributeType.INT, translator.getValueType());
+		assertTrue(Arrays.equals(boxed(translator.translate(payload)), decode(translator, payload, 0, payload.length)));
+		assertTrue(Arrays.equals(new int[] {0x0102, 0xFFFE, 7}, decode(translator, payload, 0, payload.length)));
+
+		// the range of the second register starts at the byte before it, as in the concentrator reads.
+		assertTrue(Arrays.equals(new int[] {0xFFFE}, decode(translator, payload, 2, 3)));
+	}
+
+	@Test
+	public void DiscreteTest() throws Exception {
+		PrimitiveTranslator translator = (PrimitiveTranslator) Translators.get("ModBusDiscrete");
+		byte[] payload = {1, 0, 0, 1, 1};
+
+		assertEquals(AttributeType.BOOLEAN, translator.getValueType());
+		assertTrue(Arrays.equals(boxed(translator.translate(payload)), decode(translator, payload, 0, payload.length)));
+		assertTrue(Arrays.equals(new int[] {0, 1}, decode(translator, payload, 2, 2)));
+	}
+}
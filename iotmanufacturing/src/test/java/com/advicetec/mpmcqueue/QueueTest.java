@@ -0,0 +1,134 @@
+package com.advicetec.mpmcqueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class QueueTest 
+{
+
+	@Test
+	public void PriorityOrderTest() throws InterruptedException {
+		PriorityQueue<Queueable> queue = new PriorityQueue<Queueable>(Queueable.class);
+		
+		queue.enqueue(6, new Queueable(QueueType.GENERIC, new Integer(6)));
+		queue.enqueue(2, new Queueable(QueueType.GENERIC, new Integer(2)));
+		queue.enqueue(4, new Queueable(QueueType.GENERIC, new Integer(4)));
+
+		assertEquals(new Integer(2), queue.pop().getContent());
+		assertEquals(new Integer(4), queue.pop().getContent());
+		assertEquals(new Integer(6), queue.pop().getContent());
+		
+		int[] sizes = queue.size();
+		for (int i=0; i < sizes.length; i++){
+			assertEquals(0, sizes[i]);
+		}
+	}
+
+	@Test
+	public void WrapAroundTest() throws InterruptedException {
+		Queue<Integer> queue = new Queue<Integer>(Integer.class);
+		
+		// goes around the ring several times.
+		for (int i = 0; i < 30000; i++) {
+			queue.push(new Integer(i));
+			assertEquals(new Integer(i), queue.pop());
+		}
+		assertNull(queue.nonwait_pop());
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void MultipleProducersConsumersTest() throws InterruptedException {
+		final PriorityQueue<Queueable> queue = new PriorityQueue<Queueable>(Queueable.class);
+		final int producers = 4;
+		final int consumers = 4;
+		final int items = 50000;
+		final AtomicLong sum = new AtomicLong(0);
+		
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < producers; i++) {
+			threads.add(new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (int j = 0; j < items; j++) {
+							queue.enqueue(j % 7, new Queueable(QueueType.GENERIC, new Integer(j)));
+						}
+					} catch (InterruptedException e) {
+						e.printStackTrace();
+					}
+				}
+			}));
+		}
+		for (int i = 0; i < consumers; i++) {
+			threads.add(new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (int j = 0; j < items; j++) {
+							sum.addAndGet(((Integer) queue.pop().getContent()).intValue());
+						}
+					} catch (InterruptedException e) {
+						e.printStackTrace();
+					}
+				}
+			}));
+		}
+		
+		for (Thread t : threads) {
+			t.start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		
+		long expected = (long) producers * ((long) items * (items - 1) / 2);
+		assertEquals(expected, sum.get());
+	}
+
+	@Test
+	public void BatchTest() throws InterruptedException {
+		final Queue<Integer> queue = new Queue<Integer>(Integer.class);
+		final int batches = 2000;
+		final int batchSize = 50;
+
+		// the batches exceed the capacity of the ring, so the producer waits for the consumer.
+		Thread producer = new Thread(new Runnable() {
+			public void run() {
+				Integer[] batch = new Integer[batchSize];
+				try {
+					for (int i = 0; i < batches; i++) {
+						for (int j = 0; j < batchSize; j++) {
+							batch[j] = new Integer(i * batchSize + j);
+						}
+						queue.pushAll(batch, batchSize);
+					}
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		producer.start();
+
+		for (int i = 0; i < batches * batchSize; i++) {
+			assertEquals(new Integer(i), queue.pop());
+		}
+		producer.join();
+		assertNull(queue.nonwait_pop());
+	}
+
+	@Test
+	public void IdleOverflowTest() throws InterruptedException {
+		// a counter that overflowed parks for the maximum time instead of spinning.
+		ParkWaitStrategy strategy = new ParkWaitStrategy(50000000L);
+		long start = System.nanoTime();
+		strategy.idle(Integer.MIN_VALUE);
+		strategy.idle(-1);
+		assertTrue(System.nanoTime() - start >= 80000000L);
+	}
+}
@@ -0,0 +1,87 @@
+package com.advicetec.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.advicetec.core.Attribute;
+import com.advicetec.core.AttributeType;
+import com.advicetec.measuredentitity.MeasuredAttributeValue;
+import com.advicetec.measuredentitity.MeasuredEntityType;
+
+public class BulkWriterTest
+{
+	private static final LocalDateTime START = LocalDateTime.of(2017, 8, 12, 18, 0, 0);
+
+	private List<MeasuredAttributeValue> rows(int count) {
+		List<MeasuredAttributeValue> rows = new ArrayList<MeasuredAttributeValue>();
+		for (int i = 0; i < count; i++) {
+			rows.add(new MeasuredAttributeValue(new Attribute("speed", AttributeType.DOUBLE), 10.0 + i,
+									1, MeasuredEntityType.MACHINE, START.plusSeconds(i)));
+		}
+		return rows;
+	}
+
+	@Test
+	public void JdbcBatchWriterTest() throws Exception {
+		JdbcStandIn database = new JdbcStandIn();
+
+		assertEquals(3, new JdbcBatchWriter().write(database.getConnection(), rows(3)));
+		assertEquals(0, new JdbcBatchWriter().write(database.getConnection(), rows(0)));
+
+		assertEquals(3, database.getRows());
+		assertEquals(1, database.getBatches());
+		assertEquals(12.0, database.getRow(2)[4]);
+	}
+
+	@Test
+	public void FallbackWriterTest() throws Exception {
+		JdbcStandIn database = new JdbcStandIn();
+		BulkWriter failing = new BulkWriter() {
+			public int write(Connection conn, List<? extends BulkStorable> rows) throws SQLException {
+				throw new SQLException("copy is not supported");
+			}
+			public String getName() {
+				return BulkWriters.COPY;
+			}
+		};
+
+		BulkWriter writer = new FallbackBulkWriter(failing, new JdbcBatchWriter());
+		assertEquals(2, writer.write(database.getConnection(), rows(2)));
+		assertEquals(2, database.getRows());
+	}
+
+	@Test
+	public void BulkValuesTest() {
+		MeasuredAttributeValue value = new MeasuredAttributeValue(new Attribute("status", AttributeType.STRING), "Run \"A\"",
+														1, MeasuredEntityType.MACHINE, START);
+		Object[] row = value.getBulkValues();
+
+		assertEquals(MeasuredAttributeValue.BULK_TABLE.getColumnCount(), row.length);
+		assertEquals(Timestamp.valueOf(START), row[1]);
+		assertNull(row[4]);
+		assertEquals("Run \"A\"", row[6]);
+
+		StringBuilder sb = new StringBuilder();
+		PostgresCopyWriter.appendCsv(sb, row);
+		assertEquals("1,2017-08-12 18:00:00.0," + MeasuredEntityType.MACHINE.getValue() + ",\"status\",,,\"Run \"\"A\"\"\",,,,\n",
+						sb.toString());
+	}
+
+	@Test
+	public void CreateWriterTest() {
+		assertEquals(BulkWriters.JDBC, BulkWriters.create(null, "org.postgresql.Driver").getName());
+		assertEquals(BulkWriters.JDBC, BulkWriters.create("auto", "org.h2.Driver").getName());
+		assertTrue(BulkWriters.create("auto", "org.postgresql.Driver") instanceof FallbackBulkWriter);
+		assertTrue(BulkWriters.create("bulkcopy", null) instanceof FallbackBulkWriter);
+	}
+}
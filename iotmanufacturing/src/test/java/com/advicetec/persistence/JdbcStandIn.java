@@ -0,0 +1,255 @@
+package com.advicetec.persistence;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In memory stand-in of the measuredattributevalue table, used by the tests and benchmarks instead 
+ * of an embedded database.
+ * <p>
+ * It gives JDBC connections whose prepared statements keep the parameters of every batch row. 
+ * As the database, a batch is rejected when a row repeats the primary key (id_owner, timestamp, 
+ * owner_type, attribute_name), which are the first four parameters of the insert statement.
+ * <p>
+ * Other tables can be simulated by giving the number of key columns. The batches of a delete statement 
+ * remove the rows whose key are their parameters, and the queries registered for a statement return 
+ * the rows selected by the test.
+ */
+public class JdbcStandIn 
+{
+	/**
+	 * Rows returned by a query given its parameters.
+	 */
+	public interface Query {
+		List<Object[]> select(Object[] parameters);
+	}
+
+	private final int keyColumns;
+
+	private final List<Object[]> rows = new ArrayList<Object[]>();
+
+	private final Set<List<Object>> keys = new HashSet<List<Object>>();
+
+	private int batches = 0;
+
+	private int commits = 0;
+
+	private int queries = 0;
+
+	private final Map<String, Query> selects = new HashMap<String, Query>();
+
+	private final Map<String, String[]> columns = new HashMap<String, String[]>();
+
+	public JdbcStandIn() {
+		this(4);
+	}
+
+	public JdbcStandIn(int keyColumns) {
+		this.keyColumns = keyColumns;
+	}
+
+	public synchronized Connection getConnection() {
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class<?>[] { Connection.class }, new ConnectionHandler());
+	}
+
+	public synchronized int getRows() {
+		return rows.size();
+	}
+
+	public synchronized Object[] getRow(int index) {
+		return rows.get(index);
+	}
+
+	public synchronized int getBatches() {
+		return batches;
+	}
+
+	public synchronized int getCommits() {
+		return commits;
+	}
+
+	public synchronized int getQueries() {
+		return queries;
+	}
+
+	/**
+	 * Registers the rows returned by a statement.
+	 * 
+	 * @param sql		statement text.
+	 * @param names		names of the columns of the rows.
+	 * @param query		rows returned for the parameters of the statement.
+	 */
+	public synchronized void setQuery(String sql, String[] names, Query query) {
+		selects.put(sql, query);
+		columns.put(sql, names);
+	}
+
+	public synchronized void clear() {
+		rows.clear();
+		keys.clear();
+		batches = 0;
+		commits = 0;
+	}
+
+	private List<Object> getKey(Object[] row) {
+		return Arrays.asList(row).subList(0, keyColumns);
+	}
+
+	private synchronized int[] executeBatch(String sql, List<Object[]> batch) throws BatchUpdateException {
+		if (sql.trim().toLowerCase().startsWith("delete")) {
+			return executeDelete(batch);
+		}
+		Set<List<Object>> batchKeys = new HashSet<List<Object>>();
+		for (Object[] row : batch) {
+			List<Object> key = getKey(row);
+			if (keys.contains(key) || !batchKeys.add(key)) {
+				throw new BatchUpdateException("duplicate key value violates unique constraint:" + key, "23505", new int[0]);
+			}
+		}
+		keys.addAll(batchKeys);
+		rows.addAll(batch);
+		batches++;
+		int[] ret = new int[batch.size()];
+		Arrays.fill(ret, 1);
+		return ret;
+	}
+
+	private synchronized int[] executeDelete(List<Object[]> batch) {
+		int[] ret = new int[batch.size()];
+		for (int i = 0; i < batch.size(); i++) {
+			List<Object> key = getKey(batch.get(i));
+			if (keys.remove(key)) {
+				Iterator<Object[]> iterator = rows.iterator();
+				while (iterator.hasNext()) {
+					if (getKey(iterator.next()).equals(key)) {
+						iterator.remove();
+					}
+				}
+				ret[i] = 1;
+			}
+		}
+		batches++;
+		return ret;
+	}
+
+	private synchronized ResultSet executeQuery(String sql, Object[] parameters) {
+		queries++;
+		Query query = selects.get(sql);
+		List<Object[]> result = (query == null) ? new ArrayList<Object[]>() : query.select(parameters);
+		return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class<?>[] { ResultSet.class }, new ResultSetHandler(columns.get(sql), result));
+	}
+
+	private synchronized void commit() {
+		commits++;
+	}
+
+	private static Object defaultValue(Method method) {
+		Class<?> type = method.getReturnType();
+		if (type == boolean.class) {
+			return Boolean.FALSE;
+		} else if (type == int.class) {
+			return 0;
+		} else if (type == long.class) {
+			return 0L;
+		}
+		return null;
+	}
+
+	private class ConnectionHandler implements InvocationHandler {
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("prepareStatement")) {
+				return Proxy.newProxyInstance(getClass().getClassLoader(), 
+						new Class<?>[] { PreparedStatement.class }, new StatementHandler((String) args[0]));
+			} else if (name.equals("commit")) {
+				commit();
+				return null;
+			}
+			return defaultValue(method);
+		}
+	}
+
+	private class StatementHandler implements InvocationHandler {
+
+		private final String sql;
+
+		private Object[] current = new Object[16];
+
+		private List<Object[]> batch = new ArrayList<Object[]>();
+
+		StatementHandler(String sql) {
+			this.sql = sql;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("setNull")) {
+				current[(Integer) args[0] - 1] = null;
+				return null;
+			} else if (name.startsWith("set") && (args != null) && (args.length == 2) && (args[0] instanceof Integer)) {
+				current[(Integer) args[0] - 1] = args[1];
+				return null;
+			} else if (name.equals("addBatch")) {
+				batch.add(current);
+				current = new Object[16];
+				return null;
+			} else if (name.equals("executeBatch")) {
+				List<Object[]> toExecute = batch;
+				batch = new ArrayList<Object[]>();
+				return JdbcStandIn.this.executeBatch(sql, toExecute);
+			} else if (name.equals("executeQuery")) {
+				return JdbcStandIn.this.executeQuery(sql, current.clone());
+			}
+			return defaultValue(method);
+		}
+	}
+
+	private static class ResultSetHandler implements InvocationHandler {
+
+		private final List<String> names;
+
+		private final Iterator<Object[]> iterator;
+
+		private Object[] current;
+
+		ResultSetHandler(String[] names, List<Object[]> rows) {
+			this.names = (names == null) ? new ArrayList<String>() : Arrays.asList(names);
+			this.iterator = rows.iterator();
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("next")) {
+				current = iterator.hasNext() ? iterator.next() : null;
+				return current != null;
+			} else if (name.startsWith("get") && (args != null) && (args.length >= 1)) {
+				Object value = (args[0] instanceof String) ? current[names.indexOf(args[0])] : current[(Integer) args[0] - 1];
+				if (method.getReturnType() == int.class) {
+					return (value == null) ? 0 : ((Number) value).intValue();
+				} else if (method.getReturnType() == double.class) {
+					return (value == null) ? 0.0 : ((Number) value).doubleValue();
+				} else if (method.getReturnType() == String.class) {
+					return (value == null) ? null : value.toString();
+				}
+				return value;
+			}
+			return defaultValue(method);
+		}
+	}
+}
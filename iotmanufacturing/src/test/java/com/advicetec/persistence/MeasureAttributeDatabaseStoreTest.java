@@ -0,0 +1,72 @@
+package com.advicetec.persistence;
+
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.Level;
+import org.junit.Test;
+
+import com.advicetec.core.Attribute;
+import com.advicetec.core.AttributeType;
+import com.advicetec.core.AttributeValue;
+import com.advicetec.measuredentitity.MeasuredAttributeValue;
+import com.advicetec.measuredentitity.MeasuredEntityType;
+
+public class MeasureAttributeDatabaseStoreTest 
+{
+	private static final LocalDateTime START = LocalDateTime.of(2017, 8, 12, 18, 0, 0);
+
+	private MeasuredAttributeValue value(int owner, String attribute, int second, double value) {
+		return new MeasuredAttributeValue(new Attribute(attribute, AttributeType.DOUBLE), value, 
+										owner, MeasuredEntityType.MACHINE, START.plusSeconds(second));
+	}
+
+	@Test
+	public void DuplicateKeyTest() throws Exception {
+		JdbcStandIn database = new JdbcStandIn();
+		MeasureAttributeDatabaseStore store = new MeasureAttributeDatabaseStore(new LinkedHashMap<String, AttributeValue>(), 4000, Level.DEBUG);
+		Set<MeasuredAttributeValueKey> controlSet = new HashSet<MeasuredAttributeValueKey>();
+
+		List<AttributeValue> first = new ArrayList<AttributeValue>();
+		first.add(value(1, "speed", 0, 10.0));
+		first.add(value(1, "speed", 1, 11.0));
+		first.add(value(2, "speed", 1, 12.0));
+		first.add(value(1, "temperature", 1, 13.0));
+		// Same key of the first row.
+		first.add(value(1, "speed", 0, 14.0));
+
+		List<AttributeValue> second = new ArrayList<AttributeValue>();
+		// Same key of a row in the previous batch.
+		second.add(value(2, "speed", 1, 15.0));
+		second.add(value(2, "speed", 2, 16.0));
+
+		assertEquals(4, store.insert(database.getConnection(), first, controlSet));
+		assertEquals(1, store.insert(database.getConnection(), second, controlSet));
+
+		assertEquals(5, database.getRows());
+		assertEquals(2, database.getBatches());
+		assertEquals(2, database.getCommits());
+		assertEquals(10.0, database.getRow(0)[4]);
+		assertEquals(Timestamp.valueOf(START.plusSeconds(2)), database.getRow(4)[1]);
+		assertEquals(START.plusSeconds(2), store.lastStore);
+	}
+
+	@Test
+	public void KeyTest() {
+		MeasuredAttributeValueKey key1 = new MeasuredAttributeValueKey(value(1, "speed", 0, 10.0));
+		MeasuredAttributeValueKey key2 = new MeasuredAttributeValueKey(1, MeasuredEntityType.MACHINE.getValue(), "speed", START);
+
+		assertEquals(key1, key2);
+		assertEquals(key1.hashCode(), key2.hashCode());
+		assertEquals(false, key1.equals(new MeasuredAttributeValueKey(1, MeasuredEntityType.PLANT.getValue(), "speed", START)));
+		assertEquals(false, key1.equals(new MeasuredAttributeValueKey(1, MeasuredEntityType.MACHINE.getValue(), "speed", START.plusNanos(1))));
+	}
+}
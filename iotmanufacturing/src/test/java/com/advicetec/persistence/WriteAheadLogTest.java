@@ -0,0 +1,126 @@
+package com.advicetec.persistence;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.advicetec.core.Attribute;
+import com.advicetec.core.AttributeType;
+import com.advicetec.measuredentitity.MeasuredAttributeValue;
+import com.advicetec.measuredentitity.MeasuredEntityType;
+
+public class WriteAheadLogTest
+{
+	private static final LocalDateTime START = LocalDateTime.of(2017, 8, 12, 18, 0, 0, 125000000);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MeasuredAttributeValue value(int second, double value) {
+		return new MeasuredAttributeValue(new Attribute("speed", AttributeType.DOUBLE), value,
+										1, MeasuredEntityType.MACHINE, START.plusSeconds(second));
+	}
+
+	private WriteAheadLog open(File directory, int segmentSize) throws Exception {
+		return new WriteAheadLog(directory, MeasuredAttributeValue.BULK_TABLE, segmentSize, 10);
+	}
+
+	@Test
+	public void RecoverTest() throws Exception {
+		File directory = folder.newFolder("wal");
+		MeasuredAttributeValue stored = value(0, 10.0);
+		MeasuredAttributeValue pending1 = value(1, 11.0);
+		MeasuredAttributeValue pending2 = new MeasuredAttributeValue(new Attribute("status", AttributeType.STRING), "Run \"A\"",
+														1, MeasuredEntityType.MACHINE, START);
+
+		WriteAheadLog wal = open(directory, 64 * 1024);
+		wal.append(stored.getKey(), stored);
+		wal.append(pending1.getKey(), pending1);
+		wal.append(pending2.getKey(), pending2);
+		wal.confirm(stored.getKey(), stored);
+		assertEquals(2, wal.getPendingRows());
+		// The process stops before the pending values are stored.
+		wal.close();
+
+		WriteAheadLog reopened = open(directory, 64 * 1024);
+		assertEquals(1, reopened.getRecoveredSegmentCount());
+		List<Object[]> rows = reopened.readRecovered();
+		// The segment is recovered as a whole, the confirmed row is skipped by the database.
+		assertEquals(3, rows.size());
+		assertArrayEquals(pending1.getBulkValues(), rows.get(1));
+		assertArrayEquals(pending2.getBulkValues(), rows.get(2));
+
+		JdbcStandIn database = new JdbcStandIn();
+		List<MeasuredAttributeValue> already = new ArrayList<MeasuredAttributeValue>();
+		already.add(stored);
+		new JdbcBatchWriter().write(database.getConnection(), already);
+
+		assertEquals(2, reopened.recover(database.getConnection(), 100));
+		assertEquals(3, database.getRows());
+		assertEquals(0, reopened.getRecoveredSegmentCount());
+		reopened.close();
+
+		// The recovered segment is deleted, and the new one has no pending rows.
+		assertEquals(0, directory.listFiles().length);
+	}
+
+	@Test
+	public void ConfirmDeletesSegmentsTest() throws Exception {
+		File directory = folder.newFolder("wal");
+		WriteAheadLog wal = open(directory, 512);
+
+		List<MeasuredAttributeValue> values = new ArrayList<MeasuredAttributeValue>();
+		for (int i = 0; i < 20; i++) {
+			MeasuredAttributeValue value = value(i, i);
+			values.add(value);
+			wal.append(value.getKey(), value);
+		}
+		int segments = wal.getSegmentCount();
+		assertEquals(segments, directory.listFiles().length);
+		assertEquals(true, segments > 1);
+
+		for (MeasuredAttributeValue value : values) {
+			wal.confirm(value.getKey(), value);
+		}
+		// The active segment is kept.
+		assertEquals(1, wal.getSegmentCount());
+		assertEquals(1, directory.listFiles().length);
+		assertEquals(0, wal.getPendingRows());
+		wal.close();
+	}
+
+	@Test
+	public void TornRecordTest() throws Exception {
+		File directory = folder.newFolder("wal");
+		WriteAheadLog wal = open(directory, 64 * 1024);
+		MeasuredAttributeValue first = value(0, 10.0);
+		MeasuredAttributeValue second = value(1, 11.0);
+		wal.append(first.getKey(), first);
+		wal.append(second.getKey(), second);
+		wal.close();
+
+		// Corrupts the last byte of the second record.
+		File segment = directory.listFiles()[0];
+		int length = 8 + 8 + WriteAheadLog.encode(first.getKey(), first.getBulkValues()).length
+					   + 8 + WriteAheadLog.encode(second.getKey(), second.getBulkValues()).length;
+		try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+			raf.seek(length - 1);
+			raf.write(0x7F);
+		}
+
+		WriteAheadLog reopened = open(directory, 64 * 1024);
+		List<Object[]> rows = reopened.readRecovered();
+		assertEquals(1, rows.size());
+		assertArrayEquals(first.getBulkValues(), rows.get(0));
+		reopened.close();
+	}
+}
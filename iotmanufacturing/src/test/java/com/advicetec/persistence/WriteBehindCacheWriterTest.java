@@ -0,0 +1,106 @@
+package com.advicetec.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+
+import org.junit.Test;
+
+public class WriteBehindCacheWriterTest
+{
+
+	@Test
+	public void SizeTriggerTest() throws Exception {
+		List<Map<String, Integer>> batches = Collections.synchronizedList(new ArrayList<Map<String, Integer>>());
+		WriteBehindCacheWriter<String, Integer> writer = new WriteBehindCacheWriter.Builder<String, Integer>()
+				.bufferTime(1, TimeUnit.HOURS)
+				.maxBatchSize(10)
+				.coalesce(BinaryOperator.maxBy(Integer::compare))
+				.writeAction(batches::add)
+				.build();
+
+		for (int i = 0; i < 10; i++) {
+			writer.write("key" + i, i);
+		}
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (batches.isEmpty() && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(10);
+		}
+
+		// The batch is written by size, long before the buffer time.
+		assertEquals(1, batches.size());
+		assertEquals(10, batches.get(0).size());
+		assertTrue(writer.close(5, TimeUnit.SECONDS));
+		assertEquals(10, writer.getFlushedEntries());
+	}
+
+	@Test
+	public void CoalesceAndCloseTest() throws Exception {
+		List<Map<String, Integer>> batches = Collections.synchronizedList(new ArrayList<Map<String, Integer>>());
+		WriteBehindCacheWriter<String, Integer> writer = new WriteBehindCacheWriter.Builder<String, Integer>()
+				.bufferTime(1, TimeUnit.HOURS)
+				.coalesce(BinaryOperator.maxBy(Integer::compare))
+				.writeAction(batches::add)
+				.build();
+
+		writer.write("a", 1);
+		writer.write("a", 3);
+		writer.write("a", 2);
+		writer.write("b", 1);
+
+		// Closing flushes the pending writes.
+		assertTrue(writer.close(5, TimeUnit.SECONDS));
+		assertEquals(1, batches.size());
+		assertEquals(Integer.valueOf(3), batches.get(0).get("a"));
+		assertEquals(2, batches.get(0).size());
+	}
+
+	@Test
+	public void BackPressureTest() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		WriteBehindCacheWriter<String, Integer> writer = new WriteBehindCacheWriter.Builder<String, Integer>()
+				.bufferTime(1, TimeUnit.MILLISECONDS)
+				.maxBatchSize(1)
+				.maxPendingEntries(2)
+				.maxInFlight(1)
+				.blockTimeout(50, TimeUnit.MILLISECONDS)
+				.coalesce(BinaryOperator.maxBy(Integer::compare))
+				.writeAction(entries -> {
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				})
+				.build();
+
+		// The first batch blocks the only writer.
+		writer.write("key0", 0);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertEquals(1, writer.getInFlightBatches());
+
+		// One write is held by the flusher waiting for a writer, two fill the buffer, the rest are rejected.
+		for (int i = 1; i < 6; i++) {
+			writer.write("key" + i, i);
+		}
+		assertEquals(2, writer.getQueueDepth());
+		assertEquals(2, writer.getRejectedWrites());
+		assertTrue(writer.getBlockedWrites() >= 2);
+
+		release.countDown();
+		assertTrue(writer.close(5, TimeUnit.SECONDS));
+		assertEquals(0, writer.getQueueDepth());
+		assertEquals(4, writer.getFlushedEntries());
+		assertTrue(writer.getMaxFlushLatency() >= writer.getAverageFlushLatency());
+	}
+}
@@ -0,0 +1,266 @@
+package com.advicetec.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal MQTT 3.1.1 broker listening in the loopback interface, used by the tests instead of a
+ * broker.
+ * <p>
+ * It accepts any client and answers the connect, subscribe, ping and disconnect packets. The
+ * messages given to <code>publish</code> are delivered with QoS 0 or 1 to the clients with a
+ * matching subscription. The shared subscriptions <code>$share/group/filter</code> are delivered
+ * to one member of the group, in round robin.
+ */
+public class MqttBrokerStandIn implements Runnable
+{
+	private final ServerSocket server;
+
+	private final AtomicInteger acceptedConnections = new AtomicInteger(0);
+
+	private final List<Client> clients = new CopyOnWriteArrayList<Client>();
+
+	private final AtomicInteger nextShared = new AtomicInteger(0);
+
+	private final AtomicInteger packetIds = new AtomicInteger(0);
+
+	private volatile boolean running = true;
+
+	/**
+	 * A connected client and its subscription.
+	 */
+	private static class Client
+	{
+		final Socket socket;
+		final OutputStream out;
+		volatile String filter;
+		volatile String group;
+		volatile int qos;
+		final AtomicInteger delivered = new AtomicInteger(0);
+
+		Client(Socket socket) throws IOException {
+			this.socket = socket;
+			this.out = socket.getOutputStream();
+		}
+
+		synchronized void send(int header, byte[] body) throws IOException {
+			ByteArrayOutputStream packet = new ByteArrayOutputStream();
+			packet.write(header);
+			int length = body.length;
+			do {
+				int digit = length % 128;
+				length = length / 128;
+				packet.write((length > 0) ? (digit | 0x80) : digit);
+			} while (length > 0);
+			packet.write(body);
+			out.write(packet.toByteArray());
+			out.flush();
+		}
+	}
+
+	public MqttBrokerStandIn() throws IOException {
+		server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread t = new Thread(this, "MqttBrokerStandIn");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	public String getUrl() {
+		return "tcp://" + server.getInetAddress().getHostAddress() + ":" + server.getLocalPort();
+	}
+
+	public int getAcceptedConnections() {
+		return acceptedConnections.get();
+	}
+
+	/**
+	 * Returns the number of clients with a subscription.
+	 */
+	public int getSubscribers() {
+		int count = 0;
+		for (Client client : clients) {
+			if (client.filter != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of messages delivered to every subscribed client.
+	 */
+	public List<Integer> getDelivered() {
+		List<Integer> delivered = new ArrayList<Integer>();
+		for (Client client : clients) {
+			if (client.filter != null) {
+				delivered.add(client.delivered.get());
+			}
+		}
+		return delivered;
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				final Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				acceptedConnections.incrementAndGet();
+				final Client client = new Client(socket);
+				clients.add(client);
+				Thread t = new Thread(new Runnable() {
+					public void run() {
+						serve(client);
+					}
+				}, "MqttBrokerStandInClient");
+				t.setDaemon(true);
+				t.start();
+			} catch (IOException e) {
+				// the server was closed.
+			}
+		}
+	}
+
+	private void serve(Client client) {
+		try {
+			DataInputStream in = new DataInputStream(client.socket.getInputStream());
+			while (running) {
+				int header = in.readUnsignedByte();
+				int length = 0;
+				int multiplier = 1;
+				int digit;
+				do {
+					digit = in.readUnsignedByte();
+					length += (digit & 0x7F) * multiplier;
+					multiplier *= 128;
+				} while ((digit & 0x80) != 0);
+				byte[] body = new byte[length];
+				in.readFully(body);
+
+				switch (header >> 4) {
+				case 1: // CONNECT
+					client.send(0x20, new byte[] {0, 0});
+					break;
+				case 3: // PUBLISH
+					int topicLength = ((body[0] & 0xFF) << 8) | (body[1] & 0xFF);
+					String topic = new String(body, 2, topicLength, StandardCharsets.UTF_8);
+					int start = 2 + topicLength;
+					if (((header >> 1) & 0x03) > 0) {
+						client.send(0x40, new byte[] {body[start], body[start + 1]});
+						start += 2;
+					}
+					byte[] payload = new byte[body.length - start];
+					System.arraycopy(body, start, payload, 0, payload.length);
+					publish(topic, payload);
+					break;
+				case 8: // SUBSCRIBE, one topic filter
+					int filterLength = ((body[2] & 0xFF) << 8) | (body[3] & 0xFF);
+					String filter = new String(body, 4, filterLength, StandardCharsets.UTF_8);
+					int qos = Math.min(body[4 + filterLength] & 0x03, 1);
+					if (filter.startsWith("$share/")) {
+						int slash = filter.indexOf('/', 7);
+						client.group = filter.substring(7, slash);
+						filter = filter.substring(slash + 1);
+					}
+					client.qos = qos;
+					client.filter = filter;
+					client.send(0x90, new byte[] {body[0], body[1], (byte) qos});
+					break;
+				case 12: // PINGREQ
+					client.send(0xD0, new byte[0]);
+					break;
+				case 14: // DISCONNECT
+					return;
+				default: // PUBACK and others.
+					break;
+				}
+			}
+		} catch (IOException e) {
+			// the client closed the connection.
+		} finally {
+			clients.remove(client);
+			try {
+				client.socket.close();
+			} catch (IOException e) {
+				// nothing to do.
+			}
+		}
+	}
+
+	/**
+	 * Delivers a message to the matching subscriptions.
+	 */
+	public void publish(String topic, byte[] payload) throws IOException {
+		List<Client> shared = new ArrayList<Client>();
+		for (Client client : clients) {
+			if ((client.filter != null) && matches(client.filter, topic)) {
+				if (client.group == null) {
+					deliver(client, topic, payload);
+				} else {
+					shared.add(client);
+				}
+			}
+		}
+		if (!shared.isEmpty()) {
+			deliver(shared.get((nextShared.getAndIncrement() & 0x7FFFFFFF) % shared.size()), topic, payload);
+		}
+	}
+
+	private void deliver(Client client, String topic, byte[] payload) throws IOException {
+		byte[] name = topic.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		body.write(name.length >> 8);
+		body.write(name.length);
+		body.write(name);
+		if (client.qos > 0) {
+			int id = (packetIds.incrementAndGet() % 65535) + 1;
+			body.write(id >> 8);
+			body.write(id);
+		}
+		body.write(payload);
+		client.send(0x30 | (client.qos << 1), body.toByteArray());
+		client.delivered.incrementAndGet();
+	}
+
+	/**
+	 * Returns true if the topic matches the filter, with the + and # wildcards.
+	 */
+	static boolean matches(String filter, String topic) {
+		String[] levels = filter.split("/", -1);
+		String[] names = topic.split("/", -1);
+		for (int i = 0; i < levels.length; i++) {
+			if (levels[i].equals("#")) {
+				return true;
+			}
+			if ((i >= names.length) || (!levels[i].equals("+") && !levels[i].equals(names[i]))) {
+				return false;
+			}
+		}
+		return levels.length == names.length;
+	}
+
+	/**
+	 * Closes the sockets of the connected clients, as a broker being restarted.
+	 */
+	public void closeClients() throws IOException {
+		for (Client client : clients) {
+			client.socket.close();
+		}
+	}
+
+	public void close() throws IOException {
+		running = false;
+		server.close();
+		closeClients();
+	}
+}
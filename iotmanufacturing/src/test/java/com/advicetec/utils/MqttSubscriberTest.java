@@ -0,0 +1,213 @@
+package com.advicetec.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.advicetec.monitorAdapter.MqttReading;
+import com.advicetec.mpmcqueue.PriorityQueue;
+import com.advicetec.mpmcqueue.QueueType;
+import com.advicetec.mpmcqueue.Queueable;
+
+public class MqttSubscriberTest
+{
+	private MqttBrokerStandIn broker;
+
+	private PriorityQueue<Queueable> queue;
+
+	private MqttSubscriber subscriber;
+
+	@Before
+	public void setUp() throws Exception {
+		broker = new MqttBrokerStandIn();
+		queue = new PriorityQueue<Queueable>(Queueable.class);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (subscriber != null) {
+			subscriber.close();
+		}
+		broker.close();
+	}
+
+	private MqttSubscriber subscriber(int connections) {
+		return subscriber(connections, new Properties());
+	}
+
+	private MqttSubscriber subscriber(int connections, Properties properties) {
+		properties.setProperty("BrokeUrl", broker.getUrl());
+		properties.setProperty("TopicName", "iot/+/+");
+		properties.setProperty("ClientId", "test");
+		properties.setProperty("QoS", "1");
+		properties.setProperty("Connections", String.valueOf(connections));
+		properties.setProperty("SharedGroup", "group");
+		properties.setProperty("CleanSession", "true");
+		properties.setProperty("ReconnectMinDelay", "50");
+		properties.setProperty("ReconnectMaxDelay", "200");
+		properties.setProperty("BatchSize", "16");
+		subscriber = new MqttSubscriber(properties, queue);
+		return subscriber;
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!condition.getAsBoolean() && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(20);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+
+	private void awaitSubscribers(final int count) throws InterruptedException {
+		await(() -> broker.getSubscribers() == count);
+	}
+
+	private String pop() throws InterruptedException {
+		Queueable obj = queue.pop(6);
+		assertEquals(QueueType.MQTT_DEV_MESSAGE, obj.getType());
+		MqttReading reading = (MqttReading) obj.getContent();
+		String message = reading.getTopic() + ":" + new String(reading.getData(), StandardCharsets.UTF_8);
+		reading.recycle();
+		return message;
+	}
+
+	@Test
+	public void ForwardTest() throws Exception {
+		subscriber(1).run();
+		awaitSubscribers(1);
+
+		for (int i = 0; i < 1000; i++) {
+			broker.publish("iot/dev/COM1", String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+		}
+		// one connection keeps the order of the messages.
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("iot/dev/COM1:" + i, pop());
+		}
+		assertEquals(1000, subscriber.getReceived());
+	}
+
+	@Test
+	public void SharedSubscriptionTest() throws Exception {
+		subscriber(3).run();
+		assertEquals("$share/group/iot/+/+", subscriber.getSubscription());
+		awaitSubscribers(3);
+
+		for (int i = 0; i < 300; i++) {
+			broker.publish("iot/dev" + (i % 10) + "/COM1", String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+		}
+		// every message is received once, by one of the connections.
+		Set<String> messages = new HashSet<String>();
+		for (int i = 0; i < 300; i++) {
+			messages.add(pop());
+		}
+		assertEquals(300, messages.size());
+		for (int delivered : broker.getDelivered()) {
+			assertEquals(100, delivered);
+		}
+	}
+
+	@Test
+	public void ReconnectTest() throws Exception {
+		subscriber(2).run();
+		awaitSubscribers(2);
+
+		// the broker drops the connections, the clients connect and subscribe again.
+		broker.closeClients();
+		await(() -> broker.getAcceptedConnections() == 4);
+		awaitSubscribers(2);
+		await(() -> subscriber.getReconnects() == 2);
+
+		broker.publish("iot/dev/COM1", "after".getBytes(StandardCharsets.UTF_8));
+		assertEquals("iot/dev/COM1:after", pop());
+	}
+
+	@Test
+	public void DropTest() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("QoS", "1");
+		properties.setProperty("SpillCapacity", "2");
+		properties.setProperty("SpillTimeout", "10");
+		properties.setProperty("SpillDrop", "true");
+		MqttSubscriber full = new MqttSubscriber(properties, queue);
+
+		// without the forwarder the buffer fills, the callback does not wait for it.
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 5; i++) {
+			assertTrue(full.spill("iot/dev/COM1", String.valueOf(i).getBytes(StandardCharsets.UTF_8)));
+		}
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertEquals(5, full.getReceived());
+		assertEquals(2, full.getSpilled());
+		assertEquals(3, full.getDropped());
+		assertEquals(0, full.getPauses());
+	}
+
+	@Test
+	public void PauseTest() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty("QoS", "1");
+		properties.setProperty("SpillCapacity", "4");
+		properties.setProperty("SpillTimeout", "10");
+		MqttSubscriber full = new MqttSubscriber(properties, queue);
+
+		// by default the messages that do not fit are refused, never dropped.
+		for (int i = 0; i < 4; i++) {
+			assertTrue(full.spill("iot/dev/COM1", String.valueOf(i).getBytes(StandardCharsets.UTF_8)));
+		}
+		assertTrue(!full.spill("iot/dev/COM1", "4".getBytes(StandardCharsets.UTF_8)));
+		assertEquals(0, full.getDropped());
+		assertEquals(1, full.getPauses());
+		assertEquals(4, full.getSpilled());
+		assertTrue(!full.canResume());
+	}
+
+	@Test
+	public void PauseConnectionTest() throws Exception {
+		// the adapter queue is full, the forwarder waits.
+		int queued = 8192;
+		for (int i = 0; i < queued; i++) {
+			queue.enqueue(6, new Queueable(QueueType.MQTT_DEV_MESSAGE, null));
+		}
+		Properties properties = new Properties();
+		properties.setProperty("SpillCapacity", "4");
+		properties.setProperty("SpillTimeout", "10");
+		subscriber(1, properties).run();
+		awaitSubscribers(1);
+
+		// once the spill buffer is full, the client closes its connection instead of dropping.
+		for (int i = 0; i < 40; i++) {
+			broker.publish("iot/dev/COM1", String.valueOf(i).getBytes(StandardCharsets.UTF_8));
+		}
+		await(() -> subscriber.getPauses() == 1);
+		awaitSubscribers(0);
+		assertEquals(0, subscriber.getDropped());
+		Thread.sleep(500);
+		assertEquals(1, broker.getAcceptedConnections());
+
+		// it connects again when the spill buffer is half empty.
+		for (int i = 0; i < queued; i++) {
+			queue.pop(6);
+		}
+		awaitSubscribers(1);
+		assertEquals(2, broker.getAcceptedConnections());
+		assertEquals(0, subscriber.getDropped());
+	}
+
+	@Test
+	public void BackoffTest() {
+		for (int attempt = 0; attempt < 100; attempt++) {
+			long delay = Math.min(200, 50L << Math.min(attempt, 10));
+			long backoff = MqttSubscriber.backoff(attempt, 50, 200);
+			assertTrue((backoff >= delay - delay / 2) && (backoff <= delay));
+		}
+	}
+}